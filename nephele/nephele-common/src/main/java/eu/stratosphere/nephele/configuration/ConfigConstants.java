@@ -46,6 +46,12 @@ public final class ConfigConstants {
 	 */
 	public static final String TASK_MANAGER_IPC_PORT_KEY = "taskmanager.rpc.port";
 
+	/**
+	 * The key for the config parameter defining the transport of the RPC service, either <code>udp</code> or
+	 * <code>tcp</code>.
+	 */
+	public static final String RPC_TRANSPORT_KEY = "rpc.transport";
+
 	/**
 	 * The key for the config parameter defining the task manager's data port from the configuration.
 	 */
@@ -67,6 +73,12 @@ public final class ConfigConstants {
 	 */
 	public static final String MEMORY_MANAGER_AVAILABLE_MEMORY_SIZE_KEY = "taskmanager.memory.size";
 
+	/**
+	 * The key for the config parameter defining whether the memory manager allocates its memory
+	 * outside the JVM heap (as direct memory) rather than as byte arrays on the heap.
+	 */
+	public static final String MEMORY_MANAGER_OFF_HEAP_KEY = "taskmanager.memory.offheap";
+
 	/**
 	 * The key for the config parameter defining flag to terminate a job at job-client shutdown.
 	 */
@@ -91,6 +103,11 @@ public final class ConfigConstants {
 	 */
 	public static final int DEFAULT_TASK_MANAGER_IPC_PORT = 6122;
 
+	/**
+	 * The default transport of the RPC service.
+	 */
+	public static final String DEFAULT_RPC_TRANSPORT = "udp";
+
 	/**
 	 * The default network port the task manager expects to receive transfer envelopes on.
 	 */
@@ -101,6 +118,11 @@ public final class ConfigConstants {
 	 */
 	public static final int DEFAULT_MEMORY_MANAGER_AVAILABLE_MEMORY = 512;
 
+	/**
+	 * The default setting for the memory manager's memory, which is allocated on the heap.
+	 */
+	public static final boolean DEFAULT_MEMORY_MANAGER_OFF_HEAP = false;
+
 	/**
 	 * The default number of retries for failed tasks.
 	 */
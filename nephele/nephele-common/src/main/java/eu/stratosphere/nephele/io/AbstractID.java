@@ -15,6 +15,8 @@
 
 package eu.stratosphere.nephele.io;
 
+import java.nio.ByteBuffer;
+
 import eu.stratosphere.nephele.util.StringUtils;
 
 /**
@@ -35,7 +37,7 @@ public abstract class AbstractID {
 	/**
 	 * The size of the ID in byte.
 	 */
-	protected static final int SIZE = 2 * SIZE_OF_LONG;
+	public static final int SIZE = 2 * SIZE_OF_LONG;
 
 	/**
 	 * The upper part of the actual ID.
@@ -96,6 +98,19 @@ public abstract class AbstractID {
 		this.upperPart = 0L;
 	}
 
+	/**
+	 * Writes the ID to the given byte buffer, using the same byte order as the byte array accepted by
+	 * {@link #AbstractID(byte[])}.
+	 * 
+	 * @param buffer
+	 *        the byte buffer to write the ID to
+	 */
+	public void write(final ByteBuffer buffer) {
+
+		buffer.putLong(this.lowerPart);
+		buffer.putLong(this.upperPart);
+	}
+
 	/**
 	 * Generates a uniformly distributed random positive long.
 	 * 
@@ -15,6 +15,8 @@
 
 package eu.stratosphere.nephele.io.channels;
 
+import java.nio.ByteBuffer;
+
 import eu.stratosphere.nephele.io.AbstractID;
 
 /**
@@ -56,4 +58,20 @@ public final class ChannelID extends AbstractID {
 
 		return new ChannelID(lowerPart, upperPart);
 	}
+
+	/**
+	 * Constructs a new channel ID from the bytes at the current position of the given byte buffer. The bytes are
+	 * expected to be written by {@link AbstractID#write(ByteBuffer)}.
+	 * 
+	 * @param buffer
+	 *        the byte buffer to read the channel ID from
+	 * @return the new channel ID
+	 */
+	public static ChannelID fromByteBuffer(final ByteBuffer buffer) {
+
+		final long lowerPart = buffer.getLong();
+		final long upperPart = buffer.getLong();
+
+		return new ChannelID(lowerPart, upperPart);
+	}
 }
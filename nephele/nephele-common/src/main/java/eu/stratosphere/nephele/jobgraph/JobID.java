@@ -15,6 +15,8 @@
 
 package eu.stratosphere.nephele.jobgraph;
 
+import java.nio.ByteBuffer;
+
 import eu.stratosphere.nephele.io.AbstractID;
 
 /**
@@ -78,4 +80,20 @@ public final class JobID extends AbstractID {
 
 		return new JobID(bytes);
 	}
+
+	/**
+	 * Constructs a new job ID from the bytes at the current position of the given byte buffer. The bytes are expected
+	 * to be written by {@link AbstractID#write(ByteBuffer)}.
+	 * 
+	 * @param buffer
+	 *        the byte buffer to read the job ID from
+	 * @return the new job ID
+	 */
+	public static JobID fromByteBuffer(final ByteBuffer buffer) {
+
+		final long lowerPart = buffer.getLong();
+		final long upperPart = buffer.getLong();
+
+		return new JobID(lowerPart, upperPart);
+	}
 }
@@ -29,13 +29,14 @@ import com.esotericsoftware.minlog.Log;
 import eu.stratosphere.nephele.util.NumberUtils;
 
 /**
- * The network thread is responsible for (reliably) transmitting a sequence of datagram packets to a receiver.
+ * The network thread is responsible for (reliably) transmitting a sequence of datagram packets to a receiver. It
+ * implements the UDP transport of the {@link RPCService}.
  * <p>
  * This class is thread-safe.
  * 
  * @author warneke
  */
-final class NetworkThread extends Thread {
+final class NetworkThread extends Thread implements RPCTransport {
 
 	/**
 	 * The maximum number of retransmissions before a sequence of datagram packets is considered to be lost.
@@ -257,18 +258,49 @@ final class NetworkThread extends Thread {
 	}
 
 	/**
-	 * Shuts down the network thread.
-	 * 
-	 * @throws InterruptedException
-	 *         thrown if the calling thread is interrupted while waiting for the network thread to shut down
+	 * {@inheritDoc}
 	 */
-	void shutdown() throws InterruptedException {
+	@Override
+	public void shutdown() throws InterruptedException {
 		this.shutdownRequested = true;
 		this.socket.close();
 		interrupted();
 		join();
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int send(final InetSocketAddress remoteSocketAddress, final byte[] data, final int length)
+			throws IOException, InterruptedException {
+
+		final MultiPacketOutputStream mpos = new MultiPacketOutputStream(getNumberOfPackets(length)
+			* (RPCMessage.MAXIMUM_MSG_SIZE + RPCMessage.METADATA_SIZE));
+		mpos.write(data, 0, length);
+		mpos.close();
+
+		return send(mpos.createPackets(remoteSocketAddress));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getNumberOfPackets(final int length) {
+
+		return Math.max(1, (length + RPCMessage.MAXIMUM_MSG_SIZE - 1) / RPCMessage.MAXIMUM_MSG_SIZE);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isReliable() {
+
+		return false;
+	}
+
 	/**
 	 * Reliably sends the given sequence of datagram packets to the receiver.
 	 * 
@@ -403,7 +435,8 @@ final class NetworkThread extends Thread {
 	/**
 	 * Cleans up stale state information as a result of packet loss.
 	 */
-	void cleanUpStaleState() {
+	@Override
+	public void cleanUpStaleState() {
 
 		final long now = System.currentTimeMillis();
 		final Iterator<MultiPacketInputStream> it = this.incompleteInputStreams.values().iterator();
@@ -19,7 +19,6 @@ import java.io.IOException;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.net.DatagramPacket;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -41,10 +40,14 @@ import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.esotericsoftware.minlog.Log;
 
+import eu.stratosphere.nephele.configuration.ConfigConstants;
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
 import eu.stratosphere.nephele.util.StringUtils;
 
 /**
- * This class implements a lightweight, UDP-based RPC service.
+ * This class implements a lightweight RPC service. By default, the service exchanges its messages via UDP, the
+ * transport can be switched to persistent TCP connections with the configuration key
+ * {@link ConfigConstants#RPC_TRANSPORT_KEY}. Both communication partners must use the same transport.
  * <p>
  * This class is thread-safe.
  * 
@@ -67,20 +70,26 @@ public final class RPCService {
 	 */
 	private static final int RPC_TIMEOUT = 60000;
 
+	/**
+	 * The initial size of the buffer a message is serialized into in bytes.
+	 */
+	private static final int INITIAL_SERIALIZATION_BUFFER_SIZE = RPCMessage.MAXIMUM_MSG_SIZE;
+
 	/**
 	 * The executor service managing the RPC handler threads.
 	 */
 	private final ExecutorService rpcHandlers;
 
 	/**
-	 * The UDP port this service is bound to.
+	 * The port this service is bound to.
 	 */
 	private final int rpcPort;
 
 	/**
-	 * Network thread to wait for incoming data and dispatch it among the available RPC handler threads.
+	 * The transport to send messages and to wait for incoming data and dispatch it among the available RPC handler
+	 * threads.
 	 */
-	private final NetworkThread networkThread;
+	private final RPCTransport transport;
 
 	/**
 	 * Stores whether the RPC service was requested to shut down.
@@ -136,11 +145,14 @@ public final class RPCService {
 
 		private final long creationTime;
 
-		private final DatagramPacket[] packets;
+		private final byte[] data;
 
-		private CachedResponse(final long creationTime, final DatagramPacket[] packets) {
+		private final int length;
+
+		private CachedResponse(final long creationTime, final byte[] data, final int length) {
 			this.creationTime = creationTime;
-			this.packets = packets;
+			this.data = data;
+			this.length = length;
 		}
 	}
 
@@ -195,12 +207,17 @@ public final class RPCService {
 				}
 			}
 
-			networkThread.cleanUpStaleState();
+			transport.cleanUpStaleState();
 		}
 	}
 
 	public RPCService(final int rpcPort, final int numRPCHandlers, final List<Class<?>> typesToRegister)
 			throws IOException {
+		this(rpcPort, numRPCHandlers, typesToRegister, getConfiguredTransportType());
+	}
+
+	public RPCService(final int rpcPort, final int numRPCHandlers, final List<Class<?>> typesToRegister,
+			final RPCTransportType transportType) throws IOException {
 
 		this.rpcHandlers = Executors.newFixedThreadPool(numRPCHandlers);
 
@@ -214,12 +231,37 @@ public final class RPCService {
 		}
 
 		this.rpcPort = rpcPort;
-		this.networkThread = new NetworkThread(this, rpcPort);
-		this.networkThread.start();
+		if (transportType == RPCTransportType.TCP) {
+			this.transport = new TCPNetworkThread(this, rpcPort);
+		} else {
+			this.transport = new NetworkThread(this, rpcPort);
+		}
+		this.transport.start();
 
 		this.cleanupTimer.schedule(new CleanupTask(), CLEANUP_INTERVAL, CLEANUP_INTERVAL);
 	}
 
+	/**
+	 * Returns the transport type configured with the key {@link ConfigConstants#RPC_TRANSPORT_KEY}.
+	 * 
+	 * @return the configured transport type
+	 */
+	private static RPCTransportType getConfiguredTransportType() {
+
+		final String transport = GlobalConfiguration.getString(ConfigConstants.RPC_TRANSPORT_KEY,
+			ConfigConstants.DEFAULT_RPC_TRANSPORT);
+
+		if ("tcp".equalsIgnoreCase(transport)) {
+			return RPCTransportType.TCP;
+		}
+
+		if (!"udp".equalsIgnoreCase(transport)) {
+			Log.error("Unknown RPC transport " + transport + ", falling back to UDP");
+		}
+
+		return RPCTransportType.UDP;
+	}
+
 	private static void addBasicRPCTypes(final List<Class<?>> typesToRegister) {
 
 		typesToRegister.add(ArrayList.class);
@@ -278,23 +320,7 @@ public final class RPCService {
 	}
 
 	public RPCService(final int numRPCHandlers, final List<Class<?>> typesToRegister) throws IOException {
-
-		this.rpcHandlers = Executors.newFixedThreadPool(numRPCHandlers);
-
-		if (typesToRegister == null) {
-			this.kryoTypesToRegister = null;
-		} else {
-			ArrayList<Class<?>> kryoTypesToRegister = new ArrayList<Class<?>>();
-			addBasicRPCTypes(kryoTypesToRegister);
-			kryoTypesToRegister.addAll(typesToRegister);
-			this.kryoTypesToRegister = Collections.unmodifiableList(kryoTypesToRegister);
-		}
-
-		this.rpcPort = -1;
-		this.networkThread = new NetworkThread(this, -1);
-		this.networkThread.start();
-
-		this.cleanupTimer.schedule(new CleanupTask(), CLEANUP_INTERVAL, CLEANUP_INTERVAL);
+		this(-1, numRPCHandlers, typesToRegister);
 	}
 
 	public void setProtocolCallbackHandler(final Class<? extends RPCProtocol> protocol,
@@ -381,7 +407,7 @@ public final class RPCService {
 		}
 
 		final long start = System.currentTimeMillis();
-		DatagramPacket[] packets = messageToPackets(remoteSocketAddress, request);
+		final Output output = serializeMessage(request);
 		final Integer messageID = Integer.valueOf(request.getMessageID());
 
 		final RPCRequestMonitor requestMonitor = new RPCRequestMonitor();
@@ -392,7 +418,7 @@ public final class RPCService {
 		int numberOfRetries;
 		try {
 
-			numberOfRetries = this.networkThread.send(packets);
+			numberOfRetries = this.transport.send(remoteSocketAddress, output.getBuffer(), output.position());
 
 			// Wait for the response
 			synchronized (requestMonitor) {
@@ -425,7 +451,8 @@ public final class RPCService {
 
 		// Report the successful call to the statistics module
 		final String methodName = request.getMethodName();
-		this.statistics.reportSuccessfulTransmission(methodName, packets.length, numberOfRetries);
+		this.statistics.reportSuccessfulTransmission(methodName,
+			this.transport.getNumberOfPackets(output.position()), numberOfRetries);
 		this.statistics.reportRTT(methodName, (int) (System.currentTimeMillis() - start));
 
 		// TODO: Send clean up message
@@ -444,7 +471,7 @@ public final class RPCService {
 
 		// Request shutdown of network thread
 		try {
-			this.networkThread.shutdown();
+			this.transport.shutdown();
 		} catch (InterruptedException ie) {
 			Log.debug("Caught exception while waiting for network thread to shut down: ", ie);
 		}
@@ -503,9 +530,10 @@ public final class RPCService {
 		final CachedResponse cachedResponse = this.cachedResponses.get(messageID);
 		if (cachedResponse != null) {
 			try {
-				final int numberOfRetries = this.networkThread.send(cachedResponse.packets);
+				final int numberOfRetries = this.transport.send(remoteSocketAddress, cachedResponse.data,
+					cachedResponse.length);
 				this.statistics.reportSuccessfulTransmission(rpcRequest.getMethodName() + " (Response)",
-					cachedResponse.packets.length, numberOfRetries);
+					this.transport.getNumberOfPackets(cachedResponse.length), numberOfRetries);
 			} catch (Exception e) {
 				Log.error("Caught exception while trying to send RPC response: ", e);
 			} finally {
@@ -542,12 +570,18 @@ public final class RPCService {
 
 				rpcResponse = new RPCThrowable(rpcRequest.getMessageID(), targetException);
 			}
-			final DatagramPacket[] packets = messageToPackets(remoteSocketAddress, rpcResponse);
-			cachedResponses.put(messageID, new CachedResponse(System.currentTimeMillis(), packets));
+			final Output output = serializeMessage(rpcResponse);
+			final byte[] data = output.getBuffer();
+			final int length = output.position();
 
-			final int numberOfRetries = this.networkThread.send(packets);
-			this.statistics.reportSuccessfulTransmission(rpcRequest.getMethodName() + " (Response)", packets.length,
-				numberOfRetries);
+			// Retransmitted requests can only occur if the transport is unreliable
+			if (!this.transport.isReliable()) {
+				cachedResponses.put(messageID, new CachedResponse(System.currentTimeMillis(), data, length));
+			}
+
+			final int numberOfRetries = this.transport.send(remoteSocketAddress, data, length);
+			this.statistics.reportSuccessfulTransmission(rpcRequest.getMethodName() + " (Response)",
+				this.transport.getNumberOfPackets(length), numberOfRetries);
 
 		} catch (Exception e) {
 			Log.error("Caught processing RPC request: ", e);
@@ -596,20 +630,25 @@ public final class RPCService {
 		return new IOException(sb.toString());
 	}
 
-	private DatagramPacket[] messageToPackets(final InetSocketAddress remoteSocketAddress, final RPCMessage rpcMessage) {
+	/**
+	 * Serializes the given RPC message into a new buffer. The buffer is not reused, so it can be cached or be passed
+	 * on to the transport.
+	 * 
+	 * @param rpcMessage
+	 *        the RPC message to serialize
+	 * @return the output holding the serialized message
+	 */
+	private Output serializeMessage(final RPCMessage rpcMessage) {
 
-		final MultiPacketOutputStream mpos = new MultiPacketOutputStream(RPCMessage.MAXIMUM_MSG_SIZE
-			+ RPCMessage.METADATA_SIZE);
 		final Kryo kryo = this.kryo.get();
 		kryo.reset();
 
-		final Output output = new Output(mpos);
+		final Output output = new Output(INITIAL_SERIALIZATION_BUFFER_SIZE, -1);
 
 		kryo.writeObject(output, new RPCEnvelope(rpcMessage));
 		output.close();
-		mpos.close();
 
-		return mpos.createPackets(remoteSocketAddress);
+		return output;
 	}
 
 	/**
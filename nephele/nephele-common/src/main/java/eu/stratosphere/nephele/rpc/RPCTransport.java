@@ -0,0 +1,81 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.rpc;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+/**
+ * An RPC transport delivers the serialized messages of the {@link RPCService} to remote RPC services and passes the
+ * messages it receives on to the RPC service.
+ * <p>
+ * Implementations of this interface must be thread-safe.
+ */
+interface RPCTransport {
+
+	/**
+	 * Starts the transport, so it begins to receive messages.
+	 */
+	void start();
+
+	/**
+	 * Sends the given serialized message to the given remote address.
+	 * 
+	 * @param remoteSocketAddress
+	 *        the address to send the message to
+	 * @param data
+	 *        the array containing the serialized message
+	 * @param length
+	 *        the length of the serialized message in bytes
+	 * @return the number of retransmissions required to send the message
+	 * @throws IOException
+	 *         thrown if the message could not be delivered
+	 * @throws InterruptedException
+	 *         thrown if the calling thread is interrupted while sending the message
+	 */
+	int send(InetSocketAddress remoteSocketAddress, byte[] data, int length) throws IOException, InterruptedException;
+
+	/**
+	 * Returns the number of packets the transport uses to send a message of the given length.
+	 * 
+	 * @param length
+	 *        the length of the serialized message in bytes
+	 * @return the number of packets used to send the message
+	 */
+	int getNumberOfPackets(int length);
+
+	/**
+	 * Checks whether the transport itself guarantees that a message is delivered at most once. If it does not, the
+	 * RPC service must cache its responses to answer retransmitted requests.
+	 * 
+	 * @return <code>true</code> if the transport delivers each message at most once, <code>false</code> otherwise
+	 */
+	boolean isReliable();
+
+	/**
+	 * Cleans up stale state information, called periodically by the RPC service.
+	 */
+	void cleanUpStaleState();
+
+	/**
+	 * Shuts down the transport.
+	 * 
+	 * @throws InterruptedException
+	 *         thrown if the calling thread is interrupted while waiting for the transport to shut down
+	 */
+	void shutdown() throws InterruptedException;
+}
@@ -0,0 +1,33 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.rpc;
+
+/**
+ * This enumeration lists the transports the {@link RPCService} can use to exchange its messages.
+ */
+public enum RPCTransportType {
+
+	/**
+	 * Messages are fragmented into datagram packets which are acknowledged and retransmitted by the RPC service itself.
+	 */
+	UDP,
+
+	/**
+	 * Messages are sent over persistent TCP connections which are shared by all calls between two RPC services.
+	 */
+	TCP;
+}
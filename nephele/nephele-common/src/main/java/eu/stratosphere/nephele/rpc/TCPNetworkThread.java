@@ -0,0 +1,598 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.rpc;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.minlog.Log;
+
+/**
+ * The TCP network thread implements the TCP transport of the {@link RPCService}. Messages are exchanged over persistent
+ * connections which are shared by all concurrent calls between two RPC services. Each message is sent as a frame
+ * consisting of its length and its serialized data, responses are matched to their requests by the message ID just
+ * like with the UDP transport. In contrast to the UDP transport, large messages are neither fragmented nor acknowledged
+ * packet by packet, and since TCP delivers each message exactly once, the RPC service does not have to cache its
+ * responses.
+ * <p>
+ * The network thread accepts incoming connections and reads all incoming frames with a single selector. Outgoing frames
+ * are written directly by the sending thread, only if the socket cannot take all the data, the remainder is written by
+ * the network thread once the socket has become writable again.
+ * <p>
+ * This class is thread-safe.
+ */
+final class TCPNetworkThread extends Thread implements RPCTransport {
+
+	/**
+	 * The timeout in milliseconds for establishing a connection to a remote RPC service.
+	 */
+	private static final int CONNECT_TIMEOUT = 10000;
+
+	/**
+	 * The maximum size of a frame in bytes, larger frames are considered to be corrupt.
+	 */
+	private static final int MAXIMUM_FRAME_SIZE = 64 * 1024 * 1024;
+
+	/**
+	 * The size of a frame header, i.e. the length of the frame, in bytes.
+	 */
+	private static final int FRAME_HEADER_SIZE = 4;
+
+	/**
+	 * Reference to the RPC service.
+	 */
+	private final RPCService rpcService;
+
+	/**
+	 * The selector to wait for incoming connections and data.
+	 */
+	private final Selector selector;
+
+	/**
+	 * The server socket channel to accept incoming connections, <code>null</code> if the RPC service is not bound to a
+	 * port.
+	 */
+	private final ServerSocketChannel serverSocketChannel;
+
+	/**
+	 * The open connections, indexed by the address of the remote RPC service.
+	 */
+	private final ConcurrentHashMap<InetSocketAddress, Connection> connections = new ConcurrentHashMap<InetSocketAddress, Connection>();
+
+	/**
+	 * Connections whose registration with the selector must be updated by the network thread.
+	 */
+	private final ConcurrentLinkedQueue<Connection> connectionsToUpdate = new ConcurrentLinkedQueue<Connection>();
+
+	/**
+	 * Stores whether the thread has been requested to stop and shut down.
+	 */
+	private volatile boolean shutdownRequested = false;
+
+	/**
+	 * A connection to a remote RPC service. The write state of a connection is guarded by the connection's monitor,
+	 * the read state is only accessed by the network thread.
+	 */
+	private final class Connection {
+
+		/**
+		 * The address of the remote RPC service.
+		 */
+		private final InetSocketAddress remoteSocketAddress;
+
+		/**
+		 * The socket channel of the connection, <code>null</code> until an outgoing connection has been established.
+		 */
+		private SocketChannel socketChannel;
+
+		/**
+		 * The selection key of the connection, <code>null</code> until the connection has been registered.
+		 */
+		private SelectionKey selectionKey = null;
+
+		/**
+		 * The data which has been sent but not yet written to the socket.
+		 */
+		private final Queue<ByteBuffer> pendingWrites = new ArrayDeque<ByteBuffer>();
+
+		/**
+		 * Stores whether the network thread shall write the pending data once the socket becomes writable.
+		 */
+		private boolean writeInterest = false;
+
+		/**
+		 * Stores whether the connection has been closed.
+		 */
+		private boolean closed = false;
+
+		/**
+		 * The buffer for the header of the frame currently being read.
+		 */
+		private final ByteBuffer frameHeader = ByteBuffer.allocate(FRAME_HEADER_SIZE);
+
+		/**
+		 * The buffer for the data of the frame currently being read, <code>null</code> while the header is read.
+		 */
+		private ByteBuffer frame = null;
+
+		/**
+		 * Constructs a new connection.
+		 * 
+		 * @param remoteSocketAddress
+		 *        the address of the remote RPC service
+		 * @param socketChannel
+		 *        the socket channel of an accepted connection or <code>null</code> for an outgoing connection which
+		 *        is yet to be established
+		 */
+		private Connection(final InetSocketAddress remoteSocketAddress, final SocketChannel socketChannel) {
+			this.remoteSocketAddress = remoteSocketAddress;
+			this.socketChannel = socketChannel;
+		}
+
+		/**
+		 * Sends the given serialized message as a frame over this connection. If necessary, the connection is
+		 * established first.
+		 * 
+		 * @param data
+		 *        the array containing the serialized message
+		 * @param length
+		 *        the length of the serialized message in bytes
+		 * @return <code>true</code> if the frame has been sent, <code>false</code> if the connection had already been
+		 *         closed before
+		 * @throws IOException
+		 *         thrown if the connection cannot be established or an error occurs while writing the frame
+		 */
+		private synchronized boolean send(final byte[] data, final int length) throws IOException {
+
+			if (this.closed) {
+				return false;
+			}
+
+			try {
+
+				if (this.socketChannel == null) {
+					connect();
+				}
+
+				final ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_SIZE);
+				header.putInt(length);
+				header.flip();
+				this.pendingWrites.add(header);
+				this.pendingWrites.add(ByteBuffer.wrap(data, 0, length));
+
+				// If the network thread is already in charge of writing, the frame is written after the pending data
+				if (!this.writeInterest) {
+					writePendingData();
+					if (!this.pendingWrites.isEmpty()) {
+						this.writeInterest = true;
+						requestUpdate(this);
+					}
+				}
+
+			} catch (IOException ioe) {
+				close();
+				throw ioe;
+			}
+
+			return true;
+		}
+
+		/**
+		 * Establishes the outgoing connection and requests its registration with the selector.
+		 * 
+		 * @throws IOException
+		 *         thrown if the connection cannot be established
+		 */
+		private void connect() throws IOException {
+
+			final SocketChannel sc = SocketChannel.open();
+			try {
+				sc.socket().setTcpNoDelay(true);
+				sc.socket().connect(this.remoteSocketAddress, CONNECT_TIMEOUT);
+				sc.configureBlocking(false);
+			} catch (IOException ioe) {
+				sc.close();
+				throw ioe;
+			}
+
+			this.socketChannel = sc;
+			requestUpdate(this);
+		}
+
+		/**
+		 * Writes as much of the pending data to the socket as it can take without blocking. This method must only be
+		 * called while holding the connection's monitor.
+		 * 
+		 * @throws IOException
+		 *         thrown if an error occurs while writing the data
+		 */
+		private void writePendingData() throws IOException {
+
+			while (!this.pendingWrites.isEmpty()) {
+
+				final ByteBuffer byteBuffer = this.pendingWrites.peek();
+				this.socketChannel.write(byteBuffer);
+				if (byteBuffer.hasRemaining()) {
+					return;
+				}
+
+				this.pendingWrites.poll();
+			}
+		}
+
+		/**
+		 * Writes the pending data on behalf of the network thread after the socket has become writable.
+		 * 
+		 * @throws IOException
+		 *         thrown if an error occurs while writing the data
+		 */
+		private synchronized void writeAsynchronously() throws IOException {
+
+			writePendingData();
+			if (this.pendingWrites.isEmpty()) {
+				this.writeInterest = false;
+				this.selectionKey.interestOps(SelectionKey.OP_READ);
+			}
+		}
+
+		/**
+		 * Registers the connection with the selector or updates its interest set. This method must only be called by
+		 * the network thread.
+		 * 
+		 * @throws IOException
+		 *         thrown if the connection cannot be registered with the selector
+		 */
+		private synchronized void updateRegistration() throws IOException {
+
+			if (this.closed) {
+				return;
+			}
+
+			final int interestOps = this.writeInterest ? (SelectionKey.OP_READ | SelectionKey.OP_WRITE)
+				: SelectionKey.OP_READ;
+
+			if (this.selectionKey == null) {
+				this.selectionKey = this.socketChannel.register(selector, interestOps, this);
+			} else {
+				this.selectionKey.interestOps(interestOps);
+			}
+		}
+
+		/**
+		 * Reads all frames which are currently available from the socket and passes them on to the RPC service. This
+		 * method must only be called by the network thread.
+		 * 
+		 * @return <code>true</code> if the connection is still open, <code>false</code> if the remote RPC service has
+		 *         closed the connection
+		 * @throws IOException
+		 *         thrown if an error occurs while reading the data or a corrupt frame is received
+		 */
+		private boolean read() throws IOException {
+
+			while (true) {
+
+				if (this.frame == null) {
+
+					if (this.socketChannel.read(this.frameHeader) < 0) {
+						return false;
+					}
+
+					if (this.frameHeader.hasRemaining()) {
+						return true;
+					}
+
+					this.frameHeader.flip();
+					final int length = this.frameHeader.getInt();
+					this.frameHeader.clear();
+
+					if (length <= 0 || length > MAXIMUM_FRAME_SIZE) {
+						throw new IOException("Received frame of invalid length " + length + " from "
+							+ this.remoteSocketAddress);
+					}
+
+					this.frame = ByteBuffer.allocate(length);
+				}
+
+				if (this.socketChannel.read(this.frame) < 0) {
+					return false;
+				}
+
+				if (this.frame.hasRemaining()) {
+					return true;
+				}
+
+				rpcService.processIncomingRPCMessage(this.remoteSocketAddress, new Input(this.frame.array()));
+				this.frame = null;
+			}
+		}
+
+		/**
+		 * Closes the connection and drops all pending data.
+		 */
+		private void close() {
+
+			synchronized (this) {
+
+				if (this.closed) {
+					return;
+				}
+
+				this.closed = true;
+				this.pendingWrites.clear();
+
+				if (this.selectionKey != null) {
+					this.selectionKey.cancel();
+				}
+
+				if (this.socketChannel != null) {
+					try {
+						this.socketChannel.close();
+					} catch (IOException ioe) {
+						Log.debug("Caught exception while closing connection to " + this.remoteSocketAddress + ": ",
+							ioe);
+					}
+				}
+			}
+
+			connections.remove(this.remoteSocketAddress, this);
+		}
+	}
+
+	/**
+	 * Initializes a new TCP network thread.
+	 * 
+	 * @param rpcService
+	 *        reference to the RPC service
+	 * @param rpcPort
+	 *        the port to accept incoming connections on, <code>-1</code> to accept no incoming connections
+	 * @throws IOException
+	 *         thrown if the selector or the server socket cannot be created
+	 */
+	TCPNetworkThread(final RPCService rpcService, final int rpcPort) throws IOException {
+		super("RPC TCP Network Thread");
+
+		this.rpcService = rpcService;
+		this.selector = Selector.open();
+
+		if (rpcPort == -1) {
+			this.serverSocketChannel = null;
+		} else {
+			this.serverSocketChannel = ServerSocketChannel.open();
+			try {
+				this.serverSocketChannel.socket().setReuseAddress(true);
+				this.serverSocketChannel.socket().bind(new InetSocketAddress(rpcPort));
+				this.serverSocketChannel.configureBlocking(false);
+				this.serverSocketChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+			} catch (IOException ioe) {
+				this.serverSocketChannel.close();
+				this.selector.close();
+				throw ioe;
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void run() {
+
+		while (!this.shutdownRequested) {
+
+			try {
+				this.selector.select();
+			} catch (IOException ioe) {
+				Log.error("Shutting down TCP network thread due to error: ", ioe);
+				break;
+			}
+
+			Connection connection;
+			while ((connection = this.connectionsToUpdate.poll()) != null) {
+				try {
+					connection.updateRegistration();
+				} catch (IOException ioe) {
+					Log.error("Cannot register connection to " + connection.remoteSocketAddress + ": ", ioe);
+					connection.close();
+				}
+			}
+
+			final Iterator<SelectionKey> it = this.selector.selectedKeys().iterator();
+			while (it.hasNext()) {
+
+				final SelectionKey key = it.next();
+				it.remove();
+
+				if (!key.isValid()) {
+					continue;
+				}
+
+				if (key.isAcceptable()) {
+					acceptConnections();
+					continue;
+				}
+
+				connection = (Connection) key.attachment();
+				try {
+					if (key.isReadable() && !connection.read()) {
+						connection.close();
+						continue;
+					}
+					if (key.isValid() && key.isWritable()) {
+						connection.writeAsynchronously();
+					}
+				} catch (CancelledKeyException cke) {
+					connection.close();
+				} catch (IOException ioe) {
+					Log.debug("Closing connection to " + connection.remoteSocketAddress + " due to error: ", ioe);
+					connection.close();
+				}
+			}
+		}
+
+		// Close all remaining connections
+		final Iterator<Connection> it = this.connections.values().iterator();
+		while (it.hasNext()) {
+			it.next().close();
+		}
+
+		try {
+			if (this.serverSocketChannel != null) {
+				this.serverSocketChannel.close();
+			}
+			this.selector.close();
+		} catch (IOException ioe) {
+			Log.debug("Caught exception while shutting down TCP network thread: ", ioe);
+		}
+	}
+
+	/**
+	 * Accepts all pending incoming connections and registers them with the selector.
+	 */
+	private void acceptConnections() {
+
+		while (true) {
+
+			SocketChannel socketChannel = null;
+			try {
+				socketChannel = this.serverSocketChannel.accept();
+				if (socketChannel == null) {
+					return;
+				}
+
+				socketChannel.configureBlocking(false);
+				socketChannel.socket().setTcpNoDelay(true);
+
+			} catch (IOException ioe) {
+				Log.error("Caught exception while accepting incoming connection: ", ioe);
+				if (socketChannel != null) {
+					try {
+						socketChannel.close();
+					} catch (IOException e) {
+					}
+				}
+				return;
+			}
+
+			final InetSocketAddress remoteSocketAddress = (InetSocketAddress) socketChannel.socket()
+				.getRemoteSocketAddress();
+			final Connection connection = new Connection(remoteSocketAddress, socketChannel);
+			final Connection oldConnection = this.connections.put(remoteSocketAddress, connection);
+			if (oldConnection != null) {
+				oldConnection.close();
+			}
+
+			try {
+				connection.updateRegistration();
+			} catch (IOException ioe) {
+				Log.error("Cannot register connection from " + remoteSocketAddress + ": ", ioe);
+				connection.close();
+			}
+		}
+	}
+
+	/**
+	 * Requests the network thread to update the registration of the given connection with the selector.
+	 * 
+	 * @param connection
+	 *        the connection whose registration shall be updated
+	 */
+	private void requestUpdate(final Connection connection) {
+
+		this.connectionsToUpdate.add(connection);
+		this.selector.wakeup();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int send(final InetSocketAddress remoteSocketAddress, final byte[] data, final int length)
+			throws IOException {
+
+		while (true) {
+
+			if (this.shutdownRequested) {
+				throw new IOException("TCP network thread has already been shut down");
+			}
+
+			Connection connection = this.connections.get(remoteSocketAddress);
+			if (connection == null) {
+				final Connection newConnection = new Connection(remoteSocketAddress, null);
+				connection = this.connections.putIfAbsent(remoteSocketAddress, newConnection);
+				if (connection == null) {
+					connection = newConnection;
+				}
+			}
+
+			if (connection.send(data, length)) {
+				return 0;
+			}
+
+			// The connection has been closed in the meantime, try again with a new one
+			this.connections.remove(remoteSocketAddress, connection);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getNumberOfPackets(final int length) {
+
+		return 1;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isReliable() {
+
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void cleanUpStaleState() {
+		// Nothing to do here, connections are closed by their peers or as a result of errors
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void shutdown() throws InterruptedException {
+
+		this.shutdownRequested = true;
+		this.selector.wakeup();
+		join();
+	}
+}
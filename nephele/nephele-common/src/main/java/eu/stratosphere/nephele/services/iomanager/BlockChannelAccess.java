@@ -62,6 +62,11 @@ public abstract class BlockChannelAccess<R extends IORequest, C extends Collecti
 	 * Flag marking this channel as closed;
 	 */
 	protected volatile boolean closed;
+	
+	/**
+	 * The maximal number of requests of this channel that the I/O thread serves with one I/O operation.
+	 */
+	private final int numRequestsToBundle;
 
 	// --------------------------------------------------------------------------------------------
 	
@@ -80,14 +85,41 @@ public abstract class BlockChannelAccess<R extends IORequest, C extends Collecti
 	protected BlockChannelAccess(Channel.ID channelID, RequestQueue<R> requestQueue,
 			C returnQueue, boolean writeEnabled)
 	throws IOException
+	{
+		this(channelID, requestQueue, returnQueue, writeEnabled, 1);
+	}
+	
+	/**
+	 * Creates a new channel access to the path indicated by the given ID. The channel accepts buffers to be
+	 * read/written and hands them to the asynchronous I/O thread. After being processed, the buffers 
+	 * are returned by adding the to the given queue.
+	 * <p>
+	 * Requests for consecutive blocks that are pending at the same time are served by the I/O thread with
+	 * a single scattering read or gathering write, combining up to the given number of requests.
+	 * 
+	 * @param channelID The id describing the path of the file that the channel accessed.
+	 * @param requestQueue The queue that this channel hands its IO requests to.
+	 * @param returnQueue The queue to which the segments are added after their buffer was written.
+	 * @param writeEnabled Flag describing whether the channel should be opened in read/write mode, rather
+	 *                     than in read-only mode.
+	 * @param numRequestsToBundle The maximal number of requests to serve with one I/O operation.
+	 * @throws IOException Thrown, if the channel could no be opened.
+	 */
+	protected BlockChannelAccess(Channel.ID channelID, RequestQueue<R> requestQueue,
+			C returnQueue, boolean writeEnabled, int numRequestsToBundle)
+	throws IOException
 	{
 		super(channelID, requestQueue, writeEnabled);
 		
 		if (requestQueue == null) {
 			throw new NullPointerException();
 		}
+		if (numRequestsToBundle < 1) {
+			throw new IllegalArgumentException("The number of requests to bundle must be at least one.");
+		}
 		
 		this.returnBuffers = returnQueue;
+		this.numRequestsToBundle = numRequestsToBundle;
 	}
 	
 	// --------------------------------------------------------------------------------------------
@@ -102,6 +134,16 @@ public abstract class BlockChannelAccess<R extends IORequest, C extends Collecti
 		return this.returnBuffers;
 	}
 	
+	/**
+	 * Gets the maximal number of requests of this channel that are served with one I/O operation.
+	 * 
+	 * @return The maximal number of requests per I/O operation.
+	 */
+	public int getNumRequestsToBundle()
+	{
+		return this.numRequestsToBundle;
+	}
+	
 	/* (non-Javadoc)
 	 * @see eu.stratosphere.nephele.services.iomanager.ChannelAccess#isClosed()
 	 */
@@ -212,23 +254,75 @@ final class SegmentReadRequest implements ReadRequest
 		this.channel = targetChannel;
 		this.segment = segment;
 	}
+	
+	/**
+	 * Gets the channel that issued this request.
+	 * 
+	 * @return The channel that issued this request.
+	 */
+	BlockChannelAccess<ReadRequest, ?> getChannel()
+	{
+		return this.channel;
+	}
+	
+	/**
+	 * Reads the blocks of the given requests, which must all belong to the same channel and be consecutive
+	 * in the channel's request order, with one scattering read.
+	 * 
+	 * @param requests The requests to serve.
+	 * @param num The number of requests in the array to serve.
+	 * @return The number of bytes read.
+	 * @throws IOException Thrown, if the read failed.
+	 */
+	static long readBundle(SegmentReadRequest[] requests, int num) throws IOException
+	{
+		final ByteBuffer[] buffers = new ByteBuffer[num];
+		try {
+			for (int i = 0; i < num; i++) {
+				final MemorySegment seg = requests[i].segment;
+				buffers[i] = seg.wrap(0, seg.size());
+			}
+		} catch (NullPointerException npex) {
+			// the memory of some request has been cleared asynchronously through task failing or canceling.
+			// serve the requests individually, which ignores the cleared ones
+			long bytes = 0;
+			for (int i = 0; i < num; i++) {
+				bytes += requests[i].readBlock();
+			}
+			return bytes;
+		}
+		
+		final FileChannel c = requests[0].channel.fileChannel;
+		long bytes = 0;
+		long read;
+		while (buffers[num - 1].hasRemaining() && (read = c.read(buffers, 0, num)) > 0) {
+			bytes += read;
+		}
+		return bytes;
+	}
 
 	/* (non-Javadoc)
 	 * @see eu.stratosphere.nephele.services.iomanager.ReadRequest#read(java.nio.channels.FileChannel)
 	 */
 	@Override
 	public void read() throws IOException
+	{
+		readBlock();
+	}
+	
+	private long readBlock() throws IOException
 	{
 		final FileChannel c = this.channel.fileChannel;
 		if (c.size() - c.position() > 0) {
 			try {
 				final ByteBuffer wrapper = this.segment.wrap(0, this.segment.size());
-				this.channel.fileChannel.read(wrapper);
+				return this.channel.fileChannel.read(wrapper);
 			} catch (NullPointerException npex) {
 				// the memory has been cleared asynchronouosly through task failing or canceling
 				// ignore the request, since the result cannot be read
 			}
 		}
+		return 0;
 	}
 
 	/* (non-Javadoc)
@@ -257,18 +351,69 @@ final class SegmentWriteRequest implements WriteRequest
 		this.channel = targetChannel;
 		this.segment = segment;
 	}
+	
+	/**
+	 * Gets the channel that issued this request.
+	 * 
+	 * @return The channel that issued this request.
+	 */
+	BlockChannelAccess<WriteRequest, ?> getChannel()
+	{
+		return this.channel;
+	}
+	
+	/**
+	 * Writes the blocks of the given requests, which must all belong to the same channel and be consecutive
+	 * in the channel's request order, with one gathering write.
+	 * 
+	 * @param requests The requests to serve.
+	 * @param num The number of requests in the array to serve.
+	 * @return The number of bytes written.
+	 * @throws IOException Thrown, if the write failed.
+	 */
+	static long writeBundle(SegmentWriteRequest[] requests, int num) throws IOException
+	{
+		final ByteBuffer[] buffers = new ByteBuffer[num];
+		try {
+			for (int i = 0; i < num; i++) {
+				final MemorySegment seg = requests[i].segment;
+				buffers[i] = seg.wrap(0, seg.size());
+			}
+		} catch (NullPointerException npex) {
+			// the memory of some request has been cleared asynchronously through task failing or canceling.
+			// serve the requests individually, which skips the cleared ones
+			long bytes = 0;
+			for (int i = 0; i < num; i++) {
+				bytes += requests[i].writeBlock();
+			}
+			return bytes;
+		}
+		
+		final FileChannel c = requests[0].channel.fileChannel;
+		long bytes = 0;
+		while (buffers[num - 1].hasRemaining()) {
+			bytes += c.write(buffers, 0, num);
+		}
+		return bytes;
+	}
 
 	/* (non-Javadoc)
 	 * @see eu.stratosphere.nephele.services.iomanager.ReadRequest#read(java.nio.channels.FileChannel)
 	 */
 	@Override
 	public void write() throws IOException
+	{
+		writeBlock();
+	}
+	
+	private long writeBlock() throws IOException
 	{
 		try {
-			this.channel.fileChannel.write(this.segment.wrap(0, this.segment.size()));
+			return this.channel.fileChannel.write(this.segment.wrap(0, this.segment.size()));
 		} catch (NullPointerException npex) {
 			// the memory has been cleared asynchronouosly through task failing or canceling
 			// ignore the request, since there is nothing to write.
+			return 0;
 		}
 	}
 
@@ -47,13 +47,14 @@ public class BlockChannelWriter extends BlockChannelAccess<WriteRequest, LinkedB
 	 * @param requestQueue The request queue of the asynchronous writer thread, to which the I/O requests
 	 *                     are added.
 	 * @param returnSegments The return queue, to which the processed Memory Segments are added.
+	 * @param numRequestsToBundle The maximal number of pending requests to serve with one I/O operation.
 	 * @throws IOException Thrown, if the underlying file channel could not be opened exclusively.
 	 */
 	protected BlockChannelWriter(Channel.ID channelID, RequestQueue<WriteRequest> requestQueue,
 			LinkedBlockingQueue<MemorySegment> returnSegments, int numRequestsToBundle)
 	throws IOException
 	{
-		super(channelID, requestQueue, returnSegments, true);
+		super(channelID, requestQueue, returnSegments, true, numRequestsToBundle);
 	}
 
 	/**
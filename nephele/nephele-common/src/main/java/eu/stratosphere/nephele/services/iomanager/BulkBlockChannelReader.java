@@ -34,7 +34,7 @@ public class BulkBlockChannelReader extends BlockChannelAccess<ReadRequest, Arra
 			List<MemorySegment> sourceSegments, int numBlocks)
 	throws IOException
 	{
-		super(channelID, requestQueue, new ArrayList<MemorySegment>(numBlocks), false);
+		super(channelID, requestQueue, new ArrayList<MemorySegment>(numBlocks), false, Math.max(numBlocks, 1));
 		
 		// sanity check
 		if (sourceSegments.size() < numBlocks) {
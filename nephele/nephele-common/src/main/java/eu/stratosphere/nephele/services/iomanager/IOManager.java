@@ -38,6 +38,11 @@ public final class IOManager implements UncaughtExceptionHandler
 	 * Logging.
 	 */
 	private static final Log LOG = LogFactory.getLog(IOManager.class);
+	
+	/**
+	 * The maximal number of block requests that an I/O thread serves with one I/O operation.
+	 */
+	private static final int MAX_REQUESTS_PER_OPERATION = 64;
 
 	/**
 	 * The default temp paths for anonymous Channels.
@@ -106,7 +111,7 @@ public final class IOManager implements UncaughtExceptionHandler
 		// start a write worker thread for each directory
 		this.writers = new WriterThread[paths.length];
 		for (int i = 0; i < this.writers.length; i++) {
-			final WriterThread t = new WriterThread();
+			final WriterThread t = new WriterThread(paths[i]);
 			this.writers[i] = t;
 			t.setName("IOManager writer thread #" + (i + 1));
 			t.setDaemon(true);
@@ -117,7 +122,7 @@ public final class IOManager implements UncaughtExceptionHandler
 		// start a reader worker thread for each directory
 		this.readers = new ReaderThread[paths.length];
 		for (int i = 0; i < this.readers.length; i++) {
-			final ReaderThread t = new ReaderThread();
+			final ReaderThread t = new ReaderThread(paths[i]);
 			this.readers[i] = t;
 			t.setName("IOManager reader thread #" + (i + 1));
 			t.setDaemon(true);
@@ -168,6 +173,13 @@ public final class IOManager implements UncaughtExceptionHandler
 				}
 			}
 			catch (InterruptedException iex) {}
+			
+			if (LOG.isDebugEnabled()) {
+				for (int i = 0; i < this.readers.length; i++) {
+					LOG.debug("I/O reads " + this.readers[i].statistics);
+					LOG.debug("I/O writes " + this.writers[i].statistics);
+				}
+			}
 		}
 	}
 	
@@ -202,6 +214,38 @@ public final class IOManager implements UncaughtExceptionHandler
 		shutdown();	
 	}
 
+	// ------------------------------------------------------------------------
+	//                              Statistics
+	// ------------------------------------------------------------------------
+	
+	/**
+	 * Gets the statistics of the reading threads, one for each temp directory, in the order of the directories.
+	 * 
+	 * @return The statistics of the reads per temp directory.
+	 */
+	public IOStatistics[] getReadStatistics()
+	{
+		final IOStatistics[] stats = new IOStatistics[this.readers.length];
+		for (int i = 0; i < stats.length; i++) {
+			stats[i] = this.readers[i].statistics;
+		}
+		return stats;
+	}
+	
+	/**
+	 * Gets the statistics of the writing threads, one for each temp directory, in the order of the directories.
+	 * 
+	 * @return The statistics of the writes per temp directory.
+	 */
+	public IOStatistics[] getWriteStatistics()
+	{
+		final IOStatistics[] stats = new IOStatistics[this.writers.length];
+		for (int i = 0; i < stats.length; i++) {
+			stats[i] = this.writers[i].statistics;
+		}
+		return stats;
+	}
+
 	// ------------------------------------------------------------------------
 	//                          Channel Instantiations
 	// ------------------------------------------------------------------------
@@ -481,6 +525,8 @@ public final class IOManager implements UncaughtExceptionHandler
 	private static final class ReaderThread extends Thread
 	{
 		protected final RequestQueue<ReadRequest> requestQueue;
+		
+		protected final IOStatistics statistics;
 
 		private volatile boolean alive;
 
@@ -488,9 +534,10 @@ public final class IOManager implements UncaughtExceptionHandler
 		// Constructors / Destructors
 		// ---------------------------------------------------------------------
 		
-		protected ReaderThread()
+		protected ReaderThread(String path)
 		{
 			this.requestQueue = new RequestQueue<ReadRequest>();
+			this.statistics = new IOStatistics(path, this.requestQueue);
 			this.alive = true;
 		}
 		
@@ -527,6 +574,8 @@ public final class IOManager implements UncaughtExceptionHandler
 		@Override
 		public void run()
 		{
+			final SegmentReadRequest[] bundle = new SegmentReadRequest[MAX_REQUESTS_PER_OPERATION];
+			
 			while (this.alive)
 			{
 				
@@ -544,12 +593,45 @@ public final class IOManager implements UncaughtExceptionHandler
 					}
 				}
 				
+				final int queueDepth = this.requestQueue.size() + 1;
+				final long startTime = System.nanoTime();
+				
+				// pending requests for the next blocks of the same channel are served with one scattering read
+				int numRequests = 0;
+				if (request instanceof SegmentReadRequest) {
+					final SegmentReadRequest first = (SegmentReadRequest) request;
+					final BlockChannelAccess<ReadRequest, ?> channel = first.getChannel();
+					final int maxRequests = Math.min(channel.getNumRequestsToBundle(), bundle.length);
+					
+					bundle[numRequests++] = first;
+					while (numRequests < maxRequests) {
+						final ReadRequest next = this.requestQueue.peek();
+						if (!(next instanceof SegmentReadRequest && ((SegmentReadRequest) next).getChannel() == channel)) {
+							break;
+						}
+						// a concurrent shutdown may have drained the queue in the meantime
+						final ReadRequest polled = this.requestQueue.poll();
+						if (polled != next) {
+							if (polled != null) {
+								polled.requestDone(new IOException("IO-Manager has been closed."));
+							}
+							break;
+						}
+						bundle[numRequests++] = (SegmentReadRequest) next;
+					}
+				}
+				
 				// remember any IO exception that occurs, so it can be reported to the writer
 				IOException ioex = null;
+				long bytes = 0;
 
 				try {
 					// read buffer from the specified channel
-					request.read();
+					if (numRequests > 0) {
+						bytes = SegmentReadRequest.readBundle(bundle, numRequests);
+					} else {
+						request.read();
+					}
 				}
 				catch (IOException e) {
 					ioex = e;
@@ -560,8 +642,19 @@ public final class IOManager implements UncaughtExceptionHandler
 						t.getMessage() == null ? "." : ": ", t);
 				}
 
+				// account for the operation before the requests are done, such that the statistics include it
+				// once the channel's close() returns
+				this.statistics.operationServed(Math.max(numRequests, 1), bytes, System.nanoTime() - startTime, queueDepth);
+
 				// invoke the processed buffer handler of the request issuing reader object
-				request.requestDone(ioex);
+				if (numRequests > 0) {
+					for (int i = 0; i < numRequests; i++) {
+						bundle[i].requestDone(ioex);
+						bundle[i] = null;
+					}
+				} else {
+					request.requestDone(ioex);
+				}
 			} // end while alive
 		}
 		
@@ -573,6 +666,8 @@ public final class IOManager implements UncaughtExceptionHandler
 	private static final class WriterThread extends Thread
 	{
 		protected final RequestQueue<WriteRequest> requestQueue;
+		
+		protected final IOStatistics statistics;
 
 		private volatile boolean alive;
 
@@ -580,9 +675,10 @@ public final class IOManager implements UncaughtExceptionHandler
 		// Constructors / Destructors
 		// ---------------------------------------------------------------------
 
-		protected WriterThread()
+		protected WriterThread(String path)
 		{
 			this.requestQueue = new RequestQueue<WriteRequest>();
+			this.statistics = new IOStatistics(path, this.requestQueue);
 			this.alive = true;
 		}
 
@@ -620,6 +716,8 @@ public final class IOManager implements UncaughtExceptionHandler
 		@Override
 		public void run()
 		{
+			final SegmentWriteRequest[] bundle = new SegmentWriteRequest[MAX_REQUESTS_PER_OPERATION];
+			
 			while (this.alive) {
 				
 				WriteRequest request = null;
@@ -637,12 +735,45 @@ public final class IOManager implements UncaughtExceptionHandler
 					}
 				}
 				
+				final int queueDepth = this.requestQueue.size() + 1;
+				final long startTime = System.nanoTime();
+				
+				// pending requests for the next blocks of the same channel are served with one gathering write
+				int numRequests = 0;
+				if (request instanceof SegmentWriteRequest) {
+					final SegmentWriteRequest first = (SegmentWriteRequest) request;
+					final BlockChannelAccess<WriteRequest, ?> channel = first.getChannel();
+					final int maxRequests = Math.min(channel.getNumRequestsToBundle(), bundle.length);
+					
+					bundle[numRequests++] = first;
+					while (numRequests < maxRequests) {
+						final WriteRequest next = this.requestQueue.peek();
+						if (!(next instanceof SegmentWriteRequest && ((SegmentWriteRequest) next).getChannel() == channel)) {
+							break;
+						}
+						// a concurrent shutdown may have drained the queue in the meantime
+						final WriteRequest polled = this.requestQueue.poll();
+						if (polled != next) {
+							if (polled != null) {
+								polled.requestDone(new IOException("Writer thread has been closed."));
+							}
+							break;
+						}
+						bundle[numRequests++] = (SegmentWriteRequest) next;
+					}
+				}
+				
 				// remember any IO exception that occurs, so it can be reported to the writer
 				IOException ioex = null;
+				long bytes = 0;
 				
 				try {
 					// write buffer to the specified channel
-					request.write();
+					if (numRequests > 0) {
+						bytes = SegmentWriteRequest.writeBundle(bundle, numRequests);
+					} else {
+						request.write();
+					}
 				}
 				catch (IOException e) {
 					ioex = e;
@@ -653,8 +784,19 @@ public final class IOManager implements UncaughtExceptionHandler
 						t.getMessage() == null ? "." : ": ", t);
 				}
 
+				// account for the operation before the requests are done, such that the statistics include it
+				// once the channel's close() returns
+				this.statistics.operationServed(Math.max(numRequests, 1), bytes, System.nanoTime() - startTime, queueDepth);
+				
 				// invoke the processed buffer handler of the request issuing writer object
-				request.requestDone(ioex);
+				if (numRequests > 0) {
+					for (int i = 0; i < numRequests; i++) {
+						bundle[i].requestDone(ioex);
+						bundle[i] = null;
+					}
+				} else {
+					request.requestDone(ioex);
+				}
 			} // end while alive
 		}
 		
@@ -0,0 +1,152 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.services.iomanager;
+
+/**
+ * Statistics of one I/O thread of the {@link IOManager}, which serves the requests for one temp directory.
+ * The counters are only updated by the I/O thread itself, so they may be read at any time without locking,
+ * but the values of different counters are not guaranteed to be consistent with each other.
+ */
+public final class IOStatistics
+{
+	private final String path;
+
+	private final RequestQueue<?> queue;
+
+	private volatile long numRequests;
+
+	private volatile long numOperations;
+
+	private volatile long numBytes;
+
+	private volatile long busyNanos;
+
+	private volatile int maxQueueDepth;
+
+	// --------------------------------------------------------------------------------------------
+
+	IOStatistics(String path, RequestQueue<?> queue)
+	{
+		this.path = path;
+		this.queue = queue;
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/**
+	 * Records a served I/O operation, which may have combined multiple requests.
+	 *
+	 * @param requests The number of requests served by the operation.
+	 * @param bytes The number of bytes transferred.
+	 * @param nanos The time the operation took, in nanoseconds.
+	 * @param queueDepth The number of requests that were pending when the operation started.
+	 */
+	void operationServed(int requests, long bytes, long nanos, int queueDepth)
+	{
+		this.numRequests += requests;
+		this.numOperations++;
+		this.numBytes += bytes;
+		this.busyNanos += nanos;
+		if (queueDepth > this.maxQueueDepth) {
+			this.maxQueueDepth = queueDepth;
+		}
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/**
+	 * Gets the temp directory whose requests are described by these statistics.
+	 *
+	 * @return The temp directory.
+	 */
+	public String getPath()
+	{
+		return this.path;
+	}
+
+	/**
+	 * Gets the number of block requests that have been served.
+	 *
+	 * @return The number of served requests.
+	 */
+	public long getNumRequests()
+	{
+		return this.numRequests;
+	}
+
+	/**
+	 * Gets the number of I/O operations issued to the file system. Requests for consecutive blocks of the
+	 * same channel are served with one operation, so this number may be smaller than the number of requests.
+	 *
+	 * @return The number of I/O operations.
+	 */
+	public long getNumOperations()
+	{
+		return this.numOperations;
+	}
+
+	/**
+	 * Gets the number of bytes transferred.
+	 *
+	 * @return The number of bytes transferred.
+	 */
+	public long getNumBytes()
+	{
+		return this.numBytes;
+	}
+
+	/**
+	 * Gets the throughput in bytes per second, with respect to the time the thread spent in I/O operations.
+	 *
+	 * @return The throughput in bytes per second, or zero, if no operation has been served yet.
+	 */
+	public double getBytesPerSecond()
+	{
+		final long nanos = this.busyNanos;
+		return nanos == 0 ? 0.0 : this.numBytes * 1000000000.0 / nanos;
+	}
+
+	/**
+	 * Gets the number of requests that are currently waiting to be served.
+	 *
+	 * @return The current queue depth.
+	 */
+	public int getQueueDepth()
+	{
+		return this.queue.size();
+	}
+
+	/**
+	 * Gets the highest number of requests that were waiting when an operation started.
+	 *
+	 * @return The maximal observed queue depth.
+	 */
+	public int getMaxQueueDepth()
+	{
+		return this.maxQueueDepth;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return this.path + ": " + this.numRequests + " requests in " + this.numOperations + " operations, " +
+			this.numBytes + " bytes at " + ((long) getBytesPerSecond()) + " bytes/s, max queue depth " +
+			this.maxQueueDepth;
+	}
+}
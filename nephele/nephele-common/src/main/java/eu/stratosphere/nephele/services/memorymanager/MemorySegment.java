@@ -19,13 +19,22 @@ package eu.stratosphere.nephele.services.memorymanager;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.lang.reflect.Field;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 
 /**
  * This class represents a piece of memory allocated from the memory manager. The segment is backed
- * by a byte array and features random put and get methods for the basic types that are stored in a byte-wise
- * fashion in the memory.
+ * either by a byte array on the heap, or by a direct byte buffer outside the heap (off-heap memory).
+ * It features random put and get methods for the basic types that are stored in a byte-wise
+ * fashion in the memory. Multi-byte values are always stored in big-endian byte order, independent
+ * of the kind of memory backing the segment.
+ * <p>
+ * All accesses go through {@link sun.misc.Unsafe} with an (object, address) pair. For heap segments, the
+ * object is the backing array and the address the array-relative offset; for off-heap segments, the
+ * object is <code>null</code> and the address is the absolute memory address. That way, both kinds of
+ * segments share the same code and no access method needs to branch on the memory type.
  *
  * @author Alexander Alexandrov
  * @author Stephan Ewen
@@ -33,12 +42,57 @@ import java.nio.ByteBuffer;
 public class MemorySegment
 {
 	/**
-	 * The array in which the data is stored.
+	 * The unsafe handle for direct memory access.
+	 */
+	protected static final sun.misc.Unsafe UNSAFE = getUnsafe();
+	
+	/**
+	 * The offset of the first element in a byte array, relative to the array object.
+	 */
+	protected static final long BYTE_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(byte[].class);
+	
+	/**
+	 * The offset of the address field in direct byte buffers.
+	 */
+	private static final long BUFFER_ADDRESS_FIELD_OFFSET = getBufferAddressFieldOffset();
+	
+	/**
+	 * Flag indicating whether the native byte order is little endian, in which case the bytes of
+	 * multi-byte values must be reversed.
+	 */
+	private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+	
+	/**
+	 * The buffer size used when copying off-heap memory from or to streams.
+	 */
+	private static final int STREAM_COPY_CHUNK_SIZE = 4096;
+	
+	// -------------------------------------------------------------------------
+	
+	/**
+	 * The array in which the data is stored, or null, if the segment is off-heap or has been freed.
 	 */
 	protected byte[] memory;
 	
 	/**
-	 * The offset in the memory array where this segment starts.
+	 * The direct buffer holding the off-heap memory, or null, if the segment is on the heap or has been freed.
+	 * The reference also prevents the memory from being deallocated while the segment is in use.
+	 */
+	protected ByteBuffer offHeapBuffer;
+	
+	/**
+	 * The address of the segment's first byte. For heap segments, this address is relative to the backing
+	 * array, for off-heap segments it is absolute. Once the segment is freed, it is set beyond the limit.
+	 */
+	protected long address;
+	
+	/**
+	 * The address one byte past the segment's last byte.
+	 */
+	protected final long addressLimit;
+	
+	/**
+	 * The offset in the memory array (or direct buffer) where this segment starts.
 	 */
 	protected final int offset;
 	
@@ -57,17 +111,56 @@ public class MemorySegment
 	// -------------------------------------------------------------------------
 
 	/**
-	 * Creates a new memory segment of given size with the provided views.
+	 * Creates a new memory segment that represents the given part of the given byte array.
 	 * 
+	 * @param memory The byte array holding the segment's memory.
+	 * @param offset The offset in the array where the segment starts.
 	 * @param size The size of the memory segment.
-	 * @param inputView The input view to use.
-	 * @param outputView The output view to use.
 	 */
 	public MemorySegment(byte[] memory, int offset, int size)
-	{		
+	{
+		if (offset < 0 || size < 0 || offset > memory.length - size) {
+			throw new IndexOutOfBoundsException();
+		}
+		
 		this.memory = memory;
 		this.offset = offset;
 		this.size = size;
+		this.address = BYTE_ARRAY_BASE_OFFSET + offset;
+		this.addressLimit = this.address + size;
+	}
+	
+	/**
+	 * Creates a new memory segment that represents the given part of the given byte buffer. If the buffer
+	 * is a direct buffer, the segment is an off-heap segment. Otherwise, the segment is backed by the
+	 * buffer's array.
+	 * 
+	 * @param buffer The byte buffer holding the segment's memory.
+	 * @param offset The offset in the buffer where the segment starts.
+	 * @param size The size of the memory segment.
+	 * 
+	 * @throws IllegalArgumentException Thrown, if the given buffer is neither direct nor backed by an accessible array.
+	 */
+	public MemorySegment(ByteBuffer buffer, int offset, int size)
+	{
+		if (offset < 0 || size < 0 || offset > buffer.capacity() - size) {
+			throw new IndexOutOfBoundsException();
+		}
+		
+		if (buffer.isDirect()) {
+			this.offHeapBuffer = buffer;
+			this.offset = offset;
+			this.address = UNSAFE.getLong(buffer, BUFFER_ADDRESS_FIELD_OFFSET) + offset;
+		} else if (buffer.hasArray()) {
+			this.memory = buffer.array();
+			this.offset = buffer.arrayOffset() + offset;
+			this.address = BYTE_ARRAY_BASE_OFFSET + this.offset;
+		} else {
+			throw new IllegalArgumentException("The byte buffer is neither direct nor backed by an accessible array.");
+		}
+		
+		this.size = size;
+		this.addressLimit = this.address + size;
 	}
 
 	// -------------------------------------------------------------------------
@@ -81,12 +174,21 @@ public class MemorySegment
 	 * @return True, if the segment has been freed, false otherwise.
 	 */
 	public boolean isFreed() {
-		return this.memory == null;
+		return this.address > this.addressLimit;
+	}
+	
+	/**
+	 * Checks whether this memory segment is backed by off-heap memory, rather than by a byte array.
+	 * 
+	 * @return True, if the segment's memory lies outside the heap, false otherwise.
+	 */
+	public final boolean isOffHeap() {
+		return this.offHeapBuffer != null;
 	}
 	
 	/**
 	 * Gets the size of the memory segment, in bytes. Because segments
-	 * are backed by arrays, they cannot be larger than two GiBytes.
+	 * are backed by arrays or byte buffers, they cannot be larger than two GiBytes.
 	 * 
 	 * @return The size in bytes.
 	 */
@@ -99,8 +201,10 @@ public class MemorySegment
 	 * Since different regions of the backing array are used by different segments, the logical
 	 * positions in this view do not correspond to the indexes in the backing array and need
 	 * to be translated via the {@link #translateOffset(int)} method.
+	 * <p>
+	 * Off-heap segments have no backing array, in which case this method returns <code>null</code>.
 	 * 
-	 * @return The backing byte array.
+	 * @return The backing byte array, or null, if the segment is off-heap.
 	 */
 	public final byte[] getBackingArray() {
 		return this.memory;
@@ -108,6 +212,7 @@ public class MemorySegment
 
 	/**
 	 * Translates the given offset for this view into the offset for the backing array.
+	 * The result is only meaningful for segments that are backed by an array.
 	 * 
 	 * @param offset The offset to be translated.
 	 * @return The corresponding position in the backing array.
@@ -116,6 +221,17 @@ public class MemorySegment
 		return this.offset + offset;
 	}
 	
+	/**
+	 * Releases the memory of this segment. After this method has been called, every access to the
+	 * segment fails.
+	 */
+	protected void free() {
+		this.memory = null;
+		this.offHeapBuffer = null;
+		this.wrapper = null;
+		this.address = this.addressLimit + 1;
+	}
+	
 	// -------------------------------------------------------------------------
 	//                       Helper methods
 	// -------------------------------------------------------------------------
@@ -123,7 +239,8 @@ public class MemorySegment
 
 	/**
 	 * Wraps the chunk of the underlying memory located between <tt>offset<tt> and 
-	 * <tt>length</tt> in a NIO ByteBuffer.
+	 * <tt>length</tt> in a NIO ByteBuffer. For off-heap segments, the returned buffer is a
+	 * direct buffer, which allows I/O operations to bypass an intermediate copy.
 	 * 
 	 * @param offset The offset in the memory segment.
 	 * @param length The number of bytes to be wrapped as a buffer.
@@ -137,13 +254,18 @@ public class MemorySegment
 		}
 		
 		if (this.wrapper == null) {
-			this.wrapper = ByteBuffer.wrap(this.memory, this.offset + offset, length);
-		}
-		else {
-			this.wrapper.position(this.offset + offset);
-			this.wrapper.limit(this.offset + offset + length);
+			if (this.memory != null) {
+				this.wrapper = ByteBuffer.wrap(this.memory, this.offset + offset, length);
+				return this.wrapper;
+			} else if (this.offHeapBuffer != null) {
+				this.wrapper = this.offHeapBuffer.duplicate();
+			} else {
+				throw new IllegalStateException("The memory segment has been freed.");
+			}
 		}
 		
+		this.wrapper.limit(this.offset + offset + length);
+		this.wrapper.position(this.offset + offset);
 		return this.wrapper;
 	}
 
@@ -159,6 +281,10 @@ public class MemorySegment
 	// A safe solution is to subtract the delta from the limit, for example
 	// <code>position &lt; end - 3</code>. Since all indices are always positive, and the integer domain
 	// has one more negative value than positive values, this can never cause an underflow.
+	//
+	// The range checks are performed against the address limit rather than the size, such that accesses
+	// to a freed segment (whose address lies beyond its limit) fail as well, instead of accessing
+	// memory that does not belong to the segment any more.
 	// ------------------------------------------------------------------------------------------------------
 
 
@@ -172,8 +298,9 @@ public class MemorySegment
 	 *                                   the memory segment.
 	 */
 	public final byte get(int index) {
-		if (index >= 0 && index < this.size) {
-			return this.memory[this.offset + index];
+		final long pos = this.address + index;
+		if (index >= 0 && pos < this.addressLimit) {
+			return UNSAFE.getByte(this.memory, pos);
 		} else {
 			throw new IndexOutOfBoundsException();
 		}
@@ -190,8 +317,9 @@ public class MemorySegment
 	 *                                   the memory segment.
 	 */
 	public final MemorySegment put(int index, byte b) {
-		if (index >= 0 && index < this.size) {
-			this.memory[this.offset + index] = b;
+		final long pos = this.address + index;
+		if (index >= 0 && pos < this.addressLimit) {
+			UNSAFE.putByte(this.memory, pos, b);
 			return this;
 		} else {
 			throw new IndexOutOfBoundsException();
@@ -248,8 +376,13 @@ public class MemorySegment
 	 *                                   segment's end.
 	 */
 	public final MemorySegment get(int index, byte[] dst, int offset, int length) {
-		if (index >= 0 && index < this.size && index <= this.size - length && offset <= dst.length - length) {
-			System.arraycopy(this.memory, this.offset + index, dst, offset, length);
+		final long pos = this.address + index;
+		if (index >= 0 && length >= 0 && pos <= this.addressLimit - length && offset >= 0 && offset <= dst.length - length) {
+			if (this.memory != null) {
+				System.arraycopy(this.memory, this.offset + index, dst, offset, length);
+			} else {
+				UNSAFE.copyMemory(null, pos, dst, BYTE_ARRAY_BASE_OFFSET + offset, length);
+			}
 			return this;
 		} else {
 			throw new IndexOutOfBoundsException();
@@ -272,8 +405,13 @@ public class MemorySegment
 	 *                                   segment's end.
 	 */
 	public final MemorySegment put(int index, byte[] src, int offset, int length) {
-		if (index >= 0 && index < this.size && index <= this.size - length && offset <= src.length - length) {
-			System.arraycopy(src, offset, this.memory, this.offset + index, length);
+		final long pos = this.address + index;
+		if (index >= 0 && length >= 0 && pos <= this.addressLimit - length && offset >= 0 && offset <= src.length - length) {
+			if (this.memory != null) {
+				System.arraycopy(src, offset, this.memory, this.offset + index, length);
+			} else {
+				UNSAFE.copyMemory(src, BYTE_ARRAY_BASE_OFFSET + offset, null, pos, length);
+			}
 			return this;
 		} else {
 			throw new IndexOutOfBoundsException();
@@ -292,8 +430,20 @@ public class MemorySegment
 	 * @throws IOException Thrown, if the DataOutput encountered a problem upon writing.
 	 */
 	public final MemorySegment get(DataOutput out, int offset, int length) throws IOException {
-		if (offset >= 0 && offset < this.size && length >= 0 && offset <= this.size - length) {
-			out.write(this.memory, this.offset + offset, length);
+		final long pos = this.address + offset;
+		if (offset >= 0 && length >= 0 && pos <= this.addressLimit - length) {
+			if (this.memory != null) {
+				out.write(this.memory, this.offset + offset, length);
+			} else {
+				// off-heap memory is passed through a heap buffer
+				final byte[] chunk = new byte[Math.min(length, STREAM_COPY_CHUNK_SIZE)];
+				for (int copied = 0; copied < length; ) {
+					final int num = Math.min(chunk.length, length - copied);
+					UNSAFE.copyMemory(null, pos + copied, chunk, BYTE_ARRAY_BASE_OFFSET, num);
+					out.write(chunk, 0, num);
+					copied += num;
+				}
+			}
 			return this;
 		} else {
 			throw new IndexOutOfBoundsException();
@@ -313,13 +463,120 @@ public class MemorySegment
 	 *                     such as an End-Of-File.
 	 */
 	public final MemorySegment put(DataInput in, int offset, int length) throws IOException {
-		if (offset >= 0 && offset < this.size && length >= 0 && offset <= this.size - length) {
-			in.readFully(this.memory, this.offset + offset, length);
+		final long pos = this.address + offset;
+		if (offset >= 0 && length >= 0 && pos <= this.addressLimit - length) {
+			if (this.memory != null) {
+				in.readFully(this.memory, this.offset + offset, length);
+			} else {
+				// off-heap memory is filled through a heap buffer
+				final byte[] chunk = new byte[Math.min(length, STREAM_COPY_CHUNK_SIZE)];
+				for (int copied = 0; copied < length; ) {
+					final int num = Math.min(chunk.length, length - copied);
+					in.readFully(chunk, 0, num);
+					UNSAFE.copyMemory(chunk, BYTE_ARRAY_BASE_OFFSET, null, pos + copied, num);
+					copied += num;
+				}
+			}
 			return this;
 		} else {
 			throw new IndexOutOfBoundsException();
 		}
 	}
+	
+	/**
+	 * Bulk copy method. Copies <code>numBytes</code> bytes from this memory segment, starting at
+	 * position <code>offset</code>, to the target memory segment, starting at position <code>targetOffset</code>.
+	 * The source and target segment may be of different memory types (heap or off-heap).
+	 * 
+	 * @param offset The position where the bytes are started to be read from in this memory segment.
+	 * @param target The memory segment to copy the bytes to.
+	 * @param targetOffset The position in the target memory segment to copy the chunk to.
+	 * @param numBytes The number of bytes to copy.
+	 * 
+	 * @throws IndexOutOfBoundsException Thrown, if either of the offsets is invalid, or the source segment does not
+	 *                                   contain the given number of bytes (starting from offset), or the target
+	 *                                   segment does not have enough space for the bytes (counting from targetOffset).
+	 */
+	public final void copyTo(int offset, MemorySegment target, int targetOffset, int numBytes) {
+		final long thisPointer = this.address + offset;
+		final long otherPointer = target.address + targetOffset;
+		
+		if (numBytes >= 0 && offset >= 0 && targetOffset >= 0 &&
+				thisPointer <= this.addressLimit - numBytes && otherPointer <= target.addressLimit - numBytes)
+		{
+			if (this.memory != null && target.memory != null) {
+				System.arraycopy(this.memory, this.offset + offset, target.memory, target.offset + targetOffset, numBytes);
+			} else {
+				UNSAFE.copyMemory(this.memory, thisPointer, target.memory, otherPointer, numBytes);
+			}
+		} else {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+	
+	/**
+	 * Compares two memory segment regions byte-wise, interpreting the bytes as unsigned values.
+	 * The bytes are compared eight at a time, as long as possible.
+	 * 
+	 * @param seg2 The segment to compare this segment with.
+	 * @param offset1 The offset in this segment where the compared region starts.
+	 * @param offset2 The offset in the other segment where the compared region starts.
+	 * @param len The number of bytes to compare.
+	 * @return A negative number, zero, or a positive number, if the region in this segment is smaller, equal,
+	 *         or larger than the region in the other segment.
+	 *         
+	 * @throws IndexOutOfBoundsException Thrown, if any of the regions exceeds its segment's bounds.
+	 */
+	public final int compare(MemorySegment seg2, int offset1, int offset2, int len) {
+		long pos1 = this.address + offset1;
+		long pos2 = seg2.address + offset2;
+		
+		if (len < 0 || offset1 < 0 || offset2 < 0 || pos1 > this.addressLimit - len || pos2 > seg2.addressLimit - len) {
+			throw new IndexOutOfBoundsException();
+		}
+		
+		final Object mem1 = this.memory;
+		final Object mem2 = seg2.memory;
+		
+		while (len >= 8) {
+			long l1 = UNSAFE.getLong(mem1, pos1);
+			long l2 = UNSAFE.getLong(mem2, pos2);
+			
+			if (l1 != l2) {
+				if (LITTLE_ENDIAN) {
+					l1 = Long.reverseBytes(l1);
+					l2 = Long.reverseBytes(l2);
+				}
+				// unsigned comparison
+				return ((l1 < l2) ^ (l1 < 0) ^ (l2 < 0)) ? -1 : 1;
+			}
+			pos1 += 8;
+			pos2 += 8;
+			len -= 8;
+		}
+		
+		int val = 0;
+		for (; len > 0 && (val = (UNSAFE.getByte(mem1, pos1) & 0xff) - (UNSAFE.getByte(mem2, pos2) & 0xff)) == 0; len--, pos1++, pos2++);
+		return val;
+	}
+	
+	/**
+	 * Swaps the bytes of a region in this segment with the bytes of a region of the same length
+	 * in another segment.
+	 * 
+	 * @param tempBuffer A temporary buffer that holds at least <code>len</code> bytes.
+	 * @param seg2 The segment to swap the bytes with.
+	 * @param offset1 The offset in this segment where the swapped region starts.
+	 * @param offset2 The offset in the other segment where the swapped region starts.
+	 * @param len The number of bytes to swap.
+	 * 
+	 * @throws IndexOutOfBoundsException Thrown, if any of the regions exceeds its segment's bounds.
+	 */
+	public final void swapBytes(byte[] tempBuffer, MemorySegment seg2, int offset1, int offset2, int len) {
+		get(offset1, tempBuffer, 0, len);
+		seg2.copyTo(offset2, this, offset1, len);
+		seg2.put(offset2, tempBuffer, 0, len);
+	}
 
 	/**
 	 * Reads one byte at the given position and returns its boolean
@@ -332,8 +589,9 @@ public class MemorySegment
 	 *                                   size minus 1.
 	 */
 	public final boolean getBoolean(int index) {
-		if (index >= 0 && index < this.size) {
-			return this.memory[this.offset + index] != 0;
+		final long pos = this.address + index;
+		if (index >= 0 && pos < this.addressLimit) {
+			return UNSAFE.getByte(this.memory, pos) != 0;
 		} else {
 			throw new IndexOutOfBoundsException();
 		}
@@ -351,8 +609,9 @@ public class MemorySegment
 	 *                                   size minus 1.
 	 */
 	public final MemorySegment putBoolean(int index, boolean value) {
-		if (index >= 0 && index < this.size) {
-			this.memory[this.offset + index] = (byte) (value ? 1 : 0);
+		final long pos = this.address + index;
+		if (index >= 0 && pos < this.addressLimit) {
+			UNSAFE.putByte(this.memory, pos, (byte) (value ? 1 : 0));
 			return this;
 		} else {
 			throw new IndexOutOfBoundsException();
@@ -370,9 +629,10 @@ public class MemorySegment
 	 *                                   size minus 2.
 	 */
 	public final char getChar(int index) {
-		if (index >= 0 && index < this.size - 1) {
-			return (char) ( ((this.memory[this.offset + index + 0] & 0xff) << 8) | 
-					         (this.memory[this.offset + index + 1] & 0xff) );
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 2) {
+			final char value = UNSAFE.getChar(this.memory, pos);
+			return LITTLE_ENDIAN ? Character.reverseBytes(value) : value;
 		} else {
 			throw new IndexOutOfBoundsException();
 		}
@@ -390,9 +650,9 @@ public class MemorySegment
 	 *                                   size minus 2.
 	 */
 	public final MemorySegment putChar(int index, char value) {
-		if (index >= 0 && index < this.size - 1) {
-			this.memory[this.offset + index + 0] = (byte) (value >> 8);
-			this.memory[this.offset + index + 1] = (byte) value;
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 2) {
+			UNSAFE.putChar(this.memory, pos, LITTLE_ENDIAN ? Character.reverseBytes(value) : value);
 			return this;
 		} else {
 			throw new IndexOutOfBoundsException();
@@ -410,10 +670,10 @@ public class MemorySegment
 	 *                                   size minus 2.
 	 */
 	public final short getShort(int index) {
-		if (index >= 0 && index < this.size - 1) {
-			return (short) (
-					((this.memory[this.offset + index + 0] & 0xff) << 8) |
-					((this.memory[this.offset + index + 1] & 0xff)) );
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 2) {
+			final short value = UNSAFE.getShort(this.memory, pos);
+			return LITTLE_ENDIAN ? Short.reverseBytes(value) : value;
 		} else {
 			throw new IndexOutOfBoundsException();
 		}
@@ -431,9 +691,9 @@ public class MemorySegment
 	 *                                   size minus 2.
 	 */
 	public final MemorySegment putShort(int index, short value) {
-		if (index >= 0 && index < this.size - 1) {
-			this.memory[this.offset + index + 0] = (byte) (value >> 8);
-			this.memory[this.offset + index + 1] = (byte) value;
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 2) {
+			UNSAFE.putShort(this.memory, pos, LITTLE_ENDIAN ? Short.reverseBytes(value) : value);
 			return this;
 		} else {
 			throw new IndexOutOfBoundsException();
@@ -451,11 +711,10 @@ public class MemorySegment
 	 *                                   size minus 4.
 	 */
 	public final int getInt(int index) {
-		if (index >= 0 && index < this.size - 3) {
-			return ((this.memory[this.offset + index + 0] & 0xff) << 24)
-				| ((this.memory[this.offset + index + 1] & 0xff) << 16)
-				| ((this.memory[this.offset + index + 2] & 0xff) << 8)
-				| ((this.memory[this.offset + index + 3] & 0xff) << 0);
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 4) {
+			final int value = UNSAFE.getInt(this.memory, pos);
+			return LITTLE_ENDIAN ? Integer.reverseBytes(value) : value;
 		} else {
 			throw new IndexOutOfBoundsException();
 		}
@@ -473,11 +732,9 @@ public class MemorySegment
 	 *                                   size minus 4.
 	 */
 	public final MemorySegment putInt(int index, int value) {
-		if (index >= 0 && index < this.size - 3) {
-			this.memory[this.offset + index + 0] = (byte) (value >> 24);
-			this.memory[this.offset + index + 1] = (byte) (value >> 16);
-			this.memory[this.offset + index + 2] = (byte) (value >> 8);
-			this.memory[this.offset + index + 3] = (byte) value;
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 4) {
+			UNSAFE.putInt(this.memory, pos, LITTLE_ENDIAN ? Integer.reverseBytes(value) : value);
 			return this;
 		} else {
 			throw new IndexOutOfBoundsException();
@@ -495,15 +752,10 @@ public class MemorySegment
 	 *                                   size minus 8.
 	 */
 	public final long getLong(int index) {
-		if (index >= 0 && index < this.size - 7) {
-			return (((long) this.memory[this.offset + index + 0] & 0xff) << 56)
-				| (((long) this.memory[this.offset + index + 1] & 0xff) << 48)
-				| (((long) this.memory[this.offset + index + 2] & 0xff) << 40)
-				| (((long) this.memory[this.offset + index + 3] & 0xff) << 32)
-				| (((long) this.memory[this.offset + index + 4] & 0xff) << 24)
-				| (((long) this.memory[this.offset + index + 5] & 0xff) << 16)
-				| (((long) this.memory[this.offset + index + 6] & 0xff) << 8)
-				| (((long) this.memory[this.offset + index + 7] & 0xff) << 0);
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 8) {
+			final long value = UNSAFE.getLong(this.memory, pos);
+			return LITTLE_ENDIAN ? Long.reverseBytes(value) : value;
 		} else {
 			throw new IndexOutOfBoundsException();
 		}
@@ -521,15 +773,9 @@ public class MemorySegment
 	 *                                   size minus 8.
 	 */
 	public final MemorySegment putLong(int index, long value) {
-		if (index >= 0 && index < this.size - 7) {
-			this.memory[this.offset + index + 0] = (byte) (value >> 56);
-			this.memory[this.offset + index + 1] = (byte) (value >> 48);
-			this.memory[this.offset + index + 2] = (byte) (value >> 40);
-			this.memory[this.offset + index + 3] = (byte) (value >> 32);
-			this.memory[this.offset + index + 4] = (byte) (value >> 24);
-			this.memory[this.offset + index + 5] = (byte) (value >> 16);
-			this.memory[this.offset + index + 6] = (byte) (value >> 8);
-			this.memory[this.offset + index + 7] = (byte) value;
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 8) {
+			UNSAFE.putLong(this.memory, pos, LITTLE_ENDIAN ? Long.reverseBytes(value) : value);
 			return this;
 		} else {
 			throw new IndexOutOfBoundsException();
@@ -595,4 +841,27 @@ public class MemorySegment
 		putLong(index, Double.doubleToLongBits(value));
 		return this;
 	}
+
+	
+	// --------------------------------------------------------------------
+	//                         Unsafe Utilities
+	// --------------------------------------------------------------------
+	
+	private static sun.misc.Unsafe getUnsafe() {
+		try {
+			final Field unsafeField = sun.misc.Unsafe.class.getDeclaredField("theUnsafe");
+			unsafeField.setAccessible(true);
+			return (sun.misc.Unsafe) unsafeField.get(null);
+		} catch (Exception e) {
+			throw new RuntimeException("Could not access the sun.misc.Unsafe handle for memory access.", e);
+		}
+	}
+	
+	private static long getBufferAddressFieldOffset() {
+		try {
+			return UNSAFE.objectFieldOffset(java.nio.Buffer.class.getDeclaredField("address"));
+		} catch (Exception e) {
+			throw new RuntimeException("Could not determine the address field of direct byte buffers.", e);
+		}
+	}
 }
@@ -58,10 +58,21 @@ public class RPCServiceTest implements RPCTestProtocol {
 		return types;
 	}
 
+	/**
+	 * Returns the transport the RPC services of this test use.
+	 * 
+	 * @return the transport the RPC services of this test use
+	 */
+	protected RPCTransportType getTransportType() {
+
+		return RPCTransportType.UDP;
+	}
+
 	@Before
 	public void startRPCService() throws IOException {
 
-		this.rpcService = new RPCService(RPC_TEST_PORT, NUMBER_OF_RPC_HANDLERS, getTypesToRegister());
+		this.rpcService = new RPCService(RPC_TEST_PORT, NUMBER_OF_RPC_HANDLERS, getTypesToRegister(),
+			getTransportType());
 		this.rpcService.setProtocolCallbackHandler(RPCTestProtocol.class, this);
 	}
 
@@ -85,7 +96,7 @@ public class RPCServiceTest implements RPCTestProtocol {
 		RPCService rpcService = null;
 		try {
 
-			rpcService = new RPCService(getTypesToRegister());
+			rpcService = new RPCService(-1, 1, getTypesToRegister(), getTransportType());
 			final RPCTestProtocol proxy = rpcService.getProxy(new InetSocketAddress("localhost", RPC_TEST_PORT),
 				RPCTestProtocol.class);
 
@@ -117,7 +128,7 @@ public class RPCServiceTest implements RPCTestProtocol {
 
 		RPCService rpcService = null;
 		try {
-			rpcService = new RPCService(getTypesToRegister());
+			rpcService = new RPCService(-1, 1, getTypesToRegister(), getTransportType());
 			final RPCTestProtocol proxy = rpcService.getProxy(new InetSocketAddress("localhost", RPC_TEST_PORT),
 				RPCTestProtocol.class);
 
@@ -160,7 +171,7 @@ public class RPCServiceTest implements RPCTestProtocol {
 
 		RPCService rpcService = null;
 		try {
-			rpcService = new RPCService(getTypesToRegister());
+			rpcService = new RPCService(-1, 1, getTypesToRegister(), getTransportType());
 			final RPCTestProtocol proxy = rpcService.getProxy(new InetSocketAddress("localhost", RPC_TEST_PORT),
 				RPCTestProtocol.class);
 
@@ -184,7 +195,7 @@ public class RPCServiceTest implements RPCTestProtocol {
 
 		RPCService rpcService = null;
 		try {
-			rpcService = new RPCService(getTypesToRegister());
+			rpcService = new RPCService(-1, 1, getTypesToRegister(), getTransportType());
 			final RPCTestProtocol proxy = rpcService.getProxy(new InetSocketAddress("localhost", RPC_TEST_PORT),
 				RPCTestProtocol.class);
 
@@ -0,0 +1,32 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.rpc;
+
+/**
+ * This class runs the tests of the {@link RPCServiceTest} with the TCP transport.
+ */
+public class TCPRPCServiceTest extends RPCServiceTest {
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected RPCTransportType getTransportType() {
+
+		return RPCTransportType.TCP;
+	}
+}
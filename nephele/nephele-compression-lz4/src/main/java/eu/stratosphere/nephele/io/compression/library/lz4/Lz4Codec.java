@@ -0,0 +1,425 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.io.compression.library.lz4;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * This class implements the LZ4 block format in pure Java. The codec only uses absolute get and put operations of the
+ * byte buffers, so it works on heap as well as on direct buffers without copying the data and without changing the
+ * positions or limits of the buffers.
+ * <p>
+ * A compressed block is a sequence of tokens. Each token consists of a run of literals followed by a match, i.e. a
+ * reference to a sequence of at least four bytes which has already been emitted before. The last token only consists
+ * of literals.
+ * <p>
+ * This class is not thread-safe.
+ */
+final class Lz4Codec {
+
+	/**
+	 * The maximum number of bytes the compressed data of a block exceeds the uncompressed data, in addition to one byte
+	 * per 255 bytes of input.
+	 */
+	static final int COMPRESSION_OVERHEAD = 16;
+
+	private static final int HASH_LOG = 12;
+
+	private static final int MIN_MATCH = 4;
+
+	private static final int MAX_DISTANCE = 65535;
+
+	/**
+	 * The number of bytes at the end of a block which are always encoded as literals.
+	 */
+	private static final int LAST_LITERALS = 5;
+
+	/**
+	 * Blocks shorter than this number of bytes are encoded as literals only.
+	 */
+	private static final int MF_LIMIT = 12;
+
+	private static final int SKIP_STRENGTH = 6;
+
+	private static final int ML_BITS = 4;
+
+	private static final int ML_MASK = (1 << ML_BITS) - 1;
+
+	private static final int RUN_MASK = (1 << (8 - ML_BITS)) - 1;
+
+	/**
+	 * The hash table mapping the hashes of four byte sequences to their last position in the input.
+	 */
+	private final int[] hashTable = new int[1 << HASH_LOG];
+
+	/**
+	 * Compresses the given range of the source buffer into the destination buffer.
+	 * 
+	 * @param src
+	 *        the buffer containing the uncompressed data
+	 * @param srcOffset
+	 *        the offset of the uncompressed data in the source buffer
+	 * @param srcLength
+	 *        the number of bytes to compress
+	 * @param dest
+	 *        the buffer to write the compressed data to
+	 * @param destOffset
+	 *        the offset in the destination buffer to write the compressed data to
+	 * @param maxDestLength
+	 *        the maximum number of bytes to write to the destination buffer
+	 * @return the number of bytes of the compressed data or <code>-1</code> if the compressed data exceeds the given
+	 *         maximum length
+	 */
+	int compress(final ByteBuffer src, final int srcOffset, final int srcLength, final ByteBuffer dest,
+			final int destOffset, final int maxDestLength) {
+
+		final int srcEnd = srcOffset + srcLength;
+		final int destEnd = destOffset + maxDestLength;
+		int dp = destOffset;
+		int anchor = srcOffset;
+
+		if (srcLength >= MF_LIMIT) {
+
+			Arrays.fill(this.hashTable, -1);
+
+			final int matchLimit = srcEnd - LAST_LITERALS;
+			final int mfLimit = srcEnd - MF_LIMIT;
+			int sp = srcOffset + 1;
+
+			while (sp <= mfLimit) {
+
+				// Search for a match, increase the step size the longer no match is found
+				int searchMatchNb = 1 << SKIP_STRENGTH;
+				int ref;
+				while (true) {
+					final int sequence = src.getInt(sp);
+					final int h = hash(sequence);
+					ref = this.hashTable[h];
+					this.hashTable[h] = sp;
+					if (ref >= 0 && sp - ref <= MAX_DISTANCE && src.getInt(ref) == sequence) {
+						break;
+					}
+					sp += searchMatchNb++ >>> SKIP_STRENGTH;
+					if (sp > mfLimit) {
+						break;
+					}
+				}
+
+				if (sp > mfLimit) {
+					break;
+				}
+
+				// Extend the match backwards
+				while (sp > anchor && ref > srcOffset && src.get(sp - 1) == src.get(ref - 1)) {
+					--sp;
+					--ref;
+				}
+
+				// Extend the match forwards
+				final int matchLength = MIN_MATCH
+					+ commonBytes(src, sp + MIN_MATCH, ref + MIN_MATCH, matchLimit);
+
+				final int literalLength = sp - anchor;
+				dp = writeSequence(src, anchor, literalLength, sp - ref, matchLength - MIN_MATCH, dest, dp, destEnd);
+				if (dp < 0) {
+					return -1;
+				}
+
+				sp += matchLength;
+				anchor = sp;
+
+				if (sp <= mfLimit) {
+					// Remember the position two bytes back to improve the chance of subsequent matches
+					this.hashTable[hash(src.getInt(sp - 2))] = sp - 2;
+				}
+			}
+		}
+
+		// Encode the remaining bytes as literals
+		dp = writeLastLiterals(src, anchor, srcEnd - anchor, dest, dp, destEnd);
+		if (dp < 0) {
+			return -1;
+		}
+
+		return dp - destOffset;
+	}
+
+	/**
+	 * Decompresses the given range of the source buffer into the destination buffer.
+	 * 
+	 * @param src
+	 *        the buffer containing the compressed data
+	 * @param srcOffset
+	 *        the offset of the compressed data in the source buffer
+	 * @param srcLength
+	 *        the number of bytes of the compressed data
+	 * @param dest
+	 *        the buffer to write the uncompressed data to
+	 * @param destOffset
+	 *        the offset in the destination buffer to write the uncompressed data to
+	 * @param maxDestLength
+	 *        the maximum number of bytes to write to the destination buffer
+	 * @return the number of bytes of the uncompressed data or <code>-1</code> if the compressed data is malformed or
+	 *         the uncompressed data exceeds the given maximum length
+	 */
+	static int decompress(final ByteBuffer src, final int srcOffset, final int srcLength, final ByteBuffer dest,
+			final int destOffset, final int maxDestLength) {
+
+		final int srcEnd = srcOffset + srcLength;
+		final int destEnd = destOffset + maxDestLength;
+		int sp = srcOffset;
+		int dp = destOffset;
+
+		while (sp < srcEnd) {
+
+			final int token = src.get(sp++) & 0xff;
+
+			// Read and copy the literals
+			int literalLength = token >>> ML_BITS;
+			if (literalLength == RUN_MASK) {
+				int b;
+				do {
+					if (sp >= srcEnd) {
+						return -1;
+					}
+					b = src.get(sp++) & 0xff;
+					literalLength += b;
+				} while (b == 255);
+				if (literalLength < 0) {
+					return -1;
+				}
+			}
+
+			if (literalLength > srcEnd - sp || literalLength > destEnd - dp) {
+				return -1;
+			}
+
+			copy(src, sp, dest, dp, literalLength);
+			sp += literalLength;
+			dp += literalLength;
+
+			if (sp == srcEnd) {
+				// The last token only contains literals
+				break;
+			}
+
+			// Read the match
+			if (srcEnd - sp < 2) {
+				return -1;
+			}
+			final int distance = (src.get(sp) & 0xff) | ((src.get(sp + 1) & 0xff) << 8);
+			sp += 2;
+			final int ref = dp - distance;
+			if (distance == 0 || ref < destOffset) {
+				return -1;
+			}
+
+			int matchLength = token & ML_MASK;
+			if (matchLength == ML_MASK) {
+				int b;
+				do {
+					if (sp >= srcEnd) {
+						return -1;
+					}
+					b = src.get(sp++) & 0xff;
+					matchLength += b;
+				} while (b == 255);
+				if (matchLength < 0) {
+					return -1;
+				}
+			}
+			matchLength += MIN_MATCH;
+
+			if (matchLength > destEnd - dp) {
+				return -1;
+			}
+
+			copyMatch(dest, ref, dp, matchLength);
+			dp += matchLength;
+		}
+
+		return dp - destOffset;
+	}
+
+	/**
+	 * Writes the given integer in big-endian byte order to the given position of the buffer, independent of the byte
+	 * order of the buffer.
+	 * 
+	 * @param buffer
+	 *        the buffer to write the integer to
+	 * @param index
+	 *        the position to write the integer to
+	 * @param value
+	 *        the integer to write
+	 */
+	static void putInt(final ByteBuffer buffer, final int index, final int value) {
+
+		buffer.put(index, (byte) (value >>> 24));
+		buffer.put(index + 1, (byte) (value >>> 16));
+		buffer.put(index + 2, (byte) (value >>> 8));
+		buffer.put(index + 3, (byte) value);
+	}
+
+	private static int hash(final int sequence) {
+
+		return (sequence * -1640531535) >>> (32 - HASH_LOG);
+	}
+
+	/**
+	 * Returns the number of equal bytes of the two sequences starting at the given positions, stopping at the given
+	 * limit.
+	 */
+	private static int commonBytes(final ByteBuffer buffer, int sp, int ref, final int limit) {
+
+		final int start = sp;
+
+		while (sp <= limit - 8) {
+			if (buffer.getLong(sp) != buffer.getLong(ref)) {
+				break;
+			}
+			sp += 8;
+			ref += 8;
+		}
+
+		while (sp < limit && buffer.get(sp) == buffer.get(ref)) {
+			++sp;
+			++ref;
+		}
+
+		return sp - start;
+	}
+
+	/**
+	 * Writes a token consisting of the given literals and a match to the destination buffer.
+	 * 
+	 * @return the position in the destination buffer after the token or <code>-1</code> if the token does not fit
+	 */
+	private static int writeSequence(final ByteBuffer src, final int literalOffset, final int literalLength,
+			final int distance, final int matchLength, final ByteBuffer dest, int dp, final int destEnd) {
+
+		// The token, the literals, the additional length bytes and the distance
+		if (dp + 1 + literalLength + literalLength / 255 + 2 + matchLength / 255 + 2 > destEnd) {
+			return -1;
+		}
+
+		final int tokenPosition = dp++;
+		int token;
+		if (literalLength >= RUN_MASK) {
+			token = RUN_MASK << ML_BITS;
+			dp = writeLength(dest, dp, literalLength - RUN_MASK);
+		} else {
+			token = literalLength << ML_BITS;
+		}
+
+		copy(src, literalOffset, dest, dp, literalLength);
+		dp += literalLength;
+
+		dest.put(dp++, (byte) distance);
+		dest.put(dp++, (byte) (distance >>> 8));
+
+		if (matchLength >= ML_MASK) {
+			token |= ML_MASK;
+			dp = writeLength(dest, dp, matchLength - ML_MASK);
+		} else {
+			token |= matchLength;
+		}
+
+		dest.put(tokenPosition, (byte) token);
+
+		return dp;
+	}
+
+	/**
+	 * Writes the final token consisting of literals only to the destination buffer.
+	 * 
+	 * @return the position in the destination buffer after the token or <code>-1</code> if the token does not fit
+	 */
+	private static int writeLastLiterals(final ByteBuffer src, final int literalOffset, final int literalLength,
+			final ByteBuffer dest, int dp, final int destEnd) {
+
+		if (dp + 1 + literalLength + literalLength / 255 + 1 > destEnd) {
+			return -1;
+		}
+
+		if (literalLength >= RUN_MASK) {
+			dest.put(dp++, (byte) (RUN_MASK << ML_BITS));
+			dp = writeLength(dest, dp, literalLength - RUN_MASK);
+		} else {
+			dest.put(dp++, (byte) (literalLength << ML_BITS));
+		}
+
+		copy(src, literalOffset, dest, dp, literalLength);
+
+		return dp + literalLength;
+	}
+
+	/**
+	 * Writes the remainder of a length which exceeds the capacity of its token field.
+	 */
+	private static int writeLength(final ByteBuffer dest, int dp, int length) {
+
+		while (length >= 255) {
+			dest.put(dp++, (byte) 255);
+			length -= 255;
+		}
+		dest.put(dp++, (byte) length);
+
+		return dp;
+	}
+
+	/**
+	 * Copies the given number of bytes between two non-overlapping regions.
+	 */
+	private static void copy(final ByteBuffer src, int sp, final ByteBuffer dest, int dp, final int length) {
+
+		final int end = sp + length;
+
+		if (src.order() == dest.order()) {
+			while (sp <= end - 8) {
+				dest.putLong(dp, src.getLong(sp));
+				sp += 8;
+				dp += 8;
+			}
+		}
+
+		while (sp < end) {
+			dest.put(dp++, src.get(sp++));
+		}
+	}
+
+	/**
+	 * Copies a match within the destination buffer. The source and the target region overlap if the distance between
+	 * both is less than the length of the match, in which case the bytes are repeated.
+	 */
+	private static void copyMatch(final ByteBuffer buffer, int ref, int dp, final int length) {
+
+		final int end = dp + length;
+
+		if (dp - ref >= 8) {
+			while (dp <= end - 8) {
+				buffer.putLong(dp, buffer.getLong(ref));
+				ref += 8;
+				dp += 8;
+			}
+		}
+
+		while (dp < end) {
+			buffer.put(dp++, buffer.get(ref++));
+		}
+	}
+}
@@ -0,0 +1,62 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.io.compression.library.lz4;
+
+import eu.stratosphere.nephele.io.compression.AbstractCompressor;
+import eu.stratosphere.nephele.io.compression.CompressionBufferProvider;
+
+/**
+ * This class compresses byte buffers with the pure Java implementation of the LZ4 algorithm.
+ * http://code.google.com/p/lz4/
+ */
+public class Lz4Compressor extends AbstractCompressor {
+
+	/**
+	 * The codec holding the hash table used for the compression.
+	 */
+	private final Lz4Codec codec = new Lz4Codec();
+
+	Lz4Compressor(final CompressionBufferProvider bufferProvider) {
+		super(bufferProvider);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected int compressBytesDirect(final int offset) {
+
+		final int uncompressedLength = this.uncompressedDataBufferLength;
+		final int dataOffset = offset + SIZE_LENGTH;
+
+		final int compressedLength = this.codec.compress(this.uncompressedDataBuffer, 0, uncompressedLength,
+			this.compressedDataBuffer, dataOffset, this.compressedDataBuffer.capacity() - dataOffset);
+
+		if (compressedLength < 0) {
+			throw new IllegalStateException("LZ4-Compressor - compressed data exceeds the compression buffer");
+		}
+
+		// Write length of compressed and uncompressed size to compressed buffer
+		Lz4Codec.putInt(this.compressedDataBuffer, offset, compressedLength);
+		Lz4Codec.putInt(this.compressedDataBuffer, offset + 4, uncompressedLength);
+
+		// LZ4 compresses all input data
+		this.uncompressedDataBufferLength = 0;
+
+		return compressedLength;
+	}
+}
@@ -0,0 +1,52 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.io.compression.library.lz4;
+
+import eu.stratosphere.nephele.io.compression.AbstractDecompressor;
+import eu.stratosphere.nephele.io.compression.CompressionBufferProvider;
+
+/**
+ * This class decompresses byte buffers with the pure Java implementation of the LZ4 algorithm.
+ * http://code.google.com/p/lz4/
+ */
+public class Lz4Decompressor extends AbstractDecompressor {
+
+	Lz4Decompressor(final CompressionBufferProvider bufferProvider) {
+		super(bufferProvider);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected int decompressBytesDirect(final int offset) {
+
+		final int compressedLength = bufferToInt(this.compressedDataBuffer, offset - SIZE_LENGTH);
+		if (compressedLength < 0 || compressedLength > this.compressedDataBufferLength - offset) {
+			return -1;
+		}
+
+		final int uncompressedLength = Lz4Codec.decompress(this.compressedDataBuffer, offset, compressedLength,
+			this.uncompressedDataBuffer, 0, this.uncompressedDataBuffer.capacity());
+
+		if (uncompressedLength != this.uncompressedDataBufferLength) {
+			return -1;
+		}
+
+		return uncompressedLength;
+	}
+}
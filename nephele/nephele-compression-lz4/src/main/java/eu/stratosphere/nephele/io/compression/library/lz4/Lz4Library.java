@@ -0,0 +1,84 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.io.compression.library.lz4;
+
+import eu.stratosphere.nephele.io.compression.AbstractCompressor;
+import eu.stratosphere.nephele.io.compression.CompressionBufferProvider;
+import eu.stratosphere.nephele.io.compression.CompressionException;
+import eu.stratosphere.nephele.io.compression.CompressionLibrary;
+import eu.stratosphere.nephele.io.compression.Compressor;
+import eu.stratosphere.nephele.io.compression.Decompressor;
+
+/**
+ * This class provides the LZ4 compression library. In contrast to the other compression libraries, LZ4 is implemented
+ * in pure Java and therefore does not require a native library.
+ * http://code.google.com/p/lz4/
+ */
+public class Lz4Library implements CompressionLibrary {
+
+	/**
+	 * Constructs a new LZ4 library.
+	 * 
+	 * @param nativeLibraryDir
+	 *        the directory of the native libraries, ignored as LZ4 does not require a native library
+	 * @throws CompressionException
+	 *         never thrown, the signature matches the one expected by the compression loader
+	 */
+	public Lz4Library(final String nativeLibraryDir) throws CompressionException {
+		// Nothing to load here
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getUncompressedBufferSize(final int compressedBufferSize) {
+
+		// Make sure the compressed data of incompressible input still fits into the compressed buffer
+		final int maximumCompressedLength = compressedBufferSize - AbstractCompressor.SIZE_LENGTH
+			- Lz4Codec.COMPRESSION_OVERHEAD;
+
+		return (int) ((maximumCompressedLength * 255L) / 256L);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getLibraryName() {
+		return "LZ4";
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Compressor createNewCompressor(final CompressionBufferProvider bufferProvider) throws CompressionException {
+
+		return new Lz4Compressor(bufferProvider);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Decompressor createNewDecompressor(final CompressionBufferProvider bufferProvider)
+			throws CompressionException {
+
+		return new Lz4Decompressor(bufferProvider);
+	}
+}
@@ -0,0 +1,227 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.io.compression.library.lz4;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import org.junit.Test;
+
+import eu.stratosphere.nephele.io.compression.AbstractCompressor;
+
+/**
+ * This class contains tests covering the {@link Lz4Codec}.
+ */
+public class Lz4CodecTest {
+
+	/**
+	 * The size of the buffers used in the tests.
+	 */
+	private static final int BUFFER_SIZE = 128 * 1024;
+
+	/**
+	 * Tests the round trip of random, and therefore incompressible, data.
+	 */
+	@Test
+	public void testRandomData() {
+
+		final Random rnd = new Random(42L);
+		final byte[] data = new byte[BUFFER_SIZE];
+		rnd.nextBytes(data);
+
+		final int compressedLength = roundTrip(data, false);
+		assertTrue(compressedLength <= data.length + data.length / 255 + Lz4Codec.COMPRESSION_OVERHEAD);
+	}
+
+	/**
+	 * Tests the round trip of highly repetitive data, including overlapping matches.
+	 */
+	@Test
+	public void testRepetitiveData() {
+
+		final byte[] data = new byte[BUFFER_SIZE];
+		for (int i = 0; i < data.length; ++i) {
+			data[i] = (byte) (i % 3);
+		}
+
+		final int compressedLength = roundTrip(data, true);
+		assertTrue(compressedLength < data.length / 100);
+	}
+
+	/**
+	 * Tests the round trip of text-like data with short and long matches at random distances.
+	 */
+	@Test
+	public void testTextData() {
+
+		final Random rnd = new Random(42L);
+		final String[] words = { "stratosphere", "nephele", "pact", "record", "compression", "channel", "buffer",
+			"the", "a", "of", " ", "\n" };
+		final StringBuilder sb = new StringBuilder();
+		while (sb.length() < BUFFER_SIZE) {
+			sb.append(words[rnd.nextInt(words.length)]);
+			if (rnd.nextInt(10) == 0) {
+				sb.append(rnd.nextLong());
+			}
+		}
+
+		final byte[] data = sb.toString().getBytes();
+		final int compressedLength = roundTrip(data, true);
+		assertTrue(compressedLength < 2 * data.length / 3);
+	}
+
+	/**
+	 * Tests the round trip of short inputs, which are partly encoded as literals only.
+	 */
+	@Test
+	public void testShortData() {
+
+		final Random rnd = new Random(42L);
+		for (int length = 0; length <= 64; ++length) {
+
+			final byte[] data = new byte[length];
+			for (int i = 0; i < length; ++i) {
+				data[i] = (byte) rnd.nextInt(2);
+			}
+
+			roundTrip(data, rnd.nextBoolean());
+		}
+	}
+
+	/**
+	 * Tests that the compression fails if the compressed data does not fit into the destination buffer.
+	 */
+	@Test
+	public void testDestinationTooSmall() {
+
+		final Random rnd = new Random(42L);
+		final byte[] data = new byte[1024];
+		rnd.nextBytes(data);
+
+		final ByteBuffer dest = ByteBuffer.allocate(data.length);
+		assertEquals(-1, new Lz4Codec().compress(ByteBuffer.wrap(data), 0, data.length, dest, 0, dest.capacity()));
+	}
+
+	/**
+	 * Tests that malformed compressed data is rejected by the decompression.
+	 */
+	@Test
+	public void testMalformedData() {
+
+		final ByteBuffer dest = ByteBuffer.allocate(BUFFER_SIZE);
+
+		// Match with a distance of zero
+		assertEquals(-1, decompress(dest, 0x14, 'a', 0x00, 0x00));
+		// Match referencing data before the start of the block
+		assertEquals(-1, decompress(dest, 0x14, 'a', 0x02, 0x00));
+		// Literals exceeding the compressed data
+		assertEquals(-1, decompress(dest, 0x50, 'a', 'b'));
+		// Truncated distance
+		assertEquals(-1, decompress(dest, 0x14, 'a', 0x01));
+		// Truncated length
+		assertEquals(-1, decompress(dest, 0xf0, 0xff));
+
+		// A well-formed block repeating a single literal
+		assertEquals(9, decompress(dest, 0x14, 'a', 0x01, 0x00, 0x00));
+		for (int i = 0; i < 9; ++i) {
+			assertEquals('a', dest.get(i));
+		}
+
+		// The uncompressed data exceeding the destination buffer
+		assertEquals(-1, Lz4Codec.decompress(ByteBuffer.wrap(new byte[] { 0x1f, 'a', 0x01, 0x00, (byte) 0xff,
+			(byte) 0xff, 0x00 }), 0, 7, ByteBuffer.allocate(64), 0, 64));
+	}
+
+	/**
+	 * Tests the length of the uncompressed buffers reported by the library leaves enough space for incompressible
+	 * data.
+	 */
+	@Test
+	public void testUncompressedBufferSize() throws Exception {
+
+		final int compressedBufferSize = BUFFER_SIZE;
+		final int uncompressedBufferSize = new Lz4Library(null).getUncompressedBufferSize(compressedBufferSize);
+
+		final Random rnd = new Random(42L);
+		final byte[] data = new byte[uncompressedBufferSize];
+		rnd.nextBytes(data);
+
+		final ByteBuffer dest = ByteBuffer.allocateDirect(compressedBufferSize);
+		final int maxLength = compressedBufferSize - AbstractCompressor.SIZE_LENGTH;
+		assertTrue(new Lz4Codec().compress(ByteBuffer.wrap(data), 0, data.length, dest,
+			AbstractCompressor.SIZE_LENGTH, maxLength) > 0);
+	}
+
+	/**
+	 * Compresses and decompresses the given data and checks the result.
+	 * 
+	 * @param data
+	 *        the data to compress
+	 * @param direct
+	 *        <code>true</code> to use direct buffers in native byte order, <code>false</code> to use heap buffers
+	 * @return the length of the compressed data
+	 */
+	private static int roundTrip(final byte[] data, final boolean direct) {
+
+		final int offset = 3;
+		final ByteBuffer src = allocate(offset + data.length, direct);
+		for (int i = 0; i < data.length; ++i) {
+			src.put(offset + i, data[i]);
+		}
+
+		final int maxLength = data.length + data.length / 255 + Lz4Codec.COMPRESSION_OVERHEAD;
+		final ByteBuffer compressed = allocate(offset + maxLength, direct);
+		final int compressedLength = new Lz4Codec().compress(src, offset, data.length, compressed, offset, maxLength);
+		assertTrue(compressedLength > 0);
+
+		final ByteBuffer uncompressed = allocate(offset + data.length, !direct);
+		assertEquals(data.length,
+			Lz4Codec.decompress(compressed, offset, compressedLength, uncompressed, offset, data.length));
+
+		final byte[] result = new byte[data.length];
+		for (int i = 0; i < result.length; ++i) {
+			result[i] = uncompressed.get(offset + i);
+		}
+		assertArrayEquals(data, result);
+
+		return compressedLength;
+	}
+
+	private static ByteBuffer allocate(final int size, final boolean direct) {
+
+		if (direct) {
+			return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+		}
+
+		return ByteBuffer.allocate(size);
+	}
+
+	private static int decompress(final ByteBuffer dest, final int... compressed) {
+
+		final ByteBuffer src = ByteBuffer.allocate(compressed.length);
+		for (int i = 0; i < compressed.length; ++i) {
+			src.put(i, (byte) compressed[i]);
+		}
+
+		return Lz4Codec.decompress(src, 0, compressed.length, dest, 0, dest.capacity());
+	}
+}
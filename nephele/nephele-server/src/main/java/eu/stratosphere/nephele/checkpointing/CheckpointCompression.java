@@ -0,0 +1,175 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.checkpointing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferProvider;
+
+/**
+ * The checkpoint compression compresses the data of buffers before they are written to a checkpoint and decompresses
+ * it again when the checkpoint is replayed. It relies on the deflate implementation of the JDK, so it is available on
+ * every node. A compressed buffer starts with the length of the uncompressed data (4 bytes), followed by the deflated
+ * data.
+ * <p>
+ * This class is not thread-safe.
+ */
+final class CheckpointCompression {
+
+	/**
+	 * The size of the length field preceding the compressed data in bytes.
+	 */
+	private static final int SIZE_OF_LENGTH = 4;
+
+	private Deflater deflater = null;
+
+	private Inflater inflater = null;
+
+	private byte[] uncompressedData = new byte[0];
+
+	private byte[] compressedData = new byte[0];
+
+	/**
+	 * Compresses the remaining bytes of the given byte buffer. The position of the byte buffer is not modified.
+	 * 
+	 * @param src
+	 *        the byte buffer containing the data to compress
+	 * @return a byte buffer containing the compressed data or <code>null</code> if the compressed data is not smaller
+	 *         than the original data, the returned byte buffer is only valid until the next call to this method
+	 */
+	ByteBuffer compress(final ByteBuffer src) {
+
+		final int length = src.remaining();
+		if (length <= SIZE_OF_LENGTH) {
+			return null;
+		}
+
+		if (this.deflater == null) {
+			this.deflater = new Deflater(Deflater.BEST_SPEED);
+		}
+
+		if (this.uncompressedData.length < length) {
+			this.uncompressedData = new byte[length];
+			this.compressedData = new byte[length];
+		}
+
+		src.duplicate().get(this.uncompressedData, 0, length);
+
+		this.deflater.reset();
+		this.deflater.setInput(this.uncompressedData, 0, length);
+		this.deflater.finish();
+
+		// Only accept the compressed data if it is smaller than the original data
+		final int compressedLength = this.deflater.deflate(this.compressedData, SIZE_OF_LENGTH, length
+			- SIZE_OF_LENGTH - 1);
+		if (!this.deflater.finished()) {
+			return null;
+		}
+
+		final ByteBuffer compressed = ByteBuffer.wrap(this.compressedData, 0, SIZE_OF_LENGTH + compressedLength);
+		compressed.putInt(0, length);
+
+		return compressed;
+	}
+
+	/**
+	 * Decompresses the data of the given buffer, which must have been compressed by {@link #compress(ByteBuffer)},
+	 * into a new buffer requested from the given buffer provider. The source buffer is not recycled.
+	 * 
+	 * @param src
+	 *        the buffer containing the compressed data
+	 * @param bufferProvider
+	 *        the buffer provider to request the buffer for the decompressed data from
+	 * @return the buffer containing the decompressed data
+	 * @throws IOException
+	 *         thrown if the compressed data cannot be read or is malformed
+	 * @throws InterruptedException
+	 *         thrown if the thread is interrupted while waiting for a buffer
+	 */
+	Buffer decompress(final Buffer src, final BufferProvider bufferProvider) throws IOException,
+			InterruptedException {
+
+		final int compressedLength = src.size();
+		if (compressedLength < SIZE_OF_LENGTH) {
+			throw new IOException("Compressed checkpoint buffer is too short: " + compressedLength);
+		}
+
+		if (this.compressedData.length < compressedLength) {
+			this.compressedData = new byte[compressedLength];
+		}
+
+		final ByteBuffer compressed = ByteBuffer.wrap(this.compressedData, 0, compressedLength);
+		while (compressed.hasRemaining()) {
+			if (src.read(compressed) < 0) {
+				throw new IOException("Unexpected end of compressed checkpoint buffer");
+			}
+		}
+
+		final int length = compressed.getInt(0);
+		if (length < 0 || length > bufferProvider.getMaximumBufferSize()) {
+			throw new IOException("Invalid length of compressed checkpoint buffer: " + length);
+		}
+
+		if (this.uncompressedData.length < length) {
+			this.uncompressedData = new byte[length];
+		}
+
+		if (this.inflater == null) {
+			this.inflater = new Inflater();
+		}
+
+		this.inflater.reset();
+		this.inflater.setInput(this.compressedData, SIZE_OF_LENGTH, compressedLength - SIZE_OF_LENGTH);
+		try {
+			if (this.inflater.inflate(this.uncompressedData, 0, length) != length || !this.inflater.finished()) {
+				throw new IOException("Compressed checkpoint buffer is malformed");
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Compressed checkpoint buffer is malformed: " + e.getMessage());
+		}
+
+		final Buffer dest = bufferProvider.requestEmptyBufferBlocking(length);
+		final ByteBuffer uncompressed = ByteBuffer.wrap(this.uncompressedData, 0, length);
+		while (uncompressed.hasRemaining()) {
+			dest.write(uncompressed);
+		}
+		dest.finishWritePhase();
+
+		return dest;
+	}
+
+	/**
+	 * Releases the native resources of the compression.
+	 */
+	void destroy() {
+
+		if (this.deflater != null) {
+			this.deflater.end();
+			this.deflater = null;
+		}
+
+		if (this.inflater != null) {
+			this.inflater.end();
+			this.inflater = null;
+		}
+	}
+}
@@ -0,0 +1,116 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.checkpointing;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A checkpoint cost profile collects the profiling data of a task which the dynamic {@link CheckpointDecision} is based
+ * on, i.e. the number of bytes the task has consumed and produced so far as well as the CPU time spent by the task's
+ * executing thread. The CPU time is measured in the same way as by the task manager profiler, however, it is collected
+ * independently because profiling is optional.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class CheckpointCostProfile {
+
+	/**
+	 * The thread MX bean used to determine the CPU time of the task's executing thread.
+	 */
+	private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+	/**
+	 * The number of bytes the task has consumed from its input channels.
+	 */
+	private final AtomicLong consumedBytes = new AtomicLong(0L);
+
+	/**
+	 * The number of bytes the task has produced to its output channels.
+	 */
+	private final AtomicLong producedBytes = new AtomicLong(0L);
+
+	/**
+	 * The point in time the profile has been created at, used to estimate the CPU time if it cannot be measured.
+	 */
+	private final long creationTime = System.currentTimeMillis();
+
+	/**
+	 * Reports that the task has consumed the given number of bytes from one of its input channels.
+	 * 
+	 * @param numberOfBytes
+	 *        the number of bytes consumed
+	 */
+	public void reportConsumedBytes(final int numberOfBytes) {
+
+		this.consumedBytes.addAndGet(numberOfBytes);
+	}
+
+	/**
+	 * Reports that the task has produced the given number of bytes to one of its output channels.
+	 * 
+	 * @param numberOfBytes
+	 *        the number of bytes produced
+	 */
+	public void reportProducedBytes(final int numberOfBytes) {
+
+		this.producedBytes.addAndGet(numberOfBytes);
+	}
+
+	/**
+	 * Returns the number of bytes the task has consumed so far.
+	 * 
+	 * @return the number of bytes the task has consumed so far
+	 */
+	public long getConsumedBytes() {
+
+		return this.consumedBytes.get();
+	}
+
+	/**
+	 * Returns the number of bytes the task has produced so far.
+	 * 
+	 * @return the number of bytes the task has produced so far
+	 */
+	public long getProducedBytes() {
+
+		return this.producedBytes.get();
+	}
+
+	/**
+	 * Returns the CPU time the given thread has consumed so far. If the CPU time cannot be measured, the time elapsed
+	 * since the creation of this profile is returned as an upper bound.
+	 * 
+	 * @param executingThread
+	 *        the executing thread of the task, possibly <code>null</code>
+	 * @return the CPU time of the thread in milliseconds
+	 */
+	public long getCPUTime(final Thread executingThread) {
+
+		if (executingThread != null && THREAD_MX_BEAN.isThreadCpuTimeSupported()
+			&& THREAD_MX_BEAN.isThreadCpuTimeEnabled()) {
+
+			final long cpuTime = THREAD_MX_BEAN.getThreadCpuTime(executingThread.getId());
+			if (cpuTime >= 0L) {
+				return cpuTime / 1000000L;
+			}
+		}
+
+		return System.currentTimeMillis() - this.creationTime;
+	}
+}
@@ -22,11 +22,36 @@ import eu.stratosphere.nephele.execution.RuntimeEnvironment;
 import eu.stratosphere.nephele.io.channels.ChannelType;
 import eu.stratosphere.nephele.taskmanager.runtime.RuntimeTask;
 
+/**
+ * The checkpoint decision determines whether the output of a task shall be written to a checkpoint, based on the
+ * configured {@link CheckpointMode}. In the dynamic mode, the decision follows a simple cost model: the cost to
+ * recompute the task's output after a failure is estimated from the CPU time the task has spent so far plus the time to
+ * receive its input again, the cost to checkpoint the output from the time to write the produced bytes to disk. Hence,
+ * tasks which spend a lot of CPU time or reduce their input considerably are checkpointed, while tasks which are cheap
+ * to replay or expand their input are not.
+ */
 public final class CheckpointDecision {
 
 	private static final Log LOG = LogFactory.getLog(CheckpointDecision.class);
 
-	public static boolean getDecision(final RuntimeTask task) {
+	/**
+	 * The number of bytes per megabyte.
+	 */
+	private static final double BYTES_PER_MEGABYTE = 1024.0 * 1024.0;
+
+	private CheckpointDecision() {
+	}
+
+	/**
+	 * Returns the checkpoint decision for the given task.
+	 * 
+	 * @param task
+	 *        the task to make the checkpoint decision for
+	 * @param profile
+	 *        the profiling data collected for the task so far
+	 * @return <code>true</code> if the output of the task shall be checkpointed, <code>false</code> otherwise
+	 */
+	public static boolean getDecision(final RuntimeTask task, final CheckpointCostProfile profile) {
 
 		switch (CheckpointUtils.getCheckpointMode()) {
 		case NEVER:
@@ -35,11 +60,64 @@ public final class CheckpointDecision {
 			return true;
 		case NETWORK:
 			return isNetworkTask(task);
+		case DYNAMIC:
+			return getDynamicDecision(task, profile);
 		}
 
 		return false;
 	}
 
+	private static boolean getDynamicDecision(final RuntimeTask task, final CheckpointCostProfile profile) {
+
+		final RuntimeEnvironment environment = task.getRuntimeEnvironment();
+		final long cpuTime = profile.getCPUTime(environment.getExecutingThread());
+		final long consumedBytes = profile.getConsumedBytes();
+		final long producedBytes = profile.getProducedBytes();
+
+		final boolean decision = isCheckpointWorthwhile(cpuTime, consumedBytes, producedBytes);
+
+		if (LOG.isInfoEnabled()) {
+			LOG.info("Checkpoint decision for " + environment.getTaskNameWithIndex() + " is " + decision + " (CPU time "
+				+ cpuTime + " ms, " + consumedBytes + " bytes consumed, " + producedBytes + " bytes produced)");
+		}
+
+		return decision;
+	}
+
+	/**
+	 * Applies the cost model of the dynamic checkpoint decision to the given profiling data.
+	 * 
+	 * @param cpuTime
+	 *        the CPU time the task has spent so far in milliseconds
+	 * @param consumedBytes
+	 *        the number of bytes the task has consumed so far
+	 * @param producedBytes
+	 *        the number of bytes the task has produced so far
+	 * @return <code>true</code> if the estimated recompute cost justifies a checkpoint, <code>false</code> otherwise
+	 */
+	static boolean isCheckpointWorthwhile(final long cpuTime, final long consumedBytes, final long producedBytes) {
+
+		final double recomputeCost = cpuTime
+			+ getTransferTime(consumedBytes, CheckpointUtils.getDecisionInputThroughput());
+		final double checkpointCost = getTransferTime(producedBytes, CheckpointUtils.getDecisionDiskThroughput());
+
+		return (recomputeCost * 100.0 >= checkpointCost * CheckpointUtils.getDecisionCostRatio());
+	}
+
+	/**
+	 * Returns the time required to transfer the given number of bytes at the given throughput.
+	 * 
+	 * @param numberOfBytes
+	 *        the number of bytes to transfer
+	 * @param throughput
+	 *        the throughput in MB/s
+	 * @return the transfer time in milliseconds
+	 */
+	private static double getTransferTime(final long numberOfBytes, final int throughput) {
+
+		return (numberOfBytes * 1000.0) / (throughput * BYTES_PER_MEGABYTE);
+	}
+
 	private static boolean isNetworkTask(final RuntimeTask task) {
 
 		final RuntimeEnvironment environment = task.getRuntimeEnvironment();
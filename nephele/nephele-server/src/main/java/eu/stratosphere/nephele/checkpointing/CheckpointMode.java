@@ -38,7 +38,8 @@ public enum CheckpointMode {
 	NETWORK,
 
 	/**
-	 * Creates checkpoints according to Nephele's internal strategies.
+	 * Creates checkpoints according to Nephele's internal strategies, i.e. a checkpoint is created if the estimated
+	 * cost to recompute the task's output exceeds the estimated cost to write the output to disk.
 	 */
 	DYNAMIC;
 }
@@ -43,6 +43,55 @@ public final class CheckpointUtils {
 
 	public static final String COMPLETED_CHECKPOINT_SUFFIX = "_final";
 
+	/**
+	 * The key to configure the maximum number of envelopes queued for being written to a checkpoint.
+	 */
+	public static final String WRITE_QUEUE_SIZE_KEY = "checkpoint.write.queuesize";
+
+	/**
+	 * The key to configure the number of bytes collected before the checkpoint data is written to disk.
+	 */
+	public static final String WRITE_BATCH_SIZE_KEY = "checkpoint.write.batchsize";
+
+	/**
+	 * The key to configure whether the checkpoint data shall be compressed before being written to disk.
+	 */
+	public static final String COMPRESSION_KEY = "checkpoint.compression";
+
+	/**
+	 * The key to configure the number of output bytes a task must have produced before the dynamic checkpoint decision
+	 * is made.
+	 */
+	public static final String DECISION_SAMPLE_SIZE_KEY = "checkpoint.decision.samplesize";
+
+	/**
+	 * The key to configure the throughput in MB/s at which checkpoint data is assumed to be written to disk.
+	 */
+	public static final String DECISION_DISK_THROUGHPUT_KEY = "checkpoint.decision.diskthroughput";
+
+	/**
+	 * The key to configure the throughput in MB/s at which a recomputed task is assumed to receive its input again.
+	 */
+	public static final String DECISION_INPUT_THROUGHPUT_KEY = "checkpoint.decision.inputthroughput";
+
+	/**
+	 * The key to configure by how many percent the estimated recompute cost must exceed the estimated checkpoint cost
+	 * before a checkpoint is created.
+	 */
+	public static final String DECISION_COST_RATIO_KEY = "checkpoint.decision.costratio";
+
+	public static final int DEFAULT_WRITE_QUEUE_SIZE = 256;
+
+	public static final int DEFAULT_WRITE_BATCH_SIZE = 1024 * 1024;
+
+	public static final int DEFAULT_DECISION_SAMPLE_SIZE = 16 * 1024 * 1024;
+
+	public static final int DEFAULT_DECISION_DISK_THROUGHPUT = 80;
+
+	public static final int DEFAULT_DECISION_INPUT_THROUGHPUT = 100;
+
+	public static final int DEFAULT_DECISION_COST_RATIO = 100;
+
 	private static Path LOCAL_CHECKPOINT_PATH = null;
 
 	private static Path DISTRIBUTED_CHECKPOINT_PATH = null;
@@ -224,6 +273,8 @@ public final class CheckpointUtils {
 				CHECKPOINT_MODE = CheckpointMode.ALWAYS;
 			} else if ("network".equals(mode)) {
 				CHECKPOINT_MODE = CheckpointMode.NETWORK;
+			} else if ("dynamic".equals(mode)) {
+				CHECKPOINT_MODE = CheckpointMode.DYNAMIC;
 			} else {
 				CHECKPOINT_MODE = CheckpointMode.NEVER;
 			}
@@ -232,6 +283,43 @@ public final class CheckpointUtils {
 		return CHECKPOINT_MODE;
 	}
 
+	public static int getWriteQueueSize() {
+
+		return Math.max(1, GlobalConfiguration.getInteger(WRITE_QUEUE_SIZE_KEY, DEFAULT_WRITE_QUEUE_SIZE));
+	}
+
+	public static int getWriteBatchSize() {
+
+		return Math.max(0, GlobalConfiguration.getInteger(WRITE_BATCH_SIZE_KEY, DEFAULT_WRITE_BATCH_SIZE));
+	}
+
+	public static boolean isCheckpointCompressionEnabled() {
+
+		return GlobalConfiguration.getBoolean(COMPRESSION_KEY, false);
+	}
+
+	public static long getDecisionSampleSize() {
+
+		return Math.max(0L, GlobalConfiguration.getLong(DECISION_SAMPLE_SIZE_KEY, DEFAULT_DECISION_SAMPLE_SIZE));
+	}
+
+	public static int getDecisionDiskThroughput() {
+
+		return Math.max(1, GlobalConfiguration.getInteger(DECISION_DISK_THROUGHPUT_KEY,
+			DEFAULT_DECISION_DISK_THROUGHPUT));
+	}
+
+	public static int getDecisionInputThroughput() {
+
+		return Math.max(1, GlobalConfiguration.getInteger(DECISION_INPUT_THROUGHPUT_KEY,
+			DEFAULT_DECISION_INPUT_THROUGHPUT));
+	}
+
+	public static int getDecisionCostRatio() {
+
+		return Math.max(0, GlobalConfiguration.getInteger(DECISION_COST_RATIO_KEY, DEFAULT_DECISION_COST_RATIO));
+	}
+
 	public static boolean allowDistributedCheckpoints() {
 
 		return false;
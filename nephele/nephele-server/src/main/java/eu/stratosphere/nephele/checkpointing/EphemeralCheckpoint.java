@@ -36,7 +36,8 @@ import eu.stratosphere.nephele.io.channels.FileBufferManager;
  * for each task (more precisely its {@link Environment} object). For file channels
  * an ephemeral checkpoint is always persistent, i.e. data is immediately written to disk.
  * For network channels the ephemeral checkpoint is held into main memory until a checkpoint
- * decision is made. Based on this decision the checkpoint is either made permanent or discarded.
+ * decision is made. Based on this decision the checkpoint is either made permanent or discarded. A permanent
+ * checkpoint is written to disk incrementally by a {@link WriteThread} in the background.
  * <p>
  * This class is not thread-safe.
  * 
@@ -69,6 +70,16 @@ public class EphemeralCheckpoint implements CheckpointDecisionRequester {
 	 */
 	private boolean completeCheckpointAnnounced = false;
 
+	/**
+	 * The profiling data the checkpoint decision is based on.
+	 */
+	private final CheckpointCostProfile costProfile = new CheckpointCostProfile();
+
+	/**
+	 * The number of produced bytes after which the checkpoint decision is made at the latest.
+	 */
+	private final long decisionSampleSize;
+
 	/**
 	 * Reference to a write thread that may be spawned to write the checkpoint data asynchronously
 	 */
@@ -109,6 +120,7 @@ public class EphemeralCheckpoint implements CheckpointDecisionRequester {
 
 		this.task = task;
 		this.totalNumberOfOutputChannels = totalNumberOfOutputChannels;
+		this.decisionSampleSize = CheckpointUtils.getDecisionSampleSize();
 
 		this.checkpointingDecision = (ephemeral ? CheckpointingDecisionState.UNDECIDED
 			: CheckpointingDecisionState.CHECKPOINTING);
@@ -124,7 +136,7 @@ public class EphemeralCheckpoint implements CheckpointDecisionRequester {
 				LOG.error(StringUtils.stringifyException(e));
 			}
 			this.writeThread = new WriteThread(FileBufferManager.getInstance(), this.task.getVertexID(),
-				this.totalNumberOfOutputChannels);
+				getTaskName(), this.totalNumberOfOutputChannels);
 			this.writeThread.start();
 		}
 	}
@@ -146,17 +158,21 @@ public class EphemeralCheckpoint implements CheckpointDecisionRequester {
 		}
 	}
 
-	private void write() throws IOException, InterruptedException {
+	private void write() throws IOException {
 
 		if (this.writeThread == null) {
-			this.writeThread = new WriteThread(FileBufferManager.getInstance(), task.getVertexID(),
-				this.totalNumberOfOutputChannels);
+			this.writeThread = new WriteThread(FileBufferManager.getInstance(), this.task.getVertexID(),
+				getTaskName(), this.totalNumberOfOutputChannels);
 			this.writeThread.start();
 		}
 
-		while (!this.queuedEnvelopes.isEmpty()) {
-			this.writeThread.write(this.queuedEnvelopes.poll());
-		}
+		// Hand the queued envelopes over without blocking, the write thread spills them in the background
+		this.writeThread.writeAll(this.queuedEnvelopes);
+	}
+
+	private String getTaskName() {
+
+		return this.task.getRuntimeEnvironment().getTaskNameWithIndex();
 	}
 
 	public void setCheckpointDecisionSynchronously(final boolean checkpointDecision) throws IOException,
@@ -179,6 +195,34 @@ public class EphemeralCheckpoint implements CheckpointDecisionRequester {
 		}
 	}
 
+	/**
+	 * Makes the checkpoint decision for the task based on the profiling data collected so far, unless the decision has
+	 * already been made.
+	 * 
+	 * @throws IOException
+	 *         thrown if an I/O error occurs while writing the queued data to the checkpoint
+	 * @throws InterruptedException
+	 *         thrown if the caller is interrupted while writing the queued data to the checkpoint
+	 */
+	public void makeCheckpointDecision() throws IOException, InterruptedException {
+
+		if (!isUndecided()) {
+			return;
+		}
+
+		setCheckpointDecisionSynchronously(CheckpointDecision.getDecision(this.task, this.costProfile));
+	}
+
+	/**
+	 * Returns the profile which collects the data the checkpoint decision is based on.
+	 * 
+	 * @return the profile which collects the data the checkpoint decision is based on
+	 */
+	public CheckpointCostProfile getCostProfile() {
+
+		return this.costProfile;
+	}
+
 	public void forward(final TransferEnvelope transferEnvelope) throws IOException, InterruptedException {
 
 		if (this.checkpointingDecision == CheckpointingDecisionState.NO_CHECKPOINTING) {
@@ -190,9 +234,14 @@ public class EphemeralCheckpoint implements CheckpointDecisionRequester {
 		if (this.checkpointingDecision == CheckpointingDecisionState.UNDECIDED) {
 			this.queuedEnvelopes.add(dup);
 
-			if (this.asyncronousCheckpointDecisionRequested) {
-				// TODO: Move decision logic here
-				setCheckpointDecisionSynchronously(true);
+			final Buffer buffer = dup.getBuffer();
+			if (buffer != null) {
+				this.costProfile.reportProducedBytes(buffer.size());
+			}
+
+			if (this.asyncronousCheckpointDecisionRequested
+				|| this.costProfile.getProducedBytes() >= this.decisionSampleSize) {
+				makeCheckpointDecision();
 			}
 
 		} else {
@@ -207,9 +256,7 @@ public class EphemeralCheckpoint implements CheckpointDecisionRequester {
 
 	public boolean hasDataLeft() throws IOException, InterruptedException {
 
-		if (isUndecided()) {
-			setCheckpointDecisionSynchronously(true);
-		}
+		makeCheckpointDecision();
 
 		if (this.writeThread == null) {
 			return false;
@@ -178,11 +178,12 @@ final class ReplayTaskContext implements TaskContext, BufferProvider, Asynchrono
 		final int ava = this.localBufferPool.getNumberOfAvailableBuffers();
 		final int req = this.localBufferPool.getRequestedNumberOfBuffers();
 		final int des = this.localBufferPool.getDesignatedNumberOfBuffers();
+		final long wai = this.localBufferPool.getNumberOfBlockingWaits();
 
 		final Environment environment = this.task.getEnvironment();
 
 		System.out.println("\t\t" + environment.getTaskName() + " (Replay): " + ava + " available, " + req
-			+ " requested, " + des + " designated");
+			+ " requested, " + des + " designated, " + wai + " blocking waits");
 	}
 
 	/**
@@ -174,6 +174,7 @@ final class ReplayThread extends Thread {
 
 		Buffer firstDeserializedFileBuffer = null;
 		FileChannel fileChannel = null;
+		final CheckpointCompression compression = new CheckpointCompression();
 
 		try {
 
@@ -236,8 +237,13 @@ final class ReplayThread extends Thread {
 									continue;
 								}
 
-								final Buffer destBuffer = broker.requestEmptyBufferBlocking(srcBuffer.size());
-								srcBuffer.copyToBuffer(destBuffer);
+								final Buffer destBuffer;
+								if (deserializer.isBufferCompressed()) {
+									destBuffer = compression.decompress(srcBuffer, broker);
+								} else {
+									destBuffer = broker.requestEmptyBufferBlocking(srcBuffer.size());
+									srcBuffer.copyToBuffer(destBuffer);
+								}
 								transferEnvelope.setBuffer(destBuffer);
 								srcBuffer.recycleBuffer();
 							}
@@ -260,6 +266,7 @@ final class ReplayThread extends Thread {
 			}
 
 		} finally {
+			compression.destroy();
 			if (firstDeserializedFileBuffer != null) {
 				firstDeserializedFileBuffer.recycleBuffer();
 				firstDeserializedFileBuffer = null;
@@ -13,16 +13,20 @@
  *
  **********************************************************************************************************************/
 
+
 package eu.stratosphere.nephele.checkpointing;
 
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -35,10 +39,21 @@ import eu.stratosphere.nephele.fs.Path;
 import eu.stratosphere.nephele.io.channels.Buffer;
 import eu.stratosphere.nephele.io.channels.BufferFactory;
 import eu.stratosphere.nephele.io.channels.ChannelCloseEvent;
+import eu.stratosphere.nephele.io.channels.ChannelWithPosition;
 import eu.stratosphere.nephele.io.channels.FileBufferManager;
+import eu.stratosphere.nephele.io.channels.MemoryBuffer;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.CheckpointSerializer;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
 
+/**
+ * The write thread persists the transfer envelopes of a checkpoint in the background. The envelopes are handed over
+ * through a queue with a bounded capacity, so a producing task is only blocked if the disk cannot keep up with it.
+ * <p>
+ * The write thread processes the queued envelopes in batches. The data of the memory-backed buffers of a batch is
+ * collected in a staging buffer, optionally compressed, and written to the checkpoint file with a single positional
+ * write, so the memory buffers can be recycled quickly. The meta data of the envelopes is buffered as well and
+ * written once per batch.
+ */
 final class WriteThread extends Thread {
 
 	/**
@@ -51,13 +66,64 @@ final class WriteThread extends Thread {
 	 */
 	private static final int BUFFER_SIZE = 4096;
 
-	private final BlockingQueue<TransferEnvelope> queuedEnvelopes;
+	/**
+	 * The size of the buffer collecting the meta data of a batch in bytes.
+	 */
+	private static final int META_DATA_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The maximum number of envelopes written in one batch.
+	 */
+	private static final int MAXIMUM_NUMBER_OF_ENVELOPES_PER_BATCH = 64;
+
+	private final BlockingQueue<TransferEnvelope> queuedEnvelopes = new LinkedBlockingQueue<TransferEnvelope>();
+
+	/**
+	 * The maximum number of queued envelopes before {@link #write(TransferEnvelope)} blocks.
+	 */
+	private final int maximumNumberOfQueuedEnvelopes;
+
+	/**
+	 * The envelopes of the batch which is currently written.
+	 */
+	private final List<TransferEnvelope> batch = new ArrayList<TransferEnvelope>(MAXIMUM_NUMBER_OF_ENVELOPES_PER_BATCH);
+
+	/**
+	 * The position of each envelope's data in the staging buffer or <code>-1</code> if the envelope's data has not
+	 * been staged.
+	 */
+	private final int[] stagedPositions = new int[MAXIMUM_NUMBER_OF_ENVELOPES_PER_BATCH];
+
+	/**
+	 * The length of each envelope's staged data in bytes.
+	 */
+	private final int[] stagedLengths = new int[MAXIMUM_NUMBER_OF_ENVELOPES_PER_BATCH];
+
+	/**
+	 * Stores for each envelope of the batch whether its buffer's data has been compressed.
+	 */
+	private final boolean[] compressedBuffers = new boolean[MAXIMUM_NUMBER_OF_ENVELOPES_PER_BATCH];
+
+	/**
+	 * The buffer collecting the data of a batch or <code>null</code> if the data shall be written buffer by buffer.
+	 */
+	private final ByteBuffer stagingBuffer;
+
+	/**
+	 * The compression applied to the buffers' data or <code>null</code> if the data shall not be compressed.
+	 */
+	private final CheckpointCompression compression;
 
 	/**
 	 * The serializer to convert a transfer envelope into a byte stream.
 	 */
 	private final CheckpointSerializer transferEnvelopeSerializer = new CheckpointSerializer();
 
+	/**
+	 * The channel buffering the meta data of a batch.
+	 */
+	private final MetaDataChannel metaDataChannel = new MetaDataChannel();
+
 	/**
 	 * The current suffix for the name of the file containing the meta data.
 	 */
@@ -87,6 +153,11 @@ final class WriteThread extends Thread {
 
 	private final ExecutionVertexID vertexID;
 
+	/**
+	 * The name of the task the checkpoint belongs to, used to report the checkpoint statistics.
+	 */
+	private final String taskName;
+
 	/**
 	 * The file system to write the checkpoints to.
 	 */
@@ -109,21 +180,46 @@ final class WriteThread extends Thread {
 
 	private Buffer firstSerializedFileBuffer = null;
 
+	/**
+	 * The number of bytes of buffer data written to the checkpoint, before compression.
+	 */
+	private long numberOfUncompressedBytes = 0L;
+
+	/**
+	 * The number of bytes written to the checkpoint, including the meta data.
+	 */
+	private long numberOfBytesWritten = 0L;
+
+	/**
+	 * The time spent writing to the checkpoint files in nanoseconds.
+	 */
+	private long writeTime = 0L;
+
+	/**
+	 * The time the first batch has been written in milliseconds.
+	 */
+	private long startTime = -1L;
+
 	private volatile boolean hasDataLeft = false;
 
 	private volatile boolean isCanceled = false;
 
 	private volatile IOException ioException = null;
 
-	WriteThread(final FileBufferManager fileBufferManager, final ExecutionVertexID vertexID,
+	WriteThread(final FileBufferManager fileBufferManager, final ExecutionVertexID vertexID, final String taskName,
 			final int numberOfConnectedChannels) {
 
 		super("Write thread for vertex " + vertexID);
 
 		this.fileBufferManager = fileBufferManager;
 		this.vertexID = vertexID;
+		this.taskName = taskName;
 		this.numberOfConnectedChannels = numberOfConnectedChannels;
-		this.queuedEnvelopes = new ArrayBlockingQueue<TransferEnvelope>(256);
+		this.maximumNumberOfQueuedEnvelopes = CheckpointUtils.getWriteQueueSize();
+
+		final int batchSize = CheckpointUtils.getWriteBatchSize();
+		this.stagingBuffer = (batchSize > 0) ? ByteBuffer.allocateDirect(batchSize) : null;
+		this.compression = CheckpointUtils.isCheckpointCompressionEnabled() ? new CheckpointCompression() : null;
 
 		final boolean dist = CheckpointUtils.allowDistributedCheckpoints();
 
@@ -151,19 +247,23 @@ final class WriteThread extends Thread {
 
 		while (!this.isCanceled) {
 
-			TransferEnvelope te = null;
-
 			try {
-				te = this.queuedEnvelopes.take();
-
-				if (!writeToCheckpointAndRecycle(te)) {
-					break;
-				}
-
+				this.batch.add(this.queuedEnvelopes.take());
 			} catch (InterruptedException e) {
 				if (this.isCanceled) {
 					break;
 				}
+				continue;
+			}
+
+			this.queuedEnvelopes.drainTo(this.batch, MAXIMUM_NUMBER_OF_ENVELOPES_PER_BATCH - 1);
+			signalQueueSpace();
+
+			final boolean moreEnvelopesExpected = writeBatchToCheckpointAndRecycle();
+			this.batch.clear();
+
+			if (!moreEnvelopesExpected) {
+				break;
 			}
 		}
 
@@ -172,28 +272,72 @@ final class WriteThread extends Thread {
 			this.firstSerializedFileBuffer = null;
 		}
 
+		if (this.compression != null) {
+			this.compression.destroy();
+		}
+
 		// Clean up in case we were canceled
 		while (!this.queuedEnvelopes.isEmpty()) {
-			final TransferEnvelope te = this.queuedEnvelopes.poll();
-			final Buffer buffer = te.getBuffer();
-			if (buffer != null) {
-				buffer.recycleBuffer();
-			}
+			recycleTransferEnvelope(this.queuedEnvelopes.poll());
 		}
+		signalQueueSpace();
 
 		// No more data left to be processed in this write thread
 		this.hasDataLeft = false;
 	}
 
+	/**
+	 * Queues the given transfer envelope to be written to the checkpoint. The method blocks while the maximum number
+	 * of envelopes is queued.
+	 * 
+	 * @param transferEnvelope
+	 *        the transfer envelope to be written
+	 * @throws IOException
+	 *         thrown if an earlier write to the checkpoint has failed
+	 * @throws InterruptedException
+	 *         thrown if the caller is interrupted while waiting for space in the queue
+	 */
 	void write(final TransferEnvelope transferEnvelope) throws IOException, InterruptedException {
 
 		this.hasDataLeft = true;
 
+		synchronized (this.queuedEnvelopes) {
+			while (this.queuedEnvelopes.size() >= this.maximumNumberOfQueuedEnvelopes && this.ioException == null
+				&& isAlive()) {
+				this.queuedEnvelopes.wait();
+			}
+		}
+
 		if (this.ioException != null) {
 			throw this.ioException;
 		}
 
-		this.queuedEnvelopes.put(transferEnvelope);
+		this.queuedEnvelopes.add(transferEnvelope);
+	}
+
+	/**
+	 * Queues all given transfer envelopes to be written to the checkpoint without blocking. Since the envelopes are
+	 * already held in memory, queuing them does not increase the memory consumption.
+	 * 
+	 * @param transferEnvelopes
+	 *        the transfer envelopes to be written, the queue is empty after the call
+	 * @throws IOException
+	 *         thrown if an earlier write to the checkpoint has failed
+	 */
+	void writeAll(final Queue<TransferEnvelope> transferEnvelopes) throws IOException {
+
+		if (transferEnvelopes.isEmpty()) {
+			return;
+		}
+
+		this.hasDataLeft = true;
+
+		if (this.ioException != null) {
+			throw this.ioException;
+		}
+
+		this.queuedEnvelopes.addAll(transferEnvelopes);
+		transferEnvelopes.clear();
 	}
 
 	void cancelAndDestroy() {
@@ -204,6 +348,17 @@ final class WriteThread extends Thread {
 			join();
 		} catch (InterruptedException e) {
 		}
+
+		if (LOG.isDebugEnabled() && this.numberOfBytesWritten > 0L) {
+			LOG.debug("Canceled checkpoint for " + this.taskName + ", " + getStatistics());
+		}
+	}
+
+	private void signalQueueSpace() {
+
+		synchronized (this.queuedEnvelopes) {
+			this.queuedEnvelopes.notifyAll();
+		}
 	}
 
 	private static void recycleTransferEnvelope(final TransferEnvelope transferEnvelope) {
@@ -215,109 +370,255 @@ final class WriteThread extends Thread {
 	}
 
 	/**
-	 * Writes the given transfer envelope to the disk and afterwards recycles its resources. In case of an I/O error,
-	 * the method will save the IOException to ioException, recycle all resources all return <code>false</code>.
+	 * Writes the current batch of transfer envelopes to the disk and afterwards recycles their resources. In case of
+	 * an I/O error, the method will save the IOException to ioException, recycle all resources and return
+	 * <code>false</code>.
 	 * 
-	 * @param transferEnvelope
-	 *        the envelope to be written to disk
 	 * @return <code>true</code> if more transfer envelopes are expected to follow, <code>false</code> otherwise
 	 */
-	private boolean writeToCheckpointAndRecycle(final TransferEnvelope transferEnvelope) {
+	private boolean writeBatchToCheckpointAndRecycle() {
 
-		Buffer buffer = transferEnvelope.getBuffer();
-		if (buffer != null) {
-			if (buffer.isBackedByMemory()) {
+		if (this.startTime < 0L) {
+			this.startTime = System.currentTimeMillis();
+		}
+
+		final int numberOfEnvelopes = this.batch.size();
+		int numberOfWrittenEnvelopes = 0;
+
+		try {
+			writeBufferData();
+
+			if (this.fileSystem == null) {
+				this.fileSystem = this.checkpointPath.getFileSystem();
+			}
+
+			if (this.defaultBlockSize < 0L) {
+				this.defaultBlockSize = this.fileSystem.getDefaultBlockSize();
+			}
+
+			for (int i = 0; i < numberOfEnvelopes; ++i) {
+
+				// The envelope's resources are recycled by the following call in any case
+				numberOfWrittenEnvelopes = i + 1;
+				if (!writeMetaData(this.batch.get(i), this.compressedBuffers[i])) {
+					// The checkpoint is complete
+					break;
+				}
+			}
 
-				// Make sure we transfer the encapsulated buffer to a file and release the memory buffer again
-				Buffer fileBuffer = null;
+			if (numberOfWrittenEnvelopes < numberOfEnvelopes) {
+				LOG.error("Received " + (numberOfEnvelopes - numberOfWrittenEnvelopes)
+					+ " envelopes after checkpoint of vertex " + this.vertexID + " has been completed");
+				return false;
+			}
+
+			flushMetaData();
+
+		} catch (IOException ioe) {
+			this.ioException = ioe;
+			return false;
+		} finally {
+			// Recycle all the resources which have not been written
+			for (int i = numberOfWrittenEnvelopes; i < numberOfEnvelopes; ++i) {
+				recycleTransferEnvelope(this.batch.get(i));
+			}
+		}
+
+		return (this.numberOfClosedChannels < this.numberOfConnectedChannels);
+	}
+
+	/**
+	 * Transfers the data of the memory-backed buffers of the current batch to the checkpoint file and replaces them
+	 * with the corresponding file buffers.
+	 * 
+	 * @throws IOException
+	 *         thrown if an I/O error occurs while writing the data
+	 */
+	private void writeBufferData() throws IOException {
+
+		final int numberOfEnvelopes = this.batch.size();
+		int firstUnflushedEnvelope = 0;
+
+		for (int i = 0; i < numberOfEnvelopes; ++i) {
+
+			this.stagedPositions[i] = -1;
+			this.compressedBuffers[i] = false;
+
+			final TransferEnvelope transferEnvelope = this.batch.get(i);
+			final Buffer buffer = transferEnvelope.getBuffer();
+			if (buffer == null || !buffer.isBackedByMemory()) {
+				continue;
+			}
+
+			final ByteBuffer src = ((MemoryBuffer) buffer).getByteBuffer().duplicate();
+			src.position(0);
+			src.limit(buffer.size());
+			this.numberOfUncompressedBytes += src.remaining();
+
+			ByteBuffer data = src;
+			if (this.compression != null) {
+				final ByteBuffer compressed = this.compression.compress(src);
+				if (compressed != null) {
+					data = compressed;
+					this.compressedBuffers[i] = true;
+				}
+			}
+
+			if (this.stagingBuffer == null || data.remaining() > this.stagingBuffer.capacity()) {
+
+				// Write the data directly into a file buffer of its own
+				final Buffer fileBuffer = BufferFactory.createFromFile(data.remaining(), this.vertexID,
+					this.fileBufferManager, this.distributed, false);
+				final long start = System.nanoTime();
 				try {
-					fileBuffer = BufferFactory.createFromFile(buffer.size(), this.vertexID,
-						this.fileBufferManager, this.distributed, false);
-					buffer.copyToBuffer(fileBuffer);
-				} catch (IOException ioe) {
-					this.ioException = ioe;
-					if (fileBuffer != null) {
-						fileBuffer.recycleBuffer();
+					while (data.hasRemaining()) {
+						this.numberOfBytesWritten += fileBuffer.write(data);
 					}
-					recycleTransferEnvelope(transferEnvelope);
-					return false;
+					fileBuffer.finishWritePhase();
+				} catch (IOException ioe) {
+					fileBuffer.recycleBuffer();
+					throw ioe;
+				} finally {
+					this.writeTime += System.nanoTime() - start;
 				}
 
 				transferEnvelope.setBuffer(fileBuffer);
 				buffer.recycleBuffer();
+				continue;
+			}
+
+			if (data.remaining() > this.stagingBuffer.remaining()) {
+				flushStagingBuffer(firstUnflushedEnvelope, i);
+				firstUnflushedEnvelope = i;
 			}
+
+			this.stagedPositions[i] = this.stagingBuffer.position();
+			this.stagedLengths[i] = data.remaining();
+			this.stagingBuffer.put(data);
+		}
+
+		flushStagingBuffer(firstUnflushedEnvelope, numberOfEnvelopes);
+	}
+
+	/**
+	 * Writes the staged data of the envelopes in the given range of the current batch to the checkpoint file with a
+	 * single positional write and replaces the envelopes' memory buffers with the corresponding file buffers.
+	 * 
+	 * @param from
+	 *        the index of the first envelope of the range
+	 * @param to
+	 *        the index after the last envelope of the range
+	 * @throws IOException
+	 *         thrown if an I/O error occurs while writing the data
+	 */
+	private void flushStagingBuffer(final int from, final int to) throws IOException {
+
+		this.stagingBuffer.flip();
+		final int length = this.stagingBuffer.remaining();
+		if (length == 0) {
+			this.stagingBuffer.clear();
+			return;
 		}
 
-		if (this.fileSystem == null) {
+		final ChannelWithPosition channelWithPosition = this.fileBufferManager.getChannelForWriteAndIncrementReferences(
+			this.vertexID, length, this.distributed, false);
+
+		try {
+			final FileChannel fileChannel = channelWithPosition.getChannel();
+			final long offset = channelWithPosition.getOffset();
+
+			final long start = System.nanoTime();
 			try {
-				this.fileSystem = this.checkpointPath.getFileSystem();
-			} catch (IOException ioe) {
-				this.ioException = ioe;
-				recycleTransferEnvelope(transferEnvelope);
-				return false;
+				while (this.stagingBuffer.hasRemaining()) {
+					fileChannel.write(this.stagingBuffer, offset + this.stagingBuffer.position());
+				}
+			} finally {
+				this.writeTime += System.nanoTime() - start;
+			}
+			this.numberOfBytesWritten += length;
+
+			for (int i = from; i < to; ++i) {
+
+				if (this.stagedPositions[i] < 0) {
+					continue;
+				}
+
+				final TransferEnvelope transferEnvelope = this.batch.get(i);
+				final Buffer fileBuffer = BufferFactory.createFromCheckpoint(this.stagedLengths[i], offset
+					+ this.stagedPositions[i], this.vertexID, this.fileBufferManager, this.distributed);
+				transferEnvelope.getBuffer().recycleBuffer();
+				transferEnvelope.setBuffer(fileBuffer);
+				this.stagedPositions[i] = -1;
 			}
-		}
 
-		if (this.defaultBlockSize < 0L) {
-			this.defaultBlockSize = this.fileSystem.getDefaultBlockSize();
+		} finally {
+			this.stagingBuffer.clear();
+			// The file buffers hold their own references to the channel
+			this.fileBufferManager.decrementReferences(this.vertexID);
 		}
+	}
 
-		// Finish meta data file when the corresponding checkpoint fraction is 10 times the file system's block size
-		if (this.numberOfBytesPerMetaDataFile > 10L * this.defaultBlockSize && !this.distributed) {
+	/**
+	 * Writes the meta data of the given transfer envelope to the checkpoint and afterwards recycles its resources. The
+	 * resources are also recycled if an I/O error occurs.
+	 * 
+	 * @param transferEnvelope
+	 *        the envelope whose meta data shall be written, its data must already reside in a file buffer
+	 * @param bufferCompressed
+	 *        <code>true</code> if the data of the envelope's buffer is compressed, <code>false</code> otherwise
+	 * @return <code>true</code> if more transfer envelopes are expected to follow, <code>false</code> otherwise
+	 * @throws IOException
+	 *         thrown if an I/O error occurs while writing the meta data
+	 */
+	private boolean writeMetaData(final TransferEnvelope transferEnvelope, final boolean bufferCompressed)
+			throws IOException {
 
-			if (this.metaDataFileChannel != null) {
+		try {
+			// Finish meta data file when the corresponding checkpoint fraction is 10 times the file system's block size
+			if (this.numberOfBytesPerMetaDataFile > 10L * this.defaultBlockSize && !this.distributed) {
 
-				try {
+				if (this.metaDataFileChannel != null) {
+
+					flushMetaData();
 					this.metaDataFileChannel.close();
 					this.metaDataFileChannel = null;
 
 					// Rename file
 					renameCheckpointPart();
-				} catch (IOException ioe) {
-					this.ioException = ioe;
-					recycleTransferEnvelope(transferEnvelope);
-					return false;
+
+					// Increase the meta data suffix
+					++this.metaDataSuffix;
 				}
 
-				// Increase the meta data suffix
-				++this.metaDataSuffix;
+				// Reset counter
+				this.numberOfBytesPerMetaDataFile = 0L;
 			}
 
-			// Reset counter
-			this.numberOfBytesPerMetaDataFile = 0L;
-		}
-
-		if (this.metaDataFileChannel == null) {
-			try {
+			if (this.metaDataFileChannel == null) {
 				this.metaDataFileChannel = getMetaDataFileChannel("_part");
-			} catch (IOException ioe) {
-				this.ioException = ioe;
-				recycleTransferEnvelope(transferEnvelope);
-				return false;
 			}
-		}
 
-		this.transferEnvelopeSerializer.setTransferEnvelope(transferEnvelope);
-		try {
-			while (this.transferEnvelopeSerializer.write(this.metaDataFileChannel)) {
+			this.transferEnvelopeSerializer.setTransferEnvelope(transferEnvelope);
+			this.transferEnvelopeSerializer.setBufferCompressed(bufferCompressed);
+			while (this.transferEnvelopeSerializer.write(this.metaDataChannel)) {
 			}
 		} catch (IOException ioe) {
-			this.ioException = ioe;
 			recycleTransferEnvelope(transferEnvelope);
-			return false;
+			throw ioe;
 		}
 
 		// The following code will prevent the underlying file from being closed
-		buffer = transferEnvelope.getBuffer();
+		final Buffer buffer = transferEnvelope.getBuffer();
 		if (buffer != null) {
+
+			// Increase the number of serialized transfer envelopes
+			this.numberOfBytesPerMetaDataFile += buffer.size();
+
 			if (this.firstSerializedFileBuffer == null) {
 				this.firstSerializedFileBuffer = buffer;
 			} else {
 				buffer.recycleBuffer();
 			}
-
-			// Increase the number of serialized transfer envelopes
-			this.numberOfBytesPerMetaDataFile += buffer.size();
 		}
 
 		// At this point, all resources are either recycled or saved to firstSerializedFileBuffer
@@ -338,27 +639,27 @@ final class WriteThread extends Thread {
 			// Finally, close the underlying file
 			if (this.firstSerializedFileBuffer != null) {
 				this.firstSerializedFileBuffer.recycleBuffer();
+				this.firstSerializedFileBuffer = null;
 			}
 
 			// Finish meta data file
-			try {
-				if (this.metaDataFileChannel != null) {
-					this.metaDataFileChannel.close();
-
-					// Rename file
-					renameCheckpointPart();
-				}
-
-				// Write the meta data file to indicate the checkpoint is complete
-				this.metaDataFileChannel = getMetaDataFileChannel(CheckpointUtils.COMPLETED_CHECKPOINT_SUFFIX);
-				this.metaDataFileChannel.write(ByteBuffer.allocate(0));
+			if (this.metaDataFileChannel != null) {
+				flushMetaData();
 				this.metaDataFileChannel.close();
-			} catch (IOException ioe) {
-				this.ioException = ioe;
-				return false;
+				this.metaDataFileChannel = null;
+
+				// Rename file
+				renameCheckpointPart();
 			}
 
-			LOG.info("Finished persistent checkpoint for vertex " + this.vertexID);
+			// Write the meta data file to indicate the checkpoint is complete
+			final FileChannel completedFileChannel = getMetaDataFileChannel(
+				CheckpointUtils.COMPLETED_CHECKPOINT_SUFFIX);
+			completedFileChannel.write(ByteBuffer.allocate(0));
+			completedFileChannel.close();
+
+			LOG.info("Finished persistent checkpoint for " + this.taskName + " (vertex " + this.vertexID + "), "
+				+ getStatistics());
 
 			return false;
 		}
@@ -366,6 +667,51 @@ final class WriteThread extends Thread {
 		return true;
 	}
 
+	/**
+	 * Writes the buffered meta data to the meta data file.
+	 * 
+	 * @throws IOException
+	 *         thrown if an I/O error occurs while writing the meta data
+	 */
+	private void flushMetaData() throws IOException {
+
+		final ByteBuffer metaData = this.metaDataChannel.buffer;
+		metaData.flip();
+
+		final long start = System.nanoTime();
+		try {
+			while (metaData.hasRemaining()) {
+				this.numberOfBytesWritten += this.metaDataFileChannel.write(metaData);
+			}
+		} finally {
+			this.writeTime += System.nanoTime() - start;
+			metaData.clear();
+		}
+	}
+
+	/**
+	 * Returns a textual summary of the data written to the checkpoint so far, including the achieved write bandwidth.
+	 * 
+	 * @return a textual summary of the data written to the checkpoint so far
+	 */
+	private String getStatistics() {
+
+		final double megaBytesWritten = this.numberOfBytesWritten / (1024.0 * 1024.0);
+		final double writeSeconds = Math.max(this.writeTime, 1L) / 1000000000.0;
+		final double elapsedSeconds = Math.max(System.currentTimeMillis() - this.startTime, 1L) / 1000.0;
+
+		final StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%.2f MB written in %.2f s (%.2f MB/s while writing, %.2f MB/s overall)",
+			megaBytesWritten, writeSeconds, megaBytesWritten / writeSeconds, megaBytesWritten / elapsedSeconds));
+
+		if (this.compression != null && this.numberOfUncompressedBytes > 0L) {
+			sb.append(String.format(", %.2f MB of buffer data before compression",
+				this.numberOfUncompressedBytes / (1024.0 * 1024.0)));
+		}
+
+		return sb.toString();
+	}
+
 	private boolean renameCheckpointPart() throws IOException {
 
 		final Path oldFile = this.checkpointPath.suffix(Path.SEPARATOR + CheckpointUtils.METADATA_PREFIX + "_"
@@ -408,4 +754,53 @@ final class WriteThread extends Thread {
 
 		return this.hasDataLeft;
 	}
+
+	/**
+	 * The meta data channel collects the serialized meta data of the envelopes in a buffer, which is flushed to the
+	 * meta data file when it is full or the batch has been processed.
+	 */
+	private final class MetaDataChannel implements WritableByteChannel {
+
+		private final ByteBuffer buffer = ByteBuffer.allocate(META_DATA_BUFFER_SIZE);
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int write(final ByteBuffer src) throws IOException {
+
+			if (!this.buffer.hasRemaining()) {
+				flushMetaData();
+			}
+
+			final int length = Math.min(src.remaining(), this.buffer.remaining());
+			if (length == src.remaining()) {
+				this.buffer.put(src);
+			} else {
+				final int limit = src.limit();
+				src.limit(src.position() + length);
+				this.buffer.put(src);
+				src.limit(limit);
+			}
+
+			return length;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean isOpen() {
+
+			return true;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void close() {
+			// Nothing to do here
+		}
+	}
 }
@@ -0,0 +1,355 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.deployment;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoSerializable;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.execution.librarycache.LibraryCacheManager;
+import eu.stratosphere.nephele.executiongraph.CheckpointState;
+import eu.stratosphere.nephele.executiongraph.ExecutionVertexID;
+import eu.stratosphere.nephele.jobgraph.JobID;
+import eu.stratosphere.nephele.template.AbstractInvokable;
+import eu.stratosphere.nephele.util.EnumUtils;
+import eu.stratosphere.nephele.util.StringUtils;
+
+/**
+ * A task deployment batch contains the {@link TaskDeploymentDescriptor} objects of all tasks of one job which are
+ * deployed to the same instance in a single remote procedure call. In contrast to a list of individually serialized
+ * descriptors, the batch transmits the data shared among the tasks only once: the job ID and the names of the
+ * required jar files are written once per batch, while the job configuration, the task configurations, the task
+ * names and the names of the invokable classes are written when they occur for the first time and referenced by
+ * their index afterwards. Since all subtasks of a group vertex share their configuration, the size of the batch
+ * grows with the number of channels rather than with the size of the configurations.
+ * <p>
+ * On deserialization, every task receives its own copy of the shared configurations, so the tasks cannot interfere
+ * with each other by modifying their configuration.
+ * <p>
+ * This class is not thread-safe.
+ */
+public final class TaskDeploymentBatch implements KryoSerializable {
+
+	/**
+	 * The ID of the job the tasks of this batch belong to.
+	 */
+	private JobID jobID;
+
+	/**
+	 * The deployment descriptors of the tasks in this batch.
+	 */
+	private List<TaskDeploymentDescriptor> tasks;
+
+	/**
+	 * Constructs a new task deployment batch.
+	 * 
+	 * @param tasks
+	 *        the deployment descriptors of the tasks to be deployed, all of them must belong to the same job
+	 */
+	public TaskDeploymentBatch(final List<TaskDeploymentDescriptor> tasks) {
+
+		if (tasks == null) {
+			throw new IllegalArgumentException("Argument tasks must not be null");
+		}
+
+		if (tasks.isEmpty()) {
+			throw new IllegalArgumentException("Argument tasks must not be empty");
+		}
+
+		final JobID jobID = tasks.get(0).getJobID();
+		for (final TaskDeploymentDescriptor tdd : tasks) {
+			if (!jobID.equals(tdd.getJobID())) {
+				throw new IllegalArgumentException("All tasks of a batch must belong to the same job");
+			}
+		}
+
+		this.jobID = jobID;
+		this.tasks = tasks;
+	}
+
+	/**
+	 * Default constructor for serialization/deserialization.
+	 */
+	public TaskDeploymentBatch() {
+
+		this.jobID = null;
+		this.tasks = null;
+	}
+
+	/**
+	 * Returns the ID of the job the tasks of this batch belong to.
+	 * 
+	 * @return the ID of the job the tasks of this batch belong to
+	 */
+	public JobID getJobID() {
+
+		return this.jobID;
+	}
+
+	/**
+	 * Returns the deployment descriptors of the tasks in this batch.
+	 * 
+	 * @return the deployment descriptors of the tasks in this batch
+	 */
+	public List<TaskDeploymentDescriptor> getTaskDeploymentDescriptors() {
+
+		return Collections.unmodifiableList(this.tasks);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void write(final Kryo kryo, final Output output) {
+
+		kryo.writeObject(output, this.jobID);
+
+		// Write out the names of the required jar files
+		String[] requiredJarFiles = null;
+		try {
+			requiredJarFiles = LibraryCacheManager.getRequiredJarFiles(this.jobID);
+		} catch (IOException ioe) {
+			throw new RuntimeException(ioe);
+		}
+
+		output.writeVarInt(requiredJarFiles.length, true);
+		for (int i = 0; i < requiredJarFiles.length; i++) {
+			output.writeString(requiredJarFiles[i]);
+		}
+
+		final Map<Configuration, Integer> configurations = new IdentityHashMap<Configuration, Integer>();
+		final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+		output.writeVarInt(this.tasks.size(), true);
+		for (final TaskDeploymentDescriptor tdd : this.tasks) {
+
+			kryo.writeObject(output, tdd.getVertexID());
+			writeString(output, tdd.getTaskName(), strings);
+			output.writeVarInt(tdd.getIndexInSubtaskGroup(), true);
+			output.writeVarInt(tdd.getCurrentNumberOfSubtasks(), true);
+			EnumUtils.writeEnum(output, tdd.getInitialCheckpointState());
+			writeString(output, tdd.getInvokableClass().getName(), strings);
+			writeConfiguration(kryo, output, tdd.getJobConfiguration(), configurations);
+			writeConfiguration(kryo, output, tdd.getTaskConfiguration(), configurations);
+
+			final ArrayList<GateDeploymentDescriptor> outputGates = new ArrayList<GateDeploymentDescriptor>(
+				tdd.getNumberOfOutputGateDescriptors());
+			for (int i = 0; i < tdd.getNumberOfOutputGateDescriptors(); ++i) {
+				outputGates.add(tdd.getOutputGateDescriptor(i));
+			}
+			kryo.writeObject(output, outputGates);
+
+			final ArrayList<GateDeploymentDescriptor> inputGates = new ArrayList<GateDeploymentDescriptor>(
+				tdd.getNumberOfInputGateDescriptors());
+			for (int i = 0; i < tdd.getNumberOfInputGateDescriptors(); ++i) {
+				inputGates.add(tdd.getInputGateDescriptor(i));
+			}
+			kryo.writeObject(output, inputGates);
+
+			output.writeBoolean(tdd.hasAlreadyBeenDeployed());
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public void read(final Kryo kryo, final Input input) {
+
+		this.jobID = kryo.readObject(input, JobID.class);
+
+		// Read names of required jar files
+		final String[] requiredJarFiles = new String[input.readVarInt(true)];
+		for (int i = 0; i < requiredJarFiles.length; i++) {
+			requiredJarFiles[i] = input.readString();
+		}
+
+		// Now register data with the library manager
+		try {
+			LibraryCacheManager.register(this.jobID, requiredJarFiles);
+		} catch (IOException ioe) {
+			throw new RuntimeException(ioe);
+		}
+
+		// Get ClassLoader from Library Manager
+		ClassLoader cl = null;
+		try {
+			cl = LibraryCacheManager.getClassLoader(this.jobID);
+		} catch (IOException ioe) {
+			throw new RuntimeException(ioe);
+		}
+
+		final List<Configuration> configurations = new ArrayList<Configuration>();
+		final List<String> strings = new ArrayList<String>();
+		final Map<String, Class<? extends AbstractInvokable>> invokableClasses =
+			new HashMap<String, Class<? extends AbstractInvokable>>();
+
+		final int numberOfTasks = input.readVarInt(true);
+		this.tasks = new ArrayList<TaskDeploymentDescriptor>(numberOfTasks);
+		for (int i = 0; i < numberOfTasks; ++i) {
+
+			final ExecutionVertexID vertexID = kryo.readObject(input, ExecutionVertexID.class);
+			final String taskName = readString(input, strings);
+			final int indexInSubtaskGroup = input.readVarInt(true);
+			final int currentNumberOfSubtasks = input.readVarInt(true);
+			final CheckpointState initialCheckpointState = EnumUtils.readEnum(input, CheckpointState.class);
+
+			final String invokableClassName = readString(input, strings);
+			Class<? extends AbstractInvokable> invokableClass = invokableClasses.get(invokableClassName);
+			if (invokableClass == null) {
+				try {
+					invokableClass = (Class<? extends AbstractInvokable>) Class.forName(invokableClassName, true, cl);
+				} catch (ClassNotFoundException cnfe) {
+					throw new RuntimeException("Class " + invokableClassName
+						+ " not found in one of the supplied jar files: " + StringUtils.stringifyException(cnfe));
+				}
+				invokableClasses.put(invokableClassName, invokableClass);
+			}
+
+			final Configuration jobConfiguration = readConfiguration(kryo, input, cl, configurations);
+			final Configuration taskConfiguration = readConfiguration(kryo, input, cl, configurations);
+
+			final ArrayList<GateDeploymentDescriptor> outputGates = kryo.readObject(input, ArrayList.class);
+			final ArrayList<GateDeploymentDescriptor> inputGates = kryo.readObject(input, ArrayList.class);
+
+			final boolean hasAlreadyBeenDeployed = input.readBoolean();
+
+			this.tasks.add(new TaskDeploymentDescriptor(this.jobID, vertexID, taskName, indexInSubtaskGroup,
+				currentNumberOfSubtasks, jobConfiguration, taskConfiguration, initialCheckpointState, invokableClass,
+				outputGates, inputGates, hasAlreadyBeenDeployed));
+		}
+	}
+
+	/**
+	 * Writes the given string or, if it has already been written before, a reference to it.
+	 * 
+	 * @param output
+	 *        the output to write to
+	 * @param str
+	 *        the string to write
+	 * @param strings
+	 *        the strings written so far mapped to their index
+	 */
+	private static void writeString(final Output output, final String str, final Map<String, Integer> strings) {
+
+		final Integer index = strings.get(str);
+		if (index != null) {
+			output.writeVarInt(index.intValue(), true);
+			return;
+		}
+
+		final int newIndex = strings.size();
+		strings.put(str, Integer.valueOf(newIndex));
+		output.writeVarInt(newIndex, true);
+		output.writeString(str);
+	}
+
+	/**
+	 * Reads a string written by {@link #writeString(Output, String, Map)}.
+	 * 
+	 * @param input
+	 *        the input to read from
+	 * @param strings
+	 *        the strings read so far in the order of their index
+	 * @return the string
+	 */
+	private static String readString(final Input input, final List<String> strings) {
+
+		final int index = input.readVarInt(true);
+		if (index < strings.size()) {
+			return strings.get(index);
+		}
+
+		final String str = input.readString();
+		strings.add(str);
+
+		return str;
+	}
+
+	/**
+	 * Writes the given configuration or, if the same configuration object has already been written before, a
+	 * reference to it.
+	 * 
+	 * @param kryo
+	 *        the kryo object to use for serialization
+	 * @param output
+	 *        the output to write to
+	 * @param configuration
+	 *        the configuration to write
+	 * @param configurations
+	 *        the configurations written so far mapped to their index
+	 */
+	private static void writeConfiguration(final Kryo kryo, final Output output, final Configuration configuration,
+			final Map<Configuration, Integer> configurations) {
+
+		final Integer index = configurations.get(configuration);
+		if (index != null) {
+			output.writeVarInt(index.intValue(), true);
+			return;
+		}
+
+		final int newIndex = configurations.size();
+		configurations.put(configuration, Integer.valueOf(newIndex));
+		output.writeVarInt(newIndex, true);
+		configuration.write(kryo, output);
+	}
+
+	/**
+	 * Reads a configuration written by {@link #writeConfiguration(Kryo, Output, Configuration, Map)} and returns a
+	 * private copy of it.
+	 * 
+	 * @param kryo
+	 *        the kryo object to use for deserialization
+	 * @param input
+	 *        the input to read from
+	 * @param cl
+	 *        the class loader to attach to the configuration
+	 * @param configurations
+	 *        the configurations read so far in the order of their index
+	 * @return a private copy of the configuration
+	 */
+	private static Configuration readConfiguration(final Kryo kryo, final Input input, final ClassLoader cl,
+			final List<Configuration> configurations) {
+
+		final int index = input.readVarInt(true);
+
+		final Configuration configuration;
+		if (index < configurations.size()) {
+			configuration = new Configuration(cl);
+			configuration.addAll(configurations.get(index), "");
+		} else {
+			configuration = new Configuration(cl);
+			configuration.read(kryo, input);
+			final Configuration template = new Configuration(cl);
+			template.addAll(configuration, "");
+			configurations.add(template);
+		}
+
+		return configuration;
+	}
+}
@@ -20,6 +20,7 @@ import java.net.InetSocketAddress;
 import java.util.List;
 import java.util.Set;
 
+import eu.stratosphere.nephele.deployment.TaskDeploymentBatch;
 import eu.stratosphere.nephele.deployment.TaskDeploymentDescriptor;
 import eu.stratosphere.nephele.execution.librarycache.LibraryCacheManager;
 import eu.stratosphere.nephele.execution.librarycache.LibraryCacheProfileRequest;
@@ -175,7 +176,8 @@ public abstract class AbstractInstance extends NetworkNode {
 	}
 
 	/**
-	 * Submits a list of tasks to the instance's {@link eu.stratosphere.nephele.taskmanager.TaskManager}.
+	 * Submits a list of tasks to the instance's {@link eu.stratosphere.nephele.taskmanager.TaskManager}. All tasks
+	 * must belong to the same job, they are transmitted as a single {@link TaskDeploymentBatch}.
 	 * 
 	 * @param tasks
 	 *        the list of tasks to be submitted
@@ -188,7 +190,7 @@ public abstract class AbstractInstance extends NetworkNode {
 	public synchronized List<TaskSubmissionResult> submitTasks(final List<TaskDeploymentDescriptor> tasks)
 			throws IOException, InterruptedException {
 
-		return getTaskManagerProxy().submitTasks(tasks);
+		return getTaskManagerProxy().submitTaskBatch(new TaskDeploymentBatch(tasks));
 	}
 
 	/**
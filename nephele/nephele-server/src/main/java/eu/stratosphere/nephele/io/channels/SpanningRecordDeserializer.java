@@ -24,12 +24,23 @@ import java.nio.ByteOrder;
 import java.nio.channels.ReadableByteChannel;
 
 import eu.stratosphere.nephele.io.RecordFactory;
+import eu.stratosphere.nephele.services.memorymanager.AbstractPagedInputView;
 import eu.stratosphere.nephele.services.memorymanager.DataInputView;
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
 import eu.stratosphere.nephele.types.Record;
 
 /**
  * A class for deserializing a portion of binary data into records of type <code>T</code>. The internal
  * buffer grows dynamically to the size that is required for deserialization.
+ * <p>
+ * Records that are completely contained in a {@link MemoryBuffer} are deserialized directly from the buffer's
+ * memory, which is adopted as a {@link MemorySegment}. Only records that span buffer boundaries are assembled
+ * in the internal buffer first.
+ * <p>
+ * This removes only the copy into the internal buffer. Receivers that sort or hash their input still copy each
+ * record twice: from the buffer into the record object, and from the record object into the pages of the sorter
+ * or hash table. Neither adopting the buffers as pages nor copying the serialized bytes straight into the pages
+ * is implemented, yet.
  * 
  * @author warneke
  * @param <T>
@@ -58,6 +69,16 @@ final class SpanningRecordDeserializer<T extends Record> implements RecordDeseri
 	 */
 	private ByteBuffer tempBuffer;
 
+	/**
+	 * The view used to deserialize records directly from the memory of the source buffer.
+	 */
+	private final BufferSegmentInputView bufferInputView;
+
+	/**
+	 * The byte buffer whose memory is currently adopted by the buffer input view.
+	 */
+	private ByteBuffer adoptedByteBuffer;
+
 	/**
 	 * The record factory to create new records.
 	 */
@@ -106,6 +127,8 @@ final class SpanningRecordDeserializer<T extends Record> implements RecordDeseri
 
 		this.deserializationWrapper = new DataInputWrapper();
 		this.deserializationWrapper.setArray(this.tempBuffer.array());
+
+		this.bufferInputView = new BufferSegmentInputView();
 	}
 
 	// --------------------------------------------------------------------------------------------
@@ -117,6 +140,18 @@ final class SpanningRecordDeserializer<T extends Record> implements RecordDeseri
 	 */
 	@Override
 	public T readData(T target, final ReadableByteChannel readableByteChannel) throws IOException {
+		// records that lie completely in a memory buffer are read without an intermediate copy
+		if (this.recordLength < 0 && this.lengthBuf.position() == 0 && readableByteChannel instanceof MemoryBuffer) {
+			final ByteBuffer source = ((MemoryBuffer) readableByteChannel).getByteBuffer();
+			final int position = source.position();
+			if (source.remaining() >= SIZEOFINT) {
+				final int len = source.getInt(position);
+				if (source.remaining() - SIZEOFINT >= len) {
+					return readDataFromBuffer(target, source, position + SIZEOFINT, len);
+				}
+			}
+		}
+
 		// check whether the length has already been de-serialized
 		final int len;
 		if (this.recordLength < 0) {
@@ -176,6 +211,43 @@ final class SpanningRecordDeserializer<T extends Record> implements RecordDeseri
 		}
 	}
 
+	/**
+	 * Deserializes a record directly from the memory of the given byte buffer, which is adopted as a memory segment.
+	 * After the record has been read, the buffer's position is set to the end of the record.
+	 * 
+	 * @param target
+	 *        the record to deserialize into, or <code>null</code> if a new record shall be instantiated
+	 * @param source
+	 *        the byte buffer containing the record
+	 * @param offset
+	 *        the offset of the record's first byte in the buffer
+	 * @param len
+	 *        the length of the record in bytes
+	 * @return the deserialized record
+	 * @throws IOException
+	 *         thrown if the record cannot be deserialized
+	 */
+	private T readDataFromBuffer(T target, final ByteBuffer source, final int offset, final int len)
+			throws IOException {
+
+		if (this.adoptedByteBuffer != source) {
+			this.bufferInputView.adopt(new MemorySegment(source, 0, source.capacity()));
+			this.adoptedByteBuffer = source;
+		}
+		this.bufferInputView.set(offset, offset + len);
+
+		if (target == null) {
+			target = instantiateTarget();
+		}
+
+		try {
+			target.read(this.bufferInputView);
+		} finally {
+			source.position(offset + len);
+		}
+		return target;
+	}
+
 	private final T instantiateTarget() throws IOException {
 		try {
 			return this.recordFactory.createRecord();
@@ -466,6 +538,39 @@ final class SpanningRecordDeserializer<T extends Record> implements RecordDeseri
 	// }
 	// }
 
+	/**
+	 * A view that reads from a region of a single memory segment, which adopts the memory of a network buffer.
+	 */
+	private static final class BufferSegmentInputView extends AbstractPagedInputView {
+
+		private MemorySegment segment;
+
+		private int limit;
+
+		private BufferSegmentInputView() {
+			super(0);
+		}
+
+		void adopt(final MemorySegment segment) {
+			this.segment = segment;
+		}
+
+		void set(final int position, final int limit) {
+			this.limit = limit;
+			seekInput(this.segment, position, limit);
+		}
+
+		@Override
+		protected MemorySegment nextSegment(final MemorySegment current) throws EOFException {
+			throw new EOFException();
+		}
+
+		@Override
+		protected int getLimitForSegment(final MemorySegment segment) {
+			return this.limit;
+		}
+	}
+
 	private static final class DataInputWrapper implements DataInputView {
 		private byte[] source;
 
@@ -57,6 +57,16 @@ public final class DataRateDecisionModel implements DecisionModel {
 		this.GRANULARITY = GlobalConfiguration.getInteger("granularity", 2000);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void reportCompression(final int compressionLibraryIndex, final int uncompressedSize,
+			final int compressedSize, final long compressionTime) {
+
+		// The data rate model only considers the time between two buffers
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -17,5 +17,29 @@ package eu.stratosphere.nephele.io.compression.library.dynamic;
 
 public interface DecisionModel {
 
+	/**
+	 * Reports the outcome of the compression of a buffer to the decision model.
+	 * 
+	 * @param compressionLibraryIndex
+	 *        the index of the compression library which has compressed the buffer
+	 * @param uncompressedSize
+	 *        the size of the buffer before the compression in bytes
+	 * @param compressedSize
+	 *        the size of the buffer after the compression in bytes
+	 * @param compressionTime
+	 *        the CPU time spent to compress the buffer in nanoseconds
+	 */
+	void reportCompression(int compressionLibraryIndex, int uncompressedSize, int compressedSize,
+			long compressionTime);
+
+	/**
+	 * Selects the compression library for the next buffer.
+	 * 
+	 * @param sizeOfLastUncompressedBuffer
+	 *        the size of the last buffer before the compression in bytes
+	 * @param durationOfLastBufferTransfer
+	 *        the time in milliseconds between the compression of the last two buffers
+	 * @return the index of the compression library to compress the next buffer with
+	 */
 	int getCompressionLevelForNextBuffer(int sizeOfLastUncompressedBuffer, int durationOfLastBufferTransfer);
 }
@@ -13,56 +13,173 @@
  *
  **********************************************************************************************************************/
 
+
 package eu.stratosphere.nephele.io.compression.library.dynamic;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
 import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.io.channels.MemoryBuffer;
 import eu.stratosphere.nephele.io.compression.CompressionBufferProvider;
 import eu.stratosphere.nephele.io.compression.CompressionException;
 import eu.stratosphere.nephele.io.compression.CompressionLibrary;
 import eu.stratosphere.nephele.io.compression.Compressor;
 
+/**
+ * The dynamic compressor selects one of several compression libraries for every buffer it compresses. The selection
+ * is made by a {@link DecisionModel}. The index of the library used for the last buffer is announced to the receiver
+ * through {@link #getCurrentInternalCompressionLibraryIndex()}.
+ * <p>
+ * The compressor created by the {@link DynamicLibrary} is shared among the output channels of a gate. Each channel
+ * obtains its own view through {@link #createChannelCompressor(SendRateProvider)}, so the decisions can be based on
+ * the network connection of the individual channel, while the underlying compressors are still shared.
+ * <p>
+ * For every library, the compressor keeps track of the number of compressed buffers and bytes. These numbers are
+ * available through the getter methods and written to the log when the compressor is shut down.
+ * <p>
+ * This class is not thread-safe.
+ */
 public class DynamicCompressor implements Compressor {
 
+	/**
+	 * The log object used to report the compression decisions.
+	 */
+	private static final Log LOG = LogFactory.getLog(DynamicCompressor.class);
+
+	/**
+	 * The configuration key to select the decision model.
+	 */
+	private static final String DECISION_MODEL_KEY = "channel.compression.dynamic.decisionModel";
+
+	/**
+	 * The name of the decision model based on the measured throughput, see {@link ThroughputDecisionModel}.
+	 */
+	private static final String THROUGHPUT_DECISION_MODEL = "throughput";
+
+	/**
+	 * The name of the decision model based on the data rate, see {@link DataRateDecisionModel}.
+	 */
+	private static final String DATA_RATE_DECISION_MODEL = "datarate";
+
+	/**
+	 * The thread management interface used to measure the CPU time spent for the compression.
+	 */
+	private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
 	private final Compressor[] compressors;
 
+	private final DecisionModel decisionModel;
+
+	/**
+	 * Stores whether the CPU time of the current thread can be measured.
+	 */
+	private final boolean measureCPUTime;
+
 	private int selectedCompressor = 0;
 
+	/**
+	 * The index of the compressor used for the last buffer.
+	 */
+	private int lastUsedCompressor = 0;
+
 	private long lastTimestamp = -1;
 
 	private int sizeOfLastUncompressedBuffer = -1;
 
-	private final DecisionModel decisionModel;
+	/**
+	 * The number of buffers compressed with each library.
+	 */
+	private final long[] numberOfCompressedBuffers;
+
+	/**
+	 * The number of bytes passed to each library.
+	 */
+	private final long[] numberOfUncompressedBytes;
+
+	/**
+	 * The number of bytes produced by each library.
+	 */
+	private final long[] numberOfCompressedBytes;
+
+	/**
+	 * The number of times the selected library has changed between two consecutive buffers.
+	 */
+	private long numberOfLibraryChanges = 0L;
 
 	public DynamicCompressor(final CompressionLibrary[] compressionLibraries,
 			final CompressionBufferProvider bufferProvider) throws CompressionException {
 
+		this(createCompressors(compressionLibraries, bufferProvider), null);
+	}
+
+	private DynamicCompressor(final Compressor[] compressors, final SendRateProvider sendRateProvider) {
+
+		this.compressors = compressors;
+		this.decisionModel = createDecisionModel(compressors.length, sendRateProvider);
+		this.measureCPUTime = THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported()
+			&& THREAD_MX_BEAN.isThreadCpuTimeEnabled();
+
+		this.numberOfCompressedBuffers = new long[compressors.length];
+		this.numberOfUncompressedBytes = new long[compressors.length];
+		this.numberOfCompressedBytes = new long[compressors.length];
+	}
+
+	private static Compressor[] createCompressors(final CompressionLibrary[] compressionLibraries,
+			final CompressionBufferProvider bufferProvider) throws CompressionException {
+
 		// Initialize the different compressors
-		this.compressors = new Compressor[compressionLibraries.length];
-		for (int i = 0; i < this.compressors.length; i++) {
-			this.compressors[i] = compressionLibraries[i].createNewCompressor(bufferProvider);
+		final Compressor[] compressors = new Compressor[compressionLibraries.length];
+		for (int i = 0; i < compressors.length; i++) {
+			compressors[i] = compressionLibraries[i].createNewCompressor(bufferProvider);
+		}
+
+		return compressors;
+	}
+
+	private static DecisionModel createDecisionModel(final int numberOfCompressors,
+			final SendRateProvider sendRateProvider) {
+
+		final String decisionModel = GlobalConfiguration.getString(DECISION_MODEL_KEY, THROUGHPUT_DECISION_MODEL);
+		if (DATA_RATE_DECISION_MODEL.equals(decisionModel)) {
+			return new DataRateDecisionModel(numberOfCompressors);
+		}
+
+		if (!THROUGHPUT_DECISION_MODEL.equals(decisionModel)) {
+			LOG.warn("Unknown decision model " + decisionModel + ", using " + THROUGHPUT_DECISION_MODEL);
 		}
 
-		// Initialize decision model
-		this.decisionModel = new DataRateDecisionModel(this.compressors.length);
+		return new ThroughputDecisionModel(numberOfCompressors, sendRateProvider);
 	}
 
 	/**
-	 * {@inheritDoc}
+	 * Creates a new dynamic compressor for an individual output channel. The new compressor shares the underlying
+	 * compressors with this compressor, but makes its own decisions based on the send rate of the channel.
+	 * <p>
+	 * The caller is responsible for registering the additional channel with the underlying compressors through
+	 * {@link #increaseChannelCounter()}, if necessary. Shutting down the returned compressor shuts down the shared
+	 * underlying compressors.
+	 * 
+	 * @param sendRateProvider
+	 *        the provider of the channel's send rate
+	 * @return the dynamic compressor for the channel
 	 */
-	@Override
-	public Buffer compress(final Buffer uncompressedData) throws IOException {
-
-		this.sizeOfLastUncompressedBuffer = uncompressedData.size();
+	public DynamicCompressor createChannelCompressor(final SendRateProvider sendRateProvider) {
 
-		return this.compressors[this.selectedCompressor].compress(uncompressedData);
+		return new DynamicCompressor(this.compressors, sendRateProvider);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
 	@Override
-	public int getCurrentInternalCompressionLibraryIndex() {
+	public Buffer compress(final Buffer uncompressedData) throws IOException {
 
-		int oldVal = this.selectedCompressor;
 		final long timestamp = System.currentTimeMillis();
 
 		if (this.lastTimestamp > 0) {
@@ -72,7 +189,113 @@ public class DynamicCompressor implements Compressor {
 
 		this.lastTimestamp = timestamp;
 
-		return oldVal;
+		final int index = this.selectedCompressor;
+		final int uncompressedSize = getNumberOfBytes(uncompressedData);
+
+		final long start = getTime();
+		final Buffer compressedData = this.compressors[index].compress(uncompressedData);
+		final long compressionTime = getTime() - start;
+
+		final int compressedSize = getNumberOfBytes(compressedData);
+		this.decisionModel.reportCompression(index, uncompressedSize, compressedSize, compressionTime);
+
+		if (index != this.lastUsedCompressor) {
+			++this.numberOfLibraryChanges;
+			this.lastUsedCompressor = index;
+		}
+
+		++this.numberOfCompressedBuffers[index];
+		this.numberOfUncompressedBytes[index] += uncompressedSize;
+		this.numberOfCompressedBytes[index] += compressedSize;
+		this.sizeOfLastUncompressedBuffer = uncompressedSize;
+
+		return compressedData;
+	}
+
+	/**
+	 * Returns the current time in nanoseconds, either as the CPU time of the current thread or, if that cannot be
+	 * measured, as wall clock time.
+	 * 
+	 * @return the current time in nanoseconds
+	 */
+	private long getTime() {
+
+		if (this.measureCPUTime) {
+			return THREAD_MX_BEAN.getCurrentThreadCpuTime();
+		}
+
+		return System.nanoTime();
+	}
+
+	/**
+	 * Returns the number of bytes written to the given buffer.
+	 * 
+	 * @param buffer
+	 *        the buffer
+	 * @return the number of bytes written to the buffer
+	 */
+	private static int getNumberOfBytes(final Buffer buffer) {
+
+		if (buffer.isBackedByMemory()) {
+			return ((MemoryBuffer) buffer).getByteBuffer().position();
+		}
+
+		return buffer.size();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getCurrentInternalCompressionLibraryIndex() {
+
+		return this.lastUsedCompressor;
+	}
+
+	/**
+	 * Returns the number of buffers compressed with the given library.
+	 * 
+	 * @param compressionLibraryIndex
+	 *        the index of the library
+	 * @return the number of buffers compressed with the given library
+	 */
+	public long getNumberOfCompressedBuffers(final int compressionLibraryIndex) {
+
+		return this.numberOfCompressedBuffers[compressionLibraryIndex];
+	}
+
+	/**
+	 * Returns the number of bytes passed to the given library.
+	 * 
+	 * @param compressionLibraryIndex
+	 *        the index of the library
+	 * @return the number of bytes passed to the given library
+	 */
+	public long getNumberOfUncompressedBytes(final int compressionLibraryIndex) {
+
+		return this.numberOfUncompressedBytes[compressionLibraryIndex];
+	}
+
+	/**
+	 * Returns the number of bytes produced by the given library.
+	 * 
+	 * @param compressionLibraryIndex
+	 *        the index of the library
+	 * @return the number of bytes produced by the given library
+	 */
+	public long getNumberOfCompressedBytes(final int compressionLibraryIndex) {
+
+		return this.numberOfCompressedBytes[compressionLibraryIndex];
+	}
+
+	/**
+	 * Returns the number of times the library changed between two consecutive buffers.
+	 * 
+	 * @return the number of times the library changed between two consecutive buffers
+	 */
+	public long getNumberOfLibraryChanges() {
+
+		return this.numberOfLibraryChanges;
 	}
 
 	/**
@@ -81,6 +304,26 @@ public class DynamicCompressor implements Compressor {
 	@Override
 	public void shutdown() {
 
+		if (LOG.isDebugEnabled()) {
+
+			final StringBuilder sb = new StringBuilder("Dynamic compression decisions (buffers/uncompressed bytes/"
+				+ "compressed bytes per library):");
+			for (int i = 0; i < this.compressors.length; ++i) {
+				sb.append(' ');
+				sb.append(i);
+				sb.append('=');
+				sb.append(this.numberOfCompressedBuffers[i]);
+				sb.append('/');
+				sb.append(this.numberOfUncompressedBytes[i]);
+				sb.append('/');
+				sb.append(this.numberOfCompressedBytes[i]);
+			}
+			sb.append(", ");
+			sb.append(this.numberOfLibraryChanges);
+			sb.append(" library changes");
+			LOG.debug(sb.toString());
+		}
+
 		for (int i = 0; i < this.compressors.length; ++i) {
 			this.compressors[i].shutdown();
 		}
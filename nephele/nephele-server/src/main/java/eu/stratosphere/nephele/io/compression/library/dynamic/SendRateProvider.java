@@ -0,0 +1,31 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.io.compression.library.dynamic;
+
+/**
+ * A send rate provider reports the rate at which the network transmits the data of a particular output channel. The
+ * {@link ThroughputDecisionModel} uses this rate to determine whether the network or the compressor limits the
+ * throughput of the channel.
+ */
+public interface SendRateProvider {
+
+	/**
+	 * Returns the rate at which the network currently transmits the data of the output channel.
+	 * 
+	 * @return the send rate in bytes per second or a negative value if the rate is unknown
+	 */
+	double getSendRate();
+}
@@ -0,0 +1,224 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.io.compression.library.dynamic;
+
+/**
+ * The throughput decision model selects the compression library for each buffer based on the measured compression
+ * ratio and CPU cost of the available libraries and the observed send rate of the network connection.
+ * <p>
+ * As the compression and the network transfer of consecutive buffers overlap, the throughput of a channel is limited
+ * by the slower of the two stages. For every library the model therefore estimates the time per uncompressed byte as
+ * the maximum of the compression cost and the time to transmit the compressed byte, and selects the library with the
+ * lowest estimate. To avoid oscillation, the current library is only replaced if another one is considerably better.
+ * Libraries which are not selected are probed periodically, because the compressibility of the data may change. The
+ * probe interval of a library doubles with every probe that does not lead to its selection.
+ * <p>
+ * Library <code>0</code> is expected to be the stub library which does not compress the data. As long as the send
+ * rate is unknown, i.e. the network is not saturated, the model selects this library.
+ * <p>
+ * This class is not thread-safe.
+ */
+public final class ThroughputDecisionModel implements DecisionModel {
+
+	/**
+	 * The weight of the most recent measurement in the smoothed compression ratios and costs.
+	 */
+	private static final double SMOOTHING_FACTOR = 0.25;
+
+	/**
+	 * The relative improvement of the estimated time per byte required to replace the current library.
+	 */
+	private static final double SWITCH_THRESHOLD = 0.1;
+
+	/**
+	 * The initial number of buffers between two probes of a library which is not selected.
+	 */
+	private static final int MINIMUM_PROBE_INTERVAL = 64;
+
+	/**
+	 * The maximum number of buffers between two probes of a library which is not selected.
+	 */
+	private static final int MAXIMUM_PROBE_INTERVAL = 4096;
+
+	/**
+	 * The provider of the send rate of the channel or <code>null</code> if the rate is unknown.
+	 */
+	private final SendRateProvider sendRateProvider;
+
+	/**
+	 * The smoothed ratio of compressed to uncompressed size for each library or a negative value if the library has
+	 * not been used yet.
+	 */
+	private final double[] compressionRatio;
+
+	/**
+	 * The smoothed CPU time in nanoseconds each library spends per uncompressed byte.
+	 */
+	private final double[] compressionCost;
+
+	/**
+	 * The number of buffers between two probes for each library.
+	 */
+	private final int[] probeInterval;
+
+	/**
+	 * The number of the buffer each library has compressed last.
+	 */
+	private final long[] lastUse;
+
+	/**
+	 * The number of buffers the model has decided about so far.
+	 */
+	private long numberOfBuffers = 0L;
+
+	/**
+	 * The currently selected library.
+	 */
+	private int currentSelection = 0;
+
+	/**
+	 * Constructs a new throughput decision model.
+	 * 
+	 * @param numberOfAvailableCompressionLibraries
+	 *        the number of available compression libraries, including the stub library
+	 * @param sendRateProvider
+	 *        the provider of the channel's send rate, possibly <code>null</code>
+	 */
+	public ThroughputDecisionModel(final int numberOfAvailableCompressionLibraries,
+			final SendRateProvider sendRateProvider) {
+
+		this.sendRateProvider = sendRateProvider;
+		this.compressionRatio = new double[numberOfAvailableCompressionLibraries];
+		this.compressionCost = new double[numberOfAvailableCompressionLibraries];
+		this.probeInterval = new int[numberOfAvailableCompressionLibraries];
+		this.lastUse = new long[numberOfAvailableCompressionLibraries];
+
+		for (int i = 0; i < numberOfAvailableCompressionLibraries; ++i) {
+			this.compressionRatio[i] = -1.0;
+			this.probeInterval[i] = MINIMUM_PROBE_INTERVAL;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void reportCompression(final int compressionLibraryIndex, final int uncompressedSize,
+			final int compressedSize, final long compressionTime) {
+
+		if (uncompressedSize <= 0) {
+			return;
+		}
+
+		final double ratio = (double) compressedSize / (double) uncompressedSize;
+		final double cost = (double) compressionTime / (double) uncompressedSize;
+
+		if (this.compressionRatio[compressionLibraryIndex] < 0.0) {
+			this.compressionRatio[compressionLibraryIndex] = ratio;
+			this.compressionCost[compressionLibraryIndex] = cost;
+		} else {
+			this.compressionRatio[compressionLibraryIndex] = SMOOTHING_FACTOR * ratio + (1.0 - SMOOTHING_FACTOR)
+				* this.compressionRatio[compressionLibraryIndex];
+			this.compressionCost[compressionLibraryIndex] = SMOOTHING_FACTOR * cost + (1.0 - SMOOTHING_FACTOR)
+				* this.compressionCost[compressionLibraryIndex];
+		}
+
+		this.lastUse[compressionLibraryIndex] = this.numberOfBuffers;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getCompressionLevelForNextBuffer(final int sizeOfLastUncompressedBuffer,
+			final int durationOfLastBufferTransfer) {
+
+		++this.numberOfBuffers;
+
+		final double sendRate = (this.sendRateProvider == null) ? -1.0 : this.sendRateProvider.getSendRate();
+		if (sendRate <= 0.0) {
+			// The network is not the bottleneck, so compression cannot improve the throughput
+			this.currentSelection = 0;
+			return this.currentSelection;
+		}
+
+		// Measure the libraries which have not been used yet first
+		for (int i = 0; i < this.compressionRatio.length; ++i) {
+			if (this.compressionRatio[i] < 0.0) {
+				return i;
+			}
+		}
+
+		int bestSelection = this.currentSelection;
+		double bestEstimate = estimateTimePerByte(this.currentSelection, sendRate);
+		for (int i = 0; i < this.compressionRatio.length; ++i) {
+
+			final double estimate = estimateTimePerByte(i, sendRate);
+			if (estimate < bestEstimate) {
+				bestSelection = i;
+				bestEstimate = estimate;
+			}
+		}
+
+		if (bestSelection != this.currentSelection
+			&& bestEstimate < (1.0 - SWITCH_THRESHOLD) * estimateTimePerByte(this.currentSelection, sendRate)) {
+			this.currentSelection = bestSelection;
+			this.probeInterval[bestSelection] = MINIMUM_PROBE_INTERVAL;
+		}
+
+		// Probe a library which has not been used for a while
+		for (int i = 0; i < this.compressionRatio.length; ++i) {
+
+			if (i == this.currentSelection) {
+				continue;
+			}
+
+			if (this.numberOfBuffers - this.lastUse[i] >= this.probeInterval[i]) {
+				this.probeInterval[i] = Math.min(2 * this.probeInterval[i], MAXIMUM_PROBE_INTERVAL);
+				return i;
+			}
+		}
+
+		return this.currentSelection;
+	}
+
+	/**
+	 * Estimates the time per uncompressed byte in nanoseconds if the given library is used.
+	 * 
+	 * @param compressionLibraryIndex
+	 *        the index of the library
+	 * @param sendRate
+	 *        the send rate of the network in bytes per second
+	 * @return the estimated time per uncompressed byte in nanoseconds
+	 */
+	private double estimateTimePerByte(final int compressionLibraryIndex, final double sendRate) {
+
+		final double transferTime = (this.compressionRatio[compressionLibraryIndex] * 1000000000.0) / sendRate;
+
+		return Math.max(this.compressionCost[compressionLibraryIndex], transferTime);
+	}
+
+	/**
+	 * Returns the currently selected compression library.
+	 * 
+	 * @return the index of the currently selected compression library
+	 */
+	public int getCurrentSelection() {
+
+		return this.currentSelection;
+	}
+}
@@ -19,6 +19,7 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Set;
 
+import eu.stratosphere.nephele.deployment.TaskDeploymentBatch;
 import eu.stratosphere.nephele.deployment.TaskDeploymentDescriptor;
 import eu.stratosphere.nephele.execution.librarycache.LibraryCacheProfileRequest;
 import eu.stratosphere.nephele.execution.librarycache.LibraryCacheProfileResponse;
@@ -54,6 +55,20 @@ public interface TaskOperationProtocol extends RPCProtocol {
 	List<TaskSubmissionResult> submitTasks(List<TaskDeploymentDescriptor> tasks) throws IOException,
 			InterruptedException;
 
+	/**
+	 * Submits a batch of tasks belonging to the same job to the task manager. In contrast to
+	 * {@link #submitTasks(List)}, the data shared among the tasks is only transmitted once.
+	 * 
+	 * @param batch
+	 *        the batch of tasks to be submitted
+	 * @return the result of the task submission, one entry per task in the order of the batch
+	 * @throws IOException
+	 *         thrown if an error occurs during this remote procedure call
+	 * @throws InterruptedException
+	 *         thrown if the caller is interrupted while waiting for the response of the remote procedure call
+	 */
+	List<TaskSubmissionResult> submitTaskBatch(TaskDeploymentBatch batch) throws IOException, InterruptedException;
+
 	/**
 	 * Advises the task manager to cancel the task with the given ID.
 	 * 
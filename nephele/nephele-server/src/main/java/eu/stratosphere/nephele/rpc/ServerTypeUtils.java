@@ -27,6 +27,7 @@ import pawel.model.sopremo.io.TextNewsInputSplit;
 
 import eu.stratosphere.nephele.deployment.ChannelDeploymentDescriptor;
 import eu.stratosphere.nephele.deployment.GateDeploymentDescriptor;
+import eu.stratosphere.nephele.deployment.TaskDeploymentBatch;
 import eu.stratosphere.nephele.deployment.TaskDeploymentDescriptor;
 import eu.stratosphere.nephele.executiongraph.CheckpointState;
 import eu.stratosphere.nephele.executiongraph.ExecutionVertexID;
@@ -83,6 +84,7 @@ public class ServerTypeUtils {
 		types.add(RemoteReceiver.class);
 		types.add(TaskCancelResult.class);
 		types.add(TaskCheckpointState.class);
+		types.add(TaskDeploymentBatch.class);
 		types.add(TaskDeploymentDescriptor.class);
 		types.add(TaskExecutionState.class);
 		types.add(TaskSubmissionResult.class);
@@ -16,6 +16,7 @@
 package eu.stratosphere.nephele.services.memorymanager.spi;
 
 
+import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -48,6 +49,10 @@ import eu.stratosphere.nephele.template.AbstractInvokable;
  * the manager works 2 dimensional byte array (i.e. with memory chunks). Please be aware that in order to keep the array
  * access methods in the {@link DefaultMemorySegment} fast and simple, the actual allocated memory segments must not
  * exceed 2GB and must be contained in a single memory chunk.
+ * <p>
+ * Optionally, the memory manager allocates its pages outside the heap, as direct byte buffers. Off-heap pages are
+ * not traversed by the garbage collector, which keeps full collections short for large memory sizes. Note that the
+ * JVM's limit for direct memory (<code>-XX:MaxDirectMemorySize</code>) must be large enough to hold all pages.
  * 
  * @author Alexander Alexandrov
  * @author Stephan Ewen
@@ -73,7 +78,7 @@ public class DefaultMemoryManager implements MemoryManager
 	
 	private final Object lock = new Object();	 	// The lock used on the shared structures.
 	
-	private final ArrayDeque<byte[]> freeSegments;	// the free memory segments
+	private final ArrayDeque<ByteBuffer> freeSegments;	// the free memory segments
 	
 	private final HashMap<AbstractInvokable, Set<DefaultMemorySegment>> allocatedSegments;
 	
@@ -85,6 +90,8 @@ public class DefaultMemoryManager implements MemoryManager
 	
 	private final int totalNumPages;		// The initial total size, for verification.
 	
+	private final boolean offHeap;			// flag whether the pages are allocated outside the heap
+	
 	private boolean isShutDown;				// flag whether the close() has already been invoked.
 
 	// ------------------------------------------------------------------------
@@ -106,7 +113,19 @@ public class DefaultMemoryManager implements MemoryManager
 	 * @param memorySize The total size of the memory to be managed by this memory manager.
 	 * @param pageSize The size of the pages handed out by the memory manager.
 	 */
-	public DefaultMemoryManager(long memorySize, int pageSize)
+	public DefaultMemoryManager(long memorySize, int pageSize) {
+		this(memorySize, pageSize, false);
+	}
+	
+	/**
+	 * Creates a memory manager with the given capacity and given page size, allocating the pages
+	 * either on the heap or as off-heap memory.
+	 * 
+	 * @param memorySize The total size of the memory to be managed by this memory manager.
+	 * @param pageSize The size of the pages handed out by the memory manager.
+	 * @param offHeap True, if the pages are to be allocated outside the heap, false, if they are byte arrays.
+	 */
+	public DefaultMemoryManager(long memorySize, int pageSize, boolean offHeap)
 	{
 		// sanity checks
 		if (memorySize <= 0) {
@@ -134,14 +153,16 @@ public class DefaultMemoryManager implements MemoryManager
 		}
 		
 		// initialize the free segments and allocated segments tracking structures
-		this.freeSegments = new ArrayDeque<byte[]>();
+		this.freeSegments = new ArrayDeque<ByteBuffer>();
 		this.allocatedSegments = new HashMap<AbstractInvokable, Set<DefaultMemorySegment>>();
 
 		
 		// add the full chunks
+		this.offHeap = offHeap;
 		for (int i = 0; i < this.totalNumPages; i++) {
 			// allocate memory of the specified size
-			this.freeSegments.add(new byte[this.pageSize]);
+			this.freeSegments.add(offHeap ? ByteBuffer.allocateDirect(this.pageSize) :
+				ByteBuffer.wrap(new byte[this.pageSize]));
 		}
 	}
 
@@ -233,7 +254,7 @@ public class DefaultMemoryManager implements MemoryManager
 			}
 			
 			for (int i = numPages; i > 0; i--) {
-				byte[] buffer = this.freeSegments.poll();
+				final ByteBuffer buffer = this.freeSegments.poll();
 				final DefaultMemorySegment segment = new DefaultMemorySegment(owner, buffer, 0, this.pageSize);
 				target.add(segment);
 				segmentsForOwner.add(segment);
@@ -300,7 +321,7 @@ public class DefaultMemoryManager implements MemoryManager
 			}
 			finally {
 				// release the memory in any case
-				byte[] buffer = defSeg.destroy();
+				final ByteBuffer buffer = defSeg.destroy();
 				this.freeSegments.add(buffer);
 			}
 		}
@@ -362,7 +383,7 @@ public class DefaultMemoryManager implements MemoryManager
 				}
 				finally {
 					// release the memory in any case
-					byte[] buffer = defSeg.destroy();
+					final ByteBuffer buffer = defSeg.destroy();
 					this.freeSegments.add(buffer);
 				}
 			}
@@ -393,7 +414,7 @@ public class DefaultMemoryManager implements MemoryManager
 			
 			// free each segment
 			for (DefaultMemorySegment seg : segments) {
-				final byte[] buffer = seg.destroy();
+				final ByteBuffer buffer = seg.destroy();
 				this.freeSegments.add(buffer);
 			}
 			
@@ -411,6 +432,15 @@ public class DefaultMemoryManager implements MemoryManager
 	public int getPageSize() {
 		return this.pageSize;
 	}
+	
+	/**
+	 * Checks whether this memory manager allocates its pages outside the heap.
+	 * 
+	 * @return True, if the pages are off-heap memory, false if they are byte arrays on the heap.
+	 */
+	public boolean isOffHeap() {
+		return this.offHeap;
+	}
 
 	/* (non-Javadoc)
 	 * @see eu.stratosphere.nephele.services.memorymanager.MemoryManager#computeNumberOfPages(long)
@@ -448,16 +478,19 @@ public class DefaultMemoryManager implements MemoryManager
 	{
 		private AbstractInvokable owner;
 		
-		DefaultMemorySegment(AbstractInvokable owner, byte[] memory, int offset, int size) {
-			super(memory, offset, size);
+		private ByteBuffer page;
+		
+		DefaultMemorySegment(AbstractInvokable owner, ByteBuffer page, int offset, int size) {
+			super(page, offset, size);
 			this.owner = owner;
+			this.page = page;
 		}
 		
-		byte[] destroy()
+		ByteBuffer destroy()
 		{
-			final byte[] buffer = this.memory;
-			this.memory = null;
-			this.wrapper = null;
+			final ByteBuffer buffer = this.page;
+			this.page = null;
+			free();
 			return buffer;
 		}
 	}
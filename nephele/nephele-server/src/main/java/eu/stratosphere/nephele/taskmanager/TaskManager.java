@@ -48,6 +48,7 @@ import eu.stratosphere.nephele.checkpointing.CheckpointUtils;
 import eu.stratosphere.nephele.configuration.ConfigConstants;
 import eu.stratosphere.nephele.configuration.Configuration;
 import eu.stratosphere.nephele.configuration.GlobalConfiguration;
+import eu.stratosphere.nephele.deployment.TaskDeploymentBatch;
 import eu.stratosphere.nephele.deployment.TaskDeploymentDescriptor;
 import eu.stratosphere.nephele.discovery.DiscoveryException;
 import eu.stratosphere.nephele.discovery.DiscoveryService;
@@ -290,9 +291,13 @@ public class TaskManager implements TaskOperationProtocol {
 		this.hardwareDescription = hardware;
 
 		// Initialize the memory manager
-		LOG.info("Initializing memory manager with " + (hardware.getSizeOfFreeMemory() >>> 20) + " megabytes of memory");
+		final boolean offHeapMemory = GlobalConfiguration.getBoolean(ConfigConstants.MEMORY_MANAGER_OFF_HEAP_KEY,
+			ConfigConstants.DEFAULT_MEMORY_MANAGER_OFF_HEAP);
+		LOG.info("Initializing memory manager with " + (hardware.getSizeOfFreeMemory() >>> 20) + " megabytes of "
+			+ (offHeapMemory ? "off-heap" : "heap") + " memory");
 		try {
-			this.memoryManager = new DefaultMemoryManager(hardware.getSizeOfFreeMemory());
+			this.memoryManager = new DefaultMemoryManager(hardware.getSizeOfFreeMemory(),
+				DefaultMemoryManager.DEFAULT_PAGE_SIZE, offHeapMemory);
 		} catch (RuntimeException rte) {
 			LOG.fatal("Unable to initialize memory manager with " + (hardware.getSizeOfFreeMemory() >>> 20)
 				+ " megabytes of memory", rte);
@@ -554,6 +559,15 @@ public class TaskManager implements TaskOperationProtocol {
 		return submissionResultList;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<TaskSubmissionResult> submitTaskBatch(final TaskDeploymentBatch batch) throws IOException {
+
+		return submitTasks(batch.getTaskDeploymentDescriptors());
+	}
+
 	/**
 	 * Registers an newly incoming runtime task with the task manager.
 	 * 
@@ -17,7 +17,9 @@ package eu.stratosphere.nephele.taskmanager.bufferprovider;
 
 import java.nio.ByteBuffer;
 import java.util.Queue;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -53,8 +55,22 @@ public final class GlobalBufferPool {
 	 */
 	private final int bufferSizeInBytes;
 
+	/**
+	 * The available buffers. The queue is lock-free, so that the local buffer pools of different tasks
+	 * do not contend for a common lock when they exchange buffers with the global pool.
+	 */
 	private final Queue<ByteBuffer> buffers;
 
+	/**
+	 * The number of buffers in the queue, since the size of the queue cannot be determined in constant time.
+	 */
+	private final AtomicInteger numberOfAvailableBuffers = new AtomicInteger(0);
+
+	/**
+	 * The number of requests that could not be served, because the pool was exhausted.
+	 */
+	private final AtomicLong numberOfFailedRequests = new AtomicLong(0);
+
 	/**
 	 * Returns the singleton instance of the global buffer pool. If the instance does not already exist, it is also
 	 * created by calling this method.
@@ -80,13 +96,14 @@ public final class GlobalBufferPool {
 		this.bufferSizeInBytes = GlobalConfiguration.getInteger("channel.network.bufferSizeInBytes",
 			DEFAULT_BUFFER_SIZE_IN_BYTES);
 
-		this.buffers = new ArrayBlockingQueue<ByteBuffer>(this.numberOfBuffers);
+		this.buffers = new ConcurrentLinkedQueue<ByteBuffer>();
 
 		// Initialize buffers
 		for (int i = 0; i < this.numberOfBuffers; i++) {
 			final ByteBuffer readBuffer = ByteBuffer.allocateDirect(this.bufferSizeInBytes);
 			this.buffers.add(readBuffer);
 		}
+		this.numberOfAvailableBuffers.set(this.numberOfBuffers);
 
 		LOG.info("Initialized global buffer pool with " + this.numberOfBuffers + " buffers with a size "
 			+ this.bufferSizeInBytes + " bytes each");
@@ -109,7 +126,14 @@ public final class GlobalBufferPool {
 	 */
 	public ByteBuffer lockGlobalBuffer() {
 
-		return this.buffers.poll();
+		final ByteBuffer buffer = this.buffers.poll();
+		if (buffer != null) {
+			this.numberOfAvailableBuffers.decrementAndGet();
+		} else {
+			this.numberOfFailedRequests.incrementAndGet();
+		}
+
+		return buffer;
 	}
 
 	/**
@@ -122,6 +146,7 @@ public final class GlobalBufferPool {
 
 		releasedBuffer.clear();
 		this.buffers.add(releasedBuffer);
+		this.numberOfAvailableBuffers.incrementAndGet();
 	}
 
 	/**
@@ -141,6 +166,16 @@ public final class GlobalBufferPool {
 	 */
 	public int getCurrentNumberOfBuffers() {
 
-		return this.buffers.size();
+		return this.numberOfAvailableBuffers.get();
+	}
+
+	/**
+	 * Returns the number of requests for a buffer that could not be served, because no buffer was available.
+	 * 
+	 * @return the number of requests that could not be served since the creation of the pool
+	 */
+	public long getNumberOfFailedRequests() {
+
+		return this.numberOfFailedRequests.get();
 	}
 }
@@ -19,6 +19,8 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -27,6 +29,16 @@ import eu.stratosphere.nephele.io.channels.Buffer;
 import eu.stratosphere.nephele.io.channels.BufferFactory;
 import eu.stratosphere.nephele.io.channels.MemoryBufferPoolConnector;
 
+/**
+ * A local buffer pool caches buffers from the {@link GlobalBufferPool} for one task or gate. The pool holds at most
+ * the designated number of buffers.
+ * <p>
+ * Requesting and recycling a buffer does not acquire a lock as long as the request can be served, because the
+ * available buffers are kept in a lock-free queue and the number of requested buffers in an atomic counter. The
+ * monitor of the pool is only entered by threads that have to wait for a buffer, by threads that recycle a buffer
+ * while others wait for one or have registered a {@link BufferAvailabilityListener}, and for the rare asynchronous
+ * events.
+ */
 public final class LocalBufferPool implements BufferProvider {
 
 	private static final class LocalBufferPoolConnector implements MemoryBufferPoolConnector {
@@ -54,24 +66,44 @@ public final class LocalBufferPool implements BufferProvider {
 
 	private final int maximumBufferSize;
 
-	private int designatedNumberOfBuffers;
+	private volatile int designatedNumberOfBuffers;
 
-	private int requestedNumberOfBuffers = 0;
+	private final AtomicInteger requestedNumberOfBuffers = new AtomicInteger(0);
 
 	private final boolean isShared;
 
 	private boolean asynchronousEventOccurred = false;
 
-	private boolean isDestroyed = false;
+	private volatile boolean isDestroyed = false;
 
 	private final AsynchronousEventListener eventListener;
 
-	private final Queue<ByteBuffer> buffers = new ArrayDeque<ByteBuffer>();
+	private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<ByteBuffer>();
 
 	private final LocalBufferPoolConnector bufferPoolConnector;
 
+	/**
+	 * The monitor for threads waiting for a buffer. It also guards the listener queue and the asynchronous event flag.
+	 */
+	private final Object lock = new Object();
+
 	private final Queue<BufferAvailabilityListener> bufferAvailabilityListenerQueue = new ArrayDeque<BufferAvailabilityListener>();
 
+	/**
+	 * The number of threads waiting for a buffer, only modified while holding the lock.
+	 */
+	private volatile int numberOfWaitingThreads = 0;
+
+	/**
+	 * The number of registered buffer availability listeners, only modified while holding the lock.
+	 */
+	private volatile int numberOfListeners = 0;
+
+	/**
+	 * The number of times a thread had to wait for a buffer, only modified while holding the lock.
+	 */
+	private volatile long numberOfWaits = 0;
+
 	public LocalBufferPool(final int designatedNumberOfBuffers, final boolean isShared,
 			final AsynchronousEventListener eventListener) {
 
@@ -121,58 +153,104 @@ public final class LocalBufferPool implements BufferProvider {
 
 		while (true) {
 
+			// Make sure we return excess buffers immediately
+			returnExcessBuffers();
+
+			ByteBuffer byteBuffer = this.buffers.poll();
+			if (byteBuffer == null) {
+				byteBuffer = lockDesignatedGlobalBuffer();
+			}
+
+			if (byteBuffer != null) {
+				return BufferFactory.createFromMemory(minimumSizeOfBuffer, byteBuffer, this.bufferPoolConnector);
+			}
+
+			if (!block) {
+				return null;
+			}
+
 			boolean async = false;
 
-			synchronized (this.buffers) {
+			synchronized (this.lock) {
 
-				// Make sure we return excess buffers immediately
-				while (this.requestedNumberOfBuffers > this.designatedNumberOfBuffers) {
+				// Announce the waiting thread before checking for buffers again, so a concurrent recycle either
+				// makes its buffer visible to the check or sees the waiting thread and notifies it
+				this.numberOfWaitingThreads++;
+				try {
+					if (this.buffers.isEmpty()) {
 
-					final ByteBuffer buffer = this.buffers.poll();
-					if (buffer == null) {
-						break;
+						if (this.asynchronousEventOccurred) {
+							this.asynchronousEventOccurred = false;
+							async = true;
+						} else {
+							this.numberOfWaits++;
+							this.lock.wait(100);
+						}
 					}
-
-					this.globalBufferPool.releaseGlobalBuffer(buffer);
-					this.requestedNumberOfBuffers--;
+				} finally {
+					this.numberOfWaitingThreads--;
 				}
+			}
 
-				while (this.buffers.isEmpty()) {
+			if (async && this.eventListener != null) {
+				this.eventListener.asynchronousEventOccurred();
+			}
+		}
+	}
 
-					// Check if the number of cached buffers matches the number of designated buffers
-					if (this.requestedNumberOfBuffers < this.designatedNumberOfBuffers) {
+	/**
+	 * Locks a buffer from the global buffer pool, if the number of buffers requested by this pool is below the
+	 * designated number of buffers.
+	 * 
+	 * @return the locked buffer or <code>null</code> if no buffer could be locked
+	 */
+	private ByteBuffer lockDesignatedGlobalBuffer() {
 
-						final ByteBuffer buffer = this.globalBufferPool.lockGlobalBuffer();
-						if (buffer != null) {
+		while (true) {
 
-							this.buffers.add(buffer);
-							this.requestedNumberOfBuffers++;
-							continue;
-						}
-					}
+			final int requested = this.requestedNumberOfBuffers.get();
+			if (requested >= this.designatedNumberOfBuffers) {
+				return null;
+			}
 
-					if (this.asynchronousEventOccurred && block) {
-						this.asynchronousEventOccurred = false;
-						async = true;
-						break;
-					}
+			if (this.requestedNumberOfBuffers.compareAndSet(requested, requested + 1)) {
 
-					if (block) {
-						this.buffers.wait(100);
-					} else {
-						return null;
-					}
+				final ByteBuffer buffer = this.globalBufferPool.lockGlobalBuffer();
+				if (buffer == null) {
+					this.requestedNumberOfBuffers.decrementAndGet();
 				}
 
-				if (!async) {
-					final ByteBuffer byteBuffer = this.buffers.poll();
-					return BufferFactory.createFromMemory(minimumSizeOfBuffer, byteBuffer, this.bufferPoolConnector);
-				}
+				return buffer;
 			}
+		}
+	}
 
-			if (this.eventListener != null) {
-				this.eventListener.asynchronousEventOccurred();
+	/**
+	 * Returns available buffers to the global buffer pool, as long as this pool holds more buffers than designated.
+	 */
+	private void returnExcessBuffers() {
+
+		while (this.requestedNumberOfBuffers.get() > this.designatedNumberOfBuffers) {
+
+			final ByteBuffer buffer = this.buffers.poll();
+			if (buffer == null) {
+				break;
 			}
+
+			this.globalBufferPool.releaseGlobalBuffer(buffer);
+			this.requestedNumberOfBuffers.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Returns all available buffers to the global buffer pool.
+	 */
+	private void releaseAvailableBuffers() {
+
+		ByteBuffer buffer;
+		while ((buffer = this.buffers.poll()) != null) {
+			this.globalBufferPool.releaseGlobalBuffer(buffer);
+			this.requestedNumberOfBuffers.decrementAndGet();
 		}
 	}
 
@@ -193,28 +271,19 @@ public final class LocalBufferPool implements BufferProvider {
 	 */
 	public void setDesignatedNumberOfBuffers(final int designatedNumberOfBuffers) {
 
-		synchronized (this.buffers) {
-
-			this.designatedNumberOfBuffers = designatedNumberOfBuffers;
-
-			// Make sure we return excess buffers immediately
-			while (this.requestedNumberOfBuffers > this.designatedNumberOfBuffers) {
-
-				if (this.buffers.isEmpty()) {
-					break;
-				}
+		this.designatedNumberOfBuffers = designatedNumberOfBuffers;
 
-				this.globalBufferPool.releaseGlobalBuffer(this.buffers.poll());
-				this.requestedNumberOfBuffers--;
-			}
+		// Make sure we return excess buffers immediately
+		returnExcessBuffers();
 
-			this.buffers.notify();
+		synchronized (this.lock) {
+			this.lock.notify();
 		}
 	}
 
 	public void destroy() {
 
-		synchronized (this.buffers) {
+		synchronized (this.lock) {
 
 			if (this.isDestroyed) {
 				LOG.error("destroy is called on LocalBufferPool multiple times");
@@ -222,13 +291,9 @@ public final class LocalBufferPool implements BufferProvider {
 			}
 
 			this.isDestroyed = true;
-
-			while (!this.buffers.isEmpty()) {
-				this.globalBufferPool.releaseGlobalBuffer(this.buffers.poll());
-			}
-
-			this.requestedNumberOfBuffers = 0;
 		}
+
+		releaseAvailableBuffers();
 	}
 
 	/**
@@ -242,39 +307,55 @@ public final class LocalBufferPool implements BufferProvider {
 
 	public int getNumberOfAvailableBuffers() {
 
-		synchronized (this.buffers) {
-			return this.buffers.size();
-		}
+		return this.buffers.size();
 	}
 
 	public int getDesignatedNumberOfBuffers() {
 
-		synchronized (this.buffers) {
-			return this.designatedNumberOfBuffers;
-		}
+		return this.designatedNumberOfBuffers;
 	}
 
 	public int getRequestedNumberOfBuffers() {
 
-		synchronized (this.buffers) {
-			return this.requestedNumberOfBuffers;
-		}
+		return this.requestedNumberOfBuffers.get();
+	}
+
+	/**
+	 * Returns the number of times a thread had to wait for a buffer of this pool to become available. A high
+	 * number indicates that the pool's designated number of buffers is too small for the task's load.
+	 * 
+	 * @return the number of times a thread had to wait for a buffer
+	 */
+	public long getNumberOfBlockingWaits() {
+
+		return this.numberOfWaits;
 	}
 
 	private void recycleBuffer(final ByteBuffer byteBuffer) {
 
-		synchronized (this.buffers) {
+		if (this.isDestroyed) {
+			this.globalBufferPool.releaseGlobalBuffer(byteBuffer);
+			this.requestedNumberOfBuffers.decrementAndGet();
+		} else {
+			this.buffers.add(byteBuffer);
 
+			// The pool may have been destroyed after the check, after it released its available buffers
 			if (this.isDestroyed) {
-				this.globalBufferPool.releaseGlobalBuffer(byteBuffer);
-				this.requestedNumberOfBuffers--;
-			} else {
-				this.buffers.add(byteBuffer);
-				this.buffers.notify();
+				releaseAvailableBuffers();
 			}
+		}
+
+		// Only enter the monitor if someone waits for the buffer
+		if (this.numberOfWaitingThreads > 0 || this.numberOfListeners > 0) {
 
-			while (!this.bufferAvailabilityListenerQueue.isEmpty()) {
-				this.bufferAvailabilityListenerQueue.poll().bufferAvailable();
+			synchronized (this.lock) {
+
+				this.lock.notify();
+
+				while (!this.bufferAvailabilityListenerQueue.isEmpty()) {
+					this.bufferAvailabilityListenerQueue.poll().bufferAvailable();
+				}
+				this.numberOfListeners = 0;
 			}
 		}
 	}
@@ -285,9 +366,9 @@ public final class LocalBufferPool implements BufferProvider {
 	@Override
 	public void reportAsynchronousEvent() {
 
-		synchronized (this.buffers) {
+		synchronized (this.lock) {
 			this.asynchronousEventOccurred = true;
-			this.buffers.notify();
+			this.lock.notify();
 		}
 	}
 
@@ -297,16 +378,22 @@ public final class LocalBufferPool implements BufferProvider {
 	@Override
 	public boolean registerBufferAvailabilityListener(final BufferAvailabilityListener bufferAvailabilityListener) {
 
-		synchronized (this.buffers) {
-			if (!this.buffers.isEmpty()) {
-				return false;
-			}
+		synchronized (this.lock) {
 
 			if (this.isDestroyed) {
 				return false;
 			}
 
+			// Register the listener before checking for buffers, so a concurrent recycle either makes its buffer
+			// visible to the check or sees the listener and notifies it
 			this.bufferAvailabilityListenerQueue.add(bufferAvailabilityListener);
+			this.numberOfListeners++;
+
+			if (!this.buffers.isEmpty()) {
+				this.bufferAvailabilityListenerQueue.remove(bufferAvailabilityListener);
+				this.numberOfListeners--;
+				return false;
+			}
 		}
 
 		return true;
@@ -0,0 +1,239 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A gathering write channel collects the serialized data of several transfer envelopes and transmits them with a
+ * single gathering write to the underlying channel.
+ * <p>
+ * Small writes, like the headers of the envelopes, are copied into a staging buffer. Large writes are only referenced
+ * if they have been announced as stable through {@link #setReferenceWrites(boolean)}, otherwise they are copied as
+ * well. When neither the staging buffer nor the list of referenced buffers can take more data, write requests return
+ * <code>0</code>, just like a non-blocking socket whose send buffer is full.
+ * <p>
+ * This class is not thread-safe.
+ */
+final class GatheringWriteChannel implements WritableByteChannel {
+
+	/**
+	 * The size of the staging buffer in bytes.
+	 */
+	private static final int STAGING_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Writes with up to this number of bytes are always copied into the staging buffer.
+	 */
+	private static final int COPY_THRESHOLD = 1024;
+
+	/**
+	 * The maximum number of byte buffers passed to one gathering write.
+	 */
+	private static final int MAXIMUM_NUMBER_OF_BUFFERS = 64;
+
+	/**
+	 * The maximum number of bytes collected for one gathering write.
+	 */
+	private static final int MAXIMUM_BATCH_SIZE = 1024 * 1024;
+
+	/**
+	 * The staging buffer holding the copied data.
+	 */
+	private final ByteBuffer stagingBuffer = ByteBuffer.allocateDirect(STAGING_BUFFER_SIZE);
+
+	/**
+	 * The byte buffers to be written, in the order of the write requests.
+	 */
+	private final ByteBuffer[] buffers = new ByteBuffer[MAXIMUM_NUMBER_OF_BUFFERS];
+
+	/**
+	 * The number of byte buffers collected so far.
+	 */
+	private int numberOfBuffers = 0;
+
+	/**
+	 * The index of the first byte buffer that has not been written completely.
+	 */
+	private int firstPendingBuffer = 0;
+
+	/**
+	 * The number of bytes collected so far.
+	 */
+	private int batchSize = 0;
+
+	/**
+	 * The region of the staging buffer that subsequent copies are appended to, or <code>null</code> if the next copy
+	 * must start a new region.
+	 */
+	private ByteBuffer openStagingRegion = null;
+
+	/**
+	 * Stores whether large writes may be referenced instead of being copied.
+	 */
+	private boolean referenceWrites = false;
+
+	/**
+	 * Sets whether the data of subsequent large write requests remains unchanged until it has been transmitted, so it
+	 * can be referenced instead of copied.
+	 *
+	 * @param referenceWrites
+	 *        <code>true</code> if large writes may be referenced, <code>false</code> if they must be copied
+	 */
+	void setReferenceWrites(final boolean referenceWrites) {
+
+		this.referenceWrites = referenceWrites;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int write(final ByteBuffer src) throws IOException {
+
+		final int length = src.remaining();
+		if (length == 0) {
+			return 0;
+		}
+
+		if (this.referenceWrites && length > COPY_THRESHOLD) {
+
+			if (this.numberOfBuffers == MAXIMUM_NUMBER_OF_BUFFERS
+				|| (this.batchSize > 0 && this.batchSize + length > MAXIMUM_BATCH_SIZE)) {
+				return 0;
+			}
+
+			this.buffers[this.numberOfBuffers++] = src.slice();
+			src.position(src.limit());
+			this.openStagingRegion = null;
+			this.batchSize += length;
+
+			return length;
+		}
+
+		final int bytesToCopy = Math.min(length, this.stagingBuffer.remaining());
+		if (bytesToCopy == 0) {
+			return 0;
+		}
+
+		if (this.openStagingRegion == null) {
+
+			if (this.numberOfBuffers == MAXIMUM_NUMBER_OF_BUFFERS) {
+				return 0;
+			}
+
+			this.openStagingRegion = this.stagingBuffer.duplicate();
+			this.openStagingRegion.limit(this.stagingBuffer.position());
+			this.buffers[this.numberOfBuffers++] = this.openStagingRegion;
+		}
+
+		if (bytesToCopy < length) {
+			final int limit = src.limit();
+			src.limit(src.position() + bytesToCopy);
+			this.stagingBuffer.put(src);
+			src.limit(limit);
+		} else {
+			this.stagingBuffer.put(src);
+		}
+
+		this.openStagingRegion.limit(this.stagingBuffer.position());
+		this.batchSize += bytesToCopy;
+
+		return bytesToCopy;
+	}
+
+	/**
+	 * Writes the collected data to the given channel with a single gathering write. Once all collected data has been
+	 * written, the channel is reset and can collect new data.
+	 *
+	 * @param gatheringByteChannel
+	 *        the channel to write the collected data to
+	 * @return the number of bytes written
+	 * @throws IOException
+	 *         thrown if an error occurs while writing the data
+	 */
+	long writeTo(final GatheringByteChannel gatheringByteChannel) throws IOException {
+
+		final long bytesWritten = gatheringByteChannel.write(this.buffers, this.firstPendingBuffer,
+			this.numberOfBuffers - this.firstPendingBuffer);
+
+		while (this.firstPendingBuffer < this.numberOfBuffers && !this.buffers[this.firstPendingBuffer].hasRemaining()) {
+			this.buffers[this.firstPendingBuffer++] = null;
+		}
+
+		if (this.firstPendingBuffer == this.numberOfBuffers) {
+			clear();
+		}
+
+		return bytesWritten;
+	}
+
+	/**
+	 * Returns the number of bytes collected since the channel has been reset the last time.
+	 *
+	 * @return the number of bytes collected since the last reset
+	 */
+	int getBatchSize() {
+
+		return this.batchSize;
+	}
+
+	/**
+	 * Checks whether the channel holds collected data which has not been written yet.
+	 *
+	 * @return <code>true</code> if there is collected data left to be written, <code>false</code> otherwise
+	 */
+	boolean hasRemaining() {
+
+		return (this.firstPendingBuffer < this.numberOfBuffers);
+	}
+
+	/**
+	 * Drops all collected data.
+	 */
+	void clear() {
+
+		for (int i = this.firstPendingBuffer; i < this.numberOfBuffers; ++i) {
+			this.buffers[i] = null;
+		}
+
+		this.numberOfBuffers = 0;
+		this.firstPendingBuffer = 0;
+		this.batchSize = 0;
+		this.openStagingRegion = null;
+		this.stagingBuffer.clear();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isOpen() {
+
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() {
+		// Nothing to do here
+	}
+}
@@ -17,11 +17,13 @@ package eu.stratosphere.nephele.taskmanager.network;
 
 import java.io.IOException;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ScatteringByteChannel;
 import java.nio.channels.SelectionKey;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import eu.stratosphere.nephele.io.channels.Buffer;
 import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferProvider;
 import eu.stratosphere.nephele.taskmanager.routing.DefaultRoutingService;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.DefaultDeserializer;
@@ -47,6 +49,12 @@ final class IncomingConnection {
 	 */
 	private final ReadableByteChannel readableByteChannel;
 
+	/**
+	 * The read-ahead channel wrapping the readable byte channel, which serves the small header reads of the
+	 * deserializer from a buffer and reads the payload with scattering reads.
+	 */
+	private final ReadAheadChannel readAheadChannel;
+
 	/**
 	 * The {@link DefaultDeserializer} used to transform the read bytes into transfer envelopes which can be
 	 * passed on to the respective channels.
@@ -58,10 +66,11 @@ final class IncomingConnection {
 	 */
 	private final DefaultRoutingService routingService;
 
-	IncomingConnection(final DefaultRoutingService routingService, final ReadableByteChannel readableByteChannel) {
+	IncomingConnection(final DefaultRoutingService routingService, final ScatteringByteChannel readableByteChannel) {
 		this.routingService = routingService;
 		this.deserializer = new DefaultDeserializer(routingService);
 		this.readableByteChannel = readableByteChannel;
+		this.readAheadChannel = new ReadAheadChannel(readableByteChannel);
 	}
 
 	void reportTransmissionProblem(SelectionKey key, IOException ioe) {
@@ -89,20 +98,47 @@ final class IncomingConnection {
 
 	void read() throws IOException, InterruptedException, NoBufferAvailableException {
 
-		this.deserializer.read(this.readableByteChannel);
+		// Data which has already been read ahead does not trigger another read event, so we have to continue as long
+		// as the deserializer makes progress on it
+		while (true) {
+
+			final long bytesReadBefore = this.readAheadChannel.getNumberOfBytesRead();
+			final Buffer bufferBefore = this.deserializer.getBuffer();
+
+			this.deserializer.read(this.readAheadChannel);
+
+			final TransferEnvelope transferEnvelope = this.deserializer.getFullyDeserializedTransferEnvelope();
+			if (transferEnvelope != null) {
 
-		final TransferEnvelope transferEnvelope = this.deserializer.getFullyDeserializedTransferEnvelope();
-		if (transferEnvelope != null) {
+				final BufferProvider bufferProvider = this.deserializer.getBufferProvider();
+				if (bufferProvider == null) {
+					this.routingService.routeEnvelopeFromNetwork(transferEnvelope, false);
+				} else {
+					this.routingService.routeEnvelopeFromNetwork(transferEnvelope, bufferProvider.isShared());
+				}
+			} else if (this.readAheadChannel.getNumberOfBytesRead() == bytesReadBefore
+				&& this.deserializer.getBuffer() == bufferBefore) {
+				return;
+			}
 
-			final BufferProvider bufferProvider = this.deserializer.getBufferProvider();
-			if (bufferProvider == null) {
-				this.routingService.routeEnvelopeFromNetwork(transferEnvelope, false);
-			} else {
-				this.routingService.routeEnvelopeFromNetwork(transferEnvelope, bufferProvider.isShared());
+			if (!this.readAheadChannel.hasBufferedData()) {
+				return;
 			}
 		}
 	}
 
+	/**
+	 * Checks whether this connection holds data which has already been read from the network but not been
+	 * deserialized yet. In this case, {@link #read()} must be called without waiting for a read event.
+	 * 
+	 * @return <code>true</code> if the connection holds data which has not been deserialized yet, <code>false</code>
+	 *         otherwise
+	 */
+	boolean hasBufferedData() {
+
+		return this.readAheadChannel.hasBufferedData();
+	}
+
 	boolean isCloseUnexpected() {
 
 		return this.deserializer.hasUnfinishedData();
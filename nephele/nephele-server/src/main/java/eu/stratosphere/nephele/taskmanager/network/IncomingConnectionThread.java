@@ -95,18 +95,31 @@ final class IncomingConnectionThread extends Thread {
 
 		while (!this.isInterrupted()) {
 
-			synchronized (this.pendingReadEventSubscribeRequests) {
-				while (!this.pendingReadEventSubscribeRequests.isEmpty()) {
-					final SelectionKey key = this.pendingReadEventSubscribeRequests.poll();
-					final IncomingConnection incomingConnection = (IncomingConnection) key.attachment();
-					final SocketChannel socketChannel = (SocketChannel) key.channel();
-
-					try {
-						final SelectionKey newKey = socketChannel.register(this.selector, SelectionKey.OP_READ);
-						newKey.attach(incomingConnection);
-					} catch (ClosedChannelException e) {
-						incomingConnection.reportTransmissionProblem(key, e);
+			while (true) {
+
+				// Do not hold the lock while reading, the buffer availability listeners acquire it
+				final SelectionKey key;
+				synchronized (this.pendingReadEventSubscribeRequests) {
+					key = this.pendingReadEventSubscribeRequests.poll();
+				}
+
+				if (key == null) {
+					break;
+				}
+
+				final IncomingConnection incomingConnection = (IncomingConnection) key.attachment();
+				final SocketChannel socketChannel = (SocketChannel) key.channel();
+
+				try {
+					final SelectionKey newKey = socketChannel.register(this.selector, SelectionKey.OP_READ);
+					newKey.attach(incomingConnection);
+
+					// Data which has already been read ahead does not trigger a read event
+					if (incomingConnection.hasBufferedData()) {
+						doRead(newKey);
 					}
+				} catch (ClosedChannelException e) {
+					incomingConnection.reportTransmissionProblem(key, e);
 				}
 			}
 
@@ -218,6 +231,15 @@ final class IncomingConnectionThread extends Thread {
 					newKey.attach(incomingConnection);
 				} catch (ClosedChannelException e1) {
 					incomingConnection.reportTransmissionProblem(key, e1);
+					return;
+				}
+
+				// Data which has already been read ahead does not trigger a read event, so process it with the
+				// pending subscription requests
+				if (incomingConnection.hasBufferedData()) {
+					synchronized (this.pendingReadEventSubscribeRequests) {
+						this.pendingReadEventSubscribeRequests.add(key);
+					}
 				}
 			}
 		}
@@ -123,6 +123,24 @@ public final class NetworkService {
 		getOutgoingConnection(remoteReceiver).queueEnvelope(transferEnvelope);
 	}
 
+	/**
+	 * Returns the rate at which the outgoing connection to the given receiver transmits the data of a single source
+	 * channel while the connection is saturated.
+	 * 
+	 * @param remoteReceiver
+	 *        the address of the remote receiver
+	 * @return the send rate per source channel in bytes per second or a negative value if the rate is unknown
+	 */
+	public double getSendRate(final RemoteReceiver remoteReceiver) {
+
+		final OutgoingConnection outgoingConnection = this.outgoingConnections.get(remoteReceiver);
+		if (outgoingConnection == null) {
+			return -1.0;
+		}
+
+		return outgoingConnection.getSendRate();
+	}
+
 	/**
 	 * Returns (and possibly creates) the outgoing connection for the given target address.
 	 * 
@@ -17,27 +17,35 @@ package eu.stratosphere.nephele.taskmanager.network;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.WritableByteChannel;
 import java.util.ArrayDeque;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Queue;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import eu.stratosphere.nephele.io.channels.Buffer;
 import eu.stratosphere.nephele.io.channels.ChannelID;
 import eu.stratosphere.nephele.taskmanager.routing.DefaultRoutingService;
 import eu.stratosphere.nephele.taskmanager.routing.RemoteReceiver;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.AbstractSerializer;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
-import eu.stratosphere.nephele.taskmanager.transferenvelope.DefaultSerializer;
 
 /**
  * This class represents an outgoing TCP connection through which {@link TransferEnvelope} objects can be sent.
  * {@link TransferEnvelope} objects are received from the {@link DefaultRoutingService} and added to a queue. An
  * additional network thread then takes the envelopes from the queue and transmits them to the respective destination
- * host.
+ * host. To reduce the number of system calls, the network thread serializes as many queued envelopes as possible into
+ * a {@link GatheringWriteChannel} and transmits them with a single gathering write.
+ * <p>
+ * While the connection cannot keep up with the queued envelopes, it measures the rate at which the network accepts
+ * the data. The rate is used to decide about the compression of the channels sending data through this connection.
  * 
  * @author warneke
  */
@@ -64,15 +72,68 @@ final class OutgoingConnection {
 	private final Queue<TransferEnvelope> queuedEnvelopes = new ArrayDeque<TransferEnvelope>();
 
 	/**
-	 * The {@link DefaultSerializer} object used to transform the envelopes into a byte stream.
+	 * The queue of transfer envelopes which have been serialized into the gathering write channel, but not yet been
+	 * transmitted completely.
 	 */
-	private final DefaultSerializer serializer = new DefaultSerializer();
+	private final Queue<TransferEnvelope> serializedEnvelopes = new ArrayDeque<TransferEnvelope>();
 
 	/**
-	 * The {@link TransferEnvelope} that is currently processed.
+	 * The channel collecting the serialized envelopes for the next gathering write.
+	 */
+	private final GatheringWriteChannel gatheringWriteChannel = new GatheringWriteChannel();
+
+	/**
+	 * The {@link GatheringSerializer} object used to transform the envelopes into a byte stream.
+	 */
+	private final GatheringSerializer serializer = new GatheringSerializer(this.gatheringWriteChannel);
+
+	/**
+	 * The {@link TransferEnvelope} that is currently serialized. The envelope remains at the head of the queue of
+	 * transfer envelopes until it is fully serialized.
 	 */
 	private TransferEnvelope currentEnvelope = null;
 
+	/**
+	 * The number of envelopes transmitted through this connection.
+	 */
+	private long numberOfTransmittedEnvelopes = 0L;
+
+	/**
+	 * The number of gathering writes issued to transmit the envelopes.
+	 */
+	private long numberOfGatheringWrites = 0L;
+
+	/**
+	 * The minimum duration of a send rate measurement window in nanoseconds.
+	 */
+	private static final long MINIMUM_SEND_RATE_WINDOW = 100L * 1000L * 1000L;
+
+	/**
+	 * The weight of the most recent measurement window in the smoothed send rate.
+	 */
+	private static final double SEND_RATE_SMOOTHING_FACTOR = 0.25;
+
+	/**
+	 * The start of the current send rate measurement window in nanoseconds or <code>-1</code> if no window is open.
+	 */
+	private long sendRateWindowStart = -1L;
+
+	/**
+	 * The number of bytes written during the current send rate measurement window.
+	 */
+	private long sendRateWindowBytes = 0L;
+
+	/**
+	 * The IDs of the channels whose envelopes have been serialized during the current send rate measurement window.
+	 */
+	private final Set<ChannelID> sendRateWindowSources = new HashSet<ChannelID>();
+
+	/**
+	 * The smoothed send rate per source channel in bytes per second or a negative value if the rate has not been
+	 * measured yet. The rate is written by the outgoing connection thread and read by the tasks.
+	 */
+	private volatile double sendRate = -1.0;
+
 	/**
 	 * Stores whether the underlying TCP connection is established. As this variable is accessed by the byte buffered
 	 * channel manager and the outgoing connection thread, it must be protected by a monitor.
@@ -222,13 +283,10 @@ final class OutgoingConnection {
 			// Error is fatal
 			LOG.error(ioe);
 
-			// Notify source of current envelope and release buffer
-			if (this.currentEnvelope != null) {
-				if (this.currentEnvelope.getBuffer() != null) {
-					this.currentEnvelope.getBuffer().recycleBuffer();
-					this.currentEnvelope = null;
-				}
-			}
+			// Release the buffers of the envelopes which have already been serialized. The buffer of the current
+			// envelope is released with the queued envelopes.
+			dropSerializedEnvelopes();
+			this.currentEnvelope = null;
 
 			// Notify all other tasks which are waiting for data to be transmitted
 			final Iterator<TransferEnvelope> iter = this.queuedEnvelopes.iterator();
@@ -285,6 +343,16 @@ final class OutgoingConnection {
 			// Error is fatal
 			LOG.error(ioe);
 
+			// We must assume the serialized envelopes and the current envelope are corrupted, so we drop them
+			dropSerializedEnvelopes();
+			if (this.currentEnvelope != null) {
+				this.queuedEnvelopes.remove(this.currentEnvelope);
+				if (this.currentEnvelope.getBuffer() != null) {
+					this.currentEnvelope.getBuffer().recycleBuffer();
+				}
+				this.currentEnvelope = null;
+			}
+
 			// Trigger new connection if there are more envelopes to be transmitted
 			if (this.queuedEnvelopes.isEmpty()) {
 				this.isConnected = false;
@@ -294,13 +362,22 @@ final class OutgoingConnection {
 				this.isConnected = true;
 				this.isSubscribedToWriteEvent = true;
 			}
+		}
+	}
 
-			// We must assume the current envelope is corrupted so we notify the task which created it.
-			if (this.currentEnvelope != null) {
-				if (this.currentEnvelope.getBuffer() != null) {
-					this.currentEnvelope.getBuffer().recycleBuffer();
-					this.currentEnvelope = null;
-				}
+	/**
+	 * Drops the envelopes which have been serialized into the gathering write channel and releases their buffers.
+	 * <p>
+	 * This method must be called while holding the lock on the queued envelopes.
+	 */
+	private void dropSerializedEnvelopes() {
+
+		this.gatheringWriteChannel.clear();
+
+		while (!this.serializedEnvelopes.isEmpty()) {
+			final TransferEnvelope envelope = this.serializedEnvelopes.poll();
+			if (envelope.getBuffer() != null) {
+				envelope.getBuffer().recycleBuffer();
 			}
 		}
 	}
@@ -321,7 +398,9 @@ final class OutgoingConnection {
 	}
 
 	/**
-	 * Writes the content of the current {@link TransferEnvelope} object to the underlying TCP connection.
+	 * Writes the content of the queued {@link TransferEnvelope} objects to the underlying TCP connection. If no data
+	 * from a previous call is left to be written, the method first serializes as many queued envelopes as the
+	 * {@link GatheringWriteChannel} can take. It then transmits the collected data with a single gathering write.
 	 * <p>
 	 * This method should only be called by the {@link OutgoingConnectionThread} object.
 	 * 
@@ -331,35 +410,144 @@ final class OutgoingConnection {
 	 */
 	boolean write() throws IOException {
 
-		final WritableByteChannel writableByteChannel = (WritableByteChannel) this.selectionKey.channel();
+		final GatheringByteChannel gatheringByteChannel = (GatheringByteChannel) this.selectionKey.channel();
 
-		if (this.currentEnvelope == null) {
-			synchronized (this.queuedEnvelopes) {
-				if (this.queuedEnvelopes.isEmpty()) {
-					return false;
-				} else {
-					this.currentEnvelope = this.queuedEnvelopes.peek();
-					this.serializer.setTransferEnvelope(this.currentEnvelope);
-				}
+		if (!this.gatheringWriteChannel.hasRemaining()) {
+
+			serializeQueuedEnvelopes();
+
+			if (!this.gatheringWriteChannel.hasRemaining()) {
+				// The connection has caught up, so the current window does not reflect the capacity of the link
+				this.sendRateWindowStart = -1L;
+				this.sendRateWindowSources.clear();
+				return false;
 			}
 		}
 
-		if (!this.serializer.write(writableByteChannel)) {
+		final long bytesWritten = this.gatheringWriteChannel.writeTo(gatheringByteChannel);
+		++this.numberOfGatheringWrites;
+		updateSendRate(bytesWritten);
+
+		if (!this.gatheringWriteChannel.hasRemaining()) {
 
 			// Make sure we recycle the attached memory or file buffers correctly
-			if (this.currentEnvelope.getBuffer() != null) {
-				this.currentEnvelope.getBuffer().recycleBuffer();
-			}
+			while (true) {
 
-			synchronized (this.queuedEnvelopes) {
-				this.queuedEnvelopes.poll();
-				this.currentEnvelope = null;
+				final TransferEnvelope envelope;
+				synchronized (this.queuedEnvelopes) {
+					envelope = this.serializedEnvelopes.poll();
+				}
+
+				if (envelope == null) {
+					break;
+				}
+
+				if (envelope.getBuffer() != null) {
+					envelope.getBuffer().recycleBuffer();
+				}
+
+				++this.numberOfTransmittedEnvelopes;
 			}
 		}
 
 		return true;
 	}
 
+	/**
+	 * Adds the given number of written bytes to the current send rate measurement window. If the window has lasted
+	 * long enough, its rate is folded into the smoothed send rate and a new window is opened.
+	 * 
+	 * @param bytesWritten
+	 *        the number of bytes written by the last gathering write
+	 */
+	private void updateSendRate(final long bytesWritten) {
+
+		final long now = System.nanoTime();
+
+		if (this.sendRateWindowStart < 0L) {
+			this.sendRateWindowStart = now;
+			this.sendRateWindowBytes = bytesWritten;
+			return;
+		}
+
+		this.sendRateWindowBytes += bytesWritten;
+
+		final long duration = now - this.sendRateWindowStart;
+		if (duration < MINIMUM_SEND_RATE_WINDOW) {
+			return;
+		}
+
+		// The channels sending through this connection share its capacity
+		final int numberOfSources = Math.max(1, this.sendRateWindowSources.size());
+		final double windowRate = (this.sendRateWindowBytes * 1000000000.0) / (duration * numberOfSources);
+
+		final double oldRate = this.sendRate;
+		if (oldRate < 0.0) {
+			this.sendRate = windowRate;
+		} else {
+			this.sendRate = SEND_RATE_SMOOTHING_FACTOR * windowRate + (1.0 - SEND_RATE_SMOOTHING_FACTOR) * oldRate;
+		}
+
+		this.sendRateWindowStart = now;
+		this.sendRateWindowBytes = 0L;
+		this.sendRateWindowSources.clear();
+	}
+
+	/**
+	 * Returns the rate at which the network accepted the data of a single source channel while this connection was
+	 * not able to keep up with the queued envelopes.
+	 * 
+	 * @return the send rate per source channel in bytes per second or a negative value if the rate has not been
+	 *         measured yet
+	 */
+	double getSendRate() {
+
+		return this.sendRate;
+	}
+
+	/**
+	 * Serializes queued {@link TransferEnvelope} objects into the gathering write channel until either the queue is
+	 * empty or the channel cannot take more data.
+	 * 
+	 * @throws IOException
+	 *         thrown if an error occurs while serializing an envelope
+	 */
+	private void serializeQueuedEnvelopes() throws IOException {
+
+		while (true) {
+
+			if (this.currentEnvelope == null) {
+				synchronized (this.queuedEnvelopes) {
+					if (this.queuedEnvelopes.isEmpty()) {
+						return;
+					} else {
+						this.currentEnvelope = this.queuedEnvelopes.peek();
+						this.serializer.setTransferEnvelope(this.currentEnvelope);
+						this.sendRateWindowSources.add(this.currentEnvelope.getSource());
+					}
+				}
+			}
+
+			final int batchSize = this.gatheringWriteChannel.getBatchSize();
+
+			if (this.serializer.write(this.gatheringWriteChannel)) {
+
+				if (this.gatheringWriteChannel.getBatchSize() == batchSize) {
+					// The gathering write channel is full
+					return;
+				}
+
+			} else {
+
+				synchronized (this.queuedEnvelopes) {
+					this.queuedEnvelopes.poll();
+					this.serializedEnvelopes.add(this.currentEnvelope);
+					this.currentEnvelope = null;
+				}
+			}
+		}
+	}
+
 	/**
 	 * Requests to close the underlying TCP connection. The request is ignored if at least one {@link TransferEnvelope}
 	 * is queued.
@@ -373,7 +561,7 @@ final class OutgoingConnection {
 
 		synchronized (this.queuedEnvelopes) {
 
-			if (this.queuedEnvelopes.isEmpty()) {
+			if (this.queuedEnvelopes.isEmpty() && this.serializedEnvelopes.isEmpty()) {
 
 				if (this.isSubscribedToWriteEvent) {
 
@@ -395,10 +583,15 @@ final class OutgoingConnection {
 
 		synchronized (this.queuedEnvelopes) {
 
-			if (!this.queuedEnvelopes.isEmpty()) {
+			if (!this.queuedEnvelopes.isEmpty() || !this.serializedEnvelopes.isEmpty()) {
 				return;
 			}
 
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("Transmitted " + this.numberOfTransmittedEnvelopes + " envelopes with "
+					+ this.numberOfGatheringWrites + " gathering writes to " + this.remoteReceiver);
+			}
+
 			if (this.selectionKey != null) {
 
 				final SocketChannel socketChannel = (SocketChannel) this.selectionKey.channel();
@@ -423,18 +616,25 @@ final class OutgoingConnection {
 
 		synchronized (this.queuedEnvelopes) {
 
-			int number = 0;
+			return countEnvelopesFromChannel(this.queuedEnvelopes, sourceChannelID)
+				+ countEnvelopesFromChannel(this.serializedEnvelopes, sourceChannelID);
+		}
+	}
 
-			final Iterator<TransferEnvelope> it = this.queuedEnvelopes.iterator();
-			while (it.hasNext()) {
-				final TransferEnvelope te = it.next();
-				if (sourceChannelID.equals(te.getSource())) {
-					number++;
-				}
-			}
+	private static int countEnvelopesFromChannel(final Queue<TransferEnvelope> envelopes,
+			final ChannelID sourceChannelID) {
+
+		int number = 0;
 
-			return number;
+		final Iterator<TransferEnvelope> it = envelopes.iterator();
+		while (it.hasNext()) {
+			final TransferEnvelope te = it.next();
+			if (sourceChannelID.equals(te.getSource())) {
+				number++;
+			}
 		}
+
+		return number;
 	}
 
 	/**
@@ -451,6 +651,10 @@ final class OutgoingConnection {
 			final Iterator<TransferEnvelope> it = this.queuedEnvelopes.iterator();
 			while (it.hasNext()) {
 				final TransferEnvelope te = it.next();
+				// The current envelope may already be partially serialized
+				if (te == this.currentEnvelope) {
+					continue;
+				}
 				if (sourceChannelID.equals(te.getSource())) {
 					it.remove();
 					if (te.getBuffer() != null) {
@@ -482,7 +686,7 @@ final class OutgoingConnection {
 				return false;
 			}
 
-			return this.queuedEnvelopes.isEmpty();
+			return this.queuedEnvelopes.isEmpty() && this.serializedEnvelopes.isEmpty();
 		}
 	}
 
@@ -493,6 +697,13 @@ final class OutgoingConnection {
 	 *        the selection of the underlying TCP connection
 	 */
 	void setSelectionKey(SelectionKey selectionKey) {
+
+		// The channel handles are only valid within one TCP connection
+		if (this.selectionKey == null || this.selectionKey.channel() != selectionKey.channel()) {
+			this.serializer.resetChannelHandles();
+			this.sendRateWindowStart = -1L;
+		}
+
 		this.selectionKey = selectionKey;
 	}
 
@@ -515,8 +726,50 @@ final class OutgoingConnection {
 					++retVal;
 				}
 			}
+
+			final Iterator<TransferEnvelope> it2 = this.serializedEnvelopes.iterator();
+			while (it2.hasNext()) {
+
+				final TransferEnvelope envelope = it2.next();
+				if (envelope.getBuffer() != null) {
+					++retVal;
+				}
+			}
 		}
 
 		return retVal;
 	}
+
+	/**
+	 * Serializes transfer envelopes into the {@link GatheringWriteChannel}. The data of memory-backed buffers is
+	 * referenced instead of copied, because it remains unchanged until the buffer is recycled after the transmission.
+	 */
+	private static final class GatheringSerializer extends AbstractSerializer {
+
+		/**
+		 * The gathering write channel the envelopes are serialized into.
+		 */
+		private final GatheringWriteChannel gatheringWriteChannel;
+
+		private GatheringSerializer(final GatheringWriteChannel gatheringWriteChannel) {
+			this.gatheringWriteChannel = gatheringWriteChannel;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected boolean writeBufferData(final WritableByteChannel writableByteChannel, final Buffer buffer)
+				throws IOException {
+
+			this.gatheringWriteChannel.setReferenceWrites(buffer.isBackedByMemory());
+			try {
+				buffer.read(writableByteChannel);
+			} finally {
+				this.gatheringWriteChannel.setReferenceWrites(false);
+			}
+
+			return buffer.hasRemaining();
+		}
+	}
 }
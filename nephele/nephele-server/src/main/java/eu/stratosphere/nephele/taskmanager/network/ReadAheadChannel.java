@@ -0,0 +1,161 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+
+/**
+ * A read-ahead channel serves the many small reads of the transfer envelope deserializer from a read-ahead buffer.
+ * Whenever the read-ahead buffer is exhausted, the channel fills the destination buffer of the current read request
+ * and the read-ahead buffer with a single scattering read from the underlying channel. This way, the payload of an
+ * envelope is read directly into its destination buffer, while the headers of the following envelopes are read ahead
+ * with the same system call.
+ * <p>
+ * Because data may be buffered, the owner of the channel must continue to consume data as long as
+ * {@link #hasBufferedData()} returns <code>true</code>, independent of the readiness of the underlying channel.
+ * <p>
+ * This class is not thread-safe.
+ */
+final class ReadAheadChannel implements ReadableByteChannel {
+
+	/**
+	 * The size of the read-ahead buffer in bytes.
+	 */
+	private static final int READ_AHEAD_BUFFER_SIZE = 16 * 1024;
+
+	/**
+	 * The underlying channel.
+	 */
+	private final ScatteringByteChannel scatteringByteChannel;
+
+	/**
+	 * The read-ahead buffer, always in read mode.
+	 */
+	private final ByteBuffer readAheadBuffer = ByteBuffer.allocateDirect(READ_AHEAD_BUFFER_SIZE);
+
+	/**
+	 * The destination buffers of a scattering read.
+	 */
+	private final ByteBuffer[] scatteringBuffers = new ByteBuffer[2];
+
+	/**
+	 * The number of bytes handed out by this channel.
+	 */
+	private long numberOfBytesRead = 0L;
+
+	/**
+	 * Constructs a new read-ahead channel.
+	 *
+	 * @param scatteringByteChannel
+	 *        the underlying channel
+	 */
+	ReadAheadChannel(final ScatteringByteChannel scatteringByteChannel) {
+
+		this.scatteringByteChannel = scatteringByteChannel;
+		this.readAheadBuffer.limit(0);
+		this.scatteringBuffers[1] = this.readAheadBuffer;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int read(final ByteBuffer dst) throws IOException {
+
+		if (this.readAheadBuffer.hasRemaining()) {
+
+			final int bytesToCopy = Math.min(dst.remaining(), this.readAheadBuffer.remaining());
+			if (bytesToCopy == this.readAheadBuffer.remaining()) {
+				dst.put(this.readAheadBuffer);
+			} else {
+				final int limit = this.readAheadBuffer.limit();
+				this.readAheadBuffer.limit(this.readAheadBuffer.position() + bytesToCopy);
+				dst.put(this.readAheadBuffer);
+				this.readAheadBuffer.limit(limit);
+			}
+
+			this.numberOfBytesRead += bytesToCopy;
+
+			return bytesToCopy;
+		}
+
+		if (!dst.hasRemaining()) {
+			return 0;
+		}
+
+		this.readAheadBuffer.clear();
+		this.scatteringBuffers[0] = dst;
+		final long bytesRead;
+		try {
+			bytesRead = this.scatteringByteChannel.read(this.scatteringBuffers);
+		} finally {
+			this.scatteringBuffers[0] = null;
+			this.readAheadBuffer.flip();
+		}
+
+		if (bytesRead < 0) {
+			return -1;
+		}
+
+		// The destination buffer is filled first, so everything beyond the read-ahead data belongs to it
+		final int bytesReadIntoDestination = (int) (bytesRead - this.readAheadBuffer.remaining());
+		this.numberOfBytesRead += bytesReadIntoDestination;
+
+		return bytesReadIntoDestination;
+	}
+
+	/**
+	 * Checks whether the read-ahead buffer holds data which has not been consumed yet.
+	 *
+	 * @return <code>true</code> if there is buffered data left, <code>false</code> otherwise
+	 */
+	boolean hasBufferedData() {
+
+		return this.readAheadBuffer.hasRemaining();
+	}
+
+	/**
+	 * Returns the number of bytes handed out by this channel since its creation.
+	 *
+	 * @return the number of bytes handed out by this channel
+	 */
+	long getNumberOfBytesRead() {
+
+		return this.numberOfBytesRead;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isOpen() {
+
+		return this.scatteringByteChannel.isOpen();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() throws IOException {
+
+		this.readAheadBuffer.limit(0);
+		this.scatteringByteChannel.close();
+	}
+}
@@ -571,6 +571,31 @@ public final class DefaultRoutingService implements RoutingService, BufferProvid
 		processEnvelope(transferEnvelope, freeSourceBuffer);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double getSendRate(final ChannelID sourceChannelID) {
+
+		// Do not trigger a lookup here, the receivers are known as soon as the channel has sent its first envelope
+		final ReceiverList receiverList = this.receiverCache.get(sourceChannelID);
+		if (receiverList == null || !receiverList.hasRemoteReceivers()) {
+			return -1.0;
+		}
+
+		double sendRate = -1.0;
+		final Iterator<RemoteReceiver> it = receiverList.getRemoteReceivers().iterator();
+		while (it.hasNext()) {
+
+			final double rate = this.networkService.getSendRate(it.next());
+			if (rate >= 0.0 && (sendRate < 0.0 || rate < sendRate)) {
+				sendRate = rate;
+			}
+		}
+
+		return sendRate;
+	}
+
 	/**
 	 * Triggers the routing service write the current utilization of its read and write buffers to the logs.
 	 * This method is primarily for debugging purposes.
@@ -579,7 +604,9 @@ public final class DefaultRoutingService implements RoutingService, BufferProvid
 
 		System.out.println("Buffer utilization at " + System.currentTimeMillis());
 
-		System.out.println("\tUnused global buffers: " + GlobalBufferPool.getInstance().getCurrentNumberOfBuffers());
+		final GlobalBufferPool globalBufferPool = GlobalBufferPool.getInstance();
+		System.out.println("\tUnused global buffers: " + globalBufferPool.getCurrentNumberOfBuffers() + ", "
+			+ globalBufferPool.getNumberOfFailedRequests() + " failed requests");
 
 		System.out.println("\tLocal buffer pool status:");
 
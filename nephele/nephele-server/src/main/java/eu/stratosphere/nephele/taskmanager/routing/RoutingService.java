@@ -2,6 +2,7 @@ package eu.stratosphere.nephele.taskmanager.routing;
 
 import java.io.IOException;
 
+import eu.stratosphere.nephele.io.channels.ChannelID;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
 
 public interface RoutingService {
@@ -47,4 +48,15 @@ public interface RoutingService {
 	 */
 	void routeEnvelopeFromNetwork(final TransferEnvelope transferEnvelope, boolean freeSourceBuffer)
 			throws IOException, InterruptedException;
+
+	/**
+	 * Returns the rate at which the network transmits the data produced by the output channel with the given ID. If
+	 * the channel has several remote receivers, the rate of the slowest connection is returned.
+	 * 
+	 * @param sourceChannelID
+	 *        the ID of the output channel
+	 * @return the send rate in bytes per second or a negative value if the rate is unknown or the channel has no
+	 *         remote receivers
+	 */
+	double getSendRate(ChannelID sourceChannelID);
 }
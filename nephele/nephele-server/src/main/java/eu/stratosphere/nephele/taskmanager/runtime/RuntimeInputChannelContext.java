@@ -24,6 +24,7 @@ import java.util.Queue;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import eu.stratosphere.nephele.checkpointing.CheckpointCostProfile;
 import eu.stratosphere.nephele.event.task.AbstractEvent;
 import eu.stratosphere.nephele.io.channels.AbstractInputChannel;
 import eu.stratosphere.nephele.io.channels.Buffer;
@@ -56,6 +57,8 @@ final class RuntimeInputChannelContext implements InputChannelContext, ByteBuffe
 
 	private final EnvelopeConsumptionLog envelopeConsumptionLog;
 
+	private final CheckpointCostProfile costProfile;
+
 	private final boolean isReexecuted;
 
 	private int lastReceivedEnvelope = -1;
@@ -63,13 +66,15 @@ final class RuntimeInputChannelContext implements InputChannelContext, ByteBuffe
 	private boolean destroyCalled = false;
 
 	RuntimeInputChannelContext(final RuntimeInputGateContext inputGateContext, final RoutingService routingService,
-			final AbstractInputChannel<?> inputChannel, final EnvelopeConsumptionLog envelopeConsumptionLog) {
+			final AbstractInputChannel<?> inputChannel, final EnvelopeConsumptionLog envelopeConsumptionLog,
+			final CheckpointCostProfile costProfile) {
 
 		this.inputGateContext = inputGateContext;
 		this.routingService = routingService;
 		this.inputChannel = inputChannel;
 		this.inputChannel.setInputChannelBroker(this);
 		this.envelopeConsumptionLog = envelopeConsumptionLog;
+		this.costProfile = costProfile;
 		this.isReexecuted = (envelopeConsumptionLog.getNumberOfInitialLogEntries() > 0L);
 	}
 
@@ -155,6 +160,11 @@ final class RuntimeInputChannelContext implements InputChannelContext, ByteBuffe
 			LOG.warn("ConsumedReadBuffer has " + buffer.remaining() + " unconsumed bytes left (early end of reading?).");
 		}
 
+		// Report the consumed input to the checkpoint decision
+		if (this.costProfile != null) {
+			this.costProfile.reportConsumedBytes(buffer.size());
+		}
+
 		// Recycle consumed read buffer
 		buffer.recycleBuffer();
 	}
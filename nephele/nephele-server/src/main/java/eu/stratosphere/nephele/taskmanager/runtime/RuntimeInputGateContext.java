@@ -17,6 +17,7 @@ package eu.stratosphere.nephele.taskmanager.runtime;
 
 import java.io.IOException;
 
+import eu.stratosphere.nephele.checkpointing.CheckpointCostProfile;
 import eu.stratosphere.nephele.io.GateID;
 import eu.stratosphere.nephele.io.RuntimeInputGate;
 import eu.stratosphere.nephele.io.channels.AbstractInputChannel;
@@ -51,10 +52,13 @@ final class RuntimeInputGateContext implements BufferProvider, InputGateContext,
 
 	private final FileBufferManager fileBufferManager;
 
+	private final CheckpointCostProfile costProfile;
+
 	private Decompressor decompressor = null;
 
 	RuntimeInputGateContext(final String taskName, final RoutingService routingService,
-			final RuntimeInputGate<? extends Record> inputGate, final EnvelopeConsumptionLog envelopeConsumptionLog) {
+			final RuntimeInputGate<? extends Record> inputGate, final EnvelopeConsumptionLog envelopeConsumptionLog,
+			final CheckpointCostProfile costProfile) {
 
 		this.taskName = taskName;
 		this.localBufferPool = new LocalBufferPool(1, false);
@@ -64,6 +68,7 @@ final class RuntimeInputGateContext implements BufferProvider, InputGateContext,
 		this.envelopeConsumptionLog = envelopeConsumptionLog;
 
 		this.fileBufferManager = FileBufferManager.getInstance();
+		this.costProfile = costProfile;
 	}
 
 	/**
@@ -157,10 +162,11 @@ final class RuntimeInputGateContext implements BufferProvider, InputGateContext,
 		final int ava = this.localBufferPool.getNumberOfAvailableBuffers();
 		final int req = this.localBufferPool.getRequestedNumberOfBuffers();
 		final int des = this.localBufferPool.getDesignatedNumberOfBuffers();
+		final long wai = this.localBufferPool.getNumberOfBlockingWaits();
 
 		System.out
 			.println("\t\tInput gate " + this.inputGate.getIndex() + " of " + this.taskName + ": " + ava
-				+ " available, " + req + " requested, " + des + " designated");
+				+ " available, " + req + " requested, " + des + " designated, " + wai + " blocking waits");
 	}
 
 	/**
@@ -198,7 +204,7 @@ final class RuntimeInputGateContext implements BufferProvider, InputGateContext,
 		}
 
 		return new RuntimeInputChannelContext(this, this.routingService,
-			(AbstractInputChannel<? extends Record>) channel, this.envelopeConsumptionLog);
+			(AbstractInputChannel<? extends Record>) channel, this.envelopeConsumptionLog, this.costProfile);
 	}
 
 	/**
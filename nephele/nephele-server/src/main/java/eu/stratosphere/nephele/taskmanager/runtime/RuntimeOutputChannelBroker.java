@@ -232,6 +232,6 @@ final class RuntimeOutputChannelBroker extends AbstractOutputChannelForwarder im
 	public Compressor getCompressor() throws CompressionException {
 
 		// Delegate call to the gate context
-		return this.outputGateContext.getCompressor();
+		return this.outputGateContext.getCompressor(this.outputChannel.getID());
 	}
 }
@@ -29,12 +29,15 @@ import eu.stratosphere.nephele.io.channels.ChannelType;
 import eu.stratosphere.nephele.io.compression.CompressionException;
 import eu.stratosphere.nephele.io.compression.CompressionLoader;
 import eu.stratosphere.nephele.io.compression.Compressor;
+import eu.stratosphere.nephele.io.compression.library.dynamic.DynamicCompressor;
+import eu.stratosphere.nephele.io.compression.library.dynamic.SendRateProvider;
 import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferAvailabilityListener;
 import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferProvider;
 import eu.stratosphere.nephele.taskmanager.routing.AbstractOutputChannelForwarder;
 import eu.stratosphere.nephele.taskmanager.routing.OutputChannelContext;
 import eu.stratosphere.nephele.taskmanager.routing.OutputChannelForwardingChain;
 import eu.stratosphere.nephele.taskmanager.routing.OutputGateContext;
+import eu.stratosphere.nephele.taskmanager.routing.RoutingService;
 import eu.stratosphere.nephele.types.Record;
 
 final class RuntimeOutputGateContext implements BufferProvider, OutputGateContext {
@@ -209,14 +212,17 @@ final class RuntimeOutputGateContext implements BufferProvider, OutputGateContex
 	}
 
 	/**
-	 * Returns (and if necessary previously creates) the compressor to be used by the attached output channels.
+	 * Returns (and if necessary previously creates) the compressor to be used by the given output channel. In case of
+	 * dynamic compression, each channel receives its own compressor which bases its decisions on the send rate of the
+	 * channel, while the underlying compressors are shared among the attached output channels.
 	 * 
-	 * @return the compressor to be used by the attached output channels or <code>null</code> if no compression shall be
-	 *         applied
+	 * @param outputChannelID
+	 *        the ID of the output channel requesting the compressor
+	 * @return the compressor to be used by the output channel or <code>null</code> if no compression shall be applied
 	 * @throws CompressionException
 	 *         thrown if an error occurs while creating the compressor
 	 */
-	Compressor getCompressor() throws CompressionException {
+	Compressor getCompressor(final ChannelID outputChannelID) throws CompressionException {
 
 		if (this.compressor == null) {
 			this.compressor = CompressionLoader.getCompressorByCompressionLevel(this.outputGate.getCompressionLevel(),
@@ -225,6 +231,18 @@ final class RuntimeOutputGateContext implements BufferProvider, OutputGateContex
 			this.compressor.increaseChannelCounter();
 		}
 
+		if (this.compressor instanceof DynamicCompressor) {
+
+			final RoutingService routingService = this.taskContext.getRoutingService();
+			return ((DynamicCompressor) this.compressor).createChannelCompressor(new SendRateProvider() {
+
+				@Override
+				public double getSendRate() {
+					return routingService.getSendRate(outputChannelID);
+				}
+			});
+		}
+
 		return this.compressor;
 	}
 }
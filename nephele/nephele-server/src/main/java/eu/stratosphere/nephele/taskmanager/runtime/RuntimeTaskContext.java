@@ -17,9 +17,7 @@ package eu.stratosphere.nephele.taskmanager.runtime;
 
 import java.io.IOException;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-
+import eu.stratosphere.nephele.checkpointing.CheckpointCostProfile;
 import eu.stratosphere.nephele.checkpointing.EphemeralCheckpoint;
 import eu.stratosphere.nephele.execution.RuntimeEnvironment;
 import eu.stratosphere.nephele.executiongraph.CheckpointState;
@@ -41,8 +39,6 @@ import eu.stratosphere.nephele.types.Record;
 
 public final class RuntimeTaskContext implements BufferProvider, AsynchronousEventListener, TaskContext {
 
-	private static final Log LOG = LogFactory.getLog(RuntimeTaskContext.class);
-
 	private final LocalBufferPool localBufferPool;
 
 	private final RuntimeTask task;
@@ -176,11 +172,12 @@ public final class RuntimeTaskContext implements BufferProvider, AsynchronousEve
 		final int ava = this.localBufferPool.getNumberOfAvailableBuffers();
 		final int req = this.localBufferPool.getRequestedNumberOfBuffers();
 		final int des = this.localBufferPool.getDesignatedNumberOfBuffers();
+		final long wai = this.localBufferPool.getNumberOfBlockingWaits();
 
 		final RuntimeEnvironment environment = this.task.getRuntimeEnvironment();
 
 		System.out.println("\t\t" + environment.getTaskNameWithIndex() + ": " + ava + " available, " + req
-			+ " requested, " + des + " designated");
+			+ " requested, " + des + " designated, " + wai + " blocking waits");
 
 		if (this.envelopeConsumptionLog.followsLog()) {
 			this.envelopeConsumptionLog.showOustandingEnvelopeLog();
@@ -200,10 +197,8 @@ public final class RuntimeTaskContext implements BufferProvider, AsynchronousEve
 			return;
 		}
 
-		// TODO: Remove this and implement decision logic for ephemeral checkpoint
-		LOG.error("Checkpoint state of " + this.task.getRuntimeEnvironment().getTaskNameWithIndex() + " is UNDECIDED");
-		this.ephemeralCheckpoint.setCheckpointDecisionSynchronously(false);
-
+		// The queued data must either be written or discarded to free the memory buffers
+		this.ephemeralCheckpoint.makeCheckpointDecision();
 	}
 
 	/**
@@ -299,8 +294,14 @@ public final class RuntimeTaskContext implements BufferProvider, AsynchronousEve
 			throw new IllegalStateException("Cannot find input gate with ID " + gateID);
 		}
 
+		// Only an undecided checkpoint needs to know about the consumed input
+		CheckpointCostProfile costProfile = null;
+		if (this.ephemeralCheckpoint != null && this.ephemeralCheckpoint.isUndecided()) {
+			costProfile = this.ephemeralCheckpoint.getCostProfile();
+		}
+
 		return new RuntimeInputGateContext(re.getTaskNameWithIndex(), this.routingService, inputGate,
-			this.envelopeConsumptionLog);
+			this.envelopeConsumptionLog, costProfile);
 	}
 
 	public LocalBufferPool getLocalBufferPool() {
@@ -13,13 +13,14 @@
  *
  **********************************************************************************************************************/
 
+
 package eu.stratosphere.nephele.taskmanager.transferenvelope;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
-import java.util.ArrayList;
 import java.util.List;
 
 import eu.stratosphere.nephele.event.task.AbstractEvent;
@@ -27,36 +28,52 @@ import eu.stratosphere.nephele.io.channels.Buffer;
 import eu.stratosphere.nephele.io.channels.ChannelID;
 import eu.stratosphere.nephele.jobgraph.JobID;
 
+/**
+ * An abstract deserializer reconstructs {@link TransferEnvelope} objects from a byte stream written by an
+ * {@link AbstractSerializer}. The envelope's header is decoded as described in {@link EnvelopeHeaderCodec}, the buffer
+ * data is read by the concrete implementations.
+ * <p>
+ * The channel handles are defined within the byte stream, so a deserializer must read the stream from its beginning.
+ */
 public abstract class AbstractDeserializer {
 
 	private enum DeserializationState {
 		NOTDESERIALIZED,
-		SEQUENCENUMBERDESERIALIZED,
-		JOBIDDESERIALIZED,
-		SOURCEDESERIALIZED,
-		NOTIFICATIONSDESERIALIZED,
+		LENGTHDESERIALIZED,
+		HEADERDESERIALIZED,
 		FULLYDESERIALIZED
 	};
 
 	private static final int SIZEOFINT = 4;
 
+	/**
+	 * The initial size of the header buffer in bytes.
+	 */
+	private static final int INITIAL_HEADER_BUFFER_SIZE = 128;
+
 	private TransferEnvelope transferEnvelope = null;
 
 	private DeserializationState deserializationState = DeserializationState.NOTDESERIALIZED;
 
-	private final ObjectDeserializer objectDeserializer = new ObjectDeserializer();
-
 	private final ByteBuffer tempBuffer = ByteBuffer.allocate(8); // TODO: Make this configurable
 
-	private boolean bufferExistanceDeserialized = false;
+	private final ByteBuffer lengthBuffer = ByteBuffer.allocate(SIZEOFINT);
 
-	private boolean eventListExistanceDeserialized = false;
+	private ByteBuffer headerBuffer = ByteBuffer.allocate(INITIAL_HEADER_BUFFER_SIZE);
 
-	private boolean sequenceNumberDeserializationStarted = false;
+	private final EnvelopeHeaderCodec headerCodec = new EnvelopeHeaderCodec();
 
-	private int sizeOfBuffer = -1;
+	/**
+	 * The job IDs of the channel handles defined so far, indexed by the channel handle.
+	 */
+	private final JobID[] handleJobIDs = new JobID[EnvelopeHeaderCodec.MAXIMUM_NUMBER_OF_CHANNEL_HANDLES];
+
+	/**
+	 * The source channel IDs of the channel handles defined so far, indexed by the channel handle.
+	 */
+	private final ChannelID[] handleSourceIDs = new ChannelID[EnvelopeHeaderCodec.MAXIMUM_NUMBER_OF_CHANNEL_HANDLES];
 
-	private int deserializedSequenceNumber = -1;
+	private int sizeOfBuffer = -1;
 
 	private Buffer buffer = null;
 
@@ -64,30 +81,20 @@ public abstract class AbstractDeserializer {
 
 	private ChannelID deserializedSourceID = null;
 
-	private List<AbstractEvent> deserializedEventList = null;
-
 	public void read(ReadableByteChannel readableByteChannel) throws IOException, NoBufferAvailableException {
 
 		while (true) {
 
-			// System.out.println("INCOMING State: " + this.deserializationState);
-
 			boolean waitingForMoreData = false;
 
-			switch (deserializationState) {
+			switch (this.deserializationState) {
 			case NOTDESERIALIZED:
-				waitingForMoreData = readSequenceNumber(readableByteChannel);
+				waitingForMoreData = readHeaderLength(readableByteChannel);
 				break;
-			case SEQUENCENUMBERDESERIALIZED:
-				waitingForMoreData = readID(readableByteChannel);
+			case LENGTHDESERIALIZED:
+				waitingForMoreData = readHeader(readableByteChannel);
 				break;
-			case JOBIDDESERIALIZED:
-				waitingForMoreData = readID(readableByteChannel);
-				break;
-			case SOURCEDESERIALIZED:
-				waitingForMoreData = readNotificationList(readableByteChannel);
-				break;
-			case NOTIFICATIONSDESERIALIZED:
+			case HEADERDESERIALIZED:
 				waitingForMoreData = readBuffer(readableByteChannel);
 				break;
 			case FULLYDESERIALIZED:
@@ -97,7 +104,6 @@ public abstract class AbstractDeserializer {
 			if (waitingForMoreData) {
 				return;
 			}
-
 		}
 	}
 
@@ -121,104 +127,115 @@ public abstract class AbstractDeserializer {
 		return this.deserializedSourceID;
 	}
 
-	private boolean readSequenceNumber(ReadableByteChannel readableByteChannel) throws IOException {
+	private boolean readHeaderLength(final ReadableByteChannel readableByteChannel) throws IOException {
 
-		if (!this.sequenceNumberDeserializationStarted) {
-			this.tempBuffer.position(0);
-			this.tempBuffer.limit(SIZEOFINT);
-			this.sequenceNumberDeserializationStarted = true;
-		}
+		if (readableByteChannel.read(this.lengthBuffer) == -1) {
 
-		if (readableByteChannel.read(this.tempBuffer) == -1) {
-
-			if (this.tempBuffer.position() == 0) {
+			if (this.lengthBuffer.position() == 0) {
 				// Regular end of stream
 				throw new EOFException();
 			} else {
-				throw new IOException("Unexpected end of stream while deserializing the sequence number");
+				throw new IOException("Unexpected end of stream while deserializing the header length");
 			}
 		}
 
-		if (!this.tempBuffer.hasRemaining()) {
+		if (this.lengthBuffer.hasRemaining()) {
+			return true;
+		}
 
-			this.deserializedSequenceNumber = byteBufferToInteger(this.tempBuffer, 0);
-			if (this.deserializedSequenceNumber < 0) {
-				throw new IOException("Received invalid sequence number: " + this.deserializedSequenceNumber);
-			}
+		final int headerLength = this.lengthBuffer.getInt(0);
+		this.lengthBuffer.clear();
 
-			this.deserializationState = DeserializationState.SEQUENCENUMBERDESERIALIZED;
-			this.sequenceNumberDeserializationStarted = false;
-			this.transferEnvelope = null;
-			this.sizeOfBuffer = -1;
-			this.bufferExistanceDeserialized = false;
-			this.eventListExistanceDeserialized = false;
-			this.tempBuffer.clear();
-			this.buffer = null;
-			this.objectDeserializer.clear();
-			this.deserializedEventList = null;
-			return false;
+		if (headerLength < EnvelopeHeaderCodec.SIZE_OF_FIXED_PART - SIZEOFINT) {
+			throw new IOException("Received invalid header length: " + headerLength);
 		}
 
-		return true;
-	}
+		if (this.headerBuffer.capacity() < headerLength) {
+			this.headerBuffer = ByteBuffer.allocate(headerLength);
+		}
 
-	private boolean readID(final ReadableByteChannel readableByteChannel) throws IOException {
+		this.headerBuffer.clear();
+		this.headerBuffer.limit(headerLength);
 
-		if (this.deserializationState == DeserializationState.SEQUENCENUMBERDESERIALIZED) {
+		this.deserializationState = DeserializationState.LENGTHDESERIALIZED;
+		this.transferEnvelope = null;
+		this.sizeOfBuffer = -1;
+		this.buffer = null;
 
-			this.deserializedJobID = this.objectDeserializer.deserialize(readableByteChannel, JobID.class);
-			if (this.deserializedJobID == null) {
-				return true;
-			}
+		return false;
+	}
 
-			this.deserializationState = DeserializationState.JOBIDDESERIALIZED;
+	private boolean readHeader(final ReadableByteChannel readableByteChannel) throws IOException {
 
-		} else {
+		if (readableByteChannel.read(this.headerBuffer) == -1) {
+			throw new IOException("Unexpected end of stream while deserializing the envelope header");
+		}
 
-			this.deserializedSourceID = this.objectDeserializer.deserialize(readableByteChannel, ChannelID.class);
-			if (this.deserializedSourceID == null) {
-				return true;
-			}
+		if (this.headerBuffer.hasRemaining()) {
+			return true;
+		}
+
+		this.headerBuffer.flip();
 
-			this.deserializationState = DeserializationState.SOURCEDESERIALIZED;
+		try {
+			decodeHeader(this.headerBuffer);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Received truncated envelope header");
 		}
 
 		return false;
 	}
 
-	@SuppressWarnings("unchecked")
-	private boolean readNotificationList(ReadableByteChannel readableByteChannel) throws IOException {
+	private void decodeHeader(final ByteBuffer header) throws IOException {
 
-		if (!this.eventListExistanceDeserialized) {
-			this.tempBuffer.position(0);
-			this.tempBuffer.limit(1);
-			readableByteChannel.read(this.tempBuffer);
+		final int sequenceNumber = header.getInt();
+		if (sequenceNumber < 0) {
+			throw new IOException("Received invalid sequence number: " + sequenceNumber);
+		}
 
-			if (this.tempBuffer.hasRemaining()) {
-				return true;
-			}
+		final int flags = header.get();
 
-			this.eventListExistanceDeserialized = true;
-			final boolean eventListFollows = (this.tempBuffer.get(0) == (byte) 1);
-			this.tempBuffer.clear();
+		final int channelHandle = EnvelopeHeaderCodec.getVarInt(header);
+		if (channelHandle < 0 || channelHandle >= EnvelopeHeaderCodec.MAXIMUM_NUMBER_OF_CHANNEL_HANDLES) {
+			throw new IOException("Received invalid channel handle: " + channelHandle);
+		}
+
+		if ((flags & EnvelopeHeaderCodec.FLAG_HANDLE_DEFINITION) != 0) {
+			this.handleJobIDs[channelHandle] = JobID.fromByteBuffer(header);
+			this.handleSourceIDs[channelHandle] = ChannelID.fromByteBuffer(header);
+		}
+
+		this.deserializedJobID = this.handleJobIDs[channelHandle];
+		this.deserializedSourceID = this.handleSourceIDs[channelHandle];
+		if (this.deserializedJobID == null) {
+			throw new IOException("Received undefined channel handle: " + channelHandle);
+		}
 
-			if (!eventListFollows) {
-				// No event list here
-				this.transferEnvelope = new TransferEnvelope(this.deserializedSequenceNumber, this.deserializedJobID,
-					this.deserializedSourceID, this.deserializedEventList);
-				this.deserializationState = DeserializationState.NOTIFICATIONSDESERIALIZED;
-				return false;
+		if ((flags & EnvelopeHeaderCodec.FLAG_BUFFER) != 0) {
+			this.sizeOfBuffer = header.getInt();
+			if (this.sizeOfBuffer <= 0) {
+				throw new IOException("Invalid buffer size: " + this.sizeOfBuffer);
 			}
 		}
 
-		this.deserializedEventList = this.objectDeserializer.deserialize(readableByteChannel, ArrayList.class);
-		if (this.deserializedEventList == null) {
-			return true;
+		List<AbstractEvent> eventList = null;
+		if ((flags & EnvelopeHeaderCodec.FLAG_EVENTS) != 0) {
+			eventList = this.headerCodec.decodeEventList(header);
+		}
+
+		if (header.hasRemaining()) {
+			throw new IOException("Received envelope header with " + header.remaining() + " unexpected bytes");
+		}
+
+		this.transferEnvelope = new TransferEnvelope(sequenceNumber, this.deserializedJobID,
+			this.deserializedSourceID, eventList);
+
+		if (this.sizeOfBuffer < 0) {
+			// No buffer will follow, we are done
+			this.transferEnvelope.setBuffer(null);
+			this.deserializationState = DeserializationState.FULLYDESERIALIZED;
 		} else {
-			this.transferEnvelope = new TransferEnvelope(this.deserializedSequenceNumber, this.deserializedJobID,
-				this.deserializedSourceID, this.deserializedEventList);
-			this.deserializationState = DeserializationState.NOTIFICATIONSDESERIALIZED;
-			return false;
+			this.deserializationState = DeserializationState.HEADERDESERIALIZED;
 		}
 	}
 
@@ -239,63 +256,6 @@ public abstract class AbstractDeserializer {
 	private boolean readBuffer(final ReadableByteChannel readableByteChannel) throws IOException,
 			NoBufferAvailableException {
 
-		if (!this.bufferExistanceDeserialized) {
-
-			this.tempBuffer.position(0);
-			this.tempBuffer.limit(1);
-
-			final int bytesRead = readableByteChannel.read(this.tempBuffer);
-			if (bytesRead == -1) {
-				if (this.tempBuffer.get(0) == 0 && this.tempBuffer.position() == 1) { // Regular end, no
-					// buffer will follow
-					throw new EOFException();
-				} else {
-					throw new IOException("Deserialization error: Expected at least "
-						+ this.tempBuffer.remaining() + " more bytes to follow");
-				}
-			} else if (bytesRead == 0) {
-				try {
-					Thread.sleep(50);
-				} catch (InterruptedException e) {
-				}
-			}
-
-			if (!this.tempBuffer.hasRemaining()) {
-				this.bufferExistanceDeserialized = true;
-				this.tempBuffer.position(0);
-				this.tempBuffer.limit(SIZEOFINT);
-				if (this.tempBuffer.get(0) == 0) {
-					// No buffer will follow, we are done
-					this.transferEnvelope.setBuffer(null);
-					this.deserializationState = DeserializationState.FULLYDESERIALIZED;
-					return false;
-				}
-			} else {
-				return true;
-			}
-		}
-
-		if (this.sizeOfBuffer < 0) {
-
-			// We need to deserialize the size of the buffer
-			final int bytesRead = readableByteChannel.read(this.tempBuffer);
-			if (bytesRead == -1) {
-				throw new IOException("Deserialization error: Expected at least " + this.tempBuffer.remaining()
-					+ " more bytes to follow");
-			}
-
-			if (!this.tempBuffer.hasRemaining()) {
-				this.sizeOfBuffer = byteBufferToInteger(this.tempBuffer, 0);
-				// System.out.println("INCOMING: Buffer size is " + this.sizeOfBuffer);
-
-				if (this.sizeOfBuffer <= 0) {
-					throw new IOException("Invalid buffer size: " + this.sizeOfBuffer);
-				}
-			} else {
-				return true;
-			}
-		}
-
 		if (readBufferData(readableByteChannel)) {
 			return true;
 		}
@@ -321,7 +281,7 @@ public abstract class AbstractDeserializer {
 
 	public void reset() {
 		this.deserializationState = DeserializationState.NOTDESERIALIZED;
-		this.sequenceNumberDeserializationStarted = false;
+		this.lengthBuffer.clear();
 	}
 
 	public boolean hasUnfinishedData() {
@@ -330,22 +290,6 @@ public abstract class AbstractDeserializer {
 			return true;
 		}
 
-		return this.objectDeserializer.hasUnfinishedData();
-	}
-
-	private int byteBufferToInteger(ByteBuffer byteBuffer, int offset) throws IOException {
-
-		int integer = 0;
-
-		if ((offset + SIZEOFINT) > byteBuffer.limit()) {
-			throw new IOException("Cannot convert byte buffer to integer, not enough data in byte buffer ("
-				+ byteBuffer.limit() + ")");
-		}
-
-		for (int i = 0; i < SIZEOFINT; ++i) {
-			integer |= (byteBuffer.get((offset + SIZEOFINT - 1) - i) & 0xff) << (i << 3);
-		}
-
-		return integer;
+		return (this.lengthBuffer.position() > 0);
 	}
 }
@@ -13,43 +13,57 @@
  *
  **********************************************************************************************************************/
 
+
 package eu.stratosphere.nephele.taskmanager.transferenvelope;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.WritableByteChannel;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import eu.stratosphere.nephele.event.task.AbstractEvent;
-import eu.stratosphere.nephele.io.AbstractID;
 import eu.stratosphere.nephele.io.channels.Buffer;
-
+import eu.stratosphere.nephele.io.channels.ChannelID;
+
+/**
+ * An abstract serializer transforms a {@link TransferEnvelope} into a byte stream. The envelope's header is encoded
+ * as described in {@link EnvelopeHeaderCodec}, the buffer data is written by the concrete implementations.
+ * <p>
+ * The serializer assigns a channel handle to each source channel it serializes envelopes for. As the handles are
+ * only defined within the byte stream, a deserializer must read the stream from its beginning. A serializer which is
+ * used for a new stream must therefore call {@link #resetChannelHandles()} first.
+ */
 public abstract class AbstractSerializer {
 
 	private enum SerializationState {
 		NOTSERIALIZED,
-		SEQUENCENUMBERSERIALIZED,
-		JOBIDSERIALIZED,
-		SOURCESERIALIZED,
-		NOTIFICATIONSSERIALIZED,
+		HEADERSERIALIZED,
 		FULLYSERIALIZED
 	};
 
-	private final static int SIZEOFINT = 4;
+	/**
+	 * The initial size of the header buffer in bytes.
+	 */
+	private static final int INITIAL_HEADER_BUFFER_SIZE = 128;
 
 	private TransferEnvelope transferEnvelope = null;
 
 	private SerializationState serializationState;
 
-	private final ObjectSerializer serializationBuffer = new ObjectSerializer();
-
 	private final ByteBuffer tempBuffer = ByteBuffer.allocate(64); // TODO: Make this configurable
 
-	private boolean serializationStarted = false;
+	private ByteBuffer headerBuffer = ByteBuffer.allocate(INITIAL_HEADER_BUFFER_SIZE);
+
+	private boolean headerEncoded = false;
 
-	private boolean bufferExistanceSerialized = false;
+	private final EnvelopeHeaderCodec headerCodec = new EnvelopeHeaderCodec();
 
-	private boolean eventListExistanceSerialized = false;
+	/**
+	 * The channel handles assigned so far, indexed by the source channel ID.
+	 */
+	private final Map<ChannelID, Integer> channelHandles = new HashMap<ChannelID, Integer>();
 
 	public final void setTransferEnvelope(TransferEnvelope transferEnvelope) {
 
@@ -57,11 +71,6 @@ public abstract class AbstractSerializer {
 		reset();
 	}
 
-	protected final ObjectSerializer getSerializationBuffer() {
-
-		return this.serializationBuffer;
-	}
-
 	protected final ByteBuffer getTempBuffer() {
 		return this.tempBuffer;
 	}
@@ -70,178 +79,125 @@ public abstract class AbstractSerializer {
 
 		while (true) {
 
-			boolean moreDataFollows = false;
-
-			// System.out.println("OUTGOING State: " + this.serializationState);
-
-			switch (serializationState) {
+			switch (this.serializationState) {
 			case NOTSERIALIZED:
-				moreDataFollows = writeSequenceNumber(writableByteChannel, this.transferEnvelope.getSequenceNumber());
-				break;
-			case SEQUENCENUMBERSERIALIZED:
-				moreDataFollows = writeID(writableByteChannel, this.transferEnvelope.getJobID());
-				break;
-			case JOBIDSERIALIZED:
-				moreDataFollows = writeID(writableByteChannel, this.transferEnvelope.getSource());
-				break;
-			case SOURCESERIALIZED:
-				moreDataFollows = writeNotification(writableByteChannel, this.transferEnvelope.getEventList());
+				if (writeHeader(writableByteChannel)) {
+					return true;
+				}
 				break;
-			case NOTIFICATIONSSERIALIZED:
-				moreDataFollows = writeBuffer(writableByteChannel, this.transferEnvelope.getBuffer());
+			case HEADERSERIALIZED:
+				if (writeBufferData(writableByteChannel, this.transferEnvelope.getBuffer())) {
+					return true;
+				}
+				this.serializationState = SerializationState.FULLYSERIALIZED;
 				break;
 			case FULLYSERIALIZED:
 				return false;
 			}
-
-			if (moreDataFollows) {
-				return true;
-			}
 		}
 	}
 
-	private boolean writeSequenceNumber(WritableByteChannel writableByteChannel, int sequenceNumber) throws IOException {
+	private boolean writeHeader(final WritableByteChannel writableByteChannel) throws IOException {
 
-		if (sequenceNumber < 0) {
-			throw new IOException("Invalid sequence number: " + sequenceNumber);
+		if (!this.headerEncoded) {
+			encodeHeader();
+			this.headerEncoded = true;
 		}
 
-		if (!this.serializationStarted) {
-			this.tempBuffer.clear();
-			integerToByteBuffer(sequenceNumber, 0, this.tempBuffer);
-			this.serializationStarted = true;
+		if (writableByteChannel.write(this.headerBuffer) == -1) {
+			throw new IOException("Unexpected end of stream while serializing the envelope header");
 		}
 
-		if (writableByteChannel.write(this.tempBuffer) == -1) {
-			throw new IOException("Unexpected end of stream while serializing the sequence number");
+		if (this.headerBuffer.hasRemaining()) {
+			return true;
 		}
 
-		if (!this.tempBuffer.hasRemaining()) {
-			this.serializationState = SerializationState.SEQUENCENUMBERSERIALIZED;
-			this.serializationStarted = false;
-			return false;
+		if (this.transferEnvelope.getBuffer() == null) {
+			this.serializationState = SerializationState.FULLYSERIALIZED;
+		} else {
+			this.serializationState = SerializationState.HEADERSERIALIZED;
 		}
 
-		return true;
+		return false;
 	}
 
-	private boolean writeID(WritableByteChannel writableByteChannel, AbstractID id) throws IOException {
+	private void encodeHeader() throws IOException {
 
-		if (!writeObject(writableByteChannel, id)) {
-			// We're done, all the data has been written to the channel
-			if (this.serializationState == SerializationState.SEQUENCENUMBERSERIALIZED) {
-				// System.out.println("OUTGOING Serialized source: " + channelID);
-				this.serializationState = SerializationState.JOBIDSERIALIZED;
-			} else {
-				// System.out.println("OUTGOING Serialized target: " + channelID);
-				this.serializationState = SerializationState.SOURCESERIALIZED;
-			}
-			return false;
+		final int sequenceNumber = this.transferEnvelope.getSequenceNumber();
+		if (sequenceNumber < 0) {
+			throw new IOException("Invalid sequence number: " + sequenceNumber);
 		}
 
-		return true;
-	}
+		final ChannelID source = this.transferEnvelope.getSource();
+		final List<AbstractEvent> eventList = this.transferEnvelope.getEventList();
+		final Buffer buffer = this.transferEnvelope.getBuffer();
 
-	private boolean writeObject(WritableByteChannel writableByteChannel, Object object) throws IOException {
+		int flags = 0;
 
-		if (!this.serializationStarted) {
-			this.serializationBuffer.clear();
-			this.serializationBuffer.serialize(object);
-			this.serializationStarted = true;
+		Integer channelHandle = this.channelHandles.get(source);
+		if (channelHandle == null) {
+			if (this.channelHandles.size() == EnvelopeHeaderCodec.MAXIMUM_NUMBER_OF_CHANNEL_HANDLES) {
+				// Start over, the receiver overwrites the handles with the new definitions
+				this.channelHandles.clear();
+			}
+			channelHandle = Integer.valueOf(this.channelHandles.size());
+			this.channelHandles.put(source, channelHandle);
+			flags |= EnvelopeHeaderCodec.FLAG_HANDLE_DEFINITION;
 		}
 
-		if (this.serializationBuffer.dataLeftFromPreviousSerialization()) {
-			this.serializationBuffer.read(writableByteChannel);
-		} else {
-			this.serializationStarted = false;
-			return false;
+		int sizeOfEventList = 0;
+		if (eventList != null) {
+			sizeOfEventList = this.headerCodec.encodeEventList(eventList);
+			flags |= EnvelopeHeaderCodec.FLAG_EVENTS;
 		}
 
-		return true;
-	}
+		if (buffer != null) {
+			flags |= EnvelopeHeaderCodec.FLAG_BUFFER;
+		}
 
-	private boolean writeNotification(WritableByteChannel writableByteChannel, List<AbstractEvent> notificationList)
-			throws IOException {
+		final int maximumSize = EnvelopeHeaderCodec.MAXIMUM_SIZE_WITHOUT_EVENTS + sizeOfEventList;
+		if (this.headerBuffer.capacity() < maximumSize) {
+			this.headerBuffer = ByteBuffer.allocate(maximumSize);
+		}
 
-		if (!this.eventListExistanceSerialized) {
-			this.tempBuffer.position(0);
-			if (notificationList == null) {
-				this.tempBuffer.put(0, (byte) 0);
-			} else {
-				this.tempBuffer.put(0, (byte) 1);
-			}
-			this.tempBuffer.limit(1);
+		final ByteBuffer header = this.headerBuffer;
+		header.clear();
+		header.position(4); // The length is written last
+		header.putInt(sequenceNumber);
+		header.put((byte) flags);
+		EnvelopeHeaderCodec.putVarInt(channelHandle.intValue(), header);
 
-			writableByteChannel.write(this.tempBuffer);
-			if (this.tempBuffer.hasRemaining()) {
-				return true;
-			}
+		if ((flags & EnvelopeHeaderCodec.FLAG_HANDLE_DEFINITION) != 0) {
+			this.transferEnvelope.getJobID().write(header);
+			source.write(header);
+		}
 
-			this.eventListExistanceSerialized = true;
+		if (buffer != null) {
+			header.putInt(buffer.size());
 		}
 
-		if (notificationList != null) {
-			if (writeObject(writableByteChannel, notificationList)) {
-				return true;
-			}
+		if (eventList != null) {
+			this.headerCodec.copyEncodedEventList(header);
 		}
 
-		this.serializationState = SerializationState.NOTIFICATIONSSERIALIZED;
-		return false;
+		header.flip();
+		header.putInt(0, header.limit() - 4);
 	}
 
+	/**
+	 * Resets the serialization state of the current transfer envelope.
+	 */
 	public void reset() {
 		this.serializationState = SerializationState.NOTSERIALIZED;
-		this.serializationBuffer.clear();
-		this.serializationStarted = false;
-		this.bufferExistanceSerialized = false;
-		this.eventListExistanceSerialized = false;
+		this.headerEncoded = false;
 	}
 
-	private boolean writeBuffer(WritableByteChannel writableByteChannel, Buffer buffer) throws IOException {
-
-		while (true) {
-
-			if (!this.bufferExistanceSerialized) {
-
-				if (!this.serializationStarted) {
-					this.tempBuffer.position(0);
-
-					if (buffer == null) {
-						this.tempBuffer.put(0, (byte) 0);
-						this.tempBuffer.limit(1);
-					} else {
-						this.tempBuffer.put(0, (byte) 1);
-						// System.out.println("OUTGOING: Buffer size is " + buffer.size());
-						integerToByteBuffer(buffer.size(), 1, this.tempBuffer);
-					}
-					this.serializationStarted = true;
-				}
-
-				if (this.tempBuffer.hasRemaining()) {
-					if (writableByteChannel.write(tempBuffer) == 0) {
-						return true;
-					}
-				} else {
-					this.bufferExistanceSerialized = true;
-					this.serializationStarted = false;
-					if (buffer == null) {
-						// That's it, we're done. No buffer will follow
-						this.serializationState = SerializationState.FULLYSERIALIZED;
-						return false;
-					}
-				}
-
-			} else {
-
-				if (!writeBufferData(writableByteChannel, buffer)) {
-					this.serializationState = SerializationState.FULLYSERIALIZED;
-					return false;
-				}
-
-				return true;
-			}
-		}
+	/**
+	 * Forgets all channel handles assigned so far, so the following envelopes define their channel handles again.
+	 * This method must be called before the serializer writes to a new byte stream.
+	 */
+	public void resetChannelHandles() {
+		this.channelHandles.clear();
 	}
 
 	/**
@@ -257,19 +213,4 @@ public abstract class AbstractSerializer {
 	 */
 	protected abstract boolean writeBufferData(WritableByteChannel writableByteChannel, Buffer buffer)
 			throws IOException;
-
-	private void integerToByteBuffer(int integerToSerialize, int offset, ByteBuffer byteBuffer) throws IOException {
-
-		if ((offset + SIZEOFINT) > byteBuffer.capacity()) {
-			throw new IOException("Cannot convert integer to byte buffer, buffer is too small (" + byteBuffer.limit()
-				+ ", required " + (offset + SIZEOFINT) + ")");
-		}
-
-		byteBuffer.limit(offset + SIZEOFINT);
-
-		for (int i = 0; i < SIZEOFINT; ++i) {
-			final int shift = i << 3; // i * 8
-			byteBuffer.put((offset + SIZEOFINT - 1) - i, (byte) ((integerToSerialize & (0xff << shift)) >>> shift));
-		}
-	}
 }
@@ -36,6 +36,8 @@ public final class CheckpointDeserializer extends AbstractDeserializer {
 
 	private boolean bufferDataSerializationStarted = false;
 
+	private boolean bufferCompressed = false;
+
 	public CheckpointDeserializer(final AbstractID ownerID, final boolean distributed) {
 		this.ownerID = ownerID;
 		this.fileBufferManager = FileBufferManager.getInstance();
@@ -61,9 +63,10 @@ public final class CheckpointDeserializer extends AbstractDeserializer {
 		}
 
 		final long offset = byteBufferToLong(tempBuffer);
+		this.bufferCompressed = ((offset & CheckpointSerializer.COMPRESSED_BUFFER_FLAG) != 0L);
 
-		final Buffer fileBuffer = BufferFactory.createFromCheckpoint(getSizeOfBuffer(), offset, this.ownerID,
-			this.fileBufferManager, this.distributed);
+		final Buffer fileBuffer = BufferFactory.createFromCheckpoint(getSizeOfBuffer(),
+			offset & ~CheckpointSerializer.COMPRESSED_BUFFER_FLAG, this.ownerID, this.fileBufferManager, this.distributed);
 
 		setBuffer(fileBuffer);
 
@@ -71,6 +74,17 @@ public final class CheckpointDeserializer extends AbstractDeserializer {
 		return false;
 	}
 
+	/**
+	 * Checks whether the data of the buffer deserialized last has been compressed before it was written to the
+	 * checkpoint.
+	 * 
+	 * @return <code>true</code> if the buffer's data is compressed, <code>false</code> otherwise
+	 */
+	public boolean isBufferCompressed() {
+
+		return this.bufferCompressed;
+	}
+
 	private long byteBufferToLong(final ByteBuffer byteBuffer) throws IOException {
 
 		long l = 0;
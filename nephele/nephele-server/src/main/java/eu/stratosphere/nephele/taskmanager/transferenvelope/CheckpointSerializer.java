@@ -34,8 +34,27 @@ public class CheckpointSerializer extends AbstractSerializer {
 
 	private static final int SIZE_OF_LONG = 8;
 
+	/**
+	 * The bit of the serialized buffer offset indicating that the buffer's data is compressed.
+	 */
+	static final long COMPRESSED_BUFFER_FLAG = 1L << 63;
+
 	private boolean bufferDataSerializationStarted = false;
 
+	private boolean bufferCompressed = false;
+
+	/**
+	 * Marks the data of the current transfer envelope's buffer as compressed. The mark is cleared when the next
+	 * transfer envelope is set.
+	 * 
+	 * @param bufferCompressed
+	 *        <code>true</code> if the buffer's data is compressed, <code>false</code> otherwise
+	 */
+	public void setBufferCompressed(final boolean bufferCompressed) {
+
+		this.bufferCompressed = bufferCompressed;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -62,7 +81,8 @@ public class CheckpointSerializer extends AbstractSerializer {
 			final FileBuffer fileBuffer = (FileBuffer) buffer;
 
 			tempBuffer.clear();
-			longToByteBuffer(fileBuffer.getOffset(), tempBuffer);
+			longToByteBuffer(this.bufferCompressed ? fileBuffer.getOffset() | COMPRESSED_BUFFER_FLAG : fileBuffer
+				.getOffset(), tempBuffer);
 
 			this.bufferDataSerializationStarted = true;
 		}
@@ -85,6 +105,7 @@ public class CheckpointSerializer extends AbstractSerializer {
 		super.reset();
 
 		this.bufferDataSerializationStarted = false;
+		this.bufferCompressed = false;
 	}
 
 	private void longToByteBuffer(long longToSerialize, ByteBuffer byteBuffer) throws IOException {
@@ -0,0 +1,235 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.transferenvelope;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import eu.stratosphere.nephele.event.task.AbstractEvent;
+import eu.stratosphere.nephele.io.AbstractID;
+import eu.stratosphere.nephele.io.channels.ChannelActivateEvent;
+import eu.stratosphere.nephele.io.channels.ChannelCloseEvent;
+import eu.stratosphere.nephele.io.compression.CompressionEvent;
+
+/**
+ * The envelope header codec contains the constants and helper methods shared by the {@link AbstractSerializer} and
+ * the {@link AbstractDeserializer} to encode the header of a {@link TransferEnvelope}. A header has the following
+ * layout:
+ * <ol>
+ * <li>the length of the remaining header in bytes (4 bytes)</li>
+ * <li>the sequence number (4 bytes)</li>
+ * <li>the flags, see the <code>FLAG_</code> constants (1 byte)</li>
+ * <li>the channel handle (variable length integer)</li>
+ * <li>the job ID and the source channel ID, if the header defines the channel handle (2 x 16 bytes)</li>
+ * <li>the size of the buffer, if a buffer follows (4 bytes)</li>
+ * <li>the event list, if the envelope carries events (variable length)</li>
+ * </ol>
+ * The channel handle replaces the job ID and the source channel ID, which are only transmitted along with the first
+ * envelope of a channel. The common events are encoded with a single type byte, only other events are serialized with
+ * kryo.
+ * <p>
+ * This class is not thread-safe.
+ */
+final class EnvelopeHeaderCodec {
+
+	/**
+	 * Flag indicating that a buffer follows the header.
+	 */
+	static final int FLAG_BUFFER = 0x01;
+
+	/**
+	 * Flag indicating that the header contains an event list.
+	 */
+	static final int FLAG_EVENTS = 0x02;
+
+	/**
+	 * Flag indicating that the header defines the channel handle.
+	 */
+	static final int FLAG_HANDLE_DEFINITION = 0x04;
+
+	/**
+	 * The maximum number of channel handles in use at the same time. When the sender runs out of handles, it starts
+	 * to redefine the existing ones.
+	 */
+	static final int MAXIMUM_NUMBER_OF_CHANNEL_HANDLES = 1024;
+
+	/**
+	 * The size of the fixed part of the header in bytes, i.e. the length, the sequence number and the flags.
+	 */
+	static final int SIZE_OF_FIXED_PART = 9;
+
+	/**
+	 * The maximum size of the header without the event list in bytes.
+	 */
+	static final int MAXIMUM_SIZE_WITHOUT_EVENTS = SIZE_OF_FIXED_PART + 5 + 2 * AbstractID.SIZE + 4;
+
+	private static final byte EVENT_TYPE_GENERIC = 0;
+
+	private static final byte EVENT_TYPE_CHANNEL_CLOSE = 1;
+
+	private static final byte EVENT_TYPE_CHANNEL_ACTIVATE = 2;
+
+	private static final byte EVENT_TYPE_COMPRESSION = 3;
+
+	/**
+	 * The initial size of the event output buffer in bytes.
+	 */
+	private static final int INITIAL_BUFFER_SIZE = 256;
+
+	private final Kryo kryo = new Kryo();
+
+	private final Output output = new Output(INITIAL_BUFFER_SIZE, -1);
+
+	private final Input input = new Input();
+
+	/**
+	 * Encodes the given event list into the codec's internal output buffer.
+	 *
+	 * @param eventList
+	 *        the event list to encode
+	 * @return the number of bytes of the encoded event list
+	 */
+	int encodeEventList(final List<AbstractEvent> eventList) {
+
+		this.output.clear();
+		this.output.writeVarInt(eventList.size(), true);
+
+		for (final AbstractEvent event : eventList) {
+
+			final Class<? extends AbstractEvent> type = event.getClass();
+			if (type == ChannelCloseEvent.class) {
+				this.output.writeByte(EVENT_TYPE_CHANNEL_CLOSE);
+			} else if (type == ChannelActivateEvent.class) {
+				this.output.writeByte(EVENT_TYPE_CHANNEL_ACTIVATE);
+			} else if (type == CompressionEvent.class) {
+				this.output.writeByte(EVENT_TYPE_COMPRESSION);
+				this.output.writeVarInt(((CompressionEvent) event).getCurrentInternalCompressionLibraryIndex(), true);
+			} else {
+				this.output.writeByte(EVENT_TYPE_GENERIC);
+				this.kryo.writeClassAndObject(this.output, event);
+			}
+		}
+
+		return this.output.position();
+	}
+
+	/**
+	 * Copies the event list encoded by the last call to {@link #encodeEventList(List)} into the given byte buffer.
+	 *
+	 * @param byteBuffer
+	 *        the byte buffer to copy the encoded event list to
+	 */
+	void copyEncodedEventList(final ByteBuffer byteBuffer) {
+
+		byteBuffer.put(this.output.getBuffer(), 0, this.output.position());
+	}
+
+	/**
+	 * Decodes an event list from the given byte buffer. The buffer must be backed by an array.
+	 *
+	 * @param byteBuffer
+	 *        the byte buffer to decode the event list from, its position is advanced by the decoded bytes
+	 * @return the decoded event list
+	 * @throws IOException
+	 *         thrown if the event list cannot be decoded
+	 */
+	List<AbstractEvent> decodeEventList(final ByteBuffer byteBuffer) throws IOException {
+
+		this.input.setBuffer(byteBuffer.array(), byteBuffer.arrayOffset() + byteBuffer.position(),
+			byteBuffer.remaining());
+
+		try {
+			final int numberOfEvents = this.input.readVarInt(true);
+			final List<AbstractEvent> eventList = new ArrayList<AbstractEvent>(numberOfEvents);
+
+			for (int i = 0; i < numberOfEvents; ++i) {
+
+				final byte type = this.input.readByte();
+				switch (type) {
+				case EVENT_TYPE_CHANNEL_CLOSE:
+					eventList.add(new ChannelCloseEvent());
+					break;
+				case EVENT_TYPE_CHANNEL_ACTIVATE:
+					eventList.add(new ChannelActivateEvent());
+					break;
+				case EVENT_TYPE_COMPRESSION:
+					eventList.add(new CompressionEvent(this.input.readVarInt(true)));
+					break;
+				case EVENT_TYPE_GENERIC:
+					eventList.add((AbstractEvent) this.kryo.readClassAndObject(this.input));
+					break;
+				default:
+					throw new IOException("Received event with unknown type " + type);
+				}
+			}
+
+			byteBuffer.position(this.input.position() - byteBuffer.arrayOffset());
+
+			return eventList;
+
+		} catch (KryoException e) {
+			throw new IOException("Cannot decode event list: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Writes the given non-negative integer with a variable length encoding of one to five bytes.
+	 *
+	 * @param value
+	 *        the integer to write
+	 * @param byteBuffer
+	 *        the byte buffer to write the integer to
+	 */
+	static void putVarInt(int value, final ByteBuffer byteBuffer) {
+
+		while ((value & ~0x7f) != 0) {
+			byteBuffer.put((byte) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+
+		byteBuffer.put((byte) value);
+	}
+
+	/**
+	 * Reads an integer written with {@link #putVarInt(int, ByteBuffer)}.
+	 *
+	 * @param byteBuffer
+	 *        the byte buffer to read the integer from
+	 * @return the integer
+	 * @throws IOException
+	 *         thrown if the integer is malformed
+	 */
+	static int getVarInt(final ByteBuffer byteBuffer) throws IOException {
+
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			final byte b = byteBuffer.get();
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+
+		throw new IOException("Malformed variable length integer");
+	}
+}
@@ -0,0 +1,74 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.checkpointing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * This class contains tests covering the cost model of the {@link CheckpointDecision} and the
+ * {@link CheckpointCostProfile}.
+ */
+public class CheckpointDecisionTest {
+
+	/**
+	 * The number of bytes per megabyte.
+	 */
+	private static final long MB = 1024L * 1024L;
+
+	/**
+	 * Tests that tasks which are expensive to recompute are checkpointed while tasks which are cheap to recompute are
+	 * not.
+	 */
+	@Test
+	public void testCostModel() {
+
+		// CPU-intensive task with a small output
+		assertTrue(CheckpointDecision.isCheckpointWorthwhile(10000L, 100L * MB, 1L * MB));
+
+		// Task which reduces its input considerably, e.g. an aggregation
+		assertTrue(CheckpointDecision.isCheckpointWorthwhile(0L, 1000L * MB, 10L * MB));
+
+		// Task which expands its input at almost no CPU cost
+		assertFalse(CheckpointDecision.isCheckpointWorthwhile(10L, 1L * MB, 1000L * MB));
+
+		// Task without output
+		assertTrue(CheckpointDecision.isCheckpointWorthwhile(0L, 0L, 0L));
+	}
+
+	/**
+	 * Tests that the cost profile accumulates the reported data.
+	 */
+	@Test
+	public void testCostProfile() {
+
+		final CheckpointCostProfile profile = new CheckpointCostProfile();
+
+		profile.reportConsumedBytes(1024);
+		profile.reportConsumedBytes(2048);
+		profile.reportProducedBytes(512);
+
+		assertEquals(3072L, profile.getConsumedBytes());
+		assertEquals(512L, profile.getProducedBytes());
+
+		assertTrue(profile.getCPUTime(Thread.currentThread()) >= 0L);
+		assertTrue(profile.getCPUTime(null) >= 0L);
+	}
+}
@@ -0,0 +1,223 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.checkpointing;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
+import eu.stratosphere.nephele.executiongraph.ExecutionVertexID;
+import eu.stratosphere.nephele.fs.Path;
+import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.io.channels.ChannelCloseEvent;
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.io.channels.FileBufferManager;
+import eu.stratosphere.nephele.jobgraph.JobID;
+import eu.stratosphere.nephele.taskmanager.bufferprovider.LocalBufferPool;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.CheckpointDeserializer;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
+import eu.stratosphere.nephele.util.StringUtils;
+
+/**
+ * This class contains tests covering the {@link WriteThread} and the {@link CheckpointCompression}.
+ */
+public class WriteThreadTest {
+
+	/**
+	 * The number of envelopes written to the checkpoint.
+	 */
+	private static final int NUMBER_OF_ENVELOPES = 200;
+
+	/**
+	 * The number of memory buffers available to the producer, less than the number of envelopes, so the buffers must
+	 * be recycled by the write thread.
+	 */
+	private static final int NUMBER_OF_BUFFERS = 8;
+
+	/**
+	 * The batch size used in the tests, small enough to require several flushes per batch.
+	 */
+	private static final int BATCH_SIZE = 100 * 1024;
+
+	/**
+	 * The maximum time to wait for the write thread to finish in milliseconds.
+	 */
+	private static final long TIMEOUT = 60000L;
+
+	private final ExecutionVertexID vertexID = ExecutionVertexID.generate();
+
+	@After
+	public void cleanUp() {
+
+		CheckpointUtils.removeCheckpoint(this.vertexID);
+
+		final Configuration conf = new Configuration();
+		conf.setBoolean(CheckpointUtils.COMPRESSION_KEY, false);
+		conf.setInteger(CheckpointUtils.WRITE_BATCH_SIZE_KEY, CheckpointUtils.DEFAULT_WRITE_BATCH_SIZE);
+		GlobalConfiguration.includeConfiguration(conf);
+	}
+
+	/**
+	 * Writes envelopes to an uncompressed checkpoint and reads them back.
+	 */
+	@Test
+	public void testUncompressedCheckpoint() {
+
+		assertEquals(0, writeAndReadCheckpoint(false));
+	}
+
+	/**
+	 * Writes envelopes to a compressed checkpoint and reads them back.
+	 */
+	@Test
+	public void testCompressedCheckpoint() {
+
+		assertTrue(writeAndReadCheckpoint(true) > 0);
+	}
+
+	/**
+	 * Writes envelopes with random and repetitive data to a checkpoint, reads them back and compares the data.
+	 * 
+	 * @param compress
+	 *        <code>true</code> to enable the checkpoint compression, <code>false</code> otherwise
+	 * @return the number of compressed buffers read from the checkpoint
+	 */
+	private int writeAndReadCheckpoint(final boolean compress) {
+
+		final Configuration conf = new Configuration();
+		conf.setBoolean(CheckpointUtils.COMPRESSION_KEY, compress);
+		conf.setInteger(CheckpointUtils.WRITE_BATCH_SIZE_KEY, BATCH_SIZE);
+		GlobalConfiguration.includeConfiguration(conf);
+
+		final LocalBufferPool bufferPool = new LocalBufferPool(NUMBER_OF_BUFFERS, false);
+		final Random rnd = new Random(42L);
+		final JobID jobID = JobID.generate();
+		final ChannelID channelID = ChannelID.generate();
+		final List<byte[]> expectedData = new ArrayList<byte[]>();
+
+		int numberOfCompressedBuffers = 0;
+
+		try {
+			final WriteThread writeThread = new WriteThread(FileBufferManager.getInstance(), this.vertexID,
+				"test task", 1);
+			writeThread.start();
+
+			for (int i = 0; i < NUMBER_OF_ENVELOPES; ++i) {
+
+				final byte[] data = new byte[1 + rnd.nextInt(bufferPool.getMaximumBufferSize())];
+				if (rnd.nextBoolean()) {
+					rnd.nextBytes(data);
+				} else {
+					for (int j = 0; j < data.length; ++j) {
+						data[j] = (byte) (j % 7);
+					}
+				}
+				expectedData.add(data);
+
+				final Buffer buffer = bufferPool.requestEmptyBufferBlocking(data.length);
+				buffer.write(ByteBuffer.wrap(data));
+				buffer.finishWritePhase();
+
+				final TransferEnvelope transferEnvelope = new TransferEnvelope(i, jobID, channelID);
+				transferEnvelope.setBuffer(buffer);
+				writeThread.write(transferEnvelope);
+			}
+
+			final TransferEnvelope closeEnvelope = new TransferEnvelope(NUMBER_OF_ENVELOPES, jobID, channelID);
+			closeEnvelope.addEvent(new ChannelCloseEvent());
+			writeThread.write(closeEnvelope);
+
+			writeThread.join(TIMEOUT);
+			assertFalse(writeThread.isAlive());
+			assertFalse(writeThread.hasDataLeft());
+			assertTrue(CheckpointUtils.hasCompleteCheckpointAvailable(this.vertexID));
+
+			// Read the checkpoint back
+			final CheckpointDeserializer deserializer = new CheckpointDeserializer(this.vertexID, false);
+			final CheckpointCompression compression = new CheckpointCompression();
+			final FileChannel fileChannel = new FileInputStream(CheckpointUtils.getLocalCheckpointPath().toUri()
+				.getPath() + Path.SEPARATOR + CheckpointUtils.METADATA_PREFIX + "_" + this.vertexID + "_0")
+				.getChannel();
+
+			int numberOfEnvelopes = 0;
+			try {
+				while (true) {
+					deserializer.read(fileChannel);
+					final TransferEnvelope transferEnvelope = deserializer.getFullyDeserializedTransferEnvelope();
+					if (transferEnvelope == null) {
+						continue;
+					}
+
+					assertEquals(numberOfEnvelopes, transferEnvelope.getSequenceNumber());
+					assertEquals(channelID, transferEnvelope.getSource());
+
+					final Buffer buffer = transferEnvelope.getBuffer();
+					if (numberOfEnvelopes == NUMBER_OF_ENVELOPES) {
+						assertEquals(null, buffer);
+						assertTrue(transferEnvelope.getEventList().get(0) instanceof ChannelCloseEvent);
+					} else {
+						Buffer dataBuffer = buffer;
+						if (deserializer.isBufferCompressed()) {
+							++numberOfCompressedBuffers;
+							dataBuffer = compression.decompress(buffer, bufferPool);
+							buffer.recycleBuffer();
+						}
+
+						final byte[] data = new byte[dataBuffer.size()];
+						final ByteBuffer dst = ByteBuffer.wrap(data);
+						while (dst.hasRemaining()) {
+							assertTrue(dataBuffer.read(dst) >= 0);
+						}
+						dataBuffer.recycleBuffer();
+						assertArrayEquals(expectedData.get(numberOfEnvelopes), data);
+					}
+
+					++numberOfEnvelopes;
+				}
+			} catch (EOFException eof) {
+				// All envelopes have been read
+			} finally {
+				compression.destroy();
+				fileChannel.close();
+			}
+
+			assertEquals(NUMBER_OF_ENVELOPES + 1, numberOfEnvelopes);
+
+		} catch (Exception e) {
+			fail(StringUtils.stringifyException(e));
+		} finally {
+			bufferPool.destroy();
+		}
+
+		return numberOfCompressedBuffers;
+	}
+}
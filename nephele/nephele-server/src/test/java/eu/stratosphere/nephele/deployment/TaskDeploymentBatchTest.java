@@ -0,0 +1,185 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.deployment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.execution.librarycache.LibraryCacheManager;
+import eu.stratosphere.nephele.executiongraph.CheckpointState;
+import eu.stratosphere.nephele.executiongraph.ExecutionVertexID;
+import eu.stratosphere.nephele.io.library.FileLineReader;
+import eu.stratosphere.nephele.io.library.FileLineWriter;
+import eu.stratosphere.nephele.jobgraph.JobID;
+import eu.stratosphere.nephele.util.StringUtils;
+
+/**
+ * This class contains unit tests for the {@link TaskDeploymentBatch} class.
+ */
+public class TaskDeploymentBatchTest {
+
+	/**
+	 * The number of subtasks of each of the two simulated group vertices.
+	 */
+	private static final int NUMBER_OF_SUBTASKS = 250;
+
+	/**
+	 * Tests that the constructor rejects task lists which are empty or span several jobs.
+	 */
+	@Test
+	public void testConstructorWithInvalidArguments() {
+
+		final List<TaskDeploymentDescriptor> tasks = new ArrayList<TaskDeploymentDescriptor>();
+
+		try {
+			new TaskDeploymentBatch(tasks);
+			fail("Empty task list was not detected");
+		} catch (IllegalArgumentException e) {
+		}
+
+		tasks.addAll(createTasks(JobID.generate(), 1));
+		tasks.addAll(createTasks(JobID.generate(), 1));
+
+		try {
+			new TaskDeploymentBatch(tasks);
+			fail("Tasks of different jobs were not detected");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	/**
+	 * Tests the serialization/deserialization of the {@link TaskDeploymentBatch} class and checks that the batch is
+	 * considerably smaller than the individually serialized deployment descriptors.
+	 */
+	@Test
+	public void testSerialization() {
+
+		final JobID jobID = JobID.generate();
+		final List<TaskDeploymentDescriptor> tasks = createTasks(jobID, NUMBER_OF_SUBTASKS);
+
+		try {
+			LibraryCacheManager.register(jobID, new String[] {});
+		} catch (IOException ioe) {
+			fail(StringUtils.stringifyException(ioe));
+		}
+
+		try {
+			final Kryo kryo = new Kryo();
+			final Output output = new Output(1024, -1);
+			kryo.writeObject(output, new TaskDeploymentBatch(tasks));
+			final int batchSize = output.position();
+
+			final Input input = new Input(output.getBuffer(), 0, batchSize);
+			final TaskDeploymentBatch copy = kryo.readObject(input, TaskDeploymentBatch.class);
+
+			final Output individualOutput = new Output(1024, -1);
+			for (final TaskDeploymentDescriptor tdd : tasks) {
+				kryo.writeObject(individualOutput, tdd);
+			}
+
+			assertTrue(2 * batchSize < individualOutput.position());
+
+			assertEquals(jobID, copy.getJobID());
+			final List<TaskDeploymentDescriptor> copiedTasks = copy.getTaskDeploymentDescriptors();
+			assertEquals(tasks.size(), copiedTasks.size());
+
+			for (int i = 0; i < tasks.size(); ++i) {
+
+				final TaskDeploymentDescriptor orig = tasks.get(i);
+				final TaskDeploymentDescriptor tdd = copiedTasks.get(i);
+
+				assertEquals(orig.getJobID(), tdd.getJobID());
+				assertEquals(orig.getVertexID(), tdd.getVertexID());
+				assertEquals(orig.getTaskName(), tdd.getTaskName());
+				assertEquals(orig.getIndexInSubtaskGroup(), tdd.getIndexInSubtaskGroup());
+				assertEquals(orig.getCurrentNumberOfSubtasks(), tdd.getCurrentNumberOfSubtasks());
+				assertEquals(orig.getJobConfiguration(), tdd.getJobConfiguration());
+				assertEquals(orig.getTaskConfiguration(), tdd.getTaskConfiguration());
+				assertEquals(orig.getInitialCheckpointState(), tdd.getInitialCheckpointState());
+				assertEquals(orig.getInvokableClass(), tdd.getInvokableClass());
+				assertEquals(orig.getNumberOfOutputGateDescriptors(), tdd.getNumberOfOutputGateDescriptors());
+				assertEquals(orig.getNumberOfInputGateDescriptors(), tdd.getNumberOfInputGateDescriptors());
+				assertEquals(orig.hasAlreadyBeenDeployed(), tdd.hasAlreadyBeenDeployed());
+			}
+
+			// Each task must own its configurations
+			final TaskDeploymentDescriptor first = copiedTasks.get(0);
+			final TaskDeploymentDescriptor second = copiedTasks.get(1);
+			assertFalse(first.getJobConfiguration() == second.getJobConfiguration());
+			assertFalse(first.getTaskConfiguration() == second.getTaskConfiguration());
+
+			first.getTaskConfiguration().setString("modified", "true");
+			assertFalse(first.getTaskConfiguration().equals(second.getTaskConfiguration()));
+
+		} finally {
+			try {
+				LibraryCacheManager.unregister(jobID);
+			} catch (IOException ioe) {
+				fail(StringUtils.stringifyException(ioe));
+			}
+		}
+	}
+
+	/**
+	 * Creates the deployment descriptors of two group vertices with the given number of subtasks each.
+	 */
+	private static List<TaskDeploymentDescriptor> createTasks(final JobID jobID, final int numberOfSubtasks) {
+
+		final Configuration jobConfiguration = createConfiguration("job");
+		final Configuration producerConfiguration = createConfiguration("producer");
+		final Configuration consumerConfiguration = createConfiguration("consumer");
+
+		final List<TaskDeploymentDescriptor> tasks = new ArrayList<TaskDeploymentDescriptor>(2 * numberOfSubtasks);
+
+		for (int i = 0; i < numberOfSubtasks; ++i) {
+
+			tasks.add(new TaskDeploymentDescriptor(jobID, ExecutionVertexID.generate(), "Producer", i,
+				numberOfSubtasks, jobConfiguration, producerConfiguration, CheckpointState.UNDECIDED,
+				FileLineReader.class, new ArrayList<GateDeploymentDescriptor>(0),
+				new ArrayList<GateDeploymentDescriptor>(0), false));
+			tasks.add(new TaskDeploymentDescriptor(jobID, ExecutionVertexID.generate(), "Consumer", i,
+				numberOfSubtasks, jobConfiguration, consumerConfiguration, CheckpointState.NONE,
+				FileLineWriter.class, new ArrayList<GateDeploymentDescriptor>(0),
+				new ArrayList<GateDeploymentDescriptor>(0), true));
+		}
+
+		return tasks;
+	}
+
+	private static Configuration createConfiguration(final String prefix) {
+
+		final Configuration configuration = new Configuration();
+		for (int i = 0; i < 20; ++i) {
+			configuration.setString(prefix + ".key" + i, "value of configuration entry " + i);
+		}
+
+		return configuration;
+	}
+}
@@ -166,13 +166,20 @@ public abstract class AbstractDeSerializerTest {
 	protected void testSequenceOfTypes(final Iterator<SerializationTestType> sequence, final int bufferSize,
 			final boolean copyToFileBuffer) throws Exception {
 
+		testSequenceOfTypes(sequence, bufferSize, copyToFileBuffer, false);
+	}
+
+	protected void testSequenceOfTypes(final Iterator<SerializationTestType> sequence, final int bufferSize,
+			final boolean copyToFileBuffer, final boolean directMemory) throws Exception {
+
 		final FileBufferManager fbm = FileBufferManager.getInstance();
 		final ChannelID ownerID = ChannelID.generate();
 		final RecordSerializer<SerializationTestType> recordSerializer = createSerializer();
 		final RecordDeserializer<SerializationTestType> recordDeserializer = createDeserializer();
 
 		final ArrayDeque<SerializationTestType> elements = new ArrayDeque<SerializationTestType>(512);
-		final ByteBuffer byteBuffer = ByteBuffer.allocate(bufferSize);
+		final ByteBuffer byteBuffer = directMemory ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer
+			.allocate(bufferSize);
 		final TestBufferPoolConnector bufferPoolConnector = new TestBufferPoolConnector();
 		Buffer buffer = BufferFactory.createFromMemory(bufferSize, byteBuffer, bufferPoolConnector);
 
@@ -63,6 +63,18 @@ public class SpanningRecordDeSerializerTest extends AbstractDeSerializerTest
 		}
 	}
 
+	@Test
+	public void testRandomTypesWithDirectBuffers()
+	{
+		try {
+			// records are read straight from the memory of the direct buffers where possible
+			testSequenceOfTypes(new RandomTypeIterator(this.rnd, NUM_TYPES), 512 * 7, false, true);
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("Test encountered an unexpected exception.");
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
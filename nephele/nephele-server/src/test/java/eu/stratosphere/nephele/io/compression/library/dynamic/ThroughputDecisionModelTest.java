@@ -0,0 +1,138 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.io.compression.library.dynamic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * This class contains tests covering the {@link ThroughputDecisionModel}.
+ */
+public class ThroughputDecisionModelTest {
+
+	/**
+	 * The size of the simulated buffers in bytes.
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The number of buffers simulated in each test.
+	 */
+	private static final int NUMBER_OF_BUFFERS = 10000;
+
+	/**
+	 * The simulated compression ratios of the stub, the light, the medium and the heavy library.
+	 */
+	private static final double[] RATIOS = { 1.0, 0.5, 0.35, 0.25 };
+
+	/**
+	 * The simulated compression costs in nanoseconds per byte of the stub, the light, the medium and the heavy
+	 * library.
+	 */
+	private static final double[] COSTS = { 0.0, 4.0, 20.0, 100.0 };
+
+	/**
+	 * A send rate provider returning a fixed send rate.
+	 */
+	private static final class FixedSendRateProvider implements SendRateProvider {
+
+		private final double sendRate;
+
+		private FixedSendRateProvider(final double sendRate) {
+			this.sendRate = sendRate;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public double getSendRate() {
+
+			return this.sendRate;
+		}
+	}
+
+	/**
+	 * Tests that no compression is applied as long as the send rate is unknown.
+	 */
+	@Test
+	public void testUnknownSendRate() {
+
+		final int[] selections = simulate(new ThroughputDecisionModel(RATIOS.length, new FixedSendRateProvider(-1.0)));
+
+		assertEquals(NUMBER_OF_BUFFERS, selections[0]);
+	}
+
+	/**
+	 * Tests that a fast link is mostly served without compression.
+	 */
+	@Test
+	public void testFastLink() {
+
+		// 1 GB/s
+		final int[] selections = simulate(new ThroughputDecisionModel(RATIOS.length, new FixedSendRateProvider(1.0E9)));
+
+		assertTrue(selections[0] > NUMBER_OF_BUFFERS * 0.95);
+	}
+
+	/**
+	 * Tests that the light library is selected for a link which is only slightly slower than the light library.
+	 */
+	@Test
+	public void testMediumLink() {
+
+		// 100 MB/s
+		final int[] selections = simulate(new ThroughputDecisionModel(RATIOS.length, new FixedSendRateProvider(1.0E8)));
+
+		assertTrue(selections[1] > NUMBER_OF_BUFFERS * 0.95);
+	}
+
+	/**
+	 * Tests that the heavy library is selected for a very slow link.
+	 */
+	@Test
+	public void testSlowLink() {
+
+		// 1 MB/s
+		final int[] selections = simulate(new ThroughputDecisionModel(RATIOS.length, new FixedSendRateProvider(1.0E6)));
+
+		assertTrue(selections[3] > NUMBER_OF_BUFFERS * 0.95);
+	}
+
+	/**
+	 * Feeds the simulated compression results to the given decision model and counts its selections.
+	 * 
+	 * @param decisionModel
+	 *        the decision model to simulate
+	 * @return the number of buffers each library has been selected for
+	 */
+	private static int[] simulate(final DecisionModel decisionModel) {
+
+		final int[] selections = new int[RATIOS.length];
+		for (int i = 0; i < NUMBER_OF_BUFFERS; ++i) {
+
+			final int selection = decisionModel.getCompressionLevelForNextBuffer(BUFFER_SIZE, 1);
+			decisionModel.reportCompression(selection, BUFFER_SIZE, (int) (BUFFER_SIZE * RATIOS[selection]),
+				(long) (BUFFER_SIZE * COSTS[selection]));
+			++selections[selection];
+		}
+
+		return selections;
+	}
+}
@@ -0,0 +1,36 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.rpc;
+
+import java.io.IOException;
+import java.util.List;
+
+import eu.stratosphere.nephele.deployment.TaskDeploymentBatch;
+import eu.stratosphere.nephele.deployment.TaskDeploymentDescriptor;
+import eu.stratosphere.nephele.taskmanager.TaskSubmissionResult;
+
+/**
+ * The protocol offered by the simulated task managers of the {@link RPCTransportBenchmark}. It resembles the task
+ * submission of the task operation protocol.
+ */
+public interface DeploymentBenchmarkProtocol extends RPCProtocol {
+
+	List<TaskSubmissionResult> submitTasks(List<TaskDeploymentDescriptor> tasks) throws IOException,
+			InterruptedException;
+
+	List<TaskSubmissionResult> submitTaskBatch(TaskDeploymentBatch batch) throws IOException, InterruptedException;
+}
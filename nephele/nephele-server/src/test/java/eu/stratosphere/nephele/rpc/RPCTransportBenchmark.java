@@ -0,0 +1,320 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.rpc;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.deployment.ChannelDeploymentDescriptor;
+import eu.stratosphere.nephele.deployment.GateDeploymentDescriptor;
+import eu.stratosphere.nephele.deployment.TaskDeploymentBatch;
+import eu.stratosphere.nephele.deployment.TaskDeploymentDescriptor;
+import eu.stratosphere.nephele.execution.librarycache.LibraryCacheManager;
+import eu.stratosphere.nephele.executiongraph.CheckpointState;
+import eu.stratosphere.nephele.executiongraph.ExecutionVertexID;
+import eu.stratosphere.nephele.io.GateID;
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.io.channels.ChannelType;
+import eu.stratosphere.nephele.io.compression.CompressionLevel;
+import eu.stratosphere.nephele.io.library.FileLineReader;
+import eu.stratosphere.nephele.jobgraph.JobID;
+import eu.stratosphere.nephele.taskmanager.AbstractTaskResult;
+import eu.stratosphere.nephele.taskmanager.TaskSubmissionResult;
+
+/**
+ * Measures the latency of deploying large task graphs with the UDP and the TCP transport of the {@link RPCService}.
+ * The benchmark starts one RPC service per simulated task manager, splits the deployment descriptors of a task graph
+ * among them and submits the descriptors of all task managers concurrently, just like the job manager does. The task
+ * graphs consist of several stages whose tasks are connected to a fixed number of tasks of the following stage by
+ * network channels, so the largest graph contains stages with a parallelism of 1000. Each transport is measured with
+ * individually serialized descriptors and with {@link TaskDeploymentBatch} objects.
+ */
+public class RPCTransportBenchmark implements DeploymentBenchmarkProtocol {
+
+	private static final int[] NUMBER_OF_TASKS = { 1000, 2000, 4000 };
+
+	private static final int NUMBER_OF_STAGES = 4;
+
+	private static final int FAN_OUT = 32;
+
+	private static final int NUMBER_OF_TASK_MANAGERS = 8;
+
+	private static final int NUMBER_OF_CONFIGURATION_ENTRIES = 20;
+
+	private static final int BASE_PORT = 8200;
+
+	private static final int WARMUP_ROUNDS = 2;
+
+	private static final int MEASURED_ROUNDS = 5;
+
+	private final AtomicInteger numberOfDeployedTasks = new AtomicInteger(0);
+
+	@Test
+	public void testUDPTransport() throws Exception {
+
+		runBenchmark(RPCTransportType.UDP, false);
+	}
+
+	@Test
+	public void testTCPTransport() throws Exception {
+
+		runBenchmark(RPCTransportType.TCP, false);
+	}
+
+	@Test
+	public void testUDPTransportWithBatches() throws Exception {
+
+		runBenchmark(RPCTransportType.UDP, true);
+	}
+
+	@Test
+	public void testTCPTransportWithBatches() throws Exception {
+
+		runBenchmark(RPCTransportType.TCP, true);
+	}
+
+	private void runBenchmark(final RPCTransportType transportType, final boolean batched) throws Exception {
+
+		final List<Class<?>> types = ServerTypeUtils.getRPCTypesToRegister();
+		final RPCService[] taskManagers = new RPCService[NUMBER_OF_TASK_MANAGERS];
+		RPCService jobManager = null;
+
+		try {
+			for (int i = 0; i < NUMBER_OF_TASK_MANAGERS; ++i) {
+				taskManagers[i] = new RPCService(BASE_PORT + i, 4, types, transportType);
+				taskManagers[i].setProtocolCallbackHandler(DeploymentBenchmarkProtocol.class, this);
+			}
+
+			jobManager = new RPCService(-1, 1, types, transportType);
+			final DeploymentBenchmarkProtocol[] proxies = new DeploymentBenchmarkProtocol[NUMBER_OF_TASK_MANAGERS];
+			for (int i = 0; i < NUMBER_OF_TASK_MANAGERS; ++i) {
+				proxies[i] = jobManager.getProxy(new InetSocketAddress("localhost", BASE_PORT + i),
+					DeploymentBenchmarkProtocol.class);
+			}
+
+			for (final int numberOfTasks : NUMBER_OF_TASKS) {
+
+				final JobID jobID = JobID.generate();
+				LibraryCacheManager.register(jobID, new String[0]);
+
+				long total = 0L;
+				long min = Long.MAX_VALUE;
+				try {
+					final List<List<TaskDeploymentDescriptor>> deployment = createDeployment(jobID, numberOfTasks);
+
+					for (int i = 0; i < WARMUP_ROUNDS; ++i) {
+						deploy(proxies, deployment, numberOfTasks, batched);
+					}
+
+					for (int i = 0; i < MEASURED_ROUNDS; ++i) {
+						final long latency = deploy(proxies, deployment, numberOfTasks, batched);
+						total += latency;
+						min = Math.min(min, latency);
+					}
+				} finally {
+					LibraryCacheManager.unregister(jobID);
+				}
+
+				final String mode = batched ? " with batches" : "";
+				System.out.println(transportType + mode + ": deployed " + numberOfTasks + " tasks in "
+					+ (total / MEASURED_ROUNDS) + " ms on average, " + min + " ms at best");
+			}
+
+		} finally {
+			if (jobManager != null) {
+				jobManager.shutDown();
+			}
+			for (int i = 0; i < NUMBER_OF_TASK_MANAGERS; ++i) {
+				if (taskManagers[i] != null) {
+					taskManagers[i].shutDown();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Submits the given deployment descriptors to the task managers concurrently and returns the time it took until
+	 * all task managers have acknowledged their tasks.
+	 */
+	private long deploy(final DeploymentBenchmarkProtocol[] proxies, final List<List<TaskDeploymentDescriptor>> deployment,
+			final int numberOfTasks, final boolean batched) throws Exception {
+
+		this.numberOfDeployedTasks.set(0);
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		final Thread[] threads = new Thread[proxies.length];
+
+		final long start = System.currentTimeMillis();
+
+		for (int i = 0; i < proxies.length; ++i) {
+
+			final DeploymentBenchmarkProtocol proxy = proxies[i];
+			final List<TaskDeploymentDescriptor> tasks = deployment.get(i);
+			threads[i] = new Thread() {
+
+				@Override
+				public void run() {
+
+					try {
+						final List<TaskSubmissionResult> results;
+						if (batched) {
+							results = proxy.submitTaskBatch(new TaskDeploymentBatch(tasks));
+						} else {
+							results = proxy.submitTasks(tasks);
+						}
+						if (results.size() != tasks.size()) {
+							throw new IllegalStateException("Expected " + tasks.size() + " results but received "
+								+ results.size());
+						}
+					} catch (Throwable t) {
+						synchronized (errors) {
+							errors.add(t);
+						}
+					}
+				}
+			};
+			threads[i].start();
+		}
+
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		final long latency = System.currentTimeMillis() - start;
+
+		if (!errors.isEmpty()) {
+			throw new Exception(errors.get(0));
+		}
+		Assert.assertEquals(numberOfTasks, this.numberOfDeployedTasks.get());
+
+		return latency;
+	}
+
+	/**
+	 * Creates the deployment descriptors of a task graph with the given number of tasks and assigns them to the task
+	 * managers in a round-robin fashion.
+	 */
+	private static List<List<TaskDeploymentDescriptor>> createDeployment(final JobID jobID, final int numberOfTasks) {
+
+		final Configuration jobConfiguration = createConfiguration("job");
+		final int tasksPerStage = numberOfTasks / NUMBER_OF_STAGES;
+
+		// Create the channels between each stage and its successor
+		final List<List<List<ChannelDeploymentDescriptor>>> outputChannels = new ArrayList<List<List<ChannelDeploymentDescriptor>>>();
+		final List<List<List<ChannelDeploymentDescriptor>>> inputChannels = new ArrayList<List<List<ChannelDeploymentDescriptor>>>();
+		for (int stage = 0; stage < NUMBER_OF_STAGES; ++stage) {
+			outputChannels.add(createChannelLists(tasksPerStage));
+			inputChannels.add(createChannelLists(tasksPerStage));
+		}
+
+		for (int stage = 0; stage < NUMBER_OF_STAGES - 1; ++stage) {
+			for (int task = 0; task < tasksPerStage; ++task) {
+				for (int i = 0; i < FAN_OUT; ++i) {
+					final ChannelDeploymentDescriptor cdd = new ChannelDeploymentDescriptor(
+						ChannelID.generate(), ChannelID.generate());
+					outputChannels.get(stage).get(task).add(cdd);
+					inputChannels.get(stage + 1).get((task + i) % tasksPerStage).add(cdd);
+				}
+			}
+		}
+
+		final List<List<TaskDeploymentDescriptor>> deployment = new ArrayList<List<TaskDeploymentDescriptor>>();
+		for (int i = 0; i < NUMBER_OF_TASK_MANAGERS; ++i) {
+			deployment.add(new ArrayList<TaskDeploymentDescriptor>());
+		}
+
+		int taskManager = 0;
+		for (int stage = 0; stage < NUMBER_OF_STAGES; ++stage) {
+			for (int task = 0; task < tasksPerStage; ++task) {
+
+				final ArrayList<GateDeploymentDescriptor> outputGates = new ArrayList<GateDeploymentDescriptor>();
+				final List<ChannelDeploymentDescriptor> out = outputChannels.get(stage).get(task);
+				if (!out.isEmpty()) {
+					outputGates.add(new GateDeploymentDescriptor(GateID.generate(), ChannelType.NETWORK,
+						CompressionLevel.NO_COMPRESSION, true, out));
+				}
+
+				final ArrayList<GateDeploymentDescriptor> inputGates = new ArrayList<GateDeploymentDescriptor>();
+				final List<ChannelDeploymentDescriptor> in = inputChannels.get(stage).get(task);
+				if (!in.isEmpty()) {
+					inputGates.add(new GateDeploymentDescriptor(GateID.generate(), ChannelType.NETWORK,
+						CompressionLevel.NO_COMPRESSION, true, in));
+				}
+
+				final TaskDeploymentDescriptor tdd = new TaskDeploymentDescriptor(jobID, ExecutionVertexID.generate(),
+					"Stage " + stage, task, tasksPerStage, jobConfiguration, createConfiguration("task" + stage),
+					CheckpointState.NONE, FileLineReader.class, outputGates, inputGates, false);
+
+				deployment.get(taskManager).add(tdd);
+				taskManager = (taskManager + 1) % NUMBER_OF_TASK_MANAGERS;
+			}
+		}
+
+		return deployment;
+	}
+
+	private static List<List<ChannelDeploymentDescriptor>> createChannelLists(final int numberOfTasks) {
+
+		final List<List<ChannelDeploymentDescriptor>> lists = new ArrayList<List<ChannelDeploymentDescriptor>>(
+			numberOfTasks);
+		for (int i = 0; i < numberOfTasks; ++i) {
+			lists.add(new ArrayList<ChannelDeploymentDescriptor>());
+		}
+
+		return lists;
+	}
+
+	private static Configuration createConfiguration(final String prefix) {
+
+		final Configuration configuration = new Configuration();
+		for (int i = 0; i < NUMBER_OF_CONFIGURATION_ENTRIES; ++i) {
+			configuration.setString(prefix + ".key" + i, "value of configuration entry " + i);
+		}
+
+		return configuration;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<TaskSubmissionResult> submitTasks(final List<TaskDeploymentDescriptor> tasks) {
+
+		final List<TaskSubmissionResult> results = new ArrayList<TaskSubmissionResult>(tasks.size());
+		for (final TaskDeploymentDescriptor tdd : tasks) {
+			results.add(new TaskSubmissionResult(tdd.getVertexID(), AbstractTaskResult.ReturnCode.SUCCESS));
+		}
+
+		this.numberOfDeployedTasks.addAndGet(tasks.size());
+
+		return results;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<TaskSubmissionResult> submitTaskBatch(final TaskDeploymentBatch batch) {
+
+		return submitTasks(batch.getTaskDeploymentDescriptors());
+	}
+}
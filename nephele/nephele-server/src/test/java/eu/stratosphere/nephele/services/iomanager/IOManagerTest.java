@@ -190,6 +190,76 @@ public class IOManagerTest
 		}
 	}
 
+	@Test
+	public void channelReadWriteBundledSegments()
+	{
+		final int NUM_IOS = 1111;
+		final int NUM_SEGS = 16;
+		final int NUM_BUNDLED = 8;
+		
+		try {
+			final List<MemorySegment> memSegs = this.memoryManager.allocatePages(new DummyInvokable(), NUM_SEGS);
+			final int segmentSize = memSegs.get(0).size();
+			final Channel.ID channelID = this.ioManager.createChannel();
+			final BlockChannelWriter writer = this.ioManager.createBlockChannelWriter(channelID, NUM_BUNDLED);
+			
+			for (int i = 0; i < NUM_IOS; i++) {
+				final MemorySegment memSeg = memSegs.isEmpty() ? writer.getNextReturnedSegment() : memSegs.remove(0);
+				
+				for (int pos = 0; pos < memSeg.size(); pos += 4) {
+					memSeg.putInt(pos, i);
+				}
+				
+				writer.writeBlock(memSeg);
+			}
+			writer.close();
+			
+			// get back the memory
+			while (memSegs.size() < NUM_SEGS) {
+				memSegs.add(writer.getNextReturnedSegment());
+			}
+			
+			final IOStatistics writeStats = this.ioManager.getWriteStatistics()[channelID.getThreadNum()];
+			Assert.assertEquals(NUM_IOS, writeStats.getNumRequests());
+			Assert.assertEquals(((long) NUM_IOS) * segmentSize, writeStats.getNumBytes());
+			Assert.assertTrue(writeStats.getNumOperations() <= writeStats.getNumRequests());
+			
+			final BlockChannelReader reader = this.ioManager.createBlockChannelReader(channelID, NUM_BUNDLED);
+			while(!memSegs.isEmpty()) {
+				reader.readBlock(memSegs.remove(0));
+			}
+			
+			for (int i = 0; i < NUM_IOS; i++) {
+				final MemorySegment memSeg = reader.getNextReturnedSegment();
+				
+				for (int pos = 0; pos < memSeg.size(); pos += 4) {
+					if (memSeg.getInt(pos) != i) {
+						Assert.fail("Read memory segment contains invalid data.");
+					}
+				}
+				reader.readBlock(memSeg);
+			}
+			
+			reader.closeAndDelete();
+			
+			// get back the memory
+			while (memSegs.size() < NUM_SEGS) {
+				memSegs.add(reader.getNextReturnedSegment());
+			}
+			
+			final IOStatistics readStats = this.ioManager.getReadStatistics()[channelID.getThreadNum()];
+			Assert.assertEquals(NUM_IOS + NUM_SEGS, readStats.getNumRequests());
+			Assert.assertEquals(((long) NUM_IOS) * segmentSize, readStats.getNumBytes());
+			Assert.assertTrue(readStats.getNumOperations() <= readStats.getNumRequests());
+			
+			this.memoryManager.release(memSegs);
+			
+		} catch (Exception ex) {
+			ex.printStackTrace();
+			Assert.fail("TEst encountered an exception: " + ex.getMessage());
+		}
+	}
+
 	// ============================================================================================
 	
 	final class FailingSegmentReadRequest implements ReadRequest
@@ -20,6 +20,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Random;
 
 import junit.framework.Assert;
@@ -27,10 +29,14 @@ import junit.framework.Assert;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
 
 import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
 import eu.stratosphere.nephele.services.memorymanager.spi.DefaultMemoryManager;
 
+@RunWith(Parameterized.class)
 public class MemorySegmentTest {
 	
 	public static final long RANDOM_SEED = 643196033469871L;
@@ -44,11 +50,17 @@ public class MemorySegmentTest {
 	private MemorySegment segment;
 
 	private Random random;
+	
+	private final boolean offHeap;
+	
+	public MemorySegmentTest(boolean offHeap) {
+		this.offHeap = offHeap;
+	}
 
 	@Before
 	public void setUp() throws Exception{
 		try {
-			this.manager = new DefaultMemoryManager(MANAGED_MEMORY_SIZE, PAGE_SIZE);
+			this.manager = new DefaultMemoryManager(MANAGED_MEMORY_SIZE, PAGE_SIZE, this.offHeap);
 			this.segment = manager.allocatePages(new DefaultMemoryManagerTest.DummyInvokable(), 1).get(0);
 			this.random = new Random(RANDOM_SEED);
 		} catch (Exception e) {
@@ -70,6 +82,50 @@ public class MemorySegmentTest {
 		this.manager = null;
 	}
 
+	@Parameters
+	public static Collection<Object[]> getMemoryTypes() {
+		return Arrays.asList(new Object[][] { { false }, { true } });
+	}
+
+	@Test
+	public void offHeapFlag() {
+		assertEquals(this.offHeap, this.segment.isOffHeap());
+		assertEquals(this.offHeap, this.segment.getBackingArray() == null);
+	}
+
+	@Test
+	public void compareAndCopy() throws Exception {
+		final MemorySegment other = this.manager.allocatePages(new DefaultMemoryManagerTest.DummyInvokable(), 1).get(0);
+		try {
+			byte[] bytes = new byte[PAGE_SIZE / 2];
+			random.nextBytes(bytes);
+			
+			segment.put(0, bytes);
+			segment.copyTo(0, other, PAGE_SIZE / 2, bytes.length);
+			assertEquals(0, segment.compare(other, 0, PAGE_SIZE / 2, bytes.length));
+			
+			// make the other segment larger at a byte position with the highest bit set
+			other.put(PAGE_SIZE / 2 + 13, (byte) (bytes[13] == (byte) 0xff ? 0x00 : 0xff));
+			int expected = bytes[13] == (byte) 0xff ? 1 : -1;
+			assertEquals(expected, Integer.signum(segment.compare(other, 0, PAGE_SIZE / 2, bytes.length)));
+			assertEquals(-expected, Integer.signum(other.compare(segment, PAGE_SIZE / 2, 0, bytes.length)));
+			
+			// swap the regions back and forth
+			byte[] temp = new byte[64];
+			segment.swapBytes(temp, other, 0, PAGE_SIZE / 2, 64);
+			assertEquals(-expected, Integer.signum(segment.compare(other, 0, PAGE_SIZE / 2, 64)));
+			
+			try {
+				segment.copyTo(PAGE_SIZE - 8, other, 0, 9);
+				fail("IndexOutOfBoundsException expected");
+			} catch (Exception e) {
+				assertTrue(e instanceof IndexOutOfBoundsException);
+			}
+		} finally {
+			this.manager.release(other);
+		}
+	}
+
 	@Test
 	public void bulkByteAccess() {
 
@@ -0,0 +1,185 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.bufferprovider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.util.StringUtils;
+
+/**
+ * This class contains tests covering the {@link LocalBufferPool}.
+ */
+public class LocalBufferPoolTest {
+
+	/**
+	 * The size of the requested buffers.
+	 */
+	private static final int BUFFER_SIZE = 1024;
+
+	/**
+	 * The number of threads used in the concurrency test.
+	 */
+	private static final int NUMBER_OF_THREADS = 8;
+
+	/**
+	 * The number of buffers each thread requests and recycles in the concurrency test.
+	 */
+	private static final int NUMBER_OF_REQUESTS = 10000;
+
+	/**
+	 * Tests that the pool hands out at most the designated number of buffers and reuses recycled buffers.
+	 */
+	@Test
+	public void testDesignatedNumberOfBuffers() {
+
+		final LocalBufferPool pool = new LocalBufferPool(4, false);
+
+		try {
+			final List<Buffer> buffers = new ArrayList<Buffer>();
+			for (int i = 0; i < 4; ++i) {
+				final Buffer buffer = pool.requestEmptyBuffer(BUFFER_SIZE);
+				assertNotNull(buffer);
+				buffers.add(buffer);
+			}
+
+			assertNull(pool.requestEmptyBuffer(BUFFER_SIZE));
+			assertEquals(4, pool.getRequestedNumberOfBuffers());
+
+			buffers.remove(0).recycleBuffer();
+			assertEquals(1, pool.getNumberOfAvailableBuffers());
+			buffers.add(pool.requestEmptyBuffer(BUFFER_SIZE));
+			assertNotNull(buffers.get(3));
+			assertEquals(4, pool.getRequestedNumberOfBuffers());
+
+			// Shrinking the pool returns recycled buffers to the global pool
+			pool.setDesignatedNumberOfBuffers(2);
+			buffers.remove(0).recycleBuffer();
+			buffers.remove(0).recycleBuffer();
+			assertNull(pool.requestEmptyBuffer(BUFFER_SIZE));
+			assertEquals(2, pool.getRequestedNumberOfBuffers());
+
+			for (final Buffer buffer : buffers) {
+				buffer.recycleBuffer();
+			}
+		} catch (Exception e) {
+			fail(StringUtils.stringifyException(e));
+		} finally {
+			pool.destroy();
+		}
+
+		assertEquals(0, pool.getRequestedNumberOfBuffers());
+	}
+
+	/**
+	 * Tests that a registered buffer availability listener is notified when a buffer is recycled and that the
+	 * registration is refused while buffers are available.
+	 */
+	@Test
+	public void testBufferAvailabilityListener() {
+
+		final LocalBufferPool pool = new LocalBufferPool(1, false);
+		final AtomicInteger notifications = new AtomicInteger(0);
+		final BufferAvailabilityListener listener = new BufferAvailabilityListener() {
+
+			@Override
+			public void bufferAvailable() {
+				notifications.incrementAndGet();
+			}
+		};
+
+		try {
+			final Buffer buffer = pool.requestEmptyBuffer(BUFFER_SIZE);
+			assertNotNull(buffer);
+
+			assertTrue(pool.registerBufferAvailabilityListener(listener));
+			buffer.recycleBuffer();
+			assertEquals(1, notifications.get());
+
+			assertFalse(pool.registerBufferAvailabilityListener(listener));
+		} catch (Exception e) {
+			fail(StringUtils.stringifyException(e));
+		} finally {
+			pool.destroy();
+		}
+
+		assertFalse(pool.registerBufferAvailabilityListener(listener));
+	}
+
+	/**
+	 * Tests that concurrent blocking requests never exceed the designated number of buffers and are all served.
+	 */
+	@Test
+	public void testConcurrentRequests() {
+
+		final LocalBufferPool pool = new LocalBufferPool(2, false);
+		final AtomicInteger buffersInUse = new AtomicInteger(0);
+		final AtomicInteger violations = new AtomicInteger(0);
+		final List<Throwable> errors = new ArrayList<Throwable>();
+
+		final Thread[] threads = new Thread[NUMBER_OF_THREADS];
+		for (int i = 0; i < threads.length; ++i) {
+			threads[i] = new Thread() {
+
+				@Override
+				public void run() {
+
+					try {
+						for (int j = 0; j < NUMBER_OF_REQUESTS; ++j) {
+							final Buffer buffer = pool.requestEmptyBufferBlocking(BUFFER_SIZE);
+							if (buffersInUse.incrementAndGet() > 2) {
+								violations.incrementAndGet();
+							}
+							buffersInUse.decrementAndGet();
+							buffer.recycleBuffer();
+						}
+					} catch (Throwable t) {
+						synchronized (errors) {
+							errors.add(t);
+						}
+					}
+				}
+			};
+			threads[i].start();
+		}
+
+		try {
+			for (final Thread thread : threads) {
+				thread.join();
+			}
+		} catch (InterruptedException e) {
+			fail(StringUtils.stringifyException(e));
+		}
+
+		assertTrue(errors.isEmpty());
+		assertEquals(0, violations.get());
+		assertEquals(2, pool.getNumberOfAvailableBuffers());
+
+		pool.destroy();
+		assertEquals(0, pool.getRequestedNumberOfBuffers());
+	}
+}
@@ -0,0 +1,132 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.network;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.util.Random;
+
+import org.junit.Test;
+
+import eu.stratosphere.nephele.util.StringUtils;
+
+/**
+ * This class contains tests covering the {@link GatheringWriteChannel} and the {@link ReadAheadChannel}.
+ */
+public class GatheringWriteChannelTest {
+
+	/**
+	 * The number of chunks written in the round trip test.
+	 */
+	private static final int NUMBER_OF_CHUNKS = 2000;
+
+	/**
+	 * The maximum size of a chunk in bytes.
+	 */
+	private static final int MAXIMUM_CHUNK_SIZE = 4096;
+
+	/**
+	 * Writes chunks of random sizes, some of them referenced and some copied, through the gathering write channel and
+	 * a pipe and reads them back with the read-ahead channel.
+	 */
+	@Test
+	public void testRoundTrip() {
+
+		final Random rnd = new Random(42L);
+		final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		final ByteArrayOutputStream received = new ByteArrayOutputStream();
+
+		try {
+			final Pipe pipe = Pipe.open();
+			pipe.sink().configureBlocking(false);
+			pipe.source().configureBlocking(false);
+
+			final GatheringWriteChannel writeChannel = new GatheringWriteChannel();
+			final ReadAheadChannel readChannel = new ReadAheadChannel(pipe.source());
+
+			int numberOfGatheringWrites = 0;
+
+			for (int i = 0; i < NUMBER_OF_CHUNKS; ++i) {
+
+				final byte[] data = new byte[1 + rnd.nextInt(MAXIMUM_CHUNK_SIZE)];
+				rnd.nextBytes(data);
+				expected.write(data);
+
+				final ByteBuffer chunk = ByteBuffer.wrap(data);
+				writeChannel.setReferenceWrites(rnd.nextBoolean());
+
+				while (chunk.hasRemaining()) {
+					if (writeChannel.write(chunk) == 0) {
+						assertTrue(writeChannel.hasRemaining());
+						while (writeChannel.hasRemaining()) {
+							writeChannel.writeTo(pipe.sink());
+							++numberOfGatheringWrites;
+							drain(readChannel, received, rnd);
+						}
+					}
+				}
+			}
+
+			writeChannel.setReferenceWrites(false);
+			while (writeChannel.hasRemaining()) {
+				writeChannel.writeTo(pipe.sink());
+				++numberOfGatheringWrites;
+				drain(readChannel, received, rnd);
+			}
+
+			while (received.size() < expected.size()) {
+				drain(readChannel, received, rnd);
+			}
+
+			assertFalse(readChannel.hasBufferedData());
+			assertEquals(expected.size(), readChannel.getNumberOfBytesRead());
+			assertArrayEquals(expected.toByteArray(), received.toByteArray());
+			assertTrue(numberOfGatheringWrites < NUMBER_OF_CHUNKS);
+
+			pipe.sink().close();
+			assertEquals(-1, readChannel.read(ByteBuffer.allocate(1)));
+
+		} catch (IOException ioe) {
+			fail(StringUtils.stringifyException(ioe));
+		}
+	}
+
+	/**
+	 * Reads all data currently available from the read-ahead channel, using destination buffers of random sizes.
+	 */
+	private static void drain(final ReadAheadChannel readChannel, final ByteArrayOutputStream received,
+			final Random rnd) throws IOException {
+
+		while (true) {
+
+			final ByteBuffer dst = ByteBuffer.allocate(1 + rnd.nextInt(2 * MAXIMUM_CHUNK_SIZE));
+			final int bytesRead = readChannel.read(dst);
+			if (bytesRead <= 0) {
+				return;
+			}
+
+			received.write(dst.array(), 0, dst.position());
+		}
+	}
+}
@@ -306,19 +306,17 @@ public class DefaultDeserializerTest {
 	 * 
 	 * @param rbc
 	 *        the byte channel to read the serialized data from
-	 * @param bpb
-	 *        the buffer provider broker to request empty buffers from
+	 * @param dd
+	 *        the deserializer to use, the same deserializer must be used for all envelopes of a byte stream
 	 * @return the deserialized transfer envelope
 	 * @throws IOException
 	 *         thrown if an error occurs during the deserialization process
 	 * @throws NoBufferAvailableException
 	 *         thrown if the buffer provider broker could not provide an empty buffer
 	 */
-	private TransferEnvelope executeDeserialization(final ReadableByteChannel rbc, final BufferProviderBroker bpb)
+	private TransferEnvelope executeDeserialization(final ReadableByteChannel rbc, final DefaultDeserializer dd)
 			throws IOException, NoBufferAvailableException {
 
-		final DefaultDeserializer dd = new DefaultDeserializer(bpb);
-
 		TransferEnvelope te = dd.getFullyDeserializedTransferEnvelope();
 		while (te == null) {
 
@@ -346,11 +344,12 @@ public class DefaultDeserializerTest {
 
 			final ReadableByteChannel rbc = createSequenceByteChannel();
 			final TestBufferProviderBroker tbpb = new TestBufferProviderBroker(new TestBufferProvider(7));
+			final DefaultDeserializer dd = new DefaultDeserializer(tbpb);
 			int nextByte = 0;
 
 			while (true) {
 
-				final TransferEnvelope te = executeDeserialization(rbc, tbpb);
+				final TransferEnvelope te = executeDeserialization(rbc, dd);
 				final Buffer buffer = te.getBuffer();
 				if (buffer != null) {
 					final ByteBuffer bb = ByteBuffer.allocate(getSequenceBufferSize(numberOfEnvelopes));
@@ -396,7 +395,7 @@ public class DefaultDeserializerTest {
 
 			final TestBufferProviderBroker tbpb = new TestBufferProviderBroker(new TestBufferProvider(1));
 
-			final TransferEnvelope te = executeDeserialization(rbc, tbpb);
+			final TransferEnvelope te = executeDeserialization(rbc, new DefaultDeserializer(tbpb));
 
 			assertNotNull(te.getBuffer());
 			assertEquals(10, te.getBuffer().size());
@@ -421,7 +420,7 @@ public class DefaultDeserializerTest {
 
 			final TestBufferProviderBroker tbpb = new TestBufferProviderBroker(new TestBufferProvider(1));
 
-			final TransferEnvelope te = executeDeserialization(rbc, tbpb);
+			final TransferEnvelope te = executeDeserialization(rbc, new DefaultDeserializer(tbpb));
 
 			assertNotNull(te.getBuffer());
 			assertEquals(10, te.getBuffer().size());
@@ -446,7 +445,7 @@ public class DefaultDeserializerTest {
 
 			final TestBufferProviderBroker tbpb = new TestBufferProviderBroker(new TestBufferProvider(1));
 
-			final TransferEnvelope te = executeDeserialization(rbc, tbpb);
+			final TransferEnvelope te = executeDeserialization(rbc, new DefaultDeserializer(tbpb));
 
 			assertNull(te.getBuffer());
 
@@ -470,7 +469,7 @@ public class DefaultDeserializerTest {
 
 			final TestBufferProviderBroker tbpb = new TestBufferProviderBroker(new TestBufferProvider(0));
 
-			executeDeserialization(rbc, tbpb);
+			executeDeserialization(rbc, new DefaultDeserializer(tbpb));
 
 		} catch (IOException ioe) {
 			fail(StringUtils.stringifyException(ioe));
@@ -16,6 +16,7 @@
 package eu.stratosphere.nephele.taskmanager.transferenvelope;
 
 import static org.junit.Assert.fail;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import java.io.File;
@@ -29,9 +30,6 @@ import java.util.Deque;
 
 import org.junit.Test;
 
-import com.esotericsoftware.kryo.Kryo;
-import com.esotericsoftware.kryo.io.Input;
-
 import eu.stratosphere.nephele.io.AbstractID;
 import eu.stratosphere.nephele.io.channels.Buffer;
 import eu.stratosphere.nephele.io.channels.BufferFactory;
@@ -64,6 +62,16 @@ public class DefaultSerializerTest {
 	 */
 	private static final int SIZE_OF_SEQ_NR = 4;
 
+	/**
+	 * The size of the header flags.
+	 */
+	private static final int SIZE_OF_FLAGS = 1;
+
+	/**
+	 * The size of the encoded channel handle, as long as it is smaller than 128.
+	 */
+	private static final int SIZE_OF_CHANNEL_HANDLE = 1;
+
 	/**
 	 * The size of an integer number.
 	 */
@@ -171,13 +179,22 @@ public class DefaultSerializerTest {
 
 		for (int i = 0; i < BUFFER_SIZE; i++) {
 
+			// Only the first envelope defines the channel handle
+			final boolean handleDefinition = (i == 0);
+
+			readAndCheckHeaderLength(fileInputStream, handleDefinition);
 			readAndCheckSequenceNumber(fileInputStream, i);
-			readAndCheckID(fileInputStream, this.jobID);
-			readAndCheckID(fileInputStream, this.sourceChannelID);
-			readAndCheckNotificationList(fileInputStream);
+			readAndCheckFlags(fileInputStream, handleDefinition);
+			readAndCheckChannelHandle(fileInputStream);
+			if (handleDefinition) {
+				readAndCheckID(fileInputStream, this.jobID);
+				readAndCheckID(fileInputStream, this.sourceChannelID);
+			}
 			readAndCheckBuffer(fileInputStream, i);
 		}
 
+		assertEquals(-1, fileInputStream.read());
+
 		fileInputStream.close();
 	}
 
@@ -193,9 +210,6 @@ public class DefaultSerializerTest {
 	 */
 	private static void readAndCheckBuffer(FileInputStream fileInputStream, int expectedBufferSize) throws IOException {
 
-		// Check if buffer exists
-		assertEquals(1L, fileInputStream.read());
-
 		byte[] temp = new byte[SIZE_OF_INTEGER];
 		fileInputStream.read(temp);
 		int bufferSize = bufferToInteger(temp);
@@ -211,29 +225,62 @@ public class DefaultSerializerTest {
 	}
 
 	/**
-	 * Attempts to read an empty notification list from the given file input stream.
+	 * Attempts to read the length of the envelope header from the given file input stream and checks it.
 	 * 
 	 * @param fileInputStream
 	 *        the file input stream to read from
+	 * @param handleDefinition
+	 *        <code>true</code> if the header is expected to define the channel handle, <code>false</code> otherwise
 	 * @throws IOException
 	 *         thrown if an I/O occurs while reading data from the stream
 	 */
-	private void readAndCheckNotificationList(FileInputStream fileInputStream) throws IOException {
+	private static void readAndCheckHeaderLength(FileInputStream fileInputStream, boolean handleDefinition)
+			throws IOException {
 
-		if (fileInputStream.read() != 0) {
-
-			byte[] temp = new byte[SIZE_OF_INTEGER];
+		byte[] temp = new byte[SIZE_OF_INTEGER];
+		fileInputStream.read(temp);
 
-			fileInputStream.read(temp);
-			final int sizeOfDataBlock = bufferToInteger(temp);
+		int expectedLength = SIZE_OF_SEQ_NR + SIZE_OF_FLAGS + SIZE_OF_CHANNEL_HANDLE + SIZE_OF_INTEGER;
+		if (handleDefinition) {
+			expectedLength += 2 * AbstractID.SIZE;
+		}
 
-			assertEquals(SIZE_OF_INTEGER, sizeOfDataBlock);
+		assertEquals(expectedLength, bufferToInteger(temp));
+	}
 
-			fileInputStream.read(temp);
-			final int sizeOfNotificationList = bufferToInteger(temp);
+	/**
+	 * Attempts to read the flags of the envelope header from the given file input stream and checks them.
+	 * 
+	 * @param fileInputStream
+	 *        the file input stream to read from
+	 * @param handleDefinition
+	 *        <code>true</code> if the header is expected to define the channel handle, <code>false</code> otherwise
+	 * @throws IOException
+	 *         thrown if an I/O occurs while reading data from the stream
+	 */
+	private static void readAndCheckFlags(FileInputStream fileInputStream, boolean handleDefinition)
+			throws IOException {
 
-			assertEquals(0, sizeOfNotificationList);
+		int expectedFlags = EnvelopeHeaderCodec.FLAG_BUFFER;
+		if (handleDefinition) {
+			expectedFlags |= EnvelopeHeaderCodec.FLAG_HANDLE_DEFINITION;
 		}
+
+		assertEquals(expectedFlags, fileInputStream.read());
+	}
+
+	/**
+	 * Attempts to read the channel handle from the given file input stream. As all envelopes belong to the same
+	 * channel, the handle is expected to be <code>0</code>.
+	 * 
+	 * @param fileInputStream
+	 *        the file input stream to read from
+	 * @throws IOException
+	 *         thrown if an I/O occurs while reading data from the stream
+	 */
+	private static void readAndCheckChannelHandle(FileInputStream fileInputStream) throws IOException {
+
+		assertEquals(0, fileInputStream.read());
 	}
 
 	/**
@@ -257,7 +304,7 @@ public class DefaultSerializerTest {
 	}
 
 	/**
-	 * Attempts to read a channel ID from the given file input stream and compares it to <code>expectedChannelID</code>.
+	 * Attempts to read an ID from the given file input stream and compares it to <code>expectedID</code>.
 	 * 
 	 * @param fileInputStream
 	 *        the file input stream to read from
@@ -268,22 +315,13 @@ public class DefaultSerializerTest {
 	 */
 	private void readAndCheckID(FileInputStream fileInputStream, AbstractID expectedID) throws IOException {
 
-		byte[] temp = new byte[SIZE_OF_INTEGER];
-		fileInputStream.read(temp);
-
-		final int sizeOfID = bufferToInteger(temp); // ID has fixed size and therefore does not announce its size
-
-		final byte[] id = new byte[sizeOfID];
-
+		final byte[] id = new byte[AbstractID.SIZE];
 		fileInputStream.read(id);
 
-		final Input input = new Input(id);
-
-		final Kryo kryo = new Kryo();
-
-		final ChannelID channelID = kryo.readObject(input, ChannelID.class);
+		final ByteBuffer expected = ByteBuffer.allocate(AbstractID.SIZE);
+		expectedID.write(expected);
 
-		assertEquals(expectedID, channelID);
+		assertArrayEquals(expected.array(), id);
 	}
 
 	/**
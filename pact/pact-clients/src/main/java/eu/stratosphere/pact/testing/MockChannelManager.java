@@ -112,6 +112,15 @@ public class MockChannelManager implements RoutingService {
 		this.processEnvelope(transferEnvelope);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double getSendRate(final ChannelID sourceChannelID) {
+		// all channels are local
+		return -1.0;
+	}
+
 	/**
 	 * @param environment
 	 */
@@ -30,6 +30,7 @@ import org.apache.commons.logging.LogFactory;
 
 import eu.stratosphere.nephele.configuration.ConfigConstants;
 import eu.stratosphere.nephele.configuration.GlobalConfiguration;
+import eu.stratosphere.nephele.deployment.TaskDeploymentBatch;
 import eu.stratosphere.nephele.deployment.TaskDeploymentDescriptor;
 import eu.stratosphere.nephele.execution.Environment;
 import eu.stratosphere.nephele.execution.ExecutionObserver;
@@ -286,6 +287,16 @@ class MockTaskManager implements TaskOperationProtocol {
 		return submissionResultList;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.nephele.protocols.TaskOperationProtocol#submitTaskBatch(eu.stratosphere.nephele.deployment.
+	 * TaskDeploymentBatch)
+	 */
+	@Override
+	public List<TaskSubmissionResult> submitTaskBatch(TaskDeploymentBatch batch) throws IOException {
+		return submitTasks(batch.getTaskDeploymentDescriptors());
+	}
+
 	@Override
 	public void updateLibraryCache(final LibraryCacheUpdate update) throws IOException {
 	}
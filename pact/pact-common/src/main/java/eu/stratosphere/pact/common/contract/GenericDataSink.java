@@ -170,6 +170,8 @@ public class GenericDataSink extends Contract
 	 * this will cause the system to perform a global sort, or try to reuse an order from a
 	 * previous operation.
 	 * 
+	 * The range boundaries for the global sort are determined from a sample of the data.
+	 * 
 	 * @param globalOrder The order to write the data in.
 	 */
 	public void setGlobalOrder(Ordering globalOrder) {
@@ -224,13 +226,13 @@ public class GenericDataSink extends Contract
 	
 	/**
 	 * Sets the sink to partition the records into ranges over the given ordering.
+	 * The bucket boundaries are determined from a sample of the data at runtime.
 	 * 
 	 * @param partitionOrdering The record ordering over which to partition in ranges.
 	 */
 	public void setRangePartitioned(Ordering partitionOrdering)
 	{
-		throw new UnsupportedOperationException(
-			"Range partitioning is currently only supported with a user supplied data distribution.");
+		setRangePartitioned(partitionOrdering, null);
 	}
 	
 	/**
@@ -16,6 +16,8 @@
 package eu.stratosphere.pact.common.contract;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import eu.stratosphere.pact.common.stubs.MatchStub;
@@ -37,6 +39,10 @@ public class MatchContract extends DualInputContract<MatchStub>
 {	
 	private static String DEFAULT_NAME = "<Unnamed Matcher>";		// the default name for contracts
 	
+	private final List<Key[]> skewedKeys1 = new ArrayList<Key[]>();	// the keys declared skewed in the first input
+	
+	private final List<Key[]> skewedKeys2 = new ArrayList<Key[]>();	// the keys declared skewed in the second input
+	
 	// --------------------------------------------------------------------------------------------
 	
 	/**
@@ -60,6 +66,81 @@ public class MatchContract extends DualInputContract<MatchStub>
 				builder.getKeyColumnsArray2(), builder.name);
 		setFirstInputs(builder.inputs1);
 		setSecondInputs(builder.inputs2);
+		
+		for (int i = 0; i < builder.skewedKeys.size(); i++) {
+			addSkewedKey(builder.skewedKeyInputs.get(i), builder.skewedKeys.get(i));
+		}
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Declares a key as heavily skewed in one of the inputs, i.e. a large fraction of that input's records
+	 * carries the key. When both inputs are re-partitioned by hash, the compiler then uses a skew handling
+	 * partitioning: The records of that key from the skewed input are spread over all parallel instances of
+	 * the match, while the records of the key from the other input are replicated to all of them. All other
+	 * keys are hash partitioned as usual.
+	 * <p>
+	 * Declaring skewed keys is optional. If the detection of skewed keys is enabled in the configuration, the
+	 * compiler finds the skewed keys from a sample of both inputs. Declared keys override that detection.
+	 * 
+	 * @param input The input in which the key is skewed, <code>0</code> for the first input and <code>1</code>
+	 *              for the second input.
+	 * @param keyValues The values of the key fields, in the order in which the key fields are declared.
+	 */
+	public void addSkewedKey(int input, Key... keyValues)
+	{
+		if (input != 0 && input != 1) {
+			throw new IndexOutOfBoundsException("Match has only two inputs.");
+		}
+		
+		final Class<? extends Key>[] keyClasses = getKeyClasses();
+		if (keyValues == null || keyValues.length != keyClasses.length) {
+			throw new IllegalArgumentException("The skewed key must have a value for each of the " + 
+				keyClasses.length + " key fields.");
+		}
+		for (int i = 0; i < keyValues.length; i++) {
+			if (keyValues[i] == null || !keyClasses[i].isInstance(keyValues[i])) {
+				throw new IllegalArgumentException("The value for key field " + i + " of the skewed key is not of type " +
+					keyClasses[i].getName() + ".");
+			}
+		}
+		
+		// a key can be spread over the instances only for one of the inputs
+		final List<Key[]> other = input == 0 ? this.skewedKeys2 : this.skewedKeys1;
+		for (Key[] k : other) {
+			if (Arrays.equals(k, keyValues)) {
+				throw new IllegalArgumentException("The key is already declared as skewed in the other input.");
+			}
+		}
+		
+		(input == 0 ? this.skewedKeys1 : this.skewedKeys2).add(keyValues.clone());
+	}
+	
+	/**
+	 * Gets the keys that were declared as skewed in the given input.
+	 * 
+	 * @param input The input, <code>0</code> for the first input and <code>1</code> for the second input.
+	 * @return The values of the skewed keys' fields.
+	 * 
+	 * @see #addSkewedKey(int, Key...)
+	 */
+	public List<Key[]> getSkewedKeys(int input)
+	{
+		if (input != 0 && input != 1) {
+			throw new IndexOutOfBoundsException("Match has only two inputs.");
+		}
+		return Collections.unmodifiableList(input == 0 ? this.skewedKeys1 : this.skewedKeys2);
+	}
+	
+	/**
+	 * Checks whether any key was declared as skewed in one of the inputs.
+	 * 
+	 * @return True, if skewed keys were declared, false otherwise.
+	 */
+	public boolean hasSkewedKeys()
+	{
+		return !(this.skewedKeys1.isEmpty() && this.skewedKeys2.isEmpty());
 	}
 	
 	// --------------------------------------------------------------------------------------------
@@ -81,6 +162,8 @@ public class MatchContract extends DualInputContract<MatchStub>
 		private List<Contract> inputs1;
 		private List<Contract> inputs2;
 		private String name = DEFAULT_NAME;
+		private List<Integer> skewedKeyInputs = new ArrayList<Integer>();
+		private List<Key[]> skewedKeys = new ArrayList<Key[]>();
 		
 		
 		/**
@@ -184,6 +267,21 @@ public class MatchContract extends DualInputContract<MatchStub>
 			return this;
 		}
 		
+		/**
+		 * Declares a key as heavily skewed in one of the inputs.
+		 * 
+		 * @param input The input in which the key is skewed, <code>0</code> for the first input
+		 *              and <code>1</code> for the second input.
+		 * @param keyValues The values of the key fields, in the order in which the key fields are declared.
+		 * 
+		 * @see MatchContract#addSkewedKey(int, Key...)
+		 */
+		public Builder skewedKey(int input, Key... keyValues) {
+			this.skewedKeyInputs.add(input);
+			this.skewedKeys.add(keyValues);
+			return this;
+		}
+		
 		/**
 		 * Sets the name of this contract.
 		 * 
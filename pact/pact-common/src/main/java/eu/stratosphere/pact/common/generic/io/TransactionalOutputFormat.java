@@ -0,0 +1,59 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.common.generic.io;
+
+import java.io.IOException;
+
+/**
+ * An output format whose parallel instances take part in the life cycle of the job that writes them. In addition to
+ * the life cycle of the {@link OutputFormat}, the data sink task
+ * <ol>
+ *   <li>initializes the output format with the job and its degree of parallelism before it opens it,</li>
+ *   <li>commits the output after it has closed the format without an error, and</li>
+ *   <li>aborts the output after it has closed the format because of an error or canceling.</li>
+ * </ol>
+ * Output formats implement this interface, if their output must only become visible once the parallel instance has
+ * completed, or must be removed if it has not.
+ *
+ * @param <IT> The type of the consumed records.
+ */
+public interface TransactionalOutputFormat<IT> extends OutputFormat<IT>
+{
+	/**
+	 * Initializes the parallel instance with the job that writes it. The method is called after the format has been
+	 * configured and before it is opened.
+	 *
+	 * @param jobId The identifier of the job that writes the output.
+	 * @param parallelism The number of parallel instances that write the output.
+	 */
+	void initialize(String jobId, int parallelism);
+
+	/**
+	 * Makes the output of the parallel instance visible. The method is called after the format has been closed
+	 * without an error.
+	 *
+	 * @throws IOException Thrown, if the output could not be committed.
+	 */
+	void commit() throws IOException;
+
+	/**
+	 * Removes the partial output of the parallel instance. The method is called after the format has been closed
+	 * because of an error or because the task was canceled.
+	 *
+	 * @throws IOException Thrown, if the output could not be removed.
+	 */
+	void abort() throws IOException;
+}
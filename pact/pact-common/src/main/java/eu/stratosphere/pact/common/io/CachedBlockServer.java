@@ -0,0 +1,277 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.pact.common.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
+import eu.stratosphere.nephele.util.StringUtils;
+import eu.stratosphere.pact.common.util.PactConfigConstants;
+
+/**
+ * Serves the blocks of the cached partitions that are kept on the local disk of an instance to readers on other
+ * instances. The input split assigner prefers to give a split to the instance that holds its partition, but it hands
+ * out remote splits as well, and the scheduler does not place the reading tasks by the location of their splits.
+ * A reader that is not on the host of a partition therefore fetches the blocks of its splits from this server.
+ * <p>
+ * One server runs per task manager. It is started by the first writer of a cached data set and serves all files in
+ * the local cache directory until the task manager shuts down. Each connection carries a single request for a range
+ * of a partition file. The requests are served by a bounded pool of threads; connections that arrive while the pool
+ * and its queue are full are closed, and the reader fails its split. Reads from idle connections time out.
+ * <p>
+ * This class is thread-safe.
+ */
+final class CachedBlockServer extends Thread
+{
+	private static final Log LOG = LogFactory.getLog(CachedBlockServer.class);
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The maximal number of requests that are served concurrently.
+	 */
+	private static final int NUM_SERVING_THREADS = 8;
+
+	/**
+	 * The maximal number of accepted connections that wait for a serving thread.
+	 */
+	private static final int MAX_QUEUED_REQUESTS = 64;
+
+	/**
+	 * The timeout in milliseconds for blocking reads on a connection, both on the server and on the fetching side.
+	 */
+	private static final int SOCKET_TIMEOUT = 60 * 1000;
+
+	/**
+	 * The server of this task manager, or <code>null</code>, if none has been started, yet.
+	 */
+	private static CachedBlockServer instance;
+
+	private final ServerSocket serverSocket;
+
+	private final File cacheDirectory;
+
+	private final ThreadPoolExecutor requestHandlers;
+
+	private CachedBlockServer(File cacheDirectory, int port) throws IOException
+	{
+		super("Cached Block Server");
+		setDaemon(true);
+		this.cacheDirectory = cacheDirectory.getCanonicalFile();
+		this.serverSocket = new ServerSocket(port);
+		this.requestHandlers = new ThreadPoolExecutor(NUM_SERVING_THREADS, NUM_SERVING_THREADS, 0L,
+			TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(MAX_QUEUED_REQUESTS), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					final Thread handler = new Thread(r, "Cached Block Request");
+					handler.setDaemon(true);
+					return handler;
+				}
+			});
+	}
+
+	/**
+	 * Starts the server for the given cache directory, unless it is already running.
+	 *
+	 * @param cacheDirectory The local cache directory, whose files the server serves.
+	 * @return The port the server listens on.
+	 * @throws IOException Thrown, if the server could not be started, or if it serves another cache directory.
+	 */
+	static synchronized int start(File cacheDirectory) throws IOException
+	{
+		if (instance == null || !instance.isAlive()) {
+			instance = new CachedBlockServer(cacheDirectory, GlobalConfiguration.getInteger(
+				PactConfigConstants.CACHE_SERVER_PORT_KEY, PactConfigConstants.DEFAULT_CACHE_SERVER_PORT));
+			instance.start();
+
+			if (LOG.isInfoEnabled())
+				LOG.info("Serving the blocks of cached data sets in " + instance.cacheDirectory + " on port " +
+					instance.serverSocket.getLocalPort() + ".");
+		} else if (!instance.cacheDirectory.equals(cacheDirectory.getCanonicalFile())) {
+			throw new IOException("The blocks of cached data sets are already served from " + instance.cacheDirectory +
+				", but the cache directory is now " + cacheDirectory + ".");
+		}
+		return instance.serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Fetches a range of a partition file from the server on the host that holds the partition, and writes it to
+	 * the given local file.
+	 *
+	 * @param hostName The host that holds the partition.
+	 * @param port The port of the server on that host.
+	 * @param name The name of the data set.
+	 * @param fileName The name of the partition file.
+	 * @param start The offset of the range in the partition file.
+	 * @param length The length of the range.
+	 * @param target The local file to write the range to.
+	 * @throws IOException Thrown, if the server could not be reached or could not serve the range.
+	 */
+	static void fetch(String hostName, int port, String name, String fileName, long start, long length, File target)
+	throws IOException
+	{
+		final Socket socket = new Socket(hostName, port);
+		try {
+			socket.setSoTimeout(SOCKET_TIMEOUT);
+			final DataOutputStream request = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			request.writeUTF(name);
+			request.writeUTF(fileName);
+			request.writeLong(start);
+			request.writeLong(length);
+			request.flush();
+
+			final DataInputStream response = new DataInputStream(new BufferedInputStream(socket.getInputStream(),
+				BUFFER_SIZE));
+			if (!response.readBoolean()) {
+				throw new IOException(response.readUTF());
+			}
+
+			final OutputStream out = new FileOutputStream(target);
+			try {
+				final byte[] buffer = new byte[BUFFER_SIZE];
+				long remaining = length;
+				while (remaining > 0) {
+					final int read = response.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+					if (read < 0) {
+						throw new EOFException("The connection was closed after " + (length - remaining) + " of " +
+							length + " bytes.");
+					}
+					out.write(buffer, 0, read);
+					remaining -= read;
+				}
+			} finally {
+				out.close();
+			}
+		} finally {
+			socket.close();
+		}
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Thread#run()
+	 */
+	@Override
+	public void run()
+	{
+		while (!this.serverSocket.isClosed()) {
+			final Socket socket;
+			try {
+				socket = this.serverSocket.accept();
+			} catch (IOException ioex) {
+				if (LOG.isErrorEnabled())
+					LOG.error("The server for the blocks of cached data sets stopped: " + ioex.getMessage(), ioex);
+				break;
+			}
+
+			try {
+				socket.setSoTimeout(SOCKET_TIMEOUT);
+				this.requestHandlers.execute(new Runnable() {
+					@Override
+					public void run() {
+						serve(socket);
+					}
+				});
+			} catch (IOException ioex) {
+				closeQuietly(socket);
+			} catch (RejectedExecutionException reex) {
+				if (LOG.isWarnEnabled())
+					LOG.warn("Rejected a request for a block of a cached data set, because " + MAX_QUEUED_REQUESTS +
+						" requests are already waiting.");
+				closeQuietly(socket);
+			}
+		}
+		this.requestHandlers.shutdown();
+	}
+
+	private void serve(Socket socket)
+	{
+		try {
+			final DataInputStream request = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			final String name = request.readUTF();
+			final String fileName = request.readUTF();
+			final long start = request.readLong();
+			final long length = request.readLong();
+
+			final DataOutputStream response = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(),
+				BUFFER_SIZE));
+
+			// only serve files inside the cache directory
+			final File file = new File(new File(this.cacheDirectory, name), fileName).getCanonicalFile();
+			if (!file.getPath().startsWith(this.cacheDirectory.getPath() + File.separator) || !file.isFile() ||
+					start < 0 || length < 0 || file.length() < start + length) {
+				response.writeBoolean(false);
+				response.writeUTF("The partition " + fileName + " of the cached data set '" + name + "' is not " +
+					"present on " + socket.getLocalAddress().getHostName() + ".");
+				response.close();
+				return;
+			}
+
+			response.writeBoolean(true);
+			final RandomAccessFile in = new RandomAccessFile(file, "r");
+			try {
+				in.seek(start);
+				final byte[] buffer = new byte[BUFFER_SIZE];
+				long remaining = length;
+				while (remaining > 0) {
+					final int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+					if (read < 0) {
+						throw new EOFException("The partition file " + file + " ended unexpectedly.");
+					}
+					response.write(buffer, 0, read);
+					remaining -= read;
+				}
+			} finally {
+				in.close();
+			}
+			response.close();
+		} catch (IOException ioex) {
+			if (LOG.isWarnEnabled())
+				LOG.warn("Could not serve a block of a cached data set: " + StringUtils.stringifyException(ioex));
+		} finally {
+			closeQuietly(socket);
+		}
+	}
+
+	private static void closeQuietly(Socket socket)
+	{
+		try {
+			socket.close();
+		} catch (IOException ioex) {}
+	}
+}
@@ -0,0 +1,506 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.pact.common.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.nephele.configuration.ConfigConstants;
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
+import eu.stratosphere.nephele.fs.FileStatus;
+import eu.stratosphere.nephele.fs.FileSystem;
+import eu.stratosphere.nephele.fs.Path;
+import eu.stratosphere.nephele.fs.file.LocalFileSystem;
+import eu.stratosphere.pact.common.util.PactConfigConstants;
+
+/**
+ * The catalog records on which instances the partitions of the cached data sets are kept. Each parallel instance
+ * that writes a partition registers it with one file in the catalog directory of the data set, named after the run,
+ * the index of the partition and the number of partitions. The catalog directory must therefore be accessible from
+ * all instances and from the job manager, which looks up the partitions when it creates the input splits.
+ * <p>
+ * A data set is read from its newest complete run, that is the newest run that registered all of its partitions.
+ * Runs that are still in progress or have failed are ignored, such that writing a data set again does not affect
+ * readers until the new run is complete. The partitions of older runs are removed lazily by the writers: when a
+ * writer registers its partition, it removes the partitions and registrations of all runs that are older than the
+ * two newest complete runs, as far as it can access them. The previous complete run is kept, because jobs may still
+ * read it.
+ * <p>
+ * This class is thread-safe.
+ */
+final class CachedDataSetCatalog
+{
+	private static final Log LOG = LogFactory.getLog(CachedDataSetCatalog.class);
+
+	/**
+	 * The block size of the partition files. It is fixed, such that the readers align their splits to the blocks
+	 * independent of the file system's default block size.
+	 */
+	static final long BLOCK_SIZE = 16 * 1024 * 1024;
+
+	/**
+	 * The port registered for partitions that are not served by a {@link CachedBlockServer}, because they are kept
+	 * on a shared file system.
+	 */
+	static final int NO_SERVER_PORT = -1;
+
+	private static final String DEFAULT_CATALOG_SUB_DIRECTORY = ".catalog";
+
+	private static final char NAME_SEPARATOR = '_';
+
+	private static final String TEMP_FILE_PREFIX = ".";
+
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private CachedDataSetCatalog() {
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/**
+	 * Gets the directory in which the instances keep their partitions of the given data set.
+	 * 
+	 * @param name The name of the data set.
+	 * @return The qualified path of the directory.
+	 * @throws IOException Thrown, if the configured cache directory is not valid.
+	 */
+	static Path getPartitionDirectory(String name) throws IOException
+	{
+		return new Path(getCacheDirectory(), name);
+	}
+
+	/**
+	 * Gets the name of the file of a partition.
+	 * 
+	 * @param runId The identifier of the run that writes the partition.
+	 * @param partition The index of the partition.
+	 * @return The name of the partition file.
+	 */
+	static String getPartitionFileName(String runId, int partition)
+	{
+		return runId + NAME_SEPARATOR + partition;
+	}
+
+	/**
+	 * Checks that the catalog directory can be determined with the current configuration.
+	 * 
+	 * @throws IOException Thrown, if the catalog directory is not configured, but required.
+	 */
+	static void checkCatalogDirectory() throws IOException
+	{
+		getCatalogDirectory();
+	}
+
+	/**
+	 * Registers a partition that a parallel instance wrote on the local instance. The registration becomes visible
+	 * to readers only once it has been written completely. Afterwards, the partitions of outdated runs are removed.
+	 * 
+	 * @param name The name of the data set.
+	 * @param runId The identifier of the run, typically the job ID.
+	 * @param partition The index of the partition.
+	 * @param numPartitions The number of partitions written by the run.
+	 * @param file The file holding the partition.
+	 * @param numRecords The number of records in the partition.
+	 * @param port The port of the {@link CachedBlockServer} that serves the partition to other instances, or
+	 *             {@link #NO_SERVER_PORT}, if the partition is on a shared file system.
+	 * @throws IOException Thrown, if the registration could not be written.
+	 */
+	static void register(String name, String runId, int partition, int numPartitions, Path file, long numRecords,
+			int port)
+	throws IOException
+	{
+		final long length = file.getFileSystem().getFileStatus(file).getLen();
+
+		final Path dataSetDir = new Path(getCatalogDirectory(), name);
+		final FileSystem fs = dataSetDir.getFileSystem();
+		fs.mkdirs(dataSetDir);
+
+		final String entryName = runId + NAME_SEPARATOR + partition + NAME_SEPARATOR + numPartitions;
+		final Path tempFile = new Path(dataSetDir, TEMP_FILE_PREFIX + entryName);
+
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fs.create(tempFile, true)));
+		try {
+			out.writeUTF(InetAddress.getLocalHost().getHostName());
+			out.writeInt(port);
+			out.writeUTF(file.toString());
+			out.writeLong(length);
+			out.writeLong(numRecords);
+		} finally {
+			out.close();
+		}
+
+		if (!fs.rename(tempFile, new Path(dataSetDir, entryName))) {
+			fs.delete(tempFile, false);
+			throw new IOException("Could not register partition " + partition + " of cached data set '" + name + "'.");
+		}
+
+		// the partition is registered now, so failing to clean up must not fail the writer
+		try {
+			removeOutdatedRuns(fs, dataSetDir);
+		} catch (IOException ioex) {
+			if (LOG.isWarnEnabled()) {
+				LOG.warn("Could not remove the outdated runs of cached data set '" + name + "': " + ioex.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Looks up the partitions of the newest complete run of the given data set.
+	 * 
+	 * @param name The name of the data set.
+	 * @return The partitions, ordered by their index.
+	 * @throws IOException Thrown, if the catalog could not be accessed, or if no complete run of the data set is
+	 *                     registered.
+	 */
+	static Partition[] lookup(String name) throws IOException
+	{
+		final Path dataSetDir = new Path(getCatalogDirectory(), name);
+		final FileSystem fs = dataSetDir.getFileSystem();
+		final List<Run> runs = getRuns(fs, dataSetDir);
+		if (runs.isEmpty()) {
+			throw new IOException("The cached data set '" + name + "' is not registered in the catalog " + 
+				dataSetDir.getParent() + ".");
+		}
+
+		final List<Run> completeRuns = getCompleteRuns(runs);
+		if (completeRuns.isEmpty()) {
+			final Run newest = runs.get(0);
+			throw new IOException("The cached data set '" + name + "' has no complete run. Its newest run registered " +
+				"only " + newest.numRegistered + " of " + newest.entries.length + " partitions. The run either " +
+				"failed or is still in progress.");
+		}
+
+		final Run newest = completeRuns.get(0);
+		final Partition[] partitions = new Partition[newest.entries.length];
+		for (int i = 0; i < partitions.length; i++) {
+			partitions[i] = readPartition(fs, newest.entries[i].getPath());
+		}
+		return partitions;
+	}
+
+	/**
+	 * Looks up the registration of the partition that is kept in the given file.
+	 * 
+	 * @param name The name of the data set.
+	 * @param file The file holding the partition.
+	 * @return The registered partition.
+	 * @throws IOException Thrown, if the catalog could not be accessed, or if the partition is not registered
+	 *                     anymore, because its run has been replaced and removed.
+	 */
+	static Partition lookupPartition(String name, Path file) throws IOException
+	{
+		final Path dataSetDir = new Path(getCatalogDirectory(), name);
+		final FileSystem fs = dataSetDir.getFileSystem();
+		final FileStatus[] files = fs.exists(dataSetDir) ? fs.listStatus(dataSetDir) : null;
+		if (files != null) {
+			final String prefix = file.getName() + NAME_SEPARATOR;
+			for (FileStatus status : files) {
+				if (!status.isDir() && status.getPath().getName().startsWith(prefix)) {
+					final Partition partition = readPartition(fs, status.getPath());
+					if (partition.getFile().equals(file)) {
+						return partition;
+					}
+				}
+			}
+		}
+		throw new IOException("The partition " + file + " of the cached data set '" + name + "' is not registered " +
+			"anymore. The data set has been written again since the reading job started.");
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/**
+	 * Removes the partitions and registrations of the runs that are older than the two newest complete runs. A
+	 * partition on the local file system is only removed by the instance that holds it. Its registration is kept
+	 * until then, such that the instance still finds the partition to remove when it writes the data set again.
+	 */
+	private static void removeOutdatedRuns(FileSystem fs, Path dataSetDir) throws IOException
+	{
+		final List<Run> runs = getRuns(fs, dataSetDir);
+		final List<Run> completeRuns = getCompleteRuns(runs);
+		if (completeRuns.size() < 2) {
+			return;
+		}
+
+		final long oldestKept = completeRuns.get(1).modificationTime;
+		final String localHost = InetAddress.getLocalHost().getHostName();
+		for (Run run : runs) {
+			if (run.modificationTime >= oldestKept) {
+				continue;
+			}
+			for (FileStatus entry : run.entries) {
+				if (entry == null) {
+					continue;
+				}
+				try {
+					final Partition partition = readPartition(fs, entry.getPath());
+					final FileSystem partitionFs = partition.getFile().getFileSystem();
+					if (partitionFs instanceof LocalFileSystem && !partition.getHostName().equals(localHost)) {
+						continue;
+					}
+					partitionFs.delete(partition.getFile(), false);
+					fs.delete(entry.getPath(), false);
+				} catch (IOException ioex) {
+					if (LOG.isDebugEnabled()) {
+						LOG.debug("Could not remove outdated partition " + entry.getPath() + ": " + ioex.getMessage());
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the registrations in the catalog directory of a data set and groups them by run.
+	 * 
+	 * @return The runs, ordered from the newest to the oldest.
+	 */
+	private static List<Run> getRuns(FileSystem fs, Path dataSetDir) throws IOException
+	{
+		final FileStatus[] files = fs.exists(dataSetDir) ? fs.listStatus(dataSetDir) : null;
+		if (files == null) {
+			return Collections.emptyList();
+		}
+
+		final Map<String, Run> runs = new HashMap<String, Run>();
+		for (FileStatus file : files) {
+			final String entryName = file.getPath().getName();
+			if (file.isDir() || entryName.startsWith(TEMP_FILE_PREFIX)) {
+				continue;
+			}
+
+			final int second = entryName.lastIndexOf(NAME_SEPARATOR);
+			final int first = second > 0 ? entryName.lastIndexOf(NAME_SEPARATOR, second - 1) : -1;
+			if (first <= 0) {
+				continue;
+			}
+
+			final int partition, numPartitions;
+			try {
+				partition = Integer.parseInt(entryName.substring(first + 1, second));
+				numPartitions = Integer.parseInt(entryName.substring(second + 1));
+			} catch (NumberFormatException nfex) {
+				continue;
+			}
+			if (partition < 0 || partition >= numPartitions) {
+				continue;
+			}
+
+			final String runId = entryName.substring(0, first);
+			Run run = runs.get(runId);
+			if (run == null) {
+				run = new Run(numPartitions);
+				runs.put(runId, run);
+			} else if (run.entries.length != numPartitions) {
+				continue;
+			}
+			run.entries[partition] = file;
+			run.numRegistered++;
+			run.modificationTime = Math.max(run.modificationTime, file.getModificationTime());
+		}
+
+		final List<Run> result = new ArrayList<Run>(runs.values());
+		Collections.sort(result);
+		return result;
+	}
+
+	private static List<Run> getCompleteRuns(List<Run> runs)
+	{
+		final List<Run> completeRuns = new ArrayList<Run>(runs.size());
+		for (Run run : runs) {
+			if (run.numRegistered == run.entries.length) {
+				completeRuns.add(run);
+			}
+		}
+		return completeRuns;
+	}
+
+	private static Partition readPartition(FileSystem fs, Path entry) throws IOException
+	{
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(fs.open(entry)));
+		try {
+			return new Partition(in.readUTF(), in.readInt(), new Path(in.readUTF()), in.readLong(), in.readLong());
+		} finally {
+			in.close();
+		}
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/**
+	 * Gets the directory in which the instances keep the partitions of all cached data sets.
+	 * 
+	 * @return The qualified path of the directory.
+	 * @throws IOException Thrown, if the configured cache directory is not valid.
+	 */
+	static Path getCacheDirectory() throws IOException
+	{
+		return qualify(GlobalConfiguration.getString(PactConfigConstants.CACHE_DIRECTORY_KEY,
+			PactConfigConstants.DEFAULT_CACHE_DIRECTORY));
+	}
+
+	/**
+	 * Gets the catalog directory. Without a configured catalog directory, the catalog is kept in the cache
+	 * directory, but only if the job manager runs on the local machine. Otherwise the instances would each keep
+	 * their own catalog, which the job manager cannot see.
+	 */
+	private static Path getCatalogDirectory() throws IOException
+	{
+		final String dir = GlobalConfiguration.getString(PactConfigConstants.CACHE_CATALOG_DIRECTORY_KEY,
+			PactConfigConstants.DEFAULT_CACHE_CATALOG_DIRECTORY);
+		if (dir != null) {
+			return qualify(dir);
+		}
+
+		final String jobManagerAddress = GlobalConfiguration.getString(ConfigConstants.JOB_MANAGER_IPC_ADDRESS_KEY,
+			null);
+		boolean local = jobManagerAddress == null;
+		if (!local) {
+			try {
+				local = InetAddress.getByName(jobManagerAddress).isLoopbackAddress();
+			} catch (UnknownHostException uhex) {
+				local = false;
+			}
+		}
+		if (!local) {
+			throw new IOException("The catalog of cached data sets is not configured. Set '" + 
+				PactConfigConstants.CACHE_CATALOG_DIRECTORY_KEY + "' to a directory that the job manager and all " +
+				"instances can access.");
+		}
+		return new Path(getCacheDirectory(), DEFAULT_CATALOG_SUB_DIRECTORY);
+	}
+
+	/**
+	 * Qualifies paths without a scheme with the local file system.
+	 */
+	private static Path qualify(String dir) throws IOException
+	{
+		final Path path = new Path(dir);
+		return path.toUri().getScheme() == null ? path.makeQualified(FileSystem.getLocalFileSystem()) : path;
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/**
+	 * A registered partition of a cached data set.
+	 */
+	static final class Partition
+	{
+		private final String hostName;
+
+		private final int port;
+
+		private final Path file;
+
+		private final long length;
+
+		private final long numRecords;
+
+		private Partition(String hostName, int port, Path file, long length, long numRecords)
+		{
+			this.hostName = hostName;
+			this.port = port;
+			this.file = file;
+			this.length = length;
+			this.numRecords = numRecords;
+		}
+
+		/**
+		 * Gets the name of the host that wrote the partition.
+		 * 
+		 * @return The host name.
+		 */
+		String getHostName() {
+			return this.hostName;
+		}
+
+		/**
+		 * Gets the port of the server that serves the partition to other instances.
+		 * 
+		 * @return The port, or {@link CachedDataSetCatalog#NO_SERVER_PORT}, if the partition is on a shared file
+		 *         system.
+		 */
+		int getPort() {
+			return this.port;
+		}
+
+		/**
+		 * Gets the file holding the partition.
+		 * 
+		 * @return The path of the partition file.
+		 */
+		Path getFile() {
+			return this.file;
+		}
+
+		/**
+		 * Gets the length of the partition file.
+		 * 
+		 * @return The length in bytes.
+		 */
+		long getLength() {
+			return this.length;
+		}
+
+		/**
+		 * Gets the number of records in the partition.
+		 * 
+		 * @return The number of records.
+		 */
+		long getNumberOfRecords() {
+			return this.numRecords;
+		}
+	}
+
+	/**
+	 * The registrations of the partitions of one run. Runs are ordered from the newest to the oldest registration.
+	 */
+	private static final class Run implements Comparable<Run>
+	{
+		private final FileStatus[] entries;
+
+		private int numRegistered;
+
+		private long modificationTime = Long.MIN_VALUE;
+
+		private Run(int numPartitions) {
+			this.entries = new FileStatus[numPartitions];
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see java.lang.Comparable#compareTo(java.lang.Object)
+		 */
+		@Override
+		public int compareTo(Run o) {
+			return this.modificationTime > o.modificationTime ? -1 : this.modificationTime < o.modificationTime ? 1 : 0;
+		}
+	}
+}
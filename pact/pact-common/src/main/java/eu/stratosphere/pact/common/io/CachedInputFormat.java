@@ -0,0 +1,259 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.pact.common.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.fs.FileInputSplit;
+import eu.stratosphere.nephele.fs.FileStatus;
+import eu.stratosphere.nephele.fs.FileSystem;
+import eu.stratosphere.nephele.fs.Path;
+import eu.stratosphere.nephele.util.StringUtils;
+import eu.stratosphere.pact.common.contract.GenericDataSource;
+import eu.stratosphere.pact.common.io.statistics.BaseStatistics;
+
+/**
+ * Reads a data set that an earlier job materialized with the {@link CachedOutputFormat}. The input splits carry the
+ * names of the hosts that hold the partitions, such that the file input split assigner prefers to give them to the
+ * instances on these hosts.
+ * <p>
+ * The assigner hands out splits to other instances as well, once an instance has no local splits left, and the
+ * scheduler does not place the reading tasks on the hosts of the partitions. If the cache directory is on the local
+ * disks of the instances, a split whose partition is not present on the reading instance is therefore fetched from
+ * the {@link CachedBlockServer} of the instance that holds it. The block is copied to a local temporary file, which
+ * is removed when the split is closed.
+ * 
+ * @see CachedOutputFormat
+ */
+public class CachedInputFormat extends SequentialInputFormat
+{
+	/**
+	 * The log.
+	 */
+	private static final Log LOG = LogFactory.getLog(CachedInputFormat.class);
+
+	/**
+	 * The config parameter which defines the name of the data set.
+	 */
+	public static final String DATA_SET_NAME_PARAMETER_KEY = CachedOutputFormat.DATA_SET_NAME_PARAMETER_KEY;
+
+	private String name;
+
+	/**
+	 * The local copy of the block of the current split, if the split's partition is kept on another instance.
+	 */
+	private File fetchedBlock;
+
+	/*
+	 * (non-Javadoc)
+	 * @see
+	 * eu.stratosphere.pact.common.io.BinaryInputFormat#configure(eu.stratosphere.nephele.configuration.Configuration)
+	 */
+	@Override
+	public void configure(Configuration parameters)
+	{
+		this.name = parameters.getString(DATA_SET_NAME_PARAMETER_KEY, null);
+		if (this.name == null) {
+			throw new IllegalArgumentException("Configuration of the CachedInputFormat does not contain the name " +
+				"of the data set.");
+		}
+		try {
+			CachedDataSetCatalog.checkCatalogDirectory();
+		} catch (IOException ioex) {
+			throw new IllegalArgumentException(ioex.getMessage(), ioex);
+		}
+
+		final Configuration fileParameters = new Configuration();
+		fileParameters.addAll(parameters, "");
+		try {
+			fileParameters.setString(FILE_PARAMETER_KEY,
+				CachedDataSetCatalog.getPartitionDirectory(this.name).toString());
+		} catch (IOException ioex) {
+			throw new IllegalArgumentException("The cache directory is not valid: " + ioex.getMessage(), ioex);
+		}
+		fileParameters.setLong(BLOCK_SIZE_PARAMETER_KEY, CachedDataSetCatalog.BLOCK_SIZE);
+		super.configure(fileParameters);
+	}
+
+	/**
+	 * Creates one split per block of each partition, located at the host that holds the partition.
+	 * 
+	 * @see eu.stratosphere.pact.common.io.BinaryInputFormat#createInputSplits(int)
+	 */
+	@Override
+	public FileInputSplit[] createInputSplits(int minNumSplits) throws IOException
+	{
+		final CachedDataSetCatalog.Partition[] partitions = CachedDataSetCatalog.lookup(this.name);
+
+		final List<FileInputSplit> inputSplits = new ArrayList<FileInputSplit>(Math.max(minNumSplits,
+			partitions.length));
+		for (CachedDataSetCatalog.Partition partition : partitions) {
+			final String[] hosts = new String[] { partition.getHostName() };
+			final long length = partition.getLength();
+			for (long pos = 0; pos < length; pos += CachedDataSetCatalog.BLOCK_SIZE) {
+				inputSplits.add(new FileInputSplit(inputSplits.size(), partition.getFile(), pos,
+					Math.min(CachedDataSetCatalog.BLOCK_SIZE, length - pos), hosts));
+			}
+		}
+
+		return inputSplits.toArray(new FileInputSplit[inputSplits.size()]);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.common.io.BinaryInputFormat#getStatistics(eu.stratosphere.pact.common.io.statistics.BaseStatistics)
+	 */
+	@Override
+	public BaseStatistics getStatistics(BaseStatistics cachedStatistics)
+	{
+		try {
+			long totalLength = 0, totalRecords = 0;
+			for (CachedDataSetCatalog.Partition partition : CachedDataSetCatalog.lookup(this.name)) {
+				totalLength += partition.getLength();
+				totalRecords += partition.getNumberOfRecords();
+			}
+			return new FileBaseStatistics(BaseStatistics.UNKNOWN, totalLength,
+				totalRecords == 0 ? 0 : ((float) totalLength) / totalRecords);
+		} catch (IOException ioex) {
+			if (LOG.isWarnEnabled())
+				LOG.warn(String.format("Could not determine the statistics of the cached data set '%s': %s",
+					this.name, StringUtils.stringifyException(ioex)));
+			return cachedStatistics;
+		}
+	}
+
+	/**
+	 * Opens the split. If the partition it belongs to is not present on this instance, the split's block is fetched
+	 * from the instance that holds the partition first.
+	 * 
+	 * @see eu.stratosphere.pact.common.io.BinaryInputFormat#open(eu.stratosphere.nephele.fs.FileInputSplit)
+	 */
+	@Override
+	public void open(FileInputSplit split) throws IOException
+	{
+		final FileSystem fs = split.getPath().getFileSystem();
+		final FileStatus status = fs.exists(split.getPath()) ? fs.getFileStatus(split.getPath()) : null;
+		if (status != null && status.getLen() >= split.getStart() + split.getLength()) {
+			super.open(split);
+			return;
+		}
+
+		final CachedDataSetCatalog.Partition partition = CachedDataSetCatalog.lookupPartition(this.name,
+			split.getPath());
+		if (partition.getPort() == CachedDataSetCatalog.NO_SERVER_PORT) {
+			throw new IOException("The partition " + split.getPath() + " of the cached data set '" + this.name +
+				"' is not present in the shared cache directory.");
+		}
+
+		this.fetchedBlock = File.createTempFile("pact-cache-", ".block");
+		try {
+			CachedBlockServer.fetch(partition.getHostName(), partition.getPort(), this.name,
+				split.getPath().getName(), split.getStart(), split.getLength(), this.fetchedBlock);
+		} catch (IOException ioex) {
+			deleteFetchedBlock();
+			throw new IOException("The partition " + split.getPath() + " of the cached data set '" + this.name +
+				"' could not be fetched from " + partition.getHostName() + ":" + partition.getPort() + ": " +
+				ioex.getMessage(), ioex);
+		}
+
+		if (LOG.isDebugEnabled())
+			LOG.debug("Fetched split " + split.getSplitNumber() + " of the cached data set '" + this.name +
+				"' from " + partition.getHostName() + ".");
+
+		try {
+			super.open(new FileInputSplit(split.getSplitNumber(), new Path(this.fetchedBlock.toURI()), 0,
+				split.getLength(), split.getHostNames()));
+		} catch (IOException ioex) {
+			deleteFetchedBlock();
+			throw ioex;
+		}
+	}
+
+	/**
+	 * Closes the split and removes the local copy of its block, if it was fetched from another instance.
+	 * 
+	 * @see eu.stratosphere.pact.common.io.FileInputFormat#close()
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		try {
+			super.close();
+		} finally {
+			deleteFetchedBlock();
+		}
+	}
+
+	private void deleteFetchedBlock()
+	{
+		if (this.fetchedBlock != null) {
+			if (!this.fetchedBlock.delete() && LOG.isWarnEnabled())
+				LOG.warn("Could not remove the fetched block " + this.fetchedBlock + ".");
+			this.fetchedBlock = null;
+		}
+	}
+
+	// ============================================================================================
+
+	/**
+	 * Creates a configuration builder that can be used to set the input format's parameters to the config in a fluent
+	 * fashion.
+	 * 
+	 * @return A config builder for setting parameters.
+	 */
+	public static ConfigBuilder configureCachedFormat(GenericDataSource<?> target) {
+		return new ConfigBuilder(target.getParameters());
+	}
+
+	/**
+	 * A builder used to set parameters to the input format's configuration in a fluent way.
+	 */
+	public static class ConfigBuilder
+	{
+		/**
+		 * The configuration into which the parameters will be written.
+		 */
+		private final Configuration config;
+
+		/**
+		 * Creates a new builder for the given configuration.
+		 * 
+		 * @param targetConfig The configuration into which the parameters will be written.
+		 */
+		protected ConfigBuilder(Configuration targetConfig) {
+			this.config = targetConfig;
+		}
+
+		/**
+		 * Sets the name of the data set.
+		 * 
+		 * @param name The name under which the data set was written.
+		 * @return The builder itself.
+		 */
+		public ConfigBuilder name(String name) {
+			this.config.setString(DATA_SET_NAME_PARAMETER_KEY, name);
+			return this;
+		}
+	}
+}
@@ -0,0 +1,235 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.pact.common.io;
+
+import java.io.File;
+import java.io.IOException;
+
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.fs.FileSystem;
+import eu.stratosphere.nephele.fs.Path;
+import eu.stratosphere.nephele.fs.file.LocalFileSystem;
+import eu.stratosphere.pact.common.contract.GenericDataSink;
+import eu.stratosphere.pact.common.generic.io.TransactionalOutputFormat;
+import eu.stratosphere.pact.common.type.PactRecord;
+
+/**
+ * Materializes an intermediate result as a named data set that later jobs read with the {@link CachedInputFormat}.
+ * Each parallel instance keeps its partition in the cache directory of its instance, which is a directory on the
+ * local disk unless the configuration points it to a shared file system. The partition is then registered in the
+ * catalog, together with the name of the host that holds it, such that the reading jobs prefer to read the
+ * partitions on the hosts that hold them. Partitions on the local disk are served to readers on other hosts by a
+ * {@link CachedBlockServer} on the writing task manager.
+ * <p>
+ * A data set becomes readable once all parallel instances of the writing job have registered their partitions.
+ * Writing a data set again replaces it as soon as the new run is complete.
+ * <p>
+ * The partitions are kept on disk only. Keeping them in managed memory and spilling them through the I/O manager is
+ * not supported, because the memory manager assigns its memory to tasks and releases it when they finish, so the
+ * memory cannot outlive the writing job.
+ * 
+ * @see CachedInputFormat
+ */
+public class CachedOutputFormat implements TransactionalOutputFormat<PactRecord>
+{
+	/**
+	 * The config parameter which defines the name of the data set.
+	 */
+	public static final String DATA_SET_NAME_PARAMETER_KEY = "pact.cache.name";
+
+	private final SequentialOutputFormat partitionFormat = new SequentialOutputFormat();
+
+	private Configuration parameters;
+
+	private String name;
+
+	private String runId;
+
+	private int numPartitions;
+
+	private int partition;
+
+	private Path partitionFile;
+
+	private long numRecords;
+
+	private int serverPort;
+
+	// --------------------------------------------------------------------------------------------
+
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.common.generic.io.OutputFormat#configure(eu.stratosphere.nephele.configuration.Configuration)
+	 */
+	@Override
+	public void configure(Configuration parameters)
+	{
+		this.name = parameters.getString(DATA_SET_NAME_PARAMETER_KEY, null);
+		if (this.name == null) {
+			throw new IllegalArgumentException("Configuration of the CachedOutputFormat does not contain the name " +
+				"of the data set.");
+		}
+		try {
+			CachedDataSetCatalog.checkCatalogDirectory();
+		} catch (IOException ioex) {
+			throw new IllegalArgumentException(ioex.getMessage(), ioex);
+		}
+		this.parameters = parameters;
+	}
+
+	/**
+	 * Sets the run that writes the data set. The data sink task calls this method before it opens the format.
+	 * 
+	 * @param runId The identifier of the run, typically the job ID.
+	 * @param numPartitions The number of parallel instances that write the data set.
+	 * @see eu.stratosphere.pact.common.generic.io.TransactionalOutputFormat#initialize(java.lang.String, int)
+	 */
+	@Override
+	public void initialize(String runId, int numPartitions)
+	{
+		this.runId = runId;
+		this.numPartitions = numPartitions;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.common.generic.io.OutputFormat#open(int)
+	 */
+	@Override
+	public void open(int taskNumber) throws IOException
+	{
+		if (this.runId == null) {
+			throw new IllegalStateException("The run that writes the cached data set '" + this.name + 
+				"' has not been initialized.");
+		}
+
+		this.partition = taskNumber - 1;
+		this.partitionFile = new Path(CachedDataSetCatalog.getPartitionDirectory(this.name),
+			CachedDataSetCatalog.getPartitionFileName(this.runId, this.partition));
+		final FileSystem fs = this.partitionFile.getFileSystem();
+		fs.mkdirs(this.partitionFile.getParent());
+		this.numRecords = 0;
+
+		// partitions on the local disk are served to the readers on other instances
+		this.serverPort = fs instanceof LocalFileSystem ?
+			CachedBlockServer.start(new File(CachedDataSetCatalog.getCacheDirectory().toUri().getPath())) :
+			CachedDataSetCatalog.NO_SERVER_PORT;
+
+		final Configuration partitionParameters = new Configuration();
+		partitionParameters.addAll(this.parameters, "");
+		partitionParameters.setString(FileOutputFormat.FILE_PARAMETER_KEY, this.partitionFile.toString());
+		partitionParameters.setLong(BinaryOutputFormat.BLOCK_SIZE_PARAMETER_KEY, CachedDataSetCatalog.BLOCK_SIZE);
+		this.partitionFormat.configure(partitionParameters);
+		this.partitionFormat.open(taskNumber);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.common.generic.io.OutputFormat#writeRecord(java.lang.Object)
+	 */
+	@Override
+	public void writeRecord(PactRecord record) throws IOException
+	{
+		this.partitionFormat.writeRecord(record);
+		this.numRecords++;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.common.generic.io.OutputFormat#close()
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		if (this.partitionFile != null) {
+			this.partitionFormat.close();
+		}
+	}
+
+	/**
+	 * Registers the partition written by this instance in the catalog. The data sink task calls this method after it
+	 * has closed the format without an error, such that partial partitions of failed or canceled tasks never become
+	 * visible.
+	 * 
+	 * @throws IOException Thrown, if the partition could not be registered.
+	 * @see eu.stratosphere.pact.common.generic.io.TransactionalOutputFormat#commit()
+	 */
+	@Override
+	public void commit() throws IOException
+	{
+		CachedDataSetCatalog.register(this.name, this.runId, this.partition, this.numPartitions, this.partitionFile,
+			this.numRecords, this.serverPort);
+	}
+
+	/**
+	 * Removes the partial partition written by this instance. The data sink task calls this method after it has
+	 * closed the format because of an error or canceling.
+	 * 
+	 * @throws IOException Thrown, if the partition could not be removed.
+	 * @see eu.stratosphere.pact.common.generic.io.TransactionalOutputFormat#abort()
+	 */
+	@Override
+	public void abort() throws IOException
+	{
+		if (this.partitionFile != null) {
+			this.partitionFile.getFileSystem().delete(this.partitionFile, false);
+		}
+	}
+
+	// ============================================================================================
+
+	/**
+	 * Creates a configuration builder that can be used to set the output format's parameters to the config in a
+	 * fluent fashion.
+	 * 
+	 * @return A config builder for setting parameters.
+	 */
+	public static ConfigBuilder configureCachedFormat(GenericDataSink target) {
+		return new ConfigBuilder(target.getParameters());
+	}
+
+	/**
+	 * A builder used to set parameters to the output format's configuration in a fluent way.
+	 */
+	public static class ConfigBuilder
+	{
+		/**
+		 * The configuration into which the parameters will be written.
+		 */
+		private final Configuration config;
+
+		/**
+		 * Creates a new builder for the given configuration.
+		 * 
+		 * @param targetConfig The configuration into which the parameters will be written.
+		 */
+		protected ConfigBuilder(Configuration targetConfig) {
+			this.config = targetConfig;
+		}
+
+		/**
+		 * Sets the name of the data set.
+		 * 
+		 * @param name The name under which later jobs read the data set.
+		 * @return The builder itself.
+		 */
+		public ConfigBuilder name(String name) {
+			this.config.setString(DATA_SET_NAME_PARAMETER_KEY, name);
+			return this;
+		}
+	}
+}
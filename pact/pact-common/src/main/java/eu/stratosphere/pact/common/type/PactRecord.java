@@ -1025,6 +1025,18 @@ public final class PactRecord implements Value
 		}
 	}
 	
+	/**
+	 * Gets the length of the binary representation of the record, as written by {@link #write(DataOutput)}
+	 * without the length prefix. If the binary representation is not in sync with the fields, it is updated first.
+	 * 
+	 * @return The length of the record's binary representation in bytes.
+	 */
+	public int getBinaryLength()
+	{
+		updateBinaryRepresenation();
+		return this.binaryLen;
+	}
+	
 	// --------------------------------------------------------------------------------------------
 	//                             Serialization
 	// --------------------------------------------------------------------------------------------
@@ -63,6 +63,75 @@ public final class PactConfigConstants {
 	 */
 	public static final String USE_NEPHELE_MULTICAST_KEY = "pact.runtime.multicast";
 	
+	/**
+	 * The key for the config parameter defining the number of threads that sort the buffers of a sorter,
+	 * unless the task configuration specifies a different value.
+	 */
+	public static final String SORT_PARALLELISM_KEY = "pact.runtime.sort.parallelism";
+	
+	/**
+	 * The key for the config parameter defining whether hash joins fall back to a different strategy for the
+	 * partitions that do not fit into memory after the first partitioning pass, unless the task configuration
+	 * specifies a different value.
+	 */
+	public static final String HASH_JOIN_FALLBACK_KEY = "pact.runtime.hash.fallback";
+	
+	/**
+	 * The key for the config parameter defining whether the compiler lets the local instances of a hash join,
+	 * whose build side is broadcasted, share a single hash table per task manager, instead of building one
+	 * table per instance. A table is only shared, if the estimated size of its build side fits into half of the
+	 * memory of an instance.
+	 */
+	public static final String HASH_JOIN_SHARED_BROADCAST_KEY = "pact.compiler.hash.sharedbroadcast";
+	
+	// ------------------------------ Statistics ------------------------------
+	
+	/**
+	 * The key for the config parameter defining the directory in which the statistics observed during the
+	 * execution of jobs are persisted, such that the compiler uses them for later compilations. If the
+	 * parameter is not set, no statistics are collected.
+	 */
+	public static final String STATISTICS_DIRECTORY_KEY = "pact.statistics.directory";
+	
+	// ------------------------------- Compiler -------------------------------
+	
+	/**
+	 * The key for the config parameter defining the cost profile file, as written by the cost profile calibrator.
+	 * If the parameter is set, the compiler weighs the local strategies with the calibrated costs of the profile,
+	 * otherwise it uses fixed costs.
+	 */
+	public static final String COST_PROFILE_FILE_KEY = "pact.compiler.costprofile";
+	
+	/**
+	 * The key for the config parameter defining whether the compiler detects the skewed keys of Matches whose
+	 * inputs are both hash partitioned. If enabled, both inputs are sampled before they are partitioned, and
+	 * the keys that are frequent in the sample are spread over all instances on one input and replicated on the
+	 * other. The records of both inputs are materialized until the sample is complete. Keys that are declared
+	 * as skewed on a Match are used instead of a detection.
+	 */
+	public static final String SKEW_DETECTION_KEY = "pact.compiler.skew.detection";
+	
+	// -------------------------- Cached Data Sets ----------------------------
+	
+	/**
+	 * The key for the config parameter defining the directory in which the task managers keep the partitions of
+	 * cached data sets. A directory on the local file system keeps the partitions on the instances that wrote them.
+	 */
+	public static final String CACHE_DIRECTORY_KEY = "pact.cache.directory";
+	
+	/**
+	 * The key for the config parameter defining the directory of the catalog that records the location of the
+	 * partitions of cached data sets. The catalog must be accessible from all instances and the job manager, so it
+	 * must be set whenever the job manager does not run on the local machine.
+	 */
+	public static final String CACHE_CATALOG_DIRECTORY_KEY = "pact.cache.catalog";
+	
+	/**
+	 * The key for the config parameter defining the port on which the task managers serve the blocks of their
+	 * cached partitions to readers on other instances.
+	 */
+	public static final String CACHE_SERVER_PORT_KEY = "pact.cache.port";
+	
 	// ----------------------------- Web Frontend -----------------------------
 
 	/**
@@ -139,6 +208,60 @@ public final class PactConfigConstants {
 	 */
 	public static final boolean  DEFAULT_USE_NEPHELE_MULTICAST = false;
 	
+	/**
+	 * The default number of threads that sort the buffers of a sorter.
+	 */
+	public static final int DEFAULT_SORT_PARALLELISM = 1;
+	
+	/**
+	 * The default setting for the hash join fallback.
+	 */
+	public static final boolean DEFAULT_HASH_JOIN_FALLBACK = true;
+	
+	/**
+	 * The default setting for sharing the hash tables of broadcast hash joins.
+	 */
+	public static final boolean DEFAULT_HASH_JOIN_SHARED_BROADCAST = false;
+	
+	// ------------------------------ Statistics ------------------------------
+	
+	/**
+	 * The default directory for the observed runtime statistics. Collecting statistics is disabled by default.
+	 */
+	public static final String DEFAULT_STATISTICS_DIRECTORY = null;
+	
+	// ------------------------------- Compiler -------------------------------
+	
+	/**
+	 * The default cost profile file. Calibrated costs are disabled by default.
+	 */
+	public static final String DEFAULT_COST_PROFILE_FILE = null;
+	
+	/**
+	 * The default setting for the detection of skewed keys. The detection is disabled by default.
+	 */
+	public static final boolean DEFAULT_SKEW_DETECTION = false;
+	
+	// -------------------------- Cached Data Sets ----------------------------
+	
+	/**
+	 * The default directory for the partitions of cached data sets.
+	 */
+	public static final String DEFAULT_CACHE_DIRECTORY = (System.getProperty("java.io.tmpdir") == null ? "/tmp" : 
+		System.getProperty("java.io.tmpdir")) + "/pact-cache";
+	
+	/**
+	 * The default directory of the catalog of cached data sets. There is no default, since the catalog must be shared
+	 * by all instances. Only if the job manager runs on the local machine, the catalog is kept in the cache directory.
+	 */
+	public static final String DEFAULT_CACHE_CATALOG_DIRECTORY = null;
+	
+	/**
+	 * The default port to serve the blocks of cached partitions on. The default picks any free port, which the
+	 * writers record in the catalog.
+	 */
+	public static final int DEFAULT_CACHE_SERVER_PORT = 0;
+	
 	// ----------------------------- Web Frontend -----------------------------
 
 	/**
@@ -0,0 +1,293 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.pact.common.io;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.configuration.ConfigConstants;
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
+import eu.stratosphere.nephele.fs.FileInputSplit;
+import eu.stratosphere.nephele.fs.FileSystem;
+import eu.stratosphere.nephele.fs.Path;
+import eu.stratosphere.pact.common.io.statistics.BaseStatistics;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.common.util.PactConfigConstants;
+
+/**
+ * Tests {@link CachedOutputFormat} and {@link CachedInputFormat}.
+ */
+public class CachedFormatTest
+{
+	private String name;
+
+	@Before
+	public void createName() {
+		this.name = "test-" + Long.toHexString(System.nanoTime());
+	}
+
+	@After
+	public void removeDataSet() throws IOException {
+		final Path partitionDir = CachedDataSetCatalog.getPartitionDirectory(this.name);
+		partitionDir.getFileSystem().delete(partitionDir, true);
+		final Path catalogDir = new Path(new Path(partitionDir.getParent(), ".catalog"), this.name);
+		catalogDir.getFileSystem().delete(catalogDir, true);
+	}
+
+	/**
+	 * Writes a data set with several partitions and reads it back.
+	 */
+	@Test
+	public void testWriteAndRead() throws IOException
+	{
+		write("run1", 3, 1000, true);
+
+		final CachedInputFormat input = createInputFormat();
+		final FileInputSplit[] splits = input.createInputSplits(1);
+		Assert.assertEquals(3, splits.length);
+
+		final String localHost = InetAddress.getLocalHost().getHostName();
+		for (FileInputSplit split : splits) {
+			Assert.assertEquals(1, split.getHostNames().length);
+			Assert.assertEquals(localHost, split.getHostNames()[0]);
+		}
+
+		Assert.assertEquals(3000, readAll(input, splits));
+
+		final BaseStatistics statistics = input.getStatistics(null);
+		Assert.assertNotNull(statistics);
+		Assert.assertEquals(3000, statistics.getNumberOfRecords());
+	}
+
+	/**
+	 * Tests that a data set cannot be read while partitions of its run are missing.
+	 */
+	@Test
+	public void testIncompleteRun() throws IOException
+	{
+		write("run1", 2, 100, false);
+
+		try {
+			createInputFormat().createInputSplits(1);
+			Assert.fail("The incomplete run was not detected.");
+		} catch (IOException ioex) {
+			// expected
+		}
+	}
+
+	/**
+	 * Tests that a data set is read from its newest complete run, while a newer run is still incomplete.
+	 */
+	@Test
+	public void testIncompleteRunDoesNotReplace() throws Exception
+	{
+		write("run1", 2, 100, true);
+		// the catalog orders the runs by modification time, which may have a resolution of a second
+		Thread.sleep(1100);
+		write("run2", 3, 50, false);
+
+		final CachedInputFormat input = createInputFormat();
+		final FileInputSplit[] splits = input.createInputSplits(1);
+		Assert.assertEquals(2, splits.length);
+		Assert.assertEquals(200, readAll(input, splits));
+	}
+
+	/**
+	 * Tests that writing a data set again replaces it, even with a different degree of parallelism, and that the
+	 * partitions of a run are removed once two newer runs are complete.
+	 */
+	@Test
+	public void testReplace() throws Exception
+	{
+		write("run1", 4, 100, true);
+		// the catalog orders the runs by modification time, which may have a resolution of a second
+		Thread.sleep(1100);
+		write("run2", 2, 50, true);
+
+		final CachedInputFormat input = createInputFormat();
+		FileInputSplit[] splits = input.createInputSplits(1);
+		Assert.assertEquals(2, splits.length);
+		Assert.assertEquals(100, readAll(input, splits));
+
+		// the partitions of the first run are kept for the jobs that may still read them
+		final Path partitionDir = CachedDataSetCatalog.getPartitionDirectory(this.name);
+		final FileSystem fs = partitionDir.getFileSystem();
+		Assert.assertEquals(6, fs.listStatus(partitionDir).length);
+
+		Thread.sleep(1100);
+		write("run3", 3, 10, true);
+
+		splits = input.createInputSplits(1);
+		Assert.assertEquals(3, splits.length);
+		Assert.assertEquals(30, readAll(input, splits));
+
+		// the partitions of the first run were removed
+		Assert.assertEquals(5, fs.listStatus(partitionDir).length);
+		try {
+			CachedDataSetCatalog.lookupPartition(this.name, new Path(partitionDir,
+				CachedDataSetCatalog.getPartitionFileName("run1", 0)));
+			Assert.fail("The registration of the removed partition was kept.");
+		} catch (IOException ioex) {
+			// expected
+		}
+	}
+
+	/**
+	 * Tests that the blocks of a partition are served to other instances.
+	 */
+	@Test
+	public void testFetchBlock() throws IOException
+	{
+		write("run1", 2, 1000, true);
+
+		final FileInputSplit[] splits = createInputFormat().createInputSplits(1);
+		for (FileInputSplit split : splits) {
+			final CachedDataSetCatalog.Partition partition = CachedDataSetCatalog.lookupPartition(this.name,
+				split.getPath());
+			Assert.assertTrue(partition.getPort() > 0);
+
+			final File block = File.createTempFile("cached-format-test", ".block");
+			try {
+				CachedBlockServer.fetch(partition.getHostName(), partition.getPort(), this.name,
+					split.getPath().getName(), split.getStart(), split.getLength(), block);
+				Assert.assertEquals(split.getLength(), block.length());
+
+				final byte[] expected = new byte[(int) split.getLength()];
+				final DataInputStream in = new DataInputStream(split.getPath().getFileSystem().open(split.getPath()));
+				try {
+					in.readFully(expected);
+				} finally {
+					in.close();
+				}
+				final byte[] fetched = new byte[expected.length];
+				final DataInputStream fetchedIn = new DataInputStream(new FileInputStream(block));
+				try {
+					fetchedIn.readFully(fetched);
+				} finally {
+					fetchedIn.close();
+				}
+				Assert.assertArrayEquals(expected, fetched);
+			} finally {
+				block.delete();
+			}
+		}
+	}
+
+	/**
+	 * Tests that the formats require a configured catalog, if the job manager does not run locally.
+	 */
+	@Test
+	public void testCatalogRequiredForRemoteJobManager()
+	{
+		final Configuration config = new Configuration();
+		config.setString(ConfigConstants.JOB_MANAGER_IPC_ADDRESS_KEY, "192.0.2.1");
+		GlobalConfiguration.includeConfiguration(config);
+		try {
+			createInputFormat();
+			Assert.fail("The missing catalog directory was not detected.");
+		} catch (IllegalArgumentException iaex) {
+			Assert.assertTrue(iaex.getMessage().contains(PactConfigConstants.CACHE_CATALOG_DIRECTORY_KEY));
+		} finally {
+			config.setString(ConfigConstants.JOB_MANAGER_IPC_ADDRESS_KEY, "localhost");
+			GlobalConfiguration.includeConfiguration(config);
+		}
+	}
+
+	/**
+	 * Tests that a split fails with a clear error, if its partition is neither present on the instance, nor on the
+	 * instance that registered it.
+	 */
+	@Test
+	public void testMissingPartition() throws IOException
+	{
+		write("run1", 2, 100, true);
+
+		final CachedInputFormat input = createInputFormat();
+		final FileInputSplit[] splits = input.createInputSplits(1);
+		splits[0].getPath().getFileSystem().delete(splits[0].getPath(), false);
+
+		try {
+			input.open(splits[0]);
+			Assert.fail("The missing partition was not detected.");
+		} catch (IOException ioex) {
+			Assert.assertTrue(ioex.getMessage().contains(this.name));
+		}
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	private void write(String runId, int numPartitions, int recordsPerPartition, boolean registerAll)
+	throws IOException
+	{
+		final Configuration parameters = new Configuration();
+		parameters.setString(CachedOutputFormat.DATA_SET_NAME_PARAMETER_KEY, this.name);
+
+		final PactRecord record = new PactRecord();
+		for (int partition = 0; partition < numPartitions; partition++) {
+			final CachedOutputFormat output = new CachedOutputFormat();
+			output.configure(parameters);
+			output.initialize(runId, numPartitions);
+			output.open(partition + 1);
+			for (int i = 0; i < recordsPerPartition; i++) {
+				record.setField(0, new PactInteger(partition * recordsPerPartition + i));
+				output.writeRecord(record);
+			}
+			output.close();
+			if (registerAll || partition > 0) {
+				output.commit();
+			}
+		}
+	}
+
+	private CachedInputFormat createInputFormat()
+	{
+		final Configuration parameters = new Configuration();
+		parameters.setString(CachedInputFormat.DATA_SET_NAME_PARAMETER_KEY, this.name);
+		final CachedInputFormat input = new CachedInputFormat();
+		input.configure(parameters);
+		return input;
+	}
+
+	private int readAll(CachedInputFormat input, FileInputSplit[] splits) throws IOException
+	{
+		final PactRecord record = new PactRecord();
+		final boolean[] seen = new boolean[100000];
+		int count = 0;
+		for (FileInputSplit split : splits) {
+			input.open(split);
+			while (!input.reachedEnd()) {
+				Assert.assertTrue(input.nextRecord(record));
+				final int value = record.getField(0, PactInteger.class).getValue();
+				Assert.assertFalse(seen[value]);
+				seen[value] = true;
+				count++;
+			}
+			input.close();
+		}
+		return count;
+	}
+}
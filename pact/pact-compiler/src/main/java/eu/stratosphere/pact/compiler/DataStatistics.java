@@ -15,15 +15,23 @@
 
 package eu.stratosphere.pact.compiler;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
 import eu.stratosphere.pact.common.io.statistics.BaseStatistics;
+import eu.stratosphere.pact.common.util.PactConfigConstants;
+import eu.stratosphere.pact.runtime.statistics.OperatorStatistics;
+import eu.stratosphere.pact.runtime.statistics.RuntimeStatisticsStore;
 
 /**
  * The collection of access methods that can be used to retrieve statistical information about the
- * data processed in a job. Currently this method acts as an entry point only for obtaining cached
- * statistics.
+ * data processed in a job. Currently this method acts as an entry point for obtaining cached
+ * statistics and the statistics that previous jobs observed for their operators at runtime.
  * <p>
  * This class is thread safe.
  * 
@@ -31,16 +39,42 @@ import eu.stratosphere.pact.common.io.statistics.BaseStatistics;
  */
 public class DataStatistics
 {
+	private static final Log LOG = LogFactory.getLog(DataStatistics.class);
+	
 	private final Map<String, BaseStatistics> baseStatisticsCache;
 	
+	private final Map<String, OperatorStatistics> observedStatisticsCache;
+	
+	private final Map<String, StoredStatistics> storedStatisticsCache;
+	
+	private final RuntimeStatisticsStore observedStatisticsStore;
+	
 	// --------------------------------------------------------------------------------------------
 	
 	/**
-	 * Creates a new statistics object, with an empty cache. 
+	 * Creates a new statistics object, with an empty cache. The observed runtime statistics are read from
+	 * the directory configured under {@link PactConfigConstants#STATISTICS_DIRECTORY_KEY}, if any.
 	 */
 	public DataStatistics()
+	{
+		this(GlobalConfiguration.getString(PactConfigConstants.STATISTICS_DIRECTORY_KEY,
+			PactConfigConstants.DEFAULT_STATISTICS_DIRECTORY));
+	}
+	
+	/**
+	 * Creates a new statistics object, with an empty cache, that reads the observed runtime statistics
+	 * from the given directory.
+	 * 
+	 * @param observedStatisticsDirectory The directory of the observed statistics, or <code>null</code>,
+	 *                                    if no observed statistics are available.
+	 */
+	public DataStatistics(String observedStatisticsDirectory)
 	{
 		this.baseStatisticsCache = new HashMap<String, BaseStatistics>();
+		this.observedStatisticsCache = new HashMap<String, OperatorStatistics>();
+		this.storedStatisticsCache = new HashMap<String, StoredStatistics>();
+		this.observedStatisticsStore = observedStatisticsDirectory == null ? null :
+			new RuntimeStatisticsStore(observedStatisticsDirectory);
 	}
 	
 	// --------------------------------------------------------------------------------------------
@@ -70,4 +104,81 @@ public class DataStatistics
 			this.baseStatisticsCache.put(identifyer, statistics);
 		}
 	}
+	
+	/**
+	 * Gets the statistics that previous executions observed for the operator with the given signature.
+	 * Statistics cached through {@link #cacheObservedStatistics(OperatorStatistics, String)} take precedence.
+	 * Otherwise, the statistics are read from the statistics directory and cached until the statistics of the
+	 * operator in the directory change, such that later compilations see the statistics of runs that finished
+	 * in the meantime.
+	 * 
+	 * @param signature The signature of the operator.
+	 * @return The observed statistics, or <code>null</code>, if none are available.
+	 */
+	public OperatorStatistics getObservedStatistics(String signature)
+	{
+		synchronized (this.observedStatisticsCache) {
+			final OperatorStatistics cached = this.observedStatisticsCache.get(signature);
+			if (cached != null || this.observedStatisticsStore == null) {
+				return cached;
+			}
+			
+			try {
+				// the modification time is taken before reading, such that changes during the read are seen later
+				final long modificationTime = this.observedStatisticsStore.getModificationTime(signature);
+				if (modificationTime < 0) {
+					this.storedStatisticsCache.remove(signature);
+					return null;
+				}
+				
+				final StoredStatistics stored = this.storedStatisticsCache.get(signature);
+				if (stored != null && stored.modificationTime == modificationTime) {
+					return stored.statistics;
+				}
+				
+				final OperatorStatistics statistics = this.observedStatisticsStore.read(signature);
+				if (statistics == null) {
+					this.storedStatisticsCache.remove(signature);
+				} else {
+					this.storedStatisticsCache.put(signature, new StoredStatistics(statistics, modificationTime));
+				}
+				return statistics;
+			} catch (IOException ioex) {
+				LOG.warn("Could not read the observed statistics for operator " + signature + ": " +
+					ioex.getMessage());
+				return null;
+			}
+		}
+	}
+	
+	/**
+	 * Caches the given observed statistics. They are later retrievable under the given operator signature.
+	 * 
+	 * @param statistics The statistics to cache.
+	 * @param signature The signature of the operator.
+	 */
+	public void cacheObservedStatistics(OperatorStatistics statistics, String signature)
+	{
+		synchronized (this.observedStatisticsCache) {
+			this.observedStatisticsCache.put(signature, statistics);
+		}
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Statistics read from the statistics directory, together with the modification time they belong to.
+	 */
+	private static final class StoredStatistics
+	{
+		private final OperatorStatistics statistics;
+		
+		private final long modificationTime;
+		
+		private StoredStatistics(OperatorStatistics statistics, long modificationTime)
+		{
+			this.statistics = statistics;
+			this.modificationTime = modificationTime;
+		}
+	}
 }
@@ -15,6 +15,7 @@
 
 package eu.stratosphere.pact.compiler;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
@@ -47,7 +48,9 @@ import eu.stratosphere.pact.common.contract.ReduceContract;
 import eu.stratosphere.pact.common.plan.Plan;
 import eu.stratosphere.pact.common.plan.Visitor;
 import eu.stratosphere.pact.common.util.PactConfigConstants;
+import eu.stratosphere.pact.compiler.costs.CalibratedCostEstimator;
 import eu.stratosphere.pact.compiler.costs.CostEstimator;
+import eu.stratosphere.pact.compiler.costs.CostProfile;
 import eu.stratosphere.pact.compiler.costs.FixedSizeClusterCostEstimator;
 import eu.stratosphere.pact.compiler.plan.CoGroupNode;
 import eu.stratosphere.pact.compiler.plan.CrossNode;
@@ -164,6 +167,16 @@ public class PactCompiler {
 	 */
 	public static final String HINT_LOCAL_STRATEGY_COMBINING_SORT = "LOCAL_STRATEGY_COMBINING_SORT";
 	
+	/**
+	 * Value for the local strategy compiler hint that enforces a <b>hash based</b> local strategy.
+	 * The data is grouped in a hash table and the combine method is applied whenever a record with an already
+	 * contained key is inserted. Requires the stub to be combinable.
+	 * For example, a <i>Reduce</i> contract will group the data without sorting it.
+	 * 
+	 * @see #HINT_LOCAL_STRATEGY
+	 */
+	public static final String HINT_LOCAL_STRATEGY_HASH_AGGREGATE = "LOCAL_STRATEGY_HASH_AGGREGATE";
+	
 	/**
 	 * Value for the local strategy compiler hint that enforces a <b>sort merge based</b> local strategy on both
 	 * inputs with subsequent merging of inputs. 
@@ -311,8 +324,17 @@ public class PactCompiler {
 	 */
 	public static final String HINT_LOCAL_STRATEGY_NESTEDLOOP_BLOCKED_OUTER_SECOND = "LOCAL_STRATEGY_NESTEDLOOP_BLOCKED_OUTER_SECOND";
 
+	/**
+	 * Compiler hint key for the number of threads that sort the buffers of a sort based local strategy.
+	 * The value is a positive integer. It applies to the sorts of <i>Reduce</i> contracts and of data sinks. 
+	 * If the hint is not set, the task managers use their configured sort parallelism.
+	 */
+	public static final String HINT_SORT_PARALLELISM = "LOCAL_STRATEGY_SORT_PARALLELISM";
+
 	public static final int DEFAULT_TEMP_TASK_MEMORY = 4; // the amount of memory for TempTasks in MB
 	
+	public static final long HASH_AGGREGATION_MAX_TABLE_SIZE = 16 * 1024 * 1024; // the max. estimated size of a hash aggregation table in bytes
+	
 	/**
 	 * The log handle that is used by the compiler to log messages.
 	 */
@@ -361,20 +383,20 @@ public class PactCompiler {
 	 * Creates a new compiler instance. The compiler has no access to statistics about the
 	 * inputs and can hence not determine any properties. It will perform all optimization with
 	 * unknown sizes and default to the most robust strategy to fulfill the PACTs. The
-	 * compiler also uses conservative default estimates for the operator costs, since
-	 * it has no access to another cost estimator.
+	 * compiler uses the cost estimator defined by the global configuration, see
+	 * {@link #createConfiguredCostEstimator()}.
 	 * <p>
 	 * The address of the job manager (to obtain system characteristics) is determined via the global configuration.
 	 */
 	public PactCompiler() {
-		this(null, new FixedSizeClusterCostEstimator());
+		this(null, createConfiguredCostEstimator());
 	}
 
 	/**
 	 * Creates a new compiler instance that uses the statistics object to determine properties about the input.
 	 * Given those statistics, the compiler can make better choices for the execution strategies.
-	 * as if no filesystem was given. The compiler uses conservative default estimates for the operator costs, since
-	 * it has no access to another cost estimator.
+	 * as if no filesystem was given. The compiler uses the cost estimator defined by the global configuration, see
+	 * {@link #createConfiguredCostEstimator()}.
 	 * <p>
 	 * The address of the job manager (to obtain system characteristics) is determined via the global configuration.
 	 * 
@@ -382,7 +404,7 @@ public class PactCompiler {
 	 *        The statistics to be used to determine the input properties.
 	 */
 	public PactCompiler(DataStatistics stats) {
-		this(stats, new FixedSizeClusterCostEstimator());
+		this(stats, createConfiguredCostEstimator());
 	}
 
 	/**
@@ -477,6 +499,27 @@ public class PactCompiler {
 			this.jobManagerAddress = new InetSocketAddress(address, port);
 		}
 	}
+	
+	/**
+	 * Creates the cost estimator defined by the global configuration. If a cost profile file is configured, the
+	 * estimator uses the calibrated costs of that profile. Otherwise, or if the profile cannot be loaded, the
+	 * estimator uses fixed costs.
+	 * 
+	 * @return The cost estimator defined by the global configuration.
+	 */
+	public static CostEstimator createConfiguredCostEstimator()
+	{
+		final String profileFile = GlobalConfiguration.getString(PactConfigConstants.COST_PROFILE_FILE_KEY,
+			PactConfigConstants.DEFAULT_COST_PROFILE_FILE);
+		if (profileFile != null) {
+			try {
+				return new CalibratedCostEstimator(CostProfile.load(new File(profileFile)));
+			} catch (IOException ioex) {
+				LOG.warn("Could not load the cost profile, using fixed costs: " + ioex.getMessage());
+			}
+		}
+		return new FixedSizeClusterCostEstimator();
+	}
 
 	// ------------------------------------------------------------------------
 	//                               Compilation
@@ -861,6 +904,8 @@ public class PactCompiler {
 			// now compute the output estimates
 			if (this.computeEstimates) {
 				n.computeOutputEstimates(this.statistics);
+				// statistics observed by earlier executions of the operator override the estimates
+				n.applyObservedStatistics(this.statistics);
 			}
 		}
 
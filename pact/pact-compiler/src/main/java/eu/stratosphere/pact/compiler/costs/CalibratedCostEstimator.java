@@ -0,0 +1,323 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.pact.compiler.costs;
+
+import eu.stratosphere.pact.compiler.Costs;
+import eu.stratosphere.pact.compiler.plan.OptimizerNode;
+import eu.stratosphere.pact.compiler.plan.PactConnection;
+
+/**
+ * A cost estimator that weighs the local strategies with the rates of a {@link CostProfile}, which has been measured
+ * on the instance type that executes the job. In contrast to the {@link FixedSizeClusterCostEstimator}, which only
+ * counts the bytes that are written to and read from disk, this estimator adds the CPU time that sorting, hashing and
+ * deserializing the records takes, so that the choice between hybrid hash, sort-merge and nested loops strategies
+ * reflects the actual hardware.
+ * <p>
+ * The estimator keeps the I/O volume assumptions of the {@link FixedSizeClusterCostEstimator}. The estimated time of a
+ * local strategy is converted back into the unit of the secondary storage costs, i.e. the number of bytes that one
+ * could read or write from disk in the same time. That way, the costs stay comparable with those of the shipping
+ * strategies, which are inherited unchanged: Since the network costs are compared before all other costs, a
+ * calibrated network rate would not change the ranking of the shipping strategies.
+ */
+public class CalibratedCostEstimator extends FixedSizeClusterCostEstimator
+{
+	private final CostProfile profile;
+	
+	/**
+	 * Creates a new cost estimator that uses the rates of the given profile.
+	 * 
+	 * @param profile The cost profile of the instance type.
+	 */
+	public CalibratedCostEstimator(CostProfile profile)
+	{
+		if (profile == null) {
+			throw new NullPointerException("The cost profile must not be null.");
+		}
+		this.profile = profile;
+	}
+	
+	/**
+	 * Gets the cost profile used by this estimator.
+	 * 
+	 * @return The cost profile.
+	 */
+	public CostProfile getProfile() {
+		return this.profile;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.compiler.costs.CostEstimator#getLocalSortCost(
+	 * 	eu.stratosphere.pact.compiler.plan.OptimizerNode, 
+	 * 	eu.stratosphere.pact.compiler.plan.PactConnection, 
+	 * 	eu.stratosphere.pact.compiler.Costs)
+	 */
+	@Override
+	public void getLocalSortCost(OptimizerNode node, PactConnection input, Costs costs) {
+		costs.setNetworkCost(0);
+
+		final long s = getInputSize(input);
+		costs.setSecondaryStorageCost(s < 0 ? -1 : toStorageCost(sortTime(s) + scanTime(s)));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.compiler.costs.CostEstimator#getLocalHashAggregateCost(
+	 * 	eu.stratosphere.pact.compiler.plan.OptimizerNode, 
+	 * 	eu.stratosphere.pact.compiler.plan.PactConnection, 
+	 * 	eu.stratosphere.pact.compiler.Costs)
+	 */
+	@Override
+	public void getLocalHashAggregateCost(OptimizerNode node, PactConnection input, Costs costs) {
+		costs.setNetworkCost(0);
+
+		// the aggregated data is expected to fit into memory, so there is only the cost of the hash table
+		final long s = getInputSize(input);
+		costs.setSecondaryStorageCost(s < 0 ? -1 : toStorageCost(s * this.profile.getHashBuildRate()));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.compiler.costs.CostEstimator#getLocalDoubleSortMergeCost(
+	 * 	eu.stratosphere.pact.compiler.plan.OptimizerNode, 
+	 * 	eu.stratosphere.pact.compiler.plan.PactConnection, 
+	 * 	eu.stratosphere.pact.compiler.plan.PactConnection, 
+	 * 	eu.stratosphere.pact.compiler.Costs)
+	 */
+	@Override
+	public void getLocalDoubleSortMergeCost(OptimizerNode node, PactConnection input1, PactConnection input2,
+			Costs costs)
+	{
+		costs.setNetworkCost(0);
+
+		final long s1 = getInputSize(input1);
+		final long s2 = getInputSize(input2);
+		costs.setSecondaryStorageCost(s1 < 0 || s2 < 0 ? -1 :
+			toStorageCost(sortTime(s1) + sortTime(s2) + scanTime(s1 + s2)));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.compiler.costs.CostEstimator#getLocalSingleSortMergeCost(
+	 * 	eu.stratosphere.pact.compiler.plan.OptimizerNode, 
+	 * 	eu.stratosphere.pact.compiler.plan.PactConnection, 
+	 * 	eu.stratosphere.pact.compiler.plan.PactConnection, 
+	 * 	eu.stratosphere.pact.compiler.Costs)
+	 */
+	@Override
+	public void getLocalSingleSortMergeCost(OptimizerNode node, PactConnection unsortedInput,
+			PactConnection sortedInput, Costs costs)
+	{
+		costs.setNetworkCost(0);
+
+		final long s1 = getInputSize(unsortedInput);
+		final long s2 = Math.max(getInputSize(sortedInput), 0);
+		costs.setSecondaryStorageCost(s1 < 0 ? -1 : toStorageCost(sortTime(s1) + scanTime(s1 + s2)));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.compiler.costs.CostEstimator#getLocalMergeCost(
+	 * 	eu.stratosphere.pact.compiler.plan.OptimizerNode, 
+	 * 	eu.stratosphere.pact.compiler.plan.PactConnection, 
+	 * 	eu.stratosphere.pact.compiler.plan.PactConnection, 
+	 * 	eu.stratosphere.pact.compiler.Costs)
+	 */
+	@Override
+	public void getLocalMergeCost(OptimizerNode node, PactConnection input1, PactConnection input2, Costs costs) {
+		costs.setNetworkCost(0);
+
+		// inputs are sorted, so there is only the cost of merging them. unknown sizes count as free, as before
+		final long s1 = Math.max(getInputSize(input1), 0);
+		final long s2 = Math.max(getInputSize(input2), 0);
+		costs.setSecondaryStorageCost(toStorageCost(scanTime(s1 + s2)));
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.compiler.costs.CostEstimator#getLocalSortSelfNestedLoopCost(
+	 * 	eu.stratosphere.pact.compiler.plan.OptimizerNode, 
+	 * 	eu.stratosphere.pact.compiler.plan.PactConnection, 
+	 * 	int, 
+	 * 	eu.stratosphere.pact.compiler.Costs)
+	 */
+	@Override
+	public void getLocalSortSelfNestedLoopCost(OptimizerNode node, PactConnection input, int bufferSize,
+			Costs costs)
+	{
+		costs.setNetworkCost(0);
+
+		final long is = getInputSize(input);
+		final long ic = input.getSourcePact().getEstimatedNumRecords();
+		final long loops = ic < 0 ? 1000 : ic / bufferSize;
+		
+		// the sort, plus writing and reading the spilling resettable iterators, plus one pass per loop
+		costs.setSecondaryStorageCost(is < 0 ? -1 : toStorageCost(sortTime(is) + 2 * is * this.profile.getIORate() +
+			((double) loops) * is * (this.profile.getSpillReadRate() + this.profile.getScanRate())));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.compiler.costs.CostEstimator#getLocalSelfNestedLoopCost(
+	 * 	eu.stratosphere.pact.compiler.plan.OptimizerNode, 
+	 * 	eu.stratosphere.pact.compiler.plan.PactConnection, 
+	 * 	int, 
+	 * 	eu.stratosphere.pact.compiler.Costs)
+	 */
+	@Override
+	public void getLocalSelfNestedLoopCost(OptimizerNode node, PactConnection input, int bufferSize, Costs costs) {
+		
+		final long is = getInputSize(input);
+		final long ic = input.getSourcePact().getEstimatedNumRecords();
+		final long loops = ic == -1 ? 10 : ic / bufferSize;
+		
+		// writing and reading the spilling resettable iterator, plus one pass per loop
+		costs.setSecondaryStorageCost(is < 0 ? -1 : toStorageCost(2 * is * this.profile.getIORate() +
+			((double) loops) * is * (this.profile.getSpillReadRate() + this.profile.getScanRate())));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.compiler.costs.CostEstimator#getHybridHashCosts(
+	 * 	eu.stratosphere.pact.compiler.plan.OptimizerNode, 
+	 * 	eu.stratosphere.pact.compiler.plan.PactConnection, 
+	 * 	eu.stratosphere.pact.compiler.plan.PactConnection, 
+	 * 	eu.stratosphere.pact.compiler.Costs)
+	 */
+	@Override
+	public void getHybridHashCosts(OptimizerNode node, PactConnection buildSideInput, PactConnection probeSideInput,
+			Costs costs)
+	{
+		costs.setNetworkCost(0);
+
+		final long bs = getInputSize(buildSideInput);
+		final long ps = getInputSize(probeSideInput);
+		
+		// as in the fixed estimator, we assume the I/O of spilled partitions: two operations per block of the
+		// build side and one of the probe side
+		costs.setSecondaryStorageCost(bs < 0 || ps < 0 ? -1 :
+			toStorageCost(hashTime(bs, ps) + (2 * bs + ps) * this.profile.getIORate()));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.compiler.costs.CostEstimator#getMainMemHashCosts(
+	 * 	eu.stratosphere.pact.compiler.plan.OptimizerNode, 
+	 * 	eu.stratosphere.pact.compiler.plan.PactConnection, 
+	 * 	eu.stratosphere.pact.compiler.plan.PactConnection, 
+	 * 	eu.stratosphere.pact.compiler.Costs)
+	 */
+	@Override
+	public void getMainMemHashCosts(OptimizerNode node, PactConnection buildSideInput, PactConnection probeSideInput,
+			Costs target)
+	{
+		target.setNetworkCost(0);
+
+		final long bs = Math.max(getInputSize(buildSideInput), 0);
+		final long ps = Math.max(getInputSize(probeSideInput), 0);
+		target.setSecondaryStorageCost(toStorageCost(hashTime(bs, ps)));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.compiler.costs.CostEstimator#getStreamedNestedLoopsCosts(
+	 * 	eu.stratosphere.pact.compiler.plan.OptimizerNode, 
+	 * 	eu.stratosphere.pact.compiler.plan.PactConnection, 
+	 * 	eu.stratosphere.pact.compiler.plan.PactConnection, 
+	 * 	eu.stratosphere.pact.compiler.Costs)
+	 */
+	@Override
+	public void getStreamedNestedLoopsCosts(OptimizerNode node, PactConnection outerSide, PactConnection innerSide,
+			int bufferSize, Costs costs)
+	{
+		costs.setNetworkCost(0);
+
+		final long is = getInputSize(innerSide);
+		final long oc = outerSide.getSourcePact().getEstimatedNumRecords() * outerSide.getReplicationFactor();
+		
+		if (is < 0 || oc < 0) {
+			costs.setSecondaryStorageCost(-1);
+			return;
+		}
+		
+		// the inner side is scanned once per outer record, from disk unless it can be cached
+		final boolean cached = is < (bufferSize * innerSide.getReplicationFactor());
+		final double passRate = cached ? this.profile.getScanRate() :
+			this.profile.getSpillReadRate() + this.profile.getScanRate();
+		costs.setSecondaryStorageCost(toStorageCost(((double) oc) * is * passRate));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.compiler.costs.CostEstimator#getBlockNestedLoopsCosts(
+	 * 	eu.stratosphere.pact.compiler.plan.OptimizerNode, 
+	 * 	eu.stratosphere.pact.compiler.plan.PactConnection, 
+	 * 	eu.stratosphere.pact.compiler.plan.PactConnection, 
+	 * 	int, 
+	 * 	eu.stratosphere.pact.compiler.Costs)
+	 */
+	@Override
+	public void getBlockNestedLoopsCosts(OptimizerNode node, PactConnection outerSide, PactConnection innerSide,
+			int blockSize, Costs costs)
+	{
+		costs.setNetworkCost(0);
+
+		final long is = getInputSize(innerSide);
+		final long os = getInputSize(outerSide);
+		final long loops = Math.max(os < 0 ? 1000 : os / blockSize, 1);
+
+		// the inner side is read from disk once per block of the outer side
+		costs.setSecondaryStorageCost(is < 0 ? -1 : toStorageCost(((double) loops) * is *
+			(this.profile.getSpillReadRate() + this.profile.getScanRate())));
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	private static long getInputSize(PactConnection input)
+	{
+		final long size = input.getSourcePact().getEstimatedOutputSize();
+		return size < 0 ? -1 : size * input.getReplicationFactor();
+	}
+	
+	/**
+	 * Gets the time to sort the given number of bytes with a two phase merge sort, i.e. sorting the runs in memory,
+	 * writing them to disk and reading them back for the merge.
+	 */
+	private double sortTime(long bytes)
+	{
+		final CostProfile p = this.profile;
+		return bytes * (p.getSortRate() + p.getSpillWriteRate() + p.getSpillReadRate());
+	}
+	
+	private double scanTime(long bytes)
+	{
+		return bytes * this.profile.getScanRate();
+	}
+	
+	private double hashTime(long buildBytes, long probeBytes)
+	{
+		return buildBytes * this.profile.getHashBuildRate() + probeBytes * this.profile.getHashProbeRate();
+	}
+	
+	/**
+	 * Converts a time in nanoseconds into the number of bytes that could be read or written from disk in that time.
+	 */
+	private long toStorageCost(double nanos)
+	{
+		return (long) Math.ceil(nanos / this.profile.getIORate());
+	}
+}
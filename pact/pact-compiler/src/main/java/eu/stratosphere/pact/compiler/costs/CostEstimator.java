@@ -38,6 +38,8 @@ public abstract class CostEstimator {
 
 	public abstract void getLocalSortCost(OptimizerNode node, PactConnection input, Costs costs);
 
+	public abstract void getLocalHashAggregateCost(OptimizerNode node, PactConnection input, Costs costs);
+
 	public abstract void getLocalDoubleSortMergeCost(OptimizerNode node, PactConnection input1, PactConnection input2,
 			Costs costs);
 
@@ -102,6 +104,7 @@ public abstract class CostEstimator {
 				tempGlobalCost.setSecondaryStorageCost(0);
 				break;
 			case PARTITION_HASH:
+			case PARTITION_HASH_SKEW:
 				getHashPartitioningCost(connection, tempGlobalCost);
 				break;
 			case PARTITION_RANGE:
@@ -144,6 +147,9 @@ public abstract class CostEstimator {
 		case SORT:
 			getLocalSortCost(n, primConn, locCost);
 			break;
+		case HASH_AGGREGATE:
+			getLocalHashAggregateCost(n, primConn, locCost);
+			break;
 		case SORT_BOTH_MERGE:
 			getLocalDoubleSortMergeCost(n, primConn, secConn, locCost);
 			break;
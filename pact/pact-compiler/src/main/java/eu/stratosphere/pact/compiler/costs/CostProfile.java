@@ -0,0 +1,286 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.pact.compiler.costs;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * A cost profile describes how expensive the basic operations of the runtime are on a certain type of instance.
+ * All rates are given in nanoseconds per byte of serialized record data. The profile is produced by the
+ * {@link CostProfileCalibrator} and consumed by the {@link CalibratedCostEstimator}.
+ * <p>
+ * Profiles are stored as simple property files, so they can be inspected and adjusted manually.
+ */
+public class CostProfile
+{
+	private static final String INSTANCE_TYPE_KEY = "instance.type";
+	
+	private static final String SORT_KEY = "rate.sort";
+	
+	private static final String HASH_BUILD_KEY = "rate.hash.build";
+	
+	private static final String HASH_PROBE_KEY = "rate.hash.probe";
+	
+	private static final String SPILL_WRITE_KEY = "rate.spill.write";
+	
+	private static final String SPILL_READ_KEY = "rate.spill.read";
+	
+	private static final String NETWORK_KEY = "rate.network";
+	
+	private static final String SCAN_KEY = "rate.scan";
+	
+	// --------------------------------------------------------------------------------------------
+	
+	private final String instanceType;
+	
+	private final double sortRate;
+	
+	private final double hashBuildRate;
+	
+	private final double hashProbeRate;
+	
+	private final double spillWriteRate;
+	
+	private final double spillReadRate;
+	
+	private final double networkRate;
+	
+	private final double scanRate;
+	
+	/**
+	 * Creates a new cost profile with the given rates.
+	 * 
+	 * @param instanceType The name of the instance type the profile was measured on, may be null.
+	 * @param sortRate The time to sort the records in memory, in nanoseconds per byte.
+	 * @param hashBuildRate The time to insert the records into an in-memory hash table, in nanoseconds per byte.
+	 * @param hashProbeRate The time to probe an in-memory hash table with the records, in nanoseconds per byte.
+	 * @param spillWriteRate The time to spill the records to the temporary files, in nanoseconds per byte.
+	 * @param spillReadRate The time to read spilled records back, in nanoseconds per byte.
+	 * @param networkRate The time to ship the records through a network connection, in nanoseconds per byte.
+	 * @param scanRate The time to deserialize the records from memory, in nanoseconds per byte.
+	 */
+	public CostProfile(String instanceType, double sortRate, double hashBuildRate, double hashProbeRate,
+			double spillWriteRate, double spillReadRate, double networkRate, double scanRate)
+	{
+		checkRate(sortRate, SORT_KEY);
+		checkRate(hashBuildRate, HASH_BUILD_KEY);
+		checkRate(hashProbeRate, HASH_PROBE_KEY);
+		checkRate(spillWriteRate, SPILL_WRITE_KEY);
+		checkRate(spillReadRate, SPILL_READ_KEY);
+		checkRate(networkRate, NETWORK_KEY);
+		checkRate(scanRate, SCAN_KEY);
+		if (spillWriteRate + spillReadRate <= 0) {
+			throw new IllegalArgumentException("The spilling rates must not both be zero.");
+		}
+		
+		this.instanceType = instanceType;
+		this.sortRate = sortRate;
+		this.hashBuildRate = hashBuildRate;
+		this.hashProbeRate = hashProbeRate;
+		this.spillWriteRate = spillWriteRate;
+		this.spillReadRate = spillReadRate;
+		this.networkRate = networkRate;
+		this.scanRate = scanRate;
+	}
+	
+	/**
+	 * Creates a profile that reflects the weights of the {@link FixedSizeClusterCostEstimator}, where only the
+	 * I/O volume is considered and the CPU costs of sorting and hashing are neglected.
+	 * 
+	 * @return The default cost profile.
+	 */
+	public static CostProfile getDefaultProfile()
+	{
+		return new CostProfile(null, 0.0, 0.0, 0.0, 1.0, 1.0, 1.0, 0.0);
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Gets the name of the instance type the profile was measured on.
+	 * 
+	 * @return The name of the instance type, or null, if unknown.
+	 */
+	public String getInstanceType() {
+		return this.instanceType;
+	}
+	
+	/**
+	 * Gets the time to sort the records in memory, in nanoseconds per byte.
+	 * 
+	 * @return The in-memory sort rate.
+	 */
+	public double getSortRate() {
+		return this.sortRate;
+	}
+	
+	/**
+	 * Gets the time to insert the records into an in-memory hash table, in nanoseconds per byte.
+	 * 
+	 * @return The hash table build rate.
+	 */
+	public double getHashBuildRate() {
+		return this.hashBuildRate;
+	}
+	
+	/**
+	 * Gets the time to probe an in-memory hash table with the records, in nanoseconds per byte.
+	 * 
+	 * @return The hash table probe rate.
+	 */
+	public double getHashProbeRate() {
+		return this.hashProbeRate;
+	}
+	
+	/**
+	 * Gets the time to spill the records to the temporary files, in nanoseconds per byte.
+	 * 
+	 * @return The spill write rate.
+	 */
+	public double getSpillWriteRate() {
+		return this.spillWriteRate;
+	}
+	
+	/**
+	 * Gets the time to read spilled records back from the temporary files, in nanoseconds per byte.
+	 * 
+	 * @return The spill read rate.
+	 */
+	public double getSpillReadRate() {
+		return this.spillReadRate;
+	}
+	
+	/**
+	 * Gets the average time of one I/O operation on the temporary files, in nanoseconds per byte. This is the unit
+	 * in which the cost estimators count secondary storage costs.
+	 * 
+	 * @return The average of the spill write and the spill read rate.
+	 */
+	public double getIORate() {
+		return (this.spillWriteRate + this.spillReadRate) / 2;
+	}
+	
+	/**
+	 * Gets the time to ship the records through a network connection, in nanoseconds per byte.
+	 * 
+	 * @return The network rate.
+	 */
+	public double getNetworkRate() {
+		return this.networkRate;
+	}
+	
+	/**
+	 * Gets the time to deserialize the records from memory, in nanoseconds per byte.
+	 * 
+	 * @return The scan rate.
+	 */
+	public double getScanRate() {
+		return this.scanRate;
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Stores this profile as a property file.
+	 * 
+	 * @param file The file to write the profile to.
+	 * @throws IOException Thrown, if the file could not be written.
+	 */
+	public void store(File file) throws IOException
+	{
+		final Properties props = new Properties();
+		if (this.instanceType != null) {
+			props.setProperty(INSTANCE_TYPE_KEY, this.instanceType);
+		}
+		props.setProperty(SORT_KEY, String.valueOf(this.sortRate));
+		props.setProperty(HASH_BUILD_KEY, String.valueOf(this.hashBuildRate));
+		props.setProperty(HASH_PROBE_KEY, String.valueOf(this.hashProbeRate));
+		props.setProperty(SPILL_WRITE_KEY, String.valueOf(this.spillWriteRate));
+		props.setProperty(SPILL_READ_KEY, String.valueOf(this.spillReadRate));
+		props.setProperty(NETWORK_KEY, String.valueOf(this.networkRate));
+		props.setProperty(SCAN_KEY, String.valueOf(this.scanRate));
+		
+		final OutputStream out = new FileOutputStream(file);
+		try {
+			props.store(out, "Cost profile, all rates in nanoseconds per byte");
+		} finally {
+			out.close();
+		}
+	}
+	
+	/**
+	 * Loads a profile from a property file written by {@link #store(File)}.
+	 * 
+	 * @param file The file to read the profile from.
+	 * @return The profile described by the file.
+	 * @throws IOException Thrown, if the file could not be read or does not describe a valid profile.
+	 */
+	public static CostProfile load(File file) throws IOException
+	{
+		final Properties props = new Properties();
+		final InputStream in = new FileInputStream(file);
+		try {
+			props.load(in);
+		} finally {
+			in.close();
+		}
+		
+		try {
+			return new CostProfile(props.getProperty(INSTANCE_TYPE_KEY),
+				getRate(props, SORT_KEY), getRate(props, HASH_BUILD_KEY), getRate(props, HASH_PROBE_KEY),
+				getRate(props, SPILL_WRITE_KEY), getRate(props, SPILL_READ_KEY), getRate(props, NETWORK_KEY),
+				getRate(props, SCAN_KEY));
+		} catch (IllegalArgumentException iaex) {
+			throw new IOException("Invalid cost profile '" + file + "': " + iaex.getMessage());
+		}
+	}
+	
+	private static double getRate(Properties props, String key)
+	{
+		final String value = props.getProperty(key);
+		if (value == null) {
+			throw new IllegalArgumentException("Missing entry '" + key + "'.");
+		}
+		return Double.parseDouble(value.trim());
+	}
+	
+	private static void checkRate(double rate, String key)
+	{
+		if (!(rate >= 0) || Double.isInfinite(rate)) {
+			throw new IllegalArgumentException("Invalid value for '" + key + "': " + rate);
+		}
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return "CostProfile [" + (this.instanceType == null ? "" : this.instanceType + ", ") +
+			"sort=" + this.sortRate + ", hash build=" + this.hashBuildRate + ", hash probe=" + this.hashProbeRate +
+			", spill write=" + this.spillWriteRate + ", spill read=" + this.spillReadRate +
+			", network=" + this.networkRate + ", scan=" + this.scanRate + "] ns/byte";
+	}
+}
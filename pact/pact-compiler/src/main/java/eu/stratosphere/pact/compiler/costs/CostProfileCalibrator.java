@@ -0,0 +1,529 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.pact.compiler.costs;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.nephele.services.iomanager.BlockChannelReader;
+import eu.stratosphere.nephele.services.iomanager.BlockChannelWriter;
+import eu.stratosphere.nephele.services.iomanager.Channel;
+import eu.stratosphere.nephele.services.iomanager.ChannelReaderInputView;
+import eu.stratosphere.nephele.services.iomanager.ChannelWriterOutputView;
+import eu.stratosphere.nephele.services.iomanager.IOManager;
+import eu.stratosphere.nephele.services.memorymanager.MemoryAllocationException;
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
+import eu.stratosphere.nephele.services.memorymanager.spi.DefaultMemoryManager;
+import eu.stratosphere.nephele.template.AbstractTask;
+import eu.stratosphere.pact.common.type.Key;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.common.type.base.PactString;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.runtime.hash.MutableHashTable;
+import eu.stratosphere.pact.runtime.hash.MutableHashTable.HashBucketIterator;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparator;
+import eu.stratosphere.pact.runtime.plugable.PactRecordPairComparator;
+import eu.stratosphere.pact.runtime.plugable.PactRecordSerializer;
+import eu.stratosphere.pact.runtime.sort.NormalizedKeySorter;
+import eu.stratosphere.pact.runtime.sort.QuickSort;
+
+/**
+ * Measures the rates of a {@link CostProfile} with short benchmarks of the runtime's sort, hash, spill and network
+ * code paths. The calibrator is meant to be run once on every instance type of the cluster, for example through
+ * its {@link #main(String[])} method, and writes the profile that the {@link CalibratedCostEstimator} consumes.
+ * <p>
+ * All benchmarks work on the same set of records with an integer key and a string payload, which is about a quarter of
+ * the given memory size. Each benchmark is repeated several times, the first rounds serving as warm-up, and the
+ * fastest of the measured rounds is used. The network rate is measured through a loopback connection, so it reflects
+ * the costs of the network stack rather than the bandwidth of the network. Likewise, the spilled data is read back
+ * while it is most likely still in the operating system's cache, unless the memory size exceeds that cache.
+ */
+public class CostProfileCalibrator
+{
+	private static final Log LOG = LogFactory.getLog(CostProfileCalibrator.class);
+	
+	/**
+	 * The default amount of memory used for the benchmarks.
+	 */
+	public static final long DEFAULT_MEMORY_SIZE = 64 * 1024 * 1024;
+	
+	private static final int PAGE_SIZE = 32 * 1024;
+	
+	private static final int NUM_SPILL_BUFFERS = 4;
+	
+	private static final int PAYLOAD_LENGTH = 90;
+	
+	private static final int APPROXIMATE_RECORD_LENGTH = PAYLOAD_LENGTH + 16;
+	
+	private static final int NETWORK_CHUNK_SIZE = 64 * 1024;
+	
+	private static final int WARMUP_ROUNDS = 2;
+	
+	private static final int MEASURED_ROUNDS = 3;
+	
+	private static final long SEED = 0x2c1b3c6dL;
+	
+	// --------------------------------------------------------------------------------------------
+	
+	private final String instanceType;
+	
+	private final long memorySize;
+	
+	private final String tempDir;
+	
+	private final AbstractTask owner = new CalibrationTask();
+	
+	private DefaultMemoryManager memoryManager;
+	
+	private IOManager ioManager;
+	
+	private byte[] serializedRecords;
+	
+	private int numRecords;
+	
+	/**
+	 * Creates a new calibrator.
+	 * 
+	 * @param instanceType The name of the instance type to record in the profile, may be null.
+	 * @param memorySize The amount of memory to use for the benchmarks, in bytes.
+	 * @param tempDir The directory to spill to, or null, to use the default temporary directory.
+	 */
+	public CostProfileCalibrator(String instanceType, long memorySize, String tempDir)
+	{
+		if (memorySize < 16 * PAGE_SIZE) {
+			throw new IllegalArgumentException("The memory size must be at least " + (16 * PAGE_SIZE) + " bytes.");
+		}
+		this.instanceType = instanceType;
+		this.memorySize = memorySize;
+		this.tempDir = tempDir;
+	}
+	
+	/**
+	 * Runs all benchmarks and creates the profile from the measured rates.
+	 * 
+	 * @return The measured cost profile.
+	 * @throws Exception Thrown, if one of the benchmarks failed.
+	 */
+	public CostProfile calibrate() throws Exception
+	{
+		this.memoryManager = new DefaultMemoryManager(this.memorySize, PAGE_SIZE);
+		this.ioManager = this.tempDir == null ? new IOManager() : new IOManager(this.tempDir);
+		try {
+			createRecords();
+			
+			final double scanRate = measureScan();
+			final double sortRate = measureSort();
+			final double[] hashRates = measureHash(scanRate);
+			final double[] spillRates = measureSpill();
+			final double networkRate = measureNetwork();
+			
+			final CostProfile profile = new CostProfile(this.instanceType, sortRate, hashRates[0], hashRates[1],
+				spillRates[0], spillRates[1], networkRate, scanRate);
+			if (LOG.isInfoEnabled()) {
+				LOG.info("Calibrated " + profile);
+			}
+			return profile;
+		} finally {
+			this.serializedRecords = null;
+			this.ioManager.shutdown();
+			this.memoryManager.shutdown();
+			this.ioManager = null;
+			this.memoryManager = null;
+		}
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Generates the records of the benchmarks and keeps them in serialized form.
+	 */
+	private void createRecords() throws IOException
+	{
+		this.numRecords = (int) (this.memorySize / 4 / APPROXIMATE_RECORD_LENGTH);
+		
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(this.numRecords * APPROXIMATE_RECORD_LENGTH);
+		final DataOutputStream out = new DataOutputStream(bytes);
+		
+		final Random rnd = new Random(SEED);
+		final byte[] payload = new byte[PAYLOAD_LENGTH];
+		final PactInteger key = new PactInteger();
+		final PactString value = new PactString();
+		final PactRecord record = new PactRecord(2);
+		
+		for (int i = 0; i < this.numRecords; i++) {
+			for (int k = 0; k < PAYLOAD_LENGTH; k++) {
+				payload[k] = (byte) ('A' + rnd.nextInt(26));
+			}
+			key.setValue(rnd.nextInt(this.numRecords / 2));
+			value.setValueAscii(payload, 0, PAYLOAD_LENGTH);
+			record.setField(0, key);
+			record.setField(1, value);
+			record.write(out);
+		}
+		out.close();
+		this.serializedRecords = bytes.toByteArray();
+	}
+	
+	/**
+	 * Measures the time to deserialize the records.
+	 */
+	private double measureScan() throws IOException
+	{
+		final PactRecord record = new PactRecord();
+		long best = Long.MAX_VALUE;
+		
+		for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+			final MutableObjectIterator<PactRecord> records = getRecords(this.numRecords);
+			
+			final long start = System.nanoTime();
+			while (records.next(record)) {
+				record.getField(0, PactInteger.class);
+			}
+			best = measured(round, best, System.nanoTime() - start);
+		}
+		return rate(best, this.serializedRecords.length);
+	}
+	
+	/**
+	 * Measures the time to sort the records in memory, excluding the time to fill the sort buffer.
+	 */
+	private double measureSort() throws IOException, MemoryAllocationException
+	{
+		final List<MemorySegment> memory = this.memoryManager.allocatePages(this.owner, this.memorySize / 2);
+		@SuppressWarnings("unchecked")
+		final PactRecordComparator comparator = new PactRecordComparator(new int[] { 0 },
+			new Class[] { PactInteger.class });
+		final NormalizedKeySorter<PactRecord> sorter = new NormalizedKeySorter<PactRecord>(PactRecordSerializer.get(),
+			comparator, memory);
+		
+		final QuickSort quickSort = new QuickSort();
+		final PactRecord record = new PactRecord();
+		long best = Long.MAX_VALUE;
+		long bytes = 0;
+		
+		try {
+			for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+				sorter.reset();
+				bytes = 0;
+				final MutableObjectIterator<PactRecord> records = getRecords(this.numRecords);
+				while (records.next(record) && sorter.write(record)) {
+					bytes += record.getBinaryLength();
+				}
+				
+				final long start = System.nanoTime();
+				quickSort.sort(sorter);
+				best = measured(round, best, System.nanoTime() - start);
+			}
+		} finally {
+			this.memoryManager.release(sorter.dispose());
+		}
+		return rate(best, bytes);
+	}
+	
+	/**
+	 * Measures the time to build an in-memory hash table from the first half of the records and to probe it with
+	 * all records. The time to deserialize the records is not included in the rates.
+	 * 
+	 * @return The build rate and the probe rate.
+	 */
+	private double[] measureHash(double scanRate) throws IOException, MemoryAllocationException
+	{
+		final int[] keyPos = new int[] { 0 };
+		@SuppressWarnings("unchecked")
+		final Class<? extends Key>[] keyType = new Class[] { PactInteger.class };
+		
+		final int numBuildRecords = this.numRecords / 2;
+		final long buildBytes = getSerializedLength(numBuildRecords);
+		long bestBuild = Long.MAX_VALUE;
+		long bestProbe = Long.MAX_VALUE;
+		
+		for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+			final List<MemorySegment> memory = this.memoryManager.allocatePages(this.owner, this.memorySize / 2);
+			final MutableHashTable<PactRecord, PactRecord> table = new MutableHashTable<PactRecord, PactRecord>(
+				PactRecordSerializer.get(), PactRecordSerializer.get(),
+				new PactRecordComparator(keyPos, keyType), new PactRecordComparator(keyPos, keyType),
+				new PactRecordPairComparator(keyPos, keyPos, keyType), memory, this.ioManager);
+			
+			try {
+				final long start = System.nanoTime();
+				table.open(getRecords(numBuildRecords), getRecords(this.numRecords));
+				final long built = System.nanoTime();
+				
+				final PactRecord record = new PactRecord();
+				long numMatches = 0;
+				while (table.nextRecord()) {
+					final HashBucketIterator<PactRecord, PactRecord> matches = table.getBuildSideIterator();
+					while (matches.next(record)) {
+						numMatches++;
+					}
+				}
+				final long probed = System.nanoTime();
+				if (numMatches == 0) {
+					throw new IllegalStateException("The hash table benchmark produced no matches.");
+				}
+				
+				bestBuild = measured(round, bestBuild, built - start);
+				bestProbe = measured(round, bestProbe, probed - built);
+			} finally {
+				table.close();
+				this.memoryManager.release(table.getFreedMemory());
+			}
+		}
+		
+		return new double[] {
+			Math.max(rate(bestBuild, buildBytes) - scanRate, 0),
+			Math.max(rate(bestProbe, this.serializedRecords.length) - scanRate, 0)
+		};
+	}
+	
+	/**
+	 * Measures the time to spill the records through the I/O manager and to read them back.
+	 * 
+	 * @return The write rate and the read rate.
+	 */
+	private double[] measureSpill() throws IOException, MemoryAllocationException
+	{
+		long bestWrite = Long.MAX_VALUE;
+		long bestRead = Long.MAX_VALUE;
+		long bytes = 0;
+		
+		final PactRecord record = new PactRecord();
+		final PactRecord[] records = new PactRecord[this.numRecords];
+		final MutableObjectIterator<PactRecord> input = getRecords(this.numRecords);
+		for (int i = 0; i < this.numRecords; i++) {
+			records[i] = new PactRecord();
+			input.next(records[i]);
+		}
+		
+		for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+			final Channel.ID channel = this.ioManager.createChannel();
+			
+			List<MemorySegment> memory = this.memoryManager.allocatePages(this.owner, NUM_SPILL_BUFFERS);
+			final BlockChannelWriter writer = this.ioManager.createBlockChannelWriter(channel);
+			final ChannelWriterOutputView outView = new ChannelWriterOutputView(writer, memory, PAGE_SIZE);
+			
+			long start = System.nanoTime();
+			for (int i = 0; i < this.numRecords; i++) {
+				records[i].write(outView);
+			}
+			this.memoryManager.release(outView.close());
+			final long writeTime = System.nanoTime() - start;
+			bytes = outView.getBytesWritten();
+			
+			memory = this.memoryManager.allocatePages(this.owner, NUM_SPILL_BUFFERS);
+			final BlockChannelReader reader = this.ioManager.createBlockChannelReader(channel);
+			
+			start = System.nanoTime();
+			final ChannelReaderInputView inView = new ChannelReaderInputView(reader, memory,
+				outView.getBlockCount(), true);
+			for (int i = 0; i < this.numRecords; i++) {
+				record.read(inView);
+			}
+			final long readTime = System.nanoTime() - start;
+			
+			this.memoryManager.release(inView.close());
+			reader.deleteChannel();
+			
+			bestWrite = measured(round, bestWrite, writeTime);
+			bestRead = measured(round, bestRead, readTime);
+		}
+		return new double[] { rate(bestWrite, bytes), rate(bestRead, bytes) };
+	}
+	
+	/**
+	 * Measures the time to ship the serialized records through a loopback connection.
+	 */
+	private double measureNetwork() throws Exception
+	{
+		final ServerSocket server = new ServerSocket(0, 1, InetAddress.getByName("localhost"));
+		long best = Long.MAX_VALUE;
+		
+		try {
+			for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+				final Socket sender = new Socket(server.getInetAddress(), server.getLocalPort());
+				final Socket receiver = server.accept();
+				final Receiver receiverThread = new Receiver(receiver.getInputStream());
+				
+				try {
+					final long start = System.nanoTime();
+					receiverThread.start();
+					
+					final OutputStream out = sender.getOutputStream();
+					for (int off = 0; off < this.serializedRecords.length; off += NETWORK_CHUNK_SIZE) {
+						out.write(this.serializedRecords, off,
+							Math.min(NETWORK_CHUNK_SIZE, this.serializedRecords.length - off));
+					}
+					sender.shutdownOutput();
+					receiverThread.join();
+					final long time = System.nanoTime() - start;
+					
+					if (receiverThread.error != null) {
+						throw receiverThread.error;
+					}
+					if (receiverThread.bytesReceived != this.serializedRecords.length) {
+						throw new IOException("Received " + receiverThread.bytesReceived + " bytes instead of " +
+							this.serializedRecords.length + ".");
+					}
+					best = measured(round, best, time);
+				} finally {
+					sender.close();
+					receiver.close();
+				}
+			}
+		} finally {
+			server.close();
+		}
+		return rate(best, this.serializedRecords.length);
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Gets an iterator that deserializes the given number of records.
+	 */
+	private MutableObjectIterator<PactRecord> getRecords(final int count)
+	{
+		final DataInputStream in = new DataInputStream(new ByteArrayInputStream(this.serializedRecords));
+		
+		return new MutableObjectIterator<PactRecord>() {
+			private int position = 0;
+			
+			@Override
+			public boolean next(PactRecord target) throws IOException {
+				if (this.position < count) {
+					target.read(in);
+					this.position++;
+					return true;
+				} else {
+					return false;
+				}
+			}
+		};
+	}
+	
+	private long getSerializedLength(int numRecords) throws IOException
+	{
+		final PactRecord record = new PactRecord();
+		final MutableObjectIterator<PactRecord> records = getRecords(numRecords);
+		long bytes = 0;
+		while (records.next(record)) {
+			bytes += record.getBinaryLength();
+		}
+		return bytes;
+	}
+	
+	private static long measured(int round, long best, long time)
+	{
+		return round < WARMUP_ROUNDS ? best : Math.min(best, time);
+	}
+	
+	private static double rate(long nanos, long bytes)
+	{
+		return bytes == 0 ? 0.0 : ((double) nanos) / bytes;
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Calibrates the profile of the local machine and writes it to a file.
+	 * <p>
+	 * Usage: <code>CostProfileCalibrator &lt;profile file&gt; [instance type] [memory in MiBytes] [temp dir]</code>
+	 * 
+	 * @param args The command line arguments.
+	 * @throws Exception Thrown, if the calibration failed.
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		if (args.length < 1 || args.length > 4) {
+			System.err.println("Usage: " + CostProfileCalibrator.class.getName() +
+				" <profile file> [instance type] [memory in MiBytes] [temp dir]");
+			System.exit(1);
+		}
+		
+		final File file = new File(args[0]);
+		final String instanceType = args.length > 1 ? args[1] : null;
+		final long memorySize = args.length > 2 ? Long.parseLong(args[2]) * 1024 * 1024 : DEFAULT_MEMORY_SIZE;
+		final String tempDir = args.length > 3 ? args[3] : null;
+		
+		final CostProfile profile = new CostProfileCalibrator(instanceType, memorySize, tempDir).calibrate();
+		profile.store(file);
+		System.out.println(profile);
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * The owner of the memory used by the benchmarks.
+	 */
+	private static final class CalibrationTask extends AbstractTask
+	{
+		@Override
+		public void registerInputOutput() {}
+
+		@Override
+		public void invoke() {}
+	}
+	
+	/**
+	 * The thread that drains the loopback connection.
+	 */
+	private static final class Receiver extends Thread
+	{
+		private final InputStream in;
+		
+		private volatile long bytesReceived;
+		
+		private volatile Exception error;
+		
+		private Receiver(InputStream in)
+		{
+			super("Cost Profile Calibration Receiver");
+			this.in = in;
+		}
+		
+		@Override
+		public void run()
+		{
+			final byte[] buffer = new byte[NETWORK_CHUNK_SIZE];
+			long received = 0;
+			try {
+				int read;
+				while ((read = this.in.read(buffer)) >= 0) {
+					received += read;
+				}
+			} catch (Exception ex) {
+				this.error = ex;
+			}
+			this.bytesReceived = received;
+		}
+	}
+}
@@ -142,6 +142,23 @@ public class FixedSizeClusterCostEstimator extends CostEstimator {
 		costs.setSecondaryStorageCost(s < 0 ? -1 : 2 * s);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.compiler.costs.CostEstimator#getLocalHashAggregateCost(
+	 * 	eu.stratosphere.pact.compiler.plan.OptimizerNode, 
+	 * 	eu.stratosphere.pact.compiler.plan.PactConnection, 
+	 * 	eu.stratosphere.pact.compiler.Costs)
+	 */
+	@Override
+	public void getLocalHashAggregateCost(OptimizerNode node, PactConnection input, Costs costs) {
+		costs.setNetworkCost(0);
+
+		long s = input.getSourcePact().getEstimatedOutputSize() * input.getReplicationFactor();
+		// the hash aggregation is only chosen if the aggregated data is expected to fit into memory,
+		// so we assume no I/O. Without estimates, the costs are unknown
+		costs.setSecondaryStorageCost(s < 0 ? -1 : 0);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see eu.stratosphere.pact.compiler.costs.CostEstimator#getLocalDoubleSortMergeCost(
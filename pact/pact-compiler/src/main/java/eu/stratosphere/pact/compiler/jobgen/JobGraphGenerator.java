@@ -18,14 +18,17 @@ package eu.stratosphere.pact.compiler.jobgen;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
 import eu.stratosphere.nephele.io.DistributionPattern;
 import eu.stratosphere.nephele.io.channels.ChannelType;
 import eu.stratosphere.nephele.io.compression.CompressionLevel;
@@ -50,7 +53,10 @@ import eu.stratosphere.pact.common.contract.Ordering;
 import eu.stratosphere.pact.common.contract.ReduceContract;
 import eu.stratosphere.pact.common.plan.Visitor;
 import eu.stratosphere.pact.common.type.Key;
+import eu.stratosphere.pact.common.type.PactRecord;
 import eu.stratosphere.pact.common.util.FieldList;
+import eu.stratosphere.pact.common.util.FieldSet;
+import eu.stratosphere.pact.common.util.PactConfigConstants;
 import eu.stratosphere.pact.compiler.CompilerException;
 import eu.stratosphere.pact.compiler.PactCompiler;
 import eu.stratosphere.pact.compiler.plan.CoGroupNode;
@@ -62,8 +68,10 @@ import eu.stratosphere.pact.compiler.plan.MatchNode;
 import eu.stratosphere.pact.compiler.plan.OptimizedPlan;
 import eu.stratosphere.pact.compiler.plan.OptimizerNode;
 import eu.stratosphere.pact.compiler.plan.PactConnection;
+import eu.stratosphere.pact.compiler.plan.PactConnection.TempMode;
 import eu.stratosphere.pact.compiler.plan.ReduceNode;
 import eu.stratosphere.pact.compiler.plan.UnionNode;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparator;
 import eu.stratosphere.pact.runtime.plugable.PactRecordComparatorFactory;
 import eu.stratosphere.pact.runtime.shipping.ShipStrategy.PartitionShipStrategy;
 import eu.stratosphere.pact.runtime.shipping.ShipStrategy.ShipStrategyType;
@@ -72,10 +80,14 @@ import eu.stratosphere.pact.runtime.task.CombineDriver;
 import eu.stratosphere.pact.runtime.task.CrossDriver;
 import eu.stratosphere.pact.runtime.task.DataSinkTask;
 import eu.stratosphere.pact.runtime.task.DataSourceTask;
+import eu.stratosphere.pact.runtime.task.HistogramTask;
 import eu.stratosphere.pact.runtime.task.MapDriver;
 import eu.stratosphere.pact.runtime.task.MatchDriver;
+import eu.stratosphere.pact.runtime.task.PartitionTask;
 import eu.stratosphere.pact.runtime.task.ReduceDriver;
 import eu.stratosphere.pact.runtime.task.RegularPactTask;
+import eu.stratosphere.pact.runtime.task.SampleTask;
+import eu.stratosphere.pact.runtime.task.SkewDetectionTask;
 import eu.stratosphere.pact.runtime.task.TempDriver;
 import eu.stratosphere.pact.runtime.task.chaining.ChainedCombineDriver;
 import eu.stratosphere.pact.runtime.task.chaining.ChainedDriver;
@@ -98,6 +110,10 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 	
 	private static final int DEFAULT_MERGE_FACTOR = 64; // the number of streams to merge at once
 	
+	private static final int RANGE_SAMPLES_PER_PARTITION = 1000; // the number of key samples drawn per range partition
+	
+	private static final long RANGE_SAMPLE_SEED = 0x2545F4914F6CDD1DL; // the seed for the range samplers
+	
 	// ------------------------------------------------------------------------
 
 	private JobGraph jobGraph; // the job that is currently built
@@ -109,15 +125,27 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 	private List<TaskInChain> chainedTasksInSequence;
 	
 	private List<AbstractJobVertex> auxVertices; // auxiliary vertices which are added during job graph generation
+	
+	private Map<OptimizerNode, JobTaskVertex> histogramVertices; // the range histogram vertices of the partitioned nodes
+	
+	private Map<OptimizerNode, JobTaskVertex> skewDetectionVertices; // the skew detection vertices of the matches
 
 	private AbstractJobVertex maxDegreeVertex; // the vertex with the highest degree of parallelism
 	
+	private final String statisticsDirectory; // the directory for the runtime statistics, null if none are collected
+	
+	private final boolean shareBroadcastHashTables; // whether the instances of a broadcast hash join share the table
+	
 	// ------------------------------------------------------------------------
 
 	/**
 	 * Creates a new job graph generator that uses the default values for its resource configuration.
 	 */
 	public JobGraphGenerator() {
+		this.statisticsDirectory = GlobalConfiguration.getString(PactConfigConstants.STATISTICS_DIRECTORY_KEY,
+			PactConfigConstants.DEFAULT_STATISTICS_DIRECTORY);
+		this.shareBroadcastHashTables = GlobalConfiguration.getBoolean(PactConfigConstants.HASH_JOIN_SHARED_BROADCAST_KEY,
+			PactConfigConstants.DEFAULT_HASH_JOIN_SHARED_BROADCAST);
 	}
 
 	/**
@@ -136,6 +164,8 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 		this.chainedTasks = new HashMap<OptimizerNode, TaskInChain>();
 		this.chainedTasksInSequence = new ArrayList<TaskInChain>();
 		this.auxVertices = new ArrayList<AbstractJobVertex>();
+		this.histogramVertices = new HashMap<OptimizerNode, JobTaskVertex>();
+		this.skewDetectionVertices = new HashMap<OptimizerNode, JobTaskVertex>();
 		this.maxDegreeVertex = null;
 		
 		// set Nephele JobGraph config
@@ -182,6 +212,8 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 		this.chainedTasks = null;
 		this.chainedTasksInSequence = null;
 		this.auxVertices = null;
+		this.histogramVertices = null;
+		this.skewDetectionVertices = null;
 		this.jobGraph = null;
 
 		// return job graph
@@ -250,6 +282,15 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 				"An error occurred while translating the optimized plan to a nephele JobGraph: " + e.getMessage(), e);
 		}
 		
+		// let the task observe the output of the node, if runtime statistics are collected
+		if (this.statisticsDirectory != null && !(node instanceof CombinerNode)) {
+			if (vertex != null && !(vertex instanceof AbstractJobOutputVertex)) {
+				configureStatisticsCollection(node, new TaskConfig(vertex.getConfiguration()));
+			} else if (this.chainedTasks.containsKey(node)) {
+				configureStatisticsCollection(node, this.chainedTasks.get(node).getTaskConfig());
+			}
+		}
+		
 		// check if a vertex was created, or if it was chained
 		if (vertex != null) {
 			// set degree of parallelism
@@ -362,6 +403,7 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 						break;
 					case PARTITION_LOCAL_HASH:
 					case PARTITION_HASH:
+					case PARTITION_HASH_SKEW:
 					case PARTITION_RANGE:
 						connectWithPartitionStrategy(inConn, inputIndex, outputVertex, outputVertexConfig, inputVertex, inputVertexConfig);
 						break;
@@ -405,6 +447,45 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 	// Methods for creating individual vertices
 	// ------------------------------------------------------------------------
 	
+	/**
+	 * Configures the task of the given node to collect statistics about the node's output. Besides the number
+	 * of records and bytes, the task estimates the number of distinct keys for the key fields by which the
+	 * node's successors consume the output.
+	 * 
+	 * @param node
+	 *        The node whose output is observed.
+	 * @param config
+	 *        The configuration of the task that runs the node.
+	 */
+	private void configureStatisticsCollection(OptimizerNode node, TaskConfig config)
+	{
+		config.setStatisticsCollection(this.statisticsDirectory, node.getStatisticsSignature());
+		
+		final Set<FieldSet> observedKeys = new HashSet<FieldSet>();
+		for (PactConnection conn : node.getOutConns()) {
+			final OptimizerNode target = conn.getTargetPact();
+			if (target instanceof UnionNode || !(target.getPactContract() instanceof AbstractPact<?>)) {
+				continue;
+			}
+			
+			final int inputNum = target.getIncomingConnections().indexOf(conn);
+			final AbstractPact<?> pact = (AbstractPact<?>) target.getPactContract();
+			if (inputNum < 0 || inputNum >= pact.getNumberOfInputs()) {
+				continue;
+			}
+			
+			final int[] keyPositions = pact.getKeyColumnNumbers(inputNum);
+			final Class<? extends Key>[] keyClasses = pact.getKeyClasses();
+			if (keyPositions == null || keyPositions.length == 0 || keyClasses == null ||
+					keyClasses.length != keyPositions.length) {
+				continue;
+			}
+			if (observedKeys.add(new FieldSet(keyPositions))) {
+				config.addStatisticsKey(keyPositions, keyClasses);
+			}
+		}
+	}
+	
 	/**
 	 * @param mapNode
 	 * @return
@@ -479,8 +560,12 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 		
 		combineConfig.setStubClass(combineNode.getPactContract().getUserCodeClass());
 
-		// we have currently only one strategy for combiners
-		combineConfig.setLocalStrategy(LocalStrategy.COMBININGSORT);
+		// chained combiners are pushed their input, which is only supported by the combining sort
+		if (combineVertex != null && combineNode.getLocalStrategy() == LocalStrategy.HASH_AGGREGATE) {
+			combineConfig.setLocalStrategy(LocalStrategy.HASH_AGGREGATE);
+		} else {
+			combineConfig.setLocalStrategy(LocalStrategy.COMBININGSORT);
+		}
 		
 		final Ordering secondaryOrder = combineNode.getPactContract().getGroupOrder();
 		if (secondaryOrder == null) {
@@ -543,6 +628,9 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 		case COMBININGSORT:
 			reduceConfig.setLocalStrategy(LocalStrategy.COMBININGSORT);
 			break;
+		case HASH_AGGREGATE:
+			reduceConfig.setLocalStrategy(LocalStrategy.HASH_AGGREGATE);
+			break;
 		case NONE:
 			reduceConfig.setLocalStrategy(LocalStrategy.NONE);
 			break;
@@ -553,6 +641,7 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 
 		// assign the memory
 		assignMemory(reduceConfig, reduceNode.getMemoryPerTask());
+		assignSortParallelism(reduceConfig, reduceNode);
 
 		// forward stub parameters to task and stub
 		reduceConfig.setStubParameters(reduceNode.getPactContract().getParameters());
@@ -633,6 +722,39 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 				+ matchNode.getLocalStrategy());
 		}
 
+		// let the local instances share the hash table, if its build side is broadcasted to all of them
+		if (this.shareBroadcastHashTables) {
+			final PactConnection buildSide;
+			switch (matchNode.getLocalStrategy()) {
+			case HYBRIDHASH_FIRST:
+				buildSide = ((MatchNode) matchNode).getFirstInConn();
+				break;
+			case HYBRIDHASH_SECOND:
+				buildSide = ((MatchNode) matchNode).getSecondInConn();
+				break;
+			default:
+				buildSide = null;
+			}
+			
+			// the instances that do not build the table buffer their copy of the build side in half of their
+			// memory, in case the table does not fit. Only share the table, if the estimated build side fits
+			// into that half, such that these instances do not write their copies to disk. Every instance
+			// keeps its full memory, because it needs it for its own table, if the shared one cannot be built.
+			// Sharing thus saves the CPU for building the tables and the probing instances' table memory
+			// stays reserved, but unused.
+			if (buildSide != null && buildSide.getShipStrategy().type() == ShipStrategyType.BROADCAST) {
+				final long buildSideSize = buildSide.getSourcePact().getEstimatedOutputSize();
+				final long bufferMemory = matchNode.getMemoryPerTask() * 1024L * 1024L / 2;
+				if (buildSideSize >= 0 && buildSideSize <= bufferMemory) {
+					matchConfig.setSharedHashTableKey(matchVertex.getID().toString());
+				} else if (LOG.isDebugEnabled()) {
+					LOG.debug("Not sharing the hash table of '" + matchNode.getName() + "', because the estimated " +
+						"size of its build side (" + buildSideSize + " bytes) is unknown or exceeds half of the " +
+						"memory of an instance.");
+				}
+			}
+		}
+
 		// assign the memory
 		assignMemory(matchConfig, matchNode.getMemoryPerTask());
 
@@ -827,6 +949,7 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 		
 		if (sNode.getLocalStrategy() == LocalStrategy.SORT) {
 			assignMemory(sinkConfig, sinkNode.getMemoryPerTask());
+			assignSortParallelism(sinkConfig, sinkNode);
 			
 			PactRecordComparatorFactory.writeComparatorSetupToConfig(sinkConfig.getConfigForInputParameters(0),
 				sNode.getPactContract().getLocalOrder().getFieldPositions(),
@@ -993,199 +1116,276 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 		throw new UnsupportedOperationException("SFR shipping strategy not supported yet");
 	}
 	
-//	/**
-//	 * Adds the necessary vertexes for sampling & histogram creation etc for range partitioning
-//	 * @param connection
-//	 * @param outputVertex
-//	 * @param inputVertex
-//	 * @throws JobGraphDefinitionException 
-//	 */
-//	private void connectWithSamplingPartitionRangeStrategy(PactConnection connection, int inputNumber,
-//			final AbstractJobVertex outputVertex, final TaskConfig outputConfig,
-//			final AbstractJobVertex inputVertex, final TaskConfig inputConfig, boolean firstCall)
-//	throws JobGraphDefinitionException
-//	{
-//		int sourceDOP = connection.getSourcePact().getDegreeOfParallelism();
-//		int sourceIPM = connection.getSourcePact().getInstancesPerMachine();
-//		int targetDOP = connection.getTargetPact().getDegreeOfParallelism();
-////		int targetIPM = connection.getTargetPact().getInstancesPerMachine();
-//		Class<?> sourceStub = connection.getSourcePact().getPactContract().getUserCodeClass();
-//		
-//		//TODO: Check for which pact types it makes sense
-//		
-//		//When parallelism is one there is nothing to partition
-//		//if(sourceDOP == 1 && targetDOP == 1) {
-//		if(targetDOP == 1) {
-//			if(sourceDOP == 1) {
-//				outputVertex.connectTo(inputVertex, ChannelType.INMEMORY, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
-//			} else {
-//				outputVertex.connectTo(inputVertex, ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
-//			}
-//			outputConfig.addOutputShipStrategy(ShipStrategy.FORWARD);
-//			inputConfig.addInputShipStrategy(ShipStrategy.FORWARD, inputNumber);
-//			return;
-//		}
-//
-//		
-//		//Add sample vertex
-//		JobTaskVertex sampleVertex = new JobTaskVertex("Range partition - sampling", this.jobGraph);
-//		this.auxVertices.add(sampleVertex);
-//		sampleVertex.setTaskClass(SampleTask.class);
-//		TaskConfig sampleConfig = new TaskConfig(sampleVertex.getConfiguration());
-//		//sampleConfig.setStubClass((Class<? extends Stub<?, ?>>) AdaptiveKeySampleStub.class);
-//		sampleVertex.setNumberOfSubtasks(sourceDOP);
-//		if (sourceIPM >= 1) {
-//			sampleVertex.setNumberOfSubtasksPerInstance(sourceIPM);
-//		}
-//		sampleConfig.setStubClass(sourceStub);
-//		//Connect with input
-//		outputVertex.connectTo(sampleVertex, ChannelType.INMEMORY, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
-//		outputConfig.addOutputShipStrategy(ShipStrategy.FORWARD);
-//		sampleConfig.addInputShipStrategy(ShipStrategy.FORWARD, 1);
-//		
-//		
-//		// firstCall indicated that this is the first call for one input which might have multiple predecessors
-//		
-//		// on the first call we have to instantiate the histogram which will be use by all predecessors
-//		// -> on all consecutive calls we connect the new output node to the already instantiated histogramVertex
-//		TaskConfig histogramConfig;
-//		if(firstCall) {
-//			//Add histogram building vertex;
-//			this.histogramVertex = new JobTaskVertex("Range partition - histograming", this.jobGraph);
-//			this.auxVertices.add(this.histogramVertex);
-//			this.histogramVertex.setTaskClass(HistogramTask.class);
-//			this.histogramVertex.setNumberOfSubtasks(1);
-//			// reset counter because we instantiated a new histogram
-//			this.numberOfHistogramInputs = 0;
-//			
-//			histogramConfig = new TaskConfig(this.histogramVertex.getConfiguration());
-//			histogramConfig.setStubClass(sourceStub);
-//			histogramConfig.setLocalStrategy(LocalStrategy.SORT);
-//			Configuration histogramStubConfig = new Configuration();
-//			histogramStubConfig.setInteger(HistogramTask.NUMBER_OF_BUCKETS, targetDOP);
-//			histogramConfig.setStubParameters(histogramStubConfig);
-//			assignMemory(histogramConfig, outputConfig.getStubParameters().getInteger(HistogramTask.HISTOGRAM_MEMORY,-1));
-//		} else {
-//			histogramConfig = new TaskConfig(this.histogramVertex.getConfiguration());
-//		}
-//		//Connect with input
-//		histogramConfig.addInputShipStrategy(ShipStrategy.FORWARD, ++this.numberOfHistogramInputs);
-//		sampleConfig.addOutputShipStrategy(ShipStrategy.FORWARD);
-//		sampleVertex.connectTo(this.histogramVertex, ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
-//		
-//		
-//		//Add range distributor vertex
-//		JobTaskVertex partitionVertex = new JobTaskVertex("Range partition - partitioning", this.jobGraph);
-//		this.auxVertices.add(partitionVertex);
-//		partitionVertex.setTaskClass(PartitionTask.class);
-//		partitionVertex.setNumberOfSubtasks(sourceDOP);
-//		if (sourceIPM >= 1) {
-//			partitionVertex.setNumberOfSubtasksPerInstance(sourceIPM);
-//		}
-//		TaskConfig partitionConfig = new TaskConfig(partitionVertex.getConfiguration());
-//		partitionConfig.setStubClass(sourceStub);
-//		Configuration partitionStubConfig = new Configuration();
-//		partitionStubConfig.setString(PartitionTask.GLOBAL_PARTITIONING_ORDER, 
-//			connection.getTargetPact().getGlobalProperties().getOrdering().getOrder(0).name());
-//		partitionConfig.setStubParameters(partitionStubConfig);
-//			
-//		//Add temp vertex to avoid blocking
-//		JobTaskVertex tempVertex = generateTempVertex(
-//				// source pact stub contains out key and value
-//				connection.getSourcePact().getPactContract().getUserCodeClass(),
-//				// keep parallelization of source pact
-//				sourceDOP, sourceIPM);
-//		
-//		tempVertex.setVertexToShareInstancesWith(outputVertex);
-//		TaskConfig tempConfig = new TaskConfig(tempVertex.getConfiguration());
-//
-//		//Connect data to tempVertex (partitioner)
-//		outputVertex.connectTo(tempVertex, ChannelType.INMEMORY, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
-//		tempConfig.addInputShipStrategy(ShipStrategy.FORWARD, 1);
-//		outputConfig.addOutputShipStrategy(ShipStrategy.FORWARD);
-//		
-//		//Connect tempVertex (data) to partitionVertex
-//		tempVertex.connectTo(partitionVertex, ChannelType.INMEMORY, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
-//		// tempVertex is always connected as second input to the partitioner (2-input node).
-//		// the second input is the data input
-//		partitionConfig.addInputShipStrategy(ShipStrategy.FORWARD, 2);
-//		tempConfig.addOutputShipStrategy(ShipStrategy.FORWARD);
-//			
-//		//Connect histogram with partitioner
-//		this.histogramVertex.connectTo(partitionVertex, ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, DistributionPattern.BIPARTITE);
-//		// histogramVertex is always connected as first input to the partitioner (2-input node).
-//		// the first input is the statistic input
-//		partitionConfig.addInputShipStrategy(ShipStrategy.BROADCAST, 1);
-//		histogramConfig.addOutputShipStrategy(ShipStrategy.BROADCAST);
-//
-//		//Connect to receiving vertex
-//		partitionVertex.connectTo(inputVertex, ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, DistributionPattern.BIPARTITE);
-//		inputConfig.addInputShipStrategy(ShipStrategy.PARTITION_RANGE, inputNumber);
-//		partitionConfig.addOutputShipStrategy(ShipStrategy.PARTITION_RANGE);
-//	}
-//	
-//	/**
-//	 * Implements range partitioning with a user-defined data distribution
-//	 * @param connection
-//	 * @param outputVertex
-//	 * @param inputVertex
-//	 * @throws JobGraphDefinitionException 
-//	 */
-//	private void connectWithGivenDistributionPartitionRangeStrategy(PactConnection connection, int inputNumber,
-//			final AbstractJobVertex outputVertex, final TaskConfig outputConfig,
-//			final AbstractJobVertex inputVertex, final TaskConfig inputConfig)
-//	throws JobGraphDefinitionException
-//	{
-//		int sourceDOP = connection.getSourcePact().getDegreeOfParallelism();
-//		int sourceIPM = connection.getSourcePact().getInstancesPerMachine();
-//		int targetDOP = connection.getTargetPact().getDegreeOfParallelism();
-////		int targetIPM = connection.getTargetPact().getInstancesPerMachine();
-//		Class<?> sourceStub = connection.getSourcePact().getPactContract().getUserCodeClass();
-//		
-//		//When parallelism is one there is nothing to partition
-//		//if(sourceDOP == 1 && targetDOP == 1) {
-//		if(targetDOP == 1) {
-//			if(sourceDOP == 1) {
-//				outputVertex.connectTo(inputVertex, ChannelType.INMEMORY, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
-//			} else {
-//				outputVertex.connectTo(inputVertex, ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
-//			}
-//			outputConfig.addOutputShipStrategy(ShipStrategy.FORWARD);
-//			inputConfig.addInputShipStrategy(ShipStrategy.FORWARD, inputNumber);
-//			return;
-//		}
-//		
-//		//Add range distributor vertex
-//		JobTaskVertex partitionVertex = new JobTaskVertex("Range partition - partitioning", this.jobGraph);
-//		this.auxVertices.add(partitionVertex);
-//		partitionVertex.setTaskClass(PartitionTask.class);
-//		partitionVertex.setNumberOfSubtasks(sourceDOP);
-//		if (sourceIPM >= 1) {
-//			partitionVertex.setNumberOfSubtasksPerInstance(sourceIPM);
-//		}
-//		TaskConfig partitionConfig = new TaskConfig(partitionVertex.getConfiguration());
-//		partitionConfig.setStubClass(sourceStub);
-//		Configuration partitionStubConfig = new Configuration();
-//		partitionStubConfig.setString(PartitionTask.GLOBAL_PARTITIONING_ORDER, 
-//			connection.getTargetPact().getGlobalProperties().getOrdering().getOrder(0).name());
-//		partitionStubConfig.setBoolean(PartitionTask.PARTITION_BY_SAMPLING, false);
-//		partitionStubConfig.setInteger(PartitionTask.NUMBER_OF_PARTITIONS, targetDOP);
-//		partitionStubConfig.setClass(PartitionTask.DATA_DISTRIBUTION_CLASS,
-//			connection.getTargetPact().getPactContract().getCompilerHints().getInputDistributionClass());
-//		partitionConfig.setStubParameters(partitionStubConfig);
-//		
-//		//Connect partitioner with sending vertex
-//		outputVertex.connectTo(partitionVertex, ChannelType.INMEMORY, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
-//		// we don't use the statistic input, because the partitioning strategy is given
-//		// hence partitionVertex in now a single input node, hence we connect to input 1
-//		partitionConfig.addInputShipStrategy(ShipStrategy.FORWARD, 1);
-//		outputConfig.addOutputShipStrategy(ShipStrategy.FORWARD);
-//		
-//		//Connect to receiving vertex
-//		partitionVertex.connectTo(inputVertex, ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, DistributionPattern.BIPARTITE);
-//		inputConfig.addInputShipStrategy(ShipStrategy.PARTITION_RANGE, inputNumber);
-//		partitionConfig.addOutputShipStrategy(ShipStrategy.PARTITION_RANGE);
-//	}
+	/**
+	 * Inserts the vertices that compute the range boundaries of a range partitioned connection whose target has
+	 * no given data distribution. A sampling task and a partitioning task are placed next to the sender. The
+	 * samplers send their samples to a histogram task, which computes the range boundaries and broadcasts them
+	 * to the partitioning tasks. The partitioning tasks materialize the sender's records until the boundaries are
+	 * known and then range partition them. All range partitioned inputs of a target share one histogram task,
+	 * such that they are partitioned with the same boundaries. If another input of the target forwards records that
+	 * were range partitioned before, the connection uses the histogram task of that earlier partitioning instead.
+	 * 
+	 * @param connection The range partitioned connection.
+	 * @param outputVertex The vertex of the sender.
+	 * @param outputConfig The configuration of the sender.
+	 * @param keyPositions The positions of the partitioning keys in the sent records.
+	 * @param keyTypes The types of the partitioning keys.
+	 * @param keyDirections The sort directions of the partitioning keys.
+	 * @return The partitioning vertex, which takes the place of the sender in the connection.
+	 * @throws JobGraphDefinitionException
+	 */
+	private JobTaskVertex generateRangePartitioningVertices(PactConnection connection,
+			final AbstractJobVertex outputVertex, final TaskConfig outputConfig,
+			final int[] keyPositions, final Class<? extends Key>[] keyTypes, final boolean[] keyDirections)
+	throws JobGraphDefinitionException
+	{
+		final OptimizerNode sourceNode = connection.getSourcePact();
+		final OptimizerNode targetNode = connection.getTargetPact();
+		final int targetDOP = targetNode.getDegreeOfParallelism();
+
+		// the histogram vertex is shared among all range partitioned inputs of the target, and with the
+		// partitioning that a forwarded input of the target still carries
+		final OptimizerNode partitionedNode = getRangePartitionedNode(connection);
+		if (partitionedNode != targetNode) {
+			if (partitionedNode.getDegreeOfParallelism() != targetDOP) {
+				throw new CompilerException("The range partitioned input of " + targetNode.getPactContract().getName() +
+					" cannot reuse the range boundaries of " + partitionedNode.getPactContract().getName() +
+					", because their degrees of parallelism differ.");
+			}
+			if (isPredecessor(partitionedNode, sourceNode)) {
+				throw new CompilerException("The range partitioned input of " + targetNode.getPactContract().getName() +
+					" cannot reuse the range boundaries of " + partitionedNode.getPactContract().getName() +
+					", because it depends on the records partitioned with these boundaries.");
+			}
+		}
+		JobTaskVertex histogramVertex = this.histogramVertices.get(partitionedNode);
+		if (histogramVertex == null && partitionedNode != targetNode) {
+			throw new CompilerException("No range histogram was generated for " +
+				partitionedNode.getPactContract().getName() + ".");
+		}
+		if (histogramVertex == null) {
+			histogramVertex = new JobTaskVertex("Range Histogram (" + targetNode.getPactContract().getName() + ")",
+				this.jobGraph);
+			histogramVertex.setTaskClass(HistogramTask.class);
+			histogramVertex.setNumberOfSubtasks(1);
+			histogramVertex.setNumberOfSubtasksPerInstance(1);
+
+			// the samples carry their keys at the first positions
+			final int[] samplePositions = new int[keyPositions.length];
+			for (int i = 0; i < samplePositions.length; i++) {
+				samplePositions[i] = i;
+			}
+			final TaskConfig histogramConfig = new TaskConfig(histogramVertex.getConfiguration());
+			histogramConfig.setComparatorFactoryForInput(PactRecordComparatorFactory.class, 0);
+			PactRecordComparatorFactory.writeComparatorSetupToConfig(histogramConfig.getConfigForInputParameters(0),
+				samplePositions, keyTypes, keyDirections);
+			histogramConfig.setNumberOfRangePartitions(targetDOP);
+
+			this.histogramVertices.put(partitionedNode, histogramVertex);
+			this.auxVertices.add(histogramVertex);
+		}
+
+		return generateSamplingVertices("Range", connection, outputVertex, outputConfig, histogramVertex,
+			keyPositions, keyTypes, keyDirections, -1);
+	}
+
+	/**
+	 * Inserts the vertices that detect the skewed keys of a Match whose inputs are both hash partitioned, and
+	 * that declares no skewed keys. A sampling task and a partitioning task are placed next to the sender of
+	 * each input. The samplers of both inputs send their samples to the Match's skew detection task, which finds
+	 * the keys that are frequent in the samples and broadcasts them to the partitioning tasks. The partitioning
+	 * tasks materialize the sender's records until the skewed keys are known and then partition them with the
+	 * skew handling hash partitioning.
+	 * 
+	 * @param connection The connection to the Match.
+	 * @param inputNumber The input of the Match, starting at <code>1</code>.
+	 * @param outputVertex The vertex of the sender.
+	 * @param outputConfig The configuration of the sender.
+	 * @param keyPositions The positions of the partitioning keys in the sent records.
+	 * @param keyTypes The types of the partitioning keys.
+	 * @param keyDirections The sort directions of the partitioning keys.
+	 * @return The partitioning vertex, which takes the place of the sender in the connection.
+	 * @throws JobGraphDefinitionException
+	 */
+	private JobTaskVertex generateSkewDetectionVertices(PactConnection connection, int inputNumber,
+			final AbstractJobVertex outputVertex, final TaskConfig outputConfig,
+			final int[] keyPositions, final Class<? extends Key>[] keyTypes, final boolean[] keyDirections)
+	throws JobGraphDefinitionException
+	{
+		final OptimizerNode targetNode = connection.getTargetPact();
+
+		// both inputs of the match share the detection vertex, such that each key is skewed in only one of them
+		JobTaskVertex detectionVertex = this.skewDetectionVertices.get(targetNode);
+		if (detectionVertex == null) {
+			detectionVertex = new JobTaskVertex("Skew Detection (" + targetNode.getPactContract().getName() + ")",
+				this.jobGraph);
+			detectionVertex.setTaskClass(SkewDetectionTask.class);
+			detectionVertex.setNumberOfSubtasks(1);
+			detectionVertex.setNumberOfSubtasksPerInstance(1);
+
+			// the samples carry their keys at the first positions
+			final int[] samplePositions = new int[keyPositions.length];
+			for (int i = 0; i < samplePositions.length; i++) {
+				samplePositions[i] = i;
+			}
+			final TaskConfig detectionConfig = new TaskConfig(detectionVertex.getConfiguration());
+			detectionConfig.setComparatorFactoryForInput(PactRecordComparatorFactory.class, 0);
+			PactRecordComparatorFactory.writeComparatorSetupToConfig(detectionConfig.getConfigForInputParameters(0),
+				samplePositions, keyTypes, keyDirections);
+			detectionConfig.setNumberOfSkewPartitions(targetNode.getDegreeOfParallelism());
+
+			this.skewDetectionVertices.put(targetNode, detectionVertex);
+			this.auxVertices.add(detectionVertex);
+		}
+
+		return generateSamplingVertices("Skew", connection, outputVertex, outputConfig, detectionVertex,
+			keyPositions, keyTypes, keyDirections, inputNumber - 1);
+	}
+
+	/**
+	 * Inserts a sampling task and a partitioning task next to the sender of a connection. The sampler sends its
+	 * samples to the given vertex, which computes the distribution from the samples of all samplers and
+	 * broadcasts it to the partitioning tasks.
+	 * 
+	 * @param purpose The purpose of the sampling, which prefixes the names of the inserted vertices.
+	 * @param connection The partitioned connection.
+	 * @param outputVertex The vertex of the sender.
+	 * @param outputConfig The configuration of the sender.
+	 * @param distributionVertex The vertex that receives the samples and sends the distribution.
+	 * @param keyPositions The positions of the partitioning keys in the sent records.
+	 * @param keyTypes The types of the partitioning keys.
+	 * @param keyDirections The sort directions of the partitioning keys.
+	 * @param skewInput The input of the Match for the detection of skewed keys, or <code>-1</code>, if the
+	 *                  sampling is for a range partitioning.
+	 * @return The partitioning vertex, which takes the place of the sender in the connection.
+	 * @throws JobGraphDefinitionException
+	 */
+	private JobTaskVertex generateSamplingVertices(String purpose, PactConnection connection,
+			final AbstractJobVertex outputVertex, final TaskConfig outputConfig, final JobTaskVertex distributionVertex,
+			final int[] keyPositions, final Class<? extends Key>[] keyTypes, final boolean[] keyDirections,
+			final int skewInput)
+	throws JobGraphDefinitionException
+	{
+		final OptimizerNode sourceNode = connection.getSourcePact();
+		final int sourceDOP = sourceNode.getDegreeOfParallelism();
+		final int instancesPerMachine = sourceNode.getInstancesPerMachine();
+		final int targetDOP = connection.getTargetPact().getDegreeOfParallelism();
+		final TaskConfig distributionConfig = new TaskConfig(distributionVertex.getConfiguration());
+
+		// the sampler reads the same records as the partitioner
+		final JobTaskVertex sampleVertex = new JobTaskVertex(purpose + " Sampler (" +
+			sourceNode.getPactContract().getName() + ")", this.jobGraph);
+		sampleVertex.setTaskClass(SampleTask.class);
+		sampleVertex.setNumberOfSubtasks(sourceDOP);
+		sampleVertex.setNumberOfSubtasksPerInstance(instancesPerMachine);
+		sampleVertex.setVertexToShareInstancesWith(outputVertex);
+
+		final TaskConfig sampleConfig = new TaskConfig(sampleVertex.getConfiguration());
+		sampleConfig.setComparatorFactoryForInput(PactRecordComparatorFactory.class, 0);
+		PactRecordComparatorFactory.writeComparatorSetupToConfig(sampleConfig.getConfigForInputParameters(0),
+			keyPositions, keyTypes, keyDirections);
+		sampleConfig.setRangeSampleSize(Math.max(1, (RANGE_SAMPLES_PER_PARTITION * targetDOP) / sourceDOP));
+		sampleConfig.setRangeSampleSeed(RANGE_SAMPLE_SEED);
+		if (skewInput >= 0) {
+			sampleConfig.setSkewDetectionInput(skewInput);
+		}
+
+		outputVertex.connectTo(sampleVertex, ChannelType.INMEMORY, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
+		outputConfig.addOutputShipStrategy(ShipStrategyType.FORWARD);
+		sampleConfig.addInputToGroup(1);
+
+		sampleVertex.connectTo(distributionVertex, ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, DistributionPattern.BIPARTITE);
+		sampleConfig.addOutputShipStrategy(ShipStrategyType.FORWARD);
+		distributionConfig.addInputToGroup(1);
+
+		// the partitioner receives the distribution on its first and the records on its second input
+		final JobTaskVertex partitionVertex = new JobTaskVertex(purpose + " Partitioner (" +
+			sourceNode.getPactContract().getName() + ")", this.jobGraph);
+		partitionVertex.setTaskClass(PartitionTask.class);
+		partitionVertex.setNumberOfSubtasks(sourceDOP);
+		partitionVertex.setNumberOfSubtasksPerInstance(instancesPerMachine);
+		partitionVertex.setVertexToShareInstancesWith(outputVertex);
+
+		final TaskConfig partitionConfig = new TaskConfig(partitionVertex.getConfiguration());
+		assignMemory(partitionConfig, PactCompiler.DEFAULT_TEMP_TASK_MEMORY);
+		if (skewInput >= 0) {
+			partitionConfig.setSkewDetectionInput(skewInput);
+		}
+
+		distributionVertex.connectTo(partitionVertex, ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, DistributionPattern.BIPARTITE);
+		distributionConfig.addOutputShipStrategy(ShipStrategyType.BROADCAST);
+		partitionConfig.addInputToGroup(1);
+
+		outputVertex.connectTo(partitionVertex, ChannelType.INMEMORY, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
+		outputConfig.addOutputShipStrategy(ShipStrategyType.FORWARD);
+		partitionConfig.addInputToGroup(2);
+
+		return partitionVertex;
+	}
+
+	/**
+	 * Gets the node whose range boundaries a range partitioned connection must use. If another input of the
+	 * connection's target forwards records that are range partitioned already, that is the node which received
+	 * these records through range partitioned connections. Otherwise, it is the target itself.
+	 * 
+	 * @param connection The range partitioned connection.
+	 * @return The node whose range histogram partitions the connection.
+	 */
+	private static OptimizerNode getRangePartitionedNode(PactConnection connection)
+	{
+		final OptimizerNode targetNode = connection.getTargetPact();
+		for (PactConnection input : targetNode.getIncomingConnections()) {
+			if (input != connection && input.getShipStrategy().type() == ShipStrategyType.FORWARD) {
+				final OptimizerNode partitionedNode = findRangePartitionedNode(input.getSourcePact());
+				if (partitionedNode != null) {
+					return partitionedNode;
+				}
+			}
+		}
+		return targetNode;
+	}
+
+	/**
+	 * Follows the forward connections upstream from the given node to the node that received its records
+	 * through range partitioned connections.
+	 * 
+	 * @param node The node to start from.
+	 * @return The range partitioned node, or <code>null</code>, if the chain of forward connections
+	 *         does not start at a range partitioning.
+	 */
+	private static OptimizerNode findRangePartitionedNode(OptimizerNode node)
+	{
+		for (PactConnection input : node.getIncomingConnections()) {
+			if (input.getShipStrategy().type() == ShipStrategyType.PARTITION_RANGE) {
+				return node;
+			}
+		}
+		for (PactConnection input : node.getIncomingConnections()) {
+			if (input.getShipStrategy().type() == ShipStrategyType.FORWARD) {
+				final OptimizerNode partitionedNode = findRangePartitionedNode(input.getSourcePact());
+				if (partitionedNode != null) {
+					return partitionedNode;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Checks whether the given candidate is the given node or one of its (transitive) predecessors.
+	 */
+	private static boolean isPredecessor(OptimizerNode candidate, OptimizerNode node)
+	{
+		if (candidate == node) {
+			return true;
+		}
+		for (PactConnection input : node.getIncomingConnections()) {
+			if (isPredecessor(candidate, input.getSourcePact())) {
+				return true;
+			}
+		}
+		return false;
+	}
 
 
 	/**
@@ -1223,6 +1423,7 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 			break;
 		case PARTITION_RANGE:
 		case PARTITION_HASH:
+		case PARTITION_HASH_SKEW:
 		case BROADCAST:
 			channelType = ChannelType.NETWORK;
 			distributionPattern = DistributionPattern.BIPARTITE;
@@ -1294,11 +1495,42 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 			keyDirections = null;
 		}
 
+		final DataDistribution distri = targetContract instanceof GenericDataSink ?
+			((GenericDataSink) targetContract).getDataDistribution() : null;
+		
+		// without declared skewed keys, the skewed keys of a match are detected from a sample
+		final boolean detectSkew = connection.getShipStrategy().type() == ShipStrategyType.PARTITION_HASH_SKEW &&
+			!((MatchContract) targetContract).hasSkewedKeys();
+		
+		// without a given distribution, the range boundaries are computed from a sample. the partitioning
+		// vertex then takes the place of the sender. it materializes its input, so no sender side temp is needed.
+		// the same holds for the detection of skewed keys
+		AbstractJobVertex senderVertex = outputVertex;
+		TaskConfig senderConfig = outputConfig;
+		TempMode tempMode = connection.getTempMode();
+		
+		if ((connection.getShipStrategy().type() == ShipStrategyType.PARTITION_RANGE && distri == null) || detectSkew) {
+			if (keyPositions == null || keyPositions.length == 0) {
+				throw new CompilerException("Partitioned connection to " + targetContract.getName() +
+					" has no partitioning keys.");
+			}
+			final JobTaskVertex partitionVertex = detectSkew ?
+				generateSkewDetectionVertices(connection, inputNumber, outputVertex, outputConfig,
+					keyPositions, keyTypes, keyDirections) :
+				generateRangePartitioningVertices(connection, outputVertex, outputConfig,
+					keyPositions, keyTypes, keyDirections);
+			senderVertex = partitionVertex;
+			senderConfig = new TaskConfig(partitionVertex.getConfiguration());
+			if (tempMode == TempMode.TEMP_SENDER_SIDE) {
+				tempMode = TempMode.NONE;
+			}
+		}
+
 		final TaskConfig configForOutputShipStrategy;
-		switch (connection.getTempMode()) {
+		switch (tempMode) {
 		case NONE:
-			outputVertex.connectTo(inputVertex, channelType, CompressionLevel.NO_COMPRESSION, distributionPattern);
-			configForOutputShipStrategy = outputConfig;
+			senderVertex.connectTo(inputVertex, channelType, CompressionLevel.NO_COMPRESSION, distributionPattern);
+			configForOutputShipStrategy = senderConfig;
 			inputConfig.addInputToGroup(inputNumber);
 			break;
 		case TEMP_SENDER_SIDE:
@@ -1313,16 +1545,16 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 				degreeOfParallelism, instancesPerMachine);
 
 			// insert tempVertex between outputVertex and inputVertex and connect them
-			outputVertex.connectTo(tempVertex, ChannelType.INMEMORY, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
+			senderVertex.connectTo(tempVertex, ChannelType.INMEMORY, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
 			tempVertex.connectTo(inputVertex, channelType, CompressionLevel.NO_COMPRESSION, distributionPattern);
 
-			tempVertex.setVertexToShareInstancesWith(outputVertex);
+			tempVertex.setVertexToShareInstancesWith(senderVertex);
 			
 			// get tempVertex config
 			tempConfig = new TaskConfig(tempVertex.getConfiguration());
 
 			// set strategies in task configs
-			outputConfig.addOutputShipStrategy(ShipStrategyType.FORWARD);
+			senderConfig.addOutputShipStrategy(ShipStrategyType.FORWARD);
 			configForOutputShipStrategy = tempConfig;
 			inputConfig.addInputToGroup(inputNumber);
 			tempConfig.addInputToGroup(1);
@@ -1340,7 +1572,7 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 				degreeOfParallelism, instancesPerMachine);
 
 			// insert tempVertex between outputVertex and inputVertex and connect them
-			outputVertex.connectTo(tempVertex, channelType, CompressionLevel.NO_COMPRESSION, distributionPattern);
+			senderVertex.connectTo(tempVertex, channelType, CompressionLevel.NO_COMPRESSION, distributionPattern);
 			tempVertex.connectTo(inputVertex, ChannelType.INMEMORY, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
 
 			tempVertex.setVertexToShareInstancesWith(inputVertex);
@@ -1350,13 +1582,13 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 
 			// set strategies in task configs
 			tempConfig.addOutputShipStrategy(ShipStrategyType.FORWARD);
-			configForOutputShipStrategy = outputConfig;
+			configForOutputShipStrategy = senderConfig;
 			
 			inputConfig.addInputToGroup(inputNumber);
 			tempConfig.addInputToGroup(1);
 			break;
 		default:
-			throw new CompilerException("Invalid connection temp mode: " + connection.getTempMode());
+			throw new CompilerException("Invalid connection temp mode: " + tempMode);
 		}
 		
 		// set strategies in task configs
@@ -1367,14 +1599,59 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 			configForOutputShipStrategy.setComparatorFactoryForOutput(PactRecordComparatorFactory.class, outputNum);
 			PactRecordComparatorFactory.writeComparatorSetupToConfig(configForOutputShipStrategy.getConfigForOutputParameters(outputNum),
 				keyPositions, keyTypes, keyDirections);
+			
+			if (connection.getShipStrategy().type() == ShipStrategyType.PARTITION_HASH_SKEW && !detectSkew) {
+				// keys declared as skewed on this input are spread, the ones declared on the other input are replicated
+				final MatchContract match = (MatchContract) targetContract;
+				final int[] spreadKeyHashes = getSkewedKeyHashes(match.getSkewedKeys(inputNumber - 1), match.getKeyClasses());
+				final int[] replicateKeyHashes = getSkewedKeyHashes(match.getSkewedKeys(2 - inputNumber), match.getKeyClasses());
+				
+				// the emitter identifies the skewed keys by their hash codes. a key that is spread on one input
+				// must be replicated on the other, so a hash code must not stand for skewed keys of both inputs
+				for (int spreadHash : spreadKeyHashes) {
+					for (int replicateHash : replicateKeyHashes) {
+						if (spreadHash == replicateHash) {
+							throw new CompilerException("Match " + match.getName() + " declares skewed keys in both " +
+								"inputs that have the same hash code " + spreadHash + ". Declare only one of them as skewed.");
+						}
+					}
+				}
+				configForOutputShipStrategy.setOutputSkewedKeyHashes(outputNum, spreadKeyHashes, replicateKeyHashes);
+			}
+		}
+		
+		if (distri != null) {
+			configForOutputShipStrategy.setOutputDataDistribution(distri);
+		}
+	}
+
+	/**
+	 * Computes the hash codes of the given skewed keys, as the output emitter computes them for the records
+	 * carrying these key values.
+	 * 
+	 * @param skewedKeys The key values, one array with a value per key field for each skewed key.
+	 * @param keyClasses The classes of the key fields.
+	 * @return The hash codes of the skewed keys.
+	 */
+	private static int[] getSkewedKeyHashes(List<Key[]> skewedKeys, Class<? extends Key>[] keyClasses)
+	{
+		final int[] positions = new int[keyClasses.length];
+		for (int i = 0; i < positions.length; i++) {
+			positions[i] = i;
 		}
 		
-		if (targetContract instanceof GenericDataSink) {
-			final DataDistribution distri = ((GenericDataSink) targetContract).getDataDistribution();
-			if (distri != null) {
-				configForOutputShipStrategy.setOutputDataDistribution(distri);
+		final PactRecordComparator comparator = new PactRecordComparator(positions, keyClasses);
+		final PactRecord record = new PactRecord(keyClasses.length);
+		final int[] hashes = new int[skewedKeys.size()];
+		
+		for (int i = 0; i < hashes.length; i++) {
+			final Key[] values = skewedKeys.get(i);
+			for (int k = 0; k < values.length; k++) {
+				record.setField(k, values[k]);
 			}
+			hashes[i] = comparator.hash(record);
 		}
+		return hashes;
 	}
 
 	// ------------------------------------------------------------------------
@@ -1387,6 +1664,18 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 		config.setNumFilehandles(DEFAULT_MERGE_FACTOR);
 	}
 	
+	private void assignSortParallelism(TaskConfig config, OptimizerNode node) throws CompilerException
+	{
+		final int sortParallelism = node.getPactContract().getParameters().getInteger(
+			PactCompiler.HINT_SORT_PARALLELISM, -1);
+		if (sortParallelism > 0) {
+			config.setSortParallelism(sortParallelism);
+		} else if (sortParallelism != -1) {
+			throw new CompilerException("Invalid sort parallelism hint for '" + node.getName() + "': " + 
+				sortParallelism);
+		}
+	}
+	
 	// ------------------------------------------------------------------------
 	// Task Chaining
 	// ------------------------------------------------------------------------
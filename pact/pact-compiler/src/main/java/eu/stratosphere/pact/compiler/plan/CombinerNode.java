@@ -87,6 +87,7 @@ public class CombinerNode extends OptimizerNode {
 	public int getMemoryConsumerCount() {
 		switch(this.localStrategy) {
 			case COMBININGSORT: return 1;
+			case HASH_AGGREGATE: return 1;
 			default:	        return 0;
 		}
 	}
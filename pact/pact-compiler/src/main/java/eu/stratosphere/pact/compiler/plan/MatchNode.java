@@ -21,12 +21,14 @@ import java.util.Map;
 import java.util.Set;
 
 import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
 import eu.stratosphere.pact.common.contract.Contract;
 import eu.stratosphere.pact.common.contract.MatchContract;
 import eu.stratosphere.pact.common.contract.Order;
 import eu.stratosphere.pact.common.contract.Ordering;
 import eu.stratosphere.pact.common.util.FieldList;
 import eu.stratosphere.pact.common.util.FieldSet;
+import eu.stratosphere.pact.common.util.PactConfigConstants;
 import eu.stratosphere.pact.compiler.CompilerException;
 import eu.stratosphere.pact.compiler.Costs;
 import eu.stratosphere.pact.compiler.GlobalProperties;
@@ -38,6 +40,7 @@ import eu.stratosphere.pact.runtime.shipping.ShipStrategy;
 import eu.stratosphere.pact.runtime.shipping.ShipStrategy.BroadcastSS;
 import eu.stratosphere.pact.runtime.shipping.ShipStrategy.ForwardSS;
 import eu.stratosphere.pact.runtime.shipping.ShipStrategy.PartitionHashSS;
+import eu.stratosphere.pact.runtime.shipping.ShipStrategy.PartitionHashSkewSS;
 import eu.stratosphere.pact.runtime.shipping.ShipStrategy.PartitionRangeSS;
 import eu.stratosphere.pact.runtime.shipping.ShipStrategy.ShipStrategyType;
 import eu.stratosphere.pact.runtime.task.util.TaskConfig.LocalStrategy;
@@ -438,8 +441,8 @@ public class MatchNode extends TwoInputNode {
 							// 4) broadcast the second input (forward the first)
 							createLocalAlternatives(outputPlans, subPlan1, subPlan2, new PartitionHashSS(this.keySet1),
 								new PartitionHashSS(this.keySet2), estimator);
-							// createLocalAlternatives(outputPlans, pred1, pred2, ShipStrategy.PARTITION_RANGE,
-							// ShipStrategy.PARTITION_RANGE, estimator);
+							createLocalAlternatives(outputPlans, subPlan1, subPlan2, new PartitionRangeSS(this.keySet1),
+								new PartitionRangeSS(this.keySet2), estimator);
 
 							// add the broadcasting strategies only, if the sizes of can be estimated
 							if (haveValidOutputEstimates(subPlan1) && haveValidOutputEstimates(subPlan2)) {
@@ -769,6 +772,17 @@ public class MatchNode extends TwoInputNode {
 
 		// no self match
 		if(ls != LocalStrategy.SELF_NESTEDLOOP && ls != LocalStrategy.SORT_SELF_NESTEDLOOP) {
+			
+			// if both inputs are re-partitioned by hash anyways, the keys that are declared as skewed, or that
+			// are detected as skewed from a sample, can be spread over all instances on the skewed side and
+			// replicated on the other side
+			if (ss1.type() == ShipStrategyType.PARTITION_HASH && ss2.type() == ShipStrategyType.PARTITION_HASH &&
+					(getPactContract().hasSkewedKeys() || GlobalConfiguration.getBoolean(
+						PactConfigConstants.SKEW_DETECTION_KEY, PactConfigConstants.DEFAULT_SKEW_DETECTION)))
+			{
+				ss1 = new PartitionHashSkewSS(this.keySet1);
+				ss2 = new PartitionHashSkewSS(this.keySet2);
+			}
 		
 			// compute the given properties of the incoming data
 			GlobalProperties gp1 = PactConnection.getGlobalPropertiesAfterConnection(subPlan1, this, 0, ss1);
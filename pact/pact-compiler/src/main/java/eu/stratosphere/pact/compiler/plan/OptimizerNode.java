@@ -15,7 +15,11 @@
 
 package eu.stratosphere.pact.compiler.plan;
 
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -25,6 +29,8 @@ import java.util.Map;
 import java.util.Set;
 import java.util.Map.Entry;
 
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.util.StringUtils;
 import eu.stratosphere.pact.common.contract.AbstractPact;
 import eu.stratosphere.pact.common.contract.CoGroupContract;
 import eu.stratosphere.pact.common.contract.CompilerHints;
@@ -46,6 +52,7 @@ import eu.stratosphere.pact.compiler.GlobalProperties;
 import eu.stratosphere.pact.compiler.LocalProperties;
 import eu.stratosphere.pact.compiler.PartitionProperty;
 import eu.stratosphere.pact.compiler.costs.CostEstimator;
+import eu.stratosphere.pact.runtime.statistics.OperatorStatistics;
 import eu.stratosphere.pact.runtime.task.util.TaskConfig.LocalStrategy;
 
 /**
@@ -165,6 +172,8 @@ public abstract class OptimizerNode implements Visitable<OptimizerNode>
 
 	protected boolean pFlag = false; // flag for the internal pruning algorithm
 
+	private String statisticsSignature; // the signature identifying this node's output across jobs
+
 	// ------------------------------------------------------------------------
 	//                      Constructor / Setup
 	// ------------------------------------------------------------------------
@@ -221,6 +230,7 @@ public abstract class OptimizerNode implements Visitable<OptimizerNode>
 		this.stubOutCardUB = toClone.stubOutCardUB;
 		
 		this.id = toClone.id;
+		this.statisticsSignature = toClone.statisticsSignature;
 		this.degreeOfParallelism = toClone.degreeOfParallelism;
 		this.instancesPerMachine = toClone.instancesPerMachine;
 		
@@ -870,6 +880,88 @@ public abstract class OptimizerNode implements Visitable<OptimizerNode>
 	}
 	
 
+	/**
+	 * Replaces the output estimates of this node with the statistics that previous executions of the same
+	 * operator observed at runtime, if the statistics object provides them. The observed number of records,
+	 * output size and the numbers of distinct values for the observed field sets take precedence over all
+	 * estimates derived from compiler hints.
+	 * 
+	 * @param statistics
+	 *        The statistics object which may be accessed to get the observed statistics.
+	 *        The parameter may be null, if no statistics are available.
+	 */
+	public void applyObservedStatistics(DataStatistics statistics) {
+		if (statistics == null) {
+			return;
+		}
+		
+		final OperatorStatistics observed = statistics.getObservedStatistics(getStatisticsSignature());
+		if (observed == null) {
+			return;
+		}
+		
+		this.estimatedNumRecords = observed.getNumRecords();
+		this.estimatedOutputSize = observed.getNumBytes();
+		this.estimatedCardinality.putAll(observed.getDistinctCounts());
+		
+		// the remaining estimated cardinalities must not exceed the observed number of records
+		for (Entry<FieldSet, Long> cardinality : this.estimatedCardinality.entrySet()) {
+			if (cardinality.getValue() > this.estimatedNumRecords) {
+				cardinality.setValue(this.estimatedNumRecords);
+			}
+		}
+	}
+	
+	/**
+	 * Gets the signature that identifies the output of this node across jobs, such that statistics observed
+	 * during the execution of one job can be used for the compilation of another. The signature is derived
+	 * from the node type, the contract type, the user code class, the contract parameters (which include the
+	 * paths of file inputs), the key fields and, recursively, the signatures of the node's inputs. It does
+	 * not depend on the chosen execution strategies or the degree of parallelism.
+	 * 
+	 * @return The signature of this node.
+	 */
+	public String getStatisticsSignature() {
+		if (this.statisticsSignature != null) {
+			return this.statisticsSignature;
+		}
+		
+		final Contract contract = getPactContract();
+		final StringBuilder bld = new StringBuilder();
+		bld.append(getClass().getName()).append('|');
+		bld.append(contract.getClass().getName()).append('|');
+		bld.append(contract.getUserCodeClass() == null ? "" : contract.getUserCodeClass().getName()).append('|');
+		
+		final Configuration parameters = contract.getParameters();
+		final List<String> keys = new ArrayList<String>(parameters.keySet());
+		Collections.sort(keys);
+		for (String key : keys) {
+			bld.append(key).append('=').append(parameters.getString(key, "")).append(';');
+		}
+		
+		final List<PactConnection> inputs = getIncomingConnections();
+		for (int i = 0; i < inputs.size(); i++) {
+			bld.append('|');
+			if (contract instanceof AbstractPact<?> && i < ((AbstractPact<?>) contract).getNumberOfInputs()) {
+				bld.append(Arrays.toString(((AbstractPact<?>) contract).getKeyColumnNumbers(i)));
+			}
+			final PactConnection input = inputs.get(i);
+			if (input != null && input.getSourcePact() != null) {
+				bld.append(input.getSourcePact().getStatisticsSignature());
+			}
+		}
+		
+		try {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			this.statisticsSignature = StringUtils.byteToHexString(digest.digest(bld.toString().getBytes("UTF-8")));
+		} catch (NoSuchAlgorithmException nsaex) {
+			throw new CompilerException("The digest algorithm for the statistics signature is not available.", nsaex);
+		} catch (UnsupportedEncodingException ueex) {
+			throw new CompilerException("The encoding for the statistics signature is not available.", ueex);
+		}
+		return this.statisticsSignature;
+	}
+	
 	/**
 	 * Takes the given list of plans that are candidates for this node in the final plan and retains for each distinct
 	 * set of interesting properties only the cheapest plan.
@@ -377,6 +377,10 @@ public class PactConnection {
 			gp.setPartitioning(PartitionProperty.HASH_PARTITIONED, ((PartitionShipStrategy)shipMode).getPartitionFields());
 			gp.setOrdering(null);
 			break;
+		case PARTITION_HASH_SKEW:
+			// the skewed keys are spread or replicated, so the data is not partitioned by key afterwards
+			gp.reset();
+			break;
 		case FORWARD:
 			if (source.getDegreeOfParallelism() > target.getDegreeOfParallelism()) {
 				gp.setOrdering(null);
@@ -69,6 +69,11 @@ public class ReduceNode extends SingleInputNode {
 				setLocalStrategy(LocalStrategy.SORT);
 			} else if (PactCompiler.HINT_LOCAL_STRATEGY_COMBINING_SORT.equals(localStrategy)) {
 				setLocalStrategy(LocalStrategy.COMBININGSORT);
+			} else if (PactCompiler.HINT_LOCAL_STRATEGY_HASH_AGGREGATE.equals(localStrategy)) {
+				if (!isCombineable() || pactContract.getGroupOrder() != null) {
+					throw new CompilerException("Hash aggregation requires a combinable stub without group order.");
+				}
+				setLocalStrategy(LocalStrategy.HASH_AGGREGATE);
 			} else {
 				throw new CompilerException("Invalid local strategy hint for match contract: " + localStrategy);
 			}
@@ -162,6 +167,7 @@ public class ReduceNode extends SingleInputNode {
 		switch(this.localStrategy) {
 			case SORT:          return 1;
 			case COMBININGSORT: return 1;
+			case HASH_AGGREGATE: return 1;
 			case NONE:          return getPactContract().getGroupOrder() == null ? 0 : 1;
 			default:	        return 0;
 		}
@@ -292,12 +298,15 @@ public class ReduceNode extends SingleInputNode {
 			
 				// we need one
 				if (ls != LocalStrategy.NONE) {
-					if (ls != LocalStrategy.COMBININGSORT && ls != LocalStrategy.SORT) {
+					if (ls != LocalStrategy.COMBININGSORT && ls != LocalStrategy.SORT && ls != LocalStrategy.HASH_AGGREGATE) {
 						// no valid plan possible
 						continue;
 					}
 				}
 				// local strategy free to choose
+				else if (isHashAggregationApplicable(subPlan)) {
+					ls = LocalStrategy.HASH_AGGREGATE;
+				}
 				else {
 					ls = isCombineable() ? LocalStrategy.COMBININGSORT : LocalStrategy.SORT;
 				}
@@ -311,6 +320,10 @@ public class ReduceNode extends SingleInputNode {
 				}
 				lp.setOrdering(ordering);
 				lp.setGrouped(true, keySet);
+			} else if (ls == LocalStrategy.HASH_AGGREGATE) {
+				// the hash table groups the data, but does not order it
+				lp.setOrdering(null);
+				lp.setGrouped(true, keySet);
 			}
 
 			// ----------------------------------------------------------------
@@ -324,6 +337,9 @@ public class ReduceNode extends SingleInputNode {
 
 				OptimizerNode combiner = new CombinerNode(getPactContract(), subPlan, this.combinerReducingFactor);
 				combiner.setDegreeOfParallelism(subPlan.getDegreeOfParallelism());
+				if (ls == LocalStrategy.HASH_AGGREGATE) {
+					combiner.setLocalStrategy(LocalStrategy.HASH_AGGREGATE);
+				}
 				estimator.costOperator(combiner);
 				reducePred = combiner;
 			}
@@ -342,6 +358,33 @@ public class ReduceNode extends SingleInputNode {
 		}
 	}
 	
+	/**
+	 * Checks, whether the input can be grouped with a hash aggregation. That is the case, if the stub is
+	 * combinable, no group order is requested, and the estimated number of distinct keys per instance is
+	 * small enough that the aggregated data fits into a hash table.
+	 * 
+	 * @param pred The predecessor, which provides the key cardinality estimate.
+	 * @return True, if the hash aggregation should be used, false otherwise.
+	 */
+	private boolean isHashAggregationApplicable(OptimizerNode pred) {
+		if (!isCombineable() || getPactContract().getGroupOrder() != null) {
+			return false;
+		}
+		
+		final long numKeys = pred.getEstimatedCardinality(new FieldSet(this.keyList));
+		if (numKeys < 1) {
+			return false;
+		}
+		
+		// the width of a record; we add the overhead of the table per record
+		final long numRecords = pred.getEstimatedNumRecords();
+		final long outputSize = pred.getEstimatedOutputSize();
+		final long width = (numRecords > 0 && outputSize > 0 ? outputSize / numRecords : 64) + 24;
+		
+		final int parallelism = Math.max(1, getDegreeOfParallelism());
+		return (numKeys / parallelism + 1) * width <= PactCompiler.HASH_AGGREGATION_MAX_TABLE_SIZE;
+	}
+	
 	/**
 	 * Computes the number of keys that are processed by the PACT.
 	 * 
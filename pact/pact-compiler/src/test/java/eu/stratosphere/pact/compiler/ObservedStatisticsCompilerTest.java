@@ -0,0 +1,188 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.pact.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.instance.HardwareDescription;
+import eu.stratosphere.nephele.instance.HardwareDescriptionFactory;
+import eu.stratosphere.nephele.instance.InstanceType;
+import eu.stratosphere.nephele.instance.InstanceTypeDescription;
+import eu.stratosphere.nephele.instance.InstanceTypeDescriptionFactory;
+import eu.stratosphere.nephele.instance.InstanceTypeFactory;
+import eu.stratosphere.pact.common.contract.FileDataSink;
+import eu.stratosphere.pact.common.contract.FileDataSource;
+import eu.stratosphere.pact.common.contract.MatchContract;
+import eu.stratosphere.pact.common.plan.Plan;
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.common.util.FieldSet;
+import eu.stratosphere.pact.compiler.costs.FixedSizeClusterCostEstimator;
+import eu.stratosphere.pact.compiler.plan.DataSourceNode;
+import eu.stratosphere.pact.compiler.plan.OptimizedPlan;
+import eu.stratosphere.pact.compiler.util.DummyInputFormat;
+import eu.stratosphere.pact.compiler.util.DummyMatchStub;
+import eu.stratosphere.pact.compiler.util.DummyOutputFormat;
+import eu.stratosphere.pact.runtime.statistics.RuntimeStatisticsStore;
+import eu.stratosphere.pact.runtime.statistics.StatisticsCollector;
+
+/**
+ * Tests that the compiler uses the statistics which earlier executions of an operator observed at runtime
+ * in place of its own estimates.
+ */
+public class ObservedStatisticsCompilerTest {
+	
+	private static final String IN_FILE_1 = "file:///test/file1";
+	
+	private static final String IN_FILE_2 = "file:///test/file2";
+	
+	private static final String OUT_FILE = "file:///test/output";
+	
+	private static final int defaultParallelism = 8;
+	
+	private static final Collector<PactRecord> DISCARDING = new Collector<PactRecord>() {
+		@Override
+		public void collect(PactRecord record) {}
+		
+		@Override
+		public void close() {}
+	};
+	
+	// ------------------------------------------------------------------------
+	
+	private File directory;
+	
+	private PactCompiler compiler;
+	
+	private InstanceTypeDescription instanceType;
+	
+	// ------------------------------------------------------------------------	
+	
+	@Before
+	public void setup() throws IOException
+	{
+		this.directory = File.createTempFile("statistics", "");
+		this.directory.delete();
+		this.directory.mkdirs();
+		
+		// the compiler is long-lived, as in the client, such that it must see statistics written after its creation
+		final DataStatistics dataStats = new DataStatistics(this.directory.toURI().toString());
+		this.compiler = new PactCompiler(dataStats, new FixedSizeClusterCostEstimator(),
+			new InetSocketAddress(InetAddress.getLocalHost(), 12345));
+		
+		// create the instance type description
+		InstanceType iType = InstanceTypeFactory.construct("standard", 6, 2, 4096, 100, 0);
+		HardwareDescription hDesc = HardwareDescriptionFactory.construct(2, 4096 * 1024 * 1024, 2000 * 1024 * 1024);
+		this.instanceType = InstanceTypeDescriptionFactory.construct(iType, hDesc, defaultParallelism * 2);
+	}
+	
+	@After
+	public void tearDown()
+	{
+		final File[] operatorDirs = this.directory.listFiles();
+		if (operatorDirs != null) {
+			for (File operatorDir : operatorDirs) {
+				for (File file : operatorDir.listFiles()) {
+					file.delete();
+				}
+				operatorDir.delete();
+			}
+		}
+		this.directory.delete();
+	}
+	
+	@Test
+	public void testObservedStatisticsOverrideEstimates() throws Exception
+	{
+		// without observed statistics, the estimates are derived from the input format's statistics
+		OptimizedPlan plan = compile();
+		final DataSourceNode first = getSource(plan, IN_FILE_1);
+		final DataSourceNode second = getSource(plan, IN_FILE_2);
+		Assert.assertFalse(first.getStatisticsSignature().equals(second.getStatisticsSignature()));
+		
+		final long estimatedRecords = first.getEstimatedNumRecords();
+		Assert.assertTrue(estimatedRecords != 5000);
+		
+		// observe the output of the first source, produced by two parallel instances
+		final RuntimeStatisticsStore store = new RuntimeStatisticsStore(this.directory.toURI().toString());
+		final PactRecord record = new PactRecord();
+		long numBytes = 0;
+		for (int instance = 0; instance < 2; instance++) {
+			@SuppressWarnings("unchecked")
+			final StatisticsCollector collector = new StatisticsCollector(DISCARDING,
+				new int[][] { { 0 } }, new Class[][] { { PactInteger.class } }, store,
+				first.getStatisticsSignature(), "job", instance, 2);
+			for (int i = 0; i < 2500; i++) {
+				record.setField(0, new PactInteger(i % 40));
+				record.setField(1, new PactInteger(i));
+				numBytes += record.getBinaryLength();
+				collector.collect(record);
+			}
+			collector.close();
+		}
+		
+		// the next compilation uses the observed statistics for the first source only
+		plan = compile();
+		final DataSourceNode observed = getSource(plan, IN_FILE_1);
+		Assert.assertEquals(first.getStatisticsSignature(), observed.getStatisticsSignature());
+		Assert.assertEquals(5000, observed.getEstimatedNumRecords());
+		Assert.assertEquals(numBytes, observed.getEstimatedOutputSize());
+		Assert.assertEquals(40, observed.getEstimatedCardinality(new FieldSet(0)));
+		
+		Assert.assertEquals(second.getEstimatedNumRecords(), getSource(plan, IN_FILE_2).getEstimatedNumRecords());
+	}
+	
+	// ------------------------------------------------------------------------
+	
+	private OptimizedPlan compile()
+	{
+		FileDataSource sourceA = new FileDataSource(DummyInputFormat.class, IN_FILE_1);
+		FileDataSource sourceB = new FileDataSource(DummyInputFormat.class, IN_FILE_2);
+		
+		MatchContract mat = MatchContract.builder(DummyMatchStub.class, PactInteger.class, 0, 0)
+			.input1(sourceA)
+			.input2(sourceB)
+			.build();
+		
+		FileDataSink sink = new FileDataSink(DummyOutputFormat.class, OUT_FILE, mat);
+		
+		Plan plan = new Plan(sink, "Observed Statistics");
+		plan.setDefaultParallelism(defaultParallelism);
+		return this.compiler.compile(plan, this.instanceType);
+	}
+	
+	private static DataSourceNode getSource(OptimizedPlan plan, String path)
+	{
+		for (DataSourceNode source : plan.getDataSources()) {
+			if (((FileDataSource) source.getPactContract()).getFilePath().equals(path)) {
+				return source;
+			}
+		}
+		Assert.fail("No source for path " + path);
+		return null;
+	}
+}
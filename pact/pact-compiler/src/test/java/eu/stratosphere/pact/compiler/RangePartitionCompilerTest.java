@@ -0,0 +1,264 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.compiler;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.Iterator;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.instance.HardwareDescription;
+import eu.stratosphere.nephele.instance.HardwareDescriptionFactory;
+import eu.stratosphere.nephele.instance.InstanceType;
+import eu.stratosphere.nephele.instance.InstanceTypeDescription;
+import eu.stratosphere.nephele.instance.InstanceTypeDescriptionFactory;
+import eu.stratosphere.nephele.instance.InstanceTypeFactory;
+import eu.stratosphere.nephele.jobgraph.JobGraph;
+import eu.stratosphere.nephele.jobgraph.JobTaskVertex;
+import eu.stratosphere.pact.common.contract.DataDistribution;
+import eu.stratosphere.pact.common.contract.FileDataSink;
+import eu.stratosphere.pact.common.contract.FileDataSource;
+import eu.stratosphere.pact.common.contract.MapContract;
+import eu.stratosphere.pact.common.contract.MatchContract;
+import eu.stratosphere.pact.common.contract.Order;
+import eu.stratosphere.pact.common.contract.Ordering;
+import eu.stratosphere.pact.common.plan.Plan;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.compiler.costs.FixedSizeClusterCostEstimator;
+import eu.stratosphere.pact.compiler.jobgen.JobGraphGenerator;
+import eu.stratosphere.pact.compiler.plan.OptimizedPlan;
+import eu.stratosphere.pact.compiler.plan.PactConnection;
+import eu.stratosphere.pact.compiler.util.DummyInputFormat;
+import eu.stratosphere.pact.compiler.util.DummyMatchStub;
+import eu.stratosphere.pact.compiler.util.DummyOutputFormat;
+import eu.stratosphere.pact.compiler.util.IdentityMap;
+import eu.stratosphere.pact.runtime.task.HistogramTask;
+import eu.stratosphere.pact.runtime.task.PartitionTask;
+import eu.stratosphere.pact.runtime.task.SampleTask;
+
+/**
+ * Tests that range partitioned connections without a given data distribution are translated into the
+ * sampling, histogram and partitioning vertices.
+ */
+public class RangePartitionCompilerTest {
+
+	private static final String IN_FILE = "file:///test/file";
+
+	private static final String IN_FILE_2 = "file:///test/file2";
+
+	private static final String IN_FILE_3 = "file:///test/file3";
+
+	private static final String OUT_FILE = "file:///test/output1";
+
+	private static final int defaultParallelism = 8;
+
+	// ------------------------------------------------------------------------
+
+	private PactCompiler compiler;
+
+	private InstanceTypeDescription instanceType;
+
+	// ------------------------------------------------------------------------
+
+	@Before
+	public void setup()
+	{
+		try {
+			InetSocketAddress dummyAddress = new InetSocketAddress(InetAddress.getLocalHost(), 12345);
+
+			// prepare the statistics
+			DataStatistics dataStats = new DataStatistics();
+			this.compiler = new PactCompiler(dataStats, new FixedSizeClusterCostEstimator(), dummyAddress);
+		}
+		catch (Exception ex) {
+			ex.printStackTrace();
+			Assert.fail("Test setup failed.");
+		}
+
+		// create the instance type description
+		InstanceType iType = InstanceTypeFactory.construct("standard", 6, 2, 4096, 100, 0);
+		HardwareDescription hDesc = HardwareDescriptionFactory.construct(2, 4096 * 1024 * 1024, 2000 * 1024 * 1024);
+		this.instanceType = InstanceTypeDescriptionFactory.construct(iType, hDesc, defaultParallelism * 2);
+	}
+
+	@Test
+	public void testGlobalSortWithSampledDistribution() {
+		final JobGraph jobGraph = compileGlobalSortPlan(null);
+
+		Assert.assertEquals(1, countVertices(jobGraph, SampleTask.class));
+		Assert.assertEquals(1, countVertices(jobGraph, PartitionTask.class));
+		Assert.assertEquals(1, countVertices(jobGraph, HistogramTask.class));
+
+		for (Iterator<JobTaskVertex> iter = jobGraph.getTaskVertices(); iter.hasNext();) {
+			final JobTaskVertex vertex = iter.next();
+			if (HistogramTask.class.getName().equals(vertex.getInvokableClassName())) {
+				Assert.assertEquals(1, vertex.getNumberOfSubtasks());
+			}
+			else if (PartitionTask.class.getName().equals(vertex.getInvokableClassName())) {
+				// boundaries and data
+				Assert.assertEquals(2, vertex.getNumberOfBackwardConnections());
+			}
+		}
+	}
+
+	@Test
+	public void testGlobalSortWithGivenDistribution() {
+		final JobGraph jobGraph = compileGlobalSortPlan(new DummyDistribution());
+
+		Assert.assertEquals(0, countVertices(jobGraph, SampleTask.class));
+		Assert.assertEquals(0, countVertices(jobGraph, PartitionTask.class));
+		Assert.assertEquals(0, countVertices(jobGraph, HistogramTask.class));
+	}
+
+	@Test
+	public void testMatchWithSampledDistribution() {
+		FileDataSource source1 = new FileDataSource(DummyInputFormat.class, IN_FILE);
+		FileDataSource source2 = new FileDataSource(DummyInputFormat.class, IN_FILE_2);
+		MatchContract match = MatchContract.builder(DummyMatchStub.class, PactInteger.class, 0, 0)
+			.input1(source1).input2(source2).build();
+		FileDataSink sink = new FileDataSink(DummyOutputFormat.class, OUT_FILE, match);
+
+		final JobGraph jobGraph = compileWithRangePartitioning(sink);
+
+		// both inputs are partitioned with the boundaries of one histogram
+		Assert.assertEquals(2, countVertices(jobGraph, SampleTask.class));
+		Assert.assertEquals(2, countVertices(jobGraph, PartitionTask.class));
+		Assert.assertEquals(1, countVertices(jobGraph, HistogramTask.class));
+		Assert.assertEquals(2, getHistogramVertex(jobGraph).getNumberOfBackwardConnections());
+	}
+
+	@Test
+	public void testMatchReusesForwardedRangePartitioning() {
+		FileDataSource source1 = new FileDataSource(DummyInputFormat.class, IN_FILE);
+		FileDataSource source2 = new FileDataSource(DummyInputFormat.class, IN_FILE_2);
+		FileDataSource source3 = new FileDataSource(DummyInputFormat.class, IN_FILE_3);
+		MatchContract first = MatchContract.builder(DummyMatchStub.class, PactInteger.class, 0, 0)
+			.input1(source1).input2(source2).build();
+		MatchContract second = MatchContract.builder(DummyMatchStub.class, PactInteger.class, 0, 0)
+			.input1(first).input2(source3).build();
+		FileDataSink sink = new FileDataSink(DummyOutputFormat.class, OUT_FILE, second);
+
+		final JobGraph jobGraph = compileWithRangePartitioning(sink);
+
+		// the third input is partitioned with the boundaries that the first match's output still carries
+		Assert.assertEquals(3, countVertices(jobGraph, SampleTask.class));
+		Assert.assertEquals(3, countVertices(jobGraph, PartitionTask.class));
+		Assert.assertEquals(1, countVertices(jobGraph, HistogramTask.class));
+		Assert.assertEquals(3, getHistogramVertex(jobGraph).getNumberOfBackwardConnections());
+	}
+
+	// ------------------------------------------------------------------------
+
+	private JobGraph compileWithRangePartitioning(FileDataSink sink) {
+		Plan plan = new Plan(sink, "Range Partitioned Match");
+		plan.setDefaultParallelism(defaultParallelism);
+		try {
+			PactCompiler rangeCompiler = new PactCompiler(new DataStatistics(), new RangeFavoringCostEstimator(),
+				new InetSocketAddress(InetAddress.getLocalHost(), 12345));
+			OptimizedPlan oPlan = rangeCompiler.compile(plan, this.instanceType);
+			return new JobGraphGenerator().compileJobGraph(oPlan);
+		} catch (UnknownHostException uhex) {
+			Assert.fail("Test setup failed.");
+			return null;
+		}
+	}
+
+	private static JobTaskVertex getHistogramVertex(JobGraph jobGraph) {
+		for (Iterator<JobTaskVertex> iter = jobGraph.getTaskVertices(); iter.hasNext();) {
+			final JobTaskVertex vertex = iter.next();
+			if (HistogramTask.class.getName().equals(vertex.getInvokableClassName())) {
+				return vertex;
+			}
+		}
+		Assert.fail("No histogram vertex.");
+		return null;
+	}
+
+	private JobGraph compileGlobalSortPlan(DataDistribution distribution) {
+		FileDataSource source = new FileDataSource(DummyInputFormat.class, IN_FILE);
+		MapContract map = MapContract.builder(IdentityMap.class).input(source).build();
+
+		FileDataSink sink = new FileDataSink(DummyOutputFormat.class, OUT_FILE, map);
+		Ordering ordering = new Ordering(0, PactInteger.class, Order.ASCENDING);
+		if (distribution == null) {
+			sink.setGlobalOrder(ordering);
+		} else {
+			sink.setGlobalOrder(ordering, distribution);
+		}
+
+		Plan plan = new Plan(sink, "Global Sort");
+		plan.setDefaultParallelism(defaultParallelism);
+		OptimizedPlan oPlan = this.compiler.compile(plan, this.instanceType);
+		return new JobGraphGenerator().compileJobGraph(oPlan);
+	}
+
+	private static int countVertices(JobGraph jobGraph, Class<?> taskClass) {
+		int count = 0;
+		for (Iterator<JobTaskVertex> iter = jobGraph.getTaskVertices(); iter.hasNext();) {
+			if (taskClass.getName().equals(iter.next().getInvokableClassName())) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Makes range partitioning cheaper than hash partitioning and broadcasting, such that the compiler
+	 * range partitions the inputs of a match.
+	 */
+	private static final class RangeFavoringCostEstimator extends FixedSizeClusterCostEstimator {
+
+		@Override
+		public void getRangePartitionCost(PactConnection conn, Costs costs) {
+			costs.setNetworkCost(1);
+			costs.setSecondaryStorageCost(0);
+		}
+
+		@Override
+		public void getHashPartitioningCost(PactConnection conn, Costs costs) {
+			costs.setNetworkCost(Long.MAX_VALUE / 16);
+			costs.setSecondaryStorageCost(0);
+		}
+
+		@Override
+		public void getBroadcastCost(PactConnection conn, Costs costs) {
+			costs.setNetworkCost(Long.MAX_VALUE / 16);
+			costs.setSecondaryStorageCost(0);
+		}
+	}
+
+	private static final class DummyDistribution implements DataDistribution {
+
+		@Override
+		public void write(DataOutput out) {}
+
+		@Override
+		public void read(DataInput in) {}
+
+		@Override
+		public PactRecord getBucketBoundary(int bucketNum, int totalNumBuckets) {
+			return new PactRecord(new PactInteger(bucketNum));
+		}
+	}
+}
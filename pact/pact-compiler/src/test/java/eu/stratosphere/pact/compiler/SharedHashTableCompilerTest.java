@@ -0,0 +1,175 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.compiler;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Iterator;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
+import eu.stratosphere.nephele.instance.HardwareDescription;
+import eu.stratosphere.nephele.instance.HardwareDescriptionFactory;
+import eu.stratosphere.nephele.instance.InstanceType;
+import eu.stratosphere.nephele.instance.InstanceTypeDescription;
+import eu.stratosphere.nephele.instance.InstanceTypeDescriptionFactory;
+import eu.stratosphere.nephele.instance.InstanceTypeFactory;
+import eu.stratosphere.nephele.jobgraph.JobGraph;
+import eu.stratosphere.nephele.jobgraph.JobTaskVertex;
+import eu.stratosphere.pact.common.contract.FileDataSink;
+import eu.stratosphere.pact.common.contract.FileDataSource;
+import eu.stratosphere.pact.common.contract.MatchContract;
+import eu.stratosphere.pact.common.io.DelimitedInputFormat;
+import eu.stratosphere.pact.common.io.FileInputFormat;
+import eu.stratosphere.pact.common.io.statistics.BaseStatistics;
+import eu.stratosphere.pact.common.plan.Plan;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.common.util.PactConfigConstants;
+import eu.stratosphere.pact.compiler.costs.FixedSizeClusterCostEstimator;
+import eu.stratosphere.pact.compiler.jobgen.JobGraphGenerator;
+import eu.stratosphere.pact.compiler.plan.OptimizedPlan;
+import eu.stratosphere.pact.compiler.util.DummyInputFormat;
+import eu.stratosphere.pact.compiler.util.DummyMatchStub;
+import eu.stratosphere.pact.compiler.util.DummyOutputFormat;
+import eu.stratosphere.pact.runtime.task.util.TaskConfig;
+
+/**
+ * Tests that the local instances of a hash join share the table built from their broadcasted build side only,
+ * if the estimated build side fits into the memory in which the other instances buffer it.
+ */
+public class SharedHashTableCompilerTest {
+
+	private static final String IN_FILE = "file:///test/file";
+
+	private static final String OUT_FILE = "file:///test/output1";
+
+	private static final int defaultParallelism = 8;
+
+	// ------------------------------------------------------------------------
+
+	private PactCompiler compiler;
+
+	private InstanceTypeDescription instanceType;
+
+	// ------------------------------------------------------------------------
+
+	@Before
+	public void setup()
+	{
+		try {
+			InetSocketAddress dummyAddress = new InetSocketAddress(InetAddress.getLocalHost(), 12345);
+			this.compiler = new PactCompiler(new DataStatistics(), new FixedSizeClusterCostEstimator(), dummyAddress);
+		}
+		catch (Exception ex) {
+			ex.printStackTrace();
+			Assert.fail("Test setup failed.");
+		}
+
+		// create the instance type description
+		InstanceType iType = InstanceTypeFactory.construct("standard", 6, 2, 4096, 100, 0);
+		HardwareDescription hDesc = HardwareDescriptionFactory.construct(2, 4096 * 1024 * 1024, 2000 * 1024 * 1024);
+		this.instanceType = InstanceTypeDescriptionFactory.construct(iType, hDesc, defaultParallelism * 2);
+
+		setSharing(true);
+	}
+
+	@After
+	public void tearDown()
+	{
+		setSharing(PactConfigConstants.DEFAULT_HASH_JOIN_SHARED_BROADCAST);
+	}
+
+	@Test
+	public void testSmallBuildSideIsShared() {
+		Assert.assertNotNull("The table of a small build side is not shared.",
+			compileBroadcastMatch(DummyInputFormat.class).getSharedHashTableKey());
+	}
+
+	@Test
+	public void testLargeBuildSideIsNotShared() {
+		Assert.assertNull("The table of a build side exceeding the buffer memory is shared.",
+			compileBroadcastMatch(LargeInputFormat.class).getSharedHashTableKey());
+	}
+
+	@Test
+	public void testSharingDisabled() {
+		setSharing(false);
+		Assert.assertNull("The table is shared, though sharing is disabled.",
+			compileBroadcastMatch(DummyInputFormat.class).getSharedHashTableKey());
+	}
+
+	// ------------------------------------------------------------------------
+
+	private TaskConfig compileBroadcastMatch(Class<? extends FileInputFormat> buildSideFormat) {
+		FileDataSource buildSide = new FileDataSource(buildSideFormat, IN_FILE);
+		FileDataSource probeSide = new FileDataSource(DummyInputFormat.class, IN_FILE);
+
+		MatchContract match = MatchContract.builder(DummyMatchStub.class, PactInteger.class, 0, 0)
+			.input1(buildSide).input2(probeSide).name("Match").build();
+		match.getParameters().setString(PactCompiler.HINT_SHIP_STRATEGY_FIRST_INPUT,
+			PactCompiler.HINT_SHIP_STRATEGY_BROADCAST);
+		match.getParameters().setString(PactCompiler.HINT_SHIP_STRATEGY_SECOND_INPUT,
+			PactCompiler.HINT_SHIP_STRATEGY_FORWARD);
+		match.getParameters().setString(PactCompiler.HINT_LOCAL_STRATEGY,
+			PactCompiler.HINT_LOCAL_STRATEGY_HASH_BUILD_FIRST);
+		FileDataSink sink = new FileDataSink(DummyOutputFormat.class, OUT_FILE, match);
+
+		Plan plan = new Plan(sink, "Shared Hash Table");
+		plan.setDefaultParallelism(defaultParallelism);
+		OptimizedPlan oPlan = this.compiler.compile(plan, this.instanceType);
+		JobGraph jobGraph = new JobGraphGenerator().compileJobGraph(oPlan);
+
+		for (Iterator<JobTaskVertex> iter = jobGraph.getTaskVertices(); iter.hasNext();) {
+			final JobTaskVertex vertex = iter.next();
+			if ("Match".equals(vertex.getName())) {
+				return new TaskConfig(vertex.getConfiguration());
+			}
+		}
+		Assert.fail("The job graph contains no match vertex.");
+		return null;
+	}
+
+	private static void setSharing(boolean share) {
+		Configuration config = new Configuration();
+		config.setBoolean(PactConfigConstants.HASH_JOIN_SHARED_BROADCAST_KEY, share);
+		GlobalConfiguration.includeConfiguration(config);
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * An input format whose statistics report a size far beyond the memory of any instance.
+	 */
+	public static final class LargeInputFormat extends DelimitedInputFormat {
+
+		@Override
+		public boolean readRecord(PactRecord target, byte[] bytes, int offset, int numBytes) {
+			return true;
+		}
+
+		@Override
+		public FileBaseStatistics getStatistics(BaseStatistics cachedStatistics) {
+			return new FileBaseStatistics(123456l, 1024l * 1024l * 1024l * 1024l, 100);
+		}
+	}
+}
@@ -0,0 +1,226 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.compiler;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Iterator;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
+import eu.stratosphere.nephele.instance.HardwareDescription;
+import eu.stratosphere.nephele.instance.HardwareDescriptionFactory;
+import eu.stratosphere.nephele.instance.InstanceType;
+import eu.stratosphere.nephele.instance.InstanceTypeDescription;
+import eu.stratosphere.nephele.instance.InstanceTypeDescriptionFactory;
+import eu.stratosphere.nephele.instance.InstanceTypeFactory;
+import eu.stratosphere.nephele.jobgraph.JobGraph;
+import eu.stratosphere.nephele.jobgraph.JobTaskVertex;
+import eu.stratosphere.pact.common.contract.FileDataSink;
+import eu.stratosphere.pact.common.contract.FileDataSource;
+import eu.stratosphere.pact.common.contract.MatchContract;
+import eu.stratosphere.pact.common.plan.Plan;
+import eu.stratosphere.pact.common.plan.Visitor;
+import eu.stratosphere.pact.common.type.Key;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.common.type.base.PactLong;
+import eu.stratosphere.pact.common.util.PactConfigConstants;
+import eu.stratosphere.pact.compiler.costs.FixedSizeClusterCostEstimator;
+import eu.stratosphere.pact.compiler.jobgen.JobGraphGenerator;
+import eu.stratosphere.pact.compiler.plan.MatchNode;
+import eu.stratosphere.pact.compiler.plan.OptimizedPlan;
+import eu.stratosphere.pact.compiler.plan.OptimizerNode;
+import eu.stratosphere.pact.compiler.plan.PactConnection;
+import eu.stratosphere.pact.compiler.util.DummyInputFormat;
+import eu.stratosphere.pact.compiler.util.DummyMatchStub;
+import eu.stratosphere.pact.compiler.util.DummyOutputFormat;
+import eu.stratosphere.pact.runtime.shipping.ShipStrategy.ShipStrategyType;
+
+/**
+ * Tests that the compiler handles the skewed keys declared on a match contract, or detected from a sample of its
+ * inputs, by partitioning both inputs with the skew handling hash partitioning.
+ */
+public class SkewedMatchCompilerTest {
+	
+	private static final String IN_FILE = "file:///test/file";
+	
+	private static final String OUT_FILE = "file:///test/output1";
+	
+	private static final int defaultParallelism = 8;
+	
+	// ------------------------------------------------------------------------
+	
+	private PactCompiler compiler;
+	
+	private InstanceTypeDescription instanceType;
+	
+	// ------------------------------------------------------------------------	
+	
+	@Before
+	public void setup()
+	{
+		try {
+			InetSocketAddress dummyAddress = new InetSocketAddress(InetAddress.getLocalHost(), 12345);
+			
+			// prepare the statistics
+			DataStatistics dataStats = new DataStatistics();
+			this.compiler = new PactCompiler(dataStats, new FixedSizeClusterCostEstimator(), dummyAddress);
+		}
+		catch (Exception ex) {
+			ex.printStackTrace();
+			Assert.fail("Test setup failed.");
+		}
+		
+		// create the instance type description
+		InstanceType iType = InstanceTypeFactory.construct("standard", 6, 2, 4096, 100, 0);
+		HardwareDescription hDesc = HardwareDescriptionFactory.construct(2, 4096 * 1024 * 1024, 2000 * 1024 * 1024);
+		this.instanceType = InstanceTypeDescriptionFactory.construct(iType, hDesc, defaultParallelism * 2);
+	}
+	
+	@After
+	public void tearDown()
+	{
+		setSkewDetection(PactConfigConstants.DEFAULT_SKEW_DETECTION);
+	}
+	
+	@Test
+	public void testSkewedMatch() {
+		final OptimizedPlan oPlan = compileMatchPlan(true);
+		
+		//Compile plan to verify that no error is thrown
+		new JobGraphGenerator().compileJobGraph(oPlan);
+		
+		assertShipStrategies(oPlan, ShipStrategyType.PARTITION_HASH_SKEW);
+	}
+	
+	@Test
+	public void testMatchWithoutSkewedKeys() {
+		final OptimizedPlan oPlan = compileMatchPlan(false);
+		
+		//Compile plan to verify that no error is thrown
+		new JobGraphGenerator().compileJobGraph(oPlan);
+		
+		assertShipStrategies(oPlan, ShipStrategyType.PARTITION_HASH);
+	}
+	
+	@Test
+	public void testSkewedKeysWithCollidingHashes() {
+		// both keys have the hash code 0, but are skewed in different inputs
+		final OptimizedPlan oPlan = compileMatchPlan(PactLong.class, new PactLong(0), new PactLong(0x100000001L));
+		
+		try {
+			new JobGraphGenerator().compileJobGraph(oPlan);
+			Assert.fail("Skewed keys with the same hash code in both inputs were not rejected.");
+		} catch (CompilerException cex) {
+			// expected
+		}
+	}
+	
+	@Test
+	public void testDetectedSkewedKeys() {
+		setSkewDetection(true);
+		final OptimizedPlan oPlan = compileMatchPlan(false);
+		
+		final JobGraph jobGraph = new JobGraphGenerator().compileJobGraph(oPlan);
+		
+		assertShipStrategies(oPlan, ShipStrategyType.PARTITION_HASH_SKEW);
+		Assert.assertTrue("The job graph contains no skew detection.", containsSkewDetection(jobGraph));
+	}
+	
+	@Test
+	public void testDeclaredSkewedKeysOverrideDetection() {
+		setSkewDetection(true);
+		final OptimizedPlan oPlan = compileMatchPlan(true);
+		
+		final JobGraph jobGraph = new JobGraphGenerator().compileJobGraph(oPlan);
+		
+		assertShipStrategies(oPlan, ShipStrategyType.PARTITION_HASH_SKEW);
+		Assert.assertFalse("The declared skewed keys were detected again.", containsSkewDetection(jobGraph));
+	}
+	
+	// ------------------------------------------------------------------------
+	
+	private OptimizedPlan compileMatchPlan(boolean declareSkew) {
+		return declareSkew ? compileMatchPlan(PactInteger.class, new PactInteger(42), new PactInteger(17)) :
+			compileMatchPlan(PactInteger.class, null, null);
+	}
+	
+	private OptimizedPlan compileMatchPlan(Class<? extends Key> keyClass, Key skewedKey1, Key skewedKey2) {
+		FileDataSource sourceA = new FileDataSource(DummyInputFormat.class, IN_FILE);
+		FileDataSource sourceB = new FileDataSource(DummyInputFormat.class, IN_FILE);
+		
+		MatchContract.Builder builder = MatchContract.builder(DummyMatchStub.class, keyClass, 0, 0)
+			.input1(sourceA)
+			.input2(sourceB);
+		if (skewedKey1 != null) {
+			builder.skewedKey(0, skewedKey1);
+		}
+		if (skewedKey2 != null) {
+			builder.skewedKey(1, skewedKey2);
+		}
+		MatchContract mat = builder.build();
+		mat.getParameters().setString(PactCompiler.HINT_SHIP_STRATEGY, PactCompiler.HINT_SHIP_STRATEGY_REPARTITION);
+		
+		FileDataSink sink = new FileDataSink(DummyOutputFormat.class, OUT_FILE, mat);
+		
+		Plan plan = new Plan(sink, "Skewed Match");
+		plan.setDefaultParallelism(defaultParallelism);
+		return this.compiler.compile(plan, this.instanceType);
+	}
+	
+	private static void assertShipStrategies(OptimizedPlan oPlan, final ShipStrategyType expected) {
+		oPlan.accept(new Visitor<OptimizerNode>() {
+			
+			@Override
+			public boolean preVisit(OptimizerNode visitable) {
+				if (visitable instanceof MatchNode) {
+					for (PactConnection inConn : visitable.getIncomingConnections()) {
+						Assert.assertEquals("Wrong shipping strategy chosen for match", expected,
+							inConn.getShipStrategy().type());
+					}
+					return false;
+				}
+				return true;
+			}
+			
+			@Override
+			public void postVisit(OptimizerNode visitable) {
+				// DO NOTHING
+			}
+		});
+	}
+	
+	private static boolean containsSkewDetection(JobGraph jobGraph) {
+		for (Iterator<JobTaskVertex> iter = jobGraph.getTaskVertices(); iter.hasNext();) {
+			if (iter.next().getName().startsWith("Skew Detection")) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private static void setSkewDetection(boolean detect) {
+		Configuration config = new Configuration();
+		config.setBoolean(PactConfigConstants.SKEW_DETECTION_KEY, detect);
+		GlobalConfiguration.includeConfiguration(config);
+	}
+}
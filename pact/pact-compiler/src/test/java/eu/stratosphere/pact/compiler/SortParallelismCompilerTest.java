@@ -0,0 +1,122 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.pact.compiler;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Iterator;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.instance.HardwareDescription;
+import eu.stratosphere.nephele.instance.HardwareDescriptionFactory;
+import eu.stratosphere.nephele.instance.InstanceType;
+import eu.stratosphere.nephele.instance.InstanceTypeDescription;
+import eu.stratosphere.nephele.instance.InstanceTypeDescriptionFactory;
+import eu.stratosphere.nephele.instance.InstanceTypeFactory;
+import eu.stratosphere.nephele.jobgraph.JobGraph;
+import eu.stratosphere.nephele.jobgraph.JobTaskVertex;
+import eu.stratosphere.pact.common.contract.FileDataSink;
+import eu.stratosphere.pact.common.contract.FileDataSource;
+import eu.stratosphere.pact.common.contract.ReduceContract;
+import eu.stratosphere.pact.common.plan.Plan;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.common.util.PactConfigConstants;
+import eu.stratosphere.pact.compiler.costs.FixedSizeClusterCostEstimator;
+import eu.stratosphere.pact.compiler.jobgen.JobGraphGenerator;
+import eu.stratosphere.pact.compiler.plan.OptimizedPlan;
+import eu.stratosphere.pact.compiler.util.DummyInputFormat;
+import eu.stratosphere.pact.compiler.util.DummyOutputFormat;
+import eu.stratosphere.pact.compiler.util.IdentityReduce;
+import eu.stratosphere.pact.runtime.task.util.TaskConfig;
+
+/**
+ * Tests that the sort parallelism hint of a contract is passed to the configuration of its task.
+ */
+public class SortParallelismCompilerTest {
+
+	private static final String IN_FILE = "file:///test/file";
+
+	private static final String OUT_FILE = "file:///test/output1";
+
+	private static final int defaultParallelism = 8;
+
+	// ------------------------------------------------------------------------
+
+	private PactCompiler compiler;
+
+	private InstanceTypeDescription instanceType;
+
+	// ------------------------------------------------------------------------
+
+	@Before
+	public void setup()
+	{
+		try {
+			InetSocketAddress dummyAddress = new InetSocketAddress(InetAddress.getLocalHost(), 12345);
+			this.compiler = new PactCompiler(new DataStatistics(), new FixedSizeClusterCostEstimator(), dummyAddress);
+		}
+		catch (Exception ex) {
+			ex.printStackTrace();
+			Assert.fail("Test setup failed.");
+		}
+
+		// create the instance type description
+		InstanceType iType = InstanceTypeFactory.construct("standard", 6, 2, 4096, 100, 0);
+		HardwareDescription hDesc = HardwareDescriptionFactory.construct(2, 4096 * 1024 * 1024, 2000 * 1024 * 1024);
+		this.instanceType = InstanceTypeDescriptionFactory.construct(iType, hDesc, defaultParallelism * 2);
+	}
+
+	@Test
+	public void testSortParallelismHint() {
+		Assert.assertEquals(4, compileReduceWithHint(4).getSortParallelism());
+	}
+
+	@Test
+	public void testNoSortParallelismHint() {
+		Assert.assertEquals(PactConfigConstants.DEFAULT_SORT_PARALLELISM, compileReduceWithHint(-1).getSortParallelism());
+	}
+
+	// ------------------------------------------------------------------------
+
+	private TaskConfig compileReduceWithHint(int sortParallelism) {
+		FileDataSource source = new FileDataSource(DummyInputFormat.class, IN_FILE);
+		ReduceContract reduce = new ReduceContract.Builder(IdentityReduce.class, PactInteger.class, 0)
+			.input(source).name("Reduce").build();
+		if (sortParallelism > 0) {
+			reduce.getParameters().setInteger(PactCompiler.HINT_SORT_PARALLELISM, sortParallelism);
+		}
+		FileDataSink sink = new FileDataSink(DummyOutputFormat.class, OUT_FILE, reduce);
+
+		Plan plan = new Plan(sink, "Sort Parallelism");
+		plan.setDefaultParallelism(defaultParallelism);
+		OptimizedPlan oPlan = this.compiler.compile(plan, this.instanceType);
+		JobGraph jobGraph = new JobGraphGenerator().compileJobGraph(oPlan);
+
+		for (Iterator<JobTaskVertex> iter = jobGraph.getTaskVertices(); iter.hasNext();) {
+			final JobTaskVertex vertex = iter.next();
+			if ("Reduce".equals(vertex.getName())) {
+				return new TaskConfig(vertex.getConfiguration());
+			}
+		}
+		Assert.fail("The job graph contains no reduce vertex.");
+		return null;
+	}
+}
@@ -0,0 +1,175 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.pact.compiler.costs;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.instance.HardwareDescription;
+import eu.stratosphere.nephele.instance.HardwareDescriptionFactory;
+import eu.stratosphere.nephele.instance.InstanceType;
+import eu.stratosphere.nephele.instance.InstanceTypeDescription;
+import eu.stratosphere.nephele.instance.InstanceTypeDescriptionFactory;
+import eu.stratosphere.nephele.instance.InstanceTypeFactory;
+import eu.stratosphere.pact.common.contract.FileDataSink;
+import eu.stratosphere.pact.common.contract.FileDataSource;
+import eu.stratosphere.pact.common.contract.MatchContract;
+import eu.stratosphere.pact.common.plan.Plan;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.compiler.DataStatistics;
+import eu.stratosphere.pact.compiler.PactCompiler;
+import eu.stratosphere.pact.compiler.plan.MatchNode;
+import eu.stratosphere.pact.compiler.plan.OptimizedPlan;
+import eu.stratosphere.pact.compiler.plan.OptimizerNode;
+import eu.stratosphere.pact.compiler.util.DummyInputFormat;
+import eu.stratosphere.pact.compiler.util.DummyMatchStub;
+import eu.stratosphere.pact.compiler.util.DummyOutputFormat;
+import eu.stratosphere.pact.runtime.task.util.TaskConfig.LocalStrategy;
+
+/**
+ * Tests the {@link CalibratedCostEstimator}, the {@link CostProfile} and the {@link CostProfileCalibrator}.
+ */
+public class CalibratedCostEstimatorTest
+{
+	private static final String IN_FILE_1 = "file:///test/file1";
+	
+	private static final String IN_FILE_2 = "file:///test/file2";
+	
+	private static final String OUT_FILE = "file:///test/output";
+	
+	private static final int defaultParallelism = 8;
+	
+	// ------------------------------------------------------------------------
+	
+	private InetSocketAddress dummyAddress;
+	
+	private InstanceTypeDescription instanceType;
+	
+	@Before
+	public void setup() throws Exception
+	{
+		this.dummyAddress = new InetSocketAddress(InetAddress.getLocalHost(), 12345);
+		
+		// create the instance type description
+		InstanceType iType = InstanceTypeFactory.construct("standard", 6, 2, 4096, 100, 0);
+		HardwareDescription hDesc = HardwareDescriptionFactory.construct(2, 4096 * 1024 * 1024, 2000 * 1024 * 1024);
+		this.instanceType = InstanceTypeDescriptionFactory.construct(iType, hDesc, defaultParallelism * 2);
+	}
+	
+	@Test
+	public void testDefaultProfileMatchesFixedCosts()
+	{
+		final MatchNode fixed = getMatch(compile(new FixedSizeClusterCostEstimator()));
+		final MatchNode calibrated = getMatch(compile(new CalibratedCostEstimator(CostProfile.getDefaultProfile())));
+		
+		Assert.assertEquals(fixed.getLocalStrategy(), calibrated.getLocalStrategy());
+		Assert.assertEquals(fixed.getCumulativeCosts().getNetworkCost(),
+			calibrated.getCumulativeCosts().getNetworkCost());
+		Assert.assertEquals(fixed.getCumulativeCosts().getSecondaryStorageCost(),
+			calibrated.getCumulativeCosts().getSecondaryStorageCost());
+	}
+	
+	@Test
+	public void testProfileDecidesJoinStrategy()
+	{
+		// hashing is cheap compared to sorting, so the hybrid hash join is chosen
+		CostProfile profile = new CostProfile(null, 50.0, 1.0, 1.0, 10.0, 10.0, 10.0, 1.0);
+		LocalStrategy ls = getMatch(compile(new CalibratedCostEstimator(profile))).getLocalStrategy();
+		Assert.assertTrue("Unexpected strategy " + ls,
+			ls == LocalStrategy.HYBRIDHASH_FIRST || ls == LocalStrategy.HYBRIDHASH_SECOND);
+		
+		// hashing is expensive compared to sorting, so the sort-merge join is chosen
+		profile = new CostProfile(null, 1.0, 500.0, 500.0, 10.0, 10.0, 10.0, 1.0);
+		ls = getMatch(compile(new CalibratedCostEstimator(profile))).getLocalStrategy();
+		Assert.assertEquals(LocalStrategy.SORT_BOTH_MERGE, ls);
+	}
+	
+	@Test
+	public void testStoreAndLoadProfile() throws Exception
+	{
+		final CostProfile profile = new CostProfile("standard", 1.5, 2.5, 3.5, 4.5, 5.5, 6.5, 7.5);
+		final File file = File.createTempFile("costprofile", ".properties");
+		try {
+			profile.store(file);
+			final CostProfile loaded = CostProfile.load(file);
+			
+			Assert.assertEquals("standard", loaded.getInstanceType());
+			Assert.assertEquals(1.5, loaded.getSortRate());
+			Assert.assertEquals(2.5, loaded.getHashBuildRate());
+			Assert.assertEquals(3.5, loaded.getHashProbeRate());
+			Assert.assertEquals(4.5, loaded.getSpillWriteRate());
+			Assert.assertEquals(5.5, loaded.getSpillReadRate());
+			Assert.assertEquals(6.5, loaded.getNetworkRate());
+			Assert.assertEquals(7.5, loaded.getScanRate());
+		} finally {
+			file.delete();
+		}
+	}
+	
+	@Test
+	public void testCalibration() throws Exception
+	{
+		final CostProfile profile = new CostProfileCalibrator("standard", 4 * 1024 * 1024, null).calibrate();
+		
+		Assert.assertEquals("standard", profile.getInstanceType());
+		Assert.assertTrue(profile.getSortRate() > 0);
+		Assert.assertTrue(profile.getSpillWriteRate() > 0);
+		Assert.assertTrue(profile.getSpillReadRate() > 0);
+		Assert.assertTrue(profile.getNetworkRate() > 0);
+		Assert.assertTrue(profile.getScanRate() > 0);
+		Assert.assertTrue(profile.getHashBuildRate() >= 0);
+		Assert.assertTrue(profile.getHashProbeRate() >= 0);
+	}
+	
+	// ------------------------------------------------------------------------
+	
+	private OptimizedPlan compile(CostEstimator estimator)
+	{
+		FileDataSource sourceA = new FileDataSource(DummyInputFormat.class, IN_FILE_1);
+		FileDataSource sourceB = new FileDataSource(DummyInputFormat.class, IN_FILE_2);
+		
+		MatchContract mat = MatchContract.builder(DummyMatchStub.class, PactInteger.class, 0, 0)
+			.input1(sourceA)
+			.input2(sourceB)
+			.build();
+		
+		FileDataSink sink = new FileDataSink(DummyOutputFormat.class, OUT_FILE, mat);
+		
+		Plan plan = new Plan(sink, "Calibrated Costs");
+		plan.setDefaultParallelism(defaultParallelism);
+		
+		final PactCompiler compiler = new PactCompiler(new DataStatistics(), estimator, this.dummyAddress);
+		return compiler.compile(plan, this.instanceType);
+	}
+	
+	private static MatchNode getMatch(OptimizedPlan plan)
+	{
+		for (OptimizerNode node : plan.getAllNodes()) {
+			if (node instanceof MatchNode) {
+				return (MatchNode) node;
+			}
+		}
+		Assert.fail("The plan contains no match.");
+		return null;
+	}
+}
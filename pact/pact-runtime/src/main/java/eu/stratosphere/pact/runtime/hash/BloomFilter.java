@@ -0,0 +1,126 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.hash;
+
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
+
+/**
+ * A Bloom filter over 32 bit hash codes, whose bits live in a region of a memory segment. The filter does not
+ * own any memory, it is pointed at a region through {@link #setBitsLocation(MemorySegment, int)} and can thus
+ * be re-used for many regions, such as the buckets of a spilled hash table partition.
+ * <p>
+ * The bit positions are derived from the given hash code through double hashing, after the hash code has been
+ * scrambled once more. The scrambling makes sure that the positions are independent of the bits that were used
+ * to select the region (for example the bucket) in the first place.
+ */
+final class BloomFilter
+{
+	private final int numBits;
+
+	private final int numHashFunctions;
+
+	private MemorySegment segment;
+
+	private int offset;
+
+	/**
+	 * Creates a new Bloom filter with the given number of bits and hash functions.
+	 *
+	 * @param numBytes The number of bytes in the regions holding the filter bits.
+	 * @param numHashFunctions The number of bits set per inserted hash code.
+	 */
+	BloomFilter(int numBytes, int numHashFunctions)
+	{
+		if (numBytes <= 0 || numHashFunctions <= 0) {
+			throw new IllegalArgumentException("The Bloom filter requires a positive number of bytes and hash functions.");
+		}
+		this.numBits = numBytes << 3;
+		this.numHashFunctions = numHashFunctions;
+	}
+
+	/**
+	 * Sets the region that holds the filter bits.
+	 *
+	 * @param segment The memory segment holding the bits.
+	 * @param offset The offset of the first byte of the filter in the segment.
+	 */
+	void setBitsLocation(MemorySegment segment, int offset)
+	{
+		this.segment = segment;
+		this.offset = offset;
+	}
+
+	/**
+	 * Clears all bits in the current region.
+	 */
+	void reset()
+	{
+		final MemorySegment seg = this.segment;
+		for (int i = this.offset, end = this.offset + (this.numBits >>> 3); i < end; i++) {
+			seg.put(i, (byte) 0);
+		}
+	}
+
+	/**
+	 * Adds the given hash code to the filter in the current region.
+	 *
+	 * @param hashCode The hash code to add.
+	 */
+	void addHash(int hashCode)
+	{
+		final int h1 = scramble(hashCode);
+		final int h2 = (h1 >>> 16) | (h1 << 16);
+
+		for (int i = 0; i < this.numHashFunctions; i++) {
+			final int bit = ((h1 + i * h2) & 0x7fffffff) % this.numBits;
+			final int pos = this.offset + (bit >>> 3);
+			this.segment.put(pos, (byte) (this.segment.get(pos) | (1 << (bit & 0x7))));
+		}
+	}
+
+	/**
+	 * Checks whether the given hash code may have been added to the filter in the current region.
+	 *
+	 * @param hashCode The hash code to test.
+	 * @return False, if the hash code was definitely not added, true if it may have been added.
+	 */
+	boolean testHash(int hashCode)
+	{
+		final int h1 = scramble(hashCode);
+		final int h2 = (h1 >>> 16) | (h1 << 16);
+
+		for (int i = 0; i < this.numHashFunctions; i++) {
+			final int bit = ((h1 + i * h2) & 0x7fffffff) % this.numBits;
+			if ((this.segment.get(this.offset + (bit >>> 3)) & (1 << (bit & 0x7))) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The finalization step of the murmur 3 hash function, used to spread the bits of the hash code.
+	 */
+	private static final int scramble(int code)
+	{
+		code ^= code >>> 16;
+		code *= 0x85ebca6b;
+		code ^= code >>> 13;
+		code *= 0xc2b2ae35;
+		code ^= code >>> 16;
+		return code;
+	}
+}
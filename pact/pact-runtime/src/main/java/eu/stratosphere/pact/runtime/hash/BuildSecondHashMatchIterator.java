@@ -30,6 +30,7 @@ import eu.stratosphere.pact.common.generic.types.TypeSerializer;
 import eu.stratosphere.pact.common.stubs.Collector;
 import eu.stratosphere.pact.common.util.MutableObjectIterator;
 import eu.stratosphere.pact.runtime.task.util.MatchTaskIterator;
+import eu.stratosphere.pact.runtime.task.util.TaskConfig.LocalStrategy;
 
 
 /**
@@ -56,6 +57,30 @@ public final class BuildSecondHashMatchIterator<V1, V2, O> implements MatchTaskI
 	
 	private final MutableObjectIterator<V2> secondInput;
 	
+	private final TypeSerializer<V1> serializer1;
+	
+	private final TypeSerializer<V2> serializer2;
+	
+	private final TypeComparator<V1> comparator1;
+	
+	private final TypeComparator<V2> comparator2;
+	
+	private final TypePairComparator<V1, V2> pairComparator;
+	
+	private final IOManager ioManager;
+	
+	private final AbstractInvokable ownerTask;
+	
+	private final long totalMemory;
+	
+	private TypePairComparator<V2, V1> fallbackPairComparator;
+	
+	private int maxFileHandles;
+	
+	private float spillThreshold;
+	
+	private volatile DeferredPartitionsMatchIterator<V1, V2, O> fallback;
+	
 	private volatile boolean running = true;
 	
 	// --------------------------------------------------------------------------------------------
@@ -71,6 +96,14 @@ public final class BuildSecondHashMatchIterator<V1, V2, O> implements MatchTaskI
 		this.firstInput = firstInput;
 		this.secondInput = secondInput;
 		this.probeSideSerializer = serializer1;
+		this.serializer1 = serializer1;
+		this.serializer2 = serializer2;
+		this.comparator1 = comparator1;
+		this.comparator2 = comparator2;
+		this.pairComparator = pairComparator;
+		this.ioManager = ioManager;
+		this.ownerTask = ownerTask;
+		this.totalMemory = memManager.roundDownToPageSizeMultiple(totalMemory);
 		
 		this.nextBuildSideObject = serializer2.createInstance();
 		this.tempBuildSideRecord = serializer2.createInstance();
@@ -82,6 +115,48 @@ public final class BuildSecondHashMatchIterator<V1, V2, O> implements MatchTaskI
 	
 	// --------------------------------------------------------------------------------------------
 	
+	/**
+	 * Enables the fallback for the partitions that do not fit into memory after the first partitioning pass.
+	 * Rather than re-partitioning them recursively, the hash join sets them aside and they are joined in the
+	 * end by a strategy that is chosen based on the sizes of both their sides: Either the roles of the inputs
+	 * are switched, or both inputs are sorted and merged.
+	 * 
+	 * @param fallbackPairComparator The pair comparator with the reversed direction, needed by the fallback strategies.
+	 * @param maxFileHandles The maximum number of files to be merged at once, if the fallback sorts the inputs.
+	 * @param spillThreshold The spilling threshold, if the fallback sorts the inputs.
+	 */
+	public void enableFallback(TypePairComparator<V2, V1> fallbackPairComparator, int maxFileHandles, float spillThreshold)
+	{
+		this.fallbackPairComparator = fallbackPairComparator;
+		this.maxFileHandles = maxFileHandles;
+		this.spillThreshold = spillThreshold;
+		this.hashJoin.setDeferOversizedPartitions(true);
+	}
+	
+	/**
+	 * Gets the local strategy that joined the partitions which did not fit into memory, if the fallback
+	 * was enabled and has been used.
+	 * 
+	 * @return The local strategy of the fallback, or <code>null</code>, if no fallback took place.
+	 */
+	public LocalStrategy getFallbackStrategy()
+	{
+		final DeferredPartitionsMatchIterator<V1, V2, O> fallback = this.fallback;
+		return fallback == null ? null : fallback.getLocalStrategy();
+	}
+	
+	/**
+	 * Gets the hash table the iterator builds, for the instances that probe it in shared mode.
+	 * 
+	 * @return The hash table.
+	 */
+	MutableHashTable<V2, V1> getHashTable()
+	{
+		return this.hashJoin;
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
 	/* (non-Javadoc)
 	 * @see eu.stratosphere.pact.runtime.task.util.MatchTaskIterator#open()
 	 */
@@ -97,6 +172,10 @@ public final class BuildSecondHashMatchIterator<V1, V2, O> implements MatchTaskI
 	@Override
 	public void close()
 	{
+		if (this.fallback != null) {
+			this.fallback.close();
+		}
+		
 		// close the join
 		this.hashJoin.close();
 		
@@ -112,6 +191,10 @@ public final class BuildSecondHashMatchIterator<V1, V2, O> implements MatchTaskI
 	public boolean callWithNextKey(GenericMatcher<V1, V2, O> matchFunction, Collector<O> collector)
 	throws Exception
 	{
+		if (this.fallback != null) {
+			return this.fallback.callWithNextKey(matchFunction, collector);
+		}
+		
 		if (this.hashJoin.nextRecord())
 		{
 			// we have a next record, get the iterators to the probe and build side values
@@ -150,6 +233,11 @@ public final class BuildSecondHashMatchIterator<V1, V2, O> implements MatchTaskI
 			}
 			return true;
 		}
+		else if (this.hashJoin.hasDeferredPartitions()) {
+			this.fallback = createFallback();
+			this.fallback.open();
+			return this.fallback.callWithNextKey(matchFunction, collector);
+		}
 		else {
 			return false;
 		}
@@ -163,10 +251,58 @@ public final class BuildSecondHashMatchIterator<V1, V2, O> implements MatchTaskI
 	{
 		// close the join
 		this.running = false;
+		if (this.fallback != null) {
+			this.fallback.abort();
+		}
 		this.hashJoin.close();
 		
 		// free the memory
 		final List<MemorySegment> segments = this.hashJoin.getFreedMemory();
 		this.memManager.release(segments);
 	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Takes over the partitions the hash join set aside, releases the memory of the hash join and creates
+	 * the iterator that joins the set aside partitions.
+	 */
+	private DeferredPartitionsMatchIterator<V1, V2, O> createFallback()
+	throws MemoryAllocationException
+	{
+		final List<HashPartition<V2, V1>> partitions = this.hashJoin.takeDeferredPartitions();
+		this.hashJoin.close();
+		this.memManager.release(this.hashJoin.getFreedMemory());
+		
+		// two segments for each of the readers, allowing them to read one block ahead
+		List<MemorySegment> readerMemory = null;
+		boolean success = false;
+		try {
+			readerMemory = this.memManager.allocatePages(this.ownerTask, 4);
+			final long memory = this.totalMemory - readerMemory.size() * this.memManager.getPageSize();
+			
+			// the readers open the files lazily, so they need no cleanup until they are used
+			final SpilledPartitionsIterator<V1> first = SpilledPartitionsIterator.getProbeSide(partitions,
+				this.serializer1, this.ioManager, readerMemory.subList(0, 2));
+			final SpilledPartitionsIterator<V2> second = SpilledPartitionsIterator.getBuildSide(partitions,
+				this.serializer2, this.ioManager, readerMemory.subList(2, 4));
+			final DeferredPartitionsMatchIterator<V1, V2, O> iterator = new DeferredPartitionsMatchIterator<V1, V2, O>(
+				first, second, readerMemory, false,
+				this.serializer1, this.comparator1, this.serializer2, this.comparator2,
+				this.pairComparator, this.fallbackPairComparator,
+				this.memManager, this.ioManager, this.ownerTask, memory, this.maxFileHandles, this.spillThreshold);
+			success = true;
+			return iterator;
+		}
+		finally {
+			if (!success) {
+				for (int i = 0; i < partitions.size(); i++) {
+					partitions.get(i).clearAllMemory(this.hashJoin.getFreedMemory());
+				}
+				if (readerMemory != null) {
+					this.memManager.release(readerMemory);
+				}
+			}
+		}
+	}
 }
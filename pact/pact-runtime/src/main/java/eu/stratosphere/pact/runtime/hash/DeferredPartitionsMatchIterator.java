@@ -0,0 +1,187 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.hash;
+
+import java.io.IOException;
+import java.util.List;
+
+import eu.stratosphere.nephele.services.iomanager.IOManager;
+import eu.stratosphere.nephele.services.memorymanager.MemoryAllocationException;
+import eu.stratosphere.nephele.services.memorymanager.MemoryManager;
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
+import eu.stratosphere.nephele.template.AbstractInvokable;
+import eu.stratosphere.pact.common.generic.GenericMatcher;
+import eu.stratosphere.pact.common.generic.types.TypeComparator;
+import eu.stratosphere.pact.common.generic.types.TypePairComparator;
+import eu.stratosphere.pact.common.generic.types.TypeSerializer;
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.runtime.sort.SortMergeMatchIterator;
+import eu.stratosphere.pact.runtime.task.util.MatchTaskIterator;
+import eu.stratosphere.pact.runtime.task.util.TaskConfig.LocalStrategy;
+
+
+/**
+ * A {@link MatchTaskIterator} that joins the partitions a hybrid-hash-join set aside, because their build side
+ * does not fit into memory. Instead of recursively re-partitioning them, the strategy is picked anew, now that
+ * the sizes of both sides are known:
+ * <ul>
+ *   <li>If the former probe side is small enough, the roles are switched and the former probe side is used to
+ *       build the hash table.</li>
+ *   <li>Otherwise both sides are sorted and merged, which does not degrade with skewed or duplicate keys.</li>
+ *   <li>If the memory does not suffice for sorting both sides, the hash join is continued with the original roles.</li>
+ * </ul>
+ */
+final class DeferredPartitionsMatchIterator<V1, V2, O> implements MatchTaskIterator<V1, V2, O>
+{
+	/**
+	 * The minimal number of pages to sort and merge both inputs: the minimal memory of two sorters, plus the
+	 * pages for the cross product of values that share the same key.
+	 */
+	private static final int MIN_SORT_MERGE_PAGES = 80;
+	
+	private final SpilledPartitionsIterator<V1> firstInput;
+	
+	private final SpilledPartitionsIterator<V2> secondInput;
+	
+	private final List<MemorySegment> readerMemory;
+	
+	private final MemoryManager memManager;
+	
+	private final MatchTaskIterator<V1, V2, O> delegate;
+	
+	private final LocalStrategy localStrategy;
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Creates an iterator that joins the given spilled partition files.
+	 * 
+	 * @param firstInput The records of the first input in the deferred partitions.
+	 * @param secondInput The records of the second input in the deferred partitions.
+	 * @param readerMemory The memory used by the two spilled partition iterators. It is released when
+	 *                     this iterator is closed.
+	 * @param firstWasBuildSide True, if the first input was the build side of the original hash join.
+	 * @param memory The memory available for the join, excluding the reader memory.
+	 */
+	DeferredPartitionsMatchIterator(SpilledPartitionsIterator<V1> firstInput, SpilledPartitionsIterator<V2> secondInput,
+			List<MemorySegment> readerMemory, boolean firstWasBuildSide,
+			TypeSerializer<V1> serializer1, TypeComparator<V1> comparator1,
+			TypeSerializer<V2> serializer2, TypeComparator<V2> comparator2,
+			TypePairComparator<V1, V2> pairComparator12, TypePairComparator<V2, V1> pairComparator21,
+			MemoryManager memManager, IOManager ioManager, AbstractInvokable ownerTask,
+			long memory, int maxFileHandles, float spillThreshold)
+	throws MemoryAllocationException
+	{
+		this.firstInput = firstInput;
+		this.secondInput = secondInput;
+		this.readerMemory = readerMemory;
+		this.memManager = memManager;
+		
+		final long buildBytes = firstWasBuildSide ? firstInput.getNumBytes() : secondInput.getNumBytes();
+		final long probeBytes = firstWasBuildSide ? secondInput.getNumBytes() : firstInput.getNumBytes();
+		
+		// the hash table structure takes a share of the memory, so the records alone must stay well below it
+		final boolean switchRoles = probeBytes < buildBytes && probeBytes < memory / 2;
+		final boolean buildFirst = firstWasBuildSide != switchRoles;
+		
+		if (!switchRoles && memory >= ((long) MIN_SORT_MERGE_PAGES) * memManager.getPageSize()) {
+			this.localStrategy = LocalStrategy.SORT_BOTH_MERGE;
+			this.delegate = new SortMergeMatchIterator<V1, V2, O>(firstInput, secondInput,
+				serializer1, comparator1, serializer2, comparator2, pairComparator12,
+				memManager, ioManager, memory, maxFileHandles, spillThreshold, LocalStrategy.SORT_BOTH_MERGE, ownerTask);
+		} else if (buildFirst) {
+			this.localStrategy = LocalStrategy.HYBRIDHASH_FIRST;
+			this.delegate = new BuildFirstHashMatchIterator<V1, V2, O>(firstInput, secondInput,
+				serializer1, comparator1, serializer2, comparator2, pairComparator21,
+				memManager, ioManager, ownerTask, memory);
+		} else {
+			this.localStrategy = LocalStrategy.HYBRIDHASH_SECOND;
+			this.delegate = new BuildSecondHashMatchIterator<V1, V2, O>(firstInput, secondInput,
+				serializer1, comparator1, serializer2, comparator2, pairComparator12,
+				memManager, ioManager, ownerTask, memory);
+		}
+	}
+	
+	/**
+	 * Gets the local strategy that was chosen to join the deferred partitions.
+	 * 
+	 * @return The local strategy for the deferred partitions.
+	 */
+	LocalStrategy getLocalStrategy()
+	{
+		return this.localStrategy;
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.util.MatchTaskIterator#open()
+	 */
+	@Override
+	public void open() throws IOException, MemoryAllocationException, InterruptedException
+	{
+		this.delegate.open();
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.util.MatchTaskIterator#close()
+	 */
+	@Override
+	public void close()
+	{
+		try {
+			this.delegate.close();
+		}
+		finally {
+			releaseInputs();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.util.MatchTaskIterator#callWithNextKey(eu.stratosphere.pact.common.generic.GenericMatcher, eu.stratosphere.pact.common.stubs.Collector)
+	 */
+	@Override
+	public boolean callWithNextKey(GenericMatcher<V1, V2, O> matchFunction, Collector<O> collector)
+	throws Exception
+	{
+		return this.delegate.callWithNextKey(matchFunction, collector);
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.util.MatchTaskIterator#abort()
+	 */
+	@Override
+	public void abort()
+	{
+		try {
+			this.delegate.abort();
+		}
+		finally {
+			releaseInputs();
+		}
+	}
+	
+	private void releaseInputs()
+	{
+		try {
+			this.firstInput.close();
+			this.secondInput.close();
+		}
+		finally {
+			this.memManager.release(this.readerMemory);
+		}
+	}
+}
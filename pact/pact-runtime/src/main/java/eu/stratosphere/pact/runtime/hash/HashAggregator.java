@@ -0,0 +1,809 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.hash;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.nephele.services.iomanager.BlockChannelReader;
+import eu.stratosphere.nephele.services.iomanager.BlockChannelWriter;
+import eu.stratosphere.nephele.services.iomanager.Channel;
+import eu.stratosphere.nephele.services.iomanager.ChannelReaderInputView;
+import eu.stratosphere.nephele.services.iomanager.ChannelWriterOutputView;
+import eu.stratosphere.nephele.services.iomanager.IOManager;
+import eu.stratosphere.nephele.services.memorymanager.MemoryAllocationException;
+import eu.stratosphere.nephele.services.memorymanager.MemoryManager;
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
+import eu.stratosphere.nephele.template.AbstractInvokable;
+import eu.stratosphere.pact.common.generic.GenericReducer;
+import eu.stratosphere.pact.common.generic.types.TypeComparator;
+import eu.stratosphere.pact.common.generic.types.TypeSerializer;
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.runtime.io.ChannelReaderInputViewIterator;
+import eu.stratosphere.pact.runtime.io.RandomAccessInputView;
+import eu.stratosphere.pact.runtime.io.RandomAccessOutputView;
+import eu.stratosphere.pact.runtime.task.util.CloseableInputProvider;
+import eu.stratosphere.pact.runtime.util.MathUtils;
+
+/**
+ * A hash table that groups its input by key and aggregates the records of each group in place, using the
+ * <code>combine()</code> method of the given reducer. The table is built on managed memory segments. Whenever a
+ * record with a key that is already contained in the table arrives, the stored record and the new record are
+ * handed to the combiner and the result replaces the stored record. Only when the memory is exhausted, the table
+ * contents are spilled into hash partitions, which are aggregated recursively once the input is consumed.
+ * <p>
+ * The records returned by the iterator are grouped by key, but not sorted. If the combiner emits exactly one
+ * record per call (which is the common case), every key is returned exactly once.
+ * <p>
+ * The table memory is split into a bucket area and a record area. Every bucket holds a pointer to a chain of
+ * entries in the record area, which have the following layout:
+ * <pre>
+ * +---------------------------------------------------------------------------------+
+ * | next-entry-pointer (8 bytes) | hash code (4 bytes) | capacity (4 bytes) | record |
+ * +---------------------------------------------------------------------------------+
+ * </pre>
+ * The entry header never crosses a memory segment boundary, while the serialized record may.
+ *
+ * @param <T> The type of the records that are aggregated.
+ */
+public class HashAggregator<T> implements CloseableInputProvider<T>
+{
+	private static final Log LOG = LogFactory.getLog(HashAggregator.class);
+
+	// ------------------------------------------------------------------------
+	//                         Internal Constants
+	// ------------------------------------------------------------------------
+
+	/**
+	 * The minimum number of memory segments the aggregator needs to be supplied with in order to work.
+	 */
+	public static final int MIN_NUM_MEMORY_SEGMENTS = 8;
+
+	/**
+	 * The maximum number of recursive partitionings that the aggregation does before giving up.
+	 */
+	private static final int MAX_RECURSION_DEPTH = 3;
+
+	/**
+	 * The maximum number of partitions into which the table is spilled.
+	 */
+	private static final int MAX_NUM_PARTITIONS = 32;
+
+	/**
+	 * The number of memory segments used to read back a spilled partition.
+	 */
+	private static final int NUM_READ_BUFFERS = 2;
+
+	private static final int NEXT_POINTER_OFFSET = 0;
+
+	private static final int HASH_CODE_OFFSET = 8;
+
+	private static final int CAPACITY_OFFSET = 12;
+
+	private static final int ENTRY_HEADER_LENGTH = 16;
+
+	private static final long NULL_POINTER = -1L;
+
+	// ------------------------------------------------------------------------
+	//                              Members
+	// ------------------------------------------------------------------------
+
+	private final GenericReducer<T, ?> combiner;
+
+	private final MemoryManager memoryManager;
+
+	private final IOManager ioManager;
+
+	private final MutableObjectIterator<T> input;
+
+	private final TypeSerializer<T> serializer;
+
+	private final TypeComparator<T> comparator;
+
+	private final List<MemorySegment> allMemory;
+
+	private final MemorySegment[] tableSegments;
+
+	private final ArrayList<MemorySegment> readBuffers;
+
+	private final ArrayList<MemorySegment> writeBuffers;
+
+	private final RandomAccessInputView tableReadView;
+
+	private final RandomAccessOutputView tableWriteView;
+
+	private final Channel.Enumerator channelEnumerator;
+
+	private final ArrayList<SpilledPartition> pendingPartitions;
+
+	private final CombineValueIterator<T> combineValues;
+
+	private final EntryCollector combineOutput;
+
+	private final T candidate;
+
+	private final int segmentSize;
+
+	private final int segmentSizeBits;
+
+	private final int segmentSizeMask;
+
+	private final int bucketMask;
+
+	private final long recordAreaStart;
+
+	private final int numPartitions;
+
+	private long tail;
+
+	private BlockChannelWriter[] partitionChannels;
+
+	private ChannelWriterOutputView[] partitionWriters;
+
+	private long[] partitionRecordCounts;
+
+	private BlockChannelReader currentPartitionReader;
+
+	private volatile boolean closed;
+
+	// ------------------------------------------------------------------------
+	//                         Construction and Life Cycle
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Creates a new hash aggregator that consumes the given input and aggregates it with the combine function of
+	 * the given stub.
+	 *
+	 * @param combiner The stub whose <code>combine()</code> method is used to aggregate records with equal keys.
+	 * @param memoryManager The memory manager from which to allocate the memory.
+	 * @param ioManager The I/O manager, which is used to spill partitions if the memory is exhausted.
+	 * @param input The input that is aggregated.
+	 * @param parentTask The parent task, which owns all resources used by the aggregator.
+	 * @param serializer The serializer used to (de)serialize the records.
+	 * @param comparator The comparator used to hash and compare the keys of the records.
+	 * @param totalMemory The total amount of memory dedicated to the aggregator.
+	 *
+	 * @throws MemoryAllocationException Thrown, if not enough memory can be obtained from the memory manager to
+	 *                                   perform the aggregation.
+	 */
+	public HashAggregator(GenericReducer<T, ?> combiner, MemoryManager memoryManager, IOManager ioManager,
+			MutableObjectIterator<T> input, AbstractInvokable parentTask, TypeSerializer<T> serializer,
+			TypeComparator<T> comparator, long totalMemory)
+	throws MemoryAllocationException
+	{
+		if (combiner == null || memoryManager == null || ioManager == null || serializer == null || comparator == null) {
+			throw new NullPointerException();
+		}
+
+		this.combiner = combiner;
+		this.memoryManager = memoryManager;
+		this.ioManager = ioManager;
+		this.input = input;
+		this.serializer = serializer;
+		this.comparator = comparator;
+
+		final int numPages = memoryManager.computeNumberOfPages(totalMemory);
+		if (numPages < MIN_NUM_MEMORY_SEGMENTS) {
+			throw new IllegalArgumentException("Too little memory provided to hash aggregator to perform task. " +
+				"Required are at least " + MIN_NUM_MEMORY_SEGMENTS + " pages. Current page size is " +
+				memoryManager.getPageSize() + " bytes.");
+		}
+
+		this.allMemory = memoryManager.allocatePages(parentTask, numPages);
+		this.segmentSize = this.allMemory.get(0).size();
+		this.segmentSizeBits = MathUtils.log2strict(this.segmentSize);
+		this.segmentSizeMask = this.segmentSize - 1;
+
+		// divide the memory between the spill writers, the partition reader, and the table itself
+		this.numPartitions = Math.min(MAX_NUM_PARTITIONS, Math.max(2, numPages / 8));
+		this.writeBuffers = new ArrayList<MemorySegment>(this.allMemory.subList(0, this.numPartitions));
+		this.readBuffers = new ArrayList<MemorySegment>(
+			this.allMemory.subList(this.numPartitions, this.numPartitions + NUM_READ_BUFFERS));
+
+		final List<MemorySegment> tableMemory = this.allMemory.subList(this.numPartitions + NUM_READ_BUFFERS, numPages);
+		this.tableSegments = tableMemory.toArray(new MemorySegment[tableMemory.size()]);
+
+		// the bucket area takes roughly an eighth of the table memory
+		final int numBucketSegments = MathUtils.roundDownToPowerOf2(Math.max(1, this.tableSegments.length / 8));
+		this.bucketMask = numBucketSegments * (this.segmentSize >>> 3) - 1;
+		this.recordAreaStart = ((long) numBucketSegments) << this.segmentSizeBits;
+
+		this.tableReadView = new RandomAccessInputView(new ArrayList<MemorySegment>(tableMemory), this.segmentSize);
+		this.tableWriteView = new RandomAccessOutputView(this.tableSegments, this.segmentSize);
+
+		this.channelEnumerator = ioManager.createChannelEnumerator();
+		this.pendingPartitions = new ArrayList<SpilledPartition>();
+
+		this.combineValues = new CombineValueIterator<T>();
+		this.combineOutput = new EntryCollector();
+		this.candidate = serializer.createInstance();
+
+		clearTable();
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.util.CloseableInputProvider#getIterator()
+	 */
+	@Override
+	public MutableObjectIterator<T> getIterator()
+	{
+		return new AggregatedIterator();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close()
+	{
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+
+		// close and delete all files that are still around
+		if (this.partitionWriters != null) {
+			for (int i = 0; i < this.partitionChannels.length; i++) {
+				try {
+					this.partitionChannels[i].closeAndDelete();
+				}
+				catch (Throwable t) {}
+			}
+			this.partitionWriters = null;
+			this.partitionChannels = null;
+		}
+		if (this.currentPartitionReader != null) {
+			try {
+				this.currentPartitionReader.closeAndDelete();
+			}
+			catch (Throwable t) {}
+			this.currentPartitionReader = null;
+		}
+		for (int i = 0; i < this.pendingPartitions.size(); i++) {
+			try {
+				final File f = new File(this.pendingPartitions.get(i).channel.getPath());
+				if (f.exists()) {
+					f.delete();
+				}
+			}
+			catch (Throwable t) {}
+		}
+		this.pendingPartitions.clear();
+
+		this.memoryManager.release(this.allMemory);
+	}
+
+	// ------------------------------------------------------------------------
+	//                            Aggregation
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Consumes the given input and aggregates it into the table. If the table was spilled while consuming the
+	 * input, the remaining table contents are spilled as well and the partitions are queued for processing
+	 * on the next recursion level.
+	 *
+	 * @param input The input to aggregate.
+	 * @param level The recursion level, which determines the hash function.
+	 * @throws IOException Thrown, if the spilling of the table failed.
+	 */
+	private void aggregate(MutableObjectIterator<T> input, int level) throws IOException
+	{
+		final T record = this.serializer.createInstance();
+
+		while (!this.closed && input.next(record)) {
+			try {
+				insert(record, level);
+			}
+			catch (EOFException eofex) {
+				spillTable();
+				clearTable();
+				try {
+					insert(record, level);
+				}
+				catch (EOFException ex) {
+					throw new IOException("A single record is too large to be aggregated with the given memory.");
+				}
+			}
+		}
+
+		if (this.partitionWriters != null) {
+			spillTable();
+			clearTable();
+			finishPartitions(level + 1);
+		}
+	}
+
+	/**
+	 * Inserts a record into the table. If a record with the same key exists, both are combined.
+	 *
+	 * @param record The record to insert.
+	 * @param level The recursion level, which determines the hash function.
+	 * @throws EOFException Thrown, if the record is new and does not fit into the table any more.
+	 * @throws IOException Thrown, if combined records had to be spilled and the spilling failed.
+	 */
+	private void insert(T record, int level) throws IOException
+	{
+		final int code = MutableHashTable.hash(this.comparator.hash(record), level);
+		final long bucket = ((long) (code & this.bucketMask)) << 3;
+
+		this.comparator.setReference(record);
+
+		long pointerAddress = bucket;
+		long entry = getLong(bucket);
+		while (entry != NULL_POINTER) {
+			if (getInt(entry + HASH_CODE_OFFSET) == code) {
+				this.tableReadView.setReadPosition(entry + ENTRY_HEADER_LENGTH);
+				this.serializer.deserialize(this.candidate, this.tableReadView);
+				if (this.comparator.equalToReference(this.candidate)) {
+					combine(pointerAddress, entry, record, code);
+					return;
+				}
+			}
+			pointerAddress = entry + NEXT_POINTER_OFFSET;
+			entry = getLong(pointerAddress);
+		}
+
+		// key not yet contained, add the record as the first entry of the bucket's chain
+		final long newEntry = append(record, code);
+		putLong(newEntry + NEXT_POINTER_OFFSET, getLong(bucket));
+		putLong(bucket, newEntry);
+	}
+
+	/**
+	 * Combines the record stored in the given entry with the given record and replaces the entry with the
+	 * combiner's results. A result that fits into the entry's original space is written in place.
+	 */
+	private void combine(long pointerAddress, long entry, T record, int code) throws IOException
+	{
+		final long tailBefore = this.tail;
+		final EntryCollector output = this.combineOutput;
+		output.reset(code);
+
+		this.combineValues.set(this.candidate, record);
+		try {
+			this.combiner.combine(this.combineValues, output);
+		}
+		catch (IOException ioex) {
+			throw ioex;
+		}
+		catch (Exception ex) {
+			throw new RuntimeException("The combiner failed due to an exception: " + ex.getMessage(), ex);
+		}
+		if (output.error != null) {
+			throw output.error;
+		}
+
+		final long successor = getLong(entry + NEXT_POINTER_OFFSET);
+		final long[] results = output.entries;
+		final int numResults = output.numEntries;
+
+		if (numResults == 0) {
+			// all results went to the spill partitions, or the combiner emitted nothing
+			putLong(pointerAddress, successor);
+			return;
+		}
+
+		// chain the results in the order in which they were emitted
+		for (int i = 1; i < numResults; i++) {
+			putLong(results[i - 1] + NEXT_POINTER_OFFSET, results[i]);
+		}
+
+		final int capacity = getInt(entry + CAPACITY_OFFSET);
+		final int firstLength = getInt(results[0] + CAPACITY_OFFSET);
+		if (firstLength <= capacity) {
+			// overwrite the original entry with the first result and link the others after it
+			copy(results[0] + ENTRY_HEADER_LENGTH, entry + ENTRY_HEADER_LENGTH, firstLength);
+			if (numResults == 1) {
+				this.tail = tailBefore;
+			} else {
+				putLong(results[numResults - 1] + NEXT_POINTER_OFFSET, successor);
+				putLong(entry + NEXT_POINTER_OFFSET, results[1]);
+			}
+		} else {
+			putLong(results[numResults - 1] + NEXT_POINTER_OFFSET, successor);
+			putLong(pointerAddress, results[0]);
+
+			// the record grows, so give the relocated entry some headroom to be updated in place next time
+			if (numResults == 1) {
+				final long limit = ((long) this.tableSegments.length) << this.segmentSizeBits;
+				final long end = Math.min(this.tail + (firstLength >>> 1), limit);
+				putInt(results[0] + CAPACITY_OFFSET, (int) (end - results[0] - ENTRY_HEADER_LENGTH));
+				this.tail = end;
+			}
+		}
+	}
+
+	/**
+	 * Writes the given record as a new, unlinked entry to the end of the record area.
+	 *
+	 * @return The address of the new entry.
+	 * @throws EOFException Thrown, if the record area is full.
+	 */
+	private long append(T record, int code) throws IOException
+	{
+		long entry = this.tail;
+		if (this.segmentSize - (int) (entry & this.segmentSizeMask) <= ENTRY_HEADER_LENGTH) {
+			// the header must not cross the segment boundary
+			entry = (entry | this.segmentSizeMask) + 1;
+		}
+		if ((entry >>> this.segmentSizeBits) >= this.tableSegments.length) {
+			throw new EOFException();
+		}
+
+		this.tableWriteView.setWritePosition(entry + ENTRY_HEADER_LENGTH);
+		this.serializer.serialize(record, this.tableWriteView);
+		final long end = this.tableWriteView.getWritePosition();
+
+		final MemorySegment seg = this.tableSegments[(int) (entry >>> this.segmentSizeBits)];
+		final int offset = (int) (entry & this.segmentSizeMask);
+		seg.putLong(offset + NEXT_POINTER_OFFSET, NULL_POINTER);
+		seg.putInt(offset + HASH_CODE_OFFSET, code);
+		seg.putInt(offset + CAPACITY_OFFSET, (int) (end - entry - ENTRY_HEADER_LENGTH));
+
+		this.tail = end;
+		return entry;
+	}
+
+	/**
+	 * Resets the table to the empty state.
+	 */
+	private void clearTable()
+	{
+		final int numBucketSegments = (int) (this.recordAreaStart >>> this.segmentSizeBits);
+		for (int i = 0; i < numBucketSegments; i++) {
+			final MemorySegment seg = this.tableSegments[i];
+			for (int k = 0; k < this.segmentSize; k += 8) {
+				seg.putLong(k, NULL_POINTER);
+			}
+		}
+		this.tail = this.recordAreaStart;
+	}
+
+	// ------------------------------------------------------------------------
+	//                              Spilling
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Writes all records in the table to the spill partitions.
+	 */
+	private void spillTable() throws IOException
+	{
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Hash aggregation table is full, spilling it to disk.");
+		}
+
+		final T record = this.candidate;
+		for (int bucket = 0; bucket <= this.bucketMask; bucket++) {
+			long entry = getLong(((long) bucket) << 3);
+			while (entry != NULL_POINTER) {
+				this.tableReadView.setReadPosition(entry + ENTRY_HEADER_LENGTH);
+				this.serializer.deserialize(record, this.tableReadView);
+				spillRecord(record, getInt(entry + HASH_CODE_OFFSET));
+				entry = getLong(entry + NEXT_POINTER_OFFSET);
+			}
+		}
+	}
+
+	/**
+	 * Writes a single record to its spill partition, opening the partitions if necessary.
+	 */
+	private void spillRecord(T record, int code) throws IOException
+	{
+		if (this.partitionWriters == null) {
+			this.partitionChannels = new BlockChannelWriter[this.numPartitions];
+			this.partitionWriters = new ChannelWriterOutputView[this.numPartitions];
+			this.partitionRecordCounts = new long[this.numPartitions];
+
+			for (int i = 0; i < this.numPartitions; i++) {
+				final BlockChannelWriter writer = this.ioManager.createBlockChannelWriter(this.channelEnumerator.next());
+				final List<MemorySegment> memory = Collections.singletonList(
+					this.writeBuffers.remove(this.writeBuffers.size() - 1));
+				this.partitionChannels[i] = writer;
+				this.partitionWriters[i] = new ChannelWriterOutputView(writer, memory, this.segmentSize);
+			}
+		}
+
+		final int partition = code % this.numPartitions;
+		this.serializer.serialize(record, this.partitionWriters[partition]);
+		this.partitionRecordCounts[partition]++;
+	}
+
+	/**
+	 * Closes the spill partitions and queues the non-empty ones for processing.
+	 *
+	 * @param nextLevel The recursion level on which the partitions are processed.
+	 */
+	private void finishPartitions(int nextLevel) throws IOException
+	{
+		for (int i = 0; i < this.numPartitions; i++) {
+			final ChannelWriterOutputView writer = this.partitionWriters[i];
+			this.writeBuffers.addAll(writer.close());
+
+			if (this.partitionRecordCounts[i] > 0) {
+				this.pendingPartitions.add(new SpilledPartition(this.partitionChannels[i].getChannelID(),
+					writer.getBlockCount(), nextLevel));
+			} else {
+				this.partitionChannels[i].deleteChannel();
+			}
+		}
+
+		this.partitionWriters = null;
+		this.partitionChannels = null;
+		this.partitionRecordCounts = null;
+	}
+
+	/**
+	 * Reads the given spilled partition back and aggregates it into the (empty) table.
+	 */
+	private void processPartition(SpilledPartition partition) throws IOException
+	{
+		if (partition.level > MAX_RECURSION_DEPTH) {
+			throw new IOException("Hash aggregation exceeded maximum number of recursions, without reducing " +
+				"partitions enough to be memory resident. Probable cause: Too many distinct keys.");
+		}
+
+		final BlockChannelReader reader = this.ioManager.createBlockChannelReader(partition.channel);
+		this.currentPartitionReader = reader;
+
+		final List<MemorySegment> memory = new ArrayList<MemorySegment>(this.readBuffers);
+		this.readBuffers.clear();
+		final ChannelReaderInputView inView = new ChannelReaderInputView(reader, memory, partition.numBlocks, false);
+
+		aggregate(new ChannelReaderInputViewIterator<T>(inView, this.readBuffers, this.serializer), partition.level);
+
+		if (!inView.isClosed()) {
+			this.readBuffers.addAll(inView.close());
+		}
+		reader.deleteChannel();
+		this.currentPartitionReader = null;
+	}
+
+	// ------------------------------------------------------------------------
+	//                           Memory Access
+	// ------------------------------------------------------------------------
+
+	private long getLong(long address) {
+		return this.tableSegments[(int) (address >>> this.segmentSizeBits)].getLong((int) (address & this.segmentSizeMask));
+	}
+
+	private void putLong(long address, long value) {
+		this.tableSegments[(int) (address >>> this.segmentSizeBits)].putLong((int) (address & this.segmentSizeMask), value);
+	}
+
+	private void putInt(long address, int value) {
+		this.tableSegments[(int) (address >>> this.segmentSizeBits)].putInt((int) (address & this.segmentSizeMask), value);
+	}
+
+	private int getInt(long address) {
+		return this.tableSegments[(int) (address >>> this.segmentSizeBits)].getInt((int) (address & this.segmentSizeMask));
+	}
+
+	private void copy(long source, long target, int len)
+	{
+		while (len > 0) {
+			final int sourceOffset = (int) (source & this.segmentSizeMask);
+			final int targetOffset = (int) (target & this.segmentSizeMask);
+			final int chunk = Math.min(len, Math.min(this.segmentSize - sourceOffset, this.segmentSize - targetOffset));
+
+			this.tableSegments[(int) (source >>> this.segmentSizeBits)].copyTo(sourceOffset,
+				this.tableSegments[(int) (target >>> this.segmentSizeBits)], targetOffset, chunk);
+
+			source += chunk;
+			target += chunk;
+			len -= chunk;
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	//                            Inner Classes
+	// ------------------------------------------------------------------------
+
+	/**
+	 * The iterator over the aggregated records. The input is consumed upon the first call to
+	 * {@link #next(Object)}. Whenever the table has been returned completely, the next spilled partition is
+	 * aggregated and returned.
+	 */
+	private final class AggregatedIterator implements MutableObjectIterator<T>
+	{
+		private int nextBucket;
+
+		private long nextEntry = NULL_POINTER;
+
+		private boolean initialized;
+
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.pact.common.util.MutableObjectIterator#next(java.lang.Object)
+		 */
+		@Override
+		public boolean next(T target) throws IOException
+		{
+			if (!this.initialized) {
+				this.initialized = true;
+				aggregate(HashAggregator.this.input, 0);
+			}
+
+			while (!HashAggregator.this.closed) {
+				if (this.nextEntry != NULL_POINTER) {
+					final long entry = this.nextEntry;
+					this.nextEntry = getLong(entry + NEXT_POINTER_OFFSET);
+
+					HashAggregator.this.tableReadView.setReadPosition(entry + ENTRY_HEADER_LENGTH);
+					HashAggregator.this.serializer.deserialize(target, HashAggregator.this.tableReadView);
+					return true;
+				}
+
+				if (this.nextBucket <= HashAggregator.this.bucketMask) {
+					this.nextEntry = getLong(((long) this.nextBucket++) << 3);
+					continue;
+				}
+
+				// table is exhausted, continue with the next spilled partition
+				final ArrayList<SpilledPartition> pending = HashAggregator.this.pendingPartitions;
+				if (pending.isEmpty()) {
+					return false;
+				}
+				clearTable();
+				processPartition(pending.remove(pending.size() - 1));
+				this.nextBucket = 0;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * The collector for the results of the combiner. The results are written as new entries to the end of the
+	 * record area. If the table is full, they are written to the spill partitions instead.
+	 */
+	private final class EntryCollector implements Collector<T>
+	{
+		private long[] entries = new long[4];
+
+		private int numEntries;
+
+		private int hashCode;
+
+		private boolean tableFull;
+
+		private IOException error;
+
+		private void reset(int hashCode)
+		{
+			this.hashCode = hashCode;
+			this.numEntries = 0;
+			this.tableFull = false;
+			this.error = null;
+		}
+
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.pact.common.stubs.Collector#collect(java.lang.Object)
+		 */
+		@Override
+		public void collect(T record)
+		{
+			if (this.error != null) {
+				return;
+			}
+
+			try {
+				if (!this.tableFull) {
+					try {
+						final long entry = append(record, this.hashCode);
+						if (this.numEntries == this.entries.length) {
+							final long[] newEntries = new long[this.entries.length * 2];
+							System.arraycopy(this.entries, 0, newEntries, 0, this.entries.length);
+							this.entries = newEntries;
+						}
+						this.entries[this.numEntries++] = entry;
+						return;
+					}
+					catch (EOFException eofex) {
+						this.tableFull = true;
+					}
+				}
+				spillRecord(record, this.hashCode);
+			}
+			catch (IOException ioex) {
+				this.error = ioex;
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.pact.common.stubs.Collector#close()
+		 */
+		@Override
+		public void close() {}
+	}
+
+	/**
+	 * An iterator over the two records that are handed to the combiner.
+	 */
+	private static final class CombineValueIterator<T> implements Iterator<T>
+	{
+		private T first;
+
+		private T second;
+
+		private int position;
+
+		private void set(T first, T second)
+		{
+			this.first = first;
+			this.second = second;
+			this.position = 0;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.Iterator#hasNext()
+		 */
+		@Override
+		public boolean hasNext() {
+			return this.position < 2;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.Iterator#next()
+		 */
+		@Override
+		public T next()
+		{
+			switch (this.position++) {
+			case 0:
+				return this.first;
+			case 1:
+				return this.second;
+			default:
+				throw new NoSuchElementException();
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.Iterator#remove()
+		 */
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * A partition that was spilled and waits to be aggregated.
+	 */
+	private static final class SpilledPartition
+	{
+		private final Channel.ID channel;
+
+		private final int numBlocks;
+
+		private final int level;
+
+		private SpilledPartition(Channel.ID channel, int numBlocks, int level)
+		{
+			this.channel = channel;
+			this.numBlocks = numBlocks;
+			this.level = level;
+		}
+	}
+}
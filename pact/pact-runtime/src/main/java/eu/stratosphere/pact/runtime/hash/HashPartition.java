@@ -33,6 +33,7 @@ import eu.stratosphere.pact.common.generic.types.TypeSerializer;
 import eu.stratosphere.pact.common.util.MutableObjectIterator;
 import eu.stratosphere.nephele.services.memorymanager.AbstractPagedInputView;
 import eu.stratosphere.nephele.services.memorymanager.AbstractPagedOutputView;
+import eu.stratosphere.pact.runtime.io.RandomAccessInputView;
 import eu.stratosphere.pact.runtime.io.RandomAccessOutputView;
 import eu.stratosphere.nephele.services.memorymanager.MemorySegmentSource;
 import eu.stratosphere.pact.runtime.util.MathUtils;
@@ -430,6 +431,20 @@ class HashPartition<BT, PT> extends AbstractPagedInputView implements SeekableDa
 		return this.finalBufferLimit;
 	}
 	
+	/**
+	 * Creates a view that reads the records of this in-memory partition independently of the partition's own read
+	 * position. Different threads may read the partition concurrently through views of their own.
+	 * 
+	 * @return A view over the partition's buffers.
+	 */
+	final SeekableDataInputView createConcurrentReadView() {
+		final ArrayList<MemorySegment> segments = new ArrayList<MemorySegment>(this.partitionBuffers.length);
+		for (int i = 0; i < this.partitionBuffers.length; i++) {
+			segments.add(this.partitionBuffers[i]);
+		}
+		return new RandomAccessInputView(segments, this.memorySegmentSize, this.finalBufferLimit);
+	}
+	
 	final SeekableDataOutputView getWriteView() {
 		if (this.overwriteBuffer == null) {
 			this.overwriteBuffer = new RandomAccessOutputView(this.partitionBuffers, this.memorySegmentSize);
@@ -31,6 +31,7 @@ import eu.stratosphere.nephele.services.iomanager.ChannelReaderInputView;
 import eu.stratosphere.nephele.services.iomanager.HeaderlessChannelReaderInputView;
 import eu.stratosphere.nephele.services.iomanager.IOManager;
 import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
+import eu.stratosphere.nephele.services.memorymanager.SeekableDataInputView;
 import eu.stratosphere.nephele.services.memorymanager.SeekableDataOutputView;
 import eu.stratosphere.pact.common.generic.types.TypeComparator;
 import eu.stratosphere.pact.common.generic.types.TypePairComparator;
@@ -186,13 +187,22 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 	 */
 	private static final long BUCKET_FORWARD_POINTER_NOT_SET = ~0x0L;
 	
-//	private static final byte BUCKET_STATUS_SPILLED = 1;
+	/**
+	 * Constant for the bucket status, indicating that the bucket belongs to a spilled partition. The space
+	 * of such a bucket behind the header holds a Bloom filter over the hash codes of the partition's records.
+	 */
+	private static final byte BUCKET_STATUS_SPILLED = 1;
 	
 	/**
 	 * Constant for the bucket status, indicating that the bucket is in memory.
 	 */
 	private static final byte BUCKET_STATUS_IN_MEMORY = 0;
 	
+	/**
+	 * The number of bits set in the bucket's Bloom filter per hash code.
+	 */
+	private static final int BLOOM_FILTER_NUM_HASH_FUNCTIONS = 3;
+	
 	// ------------------------------------------------------------------------
 	//                              Members
 	// ------------------------------------------------------------------------
@@ -271,6 +281,16 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 	 */
 	private final int avgRecordLen;
 	
+	/**
+	 * The Bloom filter that is pointed at the buckets of spilled partitions.
+	 */
+	private final BloomFilter bloomFilter;
+	
+	/**
+	 * Scratch space for the hash codes of a bucket, while the bucket is turned into a Bloom filter.
+	 */
+	private final int[] bucketHashCodes;
+	
 	// ------------------------------------------------------------------------
 	
 	/**
@@ -283,6 +303,12 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 	 */
 	private final ArrayList<HashPartition<BT, PT>> partitionsPending;
 	
+	/**
+	 * The spilled partitions that were set aside, because they do not fit into memory. Only used, if
+	 * oversized partitions are deferred rather than recursively re-partitioned.
+	 */
+	private final ArrayList<HashPartition<BT, PT>> partitionsDeferred;
+	
 	/**
 	 * Iterator over the elements in the hash table.
 	 */
@@ -332,6 +358,12 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 	 */
 	private int currentRecursionDepth;
 	
+	/**
+	 * Flag indicating that spilled partitions which do not fit into memory are set aside for the caller,
+	 * instead of being recursively re-partitioned.
+	 */
+	private boolean deferOversizedPartitions;
+	
 	/**
 	 * Flag indicating that the closing logic has been invoked.
 	 */
@@ -396,6 +428,10 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 		
 		this.partitionsBeingBuilt = new ArrayList<HashPartition<BT, PT>>();
 		this.partitionsPending = new ArrayList<HashPartition<BT, PT>>();
+		this.partitionsDeferred = new ArrayList<HashPartition<BT, PT>>();
+		
+		this.bloomFilter = new BloomFilter(HASH_BUCKET_SIZE - BUCKET_HEADER_LENGTH, BLOOM_FILTER_NUM_HASH_FUNCTIONS);
+		this.bucketHashCodes = new int[NUM_ENTRIES_PER_BUCKET];
 		
 		// because we allow to open and close multiple times, the state is initially closed
 		this.closed = true;
@@ -470,7 +506,12 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 				return true;
 			}
 			else {
-				p.insertIntoProbeBuffer(next);
+				// probe records whose hash code was never seen on the build side cannot have a match,
+				// so there is no need to spill them
+				this.bloomFilter.setBitsLocation(bucket, bucketInSegmentOffset + BUCKET_HEADER_LENGTH);
+				if (this.bloomFilter.testHash(hash)) {
+					p.insertIntoProbeBuffer(next);
+				}
 			}
 		}
 		
@@ -493,6 +534,15 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 			this.currentSpilledProbeSide = null;
 		}
 		
+		// set aside the pending partitions that would need to be re-partitioned
+		if (this.deferOversizedPartitions) {
+			for (int i = this.partitionsPending.size() - 1; i >= 0; i--) {
+				if (!fitsIntoMemory(this.partitionsPending.get(i))) {
+					this.partitionsDeferred.add(this.partitionsPending.remove(i));
+				}
+			}
+		}
+		
 		// check if there are pending partitions
 		if (!this.partitionsPending.isEmpty())
 		{
@@ -594,6 +644,82 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 		return this.bucketIterator;
 	}
 	
+	/**
+	 * Sets whether spilled partitions that do not fit into memory are set aside instead of being recursively
+	 * re-partitioned. The deferred partitions can be obtained through {@link #takeDeferredPartitions()}
+	 * once {@link #nextRecord()} returned <code>false</code>, so that the caller can process them with a
+	 * strategy that does not depend on the build side fitting into memory.
+	 * 
+	 * @param deferOversizedPartitions True, to set aside the oversized partitions, false to re-partition them.
+	 */
+	public void setDeferOversizedPartitions(boolean deferOversizedPartitions)
+	{
+		this.deferOversizedPartitions = deferOversizedPartitions;
+	}
+	
+	/**
+	 * Checks whether partitions have been set aside, because they do not fit into memory.
+	 * 
+	 * @return True, if there are deferred partitions, false otherwise.
+	 */
+	public boolean hasDeferredPartitions()
+	{
+		return !this.partitionsDeferred.isEmpty();
+	}
+	
+	/**
+	 * Hands the deferred partitions over to the caller, which becomes responsible for reading and deleting
+	 * their build side and probe side files. The partitions hold no memory at this point.
+	 * 
+	 * @return The deferred partitions.
+	 */
+	List<HashPartition<BT, PT>> takeDeferredPartitions()
+	{
+		final List<HashPartition<BT, PT>> deferred = new ArrayList<HashPartition<BT, PT>>(this.partitionsDeferred);
+		this.partitionsDeferred.clear();
+		return deferred;
+	}
+	
+	/**
+	 * Checks whether the table has been opened and holds its complete build side in memory, i.e. no partition
+	 * has been spilled while building the initial table. Only such tables can be probed concurrently.
+	 * 
+	 * @return True, if the table is open and no partition has been spilled, false otherwise.
+	 */
+	public boolean isBuiltInMemory()
+	{
+		if (this.closed || this.currentRecursionDepth > 0 || this.partitionsBeingBuilt.isEmpty()) {
+			return false;
+		}
+		for (int i = 0; i < this.partitionsBeingBuilt.size(); i++) {
+			if (!this.partitionsBeingBuilt.get(i).isInMemory()) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Creates a prober that looks up the matches for probe-side records independently of the table's own probing
+	 * and of other probers. The probers of a table may be used concurrently by different threads, as long as none
+	 * of them probes the table through {@link #nextRecord()}, which modifies it, and the table stays open while
+	 * they are in use. Every thread must pass its own comparators and serializer.
+	 * 
+	 * @param buildSideSerializer The serializer to deserialize the build-side records with.
+	 * @param probeSideComparator The comparator to hash the probe-side records with.
+	 * @param pairComparator The comparator to compare the probe-side records with the build-side records.
+	 * @return A prober for this table.
+	 * @throws IllegalStateException Thrown, if the table does not hold its complete build side in memory.
+	 */
+	public ConcurrentProber<BT, PT> createConcurrentProber(TypeSerializer<BT> buildSideSerializer,
+			TypeComparator<PT> probeSideComparator, TypePairComparator<PT, BT> pairComparator)
+	{
+		if (!isBuiltInMemory()) {
+			throw new IllegalStateException("Only hash tables that were built entirely in memory can be probed concurrently.");
+		}
+		return new ConcurrentProber<BT, PT>(this, buildSideSerializer, probeSideComparator, pairComparator);
+	}
+	
 	/**
 	 * Closes the hash table. This effectively releases all internal structures and closes all
 	 * open files and removes them. The call to this method is valid both as a cleanup after the
@@ -634,6 +760,14 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 			final HashPartition<BT, PT> p = this.partitionsPending.get(i);
 			p.clearAllMemory(this.availableMemory);
 		}
+		this.partitionsPending.clear();
+		
+		// clear the partitions that were set aside and not taken over by the caller
+		for (int i = 0; i < this.partitionsDeferred.size(); i++) {
+			final HashPartition<BT, PT> p = this.partitionsDeferred.get(i);
+			p.clearAllMemory(this.availableMemory);
+		}
+		this.partitionsDeferred.clear();
 		
 		// return the write-behind buffers
 		for (int i = 0; i < this.numWriteBehindBuffers + this.writeBehindBuffersAvailable; i++) {
@@ -721,11 +855,8 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 			throw new RuntimeException("Hash Join bug in memory management: Memory buffers leaked.");
 		}
 		
-		long numBuckets = (p.getBuildSideRecordCount() * RECORD_TABLE_BYTES) / (HASH_BUCKET_SIZE - BUCKET_HEADER_LENGTH) + 1;
-		
-		// we need to consider the worst case where everything hashes to one bucket which needs to overflow by the same
-		// number of total buckets again.
-		final long totalBuffersNeeded = (numBuckets * 2) / (this.bucketsPerSegmentMask + 1) + p.getBuildSideBlockCount() + 1;
+		final long numBuckets = getNumBucketsForPartition(p);
+		final long totalBuffersNeeded = getNumBuffersForPartition(p);
 		
 		if (totalBuffersNeeded < totalBuffersAvailable)
 		{
@@ -807,6 +938,30 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 		}
 	}
 	
+	/**
+	 * Checks whether the given spilled partition can be read back into memory as it is, without being
+	 * re-partitioned.
+	 * 
+	 * @param p The spilled partition.
+	 * @return True, if the partition fits into the currently available memory, false otherwise.
+	 */
+	protected boolean fitsIntoMemory(final HashPartition<BT, PT> p)
+	{
+		return getNumBuffersForPartition(p) < this.availableMemory.size() + this.writeBehindBuffersAvailable;
+	}
+	
+	private final long getNumBucketsForPartition(final HashPartition<BT, PT> p)
+	{
+		return (p.getBuildSideRecordCount() * RECORD_TABLE_BYTES) / (HASH_BUCKET_SIZE - BUCKET_HEADER_LENGTH) + 1;
+	}
+	
+	private final long getNumBuffersForPartition(final HashPartition<BT, PT> p)
+	{
+		// we need to consider the worst case where everything hashes to one bucket which needs to overflow by the same
+		// number of total buckets again.
+		return (getNumBucketsForPartition(p) * 2) / (this.bucketsPerSegmentMask + 1) + p.getBuildSideBlockCount() + 1;
+	}
+	
 	/**
 	 * @param pair
 	 * @param hashCode
@@ -838,6 +993,11 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 			// record was inserted into an in-memory partition. a pointer must be inserted into the buckets
 			insertBucketEntry(p, bucket, bucketInSegmentPos, hashCode, pointer);
 		}
+		else {
+			// record went to a spilled partition. remember its hash code in the bucket's Bloom filter
+			this.bloomFilter.setBitsLocation(bucket, bucketInSegmentPos + BUCKET_HEADER_LENGTH);
+			this.bloomFilter.addHash(hashCode);
+		}
 	}
 	
 	/**
@@ -908,7 +1068,9 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 					// no memory available to create overflow bucket. we need to spill a partition
 					final int spilledPart = spillPartition();
 					if (spilledPart == p.getPartitionNumber()) {
-						// this bucket is no longer in-memory
+						// this bucket is no longer in-memory, its entries have become a Bloom filter
+						this.bloomFilter.setBitsLocation(bucket, bucketInSegmentPos + BUCKET_HEADER_LENGTH);
+						this.bloomFilter.addHash(hashCode);
 						return;
 					}
 					overflowSeg = getNextBuffer();
@@ -1078,6 +1240,9 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 		}
 		final HashPartition<BT, PT> p = partitions.get(largestPartNum);
 		
+		// turn the partition's buckets into Bloom filters, before spilling releases the overflow buckets
+		buildBloomFiltersForBuckets(largestPartNum, p);
+		
 		// spill the partition
 		int numBuffersFreed = p.spillPartition(this.availableMemory, this.ioManager, 
 										this.currentEnumerator.next(), this.writeBehindBuffers);
@@ -1093,6 +1258,62 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 		return largestPartNum;
 	}
 	
+	/**
+	 * Replaces the entries of all buckets that belong to the given partition by a Bloom filter over the hash
+	 * codes of these entries, including the entries in the overflow buckets. The buckets are marked as spilled.
+	 * Records that are later added to the spilled partition add their hash code to the bucket's filter, such that
+	 * the filter eventually covers all build side records of the partition. The probe phase uses it to discard
+	 * probe records that cannot find a join partner, rather than writing them to disk.
+	 * 
+	 * @param partitionNumber The number of the partition whose buckets are to be converted.
+	 * @param p The partition whose buckets are to be converted.
+	 */
+	private final void buildBloomFiltersForBuckets(final int partitionNumber, final HashPartition<BT, PT> p)
+	{
+		final BloomFilter filter = this.bloomFilter;
+		final int[] hashCodes = this.bucketHashCodes;
+		final int bucketsPerSegment = this.bucketsPerSegmentMask + 1;
+		
+		for (int i = 0, bucketNum = 0; i < this.buckets.length && bucketNum < this.numBuckets; i++) {
+			final MemorySegment seg = this.buckets[i];
+			
+			for (int k = 0; k < bucketsPerSegment && bucketNum < this.numBuckets; k++, bucketNum++) {
+				final int bucketOffset = k * HASH_BUCKET_SIZE;
+				if (seg.get(bucketOffset + HEADER_PARTITION_OFFSET) != partitionNumber) {
+					continue;
+				}
+				
+				// save the hash codes, because the filter overwrites them
+				final int count = seg.getShort(bucketOffset + HEADER_COUNT_OFFSET);
+				for (int n = 0; n < count; n++) {
+					hashCodes[n] = seg.getInt(bucketOffset + BUCKET_HEADER_LENGTH + (n * HASH_CODE_LEN));
+				}
+				long forwardPointer = seg.getLong(bucketOffset + HEADER_FORWARD_OFFSET);
+				
+				filter.setBitsLocation(seg, bucketOffset + BUCKET_HEADER_LENGTH);
+				filter.reset();
+				for (int n = 0; n < count; n++) {
+					filter.addHash(hashCodes[n]);
+				}
+				
+				// add the hash codes from the chain of overflow buckets
+				while (forwardPointer != BUCKET_FORWARD_POINTER_NOT_SET) {
+					final MemorySegment overflowSeg = p.overflowSegments[(int) (forwardPointer >>> 32)];
+					final int overflowOffset = (int) forwardPointer;
+					final int overflowCount = overflowSeg.getShort(overflowOffset + HEADER_COUNT_OFFSET);
+					for (int n = 0; n < overflowCount; n++) {
+						filter.addHash(overflowSeg.getInt(overflowOffset + BUCKET_HEADER_LENGTH + (n * HASH_CODE_LEN)));
+					}
+					forwardPointer = overflowSeg.getLong(overflowOffset + HEADER_FORWARD_OFFSET);
+				}
+				
+				seg.put(bucketOffset + HEADER_STATUS_OFFSET, BUCKET_STATUS_SPILLED);
+				seg.putShort(bucketOffset + HEADER_COUNT_OFFSET, (short) 0);
+				seg.putLong(bucketOffset + HEADER_FORWARD_OFFSET, BUCKET_FORWARD_POINTER_NOT_SET);
+			}
+		}
+	}
+	
 	/**
 	 * This method makes sure that at least a certain number of memory segments is in the list of free segments.
 	 * Free memory can be in the list of free segments, or in the return-queue where segments used to write behind are
@@ -1302,6 +1523,8 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 		
 		private HashPartition<BT, PT> partition;
 		
+		private SeekableDataInputView recordInput;
+		
 		private int bucketInSegmentOffset;
 		
 		private int searchHashCode;
@@ -1328,11 +1551,18 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 		
 		void set(MemorySegment bucket, MemorySegment[] overflowSegments, HashPartition<BT, PT> partition,
 				int searchHashCode, int bucketInSegmentOffset)
+		{
+			set(bucket, overflowSegments, partition, partition, searchHashCode, bucketInSegmentOffset);
+		}
+		
+		void set(MemorySegment bucket, MemorySegment[] overflowSegments, HashPartition<BT, PT> partition,
+				SeekableDataInputView recordInput, int searchHashCode, int bucketInSegmentOffset)
 		{
 			this.bucket = bucket;
 			this.originalBucket = bucket;
 			this.overflowSegments = overflowSegments;
 			this.partition = partition;
+			this.recordInput = recordInput;
 			this.searchHashCode = searchHashCode;
 			this.bucketInSegmentOffset = bucketInSegmentOffset;
 			this.originalBucketInSegmentOffset = bucketInSegmentOffset;
@@ -1362,8 +1592,8 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 						
 						// deserialize the key to check whether it is really equal, or whether we had only a hash collision
 						try {
-							this.partition.setReadPosition(pointer);
-							this.accessor.deserialize(target, this.partition);
+							this.recordInput.setReadPosition(pointer);
+							this.accessor.deserialize(target, this.recordInput);
 							if (this.comparator.equalToReference(target)) {
 								this.lastPointer = pointer;
 								return true;
@@ -1505,6 +1735,80 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 	} // end HashBucketIterator
 	
 
+	// ======================================================================================================
+	
+	/**
+	 * A prober that looks up matches in a table that holds its complete build side in memory, without modifying the
+	 * table. The buckets and partition buffers of the table are only read, and the prober reads the records through
+	 * views of its own, so that any number of probers may use the same table concurrently.
+	 */
+	public static final class ConcurrentProber<BT, PT>
+	{
+		private final MemorySegment[] buckets;
+		
+		private final int numBuckets;
+		
+		private final int bucketsPerSegmentBits;
+		
+		private final int bucketsPerSegmentMask;
+		
+		private final List<HashPartition<BT, PT>> partitions;
+		
+		private final SeekableDataInputView[] partitionInputs;
+		
+		private final TypeComparator<PT> probeSideComparator;
+		
+		private final TypePairComparator<PT, BT> pairComparator;
+		
+		private final HashBucketIterator<BT, PT> bucketIterator;
+		
+		
+		private ConcurrentProber(MutableHashTable<BT, PT> table, TypeSerializer<BT> buildSideSerializer,
+				TypeComparator<PT> probeSideComparator, TypePairComparator<PT, BT> pairComparator)
+		{
+			this.buckets = table.buckets;
+			this.numBuckets = table.numBuckets;
+			this.bucketsPerSegmentBits = table.bucketsPerSegmentBits;
+			this.bucketsPerSegmentMask = table.bucketsPerSegmentMask;
+			this.partitions = new ArrayList<HashPartition<BT, PT>>(table.partitionsBeingBuilt);
+			this.probeSideComparator = probeSideComparator;
+			this.pairComparator = pairComparator;
+			this.bucketIterator = new HashBucketIterator<BT, PT>(buildSideSerializer, pairComparator);
+			
+			this.partitionInputs = new SeekableDataInputView[this.partitions.size()];
+			for (int i = 0; i < this.partitionInputs.length; i++) {
+				this.partitionInputs[i] = this.partitions.get(i).createConcurrentReadView();
+			}
+		}
+		
+		/**
+		 * Gets an iterator over the build-side records that match the given probe-side record. The iterator is
+		 * reused by subsequent calls.
+		 * 
+		 * @param record The probe-side record.
+		 * @return An iterator over the matching build-side records.
+		 */
+		public HashBucketIterator<BT, PT> getMatchesFor(PT record)
+		{
+			final int hash = hash(this.probeSideComparator.hash(record), 0);
+			final int posHashCode = hash % this.numBuckets;
+			
+			// get the bucket for the given hash code
+			final int bucketArrayPos = posHashCode >> this.bucketsPerSegmentBits;
+			final int bucketInSegmentOffset = (posHashCode & this.bucketsPerSegmentMask) << NUM_INTRA_BUCKET_BITS;
+			final MemorySegment bucket = this.buckets[bucketArrayPos];
+			
+			// all partitions are in memory, so the bucket can be searched directly
+			final int partitionNumber = bucket.get(bucketInSegmentOffset + HEADER_PARTITION_OFFSET);
+			final HashPartition<BT, PT> p = this.partitions.get(partitionNumber);
+			
+			this.pairComparator.setReference(record);
+			this.bucketIterator.set(bucket, p.overflowSegments, p, this.partitionInputs[partitionNumber],
+				hash, bucketInSegmentOffset);
+			return this.bucketIterator;
+		}
+	}
+	
 	// ======================================================================================================
 	
 	public static final class ProbeIterator<PT>
@@ -0,0 +1,504 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.pact.runtime.hash;
+
+import java.io.IOException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.nephele.services.iomanager.IOManager;
+import eu.stratosphere.nephele.services.memorymanager.MemoryAllocationException;
+import eu.stratosphere.nephele.services.memorymanager.MemoryManager;
+import eu.stratosphere.nephele.template.AbstractInvokable;
+import eu.stratosphere.pact.common.generic.GenericMatcher;
+import eu.stratosphere.pact.common.generic.types.TypeComparator;
+import eu.stratosphere.pact.common.generic.types.TypePairComparator;
+import eu.stratosphere.pact.common.generic.types.TypeSerializer;
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.runtime.resettable.SpillingResettableMutableObjectIterator;
+import eu.stratosphere.pact.runtime.task.util.MatchTaskIterator;
+import eu.stratosphere.pact.runtime.task.util.TaskConfig.LocalStrategy;
+
+
+/**
+ * An implementation of the {@link eu.stratosphere.pact.runtime.task.util.MatchTaskIterator} for hybrid-hash-joins
+ * whose build side is broadcasted. Instead of every local instance building its own copy of the same table, the
+ * instances on a task manager share a single read-only table, which one of them builds, and all of them probe
+ * concurrently (see {@link SharedHashTable}).
+ * <p>
+ * The instances that do not build the table buffer their build side while the table is built, because the
+ * broadcasted input must be consumed, but is still needed if the build side turns out not to fit into memory.
+ * In that case, every instance falls back to a regular hybrid-hash-join of its own. The buffer uses half of the
+ * instance's memory and spills beyond that, the fallback join uses the other half. The compiler therefore shares
+ * a table only, if the estimated build side fits into that half.
+ * <p>
+ * Sharing saves the CPU time for building the table in all but one instance. It does not save memory: every
+ * instance keeps its full memory, because it may need to build a table of its own.
+ */
+public abstract class SharedHashMatchIterator<BT, PT, V1, V2, O> implements MatchTaskIterator<V1, V2, O>
+{
+	private static final Log LOG = LogFactory.getLog(SharedHashMatchIterator.class);
+	
+	protected final MutableObjectIterator<BT> buildSideInput;
+	
+	protected final MutableObjectIterator<PT> probeSideInput;
+	
+	protected final TypeSerializer<BT> buildSideSerializer;
+	
+	protected final TypeComparator<BT> buildSideComparator;
+	
+	protected final TypeSerializer<PT> probeSideSerializer;
+	
+	protected final TypeComparator<PT> probeSideComparator;
+	
+	protected final TypePairComparator<PT, BT> pairComparator;
+	
+	protected final MemoryManager memManager;
+	
+	protected final IOManager ioManager;
+	
+	protected final AbstractInvokable ownerTask;
+	
+	private final long totalMemory;
+	
+	private final String tableKey;
+	
+	protected TypePairComparator<BT, PT> fallbackPairComparator;
+	
+	protected int maxFileHandles;
+	
+	protected float spillThreshold;
+	
+	private final BT nextBuildSideObject;
+	
+	private final BT tempBuildSideRecord;
+	
+	private final PT probeRecord;
+	
+	private final PT probeCopy;
+	
+	private SharedHashTable<BT, PT> sharedTable;
+	
+	private boolean builder;
+	
+	private MutableHashTable.ConcurrentProber<BT, PT> prober;
+	
+	private volatile MatchTaskIterator<V1, V2, O> privateIterator;
+	
+	private volatile SpillingResettableMutableObjectIterator<BT> bufferedBuildSide;
+	
+	private volatile boolean running = true;
+	
+	// --------------------------------------------------------------------------------------------
+	
+	protected SharedHashMatchIterator(MutableObjectIterator<BT> buildSideInput, MutableObjectIterator<PT> probeSideInput,
+			TypeSerializer<BT> buildSideSerializer, TypeComparator<BT> buildSideComparator,
+			TypeSerializer<PT> probeSideSerializer, TypeComparator<PT> probeSideComparator,
+			TypePairComparator<PT, BT> pairComparator,
+			MemoryManager memManager, IOManager ioManager, AbstractInvokable ownerTask, long totalMemory, String tableKey)
+	{
+		this.buildSideInput = buildSideInput;
+		this.probeSideInput = probeSideInput;
+		this.buildSideSerializer = buildSideSerializer;
+		this.buildSideComparator = buildSideComparator;
+		this.probeSideSerializer = probeSideSerializer;
+		this.probeSideComparator = probeSideComparator;
+		this.pairComparator = pairComparator;
+		this.memManager = memManager;
+		this.ioManager = ioManager;
+		this.ownerTask = ownerTask;
+		this.totalMemory = memManager.roundDownToPageSizeMultiple(totalMemory);
+		this.tableKey = tableKey;
+		
+		this.nextBuildSideObject = buildSideSerializer.createInstance();
+		this.tempBuildSideRecord = buildSideSerializer.createInstance();
+		this.probeRecord = probeSideSerializer.createInstance();
+		this.probeCopy = probeSideSerializer.createInstance();
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Creates the regular hybrid-hash-join that builds a table from the given build side.
+	 * 
+	 * @param buildSide The build side input.
+	 * @param memory The memory for the join.
+	 * @return The iterator of the regular hybrid-hash-join.
+	 */
+	protected abstract MatchTaskIterator<V1, V2, O> createPrivateIterator(MutableObjectIterator<BT> buildSide, long memory)
+	throws MemoryAllocationException;
+	
+	/**
+	 * Gets the local strategy that the fallback of an iterator created by
+	 * {@link #createPrivateIterator(MutableObjectIterator, long)} used for the partitions exceeding the memory.
+	 * 
+	 * @param iterator The iterator.
+	 * @return The local strategy of the fallback, or <code>null</code>, if no fallback took place.
+	 */
+	protected abstract LocalStrategy getFallbackStrategy(MatchTaskIterator<V1, V2, O> iterator);
+	
+	/**
+	 * Gets the hash table of an iterator created by {@link #createPrivateIterator(MutableObjectIterator, long)}.
+	 * 
+	 * @param iterator The iterator.
+	 * @return The hash table of the iterator.
+	 */
+	protected abstract MutableHashTable<BT, PT> getHashTable(MatchTaskIterator<V1, V2, O> iterator);
+	
+	/**
+	 * Calls the match function with a probe side record and a build side record in the order of the inputs.
+	 */
+	protected abstract void match(GenericMatcher<V1, V2, O> matchFunction, PT probeRecord, BT buildRecord,
+			Collector<O> collector) throws Exception;
+	
+	/**
+	 * Enables the fallback of the hash join that an instance uses, if the build side does not fit into memory.
+	 * 
+	 * @param fallbackPairComparator The pair comparator with the reversed direction, needed by the fallback strategies.
+	 * @param maxFileHandles The maximum number of files to be merged at once, if the fallback sorts the inputs.
+	 * @param spillThreshold The spilling threshold, if the fallback sorts the inputs.
+	 * 
+	 * @see BuildFirstHashMatchIterator#enableFallback(TypePairComparator, int, float)
+	 */
+	public void enableFallback(TypePairComparator<BT, PT> fallbackPairComparator, int maxFileHandles, float spillThreshold)
+	{
+		this.fallbackPairComparator = fallbackPairComparator;
+		this.maxFileHandles = maxFileHandles;
+		this.spillThreshold = spillThreshold;
+	}
+	
+	/**
+	 * Gets the local strategy that joined the partitions which did not fit into memory, if the instance joined
+	 * on its own and its fallback has been used.
+	 * 
+	 * @return The local strategy of the fallback, or <code>null</code>, if no fallback took place.
+	 */
+	public LocalStrategy getFallbackStrategy()
+	{
+		final MatchTaskIterator<V1, V2, O> privateIterator = this.privateIterator;
+		return privateIterator == null ? null : getFallbackStrategy(privateIterator);
+	}
+	
+	/**
+	 * Checks whether this instance probes the table shared by the local instances.
+	 * 
+	 * @return True, if the shared table is probed, false if the instance builds a table of its own.
+	 */
+	public boolean isProbingSharedTable()
+	{
+		return this.prober != null;
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.util.MatchTaskIterator#open()
+	 */
+	@Override
+	public void open() throws IOException, MemoryAllocationException, InterruptedException
+	{
+		this.sharedTable = SharedHashTable.acquire(this.tableKey);
+		this.builder = this.sharedTable.claimBuild();
+		
+		if (this.builder) {
+			MutableHashTable<BT, PT> table = null;
+			try {
+				this.privateIterator = createPrivateIterator(this.buildSideInput, this.totalMemory);
+				this.privateIterator.open();
+				
+				final MutableHashTable<BT, PT> hashTable = getHashTable(this.privateIterator);
+				if (hashTable.isBuiltInMemory()) {
+					table = hashTable;
+				}
+			}
+			finally {
+				// publish in any case, the other instances must not wait forever
+				this.sharedTable.publish(table);
+			}
+			
+			if (table != null) {
+				this.prober = table.createConcurrentProber(this.buildSideSerializer, this.probeSideComparator,
+					this.pairComparator);
+			}
+			else if (LOG.isInfoEnabled()) {
+				LOG.info("The build side of the shared hash table '" + this.tableKey + 
+					"' does not fit into memory. The local instances build their own tables.");
+			}
+		}
+		else {
+			// buffer the build side, in case the shared table cannot be built in memory
+			final long bufferMemory = this.memManager.roundDownToPageSizeMultiple(this.totalMemory / 2);
+			this.bufferedBuildSide = new SpillingResettableMutableObjectIterator<BT>(this.buildSideInput,
+				this.buildSideSerializer, this.memManager, this.ioManager, bufferMemory, this.ownerTask);
+			
+			final BT record = this.nextBuildSideObject;
+			while (this.running && this.bufferedBuildSide.next(record));
+			
+			final MutableHashTable<BT, PT> table = this.sharedTable.awaitTable();
+			if (table != null) {
+				closeBuffer();
+				this.prober = table.createConcurrentProber(this.buildSideSerializer, this.probeSideComparator,
+					this.pairComparator);
+			}
+			else {
+				this.bufferedBuildSide.reset();
+				this.privateIterator = createPrivateIterator(this.bufferedBuildSide, this.totalMemory - bufferMemory);
+				this.privateIterator.open();
+			}
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.util.MatchTaskIterator#close()
+	 */
+	@Override
+	public void close()
+	{
+		releaseSharedTable();
+		
+		if (this.privateIterator != null) {
+			this.privateIterator.close();
+			this.privateIterator = null;
+		}
+		closeBuffer();
+	}
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.util.MatchTaskIterator#callWithNextKey(eu.stratosphere.pact.common.stub.MatchStub, eu.stratosphere.pact.common.stub.Collector)
+	 */
+	@Override
+	public boolean callWithNextKey(GenericMatcher<V1, V2, O> matchFunction, Collector<O> collector)
+	throws Exception
+	{
+		if (this.prober == null) {
+			return this.privateIterator.callWithNextKey(matchFunction, collector);
+		}
+		
+		final PT probeRecord = this.probeRecord;
+		if (!this.probeSideInput.next(probeRecord)) {
+			return false;
+		}
+		
+		final MutableHashTable.HashBucketIterator<BT, PT> buildSideIterator = this.prober.getMatchesFor(probeRecord);
+		final BT nextBuildSideRecord = this.nextBuildSideObject;
+		
+		// get the first build side value
+		if (buildSideIterator.next(nextBuildSideRecord)) {
+			final BT tmpRec = this.tempBuildSideRecord;
+			
+			// check if there is another build-side value
+			if (buildSideIterator.next(tmpRec)) {
+				// more than one build-side value --> copy the probe side
+				final PT probeCopy = this.probeCopy;
+				this.probeSideSerializer.copyTo(probeRecord, probeCopy);
+				
+				// call match on the first pair
+				match(matchFunction, probeCopy, nextBuildSideRecord, collector);
+				
+				// call match on the second pair
+				this.probeSideSerializer.copyTo(probeRecord, probeCopy);
+				match(matchFunction, probeCopy, tmpRec, collector);
+				
+				while (this.running && buildSideIterator.next(nextBuildSideRecord)) {
+					// call match on the next pair
+					// make sure we restore the value of the probe side record
+					this.probeSideSerializer.copyTo(probeRecord, probeCopy);
+					match(matchFunction, probeCopy, nextBuildSideRecord, collector);
+				}
+			}
+			else {
+				// only single pair matches
+				match(matchFunction, probeRecord, nextBuildSideRecord, collector);
+			}
+		}
+		return true;
+	}
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.util.MatchTaskIterator#abort()
+	 */
+	@Override
+	public void abort()
+	{
+		this.running = false;
+		releaseSharedTable();
+		
+		final MatchTaskIterator<V1, V2, O> privateIterator = this.privateIterator;
+		if (privateIterator != null) {
+			privateIterator.abort();
+		}
+		closeBuffer();
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Releases the shared table. The instance that built the table waits until the other instances are done
+	 * probing it, before it returns the table's memory.
+	 */
+	private void releaseSharedTable()
+	{
+		final SharedHashTable<BT, PT> sharedTable = this.sharedTable;
+		if (sharedTable != null) {
+			this.sharedTable = null;
+			this.prober = null;
+			sharedTable.release(this.builder);
+		}
+	}
+	
+	private void closeBuffer()
+	{
+		final SpillingResettableMutableObjectIterator<BT> buffer = this.bufferedBuildSide;
+		if (buffer != null) {
+			this.bufferedBuildSide = null;
+			try {
+				buffer.close();
+			}
+			catch (IOException ioex) {
+				LOG.error("Could not close the buffer of the build side: " + ioex.getMessage(), ioex);
+			}
+		}
+	}
+	
+	// ============================================================================================
+	
+	/**
+	 * The shared hybrid-hash-join that builds the table from the first input.
+	 */
+	public static final class BuildFirst<V1, V2, O> extends SharedHashMatchIterator<V1, V2, V1, V2, O>
+	{
+		public BuildFirst(MutableObjectIterator<V1> firstInput, MutableObjectIterator<V2> secondInput,
+				TypeSerializer<V1> serializer1, TypeComparator<V1> comparator1,
+				TypeSerializer<V2> serializer2, TypeComparator<V2> comparator2,
+				TypePairComparator<V2, V1> pairComparator,
+				MemoryManager memManager, IOManager ioManager, AbstractInvokable ownerTask, long totalMemory,
+				String tableKey)
+		{
+			super(firstInput, secondInput, serializer1, comparator1, serializer2, comparator2, pairComparator,
+				memManager, ioManager, ownerTask, totalMemory, tableKey);
+		}
+		
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.pact.runtime.hash.SharedHashMatchIterator#createPrivateIterator(eu.stratosphere.pact.common.util.MutableObjectIterator, long)
+		 */
+		@Override
+		protected MatchTaskIterator<V1, V2, O> createPrivateIterator(MutableObjectIterator<V1> buildSide, long memory)
+		throws MemoryAllocationException
+		{
+			final BuildFirstHashMatchIterator<V1, V2, O> iterator = new BuildFirstHashMatchIterator<V1, V2, O>(
+				buildSide, this.probeSideInput,
+				this.buildSideSerializer, this.buildSideComparator, this.probeSideSerializer, this.probeSideComparator,
+				this.pairComparator, this.memManager, this.ioManager, this.ownerTask, memory);
+			if (this.fallbackPairComparator != null) {
+				iterator.enableFallback(this.fallbackPairComparator, this.maxFileHandles, this.spillThreshold);
+			}
+			return iterator;
+		}
+		
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.pact.runtime.hash.SharedHashMatchIterator#getFallbackStrategy(eu.stratosphere.pact.runtime.task.util.MatchTaskIterator)
+		 */
+		@Override
+		protected LocalStrategy getFallbackStrategy(MatchTaskIterator<V1, V2, O> iterator)
+		{
+			return ((BuildFirstHashMatchIterator<V1, V2, O>) iterator).getFallbackStrategy();
+		}
+		
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.pact.runtime.hash.SharedHashMatchIterator#getHashTable(eu.stratosphere.pact.runtime.task.util.MatchTaskIterator)
+		 */
+		@Override
+		protected MutableHashTable<V1, V2> getHashTable(MatchTaskIterator<V1, V2, O> iterator)
+		{
+			return ((BuildFirstHashMatchIterator<V1, V2, O>) iterator).getHashTable();
+		}
+		
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.pact.runtime.hash.SharedHashMatchIterator#match(eu.stratosphere.pact.common.generic.GenericMatcher, java.lang.Object, java.lang.Object, eu.stratosphere.pact.common.stubs.Collector)
+		 */
+		@Override
+		protected void match(GenericMatcher<V1, V2, O> matchFunction, V2 probeRecord, V1 buildRecord,
+				Collector<O> collector) throws Exception
+		{
+			matchFunction.match(buildRecord, probeRecord, collector);
+		}
+	}
+	
+	/**
+	 * The shared hybrid-hash-join that builds the table from the second input.
+	 */
+	public static final class BuildSecond<V1, V2, O> extends SharedHashMatchIterator<V2, V1, V1, V2, O>
+	{
+		public BuildSecond(MutableObjectIterator<V1> firstInput, MutableObjectIterator<V2> secondInput,
+				TypeSerializer<V1> serializer1, TypeComparator<V1> comparator1,
+				TypeSerializer<V2> serializer2, TypeComparator<V2> comparator2,
+				TypePairComparator<V1, V2> pairComparator,
+				MemoryManager memManager, IOManager ioManager, AbstractInvokable ownerTask, long totalMemory,
+				String tableKey)
+		{
+			super(secondInput, firstInput, serializer2, comparator2, serializer1, comparator1, pairComparator,
+				memManager, ioManager, ownerTask, totalMemory, tableKey);
+		}
+		
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.pact.runtime.hash.SharedHashMatchIterator#createPrivateIterator(eu.stratosphere.pact.common.util.MutableObjectIterator, long)
+		 */
+		@Override
+		protected MatchTaskIterator<V1, V2, O> createPrivateIterator(MutableObjectIterator<V2> buildSide, long memory)
+		throws MemoryAllocationException
+		{
+			final BuildSecondHashMatchIterator<V1, V2, O> iterator = new BuildSecondHashMatchIterator<V1, V2, O>(
+				this.probeSideInput, buildSide,
+				this.probeSideSerializer, this.probeSideComparator, this.buildSideSerializer, this.buildSideComparator,
+				this.pairComparator, this.memManager, this.ioManager, this.ownerTask, memory);
+			if (this.fallbackPairComparator != null) {
+				iterator.enableFallback(this.fallbackPairComparator, this.maxFileHandles, this.spillThreshold);
+			}
+			return iterator;
+		}
+		
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.pact.runtime.hash.SharedHashMatchIterator#getFallbackStrategy(eu.stratosphere.pact.runtime.task.util.MatchTaskIterator)
+		 */
+		@Override
+		protected LocalStrategy getFallbackStrategy(MatchTaskIterator<V1, V2, O> iterator)
+		{
+			return ((BuildSecondHashMatchIterator<V1, V2, O>) iterator).getFallbackStrategy();
+		}
+		
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.pact.runtime.hash.SharedHashMatchIterator#getHashTable(eu.stratosphere.pact.runtime.task.util.MatchTaskIterator)
+		 */
+		@Override
+		protected MutableHashTable<V2, V1> getHashTable(MatchTaskIterator<V1, V2, O> iterator)
+		{
+			return ((BuildSecondHashMatchIterator<V1, V2, O>) iterator).getHashTable();
+		}
+		
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.pact.runtime.hash.SharedHashMatchIterator#match(eu.stratosphere.pact.common.generic.GenericMatcher, java.lang.Object, java.lang.Object, eu.stratosphere.pact.common.stubs.Collector)
+		 */
+		@Override
+		protected void match(GenericMatcher<V1, V2, O> matchFunction, V1 probeRecord, V2 buildRecord,
+				Collector<O> collector) throws Exception
+		{
+			matchFunction.match(probeRecord, buildRecord, collector);
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.pact.runtime.hash;
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * A hash table that the local instances of a match share, if its build side is broadcasted to all of them. The
+ * tables are registered per JVM, i.e. per task manager, under a key that is unique for the match within the job.
+ * <p>
+ * Every instance acquires the shared table and releases it when it is done. The first instance to claim the build
+ * builds the table from its own input and with its own memory and publishes it. All other instances wait for the
+ * table to be published. If the build side does not fit into memory, no table is published and every instance
+ * builds a table of its own. Because the table lives in the memory of the building instance, that instance's
+ * release blocks until all other instances have released the table.
+ */
+final class SharedHashTable<BT, PT>
+{
+	private static final Map<String, SharedHashTable<?, ?>> TABLES = new HashMap<String, SharedHashTable<?, ?>>();
+	
+	private final String key;
+	
+	private int references;					// the number of instances holding the table, guarded by TABLES
+	
+	private boolean claimed;				// whether an instance builds the table, guarded by TABLES
+	
+	private boolean published;				// whether the build is done, guarded by TABLES
+	
+	private MutableHashTable<BT, PT> table;	// the published table, null if none could be built
+	
+	// --------------------------------------------------------------------------------------------
+	
+	private SharedHashTable(String key)
+	{
+		this.key = key;
+	}
+	
+	/**
+	 * Acquires the shared table with the given key, registering it if it does not exist.
+	 * 
+	 * @param key The key of the shared table.
+	 * @return The shared table.
+	 */
+	static <BT, PT> SharedHashTable<BT, PT> acquire(String key)
+	{
+		synchronized (TABLES) {
+			@SuppressWarnings("unchecked")
+			SharedHashTable<BT, PT> shared = (SharedHashTable<BT, PT>) TABLES.get(key);
+			if (shared == null) {
+				shared = new SharedHashTable<BT, PT>(key);
+				TABLES.put(key, shared);
+			}
+			shared.references++;
+			return shared;
+		}
+	}
+	
+	/**
+	 * Claims the build of the table. Exactly one of the instances holding the table succeeds and must publish
+	 * the table afterwards.
+	 * 
+	 * @return True, if the caller builds the table, false if another instance does.
+	 */
+	boolean claimBuild()
+	{
+		synchronized (TABLES) {
+			if (this.claimed) {
+				return false;
+			}
+			this.claimed = true;
+			return true;
+		}
+	}
+	
+	/**
+	 * Publishes the table built by the instance that claimed the build.
+	 * 
+	 * @param table The table holding the complete build side in memory, or <code>null</code>, if it could not
+	 *              be built in memory.
+	 */
+	void publish(MutableHashTable<BT, PT> table)
+	{
+		synchronized (TABLES) {
+			this.table = table;
+			this.published = true;
+			TABLES.notifyAll();
+		}
+	}
+	
+	/**
+	 * Waits until the table has been published.
+	 * 
+	 * @return The table, or <code>null</code>, if it could not be built in memory.
+	 * @throws InterruptedException Thrown, if the thread is interrupted while waiting.
+	 */
+	MutableHashTable<BT, PT> awaitTable() throws InterruptedException
+	{
+		synchronized (TABLES) {
+			while (!this.published) {
+				TABLES.wait();
+			}
+			return this.table;
+		}
+	}
+	
+	/**
+	 * Releases the table. If the caller built the table, this method waits until all other instances have
+	 * released it, because the memory of the table is returned once the caller is done. The builder keeps waiting
+	 * if it is interrupted, for example because its task is canceled, since the other instances may still read the
+	 * table's memory. The interrupt flag is restored before the method returns.
+	 * 
+	 * @param builder True, if the caller built the table.
+	 */
+	void release(boolean builder)
+	{
+		synchronized (TABLES) {
+			this.references--;
+			TABLES.notifyAll();
+			
+			if (builder) {
+				boolean interrupted = false;
+				while (this.table != null && this.references > 0) {
+					try {
+						TABLES.wait();
+					}
+					catch (InterruptedException iex) {
+						interrupted = true;
+					}
+				}
+				
+				// the table must not be handed out any more once its builder is done
+				this.table = null;
+				this.published = true;
+				
+				if (interrupted) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			if ((builder || this.references == 0) && TABLES.get(this.key) == this) {
+				TABLES.remove(this.key);
+			}
+		}
+	}
+}
@@ -0,0 +1,217 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.hash;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import eu.stratosphere.nephele.services.iomanager.BlockChannelReader;
+import eu.stratosphere.nephele.services.iomanager.Channel;
+import eu.stratosphere.nephele.services.iomanager.ChannelReaderInputView;
+import eu.stratosphere.nephele.services.iomanager.HeaderlessChannelReaderInputView;
+import eu.stratosphere.nephele.services.iomanager.IOManager;
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
+import eu.stratosphere.pact.common.generic.types.TypeSerializer;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+
+
+/**
+ * An iterator over the records of one side of a set of spilled hash partitions. The files of the partitions are
+ * read one after the other and deleted as soon as they are exhausted. Since the partitions of a hash table have
+ * disjoint key sets, the union of their records can be joined as a whole by any join strategy.
+ *
+ * @param <T> The type of the records in the files.
+ */
+final class SpilledPartitionsIterator<T> implements MutableObjectIterator<T>
+{
+	private final IOManager ioManager;
+	
+	private final TypeSerializer<T> serializer;
+	
+	private final List<MemorySegment> memory;
+	
+	private final List<Channel.ID> channels;
+	
+	private final int[] blockCounts;
+	
+	private final int[] lastSegmentLimits;		// -1 for channels written with block headers
+	
+	private final long numBytes;
+	
+	private int nextChannel;
+	
+	private BlockChannelReader currentReader;
+	
+	private ChannelReaderInputView currentView;
+	
+	// --------------------------------------------------------------------------------------------
+	
+	private SpilledPartitionsIterator(IOManager ioManager, TypeSerializer<T> serializer, List<MemorySegment> memory,
+			List<Channel.ID> channels, int[] blockCounts, int[] lastSegmentLimits)
+	{
+		this.ioManager = ioManager;
+		this.serializer = serializer;
+		this.memory = memory;
+		this.channels = channels;
+		this.blockCounts = blockCounts;
+		this.lastSegmentLimits = lastSegmentLimits;
+		
+		final int segmentSize = memory.get(0).size();
+		long bytes = 0;
+		for (int i = 0; i < blockCounts.length; i++) {
+			bytes += lastSegmentLimits[i] < 0 ? ((long) blockCounts[i]) * segmentSize :
+				((long) blockCounts[i] - 1) * segmentSize + lastSegmentLimits[i];
+		}
+		this.numBytes = bytes;
+	}
+	
+	/**
+	 * Creates an iterator over the build side records of the given spilled partitions.
+	 * 
+	 * @param partitions The spilled partitions.
+	 * @param serializer The serializer for the build side records.
+	 * @param ioManager The I/O manager used to read the files.
+	 * @param memory The memory segments to read the files with. They are not released by the iterator.
+	 * @return The iterator over the build side records.
+	 */
+	static <BT, PT> SpilledPartitionsIterator<BT> getBuildSide(List<HashPartition<BT, PT>> partitions,
+			TypeSerializer<BT> serializer, IOManager ioManager, List<MemorySegment> memory)
+	{
+		final List<Channel.ID> channels = new ArrayList<Channel.ID>(partitions.size());
+		final int[] blockCounts = new int[partitions.size()];
+		final int[] lastSegmentLimits = new int[partitions.size()];
+		
+		for (int i = 0; i < partitions.size(); i++) {
+			final HashPartition<BT, PT> p = partitions.get(i);
+			channels.add(p.getBuildSideChannel().getChannelID());
+			blockCounts[i] = p.getBuildSideBlockCount();
+			lastSegmentLimits[i] = p.getLastSegmentLimit();
+		}
+		return new SpilledPartitionsIterator<BT>(ioManager, serializer, memory, channels, blockCounts, lastSegmentLimits);
+	}
+	
+	/**
+	 * Creates an iterator over the probe side records of the given spilled partitions.
+	 * 
+	 * @param partitions The spilled partitions.
+	 * @param serializer The serializer for the probe side records.
+	 * @param ioManager The I/O manager used to read the files.
+	 * @param memory The memory segments to read the files with. They are not released by the iterator.
+	 * @return The iterator over the probe side records.
+	 */
+	static <BT, PT> SpilledPartitionsIterator<PT> getProbeSide(List<HashPartition<BT, PT>> partitions,
+			TypeSerializer<PT> serializer, IOManager ioManager, List<MemorySegment> memory)
+	{
+		final List<Channel.ID> channels = new ArrayList<Channel.ID>(partitions.size());
+		final int[] blockCounts = new int[partitions.size()];
+		final int[] lastSegmentLimits = new int[partitions.size()];
+		
+		for (int i = 0; i < partitions.size(); i++) {
+			final HashPartition<BT, PT> p = partitions.get(i);
+			channels.add(p.getProbeSideChannel().getChannelID());
+			blockCounts[i] = p.getProbeSideBlockCount();
+			lastSegmentLimits[i] = -1;
+		}
+		return new SpilledPartitionsIterator<PT>(ioManager, serializer, memory, channels, blockCounts, lastSegmentLimits);
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Gets the number of bytes in the files of this iterator. For files written with block headers, the
+	 * headers and the unused space at the end of the blocks are included.
+	 * 
+	 * @return The number of bytes in the files.
+	 */
+	long getNumBytes()
+	{
+		return this.numBytes;
+	}
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.common.util.MutableObjectIterator#next(java.lang.Object)
+	 */
+	@Override
+	public boolean next(T target) throws IOException
+	{
+		while (true) {
+			if (this.currentView == null) {
+				if (this.nextChannel >= this.channels.size()) {
+					return false;
+				}
+				openNextChannel();
+			}
+			
+			try {
+				this.serializer.deserialize(target, this.currentView);
+				return true;
+			}
+			catch (EOFException eofex) {
+				closeCurrentChannel();
+			}
+		}
+	}
+	
+	/**
+	 * Closes the iterator and deletes all files that have not been read completely.
+	 */
+	void close()
+	{
+		try {
+			closeCurrentChannel();
+		}
+		catch (IOException ioex) {
+			throw new RuntimeException("Error closing the spilled partition file: " + ioex.getMessage(), ioex);
+		}
+		finally {
+			for (; this.nextChannel < this.channels.size(); this.nextChannel++) {
+				new File(this.channels.get(this.nextChannel).getPath()).delete();
+			}
+		}
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	private void openNextChannel() throws IOException
+	{
+		final int i = this.nextChannel++;
+		this.currentReader = this.ioManager.createBlockChannelReader(this.channels.get(i));
+		
+		// the views keep the given list untouched and return the very same segments when closed
+		this.currentView = this.lastSegmentLimits[i] < 0 ?
+			new ChannelReaderInputView(this.currentReader, this.memory, this.blockCounts[i], false) :
+			new HeaderlessChannelReaderInputView(this.currentReader, this.memory, this.blockCounts[i],
+				this.lastSegmentLimits[i], false);
+	}
+	
+	private void closeCurrentChannel() throws IOException
+	{
+		if (this.currentView != null) {
+			final ChannelReaderInputView view = this.currentView;
+			this.currentView = null;
+			try {
+				view.close();
+			}
+			finally {
+				this.currentReader.deleteChannel();
+				this.currentReader = null;
+			}
+		}
+	}
+}
@@ -84,4 +84,14 @@ public class RandomAccessOutputView extends AbstractPagedOutputView implements S
 		this.currentSegmentIndex = bufferNum;
 		seekOutput(this.segments[bufferNum], offset);
 	}
+
+	/**
+	 * Gets the current write position, in the same address space as used by {@link #setWritePosition(long)}.
+	 *
+	 * @return The position at which the next byte will be written.
+	 */
+	public long getWritePosition()
+	{
+		return (((long) this.currentSegmentIndex) << this.segmentSizeBits) + getCurrentPositionInSegment();
+	}
 }
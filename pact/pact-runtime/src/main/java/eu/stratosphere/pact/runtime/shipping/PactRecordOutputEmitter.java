@@ -15,6 +15,8 @@
 
 package eu.stratosphere.pact.runtime.shipping;
 
+import java.util.Arrays;
+
 import eu.stratosphere.nephele.io.ChannelSelector;
 import eu.stratosphere.pact.common.contract.DataDistribution;
 import eu.stratosphere.pact.common.type.Key;
@@ -46,6 +48,12 @@ public class PactRecordOutputEmitter implements ChannelSelector<PactRecord>
 	private final DataDistribution distribution;
 	
 	private int nextChannelToSendTo;				// counter to go over channels round robin
+	
+	private final int[] spreadKeyHashes;			// sorted hash codes of the keys spread over all channels
+	
+	private final int[] replicateKeyHashes;			// sorted hash codes of the keys replicated to all channels
+	
+	private int[] replicationChannels;				// the reused array holding all channels, for replicated keys
 
 	// ------------------------------------------------------------------------
 	// Constructors
@@ -82,6 +90,27 @@ public class PactRecordOutputEmitter implements ChannelSelector<PactRecord>
 	 * @param distr The distribution pattern used in the case of a range partitioning.
 	 */
 	public PactRecordOutputEmitter(ShipStrategyType strategy, PactRecordComparator comparator, DataDistribution distr)
+	{
+		this(strategy, comparator, distr, null, null);
+	}
+	
+	/**
+	 * Creates a new channel selector that uses the given strategy (broadcasting, partitioning, ...)
+	 * and uses the supplied comparator to hash / compare records for partitioning them deterministically.
+	 * For the skew handling hash partitioning, the hash codes of the skewed keys are given in addition:
+	 * Records whose key hash is among the spread keys are distributed round robin over all channels,
+	 * records whose key hash is among the replicated keys are sent to all channels. All other records
+	 * are hash partitioned as usual. Because the keys are identified by their hash codes only, the two
+	 * sets of hash codes must be disjoint.
+	 * 
+	 * @param strategy The distribution strategy to be used.
+	 * @param comparator The comparator used to hash / compare the records.
+	 * @param distr The distribution pattern used in the case of a range partitioning.
+	 * @param spreadKeyHashes The hash codes of the keys whose records are spread over all channels.
+	 * @param replicateKeyHashes The hash codes of the keys whose records are replicated to all channels.
+	 */
+	public PactRecordOutputEmitter(ShipStrategyType strategy, PactRecordComparator comparator, DataDistribution distr,
+			int[] spreadKeyHashes, int[] replicateKeyHashes)
 	{
 		if (strategy == null) { 
 			throw new NullPointerException();
@@ -91,11 +120,23 @@ public class PactRecordOutputEmitter implements ChannelSelector<PactRecord>
 		this.comparator = comparator;
 		this.distribution = distr;
 		
+		this.spreadKeyHashes = spreadKeyHashes == null ? new int[0] : spreadKeyHashes.clone();
+		this.replicateKeyHashes = replicateKeyHashes == null ? new int[0] : replicateKeyHashes.clone();
+		Arrays.sort(this.spreadKeyHashes);
+		Arrays.sort(this.replicateKeyHashes);
+		for (int hash : this.spreadKeyHashes) {
+			if (Arrays.binarySearch(this.replicateKeyHashes, hash) >= 0) {
+				throw new IllegalArgumentException("The hash code " + hash + " is both among the spread and the " +
+					"replicated keys.");
+			}
+		}
+		
 		switch (strategy) {
 		case FORWARD:
 		case PARTITION_HASH:
 		case PARTITION_LOCAL_HASH:
 		case PARTITION_RANGE:
+		case PARTITION_HASH_SKEW:
 			this.channels = new int[1];
 			break;
 		case BROADCAST:
@@ -125,6 +166,8 @@ public class PactRecordOutputEmitter implements ChannelSelector<PactRecord>
 		case PARTITION_HASH:
 		case PARTITION_LOCAL_HASH:
 			return hashPartitionDefault(record, numberOfChannels);
+		case PARTITION_HASH_SKEW:
+			return hashPartitionSkewed(record, numberOfChannels);
 		case PARTITION_RANGE:
 			return rangePartiton(record, numberOfChannels);
 		case BROADCAST:
@@ -158,12 +201,41 @@ public class PactRecordOutputEmitter implements ChannelSelector<PactRecord>
 
 	private final int[] hashPartitionDefault(final PactRecord record, int numberOfChannels)
 	{
-		int hash = this.comparator.hash(record);
+		this.channels[0] = channelForHash(this.comparator.hash(record), numberOfChannels);
+		return this.channels;
+	}
+	
+	private final int[] hashPartitionSkewed(final PactRecord record, int numberOfChannels)
+	{
+		final int hash = this.comparator.hash(record);
+		
+		if (this.spreadKeyHashes.length > 0 && Arrays.binarySearch(this.spreadKeyHashes, hash) >= 0) {
+			// the key is skewed in this input. any receiver can process its records, because
+			// the other input replicates the key to all of them
+			return robin(numberOfChannels);
+		}
+		else if (this.replicateKeyHashes.length > 0 && Arrays.binarySearch(this.replicateKeyHashes, hash) >= 0) {
+			// the key is skewed in the other input and its records may end up at any receiver
+			if (this.replicationChannels == null || this.replicationChannels.length != numberOfChannels) {
+				this.replicationChannels = new int[numberOfChannels];
+				for (int i = 0; i < numberOfChannels; i++) {
+					this.replicationChannels[i] = i;
+				}
+			}
+			return this.replicationChannels;
+		}
+		else {
+			this.channels[0] = channelForHash(hash, numberOfChannels);
+			return this.channels;
+		}
+	}
+	
+	private static final int channelForHash(int hash, int numberOfChannels)
+	{
 		for (int i = 0; i < DEFAULT_SALT.length; i++) {
 			hash ^= ((hash << 5) + DEFAULT_SALT[i] + (hash >> 2));
 		}
-		this.channels[0] = (hash < 0) ? -hash % numberOfChannels : hash % numberOfChannels;
-		return this.channels;
+		return (hash < 0) ? -hash % numberOfChannels : hash % numberOfChannels;
 	}
 	
 	private final int[] rangePartiton(final PactRecord record, int numberOfChannels)
@@ -29,6 +29,7 @@ public abstract class ShipStrategy {
 		PARTITION_LOCAL_HASH,
 		PARTITION_RANGE,
 		PARTITION_LOCAL_RANGE,
+		PARTITION_HASH_SKEW,
 		BROADCAST,
 		SFR,
 		NONE
@@ -101,6 +102,19 @@ public abstract class ShipStrategy {
 		
 	}
 	
+	/**
+	 * Hash partitioning that handles a set of heavily skewed keys specially: The records of a key that is
+	 * skewed in this input are spread over all receivers, while the records of a key that is skewed in the
+	 * other input of the receiving contract are replicated to all receivers.
+	 */
+	public static class PartitionHashSkewSS extends PartitionShipStrategy {
+		
+		public PartitionHashSkewSS(FieldList partitionFields) { 
+			super(ShipStrategyType.PARTITION_HASH_SKEW, partitionFields);
+		}
+		
+	}
+	
 	public static class PartitionRangeSS extends PartitionShipStrategy {
 		
 		public PartitionRangeSS(FieldList partitionFields) { 
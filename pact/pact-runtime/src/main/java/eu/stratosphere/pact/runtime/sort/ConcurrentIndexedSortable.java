@@ -0,0 +1,32 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.sort;
+
+/**
+ * An {@link IndexedSortable} that can be sorted by several threads at the same time. Each thread accesses the
+ * sortable through its own view, and the views of different threads must only be used on disjoint index ranges.
+ */
+public interface ConcurrentIndexedSortable extends IndexedSortable {
+
+	/**
+	 * Creates a view on this sortable that may be used by another thread concurrently to this sortable and
+	 * its other views, as long as the threads work on disjoint index ranges.
+	 * 
+	 * @return A view on the items of this sortable.
+	 */
+	IndexedSortable createConcurrentView();
+
+}
@@ -0,0 +1,49 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.sort;
+
+/**
+ * An {@link IndexedSortable} whose items carry fixed-length normalized keys. The order of the items is
+ * consistent with the order of their normalized key bytes, such that the items can be sorted by a radix sort.
+ */
+public interface NormalizedKeySortable extends IndexedSortable {
+
+	/**
+	 * Gets the number of normalized key bytes of each item.
+	 * 
+	 * @return The length of the normalized keys.
+	 */
+	int getNormalizedKeyLength();
+
+	/**
+	 * Checks whether the normalized keys alone determine the order of the items. If not, items with equal
+	 * normalized keys must be ordered through {@link #compare(int, int)}.
+	 * 
+	 * @return True, if the normalized keys fully determine the order, false otherwise.
+	 */
+	boolean isNormalizedKeyFullyDetermining();
+
+	/**
+	 * Gets a byte of the normalized key of the item at the given address. The value is unsigned and already
+	 * adjusted to the sort order, i.e. lower values sort to the front.
+	 * 
+	 * @param i The address of the item.
+	 * @param position The position of the byte in the normalized key.
+	 * @return The normalized key byte, as a value between 0 and 255.
+	 */
+	int getNormalizedKeyByte(int i, int position);
+
+}
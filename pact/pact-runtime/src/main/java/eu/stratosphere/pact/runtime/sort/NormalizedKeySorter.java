@@ -33,7 +33,7 @@ import eu.stratosphere.pact.runtime.io.SimpleCollectingOutputView;
  * 
  * @author Stephan Ewen
  */
-public final class NormalizedKeySorter<T> implements IndexedSortable
+public final class NormalizedKeySorter<T> implements ConcurrentIndexedSortable, NormalizedKeySortable
 {
 	
 	private static final int OFFSET_LEN = 8;
@@ -90,6 +90,8 @@ public final class NormalizedKeySorter<T> implements IndexedSortable
 	
 	private final boolean useNormKeyUninverted;
 	
+	private final int normalizedKeyByteMask;
+	
 	
 	// -------------------------------------------------------------------------
 	// Constructors / Destructors
@@ -110,6 +112,7 @@ public final class NormalizedKeySorter<T> implements IndexedSortable
 		this.serializer = serializer;
 		this.comparator = comparator;
 		this.useNormKeyUninverted = !comparator.invertNormalizedKey();
+		this.normalizedKeyByteMask = this.useNormKeyUninverted ? 0 : 0xff;
 		
 		// check the size of the first buffer and record it. all further buffers must have the same size.
 		// the size must also be a power of 2
@@ -264,7 +267,13 @@ public final class NormalizedKeySorter<T> implements IndexedSortable
 		
 		// add the pointer and the normalized key
 		this.currentSortIndexSegment.putLong(this.currentSortIndexOffset, this.currentDataBufferOffset);
-		this.comparator.putNormalizedKey(record, this.currentSortIndexSegment.getBackingArray(), this.currentSortIndexSegment.translateOffset(this.currentSortIndexOffset + OFFSET_LEN), this.numKeyBytes);
+		if (this.currentSortIndexSegment.isOffHeap()) {
+			// off-heap segments have no array to write the key into directly
+			this.comparator.putNormalizedKey(record, this.swapBuffer, 0, this.numKeyBytes);
+			this.currentSortIndexSegment.put(this.currentSortIndexOffset + OFFSET_LEN, this.swapBuffer, 0, this.numKeyBytes);
+		} else {
+			this.comparator.putNormalizedKey(record, this.currentSortIndexSegment.getBackingArray(), this.currentSortIndexSegment.translateOffset(this.currentSortIndexOffset + OFFSET_LEN), this.numKeyBytes);
+		}
 		
 		// serialize the record into the data buffers
 		try {
@@ -300,13 +309,14 @@ public final class NormalizedKeySorter<T> implements IndexedSortable
 		this.serializer.deserialize(target, this.recordBuffer);
 	}
 	
-	private final int compareRecords(long pointer1, long pointer2)
+	private final int compareRecords(long pointer1, long pointer2, TypeComparator<T> comparator,
+			RandomAccessInputView buffer1, RandomAccessInputView buffer2)
 	{
-		this.recordBuffer.setReadPosition(pointer1);
-		this.recordBufferForComparison.setReadPosition(pointer2);
+		buffer1.setReadPosition(pointer1);
+		buffer2.setReadPosition(pointer2);
 		
 		try {
-			return this.comparator.compare(this.recordBuffer, this.recordBufferForComparison);
+			return comparator.compare(buffer1, buffer2);
 		} catch (IOException ioex) {
 			throw new RuntimeException("Error comparing two records.", ioex);
 		}
@@ -328,6 +338,69 @@ public final class NormalizedKeySorter<T> implements IndexedSortable
 	 * @see eu.stratosphere.pact.runtime.sort.IndexedSortable#compare(int, int)
 	 */
 	public int compare(int i, int j)
+	{
+		return compare(i, j, this.comparator, this.recordBuffer, this.recordBufferForComparison);
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.sort.IndexedSortable#swap(int, int)
+	 */
+	@Override
+	public void swap(int i, int j)
+	{
+		swap(i, j, this.swapBuffer);
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.sort.IndexedSortable#size()
+	 */
+	@Override
+	public int size()
+	{
+		return this.numRecords;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.sort.NormalizedKeySortable#getNormalizedKeyLength()
+	 */
+	@Override
+	public int getNormalizedKeyLength()
+	{
+		return this.numKeyBytes;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.sort.NormalizedKeySortable#isNormalizedKeyFullyDetermining()
+	 */
+	@Override
+	public boolean isNormalizedKeyFullyDetermining()
+	{
+		return this.normalizedKeyFullyDetermines;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.sort.NormalizedKeySortable#getNormalizedKeyByte(int, int)
+	 */
+	@Override
+	public int getNormalizedKeyByte(int i, int position)
+	{
+		final int bufferNum = i / this.indexEntriesPerSegment;
+		final int segmentOffset = (i % this.indexEntriesPerSegment) * this.indexEntrySize;
+		
+		return (this.sortIndex.get(bufferNum).get(segmentOffset + OFFSET_LEN + position) & 0xff) ^ this.normalizedKeyByteMask;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.sort.ConcurrentIndexedSortable#createConcurrentView()
+	 */
+	@Override
+	public IndexedSortable createConcurrentView()
+	{
+		return new ConcurrentView();
+	}
+
+	private final int compare(int i, int j, TypeComparator<T> comparator,
+			RandomAccessInputView buffer1, RandomAccessInputView buffer2)
 	{
 		final int bufferNumI = i / this.indexEntriesPerSegment;
 		final int segmentOffsetI = (i % this.indexEntriesPerSegment) * this.indexEntrySize;
@@ -337,12 +410,8 @@ public final class NormalizedKeySorter<T> implements IndexedSortable
 		
 		final MemorySegment segI = this.sortIndex.get(bufferNumI);
 		final MemorySegment segJ = this.sortIndex.get(bufferNumJ);
-		final byte[] bI = segI.getBackingArray();
-		final byte[] bJ = segJ.getBackingArray();
 		
-		int val = 0;
-		for (int pos = 0, posI = segI.translateOffset(segmentOffsetI + OFFSET_LEN), posJ = segJ.translateOffset(segmentOffsetJ + OFFSET_LEN);
-			pos < this.numKeyBytes && (val = (bI[posI] & 0xff) - (bJ[posJ] & 0xff)) == 0; pos++, posI++, posJ++);
+		final int val = segI.compare(segJ, segmentOffsetI + OFFSET_LEN, segmentOffsetJ + OFFSET_LEN, this.numKeyBytes);
 		
 		if (val != 0 || this.normalizedKeyFullyDetermines) {
 			return this.useNormKeyUninverted ? val : -val;
@@ -351,14 +420,10 @@ public final class NormalizedKeySorter<T> implements IndexedSortable
 		final long pointerI = segI.getLong(segmentOffsetI);
 		final long pointerJ = segJ.getLong(segmentOffsetJ);
 		
-		return compareRecords(pointerI, pointerJ);
+		return compareRecords(pointerI, pointerJ, comparator, buffer1, buffer2);
 	}
 
-	/* (non-Javadoc)
-	 * @see eu.stratosphere.pact.runtime.sort.IndexedSortable#swap(int, int)
-	 */
-	@Override
-	public void swap(int i, int j)
+	private final void swap(int i, int j, byte[] swapBuffer)
 	{
 		final int bufferNumI = i / this.indexEntriesPerSegment;
 		final int segmentOffsetI = (i % this.indexEntriesPerSegment) * this.indexEntrySize;
@@ -369,18 +434,38 @@ public final class NormalizedKeySorter<T> implements IndexedSortable
 		final MemorySegment segI = this.sortIndex.get(bufferNumI);
 		final MemorySegment segJ = this.sortIndex.get(bufferNumJ);
 		
-		segI.get(segmentOffsetI, this.swapBuffer, 0, this.indexEntrySize);
-		System.arraycopy(segJ.getBackingArray(), segJ.translateOffset(segmentOffsetJ), segI.getBackingArray(), segI.translateOffset(segmentOffsetI), this.indexEntrySize);
-		segJ.put(segmentOffsetJ, this.swapBuffer, 0, this.indexEntrySize);
+		segI.swapBytes(swapBuffer, segJ, segmentOffsetI, segmentOffsetJ, this.indexEntrySize);
 	}
 
-	/* (non-Javadoc)
-	 * @see eu.stratosphere.pact.runtime.sort.IndexedSortable#size()
+	/**
+	 * A view on the sort index that has its own swap buffer, record views and comparator, such that several
+	 * threads can sort disjoint ranges of the index at the same time.
 	 */
-	@Override
-	public int size()
+	private final class ConcurrentView implements IndexedSortable
 	{
-		return this.numRecords;
+		private final byte[] viewSwapBuffer = new byte[indexEntrySize];
+
+		private final TypeComparator<T> viewComparator = comparator.duplicate();
+
+		private final RandomAccessInputView viewRecordBuffer = new RandomAccessInputView(recordBufferSegments, segmentSize);
+
+		private final RandomAccessInputView viewRecordBufferForComparison = new RandomAccessInputView(recordBufferSegments, segmentSize);
+
+		@Override
+		public int compare(int i, int j) {
+			return NormalizedKeySorter.this.compare(i, j, this.viewComparator, this.viewRecordBuffer,
+				this.viewRecordBufferForComparison);
+		}
+
+		@Override
+		public void swap(int i, int j) {
+			NormalizedKeySorter.this.swap(i, j, this.viewSwapBuffer);
+		}
+
+		@Override
+		public int size() {
+			return numRecords;
+		}
 	}
 
 	// -------------------------------------------------------------------------
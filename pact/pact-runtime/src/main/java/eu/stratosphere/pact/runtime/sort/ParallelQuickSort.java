@@ -0,0 +1,214 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.sort;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+/**
+ * A quick sort that sorts a {@link ConcurrentIndexedSortable} with several threads. The range is partitioned as in
+ * the sequential {@link QuickSort}, but the resulting sub-ranges are put into a work queue, from which the calling
+ * thread and a number of helper threads take them. Each thread works on its own view of the sortable. Ranges below
+ * a threshold size are sorted sequentially by the thread that took them.
+ * <p>
+ * The calling thread always takes part in the sort, so the sort completes even if the executor does not run the
+ * helpers in time. The sort returns only after all helpers have stopped touching the sortable.
+ */
+public final class ParallelQuickSort implements IndexedSorter {
+
+	/**
+	 * The size below which a range is sorted sequentially by a single thread.
+	 */
+	private static final int SEQUENTIAL_THRESHOLD = 1 << 13;
+
+	private final IndexedSorter sequential = new QuickSort();
+
+	private final Executor executor;
+
+	private final int parallelism;
+
+	/**
+	 * Creates a new parallel quick sort.
+	 * 
+	 * @param executor The executor that runs the helper threads.
+	 * @param parallelism The number of threads that sort a single sortable, including the calling thread.
+	 */
+	public ParallelQuickSort(Executor executor, int parallelism) {
+		if (executor == null) {
+			throw new NullPointerException();
+		}
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("The parallelism must be at least one.");
+		}
+		this.executor = executor;
+		this.parallelism = parallelism;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.sort.IndexedSorter#sort(eu.stratosphere.pact.runtime.sort.IndexedSortable, int, int)
+	 */
+	@Override
+	public void sort(IndexedSortable s, int l, int r) {
+		if (this.parallelism == 1 || r - l <= SEQUENTIAL_THRESHOLD || !(s instanceof ConcurrentIndexedSortable)) {
+			this.sequential.sort(s, l, r);
+			return;
+		}
+
+		final SortJob job = new SortJob((ConcurrentIndexedSortable) s);
+		job.add(l, r, QuickSort.getMaxDepth(r - l));
+
+		for (int i = 1; i < this.parallelism; i++) {
+			this.executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					job.help();
+				}
+			});
+		}
+
+		job.work(s);
+		job.awaitHelpers();
+
+		if (job.error != null) {
+			throw new RuntimeException("Error in parallel sort: " + job.error.getMessage(), job.error);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.sort.IndexedSorter#sort(eu.stratosphere.pact.runtime.sort.IndexedSortable)
+	 */
+	@Override
+	public void sort(IndexedSortable s) {
+		sort(s, 0, s.size());
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/**
+	 * The state of a single parallel sort: the queue of ranges that still need to be sorted, the number of ranges
+	 * that are queued or being sorted, and the number of helpers working on the sortable.
+	 */
+	private static final class SortJob {
+
+		private final ConcurrentIndexedSortable sortable;
+
+		private final ArrayDeque<int[]> ranges = new ArrayDeque<int[]>();
+
+		private int pending;
+
+		private int activeHelpers;
+
+		private volatile Throwable error;
+
+		SortJob(ConcurrentIndexedSortable sortable) {
+			this.sortable = sortable;
+		}
+
+		synchronized void add(int p, int r, int depth) {
+			this.ranges.add(new int[] { p, r, depth });
+			this.pending++;
+			notify();
+		}
+
+		private synchronized int[] take() throws InterruptedException {
+			while (this.ranges.isEmpty() && this.pending > 0 && this.error == null) {
+				wait();
+			}
+			return this.error == null ? this.ranges.poll() : null;
+		}
+
+		private synchronized void done() {
+			if (--this.pending == 0) {
+				notifyAll();
+			}
+		}
+
+		private synchronized void fail(Throwable t) {
+			if (this.error == null) {
+				this.error = t;
+			}
+			notifyAll();
+		}
+
+		void help() {
+			synchronized (this) {
+				if (this.pending == 0 || this.error != null) {
+					return;
+				}
+				this.activeHelpers++;
+			}
+			try {
+				work(this.sortable.createConcurrentView());
+			} catch (Throwable t) {
+				fail(t);
+			} finally {
+				synchronized (this) {
+					this.activeHelpers--;
+					notifyAll();
+				}
+			}
+		}
+
+		void work(IndexedSortable view) {
+			try {
+				int[] range;
+				while ((range = take()) != null) {
+					try {
+						sortRange(view, range[0], range[1], range[2]);
+					} catch (Throwable t) {
+						fail(t);
+					}
+					done();
+				}
+			} catch (InterruptedException iex) {
+				fail(iex);
+			}
+		}
+
+		synchronized void awaitHelpers() {
+			while (this.activeHelpers > 0) {
+				try {
+					wait();
+				} catch (InterruptedException iex) {
+					fail(iex);
+				}
+			}
+		}
+
+		private void sortRange(IndexedSortable view, int p, int r, int depth) {
+			while (r - p > SEQUENTIAL_THRESHOLD) {
+				if (--depth < 0) {
+					new HeapSort().sort(view, p, r);
+					return;
+				}
+
+				final long bounds = QuickSort.partition(view, p, r);
+				final int i = (int) (bounds >>> 32);
+				final int j = (int) bounds;
+
+				// hand the larger part to the other threads and continue with the smaller one
+				if (i - p < r - j) {
+					add(j, r, depth);
+					r = i;
+				} else {
+					add(p, i, depth);
+					p = j;
+				}
+			}
+			QuickSort.sortInternal(view, p, r, depth);
+		}
+	}
+}
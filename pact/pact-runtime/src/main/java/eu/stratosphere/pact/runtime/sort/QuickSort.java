@@ -51,7 +51,7 @@ public final class QuickSort implements IndexedSorter {
 		sort(s, 0, s.size());
 	}
 
-	private static void sortInternal(final IndexedSortable s, int p, int r, int depth) {
+	static void sortInternal(final IndexedSortable s, int p, int r, int depth) {
 		while (true) {
 			if (r - p < 13) {
 				for (int i = p; i < r; ++i) {
@@ -67,45 +67,9 @@ public final class QuickSort implements IndexedSorter {
 				return;
 			}
 
-			// select, move pivot into first position
-			fix(s, (p + r) >>> 1, p);
-			fix(s, (p + r) >>> 1, r - 1);
-			fix(s, p, r - 1);
-
-			// Divide
-			int i = p;
-			int j = r;
-			int ll = p;
-			int rr = r;
-			int cr;
-			while (true) {
-				while (++i < j) {
-					if ((cr = s.compare(i, p)) > 0)
-						break;
-					if (0 == cr && ++ll != i) {
-						s.swap(ll, i);
-					}
-				}
-				while (--j > i) {
-					if ((cr = s.compare(p, j)) > 0)
-						break;
-					if (0 == cr && --rr != j) {
-						s.swap(rr, j);
-					}
-				}
-				if (i < j)
-					s.swap(i, j);
-				else
-					break;
-			}
-			j = i;
-			// swap pivot- and all eq values- into position
-			while (ll >= p) {
-				s.swap(ll--, --i);
-			}
-			while (rr < r) {
-				s.swap(rr++, j++);
-			}
+			final long bounds = partition(s, p, r);
+			final int i = (int) (bounds >>> 32);
+			final int j = (int) bounds;
 
 			// Conquer
 			// Recurse on smaller interval first to keep stack shallow
@@ -120,4 +84,54 @@ public final class QuickSort implements IndexedSorter {
 		}
 	}
 
+	/**
+	 * Partitions the given range around a median-of-three pivot. After the call, all items in
+	 * <code>[p, i)</code> are smaller than the pivot, all items in <code>[i, j)</code> are equal to
+	 * the pivot, and all items in <code>[j, r)</code> are larger than the pivot.
+	 * 
+	 * @return The bounds <code>i</code> and <code>j</code>, packed into the upper and lower half of a long.
+	 */
+	static long partition(final IndexedSortable s, final int p, final int r) {
+		// select, move pivot into first position
+		fix(s, (p + r) >>> 1, p);
+		fix(s, (p + r) >>> 1, r - 1);
+		fix(s, p, r - 1);
+
+		// Divide
+		int i = p;
+		int j = r;
+		int ll = p;
+		int rr = r;
+		int cr;
+		while (true) {
+			while (++i < j) {
+				if ((cr = s.compare(i, p)) > 0)
+					break;
+				if (0 == cr && ++ll != i) {
+					s.swap(ll, i);
+				}
+			}
+			while (--j > i) {
+				if ((cr = s.compare(p, j)) > 0)
+					break;
+				if (0 == cr && --rr != j) {
+					s.swap(rr, j);
+				}
+			}
+			if (i < j)
+				s.swap(i, j);
+			else
+				break;
+		}
+		j = i;
+		// swap pivot- and all eq values- into position
+		while (ll >= p) {
+			s.swap(ll--, --i);
+		}
+		while (rr < r) {
+			s.swap(rr++, j++);
+		}
+		return (((long) i) << 32) | (j & 0xffffffffL);
+	}
+
 }
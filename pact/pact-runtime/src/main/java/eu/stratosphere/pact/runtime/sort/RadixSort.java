@@ -0,0 +1,139 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.sort;
+
+/**
+ * An in-place MSD radix sort (American flag sort) over the normalized key bytes of a {@link NormalizedKeySortable}.
+ * Each pass distributes a range into 256 buckets by one key byte, using only swaps, and then processes the buckets
+ * by the next byte. Small buckets are finished with the comparison based {@link QuickSort}, as are buckets whose
+ * normalized keys are all equal, if the normalized keys do not fully determine the order.
+ * <p>
+ * Sortables that do not provide normalized keys are sorted with the {@link QuickSort}.
+ */
+public final class RadixSort implements IndexedSorter {
+
+	/**
+	 * The size below which a range is sorted by comparison instead of being distributed.
+	 */
+	private static final int COMPARISON_SORT_THRESHOLD = 64;
+
+	private static final int NUM_BUCKETS = 256;
+
+	private final IndexedSorter fallback = new QuickSort();
+
+	/**
+	 * Checks whether a radix sort is preferable to a comparison based sort for the given sortable. That is the case
+	 * if the sortable provides normalized keys that fully determine the order of its items.
+	 * 
+	 * @param s The sortable to check.
+	 * @return True, if the sortable should be sorted with a radix sort, false otherwise.
+	 */
+	public static boolean isApplicable(IndexedSortable s) {
+		if (s instanceof NormalizedKeySortable) {
+			final NormalizedKeySortable nks = (NormalizedKeySortable) s;
+			return nks.getNormalizedKeyLength() > 0 && nks.isNormalizedKeyFullyDetermining();
+		}
+		return false;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.sort.IndexedSorter#sort(eu.stratosphere.pact.runtime.sort.IndexedSortable, int, int)
+	 */
+	@Override
+	public void sort(IndexedSortable s, int l, int r) {
+		if (!(s instanceof NormalizedKeySortable) || ((NormalizedKeySortable) s).getNormalizedKeyLength() == 0) {
+			this.fallback.sort(s, l, r);
+			return;
+		}
+
+		final NormalizedKeySortable nks = (NormalizedKeySortable) s;
+		final int keyLength = nks.getNormalizedKeyLength();
+		sortInternal(nks, l, r, 0, keyLength, nks.isNormalizedKeyFullyDetermining(),
+			new int[keyLength][NUM_BUCKETS + 1], new int[NUM_BUCKETS]);
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.sort.IndexedSorter#sort(eu.stratosphere.pact.runtime.sort.IndexedSortable)
+	 */
+	@Override
+	public void sort(IndexedSortable s) {
+		sort(s, 0, s.size());
+	}
+
+	private static void sortInternal(NormalizedKeySortable s, int p, int r, int position, int keyLength,
+			boolean fullyDetermining, int[][] bucketBounds, int[] next)
+	{
+		while (true) {
+			if (position == keyLength) {
+				// all normalized keys in the range are equal
+				if (!fullyDetermining && r - p > 1) {
+					QuickSort.sortInternal(s, p, r, QuickSort.getMaxDepth(r - p));
+				}
+				return;
+			}
+			if (r - p < COMPARISON_SORT_THRESHOLD) {
+				if (r - p > 1) {
+					QuickSort.sortInternal(s, p, r, QuickSort.getMaxDepth(r - p));
+				}
+				return;
+			}
+
+			// histogram of the key bytes at the current position
+			final int[] bounds = bucketBounds[position];
+			for (int b = 0; b <= NUM_BUCKETS; b++) {
+				bounds[b] = 0;
+			}
+			for (int i = p; i < r; i++) {
+				bounds[s.getNormalizedKeyByte(i, position) + 1]++;
+			}
+
+			// skip the distribution if all items fall into the same bucket
+			if (bounds[s.getNormalizedKeyByte(p, position) + 1] == r - p) {
+				position++;
+				continue;
+			}
+
+			// turn the counts into bucket start offsets
+			bounds[0] = p;
+			for (int b = 1; b <= NUM_BUCKETS; b++) {
+				bounds[b] += bounds[b - 1];
+			}
+
+			// distribute the items by cycling them into their buckets
+			System.arraycopy(bounds, 0, next, 0, NUM_BUCKETS);
+			for (int b = 0; b < NUM_BUCKETS; b++) {
+				final int end = bounds[b + 1];
+				while (next[b] < end) {
+					final int v = s.getNormalizedKeyByte(next[b], position);
+					if (v == b) {
+						next[b]++;
+					} else {
+						s.swap(next[b], next[v]++);
+					}
+				}
+			}
+
+			// sort the buckets by the next key byte
+			for (int b = 0; b < NUM_BUCKETS; b++) {
+				if (bounds[b + 1] - bounds[b] > 1) {
+					sortInternal(s, bounds[b], bounds[b + 1], position + 1, keyLength, fullyDetermining,
+						bucketBounds, next);
+				}
+			}
+			return;
+		}
+	}
+}
@@ -25,7 +25,14 @@ import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -55,6 +62,10 @@ import eu.stratosphere.pact.runtime.util.MathUtils;
  * the logic is factored into three threads (read, sort, spill) which communicate through a set of blocking queues,
  * forming a closed loop.  Memory is allocated using the {@link MemoryManager} interface. Thus the component will
  * not exceed the provided memory limits.
+ * <p>
+ * With a sort parallelism larger than one, the sort stage uses a pool of threads: several buffers are sorted
+ * concurrently, and each buffer is itself sorted by several threads using a {@link ParallelQuickSort}. Buffers whose
+ * normalized keys fully determine the order are instead sorted with a {@link RadixSort} by a single thread each.
  * 
  * @author Stephan Ewen
  * @author Erik Nijkamp
@@ -124,6 +135,11 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 	 */
 	protected final MemoryManager memoryManager;
 	
+	/**
+	 * The number of threads that sort the buffers.
+	 */
+	protected final int sortParallelism;
+	
 	// ------------------------------------------------------------------------
 	//                            Miscellaneous Fields
 	// ------------------------------------------------------------------------
@@ -222,7 +238,40 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 	throws IOException, MemoryAllocationException
 	{
 		this(memoryManager, ioManager, input, parentTask, serializer, comparator,
-			totalMemory, numSortBuffers, maxNumFileHandles, startSpillingFraction, false);
+			totalMemory, numSortBuffers, maxNumFileHandles, startSpillingFraction, 1, false);
+	}
+	
+	/**
+	 * Creates a new sorter that reads the data from a given reader and provides an iterator returning that
+	 * data in a sorted manner. The memory is divided among sort buffers, write buffers and read buffers
+	 * automatically.
+	 * 
+	 * @param memoryManager The memory manager from which to allocate the memory.
+	 * @param ioManager The I/O manager, which is used to write temporary files to disk.
+	 * @param input The input that is sorted by this sorter.
+	 * @param parentTask The parent task, which owns all resources used by this sorter.
+	 * @param serializer The type serializer.
+	 * @param comparator The type comparator establishing the order relation.
+	 * @param totalMemory The total amount of memory dedicated to sorting, merging and I/O.
+	 * @param numSortBuffers The number of distinct buffers to use creation of the initial runs.
+	 * @param maxNumFileHandles The maximum number of files to be merged at once.
+	 * @param startSpillingFraction The faction of the buffers that have to be filled before the spilling thread
+	 *                              actually begins spilling data to disk.
+	 * @param sortParallelism The number of threads that sort the buffers.
+	 * 
+	 * @throws IOException Thrown, if an error occurs initializing the resources for external sorting.
+	 * @throws MemoryAllocationException Thrown, if not enough memory can be obtained from the memory manager to
+	 *                                   perform the sort.
+	 */
+	public UnilateralSortMerger(MemoryManager memoryManager, IOManager ioManager,
+			MutableObjectIterator<E> input, AbstractInvokable parentTask, 
+			TypeSerializer<E> serializer, TypeComparator<E> comparator,
+			long totalMemory, int numSortBuffers, int maxNumFileHandles, 
+			float startSpillingFraction, int sortParallelism)
+	throws IOException, MemoryAllocationException
+	{
+		this(memoryManager, ioManager, input, parentTask, serializer, comparator,
+			totalMemory, numSortBuffers, maxNumFileHandles, startSpillingFraction, sortParallelism, false);
 	}
 	
 	/**
@@ -252,6 +301,39 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 			long totalMemory, int numSortBuffers, int maxNumFileHandles, 
 			float startSpillingFraction, boolean noSpillingMemory)
 	throws IOException, MemoryAllocationException
+	{
+		this(memoryManager, ioManager, input, parentTask, serializer, comparator,
+			totalMemory, numSortBuffers, maxNumFileHandles, startSpillingFraction, 1, noSpillingMemory);
+	}
+	
+	/**
+	 * Internal constructor and constructor for subclasses that want to circumvent the spilling.
+	 * 
+	 * @param memoryManager The memory manager from which to allocate the memory.
+	 * @param ioManager The I/O manager, which is used to write temporary files to disk.
+	 * @param input The input that is sorted by this sorter.
+	 * @param parentTask The parent task, which owns all resources used by this sorter.
+	 * @param serializer The type serializer.
+	 * @param comparator The type comparator establishing the order relation.
+	 * @param totalMemory The total amount of memory dedicated to sorting, merging and I/O.
+	 * @param numSortBuffers The number of distinct buffers to use creation of the initial runs.
+	 * @param maxNumFileHandles The maximum number of files to be merged at once.
+	 * @param startSpillingFraction The faction of the buffers that have to be filled before the spilling thread
+	 *                              actually begins spilling data to disk.
+	 * @param sortParallelism The number of threads that sort the buffers.
+	 * @param noSpilling When set to true, no memory will be allocated for writing and no spilling thread
+	 *                   will be spawned.
+	 * 
+	 * @throws IOException Thrown, if an error occurs initializing the resources for external sorting.
+	 * @throws MemoryAllocationException Thrown, if not enough memory can be obtained from the memory manager to
+	 *                                   perform the sort.
+	 */
+	protected UnilateralSortMerger(MemoryManager memoryManager, IOManager ioManager,
+			MutableObjectIterator<E> input, AbstractInvokable parentTask, 
+			TypeSerializer<E> serializer, TypeComparator<E> comparator,
+			long totalMemory, int numSortBuffers, int maxNumFileHandles, 
+			float startSpillingFraction, int sortParallelism, boolean noSpillingMemory)
+	throws IOException, MemoryAllocationException
 	{
 		// sanity checks
 		if (memoryManager == null | (ioManager == null && !noSpillingMemory) | serializer == null | comparator == null) {
@@ -263,8 +345,12 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 		if (maxNumFileHandles < 2) {
 			throw new IllegalArgumentException("Merger cannot work with less than two file handles.");
 		}
+		if (sortParallelism < 1) {
+			throw new IllegalArgumentException("The sort parallelism must be at least one.");
+		}
 		
 		this.memoryManager = memoryManager;
+		this.sortParallelism = sortParallelism;
 		
 		// adjust the memory quotas to the page size
 		totalMemory = memoryManager.roundDownToPageSizeMultiple(totalMemory);
@@ -569,7 +655,8 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 
 	/**
 	 * Creates the sorting thread. This thread takes the buffers from the sort queue, sorts them and
-	 * puts them into the spill queue.
+	 * puts them into the spill queue. If the sort parallelism is larger than one, the thread hands the
+	 * buffers to a pool of sorting threads and puts them into the spill queue in their original order.
 	 * <p>
 	 * The returned thread is not yet started.
 	 * 
@@ -584,7 +671,7 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 	protected ThreadBase<E> getSortingThread(ExceptionHandler<IOException> exceptionHandler, CircularQueues<E> queues,
 			AbstractInvokable parentTask)
 	{
-		return new SortingThread<E>(exceptionHandler, queues, parentTask);
+		return new SortingThread<E>(exceptionHandler, queues, parentTask, this.sortParallelism);
 	}
 
 	/**
@@ -1093,8 +1180,17 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 	 * The thread that sorts filled buffers.
 	 */
 	protected static class SortingThread<E> extends ThreadBase<E>
-	{		
+	{
+		/**
+		 * The interval in which the thread checks for finished buffers, if it sorts buffers concurrently.
+		 */
+		private static final long FINISHED_BUFFERS_POLL_INTERVAL = 10;
+		
 		private final IndexedSorter sorter;
+		
+		private final IndexedSorter radixSorter;
+		
+		private final ExecutorService sortExecutor;
 
 		/**
 		 * Creates a new sorting thread.
@@ -1105,17 +1201,68 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 		 */
 		public SortingThread(ExceptionHandler<IOException> exceptionHandler, CircularQueues<E> queues,
 				AbstractInvokable parentTask) {
+			this(exceptionHandler, queues, parentTask, 1);
+		}
+		
+		/**
+		 * Creates a new sorting thread that sorts the buffers with the given number of threads.
+		 * 
+		 * @param exceptionHandler The exception handler to call for all exceptions.
+		 * @param queues The queues used to pass buffers between the threads.
+		 * @param parentTask The task that started this thread. If non-null, it is used to register this thread.
+		 * @param parallelism The number of threads that sort the buffers.
+		 */
+		public SortingThread(ExceptionHandler<IOException> exceptionHandler, CircularQueues<E> queues,
+				AbstractInvokable parentTask, int parallelism) {
 			super(exceptionHandler, "SortMerger sorting thread", queues, parentTask);
 
 			// members
-			this.sorter = new QuickSort();
+			if (parallelism > 1) {
+				this.sortExecutor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						final Thread t = new Thread(r, "SortMerger sorting pool thread");
+						t.setDaemon(true);
+						return t;
+					}
+				});
+				this.sorter = new ParallelQuickSort(this.sortExecutor, parallelism);
+			} else {
+				this.sortExecutor = null;
+				this.sorter = new QuickSort();
+			}
+			this.radixSorter = new RadixSort();
+		}
+		
+		/**
+		 * Sorts the given buffer. Buffers whose normalized keys fully determine the order are radix sorted,
+		 * all other buffers are sorted by comparison.
+		 * 
+		 * @param buffer The buffer to sort.
+		 */
+		private void sortBuffer(NormalizedKeySorter<E> buffer)
+		{
+			if (RadixSort.isApplicable(buffer)) {
+				this.radixSorter.sort(buffer);
+			} else {
+				this.sorter.sort(buffer);
+			}
 		}
 
 		/**
 		 * Entry point of the thread.
 		 */
 		public void go() throws IOException
-		{			
+		{
+			if (this.sortExecutor != null) {
+				try {
+					goConcurrent();
+				} finally {
+					this.sortExecutor.shutdownNow();
+				}
+				return;
+			}
+			
 			boolean alive = true;
 
 			// loop as long as the thread is marked alive
@@ -1141,7 +1288,7 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 					if (LOG.isDebugEnabled())
 						LOG.debug("Sorting buffer " + element.id + ".");
 					
-					this.sorter.sort(element.buffer);
+					sortBuffer(element.buffer);
 					
 					if (LOG.isDebugEnabled())
 						LOG.debug("Sorted buffer " + element.id + ".");
@@ -1154,6 +1301,84 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 				this.queues.spill.add(element);
 			}
 		}
+		
+		/**
+		 * Hands the buffers to the sorting pool, such that multiple buffers are sorted at the same time. The sorted
+		 * buffers and the markers are put into the spill queue in the order in which they were taken from the sort
+		 * queue.
+		 * 
+		 * @throws IOException Thrown, if the sorting of a buffer failed.
+		 */
+		private void goConcurrent() throws IOException
+		{
+			final ArrayDeque<Future<CircularElement<E>>> sorting = new ArrayDeque<Future<CircularElement<E>>>();
+			CircularElement<E> marker = null;
+			boolean alive = true;
+
+			// loop as long as the thread is marked alive
+			while (isRunning() && alive) {
+				try {
+					if (marker == null) {
+						// pass on the buffers whose sorting is complete
+						while (!sorting.isEmpty() && sorting.peek().isDone()) {
+							this.queues.spill.add(sorting.poll().get());
+						}
+						
+						final CircularElement<E> element = sorting.isEmpty() ? this.queues.sort.take() : 
+							this.queues.sort.poll(FINISHED_BUFFERS_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+						if (element == null) {
+							continue;
+						}
+						
+						if (element != EOF_MARKER && element != SPILLING_MARKER) {
+							if (LOG.isDebugEnabled())
+								LOG.debug("Sorting buffer " + element.id + ".");
+							
+							sorting.add(this.sortExecutor.submit(new Callable<CircularElement<E>>() {
+								@Override
+								public CircularElement<E> call() {
+									sortBuffer(element.buffer);
+									if (LOG.isDebugEnabled())
+										LOG.debug("Sorted buffer " + element.id + ".");
+									return element;
+								}
+							}));
+							continue;
+						}
+						marker = element;
+					}
+					
+					// markers must stay behind all buffers taken before them
+					while (!sorting.isEmpty()) {
+						this.queues.spill.add(sorting.peek().get());
+						sorting.poll();
+					}
+				}
+				catch (InterruptedException iex) {
+					if (isRunning()) {
+						if (LOG.isErrorEnabled())
+							LOG.error(
+								"Sorting thread was interrupted (without being shut down) while grabbing a buffer. " +
+								"Retrying to grab buffer...");
+						continue;
+					}
+					else {
+						return;
+					}
+				}
+				catch (ExecutionException eex) {
+					throw new IOException("Sorting of a buffer failed: " + eex.getCause().getMessage(), eex.getCause());
+				}
+				
+				if (marker == EOF_MARKER) {
+					if (LOG.isDebugEnabled())
+						LOG.debug("Sorting thread done.");
+					alive = false;
+				}
+				this.queues.spill.add(marker);
+				marker = null;
+			}
+		}
 	}
 
 	/**
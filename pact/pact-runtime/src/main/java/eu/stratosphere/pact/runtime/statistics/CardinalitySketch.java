@@ -0,0 +1,152 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.pact.runtime.statistics;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A sketch that estimates the number of distinct values in a stream of hash codes, following the HyperLogLog
+ * algorithm. The sketch uses 4096 registers of one byte each and has a typical relative error of about 1.6%. Two
+ * sketches can be merged, such that the sketches of the parallel instances of a task yield the estimate for the
+ * complete output.
+ * <p>
+ * The hash codes are mixed before use, so plain hash codes of keys, which are often not well distributed, may be
+ * added directly.
+ * <p>
+ * This class is not thread-safe.
+ */
+public final class CardinalitySketch
+{
+	/**
+	 * The number of hash bits used to select a register.
+	 */
+	private static final int INDEX_BITS = 12;
+
+	/**
+	 * The number of registers.
+	 */
+	private static final int NUM_REGISTERS = 1 << INDEX_BITS;
+
+	/**
+	 * The bias correction constant for the number of registers.
+	 */
+	private static final double ALPHA = 0.7213 / (1.0 + 1.079 / NUM_REGISTERS);
+
+	/**
+	 * The estimate above which hash collisions in the 32 bit hash space must be corrected.
+	 */
+	private static final double LARGE_RANGE_THRESHOLD = (1L << 32) / 30.0;
+
+	/**
+	 * The registers, each holding the maximal position of the first set bit observed for its hashes.
+	 */
+	private final byte[] registers = new byte[NUM_REGISTERS];
+
+	/**
+	 * Adds the given hash code to the sketch.
+	 * 
+	 * @param hashCode The hash code of the value to add.
+	 */
+	public void add(int hashCode)
+	{
+		// murmur3 finalization mix
+		int h = hashCode;
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+
+		final int index = h >>> (32 - INDEX_BITS);
+		final int rank = Integer.numberOfLeadingZeros((h << INDEX_BITS) | (1 << (INDEX_BITS - 1))) + 1;
+		if (rank > this.registers[index]) {
+			this.registers[index] = (byte) rank;
+		}
+	}
+
+	/**
+	 * Merges the given sketch into this sketch. Afterwards, this sketch estimates the number of distinct values added
+	 * to either of the two sketches.
+	 * 
+	 * @param other The sketch to merge into this sketch.
+	 */
+	public void merge(CardinalitySketch other)
+	{
+		final byte[] ours = this.registers;
+		final byte[] theirs = other.registers;
+		for (int i = 0; i < NUM_REGISTERS; i++) {
+			if (theirs[i] > ours[i]) {
+				ours[i] = theirs[i];
+			}
+		}
+	}
+
+	/**
+	 * Gets the estimated number of distinct values added to this sketch.
+	 * 
+	 * @return The estimated number of distinct values.
+	 */
+	public long estimate()
+	{
+		double sum = 0.0;
+		int numEmpty = 0;
+		for (int i = 0; i < NUM_REGISTERS; i++) {
+			final int r = this.registers[i];
+			sum += 1.0 / (1L << r);
+			if (r == 0) {
+				numEmpty++;
+			}
+		}
+
+		double estimate = ALPHA * NUM_REGISTERS * NUM_REGISTERS / sum;
+
+		if (estimate <= 2.5 * NUM_REGISTERS) {
+			// small range correction: count the empty registers instead
+			if (numEmpty > 0) {
+				estimate = NUM_REGISTERS * Math.log(NUM_REGISTERS / (double) numEmpty);
+			}
+		} else if (estimate > LARGE_RANGE_THRESHOLD) {
+			estimate = -(1L << 32) * Math.log(1.0 - estimate / (1L << 32));
+		}
+
+		return Math.round(estimate);
+	}
+
+	/**
+	 * Writes the state of this sketch to the given output.
+	 * 
+	 * @param out The output to write to.
+	 * @throws IOException Thrown, if the output could not be written.
+	 */
+	public void write(DataOutput out) throws IOException
+	{
+		out.write(this.registers);
+	}
+
+	/**
+	 * Reads the state of this sketch from the given input, replacing the current state.
+	 * 
+	 * @param in The input to read from.
+	 * @throws IOException Thrown, if the input could not be read.
+	 */
+	public void read(DataInput in) throws IOException
+	{
+		in.readFully(this.registers);
+	}
+}
@@ -0,0 +1,210 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.pact.runtime.statistics;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import eu.stratosphere.pact.common.util.FieldSet;
+
+/**
+ * The statistics observed for the output of an operator during the execution of a job: the number of records, their
+ * number of bytes and, for some sets of fields, a sketch of the number of distinct values. Operators that adapt their
+ * local strategy at runtime additionally record the strategy that was actually executed. The statistics of the
+ * parallel instances of an operator are merged into the statistics of the complete output.
+ * <p>
+ * This class is not thread-safe.
+ */
+public final class OperatorStatistics
+{
+	/**
+	 * The version of the binary format written by {@link #write(DataOutput)}.
+	 */
+	private static final int FORMAT_VERSION = 2;
+
+	private final Map<FieldSet, CardinalitySketch> sketches = new LinkedHashMap<FieldSet, CardinalitySketch>();
+
+	private final Map<String, Integer> localStrategies = new LinkedHashMap<String, Integer>();
+
+	long numRecords;
+
+	long numBytes;
+
+	// --------------------------------------------------------------------------------------------
+
+	/**
+	 * Gets the number of records of the observed output.
+	 * 
+	 * @return The number of records.
+	 */
+	public long getNumRecords() {
+		return this.numRecords;
+	}
+
+	/**
+	 * Gets the number of bytes of the observed output, measured as the length of the serialized records.
+	 * 
+	 * @return The number of bytes.
+	 */
+	public long getNumBytes() {
+		return this.numBytes;
+	}
+
+	/**
+	 * Gets the estimated number of distinct values for each set of fields that was observed.
+	 * 
+	 * @return A map from the field sets to their estimated number of distinct values.
+	 */
+	public Map<FieldSet, Long> getDistinctCounts()
+	{
+		final Map<FieldSet, Long> counts = new HashMap<FieldSet, Long>();
+		for (Entry<FieldSet, CardinalitySketch> entry : this.sketches.entrySet()) {
+			counts.put(entry.getKey(), Math.min(entry.getValue().estimate(), this.numRecords));
+		}
+		return counts;
+	}
+
+	/**
+	 * Gets the local strategies that were actually executed, together with the number of parallel instances that
+	 * executed them.
+	 * 
+	 * @return A map from the names of the executed local strategies to the number of instances.
+	 */
+	public Map<String, Integer> getLocalStrategies() {
+		return new HashMap<String, Integer>(this.localStrategies);
+	}
+
+	/**
+	 * Records that this instance of the operator executed the given local strategy.
+	 * 
+	 * @param strategy The name of the executed local strategy.
+	 */
+	public void recordLocalStrategy(String strategy) {
+		addLocalStrategy(strategy, 1);
+	}
+
+	private void addLocalStrategy(String strategy, int numInstances)
+	{
+		final Integer count = this.localStrategies.get(strategy);
+		this.localStrategies.put(strategy, count == null ? numInstances : count.intValue() + numInstances);
+	}
+
+	/**
+	 * Gets the sketch for the given set of fields, creating it if it does not exist yet.
+	 * 
+	 * @param fields The set of fields.
+	 * @return The sketch for the set of fields.
+	 */
+	CardinalitySketch getSketch(FieldSet fields)
+	{
+		CardinalitySketch sketch = this.sketches.get(fields);
+		if (sketch == null) {
+			sketch = new CardinalitySketch();
+			this.sketches.put(fields, sketch);
+		}
+		return sketch;
+	}
+
+	/**
+	 * Adds the given statistics of another parallel instance of the same operator to these statistics.
+	 * 
+	 * @param other The statistics to add.
+	 */
+	public void merge(OperatorStatistics other)
+	{
+		this.numRecords += other.numRecords;
+		this.numBytes += other.numBytes;
+		for (Entry<FieldSet, CardinalitySketch> entry : other.sketches.entrySet()) {
+			getSketch(entry.getKey()).merge(entry.getValue());
+		}
+		for (Entry<String, Integer> entry : other.localStrategies.entrySet()) {
+			addLocalStrategy(entry.getKey(), entry.getValue().intValue());
+		}
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/**
+	 * Writes these statistics to the given output.
+	 * 
+	 * @param out The output to write to.
+	 * @throws IOException Thrown, if the output could not be written.
+	 */
+	public void write(DataOutput out) throws IOException
+	{
+		out.writeInt(FORMAT_VERSION);
+		out.writeLong(this.numRecords);
+		out.writeLong(this.numBytes);
+		out.writeInt(this.sketches.size());
+		for (Entry<FieldSet, CardinalitySketch> entry : this.sketches.entrySet()) {
+			final FieldSet fields = entry.getKey();
+			out.writeInt(fields.size());
+			for (Integer field : fields) {
+				out.writeInt(field.intValue());
+			}
+			entry.getValue().write(out);
+		}
+		out.writeInt(this.localStrategies.size());
+		for (Entry<String, Integer> entry : this.localStrategies.entrySet()) {
+			out.writeUTF(entry.getKey());
+			out.writeInt(entry.getValue().intValue());
+		}
+	}
+
+	/**
+	 * Reads statistics from the given input and adds them to these statistics. Statistics written in the previous
+	 * version of the format, which carries no local strategies, are accepted as well.
+	 * 
+	 * @param in The input to read from.
+	 * @throws IOException Thrown, if the input could not be read or is not in the expected format.
+	 */
+	public void read(DataInput in) throws IOException
+	{
+		final OperatorStatistics read = new OperatorStatistics();
+
+		final int version = in.readInt();
+		if (version != FORMAT_VERSION && version != 1) {
+			throw new IOException("Unsupported version of the statistics format: " + version);
+		}
+		read.numRecords = in.readLong();
+		read.numBytes = in.readLong();
+		final int numSketches = in.readInt();
+		for (int i = 0; i < numSketches; i++) {
+			final FieldSet fields = new FieldSet();
+			final int numFields = in.readInt();
+			for (int k = 0; k < numFields; k++) {
+				fields.add(in.readInt());
+			}
+			final CardinalitySketch sketch = new CardinalitySketch();
+			sketch.read(in);
+			read.sketches.put(fields, sketch);
+		}
+		if (version > 1) {
+			final int numStrategies = in.readInt();
+			for (int i = 0; i < numStrategies; i++) {
+				read.localStrategies.put(in.readUTF(), in.readInt());
+			}
+		}
+
+		merge(read);
+	}
+}
@@ -0,0 +1,234 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.pact.runtime.statistics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.nephele.fs.FileStatus;
+import eu.stratosphere.nephele.fs.FileSystem;
+import eu.stratosphere.nephele.fs.Path;
+
+/**
+ * The store persists the statistics that the parallel instances of an operator observe during a job, such that the
+ * compiler can use them as estimates when it compiles a job with the same operator again. The store is a directory on
+ * any file system supported by Nephele. It contains a sub-directory for each operator signature, in which each
+ * parallel instance writes one file per run, named after the run, the index of the instance and the number of
+ * instances.
+ * <p>
+ * When the statistics of an operator are read, the files of the latest run for which all instances wrote their
+ * statistics are merged. Files of older runs are removed at that point.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class RuntimeStatisticsStore
+{
+	private static final Log LOG = LogFactory.getLog(RuntimeStatisticsStore.class);
+
+	private static final char NAME_SEPARATOR = '_';
+
+	private static final String TEMP_FILE_PREFIX = ".";
+
+	private final Path directory;
+
+	/**
+	 * Creates a store that keeps its files in the given directory.
+	 * 
+	 * @param directory The path of the directory.
+	 */
+	public RuntimeStatisticsStore(String directory)
+	{
+		if (directory == null) {
+			throw new NullPointerException("The directory must not be null.");
+		}
+		this.directory = new Path(directory);
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/**
+	 * Writes the statistics observed by one parallel instance of an operator. The file becomes visible to readers
+	 * only once it has been written completely.
+	 * 
+	 * @param signature The signature of the operator.
+	 * @param runId The identifier of the run, typically the job ID.
+	 * @param instance The index of the parallel instance.
+	 * @param numInstances The number of parallel instances.
+	 * @param statistics The observed statistics.
+	 * @throws IOException Thrown, if the statistics could not be written.
+	 */
+	public void write(String signature, String runId, int instance, int numInstances, OperatorStatistics statistics)
+	throws IOException
+	{
+		final Path operatorDir = new Path(this.directory, signature);
+		final FileSystem fs = operatorDir.getFileSystem();
+		fs.mkdirs(operatorDir);
+
+		final String name = runId + NAME_SEPARATOR + instance + NAME_SEPARATOR + numInstances;
+		final Path tempFile = new Path(operatorDir, TEMP_FILE_PREFIX + name);
+
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fs.create(tempFile, true)));
+		try {
+			statistics.write(out);
+		} finally {
+			out.close();
+		}
+
+		if (!fs.rename(tempFile, new Path(operatorDir, name))) {
+			fs.delete(tempFile, false);
+			throw new IOException("Could not move the statistics file '" + name + "' into place.");
+		}
+	}
+
+	/**
+	 * Gets the time at which the statistics of the operator with the given signature were last changed, i.e.
+	 * the modification time of the operator's directory. Callers may cache the statistics read from the store
+	 * as long as this time does not change.
+	 * 
+	 * @param signature The signature of the operator.
+	 * @return The modification time, or <code>-1</code>, if no statistics were written for the operator.
+	 * @throws IOException Thrown, if the store could not be accessed.
+	 */
+	public long getModificationTime(String signature) throws IOException
+	{
+		final Path operatorDir = new Path(this.directory, signature);
+		final FileSystem fs = operatorDir.getFileSystem();
+		return fs.exists(operatorDir) ? fs.getFileStatus(operatorDir).getModificationTime() : -1;
+	}
+
+	/**
+	 * Reads the statistics of the latest complete run of the operator with the given signature.
+	 * 
+	 * @param signature The signature of the operator.
+	 * @return The merged statistics of all parallel instances, or <code>null</code>, if no complete run exists.
+	 * @throws IOException Thrown, if the store could not be accessed.
+	 */
+	public OperatorStatistics read(String signature) throws IOException
+	{
+		final Path operatorDir = new Path(this.directory, signature);
+		final FileSystem fs = operatorDir.getFileSystem();
+		if (!fs.exists(operatorDir)) {
+			return null;
+		}
+
+		// group the files by run
+		final Map<String, Run> runs = new HashMap<String, Run>();
+		final FileStatus[] files = fs.listStatus(operatorDir);
+		if (files == null) {
+			return null;
+		}
+		for (FileStatus file : files) {
+			final String name = file.getPath().getName();
+			if (file.isDir() || name.startsWith(TEMP_FILE_PREFIX)) {
+				continue;
+			}
+
+			final int second = name.lastIndexOf(NAME_SEPARATOR);
+			final int first = second > 0 ? name.lastIndexOf(NAME_SEPARATOR, second - 1) : -1;
+			if (first <= 0) {
+				continue;
+			}
+
+			final int instance, numInstances;
+			try {
+				instance = Integer.parseInt(name.substring(first + 1, second));
+				numInstances = Integer.parseInt(name.substring(second + 1));
+			} catch (NumberFormatException nfex) {
+				continue;
+			}
+			if (instance < 0 || instance >= numInstances) {
+				continue;
+			}
+
+			final String runId = name.substring(0, first);
+			Run run = runs.get(runId);
+			if (run == null) {
+				run = new Run(numInstances);
+				runs.put(runId, run);
+			}
+			run.files.add(file);
+			run.modificationTime = Math.max(run.modificationTime, file.getModificationTime());
+		}
+
+		// pick the latest run that all instances contributed to
+		Run latest = null;
+		for (Run run : runs.values()) {
+			if (run.files.size() == run.numInstances && (latest == null || run.modificationTime > latest.modificationTime)) {
+				latest = run;
+			}
+		}
+		if (latest == null) {
+			return null;
+		}
+
+		final OperatorStatistics statistics = new OperatorStatistics();
+		for (FileStatus file : latest.files) {
+			final DataInputStream in = new DataInputStream(new BufferedInputStream(fs.open(file.getPath())));
+			try {
+				statistics.read(in);
+			} finally {
+				in.close();
+			}
+		}
+
+		// remove the runs that are superseded by the latest complete one
+		for (Run run : runs.values()) {
+			if (run != latest && run.modificationTime < latest.modificationTime) {
+				for (FileStatus file : run.files) {
+					try {
+						fs.delete(file.getPath(), false);
+					} catch (IOException ioex) {
+						if (LOG.isDebugEnabled()) {
+							LOG.debug("Could not remove outdated statistics file " + file.getPath() + ": "
+								+ ioex.getMessage());
+						}
+					}
+				}
+			}
+		}
+
+		return statistics;
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/**
+	 * The files written by the parallel instances of one run.
+	 */
+	private static final class Run
+	{
+		private final List<FileStatus> files = new ArrayList<FileStatus>();
+
+		private final int numInstances;
+
+		private long modificationTime = Long.MIN_VALUE;
+
+		private Run(int numInstances) {
+			this.numInstances = numInstances;
+		}
+	}
+}
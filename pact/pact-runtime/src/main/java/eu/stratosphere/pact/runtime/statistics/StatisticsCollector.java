@@ -0,0 +1,150 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.pact.runtime.statistics;
+
+import java.io.IOException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.type.Key;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.util.FieldSet;
+import eu.stratosphere.pact.common.util.InstantiationUtil;
+
+/**
+ * A collector that observes the records emitted by an operator before forwarding them to the actual collector. It
+ * counts the records and their bytes and estimates the number of distinct values of the configured key fields. When
+ * the collector is closed regularly, it writes the observed statistics to a {@link RuntimeStatisticsStore}. Failing
+ * to write the statistics does not fail the task.
+ * <p>
+ * Counting the bytes requires the binary representation of the records, which is computed anyway when the records
+ * are shipped, but not necessarily when they are passed to a chained task.
+ */
+public final class StatisticsCollector implements Collector<PactRecord>
+{
+	private static final Log LOG = LogFactory.getLog(StatisticsCollector.class);
+
+	private final Collector<PactRecord> delegate;
+
+	private final OperatorStatistics statistics = new OperatorStatistics();
+
+	private final int[][] keyPositions;
+
+	private final Key[][] keyHolders;
+
+	private final CardinalitySketch[] sketches;
+
+	private final RuntimeStatisticsStore store;
+
+	private final String signature;
+
+	private final String runId;
+
+	private final int instance;
+
+	private final int numInstances;
+
+	/**
+	 * Creates a new collector that observes the records forwarded to the given collector.
+	 * 
+	 * @param delegate The collector to forward the records to.
+	 * @param keyPositions The positions of the fields of each key field set to estimate the distinct values for.
+	 * @param keyClasses The types of the fields of each key field set.
+	 * @param store The store to write the statistics to.
+	 * @param signature The signature of the observed operator.
+	 * @param runId The identifier of the run, typically the job ID.
+	 * @param instance The index of the parallel instance of the operator.
+	 * @param numInstances The number of parallel instances of the operator.
+	 */
+	public StatisticsCollector(Collector<PactRecord> delegate, int[][] keyPositions, Class<? extends Key>[][] keyClasses,
+			RuntimeStatisticsStore store, String signature, String runId, int instance, int numInstances)
+	{
+		this.delegate = delegate;
+		this.keyPositions = keyPositions;
+		this.keyHolders = new Key[keyPositions.length][];
+		this.sketches = new CardinalitySketch[keyPositions.length];
+		for (int i = 0; i < keyPositions.length; i++) {
+			this.keyHolders[i] = new Key[keyClasses[i].length];
+			for (int k = 0; k < keyClasses[i].length; k++) {
+				this.keyHolders[i][k] = InstantiationUtil.instantiate(keyClasses[i][k], Key.class);
+			}
+			this.sketches[i] = this.statistics.getSketch(new FieldSet(keyPositions[i]));
+		}
+
+		this.store = store;
+		this.signature = signature;
+		this.runId = runId;
+		this.instance = instance;
+		this.numInstances = numInstances;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.common.stubs.Collector#collect(java.lang.Object)
+	 */
+	@Override
+	public void collect(PactRecord record)
+	{
+		final OperatorStatistics statistics = this.statistics;
+		statistics.numRecords++;
+		statistics.numBytes += record.getBinaryLength();
+
+		for (int i = 0; i < this.sketches.length; i++) {
+			final int[] positions = this.keyPositions[i];
+			final Key[] holders = this.keyHolders[i];
+
+			int hash = 0;
+			for (int k = 0; k < positions.length; k++) {
+				hash *= 31;
+				if (record.getFieldInto(positions[k], holders[k])) {
+					hash += holders[k].hashCode();
+				}
+			}
+			this.sketches[i].add(hash);
+		}
+
+		this.delegate.collect(record);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.common.stubs.Collector#close()
+	 */
+	@Override
+	public void close()
+	{
+		this.delegate.close();
+
+		try {
+			this.store.write(this.signature, this.runId, this.instance, this.numInstances, this.statistics);
+		} catch (IOException ioex) {
+			LOG.warn("The runtime statistics for operator " + this.signature + " could not be written: "
+				+ ioex.getMessage());
+		}
+	}
+
+	/**
+	 * Gets the statistics observed so far.
+	 * 
+	 * @return The observed statistics.
+	 */
+	public OperatorStatistics getStatistics() {
+		return this.statistics;
+	}
+}
@@ -25,6 +25,7 @@ import eu.stratosphere.pact.common.generic.types.TypeSerializer;
 import eu.stratosphere.pact.common.stubs.Collector;
 
 import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.runtime.hash.HashAggregator;
 import eu.stratosphere.pact.runtime.sort.AsynchronousPartialSorter;
 import eu.stratosphere.pact.runtime.task.util.CloseableInputProvider;
 import eu.stratosphere.pact.runtime.task.util.TaskConfig;
@@ -128,6 +129,7 @@ public class CombineDriver<T> implements PactDriver<GenericReducer<T, ?>, T>
 
 		switch (ls) {
 		case COMBININGSORT:
+		case HASH_AGGREGATE:
 			strategyMinMem = MIN_REQUIRED_MEMORY;
 			break;
 		}
@@ -155,6 +157,14 @@ public class CombineDriver<T> implements PactDriver<GenericReducer<T, ?>, T>
 			input = new AsynchronousPartialSorter<T>(memoryManager, in, this.taskContext.getOwningNepheleTask(),
 						this.serializer, this.comparator.duplicate(), availableMemory);
 			break;
+		// local strategy is HASH_AGGREGATE
+		// The input is combined in a hash table that spills partitions only if the memory is exhausted. The
+		// iterator returns the combined records.
+		case HASH_AGGREGATE:
+			input = new HashAggregator<T>(this.taskContext.getStub(), memoryManager, this.taskContext.getIOManager(),
+						in, this.taskContext.getOwningNepheleTask(), this.serializer, this.comparator.duplicate(),
+						availableMemory);
+			break;
 		// obtain and return a grouped iterator from the combining sort-merger
 		default:
 			throw new RuntimeException("Invalid local strategy provided for CombineTask.");
@@ -171,6 +181,17 @@ public class CombineDriver<T> implements PactDriver<GenericReducer<T, ?>, T>
 		if (LOG.isDebugEnabled())
 			LOG.debug(this.taskContext.formatLogString("Preprocessing done, iterator obtained."));
 
+		// the hash aggregation has already combined all records, forward them directly
+		if (this.taskContext.getTaskConfig().getLocalStrategy() == LocalStrategy.HASH_AGGREGATE) {
+			final MutableObjectIterator<T> iter = this.input.getIterator();
+			final T record = this.serializer.createInstance();
+			final Collector<T> output = this.taskContext.getOutputCollector();
+			while (this.running && iter.next(record)) {
+				output.collect(record);
+			}
+			return;
+		}
+
 		final KeyGroupedIterator<T> iter = new KeyGroupedIterator<T>(this.input.getIterator(),
 				this.serializer, this.comparator);
 
@@ -28,6 +28,7 @@ import eu.stratosphere.nephele.fs.Path;
 import eu.stratosphere.nephele.io.MutableRecordReader;
 import eu.stratosphere.nephele.template.AbstractOutputTask;
 import eu.stratosphere.pact.common.generic.io.OutputFormat;
+import eu.stratosphere.pact.common.generic.io.TransactionalOutputFormat;
 import eu.stratosphere.pact.common.generic.types.TypeComparator;
 import eu.stratosphere.pact.common.generic.types.TypeComparatorFactory;
 import eu.stratosphere.pact.common.generic.types.TypeSerializer;
@@ -140,10 +141,12 @@ public class DataSinkTask<IT> extends AbstractOutputTask
 			final long availableMemory = this.config.getMemorySize();
 			final int maxFileHandles = this.config.getNumFilehandles();
 			final float spillThreshold = this.config.getSortSpillingTreshold();
+			final int sortParallelism = this.config.getSortParallelism();
 			
 			sorter = new UnilateralSortMerger<IT>(getEnvironment().getMemoryManager(),
 					getEnvironment().getIOManager(), this.reader, this, 
-					this.inputTypeSerializer, comparator, availableMemory, maxFileHandles, spillThreshold);
+					this.inputTypeSerializer, comparator, availableMemory, -1, maxFileHandles, spillThreshold,
+					sortParallelism);
 			
 			// replace the reader by the sorted input
 			this.reader = sorter.getIterator();
@@ -166,6 +169,12 @@ public class DataSinkTask<IT> extends AbstractOutputTask
 				LOG.debug(getLogString("Starting to produce output"));
 			}
 
+			// transactional formats learn the job that writes them
+			if (format instanceof TransactionalOutputFormat) {
+				((TransactionalOutputFormat<?>) format).initialize(getEnvironment().getJobID().toString(),
+					getEnvironment().getCurrentNumberOfSubtasks());
+			}
+
 			// open
 			format.open(this.getEnvironment().getIndexInSubtaskGroup() + 1);
 
@@ -190,6 +199,9 @@ public class DataSinkTask<IT> extends AbstractOutputTask
 			// close. We close here such that a regular close throwing an exception marks a task as failed.
 			if (!this.taskCanceled) {
 				this.format.close();
+				if (format instanceof TransactionalOutputFormat) {
+					((TransactionalOutputFormat<?>) format).commit();
+				}
 				this.format = null;
 			}
 		}
@@ -212,8 +224,19 @@ public class DataSinkTask<IT> extends AbstractOutputTask
 					if (LOG.isWarnEnabled())
 						LOG.warn(getLogString("Error closing the ouput format."), t);
 				}
+
+				// the partial output of transactional formats is never committed, so it is removed right away
+				if (this.format instanceof TransactionalOutputFormat) {
+					try {
+						((TransactionalOutputFormat<?>) this.format).abort();
+					}
+					catch (Throwable t) {
+						if (LOG.isWarnEnabled())
+							LOG.warn(getLogString("Error aborting the output format."), t);
+					}
+				}
 			}
-			
+
 			if (sorter != null) {
 				sorter.close();
 			}
@@ -0,0 +1,215 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.task;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.nephele.execution.librarycache.LibraryCacheManager;
+import eu.stratosphere.nephele.io.MutableReader;
+import eu.stratosphere.nephele.io.MutableRecordReader;
+import eu.stratosphere.nephele.io.MutableUnionRecordReader;
+import eu.stratosphere.nephele.template.AbstractTask;
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactDouble;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparator;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparatorFactory;
+import eu.stratosphere.pact.runtime.task.util.PactRecordNepheleReaderIterator;
+import eu.stratosphere.pact.runtime.task.util.TaskConfig;
+
+/**
+ * The second step of the sampling based range partitioning. The task runs with a degree of parallelism of one
+ * and collects the weighted key samples of all {@link SampleTask}s that belong to the inputs of one contract.
+ * It sorts the samples and picks the boundaries that split the total weight into the configured number of
+ * equally sized ranges. The boundaries are emitted in ascending order (with respect to the configured sort
+ * directions) and are broadcast to the {@link PartitionTask}s.
+ * <p>
+ * Because all inputs of a contract share the same histogram task, both inputs of a range partitioned Match or
+ * CoGroup receive the same boundaries.
+ */
+public class HistogramTask extends AbstractTask
+{
+	private static final Log LOG = LogFactory.getLog(HistogramTask.class);
+
+	// --------------------------------------------------------------------------------------------
+
+	private MutableObjectIterator<PactRecord> input;
+
+	private Collector<PactRecord> output;
+
+	private TaskConfig config;
+
+	private ClassLoader userCodeClassLoader;
+
+	private volatile boolean taskCanceled;
+
+	// --------------------------------------------------------------------------------------------
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.nephele.template.AbstractInvokable#registerInputOutput()
+	 */
+	@Override
+	public void registerInputOutput()
+	{
+		if (this.userCodeClassLoader == null) {
+			try {
+				this.userCodeClassLoader = LibraryCacheManager.getClassLoader(getEnvironment().getJobID());
+			} catch (IOException ioe) {
+				throw new RuntimeException("Library cache manager could not be instantiated.", ioe);
+			}
+		}
+		this.config = new TaskConfig(getTaskConfiguration());
+
+		// the samples of all samplers arrive on individual gates
+		final int groupSize = this.config.getGroupSize(1);
+		final MutableReader<PactRecord> reader;
+		if (groupSize < 2) {
+			reader = new MutableRecordReader<PactRecord>(this);
+		} else {
+			@SuppressWarnings("unchecked")
+			final MutableRecordReader<PactRecord>[] readers = new MutableRecordReader[groupSize];
+			for (int i = 0; i < groupSize; i++) {
+				readers[i] = new MutableRecordReader<PactRecord>(this);
+			}
+			reader = new MutableUnionRecordReader<PactRecord>(readers);
+		}
+		this.input = new PactRecordNepheleReaderIterator(reader);
+
+		try {
+			this.output = RegularPactTask.getOutputCollector(this, this.config, this.userCodeClassLoader, null,
+				this.config.getNumOutputs());
+		} catch (Exception ex) {
+			throw new RuntimeException("Initializing the output handlers failed: " + ex.getMessage(), ex);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.nephele.template.AbstractInvokable#invoke()
+	 */
+	@Override
+	public void invoke() throws Exception
+	{
+		final PactRecordComparator comparator = PactRecordComparatorFactory.get().createComparator(
+			this.config.getConfigForInputParameters(0), this.userCodeClassLoader);
+		final int numPartitions = this.config.getNumberOfRangePartitions();
+		if (numPartitions < 1) {
+			throw new Exception("The histogram task was configured with an invalid number of partitions: " +
+				numPartitions);
+		}
+
+		final int weightPos = comparator.getKeyPositions().length;
+		final PactDouble weight = new PactDouble();
+
+		// collect all samples
+		final List<PactRecord> samples = new ArrayList<PactRecord>();
+		final PactRecord record = new PactRecord();
+		double totalWeight = 0.0;
+
+		while (!this.taskCanceled && this.input.next(record)) {
+			samples.add(record.createCopy());
+			totalWeight += record.getField(weightPos, weight).getValue();
+		}
+
+		if (this.taskCanceled) {
+			return;
+		}
+
+		Collections.sort(samples, new SampleComparator(comparator));
+
+		// pick the samples at which the accumulated weight crosses the partition borders. a heavily
+		// repeated key may be picked for multiple borders, which leaves the partitions in between empty
+		int numEmitted = 0;
+		double accumulated = 0.0;
+		for (int i = 0; i < samples.size() && numEmitted < numPartitions - 1; i++) {
+			final PactRecord sample = samples.get(i);
+			accumulated += sample.getField(weightPos, weight).getValue();
+
+			while (numEmitted < numPartitions - 1 && accumulated >= totalWeight * (numEmitted + 1) / numPartitions) {
+				this.output.collect(sample);
+				numEmitted++;
+			}
+		}
+
+		// rounding may leave the last borders unassigned
+		if (!samples.isEmpty()) {
+			final PactRecord last = samples.get(samples.size() - 1);
+			for (; numEmitted < numPartitions - 1; numEmitted++) {
+				this.output.collect(last);
+			}
+		}
+		this.output.close();
+
+		if (LOG.isDebugEnabled())
+			LOG.debug(RegularPactTask.constructLogString("Computed " + numEmitted + " range boundaries from " +
+				samples.size() + " samples", getEnvironment().getTaskName(), this));
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.nephele.template.AbstractInvokable#cancel()
+	 */
+	@Override
+	public void cancel() throws Exception
+	{
+		this.taskCanceled = true;
+	}
+
+	/**
+	 * Sets the class-loader to be used to load the user code.
+	 *
+	 * @param cl The class-loader to be used to load the user code.
+	 */
+	public void setUserCodeClassLoader(ClassLoader cl)
+	{
+		this.userCodeClassLoader = cl;
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/**
+	 * Orders the samples by their keys, using the sort directions of the given comparator.
+	 */
+	private static final class SampleComparator implements Comparator<PactRecord>
+	{
+		private final PactRecordComparator first;
+
+		private final PactRecordComparator second;
+
+		private SampleComparator(PactRecordComparator comparator)
+		{
+			this.first = comparator;
+			this.second = comparator.duplicate();
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
+		 */
+		@Override
+		public int compare(PactRecord o1, PactRecord o2)
+		{
+			this.first.setReference(o1);
+			this.second.setReference(o2);
+			return this.second.compareToReference(this.first);
+		}
+	}
+}
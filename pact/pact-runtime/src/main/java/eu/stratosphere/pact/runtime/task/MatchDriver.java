@@ -31,8 +31,10 @@ import eu.stratosphere.pact.common.util.InstantiationUtil;
 import eu.stratosphere.pact.common.util.MutableObjectIterator;
 import eu.stratosphere.pact.runtime.hash.BuildFirstHashMatchIterator;
 import eu.stratosphere.pact.runtime.hash.BuildSecondHashMatchIterator;
+import eu.stratosphere.pact.runtime.hash.SharedHashMatchIterator;
 import eu.stratosphere.pact.runtime.plugable.PactRecordPairComparatorFactory;
 import eu.stratosphere.pact.runtime.sort.SortMergeMatchIterator;
+import eu.stratosphere.pact.runtime.statistics.StatisticsCollector;
 import eu.stratosphere.pact.runtime.task.util.MatchTaskIterator;
 import eu.stratosphere.pact.runtime.task.util.TaskConfig;
 import eu.stratosphere.pact.runtime.task.util.TaskConfig.LocalStrategy;
@@ -43,6 +45,13 @@ import eu.stratosphere.pact.runtime.task.util.TaskConfig.LocalStrategy;
  * <p>
  * The MatchTask matches all pairs of records that share the same key and come from different inputs. Each pair of 
  * matching records is handed to the <code>match()</code> method of the MatchStub.
+ * <p>
+ * For the hybrid-hash strategies, the task may deviate from the strategy given by the compiler for the partitions
+ * whose build side turns out not to fit into memory. The strategy actually executed is logged and, if statistics
+ * are collected for the task's output, recorded with the runtime statistics.
+ * <p>
+ * If the build side of a hybrid-hash strategy is broadcasted, the compiler may let the local instances of the task
+ * share a single hash table, which is then built only once per task manager.
  * 
  * @see MatchStub
  * 
@@ -168,6 +177,10 @@ public class MatchDriver<IT1, IT2, OT> implements PactDriver<GenericMatcher<IT1,
 		// obtain task manager's I/O manager
 		final IOManager ioManager = this.taskContext.getIOManager();
 
+		// the instances on this task manager share the hash table of a broadcasted build side, if so configured
+		final String sharedTableKey = config.getSharedHashTableKey() == null ? null :
+			this.taskContext.getOwningNepheleTask().getEnvironment().getJobID() + "/" + config.getSharedHashTableKey();
+		
 		// create and return MatchTaskIterator according to provided local strategy.
 		switch (ls)
 		{
@@ -181,14 +194,50 @@ public class MatchDriver<IT1, IT2, OT> implements PactDriver<GenericMatcher<IT1,
 					this.taskContext.getOwningNepheleTask());
 			break;
 		case HYBRIDHASH_FIRST:
-			this.matchIterator = new BuildFirstHashMatchIterator<IT1, IT2, OT>(in1, in2, serializer1, comparator1,
-				serializer2, comparator2, pairComparatorFactory.createComparator21(comparator1, comparator2),
-				memoryManager, ioManager, this.taskContext.getOwningNepheleTask(), availableMemory);
+			if (sharedTableKey != null) {
+				final SharedHashMatchIterator.BuildFirst<IT1, IT2, OT> sharedIterator =
+					new SharedHashMatchIterator.BuildFirst<IT1, IT2, OT>(in1, in2, serializer1, comparator1,
+						serializer2, comparator2, pairComparatorFactory.createComparator21(comparator1, comparator2),
+						memoryManager, ioManager, this.taskContext.getOwningNepheleTask(), availableMemory, sharedTableKey);
+				if (config.isHashJoinFallbackEnabled()) {
+					sharedIterator.enableFallback(pairComparatorFactory.createComparator12(comparator1, comparator2),
+						maxFileHandles, spillThreshold);
+				}
+				this.matchIterator = sharedIterator;
+				break;
+			}
+			final BuildFirstHashMatchIterator<IT1, IT2, OT> buildFirstIterator =
+				new BuildFirstHashMatchIterator<IT1, IT2, OT>(in1, in2, serializer1, comparator1,
+					serializer2, comparator2, pairComparatorFactory.createComparator21(comparator1, comparator2),
+					memoryManager, ioManager, this.taskContext.getOwningNepheleTask(), availableMemory);
+			if (config.isHashJoinFallbackEnabled()) {
+				buildFirstIterator.enableFallback(pairComparatorFactory.createComparator12(comparator1, comparator2),
+					maxFileHandles, spillThreshold);
+			}
+			this.matchIterator = buildFirstIterator;
 			break;
 		case HYBRIDHASH_SECOND:
-			this.matchIterator = new BuildSecondHashMatchIterator<IT1, IT2, OT>(in1, in2, serializer1, comparator1,
+			if (sharedTableKey != null) {
+				final SharedHashMatchIterator.BuildSecond<IT1, IT2, OT> sharedIterator =
+					new SharedHashMatchIterator.BuildSecond<IT1, IT2, OT>(in1, in2, serializer1, comparator1,
+						serializer2, comparator2, pairComparatorFactory.createComparator12(comparator1, comparator2),
+						memoryManager, ioManager, this.taskContext.getOwningNepheleTask(), availableMemory, sharedTableKey);
+				if (config.isHashJoinFallbackEnabled()) {
+					sharedIterator.enableFallback(pairComparatorFactory.createComparator21(comparator1, comparator2),
+						maxFileHandles, spillThreshold);
+				}
+				this.matchIterator = sharedIterator;
+				break;
+			}
+			final BuildSecondHashMatchIterator<IT1, IT2, OT> buildSecondIterator =
+				new BuildSecondHashMatchIterator<IT1, IT2, OT>(in1, in2, serializer1, comparator1,
 					serializer2, comparator2, pairComparatorFactory.createComparator12(comparator1, comparator2),
 					memoryManager, ioManager, this.taskContext.getOwningNepheleTask(), availableMemory);
+			if (config.isHashJoinFallbackEnabled()) {
+				buildSecondIterator.enableFallback(pairComparatorFactory.createComparator21(comparator1, comparator2),
+					maxFileHandles, spillThreshold);
+			}
+			this.matchIterator = buildSecondIterator;
 			break;
 		default:
 			throw new Exception("Unsupported local strategy for MatchTask: " + ls.name());
@@ -213,6 +262,40 @@ public class MatchDriver<IT1, IT2, OT> implements PactDriver<GenericMatcher<IT1,
 		final MatchTaskIterator<IT1, IT2, OT> matchIterator = this.matchIterator;
 		
 		while (this.running && matchIterator.callWithNextKey(matchStub, collector));
+		
+		if (this.running) {
+			reportExecutedStrategy(matchIterator, collector);
+		}
+	}
+	
+	/**
+	 * Logs the local strategy that was actually executed and records it with the statistics of the task's output,
+	 * if those are collected.
+	 */
+	private void reportExecutedStrategy(MatchTaskIterator<IT1, IT2, OT> matchIterator, Collector<OT> collector)
+	{
+		final LocalStrategy fallback;
+		if (matchIterator instanceof BuildFirstHashMatchIterator) {
+			fallback = ((BuildFirstHashMatchIterator<IT1, IT2, OT>) matchIterator).getFallbackStrategy();
+		} else if (matchIterator instanceof BuildSecondHashMatchIterator) {
+			fallback = ((BuildSecondHashMatchIterator<IT1, IT2, OT>) matchIterator).getFallbackStrategy();
+		} else if (matchIterator instanceof SharedHashMatchIterator) {
+			fallback = ((SharedHashMatchIterator<?, ?, IT1, IT2, OT>) matchIterator).getFallbackStrategy();
+		} else {
+			fallback = null;
+		}
+		
+		final LocalStrategy planned = this.taskContext.getTaskConfig().getLocalStrategy();
+		final String executed = fallback == null ? planned.name() : planned.name() + '+' + fallback.name();
+		
+		if (fallback != null && LOG.isInfoEnabled()) {
+			LOG.info(this.taskContext.formatLogString("Joined the partitions exceeding the memory with local strategy "
+				+ fallback.name() + "."));
+		}
+		
+		if (collector instanceof StatisticsCollector) {
+			((StatisticsCollector) collector).getStatistics().recordLocalStrategy(executed);
+		}
 	}
 
 	/* (non-Javadoc)
@@ -0,0 +1,377 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.task;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.nephele.execution.librarycache.LibraryCacheManager;
+import eu.stratosphere.nephele.io.AbstractRecordWriter;
+import eu.stratosphere.nephele.io.ChannelSelector;
+import eu.stratosphere.nephele.io.MutableRecordReader;
+import eu.stratosphere.nephele.io.RecordWriter;
+import eu.stratosphere.nephele.services.memorymanager.DataInputView;
+import eu.stratosphere.nephele.services.memorymanager.ListMemorySegmentSource;
+import eu.stratosphere.nephele.services.memorymanager.MemoryManager;
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
+import eu.stratosphere.nephele.template.AbstractTask;
+import eu.stratosphere.pact.common.contract.DataDistribution;
+import eu.stratosphere.pact.common.type.Key;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.runtime.io.SpillingBuffer;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparator;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparatorFactory;
+import eu.stratosphere.pact.runtime.plugable.PactRecordSerializer;
+import eu.stratosphere.pact.runtime.shipping.PactRecordOutputCollector;
+import eu.stratosphere.pact.runtime.shipping.PactRecordOutputEmitter;
+import eu.stratosphere.pact.runtime.shipping.ShipStrategy.ShipStrategyType;
+import eu.stratosphere.pact.runtime.task.util.PactRecordNepheleReaderIterator;
+import eu.stratosphere.pact.runtime.task.util.TaskConfig;
+
+/**
+ * The last step of the sampling based range partitioning. The task receives the range boundaries from the
+ * {@link HistogramTask} on its first input and the records of the sender on its second input. It range
+ * partitions the records with the received boundaries.
+ * <p>
+ * The task is also the last step of the detection of skewed keys for a Match with hash partitioned inputs.
+ * In that case, it receives the skewed keys from the {@link SkewDetectionTask} on its first input and
+ * partitions the records with the skew handling hash partitioning: The records of keys that are skewed in its
+ * input are spread over all receivers, the records of keys that are skewed in the other input are replicated
+ * to all receivers.
+ * <p>
+ * The boundaries and skewed keys are only known after all {@link SampleTask}s have seen their complete input. The task therefore
+ * first materializes the records of its second input, such that the sender is never blocked while the boundaries
+ * are computed. Only then it reads the boundaries and replays the materialized records to its output.
+ * <p>
+ * Materializing the input has a cost: the records are kept in the task's memory and spilled to local disk
+ * once that memory is full, so an input larger than the memory is written and read once more. In addition,
+ * the connection does not pipeline anymore. The receiver gets its first record only after every sampler
+ * of the job's range partitioned connections to the same target has consumed its complete input.
+ */
+public class PartitionTask extends AbstractTask
+{
+	private static final Log LOG = LogFactory.getLog(PartitionTask.class);
+
+	private static final long MIN_REQUIRED_MEMORY = 512 * 1024;		// minimal memory for the task to operate
+
+	// --------------------------------------------------------------------------------------------
+
+	private MutableObjectIterator<PactRecord> distributionInput;
+
+	private MutableObjectIterator<PactRecord> dataInput;
+
+	private PactRecordOutputCollector output;
+
+	private BoundarySelector selector;
+
+	private PactRecordComparator comparator;
+
+	private TaskConfig config;
+
+	private ClassLoader userCodeClassLoader;
+
+	private volatile boolean taskCanceled;
+
+	// --------------------------------------------------------------------------------------------
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.nephele.template.AbstractInvokable#registerInputOutput()
+	 */
+	@Override
+	public void registerInputOutput()
+	{
+		if (this.userCodeClassLoader == null) {
+			try {
+				this.userCodeClassLoader = LibraryCacheManager.getClassLoader(getEnvironment().getJobID());
+			} catch (IOException ioe) {
+				throw new RuntimeException("Library cache manager could not be instantiated.", ioe);
+			}
+		}
+		this.config = new TaskConfig(getTaskConfiguration());
+
+		if (this.config.getNumOutputs() != 1 || (this.config.getOutputShipStrategy(0) != ShipStrategyType.PARTITION_RANGE &&
+				this.config.getOutputShipStrategy(0) != ShipStrategyType.PARTITION_HASH_SKEW)) {
+			throw new RuntimeException("The partition task must have exactly one range or skew handling hash " +
+				"partitioned output.");
+		}
+		if (this.config.getOutputShipStrategy(0) == ShipStrategyType.PARTITION_HASH_SKEW &&
+				this.config.getSkewDetectionInput() < 0) {
+			throw new RuntimeException("The partition task for a skew handling hash partitioned output must know " +
+				"the input of the Match that it partitions.");
+		}
+
+		try {
+			this.comparator = PactRecordComparatorFactory.get().createComparator(
+				this.config.getConfigForOutputParameters(0), this.userCodeClassLoader);
+		} catch (ClassNotFoundException cnfex) {
+			throw new RuntimeException("The comparator for the output could not be created, because it could not " +
+				"load dependent classes.", cnfex);
+		}
+
+		// the order of the readers defines the order of the gates: boundaries or skewed keys first, data second
+		this.distributionInput = new PactRecordNepheleReaderIterator(new MutableRecordReader<PactRecord>(this));
+		this.dataInput = new PactRecordNepheleReaderIterator(new MutableRecordReader<PactRecord>(this));
+
+		// the boundaries or skewed keys are not known before the task runs, so the channel selection is
+		// deferred to an emitter that is created once they have arrived
+		this.selector = new BoundarySelector();
+		final List<AbstractRecordWriter<PactRecord>> writers = new ArrayList<AbstractRecordWriter<PactRecord>>(1);
+		writers.add(new RecordWriter<PactRecord>(this, this.selector));
+		this.output = new PactRecordOutputCollector(writers);
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.nephele.template.AbstractInvokable#invoke()
+	 */
+	@Override
+	public void invoke() throws Exception
+	{
+		final long availableMemory = this.config.getMemorySize();
+		if (availableMemory < MIN_REQUIRED_MEMORY) {
+			throw new RuntimeException("The partition task was initialized with too little memory: " + availableMemory +
+				". Required is at least " + MIN_REQUIRED_MEMORY + " bytes.");
+		}
+
+		final MemoryManager memoryManager = getEnvironment().getMemoryManager();
+		final List<MemorySegment> memory = memoryManager.allocatePages(this, availableMemory);
+		SpillingBuffer buffer = new SpillingBuffer(getEnvironment().getIOManager(),
+			new ListMemorySegmentSource(memory), memoryManager.getPageSize());
+
+		try {
+			final PactRecordSerializer serializer = PactRecordSerializer.get();
+			final PactRecord record = new PactRecord();
+
+			// first materialize the data
+			while (!this.taskCanceled && this.dataInput.next(record)) {
+				serializer.serialize(record, buffer);
+			}
+
+			// now wait for the boundaries or skewed keys
+			if (this.config.getOutputShipStrategy(0) == ShipStrategyType.PARTITION_RANGE) {
+				this.selector.emitter = createRangeEmitter(record);
+			} else {
+				this.selector.emitter = createSkewEmitter(record);
+			}
+
+			if (this.taskCanceled) {
+				return;
+			}
+
+			// replay the materialized data
+			final DataInputView inView = buffer.flip();
+			try {
+				while (!this.taskCanceled) {
+					serializer.deserialize(record, inView);
+					this.output.collect(record);
+				}
+			} catch (EOFException eofex) {
+				// all good, we are done
+			}
+			this.output.close();
+		}
+		finally {
+			memoryManager.release(buffer.close());
+			memoryManager.release(memory);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.nephele.template.AbstractInvokable#cancel()
+	 */
+	@Override
+	public void cancel() throws Exception
+	{
+		this.taskCanceled = true;
+	}
+
+	/**
+	 * Sets the class-loader to be used to load the user code.
+	 *
+	 * @param cl The class-loader to be used to load the user code.
+	 */
+	public void setUserCodeClassLoader(ClassLoader cl)
+	{
+		this.userCodeClassLoader = cl;
+	}
+
+	/**
+	 * Reads the range boundaries and creates the emitter that range partitions with them.
+	 */
+	private PactRecordOutputEmitter createRangeEmitter(PactRecord record) throws IOException
+	{
+		final int[] keyPositions = this.comparator.getKeyPositions();
+		final List<PactRecord> boundaries = new ArrayList<PactRecord>();
+		while (!this.taskCanceled && this.distributionInput.next(record)) {
+			boundaries.add(toDataLayout(record, keyPositions));
+		}
+
+		if (LOG.isDebugEnabled())
+			LOG.debug(RegularPactTask.constructLogString("Received " + boundaries.size() + " range boundaries",
+				getEnvironment().getTaskName(), this));
+
+		return new PactRecordOutputEmitter(ShipStrategyType.PARTITION_RANGE, this.comparator,
+			new SampledDistribution(boundaries));
+	}
+
+	/**
+	 * Reads the detected skewed keys and creates the emitter that spreads the keys skewed in this task's input
+	 * and replicates the keys skewed in the other input.
+	 */
+	private PactRecordOutputEmitter createSkewEmitter(PactRecord record) throws IOException
+	{
+		final int input = this.config.getSkewDetectionInput();
+		final PactInteger hash = new PactInteger();
+		final PactInteger spreadInput = new PactInteger();
+		final List<Integer> spread = new ArrayList<Integer>();
+		final List<Integer> replicate = new ArrayList<Integer>();
+		while (!this.taskCanceled && this.distributionInput.next(record)) {
+			final Integer hashCode = Integer.valueOf(record.getField(0, hash).getValue());
+			if (record.getField(1, spreadInput).getValue() == input) {
+				spread.add(hashCode);
+			} else {
+				replicate.add(hashCode);
+			}
+		}
+
+		if (LOG.isDebugEnabled())
+			LOG.debug(RegularPactTask.constructLogString("Received " + spread.size() + " keys to spread and " +
+				replicate.size() + " keys to replicate", getEnvironment().getTaskName(), this));
+
+		return new PactRecordOutputEmitter(ShipStrategyType.PARTITION_HASH_SKEW, this.comparator, null,
+			toIntArray(spread), toIntArray(replicate));
+	}
+
+	private static int[] toIntArray(List<Integer> values)
+	{
+		final int[] array = new int[values.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = values.get(i).intValue();
+		}
+		return array;
+	}
+
+	/**
+	 * Moves the key fields of a boundary from the positions <code>0</code> to <code>k-1</code>, where the
+	 * {@link HistogramTask} emits them, to the key positions of the partitioned records.
+	 */
+	private PactRecord toDataLayout(PactRecord boundary, int[] keyPositions)
+	{
+		final Class<? extends Key>[] keyTypes = this.comparator.getKeyTypes();
+		final PactRecord result = new PactRecord();
+		for (int i = 0; i < keyPositions.length; i++) {
+			result.setField(keyPositions[i], boundary.getField(i, keyTypes[i]));
+		}
+		return result;
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/**
+	 * Channel selector that delegates to an emitter which is set after the boundaries are known.
+	 */
+	private static final class BoundarySelector implements ChannelSelector<PactRecord>
+	{
+		private PactRecordOutputEmitter emitter;
+
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.nephele.io.ChannelSelector#selectChannels(eu.stratosphere.nephele.types.Record, int)
+		 */
+		@Override
+		public int[] selectChannels(PactRecord record, int numberOfOutputChannels)
+		{
+			return this.emitter.selectChannels(record, numberOfOutputChannels);
+		}
+	}
+
+	/**
+	 * The data distribution described by the sampled boundaries. It is only valid for the number of
+	 * partitions that the boundaries were computed for. The distribution is serialized as the number of
+	 * boundaries, followed by the boundary records.
+	 */
+	public static final class SampledDistribution implements DataDistribution
+	{
+		private List<PactRecord> boundaries;
+
+		/**
+		 * Creates an empty distribution, whose boundaries are set by {@link #read(DataInput)}.
+		 */
+		public SampledDistribution()
+		{
+			this.boundaries = Collections.emptyList();
+		}
+
+		/**
+		 * Creates a distribution with the given boundaries.
+		 * 
+		 * @param boundaries The upper bounds of all partitions but the last one, in partitioning order.
+		 */
+		public SampledDistribution(List<PactRecord> boundaries)
+		{
+			this.boundaries = Collections.unmodifiableList(boundaries);
+		}
+
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.pact.common.contract.DataDistribution#getBucketBoundary(int, int)
+		 */
+		@Override
+		public PactRecord getBucketBoundary(int bucketNum, int totalNumBuckets)
+		{
+			if (totalNumBuckets != this.boundaries.size() + 1) {
+				throw new IllegalArgumentException("The sampled boundaries describe " + (this.boundaries.size() + 1) +
+					" partitions, but " + totalNumBuckets + " partitions were requested.");
+			}
+			return this.boundaries.get(bucketNum);
+		}
+
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.pact.common.contract.DataDistribution#write(java.io.DataOutput)
+		 */
+		@Override
+		public void write(DataOutput out) throws IOException
+		{
+			out.writeInt(this.boundaries.size());
+			for (PactRecord boundary : this.boundaries) {
+				boundary.write(out);
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.pact.common.contract.DataDistribution#read(java.io.DataInput)
+		 */
+		@Override
+		public void read(DataInput in) throws IOException
+		{
+			final int numBoundaries = in.readInt();
+			final List<PactRecord> boundaries = new ArrayList<PactRecord>(numBoundaries);
+			for (int i = 0; i < numBoundaries; i++) {
+				final PactRecord boundary = new PactRecord();
+				boundary.read(in);
+				boundaries.add(boundary);
+			}
+			this.boundaries = Collections.unmodifiableList(boundaries);
+		}
+	}
+}
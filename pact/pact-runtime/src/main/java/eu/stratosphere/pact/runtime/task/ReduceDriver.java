@@ -26,6 +26,7 @@ import eu.stratosphere.pact.common.generic.types.TypeSerializer;
 import eu.stratosphere.pact.common.stubs.Collector;
 import eu.stratosphere.pact.common.stubs.ReduceStub;
 import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.runtime.hash.HashAggregator;
 import eu.stratosphere.pact.runtime.sort.CombiningUnilateralSortMerger;
 import eu.stratosphere.pact.runtime.sort.UnilateralSortMerger;
 import eu.stratosphere.pact.runtime.task.util.CloseableInputProvider;
@@ -121,10 +122,13 @@ public class ReduceDriver<IT, OT> implements PactDriver<GenericReducer<IT, OT>,
 		final long availableMemory = config.getMemorySize();
 		final int maxFileHandles = config.getNumFilehandles();
 		final float spillThreshold = config.getSortSpillingTreshold();
+		final int sortParallelism = config.getSortParallelism();
 
 		// test minimum memory requirements
 		final LocalStrategy ls = config.getLocalStrategy();
-		if ((ls == LocalStrategy.SORT || ls == LocalStrategy.COMBININGSORT) && availableMemory < MIN_REQUIRED_MEMORY) {
+		if ((ls == LocalStrategy.SORT || ls == LocalStrategy.COMBININGSORT || ls == LocalStrategy.HASH_AGGREGATE)
+				&& availableMemory < MIN_REQUIRED_MEMORY)
+		{
 			throw new Exception("The Reduce task was initialized with too little memory for local strategy " +
 					config.getLocalStrategy() + " : " + availableMemory + " bytes." +
 					"Required is at least " + MIN_REQUIRED_MEMORY + " bytes.");
@@ -156,8 +160,8 @@ public class ReduceDriver<IT, OT> implements PactDriver<GenericReducer<IT, OT>,
 			// instantiate a sort-merger
 			this.input = new UnilateralSortMerger<IT>(memoryManager, ioManager, in,
 						this.taskContext.getOwningNepheleTask(), this.serializer, sortComparator,
-						availableMemory, maxFileHandles,
-				spillThreshold);
+						availableMemory, -1, maxFileHandles,
+				spillThreshold, sortParallelism);
 			break;
 
 		case COMBININGSORT:
@@ -166,6 +170,17 @@ public class ReduceDriver<IT, OT> implements PactDriver<GenericReducer<IT, OT>,
 						ioManager, in, this.taskContext.getOwningNepheleTask(), this.serializer,
 						sortComparator, availableMemory, maxFileHandles, spillThreshold, false);
 			break;
+
+		// local strategy is HASH_AGGREGATE
+		// The input is grouped and combined in a hash table. The iterator returns the combined records grouped by key.
+		case HASH_AGGREGATE:
+			if (this.taskContext.getSecondarySortComparator(0) != null) {
+				throw new Exception("Local strategy " + ls.name() + " cannot establish a secondary order in the groups.");
+			}
+			this.input = new HashAggregator<IT>(this.taskContext.getStub(), memoryManager, ioManager, in,
+						this.taskContext.getOwningNepheleTask(), this.serializer, this.comparator.duplicate(),
+						availableMemory);
+			break;
 		default:
 			throw new Exception("Invalid local strategy provided for ReduceTask: " + ls.name());
 		}
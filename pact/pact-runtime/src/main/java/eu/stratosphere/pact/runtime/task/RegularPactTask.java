@@ -25,6 +25,7 @@ import org.apache.commons.logging.LogFactory;
 import com.google.common.base.Preconditions;
 
 import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.execution.Environment;
 import eu.stratosphere.nephele.execution.librarycache.LibraryCacheManager;
 import eu.stratosphere.nephele.io.AbstractRecordWriter;
 import eu.stratosphere.nephele.io.BroadcastRecordWriter;
@@ -46,6 +47,7 @@ import eu.stratosphere.pact.common.generic.types.TypeSerializer;
 import eu.stratosphere.pact.common.generic.types.TypeSerializerFactory;
 import eu.stratosphere.pact.common.stubs.Collector;
 import eu.stratosphere.pact.common.stubs.Stub;
+import eu.stratosphere.pact.common.type.Key;
 import eu.stratosphere.pact.common.type.PactRecord;
 import eu.stratosphere.pact.common.util.InstantiationUtil;
 import eu.stratosphere.pact.common.util.MutableObjectIterator;
@@ -60,6 +62,8 @@ import eu.stratosphere.pact.runtime.shipping.OutputEmitter;
 import eu.stratosphere.pact.runtime.shipping.PactRecordOutputCollector;
 import eu.stratosphere.pact.runtime.shipping.PactRecordOutputEmitter;
 import eu.stratosphere.pact.runtime.shipping.ShipStrategy.ShipStrategyType;
+import eu.stratosphere.pact.runtime.statistics.RuntimeStatisticsStore;
+import eu.stratosphere.pact.runtime.statistics.StatisticsCollector;
 import eu.stratosphere.pact.runtime.task.chaining.ChainedDriver;
 import eu.stratosphere.pact.runtime.task.chaining.ExceptionInChainedStubException;
 import eu.stratosphere.pact.runtime.task.util.NepheleReaderIterator;
@@ -747,7 +751,8 @@ public class RegularPactTask<S extends Stub, OT> extends AbstractTask implements
 						final PactRecordComparator comparator = PactRecordComparatorFactory.get().createComparator(
 							config.getConfigForOutputParameters(i), cl);
 						final DataDistribution distribution = config.getOutputDataDistribution(cl);
-						oe = new PactRecordOutputEmitter(strategy, comparator, distribution);
+						oe = new PactRecordOutputEmitter(strategy, comparator, distribution,
+							config.getOutputSpreadKeyHashes(i), config.getOutputReplicateKeyHashes(i));
 					} catch (ClassNotFoundException cnfex) {
 						throw new Exception("The comparator for output " + i +
 							" could not be created, because it could not load dependent classes.", cnfex);
@@ -878,6 +883,7 @@ public class RegularPactTask<S extends Stub, OT> extends AbstractTask implements
 					previous = getOutputCollector(nepheleTask, chainedStubConf, cl, eventualOutputs,
 						chainedStubConf.getNumOutputs());
 				}
+				previous = observeOutput(previous, nepheleTask, chainedStubConf, cl);
 
 				ct.setup(chainedStubConf, taskName, nepheleTask, cl, previous);
 				chainedTasksTarget.add(0, ct);
@@ -885,12 +891,61 @@ public class RegularPactTask<S extends Stub, OT> extends AbstractTask implements
 				previous = ct;
 			}
 			// the collector of the first in the chain is the collector for the nephele task
-			return (Collector<T>) previous;
+			return observeOutput((Collector<T>) previous, nepheleTask, config, cl);
 		}
 		// else
 
 		// instantiate the output collector the default way from this configuration
-		return getOutputCollector(nepheleTask, config, cl, eventualOutputs, numOutputs);
+		return observeOutput(getOutputCollector(nepheleTask, config, cl, eventualOutputs, numOutputs), nepheleTask,
+			config, cl);
+	}
+
+	/**
+	 * Wraps the given collector into a {@link StatisticsCollector}, if the configuration requests the collection of
+	 * statistics about the output. Only outputs of {@link PactRecord}s are observed, other collectors are returned
+	 * unchanged.
+	 * 
+	 * @param collector
+	 *        The collector that receives the output of the operator described by the configuration.
+	 * @param nepheleTask
+	 *        The task that runs the operator.
+	 * @param config
+	 *        The configuration of the operator.
+	 * @param cl
+	 *        The classloader used to load the key types.
+	 * @return The collector to pass the operator's output to.
+	 */
+	private static <T> Collector<T> observeOutput(Collector<T> collector, AbstractInvokable nepheleTask,
+			TaskConfig config, ClassLoader cl)
+			throws Exception
+	{
+		final String directory = config.getStatisticsDirectory();
+		final String signature = config.getStatisticsSignature();
+		if (directory == null || signature == null) {
+			return collector;
+		}
+
+		final Class<? extends TypeSerializerFactory<T>> serializerFactoryClass = config.getSerializerFactoryForOutput(cl);
+		if (serializerFactoryClass != null && !InstantiationUtil.instantiate(serializerFactoryClass,
+			TypeSerializerFactory.class).getDataType().equals(PactRecord.class)) {
+			return collector;
+		}
+
+		final int numKeys = config.getNumberOfStatisticsKeys();
+		final int[][] keyPositions = new int[numKeys][];
+		@SuppressWarnings("unchecked")
+		final Class<? extends Key>[][] keyClasses = new Class[numKeys][];
+		for (int i = 0; i < numKeys; i++) {
+			keyPositions[i] = config.getStatisticsKeyPositions(i);
+			keyClasses[i] = config.getStatisticsKeyClasses(i, cl);
+		}
+
+		final Environment env = nepheleTask.getEnvironment();
+		@SuppressWarnings("unchecked")
+		final Collector<T> observer = (Collector<T>) new StatisticsCollector((Collector<PactRecord>) collector,
+			keyPositions, keyClasses, new RuntimeStatisticsStore(directory), signature, env.getJobID().toString(),
+			env.getIndexInSubtaskGroup(), env.getCurrentNumberOfSubtasks());
+		return observer;
 	}
 
 	// --------------------------------------------------------------------------------------------
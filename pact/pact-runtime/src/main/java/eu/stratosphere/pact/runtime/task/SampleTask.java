@@ -0,0 +1,181 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.task;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.nephele.execution.librarycache.LibraryCacheManager;
+import eu.stratosphere.nephele.io.MutableRecordReader;
+import eu.stratosphere.nephele.template.AbstractTask;
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.type.Key;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactDouble;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparator;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparatorFactory;
+import eu.stratosphere.pact.runtime.task.util.PactRecordNepheleReaderIterator;
+import eu.stratosphere.pact.runtime.task.util.TaskConfig;
+
+/**
+ * The first step of the sampling based range partitioning. The task is placed next to a sender of a range
+ * partitioned connection and reads the same records that the sender hands to its {@link PartitionTask}.
+ * It draws a uniform sample of the keys of these records.
+ * <p>
+ * After the input is exhausted, the task emits each sampled key as a record that holds the key fields at
+ * the positions <code>0</code> to <code>k-1</code>. Position <code>k</code> holds the weight of the sample, which
+ * is the number of input records the sample stands for. The weights let the {@link HistogramTask} combine the
+ * samples of inputs with different sizes. If the task samples an input of a Match for the detection of skewed
+ * keys, position <code>k+1</code> holds the number of that input, such that the {@link SkewDetectionTask} can
+ * tell the samples of both inputs apart.
+ * <p>
+ * The sample is drawn with the seed from the task configuration, combined with the index of the parallel
+ * instance, so that repeated executions of the same job compute the same range boundaries.
+ */
+public class SampleTask extends AbstractTask
+{
+	private static final Log LOG = LogFactory.getLog(SampleTask.class);
+
+	private static final long DEFAULT_SEED = 0x5DEECE66DL;
+
+	// --------------------------------------------------------------------------------------------
+
+	private MutableObjectIterator<PactRecord> input;
+
+	private Collector<PactRecord> output;
+
+	private TaskConfig config;
+
+	private ClassLoader userCodeClassLoader;
+
+	private volatile boolean taskCanceled;
+
+	// --------------------------------------------------------------------------------------------
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.nephele.template.AbstractInvokable#registerInputOutput()
+	 */
+	@Override
+	public void registerInputOutput()
+	{
+		if (this.userCodeClassLoader == null) {
+			try {
+				this.userCodeClassLoader = LibraryCacheManager.getClassLoader(getEnvironment().getJobID());
+			} catch (IOException ioe) {
+				throw new RuntimeException("Library cache manager could not be instantiated.", ioe);
+			}
+		}
+		this.config = new TaskConfig(getTaskConfiguration());
+
+		this.input = new PactRecordNepheleReaderIterator(new MutableRecordReader<PactRecord>(this));
+		try {
+			this.output = RegularPactTask.getOutputCollector(this, this.config, this.userCodeClassLoader, null,
+				this.config.getNumOutputs());
+		} catch (Exception ex) {
+			throw new RuntimeException("Initializing the output handlers failed: " + ex.getMessage(), ex);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.nephele.template.AbstractInvokable#invoke()
+	 */
+	@Override
+	public void invoke() throws Exception
+	{
+		if (LOG.isDebugEnabled())
+			LOG.debug(RegularPactTask.constructLogString("Start sampling", getEnvironment().getTaskName(), this));
+
+		final PactRecordComparator comparator = PactRecordComparatorFactory.get().createComparator(
+			this.config.getConfigForInputParameters(0), this.userCodeClassLoader);
+		final int numSamples = this.config.getRangeSampleSize();
+		if (numSamples < 1) {
+			throw new Exception("The sampling task was configured with an invalid number of samples: " + numSamples);
+		}
+
+		// draw the sample with a reservoir, such that every record is kept with the same probability
+		final Key[][] reservoir = new Key[numSamples][];
+		final long seed = this.config.getRangeSampleSeed(DEFAULT_SEED);
+		final Random rnd = new Random(seed + getIndexInSubtaskGroup());
+		final PactRecord record = new PactRecord();
+		long count = 0;
+
+		while (!this.taskCanceled && this.input.next(record)) {
+			if (count < numSamples) {
+				reservoir[(int) count] = comparator.getKeysAsCopy(record);
+			} else {
+				final long pos = (long) (rnd.nextDouble() * (count + 1));
+				if (pos < numSamples) {
+					reservoir[(int) pos] = comparator.getKeysAsCopy(record);
+				}
+			}
+			count++;
+		}
+
+		if (this.taskCanceled) {
+			return;
+		}
+
+		// emit the sampled keys, together with the number of records each one represents
+		final int numSampled = (int) Math.min(count, numSamples);
+		final int weightPos = comparator.getKeyPositions().length;
+		final PactDouble weight = new PactDouble(numSampled == 0 ? 0.0 : ((double) count) / numSampled);
+		final int skewInput = this.config.getSkewDetectionInput();
+		final PactInteger input = skewInput < 0 ? null : new PactInteger(skewInput);
+		final PactRecord sample = new PactRecord();
+
+		for (int i = 0; i < numSampled; i++) {
+			final Key[] keys = reservoir[i];
+			sample.clear();
+			for (int k = 0; k < keys.length; k++) {
+				sample.setField(k, keys[k]);
+			}
+			sample.setField(weightPos, weight);
+			if (input != null) {
+				sample.setField(weightPos + 1, input);
+			}
+			this.output.collect(sample);
+		}
+		this.output.close();
+
+		if (LOG.isDebugEnabled())
+			LOG.debug(RegularPactTask.constructLogString("Finished sampling " + numSampled + " of " + count + " records",
+				getEnvironment().getTaskName(), this));
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.nephele.template.AbstractInvokable#cancel()
+	 */
+	@Override
+	public void cancel() throws Exception
+	{
+		this.taskCanceled = true;
+	}
+
+	/**
+	 * Sets the class-loader to be used to load the user code.
+	 *
+	 * @param cl The class-loader to be used to load the user code.
+	 */
+	public void setUserCodeClassLoader(ClassLoader cl)
+	{
+		this.userCodeClassLoader = cl;
+	}
+}
@@ -0,0 +1,197 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.task;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.nephele.execution.librarycache.LibraryCacheManager;
+import eu.stratosphere.nephele.io.MutableReader;
+import eu.stratosphere.nephele.io.MutableRecordReader;
+import eu.stratosphere.nephele.io.MutableUnionRecordReader;
+import eu.stratosphere.nephele.template.AbstractTask;
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactDouble;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparator;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparatorFactory;
+import eu.stratosphere.pact.runtime.task.util.PactRecordNepheleReaderIterator;
+import eu.stratosphere.pact.runtime.task.util.TaskConfig;
+
+/**
+ * Detects the skewed keys of a Match whose inputs are both hash partitioned. The task runs with a degree of
+ * parallelism of one and collects the weighted key samples that the {@link SampleTask}s draw from both inputs.
+ * It estimates the frequency of every sampled key in each input from the weights of its samples.
+ * <p>
+ * A key is skewed in an input, if it alone accounts for more records than the hash partitioning assigns to a
+ * partition on average, i.e. for more than the input's total weight divided by the number of partitions. The
+ * records of a skewed key are spread over all partitions on the input in which the key has the larger share,
+ * and replicated to all partitions on the other input.
+ * <p>
+ * The keys are identified by their hash codes, as the output emitters identify them. Samples of different keys
+ * with the same hash code are counted together. For every skewed key, the task emits a record that holds the
+ * hash code at position <code>0</code> and the number of the input that spreads the key at position
+ * <code>1</code>. The records are broadcast to the {@link PartitionTask}s of both inputs.
+ */
+public class SkewDetectionTask extends AbstractTask
+{
+	private static final Log LOG = LogFactory.getLog(SkewDetectionTask.class);
+
+	// --------------------------------------------------------------------------------------------
+
+	private MutableObjectIterator<PactRecord> input;
+
+	private Collector<PactRecord> output;
+
+	private TaskConfig config;
+
+	private ClassLoader userCodeClassLoader;
+
+	private volatile boolean taskCanceled;
+
+	// --------------------------------------------------------------------------------------------
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.nephele.template.AbstractInvokable#registerInputOutput()
+	 */
+	@Override
+	public void registerInputOutput()
+	{
+		if (this.userCodeClassLoader == null) {
+			try {
+				this.userCodeClassLoader = LibraryCacheManager.getClassLoader(getEnvironment().getJobID());
+			} catch (IOException ioe) {
+				throw new RuntimeException("Library cache manager could not be instantiated.", ioe);
+			}
+		}
+		this.config = new TaskConfig(getTaskConfiguration());
+
+		// the samples of all samplers arrive on individual gates
+		final int groupSize = this.config.getGroupSize(1);
+		final MutableReader<PactRecord> reader;
+		if (groupSize < 2) {
+			reader = new MutableRecordReader<PactRecord>(this);
+		} else {
+			@SuppressWarnings("unchecked")
+			final MutableRecordReader<PactRecord>[] readers = new MutableRecordReader[groupSize];
+			for (int i = 0; i < groupSize; i++) {
+				readers[i] = new MutableRecordReader<PactRecord>(this);
+			}
+			reader = new MutableUnionRecordReader<PactRecord>(readers);
+		}
+		this.input = new PactRecordNepheleReaderIterator(reader);
+
+		try {
+			this.output = RegularPactTask.getOutputCollector(this, this.config, this.userCodeClassLoader, null,
+				this.config.getNumOutputs());
+		} catch (Exception ex) {
+			throw new RuntimeException("Initializing the output handlers failed: " + ex.getMessage(), ex);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.nephele.template.AbstractInvokable#invoke()
+	 */
+	@Override
+	public void invoke() throws Exception
+	{
+		final PactRecordComparator comparator = PactRecordComparatorFactory.get().createComparator(
+			this.config.getConfigForInputParameters(0), this.userCodeClassLoader);
+		final int numPartitions = this.config.getNumberOfSkewPartitions();
+		if (numPartitions < 1) {
+			throw new Exception("The skew detection task was configured with an invalid number of partitions: " +
+				numPartitions);
+		}
+
+		final int weightPos = comparator.getKeyPositions().length;
+		final PactDouble weight = new PactDouble();
+		final PactInteger inputNum = new PactInteger();
+
+		// sum up the weights of the samples per key hash and input. the keys are kept sorted by their hash
+		// codes, such that repeated executions emit the skewed keys in the same order
+		final Map<Integer, double[]> keyWeights = new TreeMap<Integer, double[]>();
+		final double[] totalWeights = new double[2];
+		final PactRecord record = new PactRecord();
+
+		while (!this.taskCanceled && this.input.next(record)) {
+			final int input = record.getField(weightPos + 1, inputNum).getValue();
+			final double w = record.getField(weightPos, weight).getValue();
+			final Integer hash = Integer.valueOf(comparator.hash(record));
+
+			double[] weights = keyWeights.get(hash);
+			if (weights == null) {
+				weights = new double[2];
+				keyWeights.put(hash, weights);
+			}
+			weights[input] += w;
+			totalWeights[input] += w;
+		}
+
+		if (this.taskCanceled) {
+			return;
+		}
+
+		final PactInteger hashCode = new PactInteger();
+		final PactInteger spreadInput = new PactInteger();
+		final PactRecord skewedKey = new PactRecord(2);
+		int numSkewed = 0;
+
+		for (Map.Entry<Integer, double[]> entry : keyWeights.entrySet()) {
+			final double[] weights = entry.getValue();
+			final double share1 = totalWeights[0] > 0.0 ? weights[0] / totalWeights[0] : 0.0;
+			final double share2 = totalWeights[1] > 0.0 ? weights[1] / totalWeights[1] : 0.0;
+
+			if (share1 * numPartitions > 1.0 || share2 * numPartitions > 1.0) {
+				hashCode.setValue(entry.getKey().intValue());
+				spreadInput.setValue(share1 >= share2 ? 0 : 1);
+				skewedKey.setField(0, hashCode);
+				skewedKey.setField(1, spreadInput);
+				this.output.collect(skewedKey);
+				numSkewed++;
+			}
+		}
+		this.output.close();
+
+		if (LOG.isDebugEnabled())
+			LOG.debug(RegularPactTask.constructLogString("Detected " + numSkewed + " skewed keys among " +
+				keyWeights.size() + " sampled keys", getEnvironment().getTaskName(), this));
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.nephele.template.AbstractInvokable#cancel()
+	 */
+	@Override
+	public void cancel() throws Exception
+	{
+		this.taskCanceled = true;
+	}
+
+	/**
+	 * Sets the class-loader to be used to load the user code.
+	 *
+	 * @param cl The class-loader to be used to load the user code.
+	 */
+	public void setUserCodeClassLoader(ClassLoader cl)
+	{
+		this.userCodeClassLoader = cl;
+	}
+}
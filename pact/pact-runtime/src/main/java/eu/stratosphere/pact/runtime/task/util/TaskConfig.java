@@ -24,12 +24,15 @@ import java.util.HashSet;
 import java.util.Set;
 
 import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
 import eu.stratosphere.pact.common.contract.DataDistribution;
 import eu.stratosphere.pact.common.generic.types.TypeComparatorFactory;
 import eu.stratosphere.pact.common.generic.types.TypePairComparatorFactory;
 import eu.stratosphere.pact.common.generic.types.TypeSerializerFactory;
 import eu.stratosphere.pact.common.stubs.Stub;
+import eu.stratosphere.pact.common.type.Key;
 import eu.stratosphere.pact.common.util.InstantiationUtil;
+import eu.stratosphere.pact.common.util.PactConfigConstants;
 import eu.stratosphere.pact.runtime.shipping.ShipStrategy.ShipStrategyType;
 import eu.stratosphere.pact.runtime.task.PactDriver;
 import eu.stratosphere.pact.runtime.task.chaining.ChainedDriver;
@@ -63,6 +66,8 @@ public class TaskConfig
 		SORT,
 		// the input is sorted, during sorting a combiner is applied
 		COMBININGSORT,
+		// the input is grouped and combined in a hash table, which spills partitions when the memory is exhausted
+		HASH_AGGREGATE,
 		// the first input is build side, the second side is probe side of a hybrid hash table
 		HYBRIDHASH_FIRST,
 		// the second input is build side, the first side is probe side of a hybrid hash table
@@ -107,6 +112,20 @@ public class TaskConfig
 	
 	private static final String OUTPUT_PARAMETERS_PREFIX = "pact.out.param.";
 	
+	private static final String OUTPUT_SKEW_SPREAD_KEYS_PREFIX = "pact.out.skew.spread.";
+	
+	private static final String OUTPUT_SKEW_REPLICATE_KEYS_PREFIX = "pact.out.skew.replicate.";
+	
+	private static final String RANGE_SAMPLE_SIZE = "pact.range.samples";
+	
+	private static final String RANGE_SAMPLE_SEED = "pact.range.seed";
+	
+	private static final String RANGE_NUM_PARTITIONS = "pact.range.partitions";
+	
+	private static final String SKEW_INPUT = "pact.skew.input";
+	
+	private static final String SKEW_NUM_PARTITIONS = "pact.skew.partitions";
+	
 	private static final String INPUT_TYPE_SERIALIZER_FACTORY_PREFIX = "pact.in.serializer.";
 	
 	private static final String INPUT_TYPE_COMPARATOR_FACTORY_PREFIX = "pact.in.comparator.";
@@ -143,6 +162,22 @@ public class TaskConfig
 	private static final String NUM_FILEHANDLES = "pact.filehandles.num";
 	
 	private static final String SORT_SPILLING_THRESHOLD = "pact.sort.spillthreshold";
+	
+	private static final String SORT_PARALLELISM = "pact.sort.parallelism";
+	
+	private static final String HASH_JOIN_FALLBACK = "pact.hash.fallback";
+	
+	private static final String HASH_JOIN_SHARED_TABLE = "pact.hash.shared";
+	
+	private static final String STATISTICS_DIRECTORY = "pact.statistics.dir";
+	
+	private static final String STATISTICS_SIGNATURE = "pact.statistics.signature";
+	
+	private static final String STATISTICS_NUM_KEYS = "pact.statistics.keys.num";
+	
+	private static final String STATISTICS_KEY_POSITIONS_PREFIX = "pact.statistics.keys.positions.";
+	
+	private static final String STATISTICS_KEY_CLASS_PREFIX = "pact.statistics.keys.class.";
 
 	// --------------------------------------------------------------------------------------------
 	
@@ -471,6 +506,290 @@ public class TaskConfig
 		}
 	}
 	
+	/**
+	 * Sets the hash codes of the skewed keys for an output that uses the skew handling hash partitioning.
+	 * 
+	 * @param outputNum The number of the output.
+	 * @param spreadKeyHashes The hash codes of the keys whose records are spread over all receivers.
+	 * @param replicateKeyHashes The hash codes of the keys whose records are replicated to all receivers.
+	 */
+	public void setOutputSkewedKeyHashes(int outputNum, int[] spreadKeyHashes, int[] replicateKeyHashes)
+	{
+		this.config.setBytes(OUTPUT_SKEW_SPREAD_KEYS_PREFIX + outputNum, encodeIntArray(spreadKeyHashes));
+		this.config.setBytes(OUTPUT_SKEW_REPLICATE_KEYS_PREFIX + outputNum, encodeIntArray(replicateKeyHashes));
+	}
+	
+	/**
+	 * Gets the hash codes of the keys whose records are spread over all receivers by the given output.
+	 * 
+	 * @param outputNum The number of the output.
+	 * @return The hash codes of the spread keys, or <code>null</code>, if none are set.
+	 */
+	public int[] getOutputSpreadKeyHashes(int outputNum)
+	{
+		return decodeIntArray(this.config.getBytes(OUTPUT_SKEW_SPREAD_KEYS_PREFIX + outputNum, null));
+	}
+	
+	/**
+	 * Gets the hash codes of the keys whose records are replicated to all receivers by the given output.
+	 * 
+	 * @param outputNum The number of the output.
+	 * @return The hash codes of the replicated keys, or <code>null</code>, if none are set.
+	 */
+	public int[] getOutputReplicateKeyHashes(int outputNum)
+	{
+		return decodeIntArray(this.config.getBytes(OUTPUT_SKEW_REPLICATE_KEYS_PREFIX + outputNum, null));
+	}
+	
+	private static byte[] encodeIntArray(int[] values)
+	{
+		final byte[] bytes = new byte[values.length * 4];
+		for (int i = 0; i < values.length; i++) {
+			final int v = values[i];
+			bytes[4 * i]     = (byte) (v >>> 24);
+			bytes[4 * i + 1] = (byte) (v >>> 16);
+			bytes[4 * i + 2] = (byte) (v >>> 8);
+			bytes[4 * i + 3] = (byte) v;
+		}
+		return bytes;
+	}
+	
+	private static int[] decodeIntArray(byte[] bytes)
+	{
+		if (bytes == null) {
+			return null;
+		}
+		if (bytes.length % 4 != 0) {
+			throw new CorruptConfigurationException("The encoded array of integers has an invalid length.");
+		}
+		
+		final int[] values = new int[bytes.length / 4];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = ((bytes[4 * i] & 0xff) << 24) | ((bytes[4 * i + 1] & 0xff) << 16) |
+						((bytes[4 * i + 2] & 0xff) << 8) | (bytes[4 * i + 3] & 0xff);
+		}
+		return values;
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	//                     Parameters for the sampling based range partitioning
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Sets the number of records that a sampling task draws from its input.
+	 * 
+	 * @param numSamples The number of samples.
+	 */
+	public void setRangeSampleSize(int numSamples) {
+		if (numSamples < 1) {
+			throw new IllegalArgumentException();
+		}
+		
+		this.config.setInteger(RANGE_SAMPLE_SIZE, numSamples);
+	}
+	
+	/**
+	 * Gets the number of records that a sampling task draws from its input. Returns <tt>-1</tt>, if the
+	 * value has not been set.
+	 * 
+	 * @return The number of samples.
+	 */
+	public int getRangeSampleSize() {
+		return this.config.getInteger(RANGE_SAMPLE_SIZE, -1);
+	}
+	
+	/**
+	 * Sets the seed of the random number generator with which a sampling task draws its sample. The parallel
+	 * instances of the task derive their own seeds from it.
+	 * 
+	 * @param seed The seed.
+	 */
+	public void setRangeSampleSeed(long seed) {
+		this.config.setLong(RANGE_SAMPLE_SEED, seed);
+	}
+	
+	/**
+	 * Gets the seed of the random number generator with which a sampling task draws its sample.
+	 * 
+	 * @param defaultSeed The seed to return, if the value has not been set.
+	 * @return The seed.
+	 */
+	public long getRangeSampleSeed(long defaultSeed) {
+		return this.config.getLong(RANGE_SAMPLE_SEED, defaultSeed);
+	}
+	
+	/**
+	 * Sets the number of partitions for which a histogram task computes the range boundaries.
+	 * 
+	 * @param numPartitions The number of partitions.
+	 */
+	public void setNumberOfRangePartitions(int numPartitions) {
+		if (numPartitions < 1) {
+			throw new IllegalArgumentException();
+		}
+		
+		this.config.setInteger(RANGE_NUM_PARTITIONS, numPartitions);
+	}
+	
+	/**
+	 * Gets the number of partitions for which a histogram task computes the range boundaries. Returns
+	 * <tt>-1</tt>, if the value has not been set.
+	 * 
+	 * @return The number of partitions.
+	 */
+	public int getNumberOfRangePartitions() {
+		return this.config.getInteger(RANGE_NUM_PARTITIONS, -1);
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	//                          Parameters for the detection of skewed keys
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Sets the input of the Match whose records a sampling task samples, or a partitioning task partitions,
+	 * for the detection of skewed keys.
+	 * 
+	 * @param input The input of the Match, <code>0</code> for the first and <code>1</code> for the second input.
+	 */
+	public void setSkewDetectionInput(int input) {
+		if (input != 0 && input != 1) {
+			throw new IllegalArgumentException();
+		}
+		
+		this.config.setInteger(SKEW_INPUT, input);
+	}
+	
+	/**
+	 * Gets the input of the Match whose records a sampling or partitioning task handles for the detection of
+	 * skewed keys. Returns <tt>-1</tt>, if the task does not take part in the detection of skewed keys.
+	 * 
+	 * @return The input of the Match.
+	 */
+	public int getSkewDetectionInput() {
+		return this.config.getInteger(SKEW_INPUT, -1);
+	}
+	
+	/**
+	 * Sets the number of partitions of the Match whose skewed keys a skew detection task detects.
+	 * 
+	 * @param numPartitions The number of partitions.
+	 */
+	public void setNumberOfSkewPartitions(int numPartitions) {
+		if (numPartitions < 1) {
+			throw new IllegalArgumentException();
+		}
+		
+		this.config.setInteger(SKEW_NUM_PARTITIONS, numPartitions);
+	}
+	
+	/**
+	 * Gets the number of partitions of the Match whose skewed keys a skew detection task detects. Returns
+	 * <tt>-1</tt>, if the value has not been set.
+	 * 
+	 * @return The number of partitions.
+	 */
+	public int getNumberOfSkewPartitions() {
+		return this.config.getInteger(SKEW_NUM_PARTITIONS, -1);
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	//                       Parameters for the collection of runtime statistics
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Makes the task collect statistics about the output of its operator and persist them in the given
+	 * statistics directory under the given operator signature.
+	 * 
+	 * @param directory The path of the statistics directory.
+	 * @param signature The signature that identifies the operator across jobs.
+	 */
+	public void setStatisticsCollection(String directory, String signature) {
+		this.config.setString(STATISTICS_DIRECTORY, directory);
+		this.config.setString(STATISTICS_SIGNATURE, signature);
+	}
+	
+	/**
+	 * Gets the path of the directory to persist the output statistics in. Returns <code>null</code>,
+	 * if the task does not collect statistics.
+	 * 
+	 * @return The path of the statistics directory.
+	 */
+	public String getStatisticsDirectory() {
+		return this.config.getString(STATISTICS_DIRECTORY, null);
+	}
+	
+	/**
+	 * Gets the signature under which the output statistics are persisted. Returns <code>null</code>,
+	 * if the task does not collect statistics.
+	 * 
+	 * @return The signature of the operator.
+	 */
+	public String getStatisticsSignature() {
+		return this.config.getString(STATISTICS_SIGNATURE, null);
+	}
+	
+	/**
+	 * Adds a set of key fields for which the number of distinct values in the output is estimated.
+	 * 
+	 * @param positions The positions of the key fields.
+	 * @param keyClasses The types of the key fields.
+	 */
+	public void addStatisticsKey(int[] positions, Class<? extends Key>[] keyClasses)
+	{
+		if (positions.length != keyClasses.length) {
+			throw new IllegalArgumentException("The number of key positions and key classes must match.");
+		}
+		
+		final int num = this.config.getInteger(STATISTICS_NUM_KEYS, 0);
+		this.config.setBytes(STATISTICS_KEY_POSITIONS_PREFIX + num, encodeIntArray(positions));
+		for (int i = 0; i < keyClasses.length; i++) {
+			this.config.setClass(STATISTICS_KEY_CLASS_PREFIX + num + '.' + i, keyClasses[i]);
+		}
+		this.config.setInteger(STATISTICS_NUM_KEYS, num + 1);
+	}
+	
+	/**
+	 * Gets the number of key field sets for which the number of distinct values in the output is estimated.
+	 * 
+	 * @return The number of key field sets.
+	 */
+	public int getNumberOfStatisticsKeys() {
+		return this.config.getInteger(STATISTICS_NUM_KEYS, 0);
+	}
+	
+	/**
+	 * Gets the positions of the fields of the given key field set.
+	 * 
+	 * @param keyNum The number of the key field set.
+	 * @return The positions of the key fields.
+	 */
+	public int[] getStatisticsKeyPositions(int keyNum) {
+		return decodeIntArray(this.config.getBytes(STATISTICS_KEY_POSITIONS_PREFIX + keyNum, null));
+	}
+	
+	/**
+	 * Gets the types of the fields of the given key field set.
+	 * 
+	 * @param keyNum The number of the key field set.
+	 * @param cl The class loader used to load the key classes.
+	 * @return The types of the key fields.
+	 * @throws ClassNotFoundException Thrown, if a key class could not be loaded.
+	 */
+	public Class<? extends Key>[] getStatisticsKeyClasses(int keyNum, ClassLoader cl) throws ClassNotFoundException
+	{
+		final int[] positions = getStatisticsKeyPositions(keyNum);
+		@SuppressWarnings("unchecked")
+		final Class<? extends Key>[] keyClasses = new Class[positions.length];
+		for (int i = 0; i < keyClasses.length; i++) {
+			final String className = this.config.getString(STATISTICS_KEY_CLASS_PREFIX + keyNum + '.' + i, null);
+			if (className == null) {
+				throw new CorruptConfigurationException("The class of statistics key field " + i + " is missing.");
+			}
+			keyClasses[i] = Class.forName(className, true, cl).asSubclass(Key.class);
+		}
+		return keyClasses;
+	}
+	
 	// --------------------------------------------------------------------------------------------
 	//                       Parameters to configure the memory and I/O behavior
 	// --------------------------------------------------------------------------------------------
@@ -529,6 +848,39 @@ public class TaskConfig
 		this.config.setFloat(SORT_SPILLING_THRESHOLD, threshold);
 	}
 	
+	/**
+	 * Sets the number of threads that sort the buffers of the task's sorters.
+	 * 
+	 * @param parallelism The number of sorting threads.
+	 */
+	public void setSortParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException();
+		}
+		
+		this.config.setInteger(SORT_PARALLELISM, parallelism);
+	}
+	
+	/**
+	 * Sets whether the task's hash joins may fall back to a different strategy for the partitions that do not
+	 * fit into memory after the first partitioning pass.
+	 * 
+	 * @param enabled True, if the fallback is enabled, false otherwise.
+	 */
+	public void setHashJoinFallbackEnabled(boolean enabled) {
+		this.config.setBoolean(HASH_JOIN_FALLBACK, enabled);
+	}
+	
+	/**
+	 * Sets the key under which the local instances of the task share the hash table built from their broadcasted
+	 * build side. All instances of the task must use the same key, which must be unique within the job.
+	 * 
+	 * @param key The key of the shared hash table.
+	 */
+	public void setSharedHashTableKey(String key) {
+		this.config.setString(HASH_JOIN_SHARED_TABLE, key);
+	}
+	
 	// --------------------------------------------------------------------------------------------
 
 	/**
@@ -562,6 +914,43 @@ public class TaskConfig
 		return this.config.getFloat(SORT_SPILLING_THRESHOLD, 0.7f);
 	}
 	
+	/**
+	 * Gets the number of threads that sort the buffers of the task's sorters.
+	 * <p>
+	 * If the value is not set, this method returns the value configured for the task manager under
+	 * {@link PactConfigConstants#SORT_PARALLELISM_KEY}.
+	 * 
+	 * @return The number of sorting threads.
+	 */
+	public int getSortParallelism() {
+		return this.config.getInteger(SORT_PARALLELISM, GlobalConfiguration.getInteger(
+			PactConfigConstants.SORT_PARALLELISM_KEY, PactConfigConstants.DEFAULT_SORT_PARALLELISM));
+	}
+	
+	/**
+	 * Checks whether the task's hash joins may fall back to a different strategy for the partitions that do not
+	 * fit into memory after the first partitioning pass.
+	 * <p>
+	 * If the value is not set, this method returns the value configured for the task manager under
+	 * {@link PactConfigConstants#HASH_JOIN_FALLBACK_KEY}.
+	 * 
+	 * @return True, if the fallback is enabled, false otherwise.
+	 */
+	public boolean isHashJoinFallbackEnabled() {
+		return this.config.getBoolean(HASH_JOIN_FALLBACK, GlobalConfiguration.getBoolean(
+			PactConfigConstants.HASH_JOIN_FALLBACK_KEY, PactConfigConstants.DEFAULT_HASH_JOIN_FALLBACK));
+	}
+	
+	/**
+	 * Gets the key under which the local instances of the task share the hash table built from their broadcasted
+	 * build side.
+	 * 
+	 * @return The key of the shared hash table, or <code>null</code>, if every instance builds its own table.
+	 */
+	public String getSharedHashTableKey() {
+		return this.config.getString(HASH_JOIN_SHARED_TABLE, null);
+	}
+	
 	// --------------------------------------------------------------------------------------------
 	//                                    Parameters for Stub Chaining
 	// --------------------------------------------------------------------------------------------
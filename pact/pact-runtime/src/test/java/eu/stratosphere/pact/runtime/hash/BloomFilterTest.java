@@ -0,0 +1,91 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.hash;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
+
+public class BloomFilterTest
+{
+	private static final int FILTER_BYTES = 112;
+
+	@Test
+	public void testNoFalseNegatives()
+	{
+		final MemorySegment seg = new MemorySegment(new byte[1024], 0, 1024);
+		final BloomFilter filter = new BloomFilter(FILTER_BYTES, 3);
+		filter.setBitsLocation(seg, 128);
+		filter.reset();
+
+		final Random rnd = new Random(42);
+		final int[] codes = new int[50];
+		for (int i = 0; i < codes.length; i++) {
+			codes[i] = rnd.nextInt();
+			filter.addHash(codes[i]);
+		}
+		for (int i = 0; i < codes.length; i++) {
+			Assert.assertTrue("Hash code that was added is not contained in the filter.", filter.testHash(codes[i]));
+		}
+
+		// the filter must not touch bytes outside its region
+		for (int i = 0; i < 128; i++) {
+			Assert.assertEquals(0, seg.get(i));
+		}
+		for (int i = 128 + FILTER_BYTES; i < seg.size(); i++) {
+			Assert.assertEquals(0, seg.get(i));
+		}
+	}
+
+	@Test
+	public void testFalsePositiveRate()
+	{
+		final MemorySegment seg = new MemorySegment(new byte[FILTER_BYTES], 0, FILTER_BYTES);
+		final BloomFilter filter = new BloomFilter(FILTER_BYTES, 3);
+		filter.setBitsLocation(seg, 0);
+		filter.reset();
+
+		// sequential codes, like the hash codes of integer keys in one bucket
+		for (int i = 0; i < 20; i++) {
+			filter.addHash(i * 1021);
+		}
+
+		int falsePositives = 0;
+		for (int i = 0; i < 10000; i++) {
+			if (filter.testHash(i * 1021 + 1)) {
+				falsePositives++;
+			}
+		}
+		Assert.assertTrue("Too many false positives: " + falsePositives, falsePositives < 100);
+	}
+
+	@Test
+	public void testReset()
+	{
+		final MemorySegment seg = new MemorySegment(new byte[FILTER_BYTES], 0, FILTER_BYTES);
+		final BloomFilter filter = new BloomFilter(FILTER_BYTES, 3);
+		filter.setBitsLocation(seg, 0);
+		filter.reset();
+
+		filter.addHash(17);
+		Assert.assertTrue(filter.testHash(17));
+		filter.reset();
+		Assert.assertFalse(filter.testHash(17));
+	}
+}
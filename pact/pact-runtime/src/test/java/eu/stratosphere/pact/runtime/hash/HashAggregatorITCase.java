@@ -0,0 +1,287 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.hash;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.services.iomanager.IOManager;
+import eu.stratosphere.nephele.services.memorymanager.MemoryManager;
+import eu.stratosphere.nephele.services.memorymanager.spi.DefaultMemoryManager;
+import eu.stratosphere.nephele.template.AbstractInvokable;
+import eu.stratosphere.pact.common.generic.types.TypeComparator;
+import eu.stratosphere.pact.common.generic.types.TypeSerializer;
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.stubs.ReduceStub;
+import eu.stratosphere.pact.common.type.Key;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.common.type.base.PactString;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparator;
+import eu.stratosphere.pact.runtime.plugable.PactRecordSerializer;
+import eu.stratosphere.pact.runtime.test.util.DummyInvokable;
+import eu.stratosphere.pact.runtime.test.util.UniformPactRecordGenerator;
+
+/**
+ * Tests the {@link HashAggregator} with inputs that fit into memory and with inputs that need to be spilled.
+ */
+public class HashAggregatorITCase
+{
+	private static final AbstractInvokable MEM_OWNER = new DummyInvokable();
+
+	private MemoryManager memManager;
+
+	private IOManager ioManager;
+
+	private TypeSerializer<PactRecord> serializer;
+
+	private TypeComparator<PactRecord> comparator;
+
+	@Before
+	public void setup()
+	{
+		final int[] keyPos = new int[] {0};
+		@SuppressWarnings("unchecked")
+		final Class<? extends Key>[] keyType = (Class<? extends Key>[]) new Class[] { PactInteger.class };
+
+		this.serializer = PactRecordSerializer.get();
+		this.comparator = new PactRecordComparator(keyPos, keyType);
+
+		this.memManager = new DefaultMemoryManager(32 * 1024 * 1024);
+		this.ioManager = new IOManager();
+	}
+
+	@After
+	public void tearDown()
+	{
+		// shut down I/O manager and Memory Manager and verify the correct shutdown
+		this.ioManager.shutdown();
+		if (!this.ioManager.isProperlyShutDown()) {
+			Assert.fail("I/O manager was not property shut down.");
+		}
+		if (!this.memManager.verifyEmpty()) {
+			Assert.fail("Not all memory was properly released to the memory manager --> Memory Leak.");
+		}
+	}
+
+	@Test
+	public void testInMemoryAggregation() throws Exception
+	{
+		final int numKeys = 1000;
+		final int numVals = 50;
+
+		final Map<Integer, Integer> result = aggregate(new UniformPactRecordGenerator(numKeys, numVals, false),
+			new SummingStub(), 1024 * 1024);
+
+		Assert.assertEquals("Wrong number of keys.", numKeys, result.size());
+		final int expectedSum = numVals * (numVals - 1) / 2;
+		for (Map.Entry<Integer, Integer> entry : result.entrySet()) {
+			Assert.assertEquals("Wrong aggregate for key " + entry.getKey(), expectedSum, entry.getValue().intValue());
+		}
+	}
+
+	@Test
+	public void testSpillingAggregation() throws Exception
+	{
+		final int numKeys = 200000;
+		final int numVals = 5;
+
+		final Map<Integer, Integer> result = aggregate(new UniformPactRecordGenerator(numKeys, numVals, false),
+			new SummingStub(), 2 * 1024 * 1024);
+
+		Assert.assertEquals("Wrong number of keys.", numKeys, result.size());
+		final int expectedSum = numVals * (numVals - 1) / 2;
+		for (Map.Entry<Integer, Integer> entry : result.entrySet()) {
+			Assert.assertEquals("Wrong aggregate for key " + entry.getKey(), expectedSum, entry.getValue().intValue());
+		}
+	}
+
+	@Test
+	public void testGrowingRecords() throws Exception
+	{
+		final int numKeys = 20000;
+		final int numVals = 10;
+
+		final Map<Integer, Integer> result = aggregate(new UniformPactRecordGenerator(numKeys, numVals, false),
+			new ConcatenatingStub(), 1024 * 1024);
+
+		Assert.assertEquals("Wrong number of keys.", numKeys, result.size());
+		for (Map.Entry<Integer, Integer> entry : result.entrySet()) {
+			Assert.assertEquals("Wrong aggregate for key " + entry.getKey(), numVals, entry.getValue().intValue());
+		}
+	}
+
+	@Test
+	public void testMultipleResultsPerCombine() throws Exception
+	{
+		final int numKeys = 5000;
+		final int numVals = 20;
+
+		final HashAggregator<PactRecord> aggregator = new HashAggregator<PactRecord>(new ForwardingStub(),
+			this.memManager, this.ioManager, new UniformPactRecordGenerator(numKeys, numVals, false), MEM_OWNER,
+			this.serializer, this.comparator, 1024 * 1024);
+
+		try {
+			final MutableObjectIterator<PactRecord> iter = aggregator.getIterator();
+			final PactRecord record = new PactRecord();
+			final Map<Integer, Integer> counts = new HashMap<Integer, Integer>();
+			int lastKey = -1;
+
+			while (iter.next(record)) {
+				final int key = record.getField(0, PactInteger.class).getValue();
+				final Integer count = counts.get(key);
+				if (count != null && key != lastKey) {
+					Assert.fail("Records of key " + key + " are not grouped.");
+				}
+				counts.put(key, count == null ? 1 : count + 1);
+				lastKey = key;
+			}
+
+			Assert.assertEquals("Wrong number of keys.", numKeys, counts.size());
+			for (Map.Entry<Integer, Integer> entry : counts.entrySet()) {
+				Assert.assertEquals("Wrong number of records for key " + entry.getKey(), numVals,
+					entry.getValue().intValue());
+			}
+		} finally {
+			aggregator.close();
+		}
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	private Map<Integer, Integer> aggregate(MutableObjectIterator<PactRecord> input, ReduceStub stub, long memory)
+	throws Exception
+	{
+		final HashAggregator<PactRecord> aggregator = new HashAggregator<PactRecord>(stub, this.memManager,
+			this.ioManager, input, MEM_OWNER, this.serializer, this.comparator, memory);
+
+		try {
+			final MutableObjectIterator<PactRecord> iter = aggregator.getIterator();
+			final PactRecord record = new PactRecord();
+			final Map<Integer, Integer> result = new HashMap<Integer, Integer>();
+
+			while (iter.next(record)) {
+				final int key = record.getField(0, PactInteger.class).getValue();
+				final int value = record.getField(1, PactInteger.class).getValue();
+				if (result.put(key, value) != null) {
+					Assert.fail("Key " + key + " was returned more than once.");
+				}
+			}
+			return result;
+		} finally {
+			aggregator.close();
+		}
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/**
+	 * Sums up the integer values of all records.
+	 */
+	public static final class SummingStub extends ReduceStub
+	{
+		private final PactInteger value = new PactInteger();
+
+		@Override
+		public void reduce(Iterator<PactRecord> records, Collector<PactRecord> out) throws Exception
+		{
+			PactRecord record = null;
+			int sum = 0;
+			while (records.hasNext()) {
+				record = records.next();
+				sum += record.getField(1, this.value).getValue();
+			}
+			this.value.setValue(sum);
+			record.setField(1, this.value);
+			out.collect(record);
+		}
+
+		@Override
+		public void combine(Iterator<PactRecord> records, Collector<PactRecord> out) throws Exception {
+			reduce(records, out);
+		}
+	}
+
+	/**
+	 * Appends a character per value to a string field, such that the records grow with every combine call.
+	 * The value field holds the number of values combined so far.
+	 */
+	public static final class ConcatenatingStub extends ReduceStub
+	{
+		private final PactInteger count = new PactInteger();
+
+		private final PactString string = new PactString();
+
+		private final StringBuilder builder = new StringBuilder();
+
+		private final PactRecord result = new PactRecord();
+
+		@Override
+		public void reduce(Iterator<PactRecord> records, Collector<PactRecord> out) throws Exception
+		{
+			PactRecord record = null;
+			int count = 0;
+			this.builder.setLength(0);
+			while (records.hasNext()) {
+				record = records.next();
+				if (record.getNumFields() > 2) {
+					count += record.getField(1, this.count).getValue();
+					this.builder.append(record.getField(2, this.string).getValue());
+				} else {
+					count++;
+					this.builder.append('x');
+				}
+			}
+			this.count.setValue(count);
+			this.string.setValue(this.builder.toString());
+			this.result.setField(0, record.getField(0, PactInteger.class));
+			this.result.setField(1, this.count);
+			this.result.setField(2, this.string);
+			out.collect(this.result);
+		}
+
+		@Override
+		public void combine(Iterator<PactRecord> records, Collector<PactRecord> out) throws Exception {
+			reduce(records, out);
+		}
+	}
+
+	/**
+	 * Emits all records unchanged, such that no record is ever aggregated.
+	 */
+	public static final class ForwardingStub extends ReduceStub
+	{
+		@Override
+		public void reduce(Iterator<PactRecord> records, Collector<PactRecord> out) throws Exception
+		{
+			while (records.hasNext()) {
+				out.collect(records.next());
+			}
+		}
+
+		@Override
+		public void combine(Iterator<PactRecord> records, Collector<PactRecord> out) throws Exception {
+			reduce(records, out);
+		}
+	}
+}
@@ -21,6 +21,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CyclicBarrier;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -29,6 +30,7 @@ import org.junit.Test;
 
 import eu.stratosphere.nephele.services.iomanager.IOManager;
 import eu.stratosphere.nephele.services.memorymanager.MemoryManager;
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
 import eu.stratosphere.nephele.services.memorymanager.spi.DefaultMemoryManager;
 import eu.stratosphere.nephele.template.AbstractTask;
 import eu.stratosphere.pact.common.generic.AbstractStub;
@@ -55,8 +57,10 @@ import eu.stratosphere.pact.runtime.test.util.TestData.Generator.KeyMode;
 import eu.stratosphere.pact.runtime.test.util.TestData.Generator.ValueMode;
 import eu.stratosphere.pact.runtime.test.util.types.IntPair;
 import eu.stratosphere.pact.runtime.test.util.types.IntPairComparator;
+import eu.stratosphere.pact.runtime.test.util.types.IntPairPairComparator;
 import eu.stratosphere.pact.runtime.test.util.types.IntPairSerializer;
 import eu.stratosphere.pact.runtime.test.util.UnionIterator;
+import eu.stratosphere.pact.runtime.task.util.TaskConfig.LocalStrategy;
 
 
 public class HashMatchIteratorITCase
@@ -70,6 +74,10 @@ public class HashMatchIteratorITCase
 	private static final long SEED1 = 561349061987311L;
 	private static final long SEED2 = 231434613412342L;
 	
+	private static final int FALLBACK_MEMORY_SIZE = 96 * 32 * 1024;	// memory that forces the fallback
+	
+	private static final int FALLBACK_LARGE_INPUT_SIZE = 1000000;
+	
 	private final AbstractTask parentTask = new DummyInvokable();
 
 	private IOManager ioManager;
@@ -487,9 +495,256 @@ public class HashMatchIteratorITCase
 		}
 	}
 	
+	@Test
+	public void testBuildFirstFallbackSwitchesRoles() {
+		try {
+			// the large build side is partitioned beyond the memory, the small probe side is built upon instead
+			final int numProbeKeys = 20000;
+			final MutableObjectIterator<IntPair> input1 = new UniformIntPairGenerator(FALLBACK_LARGE_INPUT_SIZE, 1, false);
+			final MutableObjectIterator<IntPair> input2 = new UniformIntPairGenerator(numProbeKeys, 1, false);
+			
+			final IntPairMatchCountingMatcher matcher = new IntPairMatchCountingMatcher();
+			final Collector<PactRecord> collector = new DiscardingOutputCollector();
+			
+			final BuildFirstHashMatchIterator<IntPair, IntPair, PactRecord> iterator = 
+					new BuildFirstHashMatchIterator<IntPair, IntPair, PactRecord>(
+						input1, input2, this.pairSerializer, this.pairComparator, 
+						this.pairSerializer, this.pairComparator, new IntPairPairComparator(),
+						this.memoryManager, this.ioManager, this.parentTask, FALLBACK_MEMORY_SIZE);
+			iterator.enableFallback(new IntPairPairComparator(), 64, 0.7f);
+			
+			iterator.open();
+			while (iterator.callWithNextKey(matcher, collector));
+			iterator.close();
+			
+			Assert.assertEquals("Wrong number of matches.", numProbeKeys, matcher.numMatches);
+			Assert.assertEquals("The roles were not switched.", LocalStrategy.HYBRIDHASH_SECOND,
+				iterator.getFallbackStrategy());
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail("An exception occurred during the test: " + e.getMessage());
+		}
+	}
+	
+	@Test
+	public void testBuildFirstFallbackSortMerges() {
+		try {
+			// both sides are partitioned beyond the memory, so they are sorted and merged
+			final MutableObjectIterator<IntPair> input1 = new UniformIntPairGenerator(FALLBACK_LARGE_INPUT_SIZE, 1, false);
+			final MutableObjectIterator<IntPair> input2 = new UniformIntPairGenerator(
+				FALLBACK_LARGE_INPUT_SIZE + FALLBACK_LARGE_INPUT_SIZE / 5, 1, false);
+			
+			final IntPairMatchCountingMatcher matcher = new IntPairMatchCountingMatcher();
+			final Collector<PactRecord> collector = new DiscardingOutputCollector();
+			
+			final BuildFirstHashMatchIterator<IntPair, IntPair, PactRecord> iterator = 
+					new BuildFirstHashMatchIterator<IntPair, IntPair, PactRecord>(
+						input1, input2, this.pairSerializer, this.pairComparator, 
+						this.pairSerializer, this.pairComparator, new IntPairPairComparator(),
+						this.memoryManager, this.ioManager, this.parentTask, FALLBACK_MEMORY_SIZE);
+			iterator.enableFallback(new IntPairPairComparator(), 64, 0.7f);
+			
+			iterator.open();
+			while (iterator.callWithNextKey(matcher, collector));
+			iterator.close();
+			
+			Assert.assertEquals("Wrong number of matches.", FALLBACK_LARGE_INPUT_SIZE, matcher.numMatches);
+			Assert.assertEquals("The inputs were not sorted.", LocalStrategy.SORT_BOTH_MERGE,
+				iterator.getFallbackStrategy());
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail("An exception occurred during the test: " + e.getMessage());
+		}
+	}
+	
+	@Test
+	public void testBuildSecondFallbackSwitchesRoles() {
+		try {
+			final int numProbeKeys = 20000;
+			final MutableObjectIterator<IntPair> input1 = new UniformIntPairGenerator(numProbeKeys, 1, false);
+			final MutableObjectIterator<IntPair> input2 = new UniformIntPairGenerator(FALLBACK_LARGE_INPUT_SIZE, 1, false);
+			
+			final IntPairMatchCountingMatcher matcher = new IntPairMatchCountingMatcher();
+			final Collector<PactRecord> collector = new DiscardingOutputCollector();
+			
+			final BuildSecondHashMatchIterator<IntPair, IntPair, PactRecord> iterator = 
+					new BuildSecondHashMatchIterator<IntPair, IntPair, PactRecord>(
+						input1, input2, this.pairSerializer, this.pairComparator, 
+						this.pairSerializer, this.pairComparator, new IntPairPairComparator(),
+						this.memoryManager, this.ioManager, this.parentTask, FALLBACK_MEMORY_SIZE);
+			iterator.enableFallback(new IntPairPairComparator(), 64, 0.7f);
+			
+			iterator.open();
+			while (iterator.callWithNextKey(matcher, collector));
+			iterator.close();
+			
+			Assert.assertEquals("Wrong number of matches.", numProbeKeys, matcher.numMatches);
+			Assert.assertEquals("The roles were not switched.", LocalStrategy.HYBRIDHASH_FIRST,
+				iterator.getFallbackStrategy());
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail("An exception occurred during the test: " + e.getMessage());
+		}
+	}
+	
+	@Test
+	public void testSharedBuildTable() {
+		try {
+			// the instances probe the same table, which holds the small build side in memory
+			final SharedMatchRunner[] runners = runSharedMatches(4, 10000, 20000, FALLBACK_MEMORY_SIZE);
+			
+			for (int i = 0; i < runners.length; i++) {
+				Assert.assertEquals("Wrong number of matches.", 10000, runners[i].matcher.numMatches);
+				Assert.assertTrue("The instance did not probe the shared table.", runners[i].probedSharedTable);
+			}
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail("An exception occurred during the test: " + e.getMessage());
+		}
+	}
+	
+	@Test
+	public void testSharedBuildTableNotFittingIntoMemory() {
+		try {
+			// the build side is spilled, so every instance joins on its own
+			final int numProbeKeys = 20000;
+			final SharedMatchRunner[] runners = runSharedMatches(2, FALLBACK_LARGE_INPUT_SIZE, numProbeKeys,
+				FALLBACK_MEMORY_SIZE);
+			
+			for (int i = 0; i < runners.length; i++) {
+				Assert.assertEquals("Wrong number of matches.", numProbeKeys, runners[i].matcher.numMatches);
+				Assert.assertFalse("The instance probed the spilled table.", runners[i].probedSharedTable);
+			}
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail("An exception occurred during the test: " + e.getMessage());
+		}
+	}
+	
+	@Test
+	public void testInterruptedBuilderWaitsForSharedTableRelease() {
+		try {
+			final List<MemorySegment> memory = this.memoryManager.allocatePages(new DummyInvokable(), 33);
+			final MutableHashTable<IntPair, IntPair> table = new MutableHashTable<IntPair, IntPair>(
+				new IntPairSerializer(), new IntPairSerializer(), new IntPairComparator(), new IntPairComparator(),
+				new IntPairPairComparator(), memory, this.ioManager);
+			
+			final String tableKey = "shared-interrupted";
+			final SharedHashTable<IntPair, IntPair> builderHandle = SharedHashTable.acquire(tableKey);
+			final SharedHashTable<IntPair, IntPair> proberHandle = SharedHashTable.acquire(tableKey);
+			Assert.assertTrue(builderHandle.claimBuild());
+			builderHandle.publish(table);
+			Assert.assertSame(table, proberHandle.awaitTable());
+			
+			// the builder is canceled while the other instance still probes its table
+			final boolean[] interruptRestored = new boolean[1];
+			final Thread builder = new Thread() {
+				@Override
+				public void run() {
+					builderHandle.release(true);
+					interruptRestored[0] = Thread.currentThread().isInterrupted();
+				}
+			};
+			builder.start();
+			Thread.sleep(100);
+			builder.interrupt();
+			builder.join(500);
+			Assert.assertTrue("The builder released the table while it was still probed.", builder.isAlive());
+			
+			proberHandle.release(false);
+			builder.join(10000);
+			Assert.assertFalse("The builder did not return after the table was released.", builder.isAlive());
+			Assert.assertTrue("The interrupt flag of the builder was not restored.", interruptRestored[0]);
+			
+			this.memoryManager.release(memory);
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail("An exception occurred during the test: " + e.getMessage());
+		}
+	}
+	
 	// --------------------------------------------------------------------------------------------
 	//                                    Utilities
 	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Runs the given number of instances of a shared hash join concurrently, each with its own copy of the
+	 * build side and its own probe side. All instances are opened before any of them starts probing.
+	 */
+	private SharedMatchRunner[] runSharedMatches(int numInstances, int numBuildKeys, int numProbeKeys, long memory)
+	throws Exception
+	{
+		final String tableKey = "shared-" + numInstances + '-' + numBuildKeys + '-' + numProbeKeys;
+		final CyclicBarrier opened = new CyclicBarrier(numInstances);
+		
+		final SharedMatchRunner[] runners = new SharedMatchRunner[numInstances];
+		for (int i = 0; i < numInstances; i++) {
+			final SharedHashMatchIterator.BuildFirst<IntPair, IntPair, PactRecord> iterator =
+				new SharedHashMatchIterator.BuildFirst<IntPair, IntPair, PactRecord>(
+					new UniformIntPairGenerator(numBuildKeys, 1, false), new UniformIntPairGenerator(numProbeKeys, 1, false),
+					new IntPairSerializer(), new IntPairComparator(), new IntPairSerializer(), new IntPairComparator(),
+					new IntPairPairComparator(), this.memoryManager, this.ioManager, new DummyInvokable(), memory, tableKey);
+			iterator.enableFallback(new IntPairPairComparator(), 64, 0.7f);
+			runners[i] = new SharedMatchRunner(iterator, opened);
+			runners[i].start();
+		}
+		
+		for (int i = 0; i < numInstances; i++) {
+			runners[i].join();
+			if (runners[i].error != null) {
+				runners[i].error.printStackTrace();
+				Assert.fail("An instance of the shared hash join failed: " + runners[i].error.getMessage());
+			}
+		}
+		return runners;
+	}
+	
+	private static final class SharedMatchRunner extends Thread
+	{
+		private final SharedHashMatchIterator<IntPair, IntPair, IntPair, IntPair, PactRecord> iterator;
+		
+		private final CyclicBarrier opened;
+		
+		private final IntPairMatchCountingMatcher matcher = new IntPairMatchCountingMatcher();
+		
+		private volatile boolean probedSharedTable;
+		
+		private volatile Throwable error;
+		
+		private SharedMatchRunner(SharedHashMatchIterator<IntPair, IntPair, IntPair, IntPair, PactRecord> iterator,
+				CyclicBarrier opened)
+		{
+			this.iterator = iterator;
+			this.opened = opened;
+		}
+		
+		@Override
+		public void run() {
+			try {
+				final Collector<PactRecord> collector = new DiscardingOutputCollector();
+				try {
+					this.iterator.open();
+					this.probedSharedTable = this.iterator.isProbingSharedTable();
+					this.opened.await();
+					while (this.iterator.callWithNextKey(this.matcher, collector));
+				}
+				finally {
+					this.iterator.close();
+				}
+			}
+			catch (Throwable t) {
+				this.error = t;
+				// release the instances waiting for this one
+				this.opened.reset();
+			}
+		}
+	}
 
 	private Map<TestData.Key, Collection<RecordMatch>> matchRecordValues(
 			Map<TestData.Key, Collection<TestData.Value>> leftMap,
@@ -718,6 +973,18 @@ public class HashMatchIteratorITCase
 		}
 	}
 	
+	private static final class IntPairMatchCountingMatcher extends AbstractStub implements GenericMatcher<IntPair, IntPair, PactRecord>
+	{
+		private int numMatches;
+		
+		@Override
+		public void match(IntPair rec1, IntPair rec2, Collector<PactRecord> out)
+		{
+			Assert.assertEquals("Key does not match for matching IntPair combination.", rec1.getKey(), rec2.getKey());
+			this.numMatches++;
+		}
+	}
+	
 	private static final class IntPairRecordPairComparator implements TypePairComparator<IntPair, PactRecord>
 	{
 		private int reference;
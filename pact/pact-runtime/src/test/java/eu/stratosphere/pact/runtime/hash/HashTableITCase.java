@@ -1325,6 +1325,60 @@ public class HashTableITCase
 		this.memManager.release(join.getFreedMemory());
 	}
 	
+	/*
+	 * Validates the join result when the spilled partitions receive many probe records without join partner,
+	 * which are discarded by the Bloom filters of the spilled buckets.
+	 */
+	@Test
+	public void testSpillingHashJoinWithNonMatchingProbeKeys() throws IOException
+	{
+		final int NUM_BUILD_KEYS = 500000;
+		final int NUM_BUILD_VALS = 2;
+		final int NUM_PROBE_KEYS = 2000000;
+		final int NUM_PROBE_VALS = 1;
+		
+		MutableObjectIterator<IntPair> buildInput = new UniformIntPairGenerator(NUM_BUILD_KEYS, NUM_BUILD_VALS, false);
+		MutableObjectIterator<IntPair> probeInput = new UniformIntPairGenerator(NUM_PROBE_KEYS, NUM_PROBE_VALS, true);
+
+		// allocate the memory for the HashTable
+		List<MemorySegment> memSegments;
+		try {
+			memSegments = this.memManager.allocatePages(MEM_OWNER, 128);
+		}
+		catch (MemoryAllocationException maex) {
+			fail("Memory for the Join could not be provided.");
+			return;
+		}
+		
+		final MutableHashTable<IntPair, IntPair> join = new MutableHashTable<IntPair, IntPair>(
+				this.pairBuildSideAccesssor, this.pairProbeSideAccesssor, 
+				this.pairBuildSideComparator, this.pairProbeSideComparator, this.pairComparator,
+				memSegments, ioManager);
+		join.open(buildInput, probeInput);
+		
+		final IntPair record = new IntPair();
+		int numRecordsInJoinResult = 0;
+		
+		while (join.nextRecord()) {
+			final int probeKey = join.getCurrentProbeRecord().getKey();
+			
+			HashBucketIterator<IntPair, IntPair> buildSide = join.getBuildSideIterator();
+			while (buildSide.next(record)) {
+				if (probeKey >= NUM_BUILD_KEYS) {
+					fail("Probe record without build side partner was matched.");
+				}
+				Assert.assertEquals("Probe-side key was different than build-side key.", probeKey, record.getKey());
+				numRecordsInJoinResult++;
+			}
+		}
+		Assert.assertEquals("Wrong number of records in join result.", NUM_BUILD_KEYS * NUM_BUILD_VALS * NUM_PROBE_VALS,
+			numRecordsInJoinResult);
+		
+		join.close();
+		
+		this.memManager.release(join.getFreedMemory());
+	}
+	
 	@Test
 	public void testInMemoryReOpen() throws IOException
 	{
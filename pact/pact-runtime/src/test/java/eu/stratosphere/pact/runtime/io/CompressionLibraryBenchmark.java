@@ -0,0 +1,203 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.pact.runtime.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.io.channels.MemoryBuffer;
+import eu.stratosphere.nephele.io.compression.CompressionBufferProvider;
+import eu.stratosphere.nephele.io.compression.CompressionLibrary;
+import eu.stratosphere.nephele.io.compression.Compressor;
+import eu.stratosphere.nephele.io.compression.Decompressor;
+import eu.stratosphere.nephele.taskmanager.bufferprovider.LocalBufferPool;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.runtime.test.util.TestData;
+import eu.stratosphere.pact.runtime.test.util.TestData.Generator.KeyMode;
+import eu.stratosphere.pact.runtime.test.util.TestData.Generator.ValueMode;
+
+/**
+ * Compares the compression libraries on buffers of serialized {@link PactRecord}s, as they are shipped through the
+ * network channels. For each library, the benchmark reports the compression ratio as well as the compression and
+ * decompression throughput. Libraries whose classes or native code are not available are skipped, so by default
+ * only the pure Java LZ4 library is measured. The native libraries are measured if their modules are on the class
+ * path and the directory containing the native code is passed with the system property
+ * <code>compression.nativeLibraryDir</code>.
+ */
+public class CompressionLibraryBenchmark
+{
+	private static final String[] LIBRARY_CLASSES = {
+		"eu.stratosphere.nephele.io.compression.library.lz4.Lz4Library",
+		"eu.stratosphere.nephele.io.compression.library.snappy.SnappyLibrary",
+		"eu.stratosphere.nephele.io.compression.library.zlib.ZlibLibrary",
+		"eu.stratosphere.nephele.io.compression.library.lzma.LzmaLibrary",
+		"eu.stratosphere.nephele.io.compression.library.bzip2.Bzip2Library"
+	};
+
+	private static final long SEED = 649180756312423613L;
+
+	private static final int KEY_MAX = Integer.MAX_VALUE;
+
+	private static final int VALUE_LENGTH = 118;
+
+	private static final int DATA_SIZE = 32 * 1024 * 1024;
+
+	private static final int WARMUP_ROUNDS = 2;
+
+	private static final int MEASURED_ROUNDS = 3;
+
+	@Test
+	public void testRandomKeys() throws Exception
+	{
+		runBenchmark("random keys", createRecordData(KeyMode.RANDOM));
+	}
+
+	@Test
+	public void testSortedKeys() throws Exception
+	{
+		runBenchmark("sorted keys", createRecordData(KeyMode.SORTED));
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	private void runBenchmark(String dataSetName, byte[] data) throws Exception
+	{
+		final String nativeLibraryDir = System.getProperty("compression.nativeLibraryDir");
+
+		for (String libraryClass : LIBRARY_CLASSES) {
+			final CompressionLibrary library = loadLibrary(libraryClass, nativeLibraryDir);
+			if (library == null) {
+				System.out.println(dataSetName + ": skipping unavailable library " + libraryClass);
+				continue;
+			}
+
+			runLibrary(dataSetName, library, data);
+		}
+	}
+
+	private void runLibrary(String dataSetName, CompressionLibrary library, byte[] data) throws Exception
+	{
+		final LocalBufferPool bufferPool = new LocalBufferPool(8, false);
+		final int chunkSize = library.getUncompressedBufferSize(bufferPool.getMaximumBufferSize());
+
+		// the compressor and the decompressor run on different nodes, so they use separate buffer providers
+		final Compressor compressor = library.createNewCompressor(new CompressionBufferProvider(bufferPool, false));
+		final Decompressor decompressor =
+			library.createNewDecompressor(new CompressionBufferProvider(bufferPool, false));
+
+		final ByteBuffer chunk = ByteBuffer.wrap(data);
+		final byte[] check = new byte[chunkSize];
+
+		long compressedBytes = 0;
+		long uncompressedBytes = 0;
+		long compressionTime = 0;
+		long decompressionTime = 0;
+
+		try {
+			for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+				for (int offset = 0; offset < data.length; offset += chunkSize) {
+					final int length = Math.min(chunkSize, data.length - offset);
+					chunk.limit(offset + length).position(offset);
+
+					final Buffer uncompressed = bufferPool.requestEmptyBuffer(length);
+					uncompressed.write(chunk);
+
+					long start = System.nanoTime();
+					final Buffer compressed = compressor.compress(uncompressed);
+					final long compressTime = System.nanoTime() - start;
+
+					// emulate the transmission, which switches the compressed buffer to read mode
+					compressed.finishWritePhase();
+					final int compressedSize = compressed.size();
+
+					start = System.nanoTime();
+					final Buffer decompressed = decompressor.decompress(compressed);
+					final long decompressTime = System.nanoTime() - start;
+
+					if (round == 0) {
+						final ByteBuffer result = ((MemoryBuffer) decompressed).getByteBuffer();
+						Assert.assertEquals("Decompressed size differs", length, result.remaining());
+						result.duplicate().get(check, 0, length);
+						for (int i = 0; i < length; i++) {
+							Assert.assertEquals("Decompressed data differs", data[offset + i], check[i]);
+						}
+					}
+					decompressed.recycleBuffer();
+
+					if (round >= WARMUP_ROUNDS) {
+						compressedBytes += compressedSize;
+						uncompressedBytes += length;
+						compressionTime += compressTime;
+						decompressionTime += decompressTime;
+					}
+				}
+			}
+		} finally {
+			compressor.shutdown();
+			decompressor.shutdown();
+			bufferPool.destroy();
+		}
+
+		System.out.println(dataSetName + ": " + library.getLibraryName()
+			+ " ratio " + String.format("%.3f", compressedBytes / (double) uncompressedBytes)
+			+ ", compression " + throughput(uncompressedBytes, compressionTime) + " MB/s"
+			+ ", decompression " + throughput(uncompressedBytes, decompressionTime) + " MB/s.");
+	}
+
+	private static String throughput(long bytes, long nanos)
+	{
+		return String.format("%.1f", (bytes / (1024.0 * 1024.0)) / (nanos / 1000000000.0));
+	}
+
+	private static CompressionLibrary loadLibrary(String libraryClass, String nativeLibraryDir)
+	{
+		try {
+			final Constructor<? extends CompressionLibrary> constructor =
+				Class.forName(libraryClass).asSubclass(CompressionLibrary.class).getConstructor(String.class);
+			return constructor.newInstance(nativeLibraryDir);
+		} catch (Exception e) {
+			return null;
+		} catch (LinkageError e) {
+			// the native code could not be loaded
+			return null;
+		}
+	}
+
+	private static byte[] createRecordData(KeyMode keyMode) throws IOException
+	{
+		final TestData.Generator generator =
+			new TestData.Generator(SEED, KEY_MAX, VALUE_LENGTH, keyMode, ValueMode.RANDOM_LENGTH);
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(DATA_SIZE);
+		final DataOutputStream out = new DataOutputStream(bytes);
+		final PactRecord record = new PactRecord();
+
+		while (bytes.size() < DATA_SIZE) {
+			generator.next(record);
+			record.write(out);
+		}
+		out.flush();
+
+		return bytes.toByteArray();
+	}
+}
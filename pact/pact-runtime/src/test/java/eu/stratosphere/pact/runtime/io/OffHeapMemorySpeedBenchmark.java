@@ -0,0 +1,170 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.io;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.services.iomanager.IOManager;
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
+import eu.stratosphere.nephele.services.memorymanager.spi.DefaultMemoryManager;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.runtime.hash.MutableHashTable;
+import eu.stratosphere.pact.runtime.hash.MutableHashTable.HashBucketIterator;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparator;
+import eu.stratosphere.pact.runtime.plugable.PactRecordSerializer;
+import eu.stratosphere.pact.runtime.sort.NormalizedKeySorter;
+import eu.stratosphere.pact.runtime.sort.QuickSort;
+import eu.stratosphere.pact.runtime.test.util.DummyInvokable;
+import eu.stratosphere.pact.runtime.test.util.TestData;
+import eu.stratosphere.pact.runtime.test.util.TestData.Generator.KeyMode;
+import eu.stratosphere.pact.runtime.test.util.TestData.Generator.ValueMode;
+import eu.stratosphere.pact.runtime.test.util.TestData.Key;
+import eu.stratosphere.pact.runtime.test.util.UniformIntPairGenerator;
+import eu.stratosphere.pact.runtime.test.util.types.IntPair;
+import eu.stratosphere.pact.runtime.test.util.types.IntPairComparator;
+import eu.stratosphere.pact.runtime.test.util.types.IntPairPairComparator;
+import eu.stratosphere.pact.runtime.test.util.types.IntPairSerializer;
+
+/**
+ * Compares the speed of heap and off-heap memory segments on the two most memory intensive
+ * paths: sorting in the {@link NormalizedKeySorter} and building and probing the {@link MutableHashTable}.
+ * Each path is run for several rounds per memory type, the first rounds serving as warm-up.
+ */
+public class OffHeapMemorySpeedBenchmark
+{
+	private static final long SEED = 649180756312423613L;
+
+	private static final int MEMORY_SIZE = 1024 * 1024 * 64;
+
+	private static final int MEMORY_PAGE_SIZE = 32 * 1024;
+
+	private static final int WARMUP_ROUNDS = 3;
+
+	private static final int MEASURED_ROUNDS = 5;
+
+	private static final int NUM_HASH_KEYS = 200000;
+
+	private DefaultMemoryManager memoryManager;
+
+	@After
+	public void afterTest() {
+		if (this.memoryManager != null) {
+			if (!this.memoryManager.verifyEmpty()) {
+				Assert.fail("Memory Leak: Some memory has not been returned to the memory manager.");
+			}
+			this.memoryManager.shutdown();
+			this.memoryManager = null;
+		}
+	}
+
+	@Test
+	public void testNormalizedKeySorterSpeed() throws Exception
+	{
+		final long heapTime = runSorter(false);
+		final long offHeapTime = runSorter(true);
+
+		System.out.println("NormalizedKeySorter: heap " + heapTime + " msecs, off-heap " + offHeapTime + " msecs.");
+	}
+
+	@Test
+	public void testMutableHashTableSpeed() throws Exception
+	{
+		final long heapTime = runHashTable(false);
+		final long offHeapTime = runHashTable(true);
+
+		System.out.println("MutableHashTable: heap " + heapTime + " msecs, off-heap " + offHeapTime + " msecs.");
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	private long runSorter(boolean offHeap) throws Exception
+	{
+		this.memoryManager = new DefaultMemoryManager(MEMORY_SIZE, MEMORY_PAGE_SIZE, offHeap);
+		final List<MemorySegment> memory = this.memoryManager.allocatePages(new DummyInvokable(), MEMORY_SIZE / MEMORY_PAGE_SIZE);
+
+		@SuppressWarnings("unchecked")
+		final PactRecordComparator comparator = new PactRecordComparator(new int[] {0}, new Class[]{Key.class});
+		final NormalizedKeySorter<PactRecord> sorter = new NormalizedKeySorter<PactRecord>(PactRecordSerializer.get(), comparator, memory);
+		final TestData.Generator generator = new TestData.Generator(SEED, Integer.MAX_VALUE, 20, KeyMode.RANDOM, ValueMode.FIX_LENGTH);
+		final QuickSort qs = new QuickSort();
+		final PactRecord record = new PactRecord();
+
+		long measuredTime = 0;
+		for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+			sorter.reset();
+			generator.reset();
+
+			final long start = System.nanoTime();
+			while (generator.next(record) && sorter.write(record));
+			qs.sort(sorter);
+			final long time = System.nanoTime() - start;
+
+			if (round >= WARMUP_ROUNDS) {
+				measuredTime += time;
+			}
+		}
+
+		this.memoryManager.release(sorter.dispose());
+		afterTest();
+		return measuredTime / MEASURED_ROUNDS / 1000000;
+	}
+
+	private long runHashTable(boolean offHeap) throws Exception
+	{
+		this.memoryManager = new DefaultMemoryManager(MEMORY_SIZE, MEMORY_PAGE_SIZE, offHeap);
+		final IOManager ioManager = new IOManager();
+		final IntPair record = new IntPair();
+
+		long measuredTime = 0;
+		try {
+			for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+				final List<MemorySegment> memory = this.memoryManager.allocatePages(new DummyInvokable(), MEMORY_SIZE / MEMORY_PAGE_SIZE);
+				final MutableHashTable<IntPair, IntPair> table = new MutableHashTable<IntPair, IntPair>(
+					new IntPairSerializer(), new IntPairSerializer(), new IntPairComparator(), new IntPairComparator(),
+					new IntPairPairComparator(), memory, ioManager);
+
+				final long start = System.nanoTime();
+				table.open(new UniformIntPairGenerator(NUM_HASH_KEYS, 2, false), new UniformIntPairGenerator(NUM_HASH_KEYS, 5, true));
+
+				int numMatches = 0;
+				while (table.nextRecord()) {
+					final HashBucketIterator<IntPair, IntPair> buildSide = table.getBuildSideIterator();
+					while (buildSide.next(record)) {
+						numMatches++;
+					}
+				}
+				final long time = System.nanoTime() - start;
+
+				table.close();
+				this.memoryManager.release(table.getFreedMemory());
+				Assert.assertEquals("Wrong number of join results.", NUM_HASH_KEYS * 2 * 5, numMatches);
+
+				if (round >= WARMUP_ROUNDS) {
+					measuredTime += time;
+				}
+			}
+		} finally {
+			ioManager.shutdown();
+		}
+
+		afterTest();
+		return measuredTime / MEASURED_ROUNDS / 1000000;
+	}
+}
@@ -17,6 +17,8 @@ package eu.stratosphere.pact.runtime.sort;
 
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -454,4 +456,245 @@ public class NormalizedKeySorterTest
 		// release the memory occupied by the buffers
 		this.memoryManager.release(sorter.dispose());
 	}
+	
+	@Test
+	public void testParallelSort() throws Exception
+	{
+		final int numSegments = MEMORY_SIZE / MEMORY_PAGE_SIZE;
+		final List<MemorySegment> memory = this.memoryManager.allocatePages(new DummyInvokable(), numSegments);
+		
+		NormalizedKeySorter<PactRecord> sorter = newSortBuffer(memory);
+		TestData.Generator generator = new TestData.Generator(SEED, KEY_MAX, VALUE_LENGTH, KeyMode.RANDOM,
+			ValueMode.RANDOM_LENGTH);
+		
+		// write the records
+		PactRecord record = new PactRecord();
+		do {
+			generator.next(record);
+		}
+		while (sorter.write(record));
+		
+		final ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			new ParallelQuickSort(executor, 4).sort(sorter);
+		} finally {
+			executor.shutdown();
+		}
+		
+		MutableObjectIterator<PactRecord> iter = sorter.getIterator();
+		PactRecord readTarget = new PactRecord();
+		
+		Key current = new Key();
+		Key last = new Key();
+		
+		iter.next(readTarget);
+		readTarget.getFieldInto(0, last);
+		
+		while (iter.next(readTarget)) {
+			readTarget.getFieldInto(0, current);
+			
+			final int cmp = last.compareTo(current);
+			if (cmp > 0)
+				Assert.fail("Next key is not larger or equal to previous key.");
+			
+			Key tmp = current;
+			current = last;
+			last = tmp;
+		}
+		
+		// release the memory occupied by the buffers
+		this.memoryManager.release(sorter.dispose());
+	}
+	
+	@Test
+	public void testParallelSortLongStringKeys() throws Exception
+	{
+		final int numSegments = MEMORY_SIZE / MEMORY_PAGE_SIZE;
+		final List<MemorySegment> memory = this.memoryManager.allocatePages(new DummyInvokable(), numSegments);
+		
+		@SuppressWarnings("unchecked")
+		PactRecordComparator accessors = new PactRecordComparator(new int[] {1}, new Class[]{Value.class});
+		NormalizedKeySorter<PactRecord> sorter = new NormalizedKeySorter<PactRecord>(PactRecordSerializer.get(), accessors, memory);
+		
+		TestData.Generator generator = new TestData.Generator(SEED, KEY_MAX, VALUE_LENGTH, KeyMode.RANDOM,
+			ValueMode.FIX_LENGTH);
+		
+		// write the records
+		PactRecord record = new PactRecord();
+		do {
+			generator.next(record);
+		}
+		while (sorter.write(record));
+		
+		final ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			new ParallelQuickSort(executor, 4).sort(sorter);
+		} finally {
+			executor.shutdown();
+		}
+		
+		MutableObjectIterator<PactRecord> iter = sorter.getIterator();
+		PactRecord readTarget = new PactRecord();
+		
+		Value current = new Value();
+		Value last = new Value();
+		
+		iter.next(readTarget);
+		readTarget.getFieldInto(1, last);
+		
+		while (iter.next(readTarget)) {
+			readTarget.getFieldInto(1, current);
+			
+			final int cmp = last.compareTo(current);
+			if (cmp > 0)
+				Assert.fail("Next value is not larger or equal to previous value.");
+			
+			Value tmp = current;
+			current = last;
+			last = tmp;
+		}
+		
+		// release the memory occupied by the buffers
+		this.memoryManager.release(sorter.dispose());
+	}
+	
+	@Test
+	public void testRadixSort() throws Exception
+	{
+		final int numSegments = MEMORY_SIZE / MEMORY_PAGE_SIZE;
+		final List<MemorySegment> memory = this.memoryManager.allocatePages(new DummyInvokable(), numSegments);
+		
+		NormalizedKeySorter<PactRecord> sorter = newSortBuffer(memory);
+		TestData.Generator generator = new TestData.Generator(SEED, KEY_MAX, VALUE_LENGTH, KeyMode.RANDOM,
+			ValueMode.RANDOM_LENGTH);
+		
+		// write the records
+		PactRecord record = new PactRecord();
+		do {
+			generator.next(record);
+		}
+		while (sorter.write(record));
+		
+		Assert.assertTrue("Radix sort should be applicable to integer keys.", RadixSort.isApplicable(sorter));
+		new RadixSort().sort(sorter);
+		
+		MutableObjectIterator<PactRecord> iter = sorter.getIterator();
+		PactRecord readTarget = new PactRecord();
+		
+		Key current = new Key();
+		Key last = new Key();
+		
+		iter.next(readTarget);
+		readTarget.getFieldInto(0, last);
+		
+		while (iter.next(readTarget)) {
+			readTarget.getFieldInto(0, current);
+			
+			final int cmp = last.compareTo(current);
+			if (cmp > 0)
+				Assert.fail("Next key is not larger or equal to previous key.");
+			
+			Key tmp = current;
+			current = last;
+			last = tmp;
+		}
+		
+		// release the memory occupied by the buffers
+		this.memoryManager.release(sorter.dispose());
+	}
+	
+	@Test
+	public void testRadixSortDescending() throws Exception
+	{
+		final int numSegments = MEMORY_SIZE / MEMORY_PAGE_SIZE;
+		final List<MemorySegment> memory = this.memoryManager.allocatePages(new DummyInvokable(), numSegments);
+		
+		@SuppressWarnings("unchecked")
+		PactRecordComparator accessors = new PactRecordComparator(new int[] {0}, new Class[]{Key.class}, new boolean[] {false});
+		NormalizedKeySorter<PactRecord> sorter = new NormalizedKeySorter<PactRecord>(PactRecordSerializer.get(), accessors, memory);
+		TestData.Generator generator = new TestData.Generator(SEED, KEY_MAX, VALUE_LENGTH, KeyMode.RANDOM,
+			ValueMode.RANDOM_LENGTH);
+		
+		// write the records
+		PactRecord record = new PactRecord();
+		do {
+			generator.next(record);
+		}
+		while (sorter.write(record));
+		
+		new RadixSort().sort(sorter);
+		
+		MutableObjectIterator<PactRecord> iter = sorter.getIterator();
+		PactRecord readTarget = new PactRecord();
+		
+		Key current = new Key();
+		Key last = new Key();
+		
+		iter.next(readTarget);
+		readTarget.getFieldInto(0, last);
+		
+		while (iter.next(readTarget)) {
+			readTarget.getFieldInto(0, current);
+			
+			final int cmp = last.compareTo(current);
+			if (cmp < 0)
+				Assert.fail("Next key is not smaller or equal to previous key.");
+			
+			Key tmp = current;
+			current = last;
+			last = tmp;
+		}
+		
+		// release the memory occupied by the buffers
+		this.memoryManager.release(sorter.dispose());
+	}
+	
+	@Test
+	public void testRadixSortLongStringKeys() throws Exception
+	{
+		final int numSegments = MEMORY_SIZE / MEMORY_PAGE_SIZE;
+		final List<MemorySegment> memory = this.memoryManager.allocatePages(new DummyInvokable(), numSegments);
+		
+		@SuppressWarnings("unchecked")
+		PactRecordComparator accessors = new PactRecordComparator(new int[] {1}, new Class[]{Value.class});
+		NormalizedKeySorter<PactRecord> sorter = new NormalizedKeySorter<PactRecord>(PactRecordSerializer.get(), accessors, memory);
+		
+		TestData.Generator generator = new TestData.Generator(SEED, KEY_MAX, VALUE_LENGTH, KeyMode.RANDOM,
+			ValueMode.FIX_LENGTH);
+		
+		// write the records
+		PactRecord record = new PactRecord();
+		do {
+			generator.next(record);
+		}
+		while (sorter.write(record));
+		
+		// the normalized keys are only prefixes, equal prefixes are sorted by comparing the records
+		Assert.assertFalse("Radix sort should not be chosen for prefix keys.", RadixSort.isApplicable(sorter));
+		new RadixSort().sort(sorter);
+		
+		MutableObjectIterator<PactRecord> iter = sorter.getIterator();
+		PactRecord readTarget = new PactRecord();
+		
+		Value current = new Value();
+		Value last = new Value();
+		
+		iter.next(readTarget);
+		readTarget.getFieldInto(1, last);
+		
+		while (iter.next(readTarget)) {
+			readTarget.getFieldInto(1, current);
+			
+			final int cmp = last.compareTo(current);
+			if (cmp > 0)
+				Assert.fail("Next value is not larger or equal to previous value.");
+			
+			Value tmp = current;
+			current = last;
+			last = tmp;
+		}
+		
+		// release the memory occupied by the buffers
+		this.memoryManager.release(sorter.dispose());
+	}
 }
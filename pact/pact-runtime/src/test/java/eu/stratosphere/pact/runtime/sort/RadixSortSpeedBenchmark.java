@@ -0,0 +1,204 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.sort;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
+import eu.stratosphere.nephele.services.memorymanager.spi.DefaultMemoryManager;
+import eu.stratosphere.pact.common.type.Key;
+import eu.stratosphere.pact.common.type.NormalizableKey;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactString;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparator;
+import eu.stratosphere.pact.runtime.plugable.PactRecordSerializer;
+import eu.stratosphere.pact.runtime.test.util.DummyInvokable;
+
+/**
+ * Compares the {@link RadixSort} with the {@link QuickSort} on a {@link NormalizedKeySorter} filled with records
+ * in the layout of the TeraSort benchmark: a ten byte random key, followed by a ninety byte payload.
+ * Each sorter is run for several rounds, the first rounds serving as warm-up.
+ */
+public class RadixSortSpeedBenchmark
+{
+	private static final long SEED = 649180756312423613L;
+
+	private static final int MEMORY_SIZE = 1024 * 1024 * 64;
+
+	private static final int MEMORY_PAGE_SIZE = 32 * 1024;
+
+	private static final int PAYLOAD_LENGTH = 90;
+
+	private static final int WARMUP_ROUNDS = 3;
+
+	private static final int MEASURED_ROUNDS = 5;
+
+	private DefaultMemoryManager memoryManager;
+
+	@Before
+	public void beforeTest() {
+		this.memoryManager = new DefaultMemoryManager(MEMORY_SIZE, MEMORY_PAGE_SIZE);
+	}
+
+	@After
+	public void afterTest() {
+		if (this.memoryManager != null) {
+			if (!this.memoryManager.verifyEmpty()) {
+				Assert.fail("Memory Leak: Some memory has not been returned to the memory manager.");
+			}
+			this.memoryManager.shutdown();
+			this.memoryManager = null;
+		}
+	}
+
+	@Test
+	public void testTeraSortKeys() throws Exception
+	{
+		final List<MemorySegment> memory = this.memoryManager.allocatePages(new DummyInvokable(), MEMORY_SIZE / MEMORY_PAGE_SIZE);
+
+		@SuppressWarnings("unchecked")
+		final PactRecordComparator comparator = new PactRecordComparator(new int[] {0}, new Class[]{TeraSortKey.class});
+		final NormalizedKeySorter<PactRecord> sorter = new NormalizedKeySorter<PactRecord>(PactRecordSerializer.get(),
+			comparator, memory, TeraSortKey.KEY_SIZE);
+		Assert.assertTrue("Radix sort is not applicable to the TeraSort keys.", RadixSort.isApplicable(sorter));
+
+		final long quickSortTime = run(sorter, new QuickSort());
+		final long radixSortTime = run(sorter, new RadixSort());
+
+		System.out.println("Sorting " + sorter.size() + " TeraSort records: QuickSort " + quickSortTime +
+			" msecs, RadixSort " + radixSortTime + " msecs.");
+
+		this.memoryManager.release(sorter.dispose());
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	private long run(NormalizedKeySorter<PactRecord> sorter, IndexedSorter indexedSorter) throws Exception
+	{
+		long measuredTime = 0;
+		for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+			fill(sorter);
+
+			final long start = System.nanoTime();
+			indexedSorter.sort(sorter);
+			final long time = System.nanoTime() - start;
+
+			if (round >= WARMUP_ROUNDS) {
+				measuredTime += time;
+			}
+			checkOrder(sorter);
+		}
+		return measuredTime / MEASURED_ROUNDS / 1000000;
+	}
+
+	private static void fill(NormalizedKeySorter<PactRecord> sorter) throws IOException
+	{
+		sorter.reset();
+
+		final Random rnd = new Random(SEED);
+		final TeraSortKey key = new TeraSortKey();
+		final byte[] payload = new byte[PAYLOAD_LENGTH];
+		final PactString value = new PactString();
+		final PactRecord record = new PactRecord(2);
+
+		do {
+			rnd.nextBytes(key.bytes);
+			for (int i = 0; i < PAYLOAD_LENGTH; i++) {
+				payload[i] = (byte) ('A' + rnd.nextInt(26));
+			}
+			value.setValueAscii(payload, 0, PAYLOAD_LENGTH);
+			record.setField(0, key);
+			record.setField(1, value);
+		}
+		while (sorter.write(record));
+	}
+
+	private static void checkOrder(NormalizedKeySorter<PactRecord> sorter) throws IOException
+	{
+		final MutableObjectIterator<PactRecord> iter = sorter.getIterator();
+		final PactRecord record = new PactRecord();
+		TeraSortKey last = new TeraSortKey();
+		TeraSortKey current = new TeraSortKey();
+
+		Assert.assertTrue(iter.next(record));
+		record.getFieldInto(0, last);
+		while (iter.next(record)) {
+			record.getFieldInto(0, current);
+			if (last.compareTo(current) > 0) {
+				Assert.fail("Next key is not larger or equal to previous key.");
+			}
+			final TeraSortKey tmp = last;
+			last = current;
+			current = tmp;
+		}
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/**
+	 * A ten byte key, compared as unsigned bytes, as in the TeraSort benchmark.
+	 */
+	public static final class TeraSortKey implements NormalizableKey
+	{
+		static final int KEY_SIZE = 10;
+
+		final byte[] bytes = new byte[KEY_SIZE];
+
+		@Override
+		public void write(DataOutput out) throws IOException {
+			out.write(this.bytes);
+		}
+
+		@Override
+		public void read(DataInput in) throws IOException {
+			in.readFully(this.bytes);
+		}
+
+		@Override
+		public int compareTo(Key o) {
+			final byte[] other = ((TeraSortKey) o).bytes;
+			for (int i = 0; i < KEY_SIZE; i++) {
+				final int cmp = (this.bytes[i] & 0xff) - (other[i] & 0xff);
+				if (cmp != 0) {
+					return cmp;
+				}
+			}
+			return 0;
+		}
+
+		@Override
+		public int getMaxNormalizedKeyLen() {
+			return KEY_SIZE;
+		}
+
+		@Override
+		public void copyNormalizedKey(byte[] target, int offset, int len) {
+			for (int i = 0; i < len; i++) {
+				target[offset + i] = i < KEY_SIZE ? this.bytes[i] : 0;
+			}
+		}
+	}
+}
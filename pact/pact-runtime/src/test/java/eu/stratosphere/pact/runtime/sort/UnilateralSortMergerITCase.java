@@ -195,6 +195,53 @@ public class UnilateralSortMergerITCase
 		merger.close();
 	}
 
+	@Test
+	public void testInMemorySortUsing10BuffersAndParallelSort() throws Exception
+	{
+		// comparator
+		final Comparator<TestData.Key> keyComparator = new TestData.KeyComparator();
+		
+		final TestData.Generator generator = new TestData.Generator(SEED, KEY_MAX, VALUE_LENGTH, KeyMode.RANDOM, ValueMode.CONSTANT, VAL);
+		final MutableObjectIterator<PactRecord> source = new TestData.GeneratorIterator(generator, NUM_PAIRS);
+
+		// merge iterator
+		LOG.debug("Initializing sortmerger...");
+		
+		Sorter<PactRecord> merger = new UnilateralSortMerger<PactRecord>(this.memoryManager, this.ioManager, 
+				source, this.parentTask, this.pactRecordSerializer, this.pactRecordComparator,
+				64 * 1024 * 1024, 10, 2, 0.9f, 4);
+
+		// emit data
+		LOG.debug("Reading and sorting data...");
+
+		// check order
+		MutableObjectIterator<PactRecord> iterator = merger.getIterator();
+		
+		LOG.debug("Checking results...");
+		int pairsEmitted = 1;
+
+		PactRecord rec1 = new PactRecord();
+		PactRecord rec2 = new PactRecord();
+		
+		Assert.assertTrue(iterator.next(rec1));
+		while (iterator.next(rec2)) {
+			final Key k1 = rec1.getField(0, TestData.Key.class);
+			final Key k2 = rec2.getField(0, TestData.Key.class);
+			pairsEmitted++;
+			
+			Assert.assertTrue(keyComparator.compare(k1, k2) <= 0); 
+			
+			PactRecord tmp = rec1;
+			rec1 = rec2;
+			k1.setKey(k2.getKey());
+			
+			rec2 = tmp;
+		}
+		Assert.assertTrue(NUM_PAIRS == pairsEmitted);
+		
+		merger.close();
+	}
+
 	@Test
 	public void testSpillingSort() throws Exception
 	{
@@ -0,0 +1,193 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.pact.runtime.statistics;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.common.util.FieldSet;
+import eu.stratosphere.pact.runtime.test.util.DiscardingOutputCollector;
+
+/**
+ * Tests the collection of runtime statistics: the distinct value sketch, the observing collector and the store
+ * that persists the statistics of the parallel instances.
+ */
+public class RuntimeStatisticsTest
+{
+	private static final String SIGNATURE = "0123456789abcdef";
+
+	private File directory;
+
+	private RuntimeStatisticsStore store;
+
+	@Before
+	public void setup() throws IOException
+	{
+		this.directory = File.createTempFile("statistics", "");
+		this.directory.delete();
+		this.directory.mkdirs();
+		this.store = new RuntimeStatisticsStore(this.directory.toURI().toString());
+	}
+
+	@After
+	public void tearDown()
+	{
+		delete(this.directory);
+	}
+
+	@Test
+	public void testSketchAccuracy()
+	{
+		final int[] counts = { 10, 1000, 100000, 2000000 };
+		for (int count : counts) {
+			final CardinalitySketch first = new CardinalitySketch();
+			final CardinalitySketch second = new CardinalitySketch();
+			for (int i = 0; i < count; i++) {
+				// every value is added twice, to the two halves in an interleaved fashion
+				(i % 2 == 0 ? first : second).add(i);
+				(i % 3 == 0 ? first : second).add(i);
+			}
+			first.merge(second);
+
+			final double error = Math.abs(first.estimate() - count) / (double) count;
+			Assert.assertTrue("Estimate " + first.estimate() + " for " + count + " distinct values is off by " + error,
+				error < 0.05);
+		}
+	}
+
+	@Test
+	public void testCollectorObservesRecords() throws Exception
+	{
+		final int numRecords = 20000;
+		final StatisticsCollector collector = createCollector("job", 0, 1);
+
+		final PactRecord record = new PactRecord();
+		long numBytes = 0;
+		for (int i = 0; i < numRecords; i++) {
+			record.setField(0, new PactInteger(i));
+			record.setField(1, new PactInteger(i % 100));
+			numBytes += record.getBinaryLength();
+			collector.collect(record);
+		}
+		collector.close();
+
+		final OperatorStatistics stats = this.store.read(SIGNATURE);
+		Assert.assertNotNull(stats);
+		Assert.assertEquals(numRecords, stats.getNumRecords());
+		Assert.assertEquals(numBytes, stats.getNumBytes());
+
+		final Map<FieldSet, Long> distinct = stats.getDistinctCounts();
+		Assert.assertEquals(2, distinct.size());
+		Assert.assertTrue(Math.abs(distinct.get(new FieldSet(0)) - numRecords) < numRecords * 0.05);
+		Assert.assertEquals(100L, distinct.get(new FieldSet(1)).longValue());
+	}
+
+	@Test
+	public void testStoreReadsLatestCompleteRun() throws Exception
+	{
+		// an incomplete run is ignored
+		writeRecords(createCollector("first", 0, 3), 10);
+		writeRecords(createCollector("first", 2, 3), 20);
+		Assert.assertNull(this.store.read(SIGNATURE));
+
+		// the complete run merges the statistics of all instances
+		writeRecords(createCollector("first", 1, 3), 30);
+		Assert.assertEquals(60, this.store.read(SIGNATURE).getNumRecords());
+		setModificationTime("first", System.currentTimeMillis() - 60000);
+
+		// a newer complete run supersedes the older one, whose files are removed
+		writeRecords(createCollector("second", 0, 2), 5);
+		Assert.assertEquals(60, this.store.read(SIGNATURE).getNumRecords());
+		writeRecords(createCollector("second", 1, 2), 7);
+		Assert.assertEquals(12, this.store.read(SIGNATURE).getNumRecords());
+
+		final String[] remaining = new File(this.directory, SIGNATURE).list();
+		Assert.assertEquals(2, remaining.length);
+		for (String name : remaining) {
+			Assert.assertTrue(name.startsWith("second"));
+		}
+
+		Assert.assertNull(this.store.read("unknown"));
+	}
+
+	@Test
+	public void testStoreMergesLocalStrategies() throws Exception
+	{
+		final StatisticsCollector[] collectors = new StatisticsCollector[3];
+		for (int i = 0; i < collectors.length; i++) {
+			collectors[i] = createCollector("job", i, collectors.length);
+			final String strategy = i == 0 ? "HYBRIDHASH_FIRST+SORT_BOTH_MERGE" : "HYBRIDHASH_FIRST";
+			collectors[i].getStatistics().recordLocalStrategy(strategy);
+			writeRecords(collectors[i], 10);
+		}
+
+		final Map<String, Integer> strategies = this.store.read(SIGNATURE).getLocalStrategies();
+		Assert.assertEquals(2, strategies.size());
+		Assert.assertEquals(2, strategies.get("HYBRIDHASH_FIRST").intValue());
+		Assert.assertEquals(1, strategies.get("HYBRIDHASH_FIRST+SORT_BOTH_MERGE").intValue());
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	@SuppressWarnings("unchecked")
+	private StatisticsCollector createCollector(String runId, int instance, int numInstances)
+	{
+		return new StatisticsCollector(new DiscardingOutputCollector(), new int[][] { { 0 }, { 1 } },
+			new Class[][] { { PactInteger.class }, { PactInteger.class } }, this.store, SIGNATURE, runId, instance,
+			numInstances);
+	}
+
+	private static void writeRecords(StatisticsCollector collector, int numRecords)
+	{
+		final PactRecord record = new PactRecord();
+		for (int i = 0; i < numRecords; i++) {
+			record.setField(0, new PactInteger(i));
+			record.setField(1, new PactInteger(i));
+			collector.collect(record);
+		}
+		collector.close();
+	}
+
+	private void setModificationTime(String runId, long time)
+	{
+		for (File file : new File(this.directory, SIGNATURE).listFiles()) {
+			if (file.getName().startsWith(runId)) {
+				file.setLastModified(time);
+			}
+		}
+	}
+
+	private static void delete(File file)
+	{
+		final File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -92,6 +92,46 @@ public class CombineTaskTest extends DriverTestBase<GenericReducer<PactRecord, ?
 		
 	}
 	
+	@Test
+	public void testHashAggregatingCombineTask() {
+
+		int keyCnt = 100;
+		int valCnt = 20;
+		
+		addInput(new UniformPactRecordGenerator(keyCnt, valCnt, false));
+		addOutput(this.outList);
+		
+		CombineDriver<PactRecord> testTask = new CombineDriver<PactRecord>();
+		super.getTaskConfig().setLocalStrategy(LocalStrategy.HASH_AGGREGATE);
+		super.getTaskConfig().setMemorySize(3 * 1024 * 1024);
+		
+		final int[] keyPos = new int[]{0};
+		@SuppressWarnings("unchecked")
+		final Class<? extends Key>[] keyClasses = (Class<? extends Key>[]) new Class[]{ PactInteger.class };
+		addInputComparator(new PactRecordComparator(keyPos, keyClasses));
+		
+		try {
+			testDriver(testTask, MockCombiningReduceStub.class);
+		} catch (Exception e) {
+			LOG.debug(e);
+			Assert.fail("Invoke method caused exception.");
+		}
+		
+		int expSum = 0;
+		for(int i=1;i<valCnt;i++) {
+			expSum+=i;
+		}
+		
+		Assert.assertTrue("Resultset size was "+this.outList.size()+". Expected was "+keyCnt, this.outList.size() == keyCnt);
+		
+		for(PactRecord record : this.outList) {
+			Assert.assertTrue("Incorrect result", record.getField(1, PactInteger.class).getValue() == expSum);
+		}
+		
+		this.outList.clear();
+		
+	}
+	
 	@Test
 	public void testFailingCombineTask() {
 
@@ -0,0 +1,211 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import eu.stratosphere.pact.common.type.Key;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactDouble;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparatorFactory;
+import eu.stratosphere.pact.runtime.shipping.ShipStrategy.ShipStrategyType;
+import eu.stratosphere.pact.runtime.test.util.MutableObjectIteratorWrapper;
+import eu.stratosphere.pact.runtime.test.util.TaskTestBase;
+import eu.stratosphere.pact.runtime.test.util.UniformPactRecordGenerator;
+import eu.stratosphere.pact.runtime.task.util.TaskConfig;
+
+public class RangePartitioningTaskTest extends TaskTestBase
+{
+	@SuppressWarnings("unchecked")
+	private static final Class<? extends Key>[] KEY_TYPES = new Class[] { PactInteger.class };
+
+	@Test
+	public void testSampleTask() throws Exception
+	{
+		final int keyCnt = 1000;
+		final int valCnt = 10;
+		final int numSamples = 100;
+
+		initEnvironment(1024 * 1024);
+		addInput(new UniformPactRecordGenerator(keyCnt, valCnt, false), 0);
+		final List<PactRecord> samples = new ArrayList<PactRecord>();
+		addOutput(samples);
+
+		final TaskConfig config = getTaskConfig();
+		PactRecordComparatorFactory.writeComparatorSetupToConfig(config.getConfigForInputParameters(0),
+			new int[] { 0 }, KEY_TYPES, new boolean[] { true });
+		config.setRangeSampleSize(numSamples);
+
+		final SampleTask task = new SampleTask();
+		task.setUserCodeClassLoader(getClass().getClassLoader());
+		registerTask(task);
+		task.invoke();
+
+		Assert.assertEquals(numSamples, samples.size());
+		for (PactRecord sample : samples) {
+			final int key = sample.getField(0, PactInteger.class).getValue();
+			Assert.assertTrue("Sampled key is out of range: " + key, key >= 0 && key < keyCnt);
+			Assert.assertEquals(((double) keyCnt * valCnt) / numSamples,
+				sample.getField(1, PactDouble.class).getValue(), 0.0001);
+		}
+	}
+
+	@Test
+	public void testSampleTaskIsDeterministic() throws Exception
+	{
+		final List<Integer> first = drawSample(42);
+		Assert.assertEquals(first, drawSample(42));
+		Assert.assertFalse(first.equals(drawSample(43)));
+	}
+
+	@Test
+	public void testHistogramTask() throws Exception
+	{
+		final int numKeys = 1000;
+		final int numPartitions = 4;
+
+		// the samples of two samplers with different weights, in random order
+		final List<PactRecord> samples = new ArrayList<PactRecord>();
+		for (int i = 0; i < numKeys; i += 2) {
+			samples.add(new PactRecord(new PactInteger(i), new PactDouble(2.0)));
+		}
+		for (int i = 1; i < numKeys; i += 4) {
+			samples.add(new PactRecord(new PactInteger(i), new PactDouble(4.0)));
+		}
+		Collections.shuffle(samples, new Random(42));
+
+		initEnvironment(1024 * 1024);
+		addInput(new MutableObjectIteratorWrapper(samples.iterator()), 1);
+		final List<PactRecord> boundaries = new ArrayList<PactRecord>();
+		addOutput(boundaries);
+
+		final TaskConfig config = getTaskConfig();
+		config.addInputToGroup(1);
+		PactRecordComparatorFactory.writeComparatorSetupToConfig(config.getConfigForInputParameters(0),
+			new int[] { 0 }, KEY_TYPES, new boolean[] { true });
+		config.setNumberOfRangePartitions(numPartitions);
+
+		final HistogramTask task = new HistogramTask();
+		task.setUserCodeClassLoader(getClass().getClassLoader());
+		registerTask(task);
+		task.invoke();
+
+		// the total weight is 2000, the boundaries are the keys where the weight reaches 500, 1000 and 1500
+		final int[] expected = { 249, 498, 749 };
+		Assert.assertEquals(numPartitions - 1, boundaries.size());
+		for (int i = 0; i < boundaries.size(); i++) {
+			Assert.assertEquals(expected[i], boundaries.get(i).getField(0, PactInteger.class).getValue());
+		}
+	}
+
+	@Test
+	public void testHistogramTaskDescending() throws Exception
+	{
+		final int numKeys = 100;
+		final int numPartitions = 2;
+
+		final List<PactRecord> samples = new ArrayList<PactRecord>();
+		for (int i = 0; i < numKeys; i++) {
+			samples.add(new PactRecord(new PactInteger(i), new PactDouble(1.0)));
+		}
+
+		initEnvironment(1024 * 1024);
+		addInput(new MutableObjectIteratorWrapper(samples.iterator()), 1);
+		final List<PactRecord> boundaries = new ArrayList<PactRecord>();
+		addOutput(boundaries);
+
+		final TaskConfig config = getTaskConfig();
+		config.addInputToGroup(1);
+		PactRecordComparatorFactory.writeComparatorSetupToConfig(config.getConfigForInputParameters(0),
+			new int[] { 0 }, KEY_TYPES, new boolean[] { false });
+		config.setNumberOfRangePartitions(numPartitions);
+
+		final HistogramTask task = new HistogramTask();
+		task.setUserCodeClassLoader(getClass().getClassLoader());
+		registerTask(task);
+		task.invoke();
+
+		Assert.assertEquals(1, boundaries.size());
+		Assert.assertEquals(50, boundaries.get(0).getField(0, PactInteger.class).getValue());
+	}
+
+	@Test
+	public void testPartitionTask() throws Exception
+	{
+		final int keyCnt = 1000;
+		final int valCnt = 4;
+
+		final List<PactRecord> boundaries = new ArrayList<PactRecord>();
+		boundaries.add(new PactRecord(new PactInteger(499)));
+
+		initEnvironment(1024 * 1024);
+		addInput(new MutableObjectIteratorWrapper(boundaries.iterator()), 1);
+		addInput(new UniformPactRecordGenerator(keyCnt, valCnt, false), 2);
+		final List<PactRecord> output = new ArrayList<PactRecord>();
+		this.mockEnv.addOutput(output);
+
+		final TaskConfig config = getTaskConfig();
+		config.addInputToGroup(1);
+		config.addInputToGroup(2);
+		config.addOutputShipStrategy(ShipStrategyType.PARTITION_RANGE);
+		PactRecordComparatorFactory.writeComparatorSetupToConfig(config.getConfigForOutputParameters(0),
+			new int[] { 0 }, KEY_TYPES, new boolean[] { true });
+		config.setMemorySize(1024 * 1024);
+
+		final PartitionTask task = new PartitionTask();
+		task.setUserCodeClassLoader(getClass().getClassLoader());
+		registerTask(task);
+		task.invoke();
+
+		Assert.assertEquals(keyCnt * valCnt, output.size());
+	}
+
+	private List<Integer> drawSample(long seed) throws Exception
+	{
+		if (this.mockEnv != null) {
+			shutdownIOManager();
+			shutdownMemoryManager();
+		}
+		initEnvironment(1024 * 1024);
+		addInput(new UniformPactRecordGenerator(1000, 10, false), 0);
+		final List<PactRecord> samples = new ArrayList<PactRecord>();
+		addOutput(samples);
+
+		final TaskConfig config = getTaskConfig();
+		PactRecordComparatorFactory.writeComparatorSetupToConfig(config.getConfigForInputParameters(0),
+			new int[] { 0 }, KEY_TYPES, new boolean[] { true });
+		config.setRangeSampleSize(100);
+		config.setRangeSampleSeed(seed);
+
+		final SampleTask task = new SampleTask();
+		task.setUserCodeClassLoader(getClass().getClassLoader());
+		registerTask(task);
+		task.invoke();
+
+		final List<Integer> keys = new ArrayList<Integer>();
+		for (PactRecord sample : samples) {
+			keys.add(sample.getField(0, PactInteger.class).getValue());
+		}
+		return keys;
+	}
+}
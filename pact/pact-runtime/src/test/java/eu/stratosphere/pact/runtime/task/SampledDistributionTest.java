@@ -0,0 +1,66 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.task;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.runtime.task.PartitionTask.SampledDistribution;
+import eu.stratosphere.pact.runtime.task.util.TaskConfig;
+
+public class SampledDistributionTest
+{
+	@Test
+	public void testSerialization() throws Exception
+	{
+		final List<PactRecord> boundaries = new ArrayList<PactRecord>();
+		boundaries.add(new PactRecord(new PactInteger(17)));
+		boundaries.add(new PactRecord(new PactInteger(42)));
+
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		new SampledDistribution(boundaries).write(new DataOutputStream(baos));
+
+		final SampledDistribution copy = new SampledDistribution();
+		copy.read(new DataInputStream(new ByteArrayInputStream(baos.toByteArray())));
+
+		Assert.assertEquals(17, copy.getBucketBoundary(0, 3).getField(0, PactInteger.class).getValue());
+		Assert.assertEquals(42, copy.getBucketBoundary(1, 3).getField(0, PactInteger.class).getValue());
+	}
+
+	@Test
+	public void testShippingThroughTaskConfig() throws Exception
+	{
+		final List<PactRecord> boundaries = new ArrayList<PactRecord>();
+		boundaries.add(new PactRecord(new PactInteger(99)));
+
+		final TaskConfig config = new TaskConfig(new Configuration());
+		config.setOutputDataDistribution(new SampledDistribution(boundaries));
+
+		final SampledDistribution shipped = (SampledDistribution) config.getOutputDataDistribution(
+			getClass().getClassLoader());
+		Assert.assertEquals(99, shipped.getBucketBoundary(0, 2).getField(0, PactInteger.class).getValue());
+	}
+}
@@ -0,0 +1,190 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import eu.stratosphere.pact.common.type.Key;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactDouble;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparator;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparatorFactory;
+import eu.stratosphere.pact.runtime.shipping.ShipStrategy.ShipStrategyType;
+import eu.stratosphere.pact.runtime.test.util.MutableObjectIteratorWrapper;
+import eu.stratosphere.pact.runtime.test.util.TaskTestBase;
+import eu.stratosphere.pact.runtime.test.util.UniformPactRecordGenerator;
+import eu.stratosphere.pact.runtime.task.util.TaskConfig;
+
+public class SkewDetectionTaskTest extends TaskTestBase
+{
+	@SuppressWarnings("unchecked")
+	private static final Class<? extends Key>[] KEY_TYPES = new Class[] { PactInteger.class };
+
+	private static final int NUM_KEYS = 100;
+
+	@Test
+	public void testSampleTaskTagsSamples() throws Exception
+	{
+		initEnvironment(1024 * 1024);
+		addInput(new UniformPactRecordGenerator(NUM_KEYS, 10, false), 0);
+		final List<PactRecord> samples = new ArrayList<PactRecord>();
+		addOutput(samples);
+
+		final TaskConfig config = getTaskConfig();
+		PactRecordComparatorFactory.writeComparatorSetupToConfig(config.getConfigForInputParameters(0),
+			new int[] { 0 }, KEY_TYPES, new boolean[] { true });
+		config.setRangeSampleSize(50);
+		config.setSkewDetectionInput(1);
+
+		final SampleTask task = new SampleTask();
+		task.setUserCodeClassLoader(getClass().getClassLoader());
+		registerTask(task);
+		task.invoke();
+
+		Assert.assertEquals(50, samples.size());
+		for (PactRecord sample : samples) {
+			Assert.assertEquals(1, sample.getField(2, PactInteger.class).getValue());
+		}
+	}
+
+	@Test
+	public void testSkewedKeyIsDetected() throws Exception
+	{
+		// key 7 makes up half of the first input, the second input is uniform
+		final List<PactRecord> samples = new ArrayList<PactRecord>();
+		addUniformSamples(samples, 0, 1.0);
+		samples.add(sample(7, 50.0, 0));
+		addUniformSamples(samples, 1, 1.0);
+
+		final List<PactRecord> skewedKeys = detect(samples, 4);
+
+		Assert.assertEquals(1, skewedKeys.size());
+		Assert.assertEquals(hash(7), skewedKeys.get(0).getField(0, PactInteger.class).getValue());
+		Assert.assertEquals(0, skewedKeys.get(0).getField(1, PactInteger.class).getValue());
+	}
+
+	@Test
+	public void testKeySkewedInBothInputsIsSpreadWhereMoreFrequent() throws Exception
+	{
+		// key 7 makes up a third of the first input and half of the second input
+		final List<PactRecord> samples = new ArrayList<PactRecord>();
+		addUniformSamples(samples, 0, 1.0);
+		samples.add(sample(7, 50.0, 0));
+		addUniformSamples(samples, 1, 1.0);
+		samples.add(sample(7, 100.0, 1));
+
+		final List<PactRecord> skewedKeys = detect(samples, 4);
+
+		Assert.assertEquals(1, skewedKeys.size());
+		Assert.assertEquals(hash(7), skewedKeys.get(0).getField(0, PactInteger.class).getValue());
+		Assert.assertEquals(1, skewedKeys.get(0).getField(1, PactInteger.class).getValue());
+	}
+
+	@Test
+	public void testUniformInputsHaveNoSkewedKeys() throws Exception
+	{
+		final List<PactRecord> samples = new ArrayList<PactRecord>();
+		addUniformSamples(samples, 0, 1.0);
+		addUniformSamples(samples, 1, 3.0);
+
+		Assert.assertTrue(detect(samples, 8).isEmpty());
+	}
+
+	@Test
+	public void testPartitionTaskWithSkewedKeys() throws Exception
+	{
+		final int keyCnt = 1000;
+		final int valCnt = 4;
+
+		final List<PactRecord> skewedKeys = new ArrayList<PactRecord>();
+		skewedKeys.add(new PactRecord(new PactInteger(hash(7)), new PactInteger(0)));
+		skewedKeys.add(new PactRecord(new PactInteger(hash(8)), new PactInteger(1)));
+
+		initEnvironment(1024 * 1024);
+		addInput(new MutableObjectIteratorWrapper(skewedKeys.iterator()), 1);
+		addInput(new UniformPactRecordGenerator(keyCnt, valCnt, false), 2);
+		final List<PactRecord> output = new ArrayList<PactRecord>();
+		this.mockEnv.addOutput(output);
+
+		final TaskConfig config = getTaskConfig();
+		config.addInputToGroup(1);
+		config.addInputToGroup(2);
+		config.addOutputShipStrategy(ShipStrategyType.PARTITION_HASH_SKEW);
+		PactRecordComparatorFactory.writeComparatorSetupToConfig(config.getConfigForOutputParameters(0),
+			new int[] { 0 }, KEY_TYPES, new boolean[] { true });
+		config.setMemorySize(1024 * 1024);
+		config.setSkewDetectionInput(0);
+
+		final PartitionTask task = new PartitionTask();
+		task.setUserCodeClassLoader(getClass().getClassLoader());
+		registerTask(task);
+		task.invoke();
+
+		Assert.assertEquals(keyCnt * valCnt, output.size());
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	private List<PactRecord> detect(List<PactRecord> samples, int numPartitions) throws Exception
+	{
+		Collections.shuffle(samples, new Random(42));
+
+		initEnvironment(1024 * 1024);
+		addInput(new MutableObjectIteratorWrapper(samples.iterator()), 1);
+		final List<PactRecord> skewedKeys = new ArrayList<PactRecord>();
+		addOutput(skewedKeys);
+
+		final TaskConfig config = getTaskConfig();
+		config.addInputToGroup(1);
+		PactRecordComparatorFactory.writeComparatorSetupToConfig(config.getConfigForInputParameters(0),
+			new int[] { 0 }, KEY_TYPES, new boolean[] { true });
+		config.setNumberOfSkewPartitions(numPartitions);
+
+		final SkewDetectionTask task = new SkewDetectionTask();
+		task.setUserCodeClassLoader(getClass().getClassLoader());
+		registerTask(task);
+		task.invoke();
+		return skewedKeys;
+	}
+
+	private static void addUniformSamples(List<PactRecord> samples, int input, double weight)
+	{
+		for (int i = 0; i < NUM_KEYS; i++) {
+			samples.add(sample(i, weight, input));
+		}
+	}
+
+	private static PactRecord sample(int key, double weight, int input)
+	{
+		final PactRecord sample = new PactRecord(new PactInteger(key), new PactDouble(weight));
+		sample.setField(2, new PactInteger(input));
+		return sample;
+	}
+
+	private static int hash(int key)
+	{
+		@SuppressWarnings("unchecked")
+		final PactRecordComparator comparator = new PactRecordComparator(new int[] { 0 }, KEY_TYPES);
+		return comparator.hash(new PactRecord(new PactInteger(key)));
+	}
+}
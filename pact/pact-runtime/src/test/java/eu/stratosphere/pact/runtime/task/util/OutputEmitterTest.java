@@ -104,6 +104,71 @@ public class OutputEmitterTest extends TestCase
 		
 	}
 	
+	@Test
+	public void testPartitionHashSkew()
+	{
+		@SuppressWarnings("unchecked")
+		final PactRecordComparator intComp = new PactRecordComparator(new int[] {0}, new Class[] {PactInteger.class});
+		
+		final int spreadKey = 7;
+		final int replicateKey = 13;
+		final int[] spreadHashes = new int[] { new PactInteger(spreadKey).hashCode() };
+		final int[] replicateHashes = new int[] { new PactInteger(replicateKey).hashCode() };
+		
+		final ChannelSelector<PactRecord> skewed = new PactRecordOutputEmitter(ShipStrategyType.PARTITION_HASH_SKEW,
+			intComp, null, spreadHashes, replicateHashes);
+		final ChannelSelector<PactRecord> regular = new PactRecordOutputEmitter(ShipStrategyType.PARTITION_HASH, intComp);
+
+		final int numChans = 16;
+		final int[] hit = new int[numChans];
+		
+		// the records of the spread key go to all channels in turn
+		final PactRecord spreadRec = new PactRecord(new PactInteger(spreadKey));
+		for (int i = 0; i < numChans * 10; i++) {
+			int[] chans = skewed.selectChannels(spreadRec, numChans);
+			assertEquals(1, chans.length);
+			hit[chans[0]]++;
+		}
+		for (int i = 0; i < numChans; i++) {
+			assertEquals(10, hit[i]);
+		}
+		
+		// the records of the replicated key go to all channels at once
+		final PactRecord replicateRec = new PactRecord(new PactInteger(replicateKey));
+		int[] chans = skewed.selectChannels(replicateRec, numChans);
+		assertEquals(numChans, chans.length);
+		for (int i = 0; i < numChans; i++) {
+			assertEquals(i, chans[i]);
+		}
+		
+		// all other records are partitioned exactly as by the regular hash partitioning
+		for (int i = 0; i < 10000; i++) {
+			if (i == spreadKey || i == replicateKey) {
+				continue;
+			}
+			final PactRecord rec = new PactRecord(new PactInteger(i));
+			final int[] skewedChans = skewed.selectChannels(rec, numChans);
+			final int[] regularChans = regular.selectChannels(rec, numChans);
+			assertEquals(1, skewedChans.length);
+			assertEquals(regularChans[0], skewedChans[0]);
+		}
+	}
+	
+	@Test
+	public void testPartitionHashSkewRejectsSharedHashes()
+	{
+		@SuppressWarnings("unchecked")
+		final PactRecordComparator intComp = new PactRecordComparator(new int[] {0}, new Class[] {PactInteger.class});
+		final int[] hashes = new int[] { new PactInteger(7).hashCode() };
+		
+		try {
+			new PactRecordOutputEmitter(ShipStrategyType.PARTITION_HASH_SKEW, intComp, null, hashes, hashes);
+		} catch (IllegalArgumentException iaex) {
+			return;
+		}
+		Assert.fail("Expected an IllegalArgumentException.");
+	}
+	
 	@Test
 	public void testForward()
 	{
@@ -1,8 +1,10 @@
 package eu.stratosphere.sopremo.base;
 
+import eu.stratosphere.nephele.configuration.Configuration;
 import eu.stratosphere.sopremo.expressions.BooleanExpression;
 import eu.stratosphere.sopremo.expressions.ConstantExpression;
 import eu.stratosphere.sopremo.expressions.EvaluationExpression;
+import eu.stratosphere.sopremo.expressions.ExpressionCompiler;
 import eu.stratosphere.sopremo.expressions.InputSelection;
 import eu.stratosphere.sopremo.expressions.UnaryExpression;
 import eu.stratosphere.sopremo.operator.ElementaryOperator;
@@ -68,9 +70,17 @@ public class Selection extends ElementaryOperator<Selection> {
 	public static class Implementation extends SopremoMap {
 		private BooleanExpression condition;
 
+		private transient EvaluationExpression compiledCondition;
+
+		@Override
+		public void open(final Configuration parameters) {
+			super.open(parameters);
+			this.compiledCondition = ExpressionCompiler.INSTANCE.compile(this.condition);
+		}
+
 		@Override
 		protected void map(final IJsonNode value, final JsonCollector out) {
-			if (this.condition.evaluate(value) == BooleanNode.TRUE)
+			if (this.compiledCondition.evaluate(value) == BooleanNode.TRUE)
 				out.collect(value);
 		}
 	}
@@ -0,0 +1,141 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.sopremo.expressions;
+
+import java.io.IOException;
+
+import eu.stratosphere.sopremo.EvaluationException;
+import eu.stratosphere.sopremo.cache.NodeCache;
+import eu.stratosphere.sopremo.function.SopremoFunction;
+import eu.stratosphere.sopremo.type.BooleanNode;
+import eu.stratosphere.sopremo.type.IArrayNode;
+import eu.stratosphere.sopremo.type.IJsonNode;
+import eu.stratosphere.sopremo.type.IObjectNode;
+import eu.stratosphere.sopremo.type.MissingNode;
+import eu.stratosphere.sopremo.type.NullNode;
+import eu.stratosphere.sopremo.type.TypeCoercer;
+
+/**
+ * Base class of all expressions generated by the {@link ExpressionCompiler}. A compiled expression evaluates the
+ * expression tree it has been generated from with specialized bytecode instead of interpreting the tree node by
+ * node.<br>
+ * The compiled expression is only a runtime representation: it delegates equality, cloning, and the string
+ * representation to the original expression and cannot be modified or serialized. The static helper methods
+ * implement the semantics of the supported expression types and are invoked by the generated code.
+ */
+public abstract class CompiledExpression extends EvaluationExpression {
+	private final EvaluationExpression originalExpression;
+
+	/**
+	 * Initializes CompiledExpression.
+	 * 
+	 * @param originalExpression
+	 *        the expression from which this expression has been generated
+	 */
+	protected CompiledExpression(final EvaluationExpression originalExpression) {
+		this.originalExpression = originalExpression;
+	}
+
+	/**
+	 * Returns the expression from which this expression has been generated.
+	 * 
+	 * @return the original expression
+	 */
+	public EvaluationExpression getOriginalExpression() {
+		return this.originalExpression;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.sopremo.expressions.EvaluationExpression#clone()
+	 */
+	@Override
+	public EvaluationExpression clone() {
+		return ExpressionCompiler.INSTANCE.compile(this.originalExpression.clone());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.sopremo.expressions.EvaluationExpression#set(eu.stratosphere.sopremo.type.IJsonNode,
+	 * eu.stratosphere.sopremo.type.IJsonNode)
+	 */
+	@Override
+	public IJsonNode set(final IJsonNode node, final IJsonNode value) {
+		return this.originalExpression.set(node, value);
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof CompiledExpression))
+			return false;
+		return this.originalExpression.equals(((CompiledExpression) obj).originalExpression);
+	}
+
+	@Override
+	public int hashCode() {
+		return this.originalExpression.hashCode();
+	}
+
+	@Override
+	public void appendAsString(final Appendable appendable) throws IOException {
+		this.originalExpression.appendAsString(appendable);
+	}
+
+	/**
+	 * Implements {@link ObjectAccess#evaluateSegment(IJsonNode)}.
+	 */
+	protected static IJsonNode accessField(final IJsonNode node, final String field, final boolean safeDereference) {
+		if (!node.isObject()) {
+			if (node.isNull() && safeDereference)
+				return node;
+			return MissingNode.getInstance();
+		}
+		final IJsonNode value = ((IObjectNode) node).get(field);
+		return value == null ? NullNode.getInstance() : value;
+	}
+
+	/**
+	 * Implements {@link InputSelection#evaluateSegment(IJsonNode)}.
+	 */
+	protected static IJsonNode selectInput(final IJsonNode node, final int index) {
+		if (!node.isArray())
+			throw new EvaluationException("Cannot select input " + node.getClass().getSimpleName());
+		return ((IArrayNode<?>) node).get(index);
+	}
+
+	/**
+	 * Implements {@link UnaryExpression#evaluate(IJsonNode)}.
+	 */
+	protected static BooleanNode coerceToBoolean(final IJsonNode node, final NodeCache nodeCache,
+			final boolean negate) {
+		final BooleanNode result = TypeCoercer.INSTANCE.coerce(node, nodeCache, BooleanNode.class);
+		if (negate)
+			return result == BooleanNode.TRUE ? BooleanNode.FALSE : BooleanNode.TRUE;
+		return result;
+	}
+
+	/**
+	 * Implements the invocation of the function in {@link FunctionCall#evaluate(IJsonNode)}.
+	 */
+	protected static IJsonNode callFunction(final SopremoFunction function, final IArrayNode<IJsonNode> params) {
+		try {
+			return function.call(params);
+		} catch (Exception e) {
+			throw new EvaluationException(e);
+		}
+	}
+}
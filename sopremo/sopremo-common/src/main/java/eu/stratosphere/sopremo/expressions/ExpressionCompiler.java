@@ -0,0 +1,426 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.sopremo.expressions;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import eu.stratosphere.sopremo.EvaluationException;
+import eu.stratosphere.sopremo.cache.NodeCache;
+import eu.stratosphere.sopremo.expressions.ArithmeticExpression.ArithmeticOperator;
+import eu.stratosphere.sopremo.expressions.ComparativeExpression.BinaryOperator;
+import eu.stratosphere.sopremo.expressions.ObjectCreation.CopyFields;
+import eu.stratosphere.sopremo.expressions.ObjectCreation.FieldAssignment;
+import eu.stratosphere.sopremo.expressions.ObjectCreation.Mapping;
+import eu.stratosphere.sopremo.function.SopremoFunction;
+import eu.stratosphere.sopremo.type.ArrayNode;
+import eu.stratosphere.sopremo.type.BooleanNode;
+import eu.stratosphere.sopremo.type.IArrayNode;
+import eu.stratosphere.sopremo.type.IJsonNode;
+import eu.stratosphere.sopremo.type.INumericNode;
+import eu.stratosphere.sopremo.type.IObjectNode;
+import eu.stratosphere.sopremo.type.ObjectNode;
+
+/**
+ * Compiles {@link EvaluationExpression}s to JVM bytecode. For each expression, the compiler generates a subclass of
+ * {@link CompiledExpression} whose {@link EvaluationExpression#evaluate(IJsonNode)} method contains the evaluation
+ * logic of the whole expression tree, so that the evaluation of a record does not need virtual calls to the nodes of
+ * the tree anymore. The node caches and intermediate result nodes, which the interpreted expressions keep in their
+ * instances, become final fields of the generated class.<br>
+ * The compiler supports {@link ConstantExpression}, {@link ObjectAccess}, {@link InputSelection},
+ * {@link ArithmeticExpression}, {@link ComparativeExpression}, {@link AndExpression}, {@link OrExpression},
+ * {@link UnaryExpression}, {@link FunctionCall}, and {@link ObjectCreation}s with field assignments. All other
+ * expressions are embedded as they are and interpreted by the generated code. Subclasses of the supported
+ * expressions are interpreted as well, because they may change the semantics of the expression.<br>
+ * Generated classes are cached by the structure of the expression and shared by all compiled instances of equal
+ * expressions. Each compiled instance has its own caches, so instances must not be shared among threads.<br>
+ * The cache keeps only the most recently used classes. Each class is defined by its own class loader, so that an
+ * evicted class can be unloaded as soon as no compiled instance refers to it anymore.
+ */
+public class ExpressionCompiler implements Opcodes {
+	/**
+	 * The default compiler instance.
+	 */
+	public static final ExpressionCompiler INSTANCE = new ExpressionCompiler();
+
+	/**
+	 * The default maximum number of generated classes that a compiler caches.
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 1024;
+
+	private static final String COMPILED_EXPRESSION = Type.getInternalName(CompiledExpression.class);
+
+	private static final String EVALUATION_EXPRESSION_DESC = Type.getDescriptor(EvaluationExpression.class);
+
+	private static final String JSON_NODE = Type.getInternalName(IJsonNode.class);
+
+	private static final String JSON_NODE_DESC = Type.getDescriptor(IJsonNode.class);
+
+	private static final String OBJECT_NODE = Type.getInternalName(IObjectNode.class);
+
+	private static final String ARRAY_NODE = Type.getInternalName(IArrayNode.class);
+
+	private static final String BOOLEAN_NODE = Type.getInternalName(BooleanNode.class);
+
+	private static final String BOOLEAN_NODE_DESC = Type.getDescriptor(BooleanNode.class);
+
+	private static final String NUMERIC_NODE = Type.getInternalName(INumericNode.class);
+
+	private static final String NODE_CACHE_DESC = Type.getDescriptor(NodeCache.class);
+
+	private static final String EVALUATE_DESC = "(" + JSON_NODE_DESC + ")" + JSON_NODE_DESC;
+
+	private final Map<EvaluationExpression, Constructor<? extends CompiledExpression>> compiledClasses;
+
+	private int classCount = 0;
+
+	/**
+	 * Initializes an ExpressionCompiler that caches up to {@link #DEFAULT_CACHE_SIZE} generated classes.
+	 */
+	public ExpressionCompiler() {
+		this(DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * Initializes an ExpressionCompiler that caches up to the given number of generated classes.
+	 * 
+	 * @param cacheSize
+	 *        the maximum number of cached classes
+	 */
+	public ExpressionCompiler(final int cacheSize) {
+		if (cacheSize < 1)
+			throw new IllegalArgumentException("The cache size must be positive");
+		this.compiledClasses = new LinkedHashMap<EvaluationExpression, Constructor<? extends CompiledExpression>>(
+			16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					final Map.Entry<EvaluationExpression, Constructor<? extends CompiledExpression>> eldest) {
+				return this.size() > cacheSize;
+			}
+		};
+	}
+
+	/**
+	 * Returns the number of generated classes that are currently cached.
+	 * 
+	 * @return the number of cached classes
+	 */
+	public synchronized int getCacheSize() {
+		return this.compiledClasses.size();
+	}
+
+	/**
+	 * Compiles the given expression. If the expression cannot benefit from the compilation, because its root is not
+	 * supported by the compiler, the expression is returned unchanged.
+	 * 
+	 * @param expression
+	 *        the expression to compile
+	 * @return the compiled expression or the given expression
+	 */
+	public synchronized EvaluationExpression compile(final EvaluationExpression expression) {
+		if (expression instanceof CompiledExpression || !isSupported(expression))
+			return expression;
+
+		Constructor<? extends CompiledExpression> constructor = this.compiledClasses.get(expression);
+		final String className = constructor == null ?
+			String.format("%s$Generated%d", COMPILED_EXPRESSION, this.classCount++) :
+			Type.getInternalName(constructor.getDeclaringClass());
+
+		// the code is generated even for cached classes to collect the fields of the new instance
+		final ClassGenerator generator = new ClassGenerator(className);
+		final byte[] byteCode = generator.generate(expression);
+		try {
+			if (constructor == null) {
+				final Class<? extends CompiledExpression> compiledClass =
+					new GeneratedClassLoader(CompiledExpression.class.getClassLoader()).defineClass(
+						className.replace('/', '.'), byteCode).asSubclass(CompiledExpression.class);
+				constructor = compiledClass.getConstructor(EvaluationExpression.class, Object[].class);
+				this.compiledClasses.put(expression.clone(), constructor);
+			}
+			return constructor.newInstance(expression, generator.getFieldValues().toArray());
+		} catch (final Exception e) {
+			throw new EvaluationException(String.format("Cannot compile expression %s", expression), e);
+		}
+	}
+
+	/**
+	 * Returns whether the compiler generates specialized code for the given expression.
+	 */
+	private static boolean isSupported(final EvaluationExpression expression) {
+		final Class<?> type = expression.getClass();
+		if (type == ObjectCreation.class) {
+			for (final Mapping<?> mapping : ((ObjectCreation) expression).getMappings())
+				if (mapping.getClass() != FieldAssignment.class && mapping.getClass() != CopyFields.class)
+					return false;
+			return true;
+		}
+		return type == ConstantExpression.class || type == ObjectAccess.class || type == InputSelection.class ||
+			type == ArithmeticExpression.class || type == ComparativeExpression.class || type == AndExpression.class ||
+			type == OrExpression.class || type == UnaryExpression.class || type == FunctionCall.class;
+	}
+
+	/**
+	 * Generates the class of one compiled expression.
+	 */
+	private static final class ClassGenerator {
+		private final ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+
+		private final String className;
+
+		private final List<Object> fieldValues = new ArrayList<Object>();
+
+		private final List<String> fieldDescriptors = new ArrayList<String>();
+
+		private MethodVisitor methodVisitor;
+
+		private ClassGenerator(final String className) {
+			this.className = className;
+		}
+
+		/**
+		 * Returns the values of the fields of the generated class in the order expected by its constructor.
+		 */
+		private List<Object> getFieldValues() {
+			return this.fieldValues;
+		}
+
+		private byte[] generate(final EvaluationExpression expression) {
+			this.classWriter.visit(V1_5, ACC_PUBLIC + ACC_FINAL + ACC_SUPER, this.className, null,
+				COMPILED_EXPRESSION, null);
+
+			this.methodVisitor = this.classWriter.visitMethod(ACC_PUBLIC, "evaluate", EVALUATE_DESC, null, null);
+			this.methodVisitor.visitCode();
+			this.generateExpression(expression);
+			this.methodVisitor.visitInsn(ARETURN);
+			this.methodVisitor.visitMaxs(0, 0);
+			this.methodVisitor.visitEnd();
+
+			this.generateFieldsAndConstructor();
+
+			this.classWriter.visitEnd();
+			return this.classWriter.toByteArray();
+		}
+
+		/**
+		 * Declares one final field for each collected value and the constructor initializing these fields.
+		 */
+		private void generateFieldsAndConstructor() {
+			final MethodVisitor constructor = this.classWriter.visitMethod(ACC_PUBLIC, "<init>", "("
+				+ EVALUATION_EXPRESSION_DESC + "[Ljava/lang/Object;)V", null, null);
+			constructor.visitCode();
+			constructor.visitVarInsn(ALOAD, 0);
+			constructor.visitVarInsn(ALOAD, 1);
+			constructor.visitMethodInsn(INVOKESPECIAL, COMPILED_EXPRESSION, "<init>", "(" + EVALUATION_EXPRESSION_DESC
+				+ ")V");
+
+			for (int index = 0; index < this.fieldValues.size(); index++) {
+				final String descriptor = this.fieldDescriptors.get(index);
+				this.classWriter.visitField(ACC_PRIVATE + ACC_FINAL, "field" + index, descriptor, null, null)
+					.visitEnd();
+				constructor.visitVarInsn(ALOAD, 0);
+				constructor.visitVarInsn(ALOAD, 2);
+				pushInt(constructor, index);
+				constructor.visitInsn(AALOAD);
+				constructor.visitTypeInsn(CHECKCAST, Type.getType(descriptor).getInternalName());
+				constructor.visitFieldInsn(PUTFIELD, this.className, "field" + index, descriptor);
+			}
+
+			constructor.visitInsn(RETURN);
+			constructor.visitMaxs(0, 0);
+			constructor.visitEnd();
+		}
+
+		/**
+		 * Generates the code that evaluates the given expression and leaves the result on the operand stack. The
+		 * evaluated node is always stored in the local variable 1.
+		 */
+		private void generateExpression(final EvaluationExpression expression) {
+			final MethodVisitor mv = this.methodVisitor;
+			final Class<?> type = expression.getClass();
+
+			if (expression == EvaluationExpression.VALUE)
+				mv.visitVarInsn(ALOAD, 1);
+			else if (type == ConstantExpression.class)
+				this.loadField(((ConstantExpression) expression).getConstant(), IJsonNode.class);
+			else if (type == ObjectAccess.class) {
+				final ObjectAccess objectAccess = (ObjectAccess) expression;
+				this.generateExpression(objectAccess.getInputExpression());
+				mv.visitLdcInsn(objectAccess.getField());
+				mv.visitInsn(objectAccess.isSafeDereference() ? ICONST_1 : ICONST_0);
+				mv.visitMethodInsn(INVOKESTATIC, COMPILED_EXPRESSION, "accessField", "(" + JSON_NODE_DESC
+					+ "Ljava/lang/String;Z)" + JSON_NODE_DESC);
+			} else if (type == InputSelection.class) {
+				final InputSelection inputSelection = (InputSelection) expression;
+				this.generateExpression(inputSelection.getInputExpression());
+				pushInt(mv, inputSelection.getIndex());
+				mv.visitMethodInsn(INVOKESTATIC, COMPILED_EXPRESSION, "selectInput", "(" + JSON_NODE_DESC + "I)"
+					+ JSON_NODE_DESC);
+			} else if (type == ArithmeticExpression.class)
+				this.generateArithmeticExpression((ArithmeticExpression) expression);
+			else if (type == ComparativeExpression.class) {
+				final ComparativeExpression comparison = (ComparativeExpression) expression;
+				this.loadField(comparison.getBinaryOperator(), BinaryOperator.class);
+				this.generateExpression(comparison.getExpr1());
+				this.generateExpression(comparison.getExpr2());
+				mv.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(BinaryOperator.class), "evaluate", "("
+					+ JSON_NODE_DESC + JSON_NODE_DESC + ")Z");
+				mv.visitMethodInsn(INVOKESTATIC, BOOLEAN_NODE, "valueOf", "(Z)" + BOOLEAN_NODE_DESC);
+			} else if (type == AndExpression.class)
+				this.generateShortCircuit(((AndExpression) expression).getExpressions(), "FALSE", "TRUE");
+			else if (type == OrExpression.class)
+				this.generateShortCircuit(((OrExpression) expression).getExpressions(), "TRUE", "FALSE");
+			else if (type == UnaryExpression.class) {
+				final UnaryExpression unary = (UnaryExpression) expression;
+				this.generateExpression(unary.getExpr());
+				this.loadField(new NodeCache(), NodeCache.class);
+				mv.visitInsn(unary.isNegate() ? ICONST_1 : ICONST_0);
+				mv.visitMethodInsn(INVOKESTATIC, COMPILED_EXPRESSION, "coerceToBoolean", "(" + JSON_NODE_DESC
+					+ NODE_CACHE_DESC + "Z)" + BOOLEAN_NODE_DESC);
+			} else if (type == FunctionCall.class)
+				this.generateFunctionCall((FunctionCall) expression);
+			else if (type == ObjectCreation.class && isSupported(expression))
+				this.generateObjectCreation((ObjectCreation) expression);
+			else {
+				// fall back to the interpreter
+				this.loadField(expression, EvaluationExpression.class);
+				mv.visitVarInsn(ALOAD, 1);
+				mv.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(EvaluationExpression.class), "evaluate",
+					EVALUATE_DESC);
+			}
+		}
+
+		private void generateArithmeticExpression(final ArithmeticExpression arithmetic) {
+			final MethodVisitor mv = this.methodVisitor;
+			this.loadField(arithmetic.getOperator(), ArithmeticOperator.class);
+			this.generateExpression(arithmetic.getFirstOperand());
+			mv.visitTypeInsn(CHECKCAST, NUMERIC_NODE);
+			this.generateExpression(arithmetic.getSecondOperand());
+			mv.visitTypeInsn(CHECKCAST, NUMERIC_NODE);
+			this.loadField(new NodeCache(), NodeCache.class);
+			final String numericNodeDesc = Type.getDescriptor(INumericNode.class);
+			mv.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(ArithmeticOperator.class), "evaluate", "("
+				+ numericNodeDesc + numericNodeDesc + NODE_CACHE_DESC + ")" + numericNodeDesc);
+		}
+
+		/**
+		 * Generates the code for {@link AndExpression}s and {@link OrExpression}s, which stop the evaluation as soon
+		 * as one expression returns the given decisive value.
+		 */
+		private void generateShortCircuit(final List<BooleanExpression> expressions, final String decisiveValue,
+				final String defaultValue) {
+			final MethodVisitor mv = this.methodVisitor;
+			final Label decided = new Label(), end = new Label();
+			for (final BooleanExpression expression : expressions) {
+				this.generateExpression(expression);
+				mv.visitFieldInsn(GETSTATIC, BOOLEAN_NODE, decisiveValue, BOOLEAN_NODE_DESC);
+				mv.visitJumpInsn(IF_ACMPEQ, decided);
+			}
+			mv.visitFieldInsn(GETSTATIC, BOOLEAN_NODE, defaultValue, BOOLEAN_NODE_DESC);
+			mv.visitJumpInsn(GOTO, end);
+			mv.visitLabel(decided);
+			mv.visitFieldInsn(GETSTATIC, BOOLEAN_NODE, decisiveValue, BOOLEAN_NODE_DESC);
+			mv.visitLabel(end);
+		}
+
+		private void generateFunctionCall(final FunctionCall functionCall) {
+			final MethodVisitor mv = this.methodVisitor;
+			this.loadField(functionCall.getFunction(), SopremoFunction.class);
+			this.loadField(new ArrayNode<IJsonNode>(), IArrayNode.class);
+			mv.visitInsn(DUP);
+			mv.visitMethodInsn(INVOKEINTERFACE, ARRAY_NODE, "clear", "()V");
+			for (final EvaluationExpression param : functionCall.getParameters()) {
+				mv.visitInsn(DUP);
+				this.generateExpression(param);
+				mv.visitMethodInsn(INVOKEINTERFACE, ARRAY_NODE, "add", "(" + JSON_NODE_DESC + ")"
+					+ Type.getDescriptor(IArrayNode.class));
+				mv.visitInsn(POP);
+			}
+			mv.visitMethodInsn(INVOKESTATIC, COMPILED_EXPRESSION, "callFunction", "("
+				+ Type.getDescriptor(SopremoFunction.class) + Type.getDescriptor(IArrayNode.class) + ")"
+				+ JSON_NODE_DESC);
+		}
+
+		private void generateObjectCreation(final ObjectCreation objectCreation) {
+			final MethodVisitor mv = this.methodVisitor;
+			final String objectNodeDesc = Type.getDescriptor(IObjectNode.class);
+			this.loadField(new ObjectNode(), IObjectNode.class);
+			mv.visitInsn(DUP);
+			mv.visitMethodInsn(INVOKEINTERFACE, JSON_NODE, "clear", "()V");
+			for (final Mapping<?> mapping : objectCreation.getMappings()) {
+				mv.visitInsn(DUP);
+				if (mapping.getClass() == CopyFields.class) {
+					this.generateExpression(mapping.getExpression());
+					mv.visitTypeInsn(CHECKCAST, OBJECT_NODE);
+					mv.visitMethodInsn(INVOKEINTERFACE, OBJECT_NODE, "putAll", "(" + objectNodeDesc + ")"
+						+ objectNodeDesc);
+				} else {
+					mv.visitLdcInsn(((FieldAssignment) mapping).getTarget());
+					this.generateExpression(mapping.getExpression());
+					mv.visitMethodInsn(INVOKEINTERFACE, OBJECT_NODE, "put", "(Ljava/lang/String;" + JSON_NODE_DESC
+						+ ")" + objectNodeDesc);
+				}
+				mv.visitInsn(POP);
+			}
+		}
+
+		/**
+		 * Adds a final field with the given value to the generated class and generates the code to load it.
+		 */
+		private void loadField(final Object value, final Class<?> fieldType) {
+			final String descriptor = Type.getDescriptor(fieldType);
+			final String fieldName = "field" + this.fieldValues.size();
+			this.fieldValues.add(value);
+			this.fieldDescriptors.add(descriptor);
+			this.methodVisitor.visitVarInsn(ALOAD, 0);
+			this.methodVisitor.visitFieldInsn(GETFIELD, this.className, fieldName, descriptor);
+		}
+
+		private static void pushInt(final MethodVisitor mv, final int value) {
+			if (value >= -1 && value <= 5)
+				mv.visitInsn(ICONST_0 + value);
+			else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE)
+				mv.visitIntInsn(BIPUSH, value);
+			else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE)
+				mv.visitIntInsn(SIPUSH, value);
+			else
+				mv.visitLdcInsn(value);
+		}
+	}
+
+	/**
+	 * Defines the generated classes. The class loader delegates to the class loader of Sopremo, so that the generated
+	 * code can access all expression and node types.
+	 */
+	private static final class GeneratedClassLoader extends ClassLoader {
+		private GeneratedClassLoader(final ClassLoader parent) {
+			super(parent);
+		}
+
+		private Class<?> defineClass(final String name, final byte[] byteCode) {
+			return this.defineClass(name, byteCode, 0, byteCode.length);
+		}
+	}
+}
@@ -83,6 +83,15 @@ public class ObjectAccess extends PathSegmentExpression {
 		return this.field;
 	}
 
+	/**
+	 * Returns whether 'null' representing nodes are returned instead of being dereferenced.
+	 * 
+	 * @return the safeDereference flag
+	 */
+	public boolean isSafeDereference() {
+		return this.safeDereference;
+	}
+
 	/**
 	 * If the input node is an array, the evaluation of this array performs a spread operation. In that case, the
 	 * returned node is an array that contains the attribute value of each element node in the input array. In all other
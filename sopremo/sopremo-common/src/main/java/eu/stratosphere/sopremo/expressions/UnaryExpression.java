@@ -75,6 +75,24 @@ public class UnaryExpression extends BooleanExpression {
 
 	private transient final NodeCache nodeCache = new NodeCache();
 
+	/**
+	 * Returns the expression which evaluates to the represented boolean value.
+	 * 
+	 * @return the expression
+	 */
+	public EvaluationExpression getExpr() {
+		return this.expr;
+	}
+
+	/**
+	 * Returns whether the result of the evaluation is negated.
+	 * 
+	 * @return the negate flag
+	 */
+	public boolean isNegate() {
+		return this.negate;
+	}
+
 	@Override
 	public BooleanNode evaluate(final IJsonNode node) {
 		// no need to reuse target of coercion - no new boolean node is created anew
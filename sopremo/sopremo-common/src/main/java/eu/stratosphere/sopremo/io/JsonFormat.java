@@ -18,6 +18,9 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.util.HashSet;
+import java.util.Set;
 
 import eu.stratosphere.nephele.fs.BlockLocation;
 import eu.stratosphere.nephele.fs.FSDataInputStream;
@@ -27,8 +30,12 @@ import eu.stratosphere.nephele.fs.FileStatus;
 import eu.stratosphere.nephele.fs.FileSystem;
 import eu.stratosphere.nephele.fs.Path;
 import eu.stratosphere.pact.common.io.statistics.BaseStatistics;
+import eu.stratosphere.sopremo.expressions.ConstantExpression;
+import eu.stratosphere.sopremo.expressions.EvaluationExpression;
+import eu.stratosphere.sopremo.expressions.ObjectAccess;
 import eu.stratosphere.sopremo.operator.Name;
 import eu.stratosphere.sopremo.type.IJsonNode;
+import eu.stratosphere.sopremo.type.MissingNode;
 
 /**
  */
@@ -37,12 +44,27 @@ public class JsonFormat extends SopremoFileFormat {
 
 	public static class JsonInputFormat extends SopremoInputFormat {
 
+		private static final Charset UTF8 = Charset.forName("utf-8"), ASCII = Charset.forName("us-ascii");
+
+		/**
+		 * The parser for utf-8 and ascii encoded inputs.
+		 */
+		private StreamingJsonParser streamingParser;
+
+		/**
+		 * The parser for all other encodings.
+		 */
 		private JsonParser parser;
 
+		private IJsonNode value = MissingNode.getInstance();
+
 		@Override
 		public void close() throws IOException {
 			super.close();
-			this.parser.close();
+			if (this.streamingParser != null)
+				this.streamingParser.close();
+			else
+				this.parser.close();
 		}
 
 		/*
@@ -52,7 +74,19 @@ public class JsonFormat extends SopremoFileFormat {
 		 * , eu.stratosphere.nephele.fs.FileInputSplit)
 		 */
 		@Override
-		protected void open(FSDataInputStream stream, FileInputSplit split) {
+		protected void open(FSDataInputStream stream, FileInputSplit split) throws IOException {
+			this.value = MissingNode.getInstance();
+			final Charset encoding = Charset.forName(this.getEncoding());
+			if (encoding.equals(UTF8) || encoding.equals(ASCII)) {
+				this.streamingParser = new StreamingJsonParser(stream);
+				this.streamingParser.setWrappingArraySkipping(true);
+				this.streamingParser.setProjectedFields(getAccessedFields(this.getProjection()));
+
+				if (this.streamingParser.checkEnd())
+					this.endReached();
+				return;
+			}
+
 			try {
 				this.parser = new JsonParser(new InputStreamReader(stream, this.getEncoding()));
 				this.parser.setWrappingArraySkipping(true);
@@ -70,12 +104,50 @@ public class JsonFormat extends SopremoFileFormat {
 		 */
 		@Override
 		protected IJsonNode nextValue() throws IOException {
+			if (this.streamingParser != null) {
+				// the nodes of the previous value are reused, the value has already been converted into a record
+				this.value = this.streamingParser.readValueAsTree(this.value);
+				if (this.streamingParser.checkEnd())
+					this.endReached();
+				return this.value;
+			}
+
 			final IJsonNode value = this.parser.readValueAsTree();
 			if (this.parser.checkEnd())
 				this.endReached();
 			return value;
 		}
 
+		/**
+		 * Determines the fields of the input objects that are accessed by the given projection.
+		 * 
+		 * @param projection
+		 *        the projection
+		 * @return the names of the accessed fields or <code>null</code> if the projection may access the complete input
+		 */
+		static Set<String> getAccessedFields(final EvaluationExpression projection) {
+			final Set<String> fieldNames = new HashSet<String>();
+			return collectAccessedFields(projection, fieldNames) ? fieldNames : null;
+		}
+
+		private static boolean collectAccessedFields(final EvaluationExpression expression,
+				final Set<String> fieldNames) {
+			if (expression instanceof ObjectAccess
+				&& ((ObjectAccess) expression).getInputExpression() == EvaluationExpression.VALUE) {
+				fieldNames.add(((ObjectAccess) expression).getField());
+				return true;
+			}
+
+			boolean hasChildren = false;
+			for (final EvaluationExpression child : expression) {
+				if (!collectAccessedFields(child, fieldNames))
+					return false;
+				hasChildren = true;
+			}
+			// other leaves, most notably EvaluationExpression.VALUE, may access the complete input
+			return hasChildren || expression instanceof ConstantExpression;
+		}
+
 		/*
 		 * (non-Javadoc)
 		 * @see eu.stratosphere.pact.common.io.FileInputFormat#createInputSplits(int)
@@ -298,6 +298,15 @@ public abstract class SopremoFileFormat extends ConfigurableSopremoType {
 			return this.schema;
 		}
 
+		/**
+		 * Returns the projection that is applied to the values of this format.
+		 * 
+		 * @return the projection
+		 */
+		protected EvaluationExpression getProjection() {
+			return this.projection;
+		}
+
 		/*
 		 * (non-Javadoc)
 		 * @see eu.stratosphere.pact.common.io.FileInputFormat#open(eu.stratosphere.nephele.fs.FileInputSplit)
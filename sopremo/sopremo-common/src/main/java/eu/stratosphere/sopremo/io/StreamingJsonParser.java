@@ -0,0 +1,625 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.sopremo.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import eu.stratosphere.sopremo.type.ArrayNode;
+import eu.stratosphere.sopremo.type.BigIntegerNode;
+import eu.stratosphere.sopremo.type.BooleanNode;
+import eu.stratosphere.sopremo.type.DecimalNode;
+import eu.stratosphere.sopremo.type.IJsonNode;
+import eu.stratosphere.sopremo.type.IntNode;
+import eu.stratosphere.sopremo.type.LongNode;
+import eu.stratosphere.sopremo.type.MissingNode;
+import eu.stratosphere.sopremo.type.NullNode;
+import eu.stratosphere.sopremo.type.ObjectNode;
+import eu.stratosphere.sopremo.type.TextNode;
+
+/**
+ * Parses json values directly from the bytes of an UTF-8 encoded input stream. In contrast to the {@link JsonParser},
+ * this parser does not decode the input with a {@link java.io.Reader} and can reuse the nodes of a previously parsed
+ * value, which avoids most allocations when parsing a sequence of similar records.<br>
+ * Like the {@link JsonParser}, the parser reads values that are separated by ',' and optionally skips an array that
+ * wraps all values. Escape sequences in strings are retained as they appear in the input.<br>
+ * If the fields that are actually needed are set with {@link #setProjectedFields(Collection)}, all other fields of the
+ * top-level objects are skipped without creating nodes for their values.
+ */
+public class StreamingJsonParser {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final int KEY_CACHE_SIZE = 256;
+
+	private static final int EOF = -1;
+
+	private static final char REPLACEMENT_CHARACTER = '\uFFFD';
+
+	/**
+	 * Integral numbers with up to this number of digits are parsed without {@link BigDecimal}.
+	 */
+	private static final int MAX_FAST_DIGITS = 18;
+
+	private static final String NUMBER_REGEX = "^[-]?[0-9]*\\.?[0-9]+([eE][-+]?[0-9]+)?$";
+
+	private static final String ERROR_INVALID_JSON = "Couldn't parse the given input: \n"
+		+ "Invalid json format at byte %s (visit www.json.org for a detailed specification).\n"
+		+ "Current Token: %s.\nExpected \"%s\", but was \"%s\".";
+
+	private static final Charset UTF8 = Charset.forName("utf-8");
+
+	private final InputStream stream;
+
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+
+	private int position, limit;
+
+	/**
+	 * The number of bytes of the input that precede the current content of the buffer.
+	 */
+	private long bufferOffset;
+
+	private boolean skipWrappingArray, wrapped, started, reachedEnd;
+
+	private Set<String> projectedFields;
+
+	private final StringBuilder numberBuilder = new StringBuilder();
+
+	private byte[] keyBytes = new byte[64];
+
+	private final byte[][] cachedKeyBytes = new byte[KEY_CACHE_SIZE][];
+
+	private final String[] cachedKeys = new String[KEY_CACHE_SIZE];
+
+	/**
+	 * The names of the fields parsed for the objects that are currently open, one list per nesting level.
+	 */
+	private final List<List<String>> fieldNameStack = new ArrayList<List<String>>();
+
+	public StreamingJsonParser(final InputStream stream) {
+		this.stream = stream;
+	}
+
+	public StreamingJsonParser(final String value) {
+		this(new ByteArrayInputStream(value.getBytes(UTF8)));
+	}
+
+	/**
+	 * Sets whether an array that wraps all values of the input should be skipped, so that its elements are returned as
+	 * individual values.
+	 * 
+	 * @param skipWrappingArray
+	 *        true if the wrapping array should be skipped
+	 */
+	public void setWrappingArraySkipping(final boolean skipWrappingArray) {
+		this.skipWrappingArray = skipWrappingArray;
+	}
+
+	/**
+	 * Sets the fields of the top-level objects that should be parsed. All other fields are skipped.
+	 * 
+	 * @param fieldNames
+	 *        the names of the fields or <code>null</code> if all fields should be parsed
+	 */
+	public void setProjectedFields(final Collection<String> fieldNames) {
+		this.projectedFields = fieldNames == null ? null : new HashSet<String>(fieldNames);
+	}
+
+	/**
+	 * Checks if the whole input is already parsed.
+	 * 
+	 * @return either the whole input is already parsed or not
+	 * @throws JsonParseException
+	 *         if the input cannot be read or the beginning of the input is invalid
+	 */
+	public boolean checkEnd() throws JsonParseException {
+		if (!this.started) {
+			this.started = true;
+			this.reachedEnd = !this.seekFirstValue();
+		}
+		return this.reachedEnd;
+	}
+
+	/**
+	 * Parses the next element contained in the input and creates a corresponding {@link IJsonNode}. After reaching the
+	 * end of the input, each subsequent call to this method will return a {@link MissingNode}.
+	 * 
+	 * @return the parsed element as an {@link IJsonNode}
+	 * @throws JsonParseException
+	 *         if the input cannot be read or is not valid json
+	 */
+	public IJsonNode readValueAsTree() throws JsonParseException {
+		return this.readValueAsTree(MissingNode.getInstance());
+	}
+
+	/**
+	 * Parses the next element contained in the input and reuses the nodes of the given value where the structure of the
+	 * element permits. The given value must not be used by the caller anymore afterwards. After reaching the end of
+	 * the input, each subsequent call to this method will return a {@link MissingNode}.
+	 * 
+	 * @param reuse
+	 *        a value previously returned by this parser or {@link MissingNode}
+	 * @return the parsed element as an {@link IJsonNode}
+	 * @throws JsonParseException
+	 *         if the input cannot be read or is not valid json
+	 */
+	public IJsonNode readValueAsTree(final IJsonNode reuse) throws JsonParseException {
+		if (this.checkEnd())
+			return MissingNode.getInstance();
+		final IJsonNode value = this.parseValue(this.readIgnoreWhitespace(), reuse, 0);
+		this.reachedEnd = !this.seekNextValue();
+		return value;
+	}
+
+	/**
+	 * Closes the stream to the input of this parser.
+	 * 
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		this.stream.close();
+	}
+
+	private boolean seekFirstValue() throws JsonParseException {
+		// skip byte order mark
+		if (this.peek() == 0xEF) {
+			this.position++;
+			this.expect(new char[] { (char) 0xBB, (char) 0xBF }, "byte order mark");
+		}
+
+		int nextChar = this.peekIgnoreWhitespace();
+		if (nextChar == EOF)
+			return false;
+		if (this.skipWrappingArray && nextChar == '[') {
+			this.position++;
+			this.wrapped = true;
+			nextChar = this.peekIgnoreWhitespace();
+			if (nextChar == ']') {
+				this.position++;
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean seekNextValue() throws JsonParseException {
+		final int nextChar = this.readIgnoreWhitespace();
+		if (nextChar == ',')
+			return true;
+		if (nextChar == EOF && !this.wrapped)
+			return false;
+		if (nextChar == ']' && this.wrapped)
+			return false;
+		throw this.getInvalidJsonException("root element", this.wrapped ? ", or ]" : ", or eof", nextChar);
+	}
+
+	private IJsonNode parseValue(final int startChar, final IJsonNode reuse, final int depth)
+			throws JsonParseException {
+		switch (startChar) {
+		case '{':
+			return this.parseObject(reuse, depth);
+		case '[':
+			return this.parseArray(reuse, depth);
+		case '"':
+			return this.parseString(reuse);
+		case 't':
+			this.expect(new char[] { 'r', 'u', 'e' }, "boolean value");
+			return BooleanNode.TRUE;
+		case 'f':
+			this.expect(new char[] { 'a', 'l', 's', 'e' }, "boolean value");
+			return BooleanNode.FALSE;
+		case 'n':
+			this.expect(new char[] { 'u', 'l', 'l' }, "null value");
+			return NullNode.getInstance();
+		case '-':
+		case '0':
+		case '1':
+		case '2':
+		case '3':
+		case '4':
+		case '5':
+		case '6':
+		case '7':
+		case '8':
+		case '9':
+			return this.parseNumber(startChar, reuse);
+		default:
+			throw this.getInvalidJsonException("json value", "one of ['{', '[', 't', 'f', 'n', '-' , 0-9, '\"']",
+				startChar);
+		}
+	}
+
+	private IJsonNode parseObject(final IJsonNode reuse, final int depth) throws JsonParseException {
+		final ObjectNode object = reuse.getClass() == ObjectNode.class ? (ObjectNode) reuse : new ObjectNode();
+		final List<String> fieldNames = this.getFieldNames(depth);
+		final boolean projected = depth == 0 && this.projectedFields != null;
+
+		int nextChar = this.readIgnoreWhitespace();
+		if (nextChar != '}')
+			while (true) {
+				if (nextChar != '"')
+					throw this.getInvalidJsonException("json object", "key", nextChar);
+				final String key = this.parseKey();
+				if ((nextChar = this.readIgnoreWhitespace()) != ':')
+					throw this.getInvalidJsonException("json object", ":", nextChar);
+
+				nextChar = this.readIgnoreWhitespace();
+				if (projected && !this.projectedFields.contains(key))
+					this.skipValue(nextChar);
+				else {
+					fieldNames.add(key);
+					object.put(key, this.parseValue(nextChar, object.get(key), depth + 1));
+				}
+
+				if ((nextChar = this.readIgnoreWhitespace()) == '}')
+					break;
+				if (nextChar != ',')
+					throw this.getInvalidJsonException("json object", ", or }", nextChar);
+				nextChar = this.readIgnoreWhitespace();
+			}
+
+		// remove the fields of the reused object that do not occur in the parsed object
+		if (object.size() != fieldNames.size())
+			for (final String fieldName : new ArrayList<String>(object.getFieldNames()))
+				if (!fieldNames.contains(fieldName))
+					object.remove(fieldName);
+		fieldNames.clear();
+		return object;
+	}
+
+	@SuppressWarnings("unchecked")
+	private IJsonNode parseArray(final IJsonNode reuse, final int depth) throws JsonParseException {
+		final ArrayNode<IJsonNode> array = reuse.getClass() == ArrayNode.class ? (ArrayNode<IJsonNode>) reuse
+			: new ArrayNode<IJsonNode>();
+
+		int size = 0;
+		int nextChar = this.readIgnoreWhitespace();
+		if (nextChar != ']')
+			while (true) {
+				if (size < array.size())
+					array.set(size, this.parseValue(nextChar, array.get(size), depth + 1));
+				else
+					array.add(this.parseValue(nextChar, MissingNode.getInstance(), depth + 1));
+				size++;
+
+				if ((nextChar = this.readIgnoreWhitespace()) == ']')
+					break;
+				if (nextChar != ',')
+					throw this.getInvalidJsonException("json array", ", or ]", nextChar);
+				nextChar = this.readIgnoreWhitespace();
+			}
+
+		for (int index = array.size() - 1; index >= size; index--)
+			array.remove(index);
+		return array;
+	}
+
+	private IJsonNode parseString(final IJsonNode reuse) throws JsonParseException {
+		final TextNode text = reuse.getClass() == TextNode.class ? (TextNode) reuse : new TextNode();
+		text.clear();
+
+		while (true) {
+			// fast path for ascii characters within the buffer
+			final byte[] buffer = this.buffer;
+			int position = this.position;
+			final int limit = this.limit;
+			byte nextByte = 0;
+			while (position < limit && (nextByte = buffer[position]) >= 0 && nextByte != '"' && nextByte != '\\') {
+				text.append((char) nextByte);
+				position++;
+			}
+			this.position = position;
+
+			final int nextChar = this.read();
+			if (nextChar == '"')
+				return text;
+			if (nextChar == '\\')
+				this.appendEscapeSequence(text);
+			else if (nextChar >= 0x80)
+				this.appendMultiByteCharacter(nextChar, text);
+			else if (nextChar == EOF)
+				throw this.getInvalidJsonException("string value", "\"", nextChar);
+			else
+				text.append((char) nextChar);
+		}
+	}
+
+	private void appendEscapeSequence(final TextNode text) throws JsonParseException {
+		final int escapedChar = this.read();
+		if (!isEscapableCharacter(escapedChar))
+			throw this.getInvalidJsonException("escape sequence", "one of [\", \\, /, b, f, n, r, t, u]", escapedChar);
+
+		text.append('\\');
+		text.append((char) escapedChar);
+		if (escapedChar == 'u')
+			for (int index = 0; index < 4; index++) {
+				final int hexChar = this.read();
+				if (Character.digit(hexChar, 16) == -1)
+					throw this.getInvalidJsonException("escape sequence", "hexadecimal digit", hexChar);
+				text.append((char) hexChar);
+			}
+	}
+
+	private static boolean isEscapableCharacter(final int character) {
+		switch (character) {
+		case '"':
+		case '\\':
+		case '/':
+		case 'b':
+		case 'f':
+		case 'n':
+		case 'r':
+		case 't':
+		case 'u':
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	private void appendMultiByteCharacter(final int firstByte, final TextNode text) throws JsonParseException {
+		int codePoint, remainingBytes;
+		if ((firstByte & 0xE0) == 0xC0) {
+			codePoint = firstByte & 0x1F;
+			remainingBytes = 1;
+		} else if ((firstByte & 0xF0) == 0xE0) {
+			codePoint = firstByte & 0x0F;
+			remainingBytes = 2;
+		} else if ((firstByte & 0xF8) == 0xF0) {
+			codePoint = firstByte & 0x07;
+			remainingBytes = 3;
+		} else {
+			text.append(REPLACEMENT_CHARACTER);
+			return;
+		}
+
+		for (; remainingBytes > 0; remainingBytes--) {
+			final int nextByte = this.peek();
+			if ((nextByte & 0xC0) != 0x80) {
+				// malformed sequences are replaced like in java.io.InputStreamReader
+				text.append(REPLACEMENT_CHARACTER);
+				return;
+			}
+			this.position++;
+			codePoint = (codePoint << 6) | (nextByte & 0x3F);
+		}
+
+		if (codePoint >= 0x10000) {
+			text.append((char) (((codePoint - 0x10000) >>> 10) + 0xD800));
+			text.append((char) (((codePoint - 0x10000) & 0x3FF) + 0xDC00));
+		} else
+			text.append((char) codePoint);
+	}
+
+	/**
+	 * Reads a key and returns the corresponding string. Since the escape sequences are retained, the string is simply
+	 * the decoded bytes of the key, which allows to cache the strings of recurring keys.
+	 */
+	private String parseKey() throws JsonParseException {
+		int length = 0, hash = 0;
+		while (true) {
+			int nextChar = this.read();
+			if (nextChar == '"')
+				break;
+			if (nextChar == EOF)
+				throw this.getInvalidJsonException("json object", "\"", nextChar);
+			if (nextChar == '\\') {
+				length = this.appendKeyByte(length, nextChar);
+				hash = 31 * hash + nextChar;
+				nextChar = this.read();
+				if (!isEscapableCharacter(nextChar))
+					throw this.getInvalidJsonException("escape sequence", "one of [\", \\, /, b, f, n, r, t, u]",
+						nextChar);
+			}
+			length = this.appendKeyByte(length, nextChar);
+			hash = 31 * hash + nextChar;
+		}
+
+		final int slot = (hash ^ (hash >>> 16)) & (KEY_CACHE_SIZE - 1);
+		final byte[] cachedBytes = this.cachedKeyBytes[slot];
+		if (cachedBytes != null && cachedBytes.length == length && this.isKey(cachedBytes))
+			return this.cachedKeys[slot];
+
+		final byte[] bytes = new byte[length];
+		System.arraycopy(this.keyBytes, 0, bytes, 0, length);
+		final String key = new String(bytes, UTF8);
+		this.cachedKeyBytes[slot] = bytes;
+		this.cachedKeys[slot] = key;
+		return key;
+	}
+
+	private int appendKeyByte(final int length, final int keyByte) {
+		if (length == this.keyBytes.length) {
+			final byte[] keyBytes = new byte[2 * length];
+			System.arraycopy(this.keyBytes, 0, keyBytes, 0, length);
+			this.keyBytes = keyBytes;
+		}
+		this.keyBytes[length] = (byte) keyByte;
+		return length + 1;
+	}
+
+	private boolean isKey(final byte[] bytes) {
+		for (int index = 0; index < bytes.length; index++)
+			if (bytes[index] != this.keyBytes[index])
+				return false;
+		return true;
+	}
+
+	private IJsonNode parseNumber(final int startChar, final IJsonNode reuse) throws JsonParseException {
+		final StringBuilder builder = this.numberBuilder;
+		builder.setLength(0);
+		builder.append((char) startChar);
+		boolean integral = true;
+		int nextChar;
+		while (isNumberCharacter(nextChar = this.peek())) {
+			this.position++;
+			builder.append((char) nextChar);
+			integral &= nextChar >= '0' && nextChar <= '9';
+		}
+
+		final int digits = startChar == '-' ? builder.length() - 1 : builder.length();
+		if (integral && digits > 0 && digits <= MAX_FAST_DIGITS) {
+			long value = 0;
+			for (int index = builder.length() - digits; index < builder.length(); index++)
+				value = 10 * value + builder.charAt(index) - '0';
+			if (startChar == '-')
+				value = -value;
+
+			if (value == (int) value) {
+				final IntNode intNode = reuse.getClass() == IntNode.class ? (IntNode) reuse : new IntNode();
+				intNode.setValue((int) value);
+				return intNode;
+			}
+			final LongNode longNode = reuse.getClass() == LongNode.class ? (LongNode) reuse : new LongNode();
+			longNode.setValue(value);
+			return longNode;
+		}
+
+		final String value = builder.toString();
+		if (!value.matches(NUMBER_REGEX))
+			throw this.getInvalidJsonException("numerical value", "a numerical value", value);
+		final BigDecimal bigDec = new BigDecimal(value);
+		if (bigDec.scale() == 0) {
+			final BigInteger bigInt = bigDec.unscaledValue();
+			if (bigInt.bitLength() <= 31)
+				return IntNode.valueOf(bigInt.intValue());
+			if (bigInt.bitLength() <= 63)
+				return LongNode.valueOf(bigInt.longValue());
+			return BigIntegerNode.valueOf(bigInt);
+		}
+		return DecimalNode.valueOf(bigDec);
+	}
+
+	private static boolean isNumberCharacter(final int character) {
+		return character >= '0' && character <= '9' || character == '-' || character == '+' || character == '.'
+			|| character == 'e' || character == 'E';
+	}
+
+	/**
+	 * Skips the value that starts with the given character without creating nodes. Nested objects and arrays are only
+	 * checked for balanced brackets.
+	 */
+	private void skipValue(final int startChar) throws JsonParseException {
+		if (startChar == '"')
+			this.skipString();
+		else if (startChar == '{' || startChar == '[') {
+			int depth = 1;
+			while (depth > 0) {
+				final int nextChar = this.read();
+				if (nextChar == '"')
+					this.skipString();
+				else if (nextChar == '{' || nextChar == '[')
+					depth++;
+				else if (nextChar == '}' || nextChar == ']')
+					depth--;
+				else if (nextChar == EOF)
+					throw this.getInvalidJsonException("json value", "} or ]", nextChar);
+			}
+		} else
+			this.parseValue(startChar, MissingNode.getInstance(), 1);
+	}
+
+	private void skipString() throws JsonParseException {
+		int nextChar;
+		while ((nextChar = this.read()) != '"')
+			if (nextChar == '\\')
+				this.read();
+			else if (nextChar == EOF)
+				throw this.getInvalidJsonException("string value", "\"", nextChar);
+	}
+
+	private List<String> getFieldNames(final int depth) {
+		while (this.fieldNameStack.size() <= depth)
+			this.fieldNameStack.add(new ArrayList<String>());
+		final List<String> fieldNames = this.fieldNameStack.get(depth);
+		fieldNames.clear();
+		return fieldNames;
+	}
+
+	private void expect(final char[] expectedChars, final String currentToken) throws JsonParseException {
+		for (final char expectedChar : expectedChars) {
+			final int nextChar = this.read();
+			if (nextChar != expectedChar)
+				throw this.getInvalidJsonException(currentToken, String.valueOf(expectedChar), nextChar);
+		}
+	}
+
+	private int readIgnoreWhitespace() throws JsonParseException {
+		final int nextChar = this.peekIgnoreWhitespace();
+		if (nextChar != EOF)
+			this.position++;
+		return nextChar;
+	}
+
+	private int peekIgnoreWhitespace() throws JsonParseException {
+		int nextChar;
+		while ((nextChar = this.peek()) == ' ' || nextChar == '\n' || nextChar == '\r' || nextChar == '\t')
+			this.position++;
+		return nextChar;
+	}
+
+	private int read() throws JsonParseException {
+		if (this.position == this.limit && !this.fill())
+			return EOF;
+		return this.buffer[this.position++] & 0xFF;
+	}
+
+	private int peek() throws JsonParseException {
+		if (this.position == this.limit && !this.fill())
+			return EOF;
+		return this.buffer[this.position] & 0xFF;
+	}
+
+	private boolean fill() throws JsonParseException {
+		this.bufferOffset += this.limit;
+		this.position = 0;
+		this.limit = 0;
+		try {
+			int bytesRead;
+			do
+				bytesRead = this.stream.read(this.buffer);
+			while (bytesRead == 0);
+			if (bytesRead == EOF)
+				return false;
+			this.limit = bytesRead;
+			return true;
+		} catch (IOException e) {
+			throw new JsonParseException(String.format("Couldn't parse the given input: \n"
+				+ "Couldn't access input at byte %s", this.bufferOffset), e);
+		}
+	}
+
+	private JsonParseException getInvalidJsonException(final String currentToken, final String expectedValue,
+			final int currentChar) {
+		return this.getInvalidJsonException(currentToken, expectedValue,
+			currentChar == EOF ? "eof" : String.valueOf((char) currentChar));
+	}
+
+	private JsonParseException getInvalidJsonException(final String currentToken, final String expectedValue,
+			final String currentValue) {
+		return new JsonParseException(String.format(ERROR_INVALID_JSON, this.bufferOffset + this.position,
+			currentToken, expectedValue, currentValue));
+	}
+}
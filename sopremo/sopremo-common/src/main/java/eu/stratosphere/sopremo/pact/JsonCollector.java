@@ -4,6 +4,7 @@ import eu.stratosphere.pact.common.stubs.Collector;
 import eu.stratosphere.pact.common.type.PactRecord;
 import eu.stratosphere.sopremo.EvaluationContext;
 import eu.stratosphere.sopremo.expressions.EvaluationExpression;
+import eu.stratosphere.sopremo.expressions.ExpressionCompiler;
 import eu.stratosphere.sopremo.serialization.Schema;
 import eu.stratosphere.sopremo.type.IJsonNode;
 
@@ -23,6 +24,8 @@ public class JsonCollector {
 
 	private EvaluationExpression resultProjection = EvaluationExpression.VALUE;
 
+	private EvaluationExpression uncompiledResultProjection = EvaluationExpression.VALUE;
+
 	/**
 	 * Initializes a JsonCollector with the given {@link Schema}.
 	 * 
@@ -42,7 +45,12 @@ public class JsonCollector {
 	public void configure(final Collector<PactRecord> collector, final EvaluationContext context) {
 		this.collector = collector;
 		this.context = context;
-		this.resultProjection = context.getResultProjection();
+		// the collector is configured for each record, so the projection is only compiled when it changes
+		final EvaluationExpression resultProjection = context.getResultProjection();
+		if (resultProjection != this.uncompiledResultProjection) {
+			this.uncompiledResultProjection = resultProjection;
+			this.resultProjection = ExpressionCompiler.INSTANCE.compile(resultProjection);
+		}
 	}
 
 	/**
@@ -0,0 +1,112 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.sopremo.expressions;
+
+import static eu.stratosphere.sopremo.type.JsonUtil.createObjectNode;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import eu.stratosphere.sopremo.expressions.ArithmeticExpression.ArithmeticOperator;
+import eu.stratosphere.sopremo.expressions.ComparativeExpression.BinaryOperator;
+import eu.stratosphere.sopremo.type.BooleanNode;
+import eu.stratosphere.sopremo.type.IJsonNode;
+import eu.stratosphere.sopremo.type.IntNode;
+import eu.stratosphere.sopremo.type.ObjectNode;
+
+/**
+ * Compares the interpreted and the compiled evaluation of the expressions used by a projection, i.e. an
+ * {@link ObjectCreation}, and by a selection, i.e. a {@link BooleanExpression}. Each variant is run for several
+ * rounds, the first rounds serving as warm-up.
+ */
+public class ExpressionCompilerBenchmark {
+	private static final int NUMBER_OF_RECORDS = 1000;
+
+	private static final int EVALUATIONS_PER_ROUND = 2000000;
+
+	private static final int WARMUP_ROUNDS = 3;
+
+	private static final int MEASURED_ROUNDS = 5;
+
+	@Test
+	public void testProjection() {
+		final ObjectCreation projection = new ObjectCreation();
+		projection.addMapping("id", new ObjectAccess("id"));
+		projection.addMapping("total", new ArithmeticExpression(new ObjectAccess("price"),
+			ArithmeticOperator.MULTIPLICATION, new ObjectAccess("quantity")));
+		projection.addMapping("discounted", new ArithmeticExpression(new ObjectAccess("price"),
+			ArithmeticOperator.SUBTRACTION, new ConstantExpression(IntNode.valueOf(1))));
+		projection.addMapping("large", new ComparativeExpression(new ObjectAccess("quantity"),
+			BinaryOperator.GREATER_EQUAL, new ConstantExpression(IntNode.valueOf(50))));
+
+		run("Projection", projection);
+	}
+
+	@Test
+	public void testSelection() {
+		final BooleanExpression selection = new AndExpression(
+			new ComparativeExpression(new ObjectAccess("price"), BinaryOperator.LESS,
+				new ConstantExpression(IntNode.valueOf(500))),
+			new OrExpression(
+				new ComparativeExpression(new ObjectAccess("quantity"), BinaryOperator.GREATER,
+					new ConstantExpression(IntNode.valueOf(90))),
+				new UnaryExpression(new ObjectAccess("express"))));
+
+		run("Selection", selection);
+	}
+
+	private static void run(final String name, final EvaluationExpression expression) {
+		final ObjectNode[] records = createRecords();
+		final EvaluationExpression compiled = ExpressionCompiler.INSTANCE.compile(expression);
+
+		for (int round = 0; round < WARMUP_ROUNDS; round++) {
+			evaluate(expression, records);
+			evaluate(compiled, records);
+		}
+
+		long interpretedTime = 0, compiledTime = 0;
+		for (int round = 0; round < MEASURED_ROUNDS; round++) {
+			interpretedTime += evaluate(expression, records);
+			compiledTime += evaluate(compiled, records);
+		}
+
+		System.out.println(String.format("%s: interpreted %d ms, compiled %d ms", name,
+			interpretedTime / MEASURED_ROUNDS / 1000000, compiledTime / MEASURED_ROUNDS / 1000000));
+	}
+
+	private static long evaluate(final EvaluationExpression expression, final ObjectNode[] records) {
+		final long start = System.nanoTime();
+		int hash = 0;
+		for (int index = 0; index < EVALUATIONS_PER_ROUND; index++) {
+			final IJsonNode result = expression.evaluate(records[index % records.length]);
+			hash += result == BooleanNode.TRUE ? 1 : result.hashCode();
+		}
+		final long time = System.nanoTime() - start;
+		// prevents the evaluation from being optimized away
+		if (hash == 42)
+			System.out.print("");
+		return time;
+	}
+
+	private static ObjectNode[] createRecords() {
+		final Random random = new Random(42);
+		final ObjectNode[] records = new ObjectNode[NUMBER_OF_RECORDS];
+		for (int index = 0; index < records.length; index++)
+			records[index] = createObjectNode("id", index, "price", random.nextInt(1000), "quantity",
+				random.nextInt(100), "express", random.nextBoolean());
+		return records;
+	}
+}
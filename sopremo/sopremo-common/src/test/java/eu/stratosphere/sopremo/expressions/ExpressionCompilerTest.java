@@ -0,0 +1,137 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.sopremo.expressions;
+
+import static eu.stratosphere.sopremo.type.JsonUtil.createArrayNode;
+import static eu.stratosphere.sopremo.type.JsonUtil.createObjectNode;
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import eu.stratosphere.sopremo.expressions.ArithmeticExpression.ArithmeticOperator;
+import eu.stratosphere.sopremo.expressions.ComparativeExpression.BinaryOperator;
+import eu.stratosphere.sopremo.type.IJsonNode;
+import eu.stratosphere.sopremo.type.IntNode;
+import eu.stratosphere.sopremo.type.ObjectNode;
+
+public class ExpressionCompilerTest {
+
+	private static ObjectCreation createProjection() {
+		final ObjectCreation projection = new ObjectCreation();
+		projection.addMapping("sum", new ArithmeticExpression(new ObjectAccess("a"), ArithmeticOperator.ADDITION,
+			new ObjectAccess("b")));
+		projection.addMapping("a", new ObjectAccess("a"));
+		projection.addMapping("c", new ConstantExpression(IntNode.valueOf(7)));
+		// not supported by the compiler, must be interpreted
+		projection.addMapping("t", new TernaryExpression(new ComparativeExpression(new ObjectAccess("a"),
+			BinaryOperator.LESS, new ObjectAccess("b")), new ConstantExpression(IntNode.valueOf(1)),
+			new ConstantExpression(IntNode.valueOf(2))));
+		return projection;
+	}
+
+	private static BooleanExpression createCondition() {
+		return new AndExpression(
+			new ComparativeExpression(new ObjectAccess("a"), BinaryOperator.LESS, new ObjectAccess("b")),
+			new UnaryExpression(new ObjectAccess("a")),
+			new OrExpression(
+				new ComparativeExpression(new ObjectAccess("a"), BinaryOperator.EQUAL,
+					new ConstantExpression(IntNode.valueOf(2))),
+				new ComparativeExpression(new ObjectAccess("b"), BinaryOperator.GREATER,
+					new ConstantExpression(IntNode.valueOf(3)))));
+	}
+
+	@Test
+	public void shouldEvaluateProjectionLikeInterpreter() {
+		final ObjectCreation projection = createProjection();
+		final EvaluationExpression compiled = ExpressionCompiler.INSTANCE.compile(projection);
+		Assert.assertTrue(compiled instanceof CompiledExpression);
+
+		for (int a = 0; a < 5; a++)
+			for (int b = 0; b < 5; b++) {
+				final ObjectNode input = createObjectNode("a", a, "b", b);
+				Assert.assertEquals(projection.evaluate(input), compiled.evaluate(input));
+			}
+	}
+
+	@Test
+	public void shouldEvaluateConditionLikeInterpreter() {
+		final BooleanExpression condition = createCondition();
+		final EvaluationExpression compiled = ExpressionCompiler.INSTANCE.compile(condition);
+		Assert.assertTrue(compiled instanceof CompiledExpression);
+
+		for (int a = 0; a < 5; a++)
+			for (int b = 0; b < 5; b++) {
+				final ObjectNode input = createObjectNode("a", a, "b", b);
+				Assert.assertEquals(condition.evaluate(input), compiled.evaluate(input));
+			}
+	}
+
+	@Test
+	public void shouldSelectInputs() {
+		final EvaluationExpression access = new ObjectAccess("b").withInputExpression(new InputSelection(1));
+		final EvaluationExpression compiled = ExpressionCompiler.INSTANCE.compile(access);
+
+		final IJsonNode input = createArrayNode(createObjectNode("b", 1), createObjectNode("b", 2));
+		Assert.assertEquals(IntNode.valueOf(2), compiled.evaluate(input));
+	}
+
+	@Test
+	public void shouldShareGeneratedClassesOfEqualExpressions() {
+		final EvaluationExpression first = ExpressionCompiler.INSTANCE.compile(createCondition());
+		final EvaluationExpression second = ExpressionCompiler.INSTANCE.compile(createCondition());
+
+		Assert.assertNotSame(first, second);
+		Assert.assertSame(first.getClass(), second.getClass());
+		Assert.assertEquals(first, second);
+	}
+
+	@Test
+	public void shouldEvictLeastRecentlyUsedClasses() {
+		final ExpressionCompiler compiler = new ExpressionCompiler(2);
+		final EvaluationExpression condition = compiler.compile(createCondition());
+		final EvaluationExpression evicted = compiler.compile(createProjection());
+		// uses the condition, such that the projection is evicted next
+		Assert.assertSame(condition.getClass(), compiler.compile(createCondition()).getClass());
+		compiler.compile(new ArithmeticExpression(new ObjectAccess("a"), ArithmeticOperator.MULTIPLICATION,
+			new ObjectAccess("b")));
+
+		Assert.assertEquals(2, compiler.getCacheSize());
+		Assert.assertSame(condition.getClass(), compiler.compile(createCondition()).getClass());
+		final EvaluationExpression projection = compiler.compile(createProjection());
+		Assert.assertNotSame(evicted.getClass(), projection.getClass());
+		Assert.assertEquals(2, compiler.getCacheSize());
+		final ObjectNode input = createObjectNode("a", 1, "b", 2);
+		Assert.assertEquals(createProjection().evaluate(input), projection.evaluate(input));
+	}
+
+	@Test
+	public void shouldNotCompileUnsupportedExpressions() {
+		final EvaluationExpression ternary = new TernaryExpression(new InputSelection(0),
+			new ConstantExpression(IntNode.valueOf(0)), new ConstantExpression(IntNode.valueOf(1)));
+
+		Assert.assertSame(ternary, ExpressionCompiler.INSTANCE.compile(ternary));
+	}
+
+	@Test
+	public void shouldRecompileClones() {
+		final EvaluationExpression compiled = ExpressionCompiler.INSTANCE.compile(createProjection());
+		final EvaluationExpression clone = compiled.clone();
+
+		Assert.assertNotSame(compiled, clone);
+		Assert.assertSame(compiled.getClass(), clone.getClass());
+		final ObjectNode input = createObjectNode("a", 1, "b", 2);
+		Assert.assertEquals(compiled.evaluate(input), clone.evaluate(input));
+	}
+}
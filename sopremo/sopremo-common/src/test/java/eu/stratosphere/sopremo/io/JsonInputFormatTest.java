@@ -4,6 +4,8 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.util.Arrays;
+import java.util.HashSet;
 
 import junit.framework.Assert;
 
@@ -13,6 +15,12 @@ import eu.stratosphere.nephele.configuration.Configuration;
 import eu.stratosphere.pact.common.io.FormatUtil;
 import eu.stratosphere.pact.common.type.PactRecord;
 import eu.stratosphere.sopremo.EvaluationContext;
+import eu.stratosphere.sopremo.expressions.ArithmeticExpression;
+import eu.stratosphere.sopremo.expressions.ArithmeticExpression.ArithmeticOperator;
+import eu.stratosphere.sopremo.expressions.ConstantExpression;
+import eu.stratosphere.sopremo.expressions.EvaluationExpression;
+import eu.stratosphere.sopremo.expressions.ObjectAccess;
+import eu.stratosphere.sopremo.expressions.ObjectCreation;
 import eu.stratosphere.sopremo.io.JsonFormat.JsonInputFormat;
 import eu.stratosphere.sopremo.io.SopremoFileFormat.SopremoInputFormat;
 import eu.stratosphere.sopremo.pact.SopremoUtil;
@@ -141,4 +149,22 @@ public class JsonInputFormatTest {
 				((IntNode) ((IObjectNode) arrayNode.get(index - 1)).get("id")).getIntValue());
 		}
 	}
+
+	/**
+	 * Tests the fields that are parsed for a projection.
+	 */
+	@Test
+	public void shouldDetermineAccessedFields() {
+		final ObjectCreation projection = new ObjectCreation();
+		projection.addMapping("id", new ObjectAccess("id"));
+		projection.addMapping("total", new ArithmeticExpression(new ObjectAccess("price"),
+			ArithmeticOperator.MULTIPLICATION, new ConstantExpression(IntNode.valueOf(2))));
+		projection.addMapping("city", new ObjectAccess("city").withInputExpression(new ObjectAccess("address")));
+		Assert.assertEquals(new HashSet<String>(Arrays.asList("id", "price", "address")),
+			JsonInputFormat.getAccessedFields(projection));
+
+		Assert.assertNull(JsonInputFormat.getAccessedFields(EvaluationExpression.VALUE));
+		projection.addMapping("all", EvaluationExpression.VALUE);
+		Assert.assertNull(JsonInputFormat.getAccessedFields(projection));
+	}
 }
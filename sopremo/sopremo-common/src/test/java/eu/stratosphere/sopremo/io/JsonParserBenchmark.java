@@ -0,0 +1,93 @@
+package eu.stratosphere.sopremo.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import eu.stratosphere.sopremo.type.IJsonNode;
+import eu.stratosphere.sopremo.type.MissingNode;
+
+/**
+ * Compares the {@link JsonParser} with the {@link StreamingJsonParser} on an in-memory json file with records similar
+ * to the ones of a typical ingestion job. The streaming parser is measured with fresh nodes per record, with reused
+ * nodes, and with reused nodes and a projection on two fields. Each parser is run for several rounds, the first
+ * rounds serving as warm-up.
+ */
+public class JsonParserBenchmark {
+	private static final int NUMBER_OF_RECORDS = 50000;
+
+	private static final int WARMUP_ROUNDS = 3;
+
+	private static final int MEASURED_ROUNDS = 5;
+
+	private static final Charset UTF8 = Charset.forName("utf-8");
+
+	@Test
+	public void testParsers() throws IOException {
+		final byte[] input = createInput();
+
+		for (int round = 0; round < WARMUP_ROUNDS; round++)
+			for (int variant = 0; variant < 4; variant++)
+				Assert.assertEquals(NUMBER_OF_RECORDS, parse(input, variant));
+
+		final long[] times = new long[4];
+		for (int round = 0; round < MEASURED_ROUNDS; round++)
+			for (int variant = 0; variant < 4; variant++) {
+				final long start = System.nanoTime();
+				parse(input, variant);
+				times[variant] += System.nanoTime() - start;
+			}
+
+		System.out.println(String.format("%d records (%d KB): JsonParser %d ms, StreamingJsonParser %d ms, "
+			+ "with reuse %d ms, with reuse and projection %d ms", NUMBER_OF_RECORDS, input.length / 1024,
+			times[0] / MEASURED_ROUNDS / 1000000, times[1] / MEASURED_ROUNDS / 1000000,
+			times[2] / MEASURED_ROUNDS / 1000000, times[3] / MEASURED_ROUNDS / 1000000));
+	}
+
+	private static int parse(final byte[] input, final int variant) throws IOException {
+		int count = 0;
+		if (variant == 0) {
+			final JsonParser parser = new JsonParser(new InputStreamReader(new ByteArrayInputStream(input), UTF8));
+			parser.setWrappingArraySkipping(true);
+			while (!parser.checkEnd())
+				if (!parser.readValueAsTree().isMissing())
+					count++;
+			return count;
+		}
+
+		final StreamingJsonParser parser = new StreamingJsonParser(new ByteArrayInputStream(input));
+		parser.setWrappingArraySkipping(true);
+		if (variant == 3)
+			parser.setProjectedFields(Arrays.asList("id", "name"));
+		IJsonNode value = MissingNode.getInstance();
+		while (!parser.checkEnd()) {
+			value = variant == 1 ? parser.readValueAsTree() : parser.readValueAsTree(value);
+			count++;
+		}
+		return count;
+	}
+
+	private static byte[] createInput() {
+		final Random random = new Random(42);
+		final StringBuilder builder = new StringBuilder("[");
+		for (int index = 0; index < NUMBER_OF_RECORDS; index++) {
+			if (index > 0)
+				builder.append(",\n");
+			builder.append("{\"id\": ").append(index);
+			builder.append(", \"name\": \"name ").append(random.nextInt(100000)).append('"');
+			builder.append(", \"price\": ").append(random.nextInt(100000) / 100.0);
+			builder.append(", \"tags\": [\"a\", \"b\", \"c").append(random.nextInt(10)).append("\"]");
+			builder.append(", \"address\": {\"street\": \"Main Street ").append(random.nextInt(1000));
+			builder.append("\", \"city\": \"Berlin\", \"zip\": ").append(10000 + random.nextInt(90000)).append('}');
+			builder.append(", \"active\": ").append(random.nextBoolean()).append('}');
+		}
+		return builder.append(']').toString().getBytes(UTF8);
+	}
+}
@@ -0,0 +1,137 @@
+package eu.stratosphere.sopremo.io;
+
+import static eu.stratosphere.sopremo.type.JsonUtil.createObjectNode;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import eu.stratosphere.sopremo.type.IJsonNode;
+import eu.stratosphere.sopremo.type.MissingNode;
+import eu.stratosphere.sopremo.type.ObjectNode;
+import eu.stratosphere.sopremo.type.TextNode;
+
+public class StreamingJsonParserTest {
+
+	private static final String[] VALID_INPUTS = {
+		"[null]", "null", "[null,null]", "[true]", "[false]", "\"42shadh34634\"", "[\"Test\"]", "[\"Test\\\"Test\"]",
+		"{\"key1\" : null}", "\"thisStringHas\tanEscape\u4567Sequence\"",
+		"{\"key1\" : null,     \"key2\"     : {}}", "42", "[42]", "42.42", String.valueOf(Long.MAX_VALUE),
+		"\"thisIs\\\"AEscape\\\"Sequence\"", "   {   \"42\" :  42 , \"1337\" :   []  }",
+		"{ \"object\" : { \"key\" : [] } }", "", "-42", "null , null", "true, false, true, false",
+		"[null, null] , {\"key\" : null}", "[], {}, true, false, null, 42, \"TEST\"", "1 ,2 ,3, 4 , null",
+		"42, [23, [[24, \"Test\"], 12, \"17\"]]", "[1e5, -0.5, 12345678901234567890, -2147483649, 2147483647]",
+		"{\"k\\u00e4y\" : \"\\u00e4 \u00e4 \uD834\uDD1E\"}" };
+
+	private static final String[] INVALID_INPUTS = {
+		"a", "nulL", "[tru]", "\"invalidEscape \\a sequence\"", "[22 , 42, 1337] a", "[42, 1337]  42", "[ 42, 1337",
+		"{ \"key\" : 1337", "[Null]", "{ \"key\" : Null }", "-", "{ : 42}", "{ \"42\" : }", "{ 42 }", "{ \"42\" }",
+		"{ [1337] : 42}", "[ , 42 ]", "[ 42, ]", "[ 42, , 1337]", "{ \"key\" : 42 , , \"key2\" : 1337 }",
+		"{ , \"key\" : 42 }", "{ \"key\" : 42 , }", "[ [] [] ]", "\"unterminated" };
+
+	@Test
+	public void shouldParseLikeJsonParser() throws IOException {
+		for (final String input : VALID_INPUTS) {
+			final JsonParser expectedParser = new JsonParser(input);
+			final StreamingJsonParser parser = new StreamingJsonParser(input);
+			while (!parser.checkEnd())
+				Assert.assertEquals(input, expectedParser.readValueAsTree(), parser.readValueAsTree());
+			Assert.assertEquals(input, MissingNode.getInstance(), parser.readValueAsTree());
+		}
+	}
+
+	@Test
+	public void shouldFailOnInvalidInput() {
+		for (final String input : INVALID_INPUTS)
+			try {
+				final StreamingJsonParser parser = new StreamingJsonParser(input);
+				while (!parser.checkEnd())
+					parser.readValueAsTree();
+				Assert.fail("no exception for " + input);
+			} catch (JsonParseException e) {
+				// expected
+			}
+	}
+
+	@Test
+	public void shouldSkipWrappingArray() throws IOException {
+		final StreamingJsonParser parser = new StreamingJsonParser(" [ {\"id\": 1}, {\"id\": 2} ] ");
+		parser.setWrappingArraySkipping(true);
+
+		Assert.assertEquals(createObjectNode("id", 1), parser.readValueAsTree());
+		Assert.assertEquals(createObjectNode("id", 2), parser.readValueAsTree());
+		Assert.assertTrue(parser.checkEnd());
+
+		final StreamingJsonParser emptyParser = new StreamingJsonParser("[ ]");
+		emptyParser.setWrappingArraySkipping(true);
+		Assert.assertTrue(emptyParser.checkEnd());
+	}
+
+	@Test
+	public void shouldReuseNodes() throws IOException {
+		final StreamingJsonParser parser = new StreamingJsonParser(
+			"{\"id\": 1, \"name\": \"a\", \"tags\": [1, 2, 3], \"old\": true}, "
+				+ "{\"id\": 2, \"name\": \"bb\", \"tags\": [4]}, {\"id\": \"3\", \"tags\": {}}");
+
+		final IJsonNode first = parser.readValueAsTree();
+		final IJsonNode id = ((ObjectNode) first).get("id"), name = ((ObjectNode) first).get("name");
+		final IJsonNode second = parser.readValueAsTree(first);
+		Assert.assertSame(first, second);
+		Assert.assertSame(id, ((ObjectNode) second).get("id"));
+		Assert.assertSame(name, ((ObjectNode) second).get("name"));
+		Assert.assertEquals(createObjectNode("id", 2, "name", "bb", "tags", new int[] { 4 }), second);
+
+		final IJsonNode third = parser.readValueAsTree(second);
+		Assert.assertEquals(new ObjectNode().put("id", TextNode.valueOf("3")).put("tags", new ObjectNode()), third);
+		Assert.assertTrue(parser.checkEnd());
+	}
+
+	@Test
+	public void shouldSkipFieldsThatAreNotProjected() throws IOException {
+		final StreamingJsonParser parser = new StreamingJsonParser(
+			"{\"id\": 1, \"skipped\": {\"a\": [\"]}\", {}]}, \"name\": \"a\", \"other\": 12.5e3}, "
+				+ "{\"nested\": {\"id\": 3, \"skipped\": 4}, \"id\": 2}");
+		parser.setProjectedFields(Arrays.asList("id", "name", "nested"));
+
+		Assert.assertEquals(createObjectNode("id", 1, "name", "a"), parser.readValueAsTree());
+		Assert.assertEquals(createObjectNode("id", 2, "nested", createObjectNode("id", 3, "skipped", 4)),
+			parser.readValueAsTree());
+		Assert.assertTrue(parser.checkEnd());
+	}
+
+	@Test
+	public void shouldParseAcrossBufferBoundaries() throws IOException {
+		final StringBuilder input = new StringBuilder();
+		for (int index = 0; index < 20000; index++)
+			input.append("{\"id\": ").append(index).append(", \"text\": \"\u00e4\u4567 ").append(index)
+				.append("\"},\n");
+		input.setLength(input.length() - 2);
+
+		final StreamingJsonParser parser = new StreamingJsonParser(new ChunkedInputStream(input.toString()));
+		IJsonNode value = MissingNode.getInstance();
+		for (int index = 0; index < 20000; index++) {
+			value = parser.readValueAsTree(value);
+			Assert.assertEquals(createObjectNode("id", index, "text", "\u00e4\u4567 " + index), value);
+		}
+		Assert.assertTrue(parser.checkEnd());
+	}
+
+	/**
+	 * Returns at most 1000 bytes per read, so that values span several reads.
+	 */
+	private static class ChunkedInputStream extends ByteArrayInputStream {
+		public ChunkedInputStream(final String content) {
+			super(content.getBytes(Charset.forName("utf-8")));
+		}
+
+		@Override
+		public synchronized int read(final byte[] b, final int off, final int len) {
+			return super.read(b, off, Math.min(len, 1000));
+		}
+	}
+}
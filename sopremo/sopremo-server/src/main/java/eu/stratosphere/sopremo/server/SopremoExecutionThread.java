@@ -29,7 +29,6 @@ import eu.stratosphere.nephele.util.StringUtils;
 import eu.stratosphere.pact.common.plan.Plan;
 import eu.stratosphere.pact.compiler.DataStatistics;
 import eu.stratosphere.pact.compiler.PactCompiler;
-import eu.stratosphere.pact.compiler.costs.FixedSizeClusterCostEstimator;
 import eu.stratosphere.pact.compiler.jobgen.JSONGenerator;
 import eu.stratosphere.pact.compiler.jobgen.JobGraphGenerator;
 import eu.stratosphere.pact.compiler.plan.OptimizedPlan;
@@ -158,7 +157,8 @@ public class SopremoExecutionThread implements Runnable {
 
 	JobGraph getJobGraph(final Plan pactPlan) {
 		PactCompiler compiler =
-			new PactCompiler(new DataStatistics(), new FixedSizeClusterCostEstimator(), this.jobManagerAddress);
+			new PactCompiler(new DataStatistics(), PactCompiler.createConfiguredCostEstimator(),
+				this.jobManagerAddress);
 
 		final OptimizedPlan optPlan = compiler.compile(pactPlan);
 		